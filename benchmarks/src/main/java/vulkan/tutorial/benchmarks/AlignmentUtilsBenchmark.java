@@ -0,0 +1,51 @@
+package vulkan.tutorial.benchmarks;
+
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.shader.AlignmentUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Offset computation for a std140 block, the same sizeof/alignOf/alignAs calls the UBO upload does
+ * for every member.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlignmentUtilsBenchmark {
+
+    private final Object[] members = {
+            new Matrix4f(), new Matrix4f(), new Matrix4f(),
+            new Vector3f(), 1.0f, new Vector2f(), new Vector4f(), 1
+    };
+
+    private final int[] offsets = new int[this.members.length];
+
+    @Benchmark
+    public int[] layout() {
+        int offset = 0;
+
+        for (int i = 0; i < this.members.length; i++) {
+            offset = AlignmentUtils.alignAs(offset, AlignmentUtils.alignOf(this.members[i]));
+            this.offsets[i] = offset;
+            offset += AlignmentUtils.sizeof(this.members[i]);
+        }
+
+        return this.offsets;
+    }
+}
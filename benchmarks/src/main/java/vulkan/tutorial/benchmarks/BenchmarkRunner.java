@@ -0,0 +1,28 @@
+package vulkan.tutorial.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Same command line as org.openjdk.jmh.Main, but always runs with the gc profiler so every result
+ * comes with its allocation rate (gc.alloc.rate.norm is the number to watch for the hot paths).
+ */
+public class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        //Util class
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        new Runner(new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,150 @@
+package vulkan.tutorial.benchmarks;
+
+import org.lwjgl.assimp.Assimp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.accel.Bvh;
+import vulkan.tutorial.accel.BvhBuilder;
+import vulkan.tutorial.accel.RayHit;
+import vulkan.tutorial.gameobject.GameObject;
+import vulkan.tutorial.gameobject.GameObjectLoader;
+import vulkan.tutorial.mesh.ModelLoader;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * BvhBuilder and Bvh traversal over the SyntheticObj height field of a few sizes. The builds and the
+ * refit are timed per call, sequential is the fork/join build on a pool with a single thread. The
+ * traversal scores are rays per second over RAY_COUNT fixed rays from above the field, about a
+ * sixth of them miss it.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BvhBenchmark {
+    private static final int FLAGS = Assimp.aiProcess_FlipUVs | Assimp.aiProcess_DropNormals;
+    private static final int RAY_COUNT = 4096;
+    private static final float T_MIN = 0.001f;
+    private static final float T_MAX = 100.0f;
+
+    @Param({"32", "128", "256"})
+    private int gridSize;
+
+    private final RayHit hit = new RayHit();
+    private final float[] rays = new float[RAY_COUNT * 6];
+    private ForkJoinPool sequentialPool;
+    private BvhBuilder sequentialBuilder;
+    private BvhBuilder parallelBuilder;
+    private float[] positions;
+    private int[] indices;
+    private Bvh bvh;
+    private int[] stack;
+
+    @Setup
+    public void setup() {
+        final GameObject gameObject = GameObjectLoader.toGameObject(ModelLoader.loadModel(SyntheticObj.write(this.gridSize).toFile(), FLAGS));
+
+        this.sequentialPool = new ForkJoinPool(1);
+        this.sequentialBuilder = new BvhBuilder(BvhBuilder.DEFAULT_BIN_COUNT, BvhBuilder.DEFAULT_LEAF_SIZE, this.sequentialPool);
+        this.parallelBuilder = new BvhBuilder();
+        this.positions = BvhBuilder.positionsOf(gameObject);
+        this.indices = gameObject.getIndices();
+        this.bvh = this.parallelBuilder.build(this.positions, this.indices);
+        this.stack = this.bvh.createTraversalStack();
+
+        final Random random = new Random(42);
+
+        for (int i = 0; i < RAY_COUNT; i++) {
+            final int offset = i * 6;
+
+            //origins above the field, targets on a slightly bigger square
+            this.rays[offset] = random.nextFloat() * 2.0f - 1.0f;
+            this.rays[offset + 1] = random.nextFloat() * 2.0f - 1.0f;
+            this.rays[offset + 2] = 1.0f;
+
+            final float dx = random.nextFloat() * 1.1f - 0.55f - this.rays[offset];
+            final float dy = random.nextFloat() * 1.1f - 0.55f - this.rays[offset + 1];
+            final float dz = -1.0f;
+            final float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+            this.rays[offset + 3] = dx / length;
+            this.rays[offset + 4] = dy / length;
+            this.rays[offset + 5] = dz / length;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.sequentialPool.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Bvh buildSequential() {
+        return this.sequentialBuilder.build(this.positions, this.indices);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Bvh buildParallel() {
+        return this.parallelBuilder.build(this.positions, this.indices);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Bvh refit() {
+        this.bvh.refit();
+        return this.bvh;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(RAY_COUNT)
+    public int closestHit() {
+        int hits = 0;
+
+        for (int offset = 0; offset < this.rays.length; offset += 6) {
+            if (this.bvh.intersect(this.rays[offset], this.rays[offset + 1], this.rays[offset + 2],
+                    this.rays[offset + 3], this.rays[offset + 4], this.rays[offset + 5], T_MIN, T_MAX, this.hit, this.stack)) {
+                hits++;
+            }
+        }
+
+        return hits;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(RAY_COUNT)
+    public int occluded() {
+        int hits = 0;
+
+        for (int offset = 0; offset < this.rays.length; offset += 6) {
+            if (this.bvh.occluded(this.rays[offset], this.rays[offset + 1], this.rays[offset + 2],
+                    this.rays[offset + 3], this.rays[offset + 4], this.rays[offset + 5], T_MIN, T_MAX, this.stack)) {
+                hits++;
+            }
+        }
+
+        return hits;
+    }
+}
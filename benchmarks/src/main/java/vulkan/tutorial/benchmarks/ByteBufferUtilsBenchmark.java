@@ -0,0 +1,114 @@
+package vulkan.tutorial.benchmarks;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.ByteBufferUtils;
+import vulkan.tutorial.math.Vertex;
+import vulkan.tutorial.shader.UniformBufferObject;
+import vulkan.tutorial.vulkan.VkGeometryInstanceNV;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The copies VulkanApp does into mapped memory. The destination is a direct buffer, like the
+ * pointer returned by vkMapMemory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteBufferUtilsBenchmark {
+
+    @Param({"1000", "100000"})
+    private int vertexCount;
+
+    private Vertex[] vertices;
+    private int[] indices;
+    private UniformBufferObject uniformBufferObject;
+    private VkGeometryInstanceNV geometryInstance;
+
+    private ByteBuffer vertexBuffer;
+    private ByteBuffer indexBuffer;
+    private ByteBuffer uniformBuffer;
+    private ByteBuffer instanceBuffer;
+
+    @Setup
+    public void setup() {
+        this.vertices = new Vertex[this.vertexCount];
+        for (int i = 0; i < this.vertexCount; i++) {
+            this.vertices[i] = new Vertex(new Vector3f(i, i * 0.5f, i * 0.25f), new Vector3f(1.0f, 1.0f, 1.0f), new Vector2f(i * 0.1f, i * 0.2f));
+        }
+
+        // Roughly two triangles per vertex, like a closed mesh
+        this.indices = new int[this.vertexCount * 6];
+        for (int i = 0; i < this.indices.length; i++) {
+            this.indices[i] = i % this.vertexCount;
+        }
+
+        this.uniformBufferObject = new UniformBufferObject();
+        this.uniformBufferObject.updateCamera(800.0f / 600.0f);
+
+        float[] transform = {
+                1.0f, 0.0f, 0.0f, 0.0f,
+                0.0f, 1.0f, 0.0f, 0.0f,
+                0.0f, 0.0f, 1.0f, 0.0f
+        };
+        this.geometryInstance = new VkGeometryInstanceNV(transform, 0, 0xff, 0, 0, 42L);
+
+        this.vertexBuffer = MemoryUtil.memAlloc(this.vertexCount * Vertex.SIZEOF);
+        this.indexBuffer = MemoryUtil.memAlloc(this.indices.length * Integer.BYTES);
+        this.uniformBuffer = MemoryUtil.memAlloc(UniformBufferObject.SIZEOF);
+        this.instanceBuffer = MemoryUtil.memAlloc(VkGeometryInstanceNV.SIZE_OF);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MemoryUtil.memFree(this.vertexBuffer);
+        MemoryUtil.memFree(this.indexBuffer);
+        MemoryUtil.memFree(this.uniformBuffer);
+        MemoryUtil.memFree(this.instanceBuffer);
+    }
+
+    @Benchmark
+    public ByteBuffer copyVertices() {
+        this.vertexBuffer.clear();
+        ByteBufferUtils.copyIntoBuffer(this.vertexBuffer, this.vertices);
+        return this.vertexBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer copyIndices() {
+        this.indexBuffer.clear();
+        ByteBufferUtils.copyIntoBuffer(this.indexBuffer, this.indices);
+        return this.indexBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer copyUniformBufferObject() {
+        ByteBufferUtils.copyIntoBuffer(this.uniformBuffer, this.uniformBufferObject);
+        return this.uniformBuffer;
+    }
+
+    @Benchmark
+    public ByteBuffer copyGeometryInstance() {
+        this.instanceBuffer.clear();
+        ByteBufferUtils.copyIntoBuffer(this.instanceBuffer, this.geometryInstance);
+        return this.instanceBuffer;
+    }
+}
@@ -0,0 +1,92 @@
+package vulkan.tutorial.benchmarks;
+
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.culling.BoundsHierarchy;
+import vulkan.tutorial.culling.FrustumCuller;
+import vulkan.tutorial.culling.HiZBuffer;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * FrustumCuller over OBJECT_COUNT small boxes scattered around the camera, about a tenth of them in
+ * the frustum. Scores are objects per microsecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CullingBenchmark {
+    private static final int OBJECT_COUNT = 65536;
+    private static final int HI_Z_WIDTH = 256;
+    private static final int HI_Z_HEIGHT = 144;
+
+    private final FrustumCuller culler = new FrustumCuller();
+    private final boolean[] visible = new boolean[OBJECT_COUNT];
+    private float[] bounds;
+    private BoundsHierarchy hierarchy;
+    private HiZBuffer hiZ;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        this.bounds = new float[OBJECT_COUNT * BoundsHierarchy.BOUNDS_STRIDE];
+
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            final int offset = i * BoundsHierarchy.BOUNDS_STRIDE;
+            final float size = 0.5f + random.nextFloat() * 2.0f;
+
+            for (int axis = 0; axis < 3; axis++) {
+                this.bounds[offset + axis] = random.nextFloat() * 400.0f - 200.0f;
+                this.bounds[offset + axis + 3] = this.bounds[offset + axis] + size;
+            }
+        }
+
+        this.hierarchy = BoundsHierarchy.build(this.bounds, OBJECT_COUNT);
+
+        this.culler.setMatrix(new Matrix4f()
+                .perspective((float) Math.toRadians(45), 16.0f / 9.0f, 0.1f, 300.0f)
+                .lookAt(0.0f, 0.0f, 0.0f, 1.0f, 0.1f, 0.2f, 0.0f, 1.0f, 0.0f));
+
+        //a wall over the far half of the depth range
+        final float[] depth = new float[HI_Z_WIDTH * HI_Z_HEIGHT];
+        Arrays.fill(depth, 0.995f);
+        this.hiZ = new HiZBuffer(HI_Z_WIDTH, HI_Z_HEIGHT);
+        this.hiZ.update(depth);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OBJECT_COUNT)
+    public int flat() {
+        this.culler.setOcclusion(null);
+        return this.culler.cull(this.bounds, OBJECT_COUNT, this.visible);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OBJECT_COUNT)
+    public int hierarchy() {
+        this.culler.setOcclusion(null);
+        return this.culler.cull(this.hierarchy, this.bounds, this.visible);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OBJECT_COUNT)
+    public int hierarchyOccluded() {
+        this.culler.setOcclusion(this.hiZ);
+        return this.culler.cull(this.hierarchy, this.bounds, this.visible);
+    }
+}
@@ -0,0 +1,58 @@
+package vulkan.tutorial.benchmarks;
+
+import org.lwjgl.assimp.Assimp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.gameobject.GameObject;
+import vulkan.tutorial.gameobject.GameObjectLoader;
+import vulkan.tutorial.mesh.Model;
+import vulkan.tutorial.mesh.ModelLoader;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Assimp import plus the Model -> GameObject conversion, measured separately so it is visible how
+ * much of the load time is spent in Java.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelLoaderBenchmark {
+
+    private static final int FLAGS = Assimp.aiProcess_FlipUVs | Assimp.aiProcess_DropNormals;
+
+    @Param({"32", "256"})
+    private int gridSize;
+
+    private File file;
+    private Model model;
+
+    @Setup
+    public void setup() {
+        this.file = SyntheticObj.write(this.gridSize).toFile();
+        this.model = ModelLoader.loadModel(this.file, FLAGS);
+    }
+
+    @Benchmark
+    public Model loadModel() {
+        return ModelLoader.loadModel(this.file, FLAGS);
+    }
+
+    @Benchmark
+    public GameObject toGameObject() {
+        return GameObjectLoader.toGameObject(this.model);
+    }
+}
@@ -0,0 +1,82 @@
+package vulkan.tutorial.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import vulkan.tutorial.shader.SPIRV;
+import vulkan.tutorial.shader.ShaderKind;
+import vulkan.tutorial.shader.ShaderSPIRVUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * GLSL -> SPIR-V through shaderc for the shaders the application ships. The sources are read once,
+ * only the compilation is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShaderCompileBenchmark {
+
+    @Param({"shader.vert", "shader.frag", "raytrace.rgen", "raytrace.rmiss", "raytrace.rchit"})
+    private String shader;
+
+    private String source;
+    private ShaderKind shaderKind;
+
+    @Setup
+    public void setup() {
+        try (InputStream inputStream = ShaderCompileBenchmark.class.getClassLoader().getResourceAsStream("shaders/" + this.shader)) {
+            if (inputStream == null) {
+                throw new IllegalStateException("Cant find shader " + this.shader);
+            }
+            this.source = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.shaderKind = shaderKindOf(this.shader);
+    }
+
+    @Benchmark
+    public void compile(Blackhole blackhole) {
+        SPIRV spirv = ShaderSPIRVUtils.compileShader(this.shader, this.source, this.shaderKind);
+        blackhole.consume(spirv.byteCode());
+        spirv.free();
+    }
+
+    private static ShaderKind shaderKindOf(String shader) {
+        String extension = shader.substring(shader.lastIndexOf('.') + 1);
+
+        switch (extension) {
+            case "vert":
+                return ShaderKind.VERTEX_SHADER;
+            case "frag":
+                return ShaderKind.FRAGMENT_SHADER;
+            case "rgen":
+                return ShaderKind.RAYGEN_SHADER;
+            case "rmiss":
+                return ShaderKind.MISS_SHADER;
+            case "rchit":
+                return ShaderKind.CLOSEST_HIT_SHADER;
+            default:
+                throw new IllegalArgumentException("Unknown shader extension: " + extension);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package vulkan.tutorial.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.lod.LodChain;
+import vulkan.tutorial.lod.LodChainBuilder;
+import vulkan.tutorial.lod.QuadricSimplifier;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/*
+ * QuadricSimplifier and LodChainBuilder over GRID_SIZE x GRID_SIZE height fields like the one of
+ * SyntheticObj. Scores are input triangles per second, lodChains builds MESH_COUNT chains in
+ * parallel like GameObjectLoader.toGameObjects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimplifierBenchmark {
+    private static final int GRID_SIZE = 256;
+    private static final int TRIANGLE_COUNT = GRID_SIZE * GRID_SIZE * 2;
+    private static final int MESH_COUNT = 8;
+
+    private final LodChainBuilder builder = new LodChainBuilder();
+    private float[] positions;
+    private float[] texCoords;
+    private int[] indices;
+
+    @Setup
+    public void setup() {
+        final int rowLength = GRID_SIZE + 1;
+        this.positions = new float[rowLength * rowLength * 3];
+        this.texCoords = new float[rowLength * rowLength * 2];
+        this.indices = new int[TRIANGLE_COUNT * 3];
+
+        for (int y = 0; y <= GRID_SIZE; y++) {
+            for (int x = 0; x <= GRID_SIZE; x++) {
+                final int vertex = y * rowLength + x;
+                final float u = (float) x / GRID_SIZE;
+                final float v = (float) y / GRID_SIZE;
+
+                this.positions[vertex * 3] = u - 0.5f;
+                this.positions[vertex * 3 + 1] = v - 0.5f;
+                this.positions[vertex * 3 + 2] = (float) (Math.sin(u * Math.PI * 4.0) * Math.cos(v * Math.PI * 4.0)) * 0.1f;
+                this.texCoords[vertex * 2] = u;
+                this.texCoords[vertex * 2 + 1] = v;
+            }
+        }
+
+        int index = 0;
+        for (int y = 0; y < GRID_SIZE; y++) {
+            for (int x = 0; x < GRID_SIZE; x++) {
+                final int i0 = y * rowLength + x;
+                final int i2 = i0 + rowLength;
+
+                this.indices[index++] = i0;
+                this.indices[index++] = i0 + 1;
+                this.indices[index++] = i2 + 1;
+                this.indices[index++] = i0;
+                this.indices[index++] = i2 + 1;
+                this.indices[index++] = i2;
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIANGLE_COUNT)
+    public int simplifyHalf() {
+        QuadricSimplifier simplifier = new QuadricSimplifier(this.positions, this.texCoords, 2, this.indices);
+        return simplifier.simplify(this.indices.length / 2, Float.MAX_VALUE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIANGLE_COUNT)
+    public LodChain lodChain() {
+        return this.builder.build(this.positions, this.texCoords, 2, this.indices);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIANGLE_COUNT * MESH_COUNT)
+    public List<LodChain> lodChains() {
+        return IntStream.range(0, MESH_COUNT)
+                .parallel()
+                .mapToObj(mesh -> this.builder.build(this.positions, this.texCoords, 2, this.indices))
+                .collect(Collectors.toList());
+    }
+}
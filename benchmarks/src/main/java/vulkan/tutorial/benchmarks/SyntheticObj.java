@@ -0,0 +1,59 @@
+package vulkan.tutorial.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/*
+ * Writes a gridSize x gridSize height field as Wavefront OBJ so the loader benchmarks do not depend
+ * on model files that are not part of the repository.
+ */
+class SyntheticObj {
+
+    private SyntheticObj() {
+        //Util class
+    }
+
+    static Path write(int gridSize) {
+        try {
+            Path file = Files.createTempFile("synthetic-" + gridSize, ".obj");
+            file.toFile().deleteOnExit();
+
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+                final int rowLength = gridSize + 1;
+
+                for (int y = 0; y <= gridSize; y++) {
+                    for (int x = 0; x <= gridSize; x++) {
+                        final float u = (float) x / gridSize;
+                        final float v = (float) y / gridSize;
+                        final float height = (float) (Math.sin(u * Math.PI * 4.0) * Math.cos(v * Math.PI * 4.0)) * 0.1f;
+
+                        writer.write(String.format(Locale.ROOT, "v %f %f %f%n", u - 0.5f, v - 0.5f, height));
+                        writer.write(String.format(Locale.ROOT, "vt %f %f%n", u, v));
+                    }
+                }
+
+                for (int y = 0; y < gridSize; y++) {
+                    for (int x = 0; x < gridSize; x++) {
+                        // OBJ indices are 1-based
+                        final int i0 = y * rowLength + x + 1;
+                        final int i1 = i0 + 1;
+                        final int i2 = i0 + rowLength;
+                        final int i3 = i2 + 1;
+
+                        writer.write(String.format(Locale.ROOT, "f %d/%d %d/%d %d/%d%n", i0, i0, i1, i1, i3, i3));
+                        writer.write(String.format(Locale.ROOT, "f %d/%d %d/%d %d/%d%n", i0, i0, i3, i3, i2, i2));
+                    }
+                }
+            }
+
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write synthetic model", e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package vulkan.tutorial.benchmarks;
+
+import org.joml.Matrix4f;
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.scene.DrawInstanceWriter;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.scene.SceneAnimation;
+import vulkan.tutorial.scene.TransformStore;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One frame of transforms for OBJECT_COUNT instances: the spin animation writing every local
+ * transform, the world matrix pass of the TransformStore and the copy into the instance buffer of
+ * the raster path. The hierarchy scene hangs three children below every root. Scores are objects per
+ * microsecond.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformBenchmark {
+    private static final int OBJECT_COUNT = 100_000;
+    private static final int CHILDREN = 3;
+
+    private final BitSet pending = new BitSet(OBJECT_COUNT);
+    private Scene flat;
+    private Scene hierarchy;
+    private SceneAnimation flatSpin;
+    private SceneAnimation hierarchySpin;
+    private ByteBuffer instances;
+    private double seconds;
+
+    @Setup
+    public void setup() {
+        this.flat = Scene.createGrid(0, OBJECT_COUNT, 2.0f);
+        this.flatSpin = SceneAnimation.spin(this.flat, 1.0f);
+
+        this.hierarchy = new Scene();
+        final Matrix4f transform = new Matrix4f();
+
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            final int parent = i % (CHILDREN + 1) == 0 ? TransformStore.NO_PARENT : i - 1;
+            this.hierarchy.addInstance(0, parent, transform.translation(i * 0.01f, 1.0f, 0.0f));
+        }
+
+        this.hierarchySpin = SceneAnimation.spin(this.hierarchy, 1.0f);
+        this.instances = MemoryUtil.memAlloc(OBJECT_COUNT * DrawInstanceWriter.INSTANCE_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MemoryUtil.memFree(this.instances);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OBJECT_COUNT)
+    public BitSet flatFrame() {
+        return frame(this.flat, this.flatSpin);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OBJECT_COUNT)
+    public BitSet hierarchyFrame() {
+        return frame(this.hierarchy, this.hierarchySpin);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OBJECT_COUNT)
+    public ByteBuffer writeInstances() {
+        DrawInstanceWriter.write(this.flat, this.instances);
+        return this.instances;
+    }
+
+    private BitSet frame(Scene scene, SceneAnimation animation) {
+        this.seconds += 1.0 / 60.0;
+        animation.animate(scene, this.seconds);
+
+        this.pending.clear();
+        scene.drainDirty(this.pending);
+
+        return this.pending;
+    }
+}
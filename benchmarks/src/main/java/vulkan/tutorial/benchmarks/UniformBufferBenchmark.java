@@ -0,0 +1,57 @@
+package vulkan.tutorial.benchmarks;
+
+import org.lwjgl.system.MemoryUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vulkan.tutorial.ByteBufferUtils;
+import vulkan.tutorial.shader.UniformBufferObject;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The per frame work of VulkanApp.updateUniformBuffer without the vkMapMemory/vkUnmapMemory calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniformBufferBenchmark {
+
+    private final UniformBufferObject uniformBufferObject = new UniformBufferObject();
+    private ByteBuffer uniformBuffer;
+
+    @Setup
+    public void setup() {
+        this.uniformBuffer = MemoryUtil.memAlloc(UniformBufferObject.SIZEOF);
+    }
+
+    @TearDown
+    public void tearDown() {
+        MemoryUtil.memFree(this.uniformBuffer);
+    }
+
+    @Benchmark
+    public UniformBufferObject updateCamera() {
+        this.uniformBufferObject.updateCamera(800.0f / 600.0f);
+        return this.uniformBufferObject;
+    }
+
+    @Benchmark
+    public ByteBuffer updateUniformBuffer() {
+        this.uniformBufferObject.updateCamera(800.0f / 600.0f);
+        ByteBufferUtils.copyIntoBuffer(this.uniformBuffer, this.uniformBufferObject);
+        return this.uniformBuffer;
+    }
+}
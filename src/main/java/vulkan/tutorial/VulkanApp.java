@@ -1,26 +1,59 @@
 package vulkan.tutorial;
 
-import org.joml.Vector3f;
 import org.lwjgl.PointerBuffer;
-import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWVulkan;
 import org.lwjgl.stb.STBImage;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.vulkan.*;
+import vulkan.tutorial.accumulation.AccumulationState;
+import vulkan.tutorial.culling.CullPass;
+import vulkan.tutorial.culling.DrawCompactor;
+import vulkan.tutorial.denoise.AtrousFilter;
+import vulkan.tutorial.denoise.DenoisePass;
 import vulkan.tutorial.gameobject.GameObject;
 import vulkan.tutorial.gameobject.GameObjectLoader;
+import vulkan.tutorial.gameobject.MeshPool;
+import vulkan.tutorial.headless.HeadlessConfig;
+import vulkan.tutorial.input.WindowEventQueue;
+import vulkan.tutorial.jobs.FrameGraph;
+import vulkan.tutorial.jobs.JobSystem;
+import vulkan.tutorial.lod.LodSelector;
 import vulkan.tutorial.lwjgl.LwjglAdapter;
 import vulkan.tutorial.math.Vertex;
+import vulkan.tutorial.math.VertexFormat;
+import vulkan.tutorial.math.VertexLayout;
+import vulkan.tutorial.math.VertexPacker;
+import vulkan.tutorial.metrics.FrameMetrics;
+import vulkan.tutorial.metrics.FramePhase;
+import vulkan.tutorial.metrics.GpuPhase;
+import vulkan.tutorial.metrics.GpuTimer;
+import vulkan.tutorial.metrics.MetricsSnapshot;
+import vulkan.tutorial.metrics.PhaseTimer;
+import vulkan.tutorial.present.FrameLimiter;
+import vulkan.tutorial.present.PresentMode;
+import vulkan.tutorial.present.PresentPolicy;
+import vulkan.tutorial.raytracing.RayTracingApi;
+import vulkan.tutorial.raytracing.RayTracingBackend;
+import vulkan.tutorial.raytracing.ShaderBindingTable;
+import vulkan.tutorial.raytracing.ShaderBindingTableLayout;
+import vulkan.tutorial.resolution.ResolutionController;
+import vulkan.tutorial.scene.DrawInstanceWriter;
+import vulkan.tutorial.scene.InstanceBufferWriter;
+import vulkan.tutorial.scene.InstanceUploader;
+import vulkan.tutorial.scene.Scene;
 import vulkan.tutorial.shader.SPIRV;
 import vulkan.tutorial.shader.ShaderKind;
 import vulkan.tutorial.shader.ShaderSPIRVUtils;
 import vulkan.tutorial.shader.UniformBufferObject;
+import vulkan.tutorial.tonemap.TonemapPass;
+import vulkan.tutorial.tonemap.Tonemapper;
 import vulkan.tutorial.vulkan.*;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.LongBuffer;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static vulkan.tutorial.vulkan.ValidationLayers.ENABLE_VALIDATION_LAYERS;
 
@@ -53,18 +86,69 @@ class VulkanApp {
         #commandBuffers -> same size as swapChainImages
     */
 
-    private static final Set<String> REQUIRED_DEVICE_EXTENSIONS = Set.of(KHRSwapchain.VK_KHR_SWAPCHAIN_EXTENSION_NAME, NVRayTracing.VK_NV_RAY_TRACING_EXTENSION_NAME);
+    //The ray tracing extensions come from the RayTracingApi the device supports
+    private static final Set<String> REQUIRED_DEVICE_EXTENSIONS = Set.of(KHRSwapchain.VK_KHR_SWAPCHAIN_EXTENSION_NAME);
+    //UNORM so tonemap.comp can store into it, sRGB for the raster path to match the windowed output
+    private static final int HEADLESS_RT_IMAGE_FORMAT = VK10.VK_FORMAT_R8G8B8A8_UNORM;
+    //what tonemap.comp writes, storage support for it is mandatory
+    private static final int DISPLAY_IMAGE_FORMAT = VK10.VK_FORMAT_R8G8B8A8_UNORM;
+    private static final int HEADLESS_RASTER_IMAGE_FORMAT = VK10.VK_FORMAT_R8G8B8A8_SRGB;
+    private static final int READBACK_PIXEL_SIZE = 4;
     private static final int UINT32_MAX = 0xFFFFFFFF;
     private static final int MAX_FRAMES_IN_FLIGHT = 2;
+    //Shader groups of the RT pipeline
+    private static final int RAY_GEN_GROUP = 0;
+    private static final int MISS_GROUP = 1;
+    private static final int CLOSEST_HIT_GROUP = 2;
+    //Inline data of a hit group record: uint materialIndex
+    private static final int HIT_RECORD_DATA_SIZE = Integer.BYTES;
     private static final long NO_TIMEOUT = 0xFFFFFFFFFFFFFFFFL; // UINT64_MAX
-    private final boolean rtxOn = true;
+    //the render thread looks at the close flag this often while the window is minimized
+    private static final long MINIMIZED_WAIT_NANOS = 100_000_000L;
+    private final HeadlessConfig headlessConfig;
+    private final FrameMetrics frameMetrics;
+    private final Scene scene;
+    private final AccumulationState accumulation;
+    private final AtrousFilter denoiseFilter;
+    private final Tonemapper tonemapper;
+    private final ResolutionController resolutionController;
+    private final VertexLayout vertexLayout;
+    private final JobSystem jobSystem;
+    private final PresentPolicy presentPolicy;
+    private final FrameLimiter frameLimiter;
+    //the mode of the current swapchain, null before the first one
+    private PresentMode presentMode;
+    //when the input job of the frame ran, and the oldest key or button event it took over, -1 for none
+    private long inputSampleNanos;
+    private long oldestEventNanos = -1L;
+    //the CPU work of a frame, built once the device exists
+    private FrameGraph frameGraph;
+    private int frameImageIndex;
+    //the swapchain was out of date, the jobs after acquire have nothing to do
+    private boolean frameSkipped;
+    private long frameNumber;
+    //render thread state of the window, from the events of the main thread
+    private final WindowEventQueue.Handler windowEventHandler = this::handleWindowEvent;
+    private int framebufferWidth;
+    private int framebufferHeight;
+    private boolean windowResized;
+    private volatile Throwable renderFailure;
+    private GpuTimer gpuTimer;
+    private int graphicsQueueFamily;
+    private boolean rtxOn = true;
+    private RayTracingApi rayTracingApi;
+    private RayTracingBackend rayTracing;
     private VkInstance vkInstance;
     private long surface;
     private VkPhysicalDevice vkPhysicalDevice;
+    private Set<String> deviceExtensions;
     private VkDevice vkDevice;
     private VkQueue vkGraphicsQueue;
     private VkQueue vkPresentQueue;
     private long swapChain;
+    //handed to the last swapchain as oldSwapchain, destroyed once its presents are through
+    private long retiredSwapChain = VK10.VK_NULL_HANDLE;
+    private int retiredSwapChainPresents;
     private List<Long> swapChainImages;
     private List<Long> swapChainImageViews;
     private int swapChainImageFormat;
@@ -98,36 +182,106 @@ class VulkanApp {
     private GameObject sceneObject;
     private long vertexBuffer;
     private long vertexBufferMemory;
+    private VertexFormat vertexFormat;
     private long indexBuffer;
     private long indexBufferMemory;
     private long rtVertexBuffer;
     private long rtVertexBufferMemory;
     private long rtIndexBuffer;
     private long rtIndexBufferMemory;
+    private ByteBuffer rtVertexData;
+    private ByteBuffer rtIndexData;
     private List<Long> uniformBuffers;
     private List<Long> uniformBuffersMemory;
+    //the raster path draws every cluster of every scene instance that cull.comp leaves
+    private MeshPool meshPool;
+    private boolean multiDrawIndirect;
+    private boolean drawIndirectCount;
+    //cull.comp picks the draws, without drawIndirectFirstInstance every instance is drawn whole at LOD 0
+    private boolean gpuCulling;
+    private long meshBuffer;
+    private long meshBufferMemory;
+    private long clusterBuffer;
+    private long clusterBufferMemory;
+    private int maxDrawCount;
+    private long[] drawBuffers;
+    private long[] drawBuffersMemory;
+    private long[] drawCountBuffers;
+    private long[] drawCountBuffersMemory;
+    private CullPass cullPass;
+    private final LodSelector lodSelector = new LodSelector();
     private List<Frame> inFlightFrames;
     private Map<Integer, Frame> imagesInFlight;
     private int currentFrame;
-    private long blas;
-    private long blasMemory;
-    private long tlas;
-    private long tlasMemory;
+    private long instanceBuffer;
+    private long instanceBufferMemory;
+    private InstanceUploader instanceUploader;
+    private final long startTime = System.nanoTime();
     private long rtStorageImage;
     private long rtStorageImageMemory;
     private long rtStorageImageView;
+    private long rtAccumulationImage;
+    private long rtAccumulationImageMemory;
+    private long rtAccumulationImageView;
+    private long rtMomentsImage;
+    private long rtMomentsImageMemory;
+    private long rtMomentsImageView;
+    private long rtNormalDepthImage;
+    private long rtNormalDepthImageMemory;
+    private long rtNormalDepthImageView;
+    private long rtAlbedoImage;
+    private long rtAlbedoImageMemory;
+    private long rtAlbedoImageView;
+    private final long[] denoiseImages = new long[2];
+    private final long[] denoiseImagesMemory = new long[2];
+    private final long[] denoiseImageViews = new long[2];
+    private DenoisePass denoisePass;
+    //the tonemap pass writes the swapchain images, otherwise one display image per swapchain image is copied over
+    private boolean tonemapDirect;
+    private long[] displayImages;
+    private long[] displayImagesMemory;
+    private long[] displayImageViews;
+    private TonemapPass tonemapPass;
+    //traced part of the ray tracing images, the swapchain extent unless the resolution is dynamic
+    private int renderWidth;
+    private int renderHeight;
+    private int[] recordedRenderWidths;
+    private int[] recordedRenderHeights;
+    private List<Long> accumulationBuffers;
+    private List<Long> accumulationBuffersMemory;
+    //samples per frame of the last submission of every image, for the trace time budget
+    private int[] tracedSamples;
     private long rtPipelineLayout;
     private long rtPipeline;
-    private long sbtBuffer;
-    private long sbtBufferMemory;
-    private int groupHandleSize;
-    private int groupAlignment;
+    private ShaderBindingTable shaderBindingTable;
     private int groupCount;
-    private int sbtSize;
+    private List<Long> offscreenImagesMemory;
+    private List<Long> readbackBuffers;
+    private List<Long> readbackBuffersMemory;
+    private List<ByteBuffer> readbackData;
+    private long[] readbackFrameNumbers;
+
+    VulkanApp() {
+        this(VulkanAppOptions.createDefault());
+    }
+
+    VulkanApp(VulkanAppOptions options) {
+        this.headlessConfig = options.getHeadlessConfig();
+        this.frameMetrics = new FrameMetrics(options.getMetricsExporter());
+        this.scene = options.getScene();
+        this.accumulation = new AccumulationState(options.getAccumulationConfig());
+        this.denoiseFilter = options.getDenoiseFilter();
+        this.tonemapper = options.getTonemapper();
+        this.resolutionController = options.getResolutionController();
+        this.vertexLayout = options.getVertexLayout();
+        this.jobSystem = options.getJobSystem();
+        this.presentPolicy = options.getPresentPolicy();
+        this.frameLimiter = new FrameLimiter(this.presentPolicy.getFrameNanos());
+    }
 
     private static long createTextureSampler(VkDevice vkDevice, int mipLevels) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkSamplerCreateInfo samplerCreateInfo = VkSamplerCreateInfo.callocStack(stack);
+            VkSamplerCreateInfo samplerCreateInfo = VkSamplerCreateInfo.calloc(stack);
             samplerCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_SAMPLER_CREATE_INFO);
             samplerCreateInfo.magFilter(VK10.VK_FILTER_LINEAR);
             samplerCreateInfo.minFilter(VK10.VK_FILTER_LINEAR);
@@ -183,28 +337,65 @@ class VulkanApp {
             VkPhysicalDevice device = null;
 
             for (int i = 0; i < ppPhysicalDevices.capacity(); i++) {
-                device = new VkPhysicalDevice(ppPhysicalDevices.get(i), vkInstance);
+                VkPhysicalDevice candidate = new VkPhysicalDevice(ppPhysicalDevices.get(i), vkInstance);
 
-                if (VulkanUtils.isDeviceSuitable(device, surface, REQUIRED_DEVICE_EXTENSIONS)) {
+                if (VulkanUtils.isDeviceSuitable(candidate, surface, REQUIRED_DEVICE_EXTENSIONS) && RayTracingApi.select(candidate) != null) {
+                    device = candidate;
                     break;
                 }
             }
 
             if (device == null) {
-                throw new RuntimeException("Failed to find a suitable GPU");
+                throw new RuntimeException("Failed to find a suitable GPU, use --software to render on the CPU");
+            }
+
+            return device;
+        }
+    }
+
+    private static VkPhysicalDevice pickHeadlessPhysicalDevice(VkInstance vkInstance) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer deviceCount = stack.ints(0);
+            VK10.vkEnumeratePhysicalDevices(vkInstance, deviceCount, null);
+
+            if (deviceCount.get(0) == 0) {
+                throw new RuntimeException("Failed to find GPUs with Vulkan support");
+            }
+
+            PointerBuffer ppPhysicalDevices = stack.mallocPointer(deviceCount.get(0));
+
+            VK10.vkEnumeratePhysicalDevices(vkInstance, deviceCount, ppPhysicalDevices);
+
+            VkPhysicalDevice device = null;
+
+            //prefer a device that can ray trace, any device with a graphics queue will do otherwise (e.g. lavapipe falls back to the raster pipeline)
+            for (int i = 0; i < ppPhysicalDevices.capacity(); i++) {
+                VkPhysicalDevice candidate = new VkPhysicalDevice(ppPhysicalDevices.get(i), vkInstance);
+
+                if (!VulkanUtils.isHeadlessDeviceSuitable(candidate)) {
+                    continue;
+                }
+
+                if (device == null || RayTracingApi.select(candidate) != null) {
+                    device = candidate;
+                }
+            }
+
+            if (device == null) {
+                throw new RuntimeException("Failed to find a suitable GPU, use --software to render on the CPU");
             }
 
             return device;
         }
     }
 
-    private static VkInstance createInstance(String appName, int appVersion, String engineName, int engineVersion, int vkApiVersion) {
+    private static VkInstance createInstance(String appName, int appVersion, String engineName, int engineVersion, int vkApiVersion, boolean headless) {
         if (ValidationLayers.ENABLE_VALIDATION_LAYERS && !ValidationLayers.checkValidationLayerSupport()) {
             throw new RuntimeException("Validation requested but not supported");
         }
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkApplicationInfo appInfo = VkApplicationInfo.callocStack(stack);
+            VkApplicationInfo appInfo = VkApplicationInfo.calloc(stack);
 
             appInfo.sType(VK10.VK_STRUCTURE_TYPE_APPLICATION_INFO);
             appInfo.pApplicationName(stack.UTF8Safe(appName));
@@ -215,16 +406,16 @@ class VulkanApp {
 
             IntBuffer extensionCount = stack.mallocInt(1);
             VK10.vkEnumerateInstanceExtensionProperties((ByteBuffer) null, extensionCount, null);
-            VkExtensionProperties.Buffer buffer = VkExtensionProperties.mallocStack(extensionCount.get(0), stack);
+            VkExtensionProperties.Buffer buffer = VkExtensionProperties.malloc(extensionCount.get(0), stack);
             VK10.vkEnumerateInstanceExtensionProperties((ByteBuffer) null, extensionCount, buffer);
 
             buffer.forEach(extensionProperty -> System.out.println(extensionProperty.extensionNameString()));
 
-            VkInstanceCreateInfo createInfo = VkInstanceCreateInfo.callocStack(stack);
+            VkInstanceCreateInfo createInfo = VkInstanceCreateInfo.calloc(stack);
             createInfo.sType(VK10.VK_STRUCTURE_TYPE_INSTANCE_CREATE_INFO);
             createInfo.pApplicationInfo(appInfo);
 
-            createInfo.ppEnabledExtensionNames(VulkanUtils.fetchMandatoryExtensions());
+            createInfo.ppEnabledExtensionNames(headless ? VulkanUtils.fetchHeadlessExtensions() : VulkanUtils.fetchMandatoryExtensions());
 
             if (ValidationLayers.ENABLE_VALIDATION_LAYERS) {
                 createInfo.ppEnabledLayerNames(LwjglAdapter.asPointBuffer(ValidationLayers.VALIDATION_LAYERS));
@@ -245,7 +436,7 @@ class VulkanApp {
     }
 
     private static VkDeviceQueueCreateInfo.Buffer createQueueCreateInfos(MemoryStack stack, int[] uniqueQueueFamilies) {
-        VkDeviceQueueCreateInfo.Buffer queueCreateInfos = VkDeviceQueueCreateInfo.callocStack(uniqueQueueFamilies.length, stack);
+        VkDeviceQueueCreateInfo.Buffer queueCreateInfos = VkDeviceQueueCreateInfo.calloc(uniqueQueueFamilies.length, stack);
 
         for (int i = 0; i < uniqueQueueFamilies.length; i++) {
             VkDeviceQueueCreateInfo queueCreateInfo = queueCreateInfos.get(i);
@@ -260,7 +451,7 @@ class VulkanApp {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             BarrierHelper result = BarrierHelper.createBarrierHelper(image, format, oldLayout, newLayout, mipMapLevels, stack);
 
-            VkCommandBuffer commandBuffer = beginSingleTimeCommands(vkDevice, commandPool);
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(vkDevice, commandPool);
 
             VK10.vkCmdPipelineBarrier(commandBuffer, result.getSourceStage(), result.getDestinationStage(),
                     0,
@@ -268,7 +459,7 @@ class VulkanApp {
                     null,
                     result.getBarrier());
 
-            endSingleTimeCommands(commandBuffer, vkDevice, commandPool, vkGraphicsQueue);
+            VulkanUtils.endSingleTimeCommands(commandBuffer, vkDevice, commandPool, vkGraphicsQueue);
         }
     }
 
@@ -285,7 +476,7 @@ class VulkanApp {
 
     private static void createImage(VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice, int width, int height, int format, int tiling, int usage, int memProperties, LongBuffer pTextureImage, LongBuffer pTextureImageMemory, int mipMapLevels, int msaaSamplesNum) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkImageCreateInfo imageInfo = VkImageCreateInfo.callocStack(stack);
+            VkImageCreateInfo imageInfo = VkImageCreateInfo.calloc(stack);
             imageInfo.sType(VK10.VK_STRUCTURE_TYPE_IMAGE_CREATE_INFO);
             imageInfo.imageType(VK10.VK_IMAGE_TYPE_2D);
             imageInfo.extent().width(width);
@@ -304,10 +495,10 @@ class VulkanApp {
                 throw new RuntimeException("Failed to create image");
             }
 
-            VkMemoryRequirements memoryRequirements = VkMemoryRequirements.mallocStack(stack);
+            VkMemoryRequirements memoryRequirements = VkMemoryRequirements.malloc(stack);
             VK10.vkGetImageMemoryRequirements(vkDevice, pTextureImage.get(0), memoryRequirements);
 
-            VkMemoryAllocateInfo allocateInfo = VkMemoryAllocateInfo.callocStack(stack);
+            VkMemoryAllocateInfo allocateInfo = VkMemoryAllocateInfo.calloc(stack);
             allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_ALLOCATE_INFO);
             allocateInfo.allocationSize(memoryRequirements.size());
             allocateInfo.memoryTypeIndex(VulkanUtils.extractTheCorrectMemoryTypeFromPhysicalDevice(memoryRequirements.memoryTypeBits(), memProperties, vkPhysicalDevice));
@@ -320,57 +511,13 @@ class VulkanApp {
         }
     }
 
-    private static VkCommandBuffer beginSingleTimeCommands(VkDevice vkDevice, long commandPool) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkCommandBufferAllocateInfo allocateInfo = VkCommandBufferAllocateInfo.callocStack(stack);
-            allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_ALLOCATE_INFO);
-            allocateInfo.level(VK10.VK_COMMAND_BUFFER_LEVEL_PRIMARY);
-            allocateInfo.commandPool(commandPool);
-            allocateInfo.commandBufferCount(1);
-
-            PointerBuffer pCommandBuffer = stack.mallocPointer(1);
-            VK10.vkAllocateCommandBuffers(vkDevice, allocateInfo, pCommandBuffer);
-
-            VkCommandBuffer commandBuffer = new VkCommandBuffer(pCommandBuffer.get(0), vkDevice);
-            VkCommandBufferBeginInfo beginInfo = VkCommandBufferBeginInfo.callocStack(stack);
-            beginInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_BEGIN_INFO);
-            beginInfo.flags(VK10.VK_COMMAND_BUFFER_USAGE_ONE_TIME_SUBMIT_BIT);
-
-            VK10.vkBeginCommandBuffer(commandBuffer, beginInfo);
-
-            return commandBuffer;
-        }
-    }
-
-    private static void endSingleTimeCommands(VkCommandBuffer commandBuffer, VkDevice vkDevice, long commandPool, VkQueue vkQueue) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            VK10.vkEndCommandBuffer(commandBuffer);
-
-            VkSubmitInfo.Buffer submitInfo = VkSubmitInfo.callocStack(1, stack);
-            submitInfo.sType(VK10.VK_STRUCTURE_TYPE_SUBMIT_INFO);
-            submitInfo.pCommandBuffers(stack.pointers(commandBuffer));
-
-            int returnCode = VK10.vkQueueSubmit(vkQueue, submitInfo, VK10.VK_NULL_HANDLE);
-
-            if (returnCode != VK10.VK_SUCCESS) {
-                throw new RuntimeException("Queue submit returned the failure code: " + returnCode);
-            }
-
-            returnCode = VK10.vkQueueWaitIdle(vkQueue);
-
-            if (returnCode != VK10.VK_SUCCESS) {
-                throw new RuntimeException("Wait for Queue returned the failure code: " + returnCode);
-            }
-
-            VK10.vkFreeCommandBuffers(vkDevice, commandPool, commandBuffer);
-        }
-    }
-
     private static long createCommandPool(VkDevice vkDevice, QueueFamilyIndices queueFamilyIndices) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkCommandPoolCreateInfo poolInfo = VkCommandPoolCreateInfo.callocStack(stack);
+            VkCommandPoolCreateInfo poolInfo = VkCommandPoolCreateInfo.calloc(stack);
             poolInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_POOL_CREATE_INFO);
             poolInfo.queueFamilyIndex(queueFamilyIndices.getGraphicsFamily());
+            //ray tracing command buffers are recorded again when the render extent changes
+            poolInfo.flags(VK10.VK_COMMAND_POOL_CREATE_RESET_COMMAND_BUFFER_BIT);
 
             LongBuffer pCommandPool = stack.mallocLong(1);
 
@@ -382,23 +529,29 @@ class VulkanApp {
         }
     }
 
-    private static VkDevice createLogicalDevice(VkPhysicalDevice vkPhysicalDevice, QueueFamilyIndices queueFamilyIndices) {
+    private static VkDevice createLogicalDevice(VkPhysicalDevice vkPhysicalDevice, QueueFamilyIndices queueFamilyIndices, Set<String> deviceExtensions, RayTracingApi rayTracingApi, boolean multiDrawIndirect, boolean drawIndirectFirstInstance) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             int[] uniqueQueueFamilies = queueFamilyIndices.unique();
 
             VkDeviceQueueCreateInfo.Buffer queueCreateInfos = createQueueCreateInfos(stack, uniqueQueueFamilies);
 
-            VkPhysicalDeviceFeatures deviceFeatures = VkPhysicalDeviceFeatures.callocStack(stack);
+            VkPhysicalDeviceFeatures deviceFeatures = VkPhysicalDeviceFeatures.calloc(stack);
             deviceFeatures.samplerAnisotropy(true);
             deviceFeatures.sampleRateShading(true); // Enable sample shading feature for the device
+            deviceFeatures.multiDrawIndirect(multiDrawIndirect);
+            deviceFeatures.drawIndirectFirstInstance(drawIndirectFirstInstance);
 
-            VkDeviceCreateInfo createInfo = VkDeviceCreateInfo.callocStack(stack);
+            VkDeviceCreateInfo createInfo = VkDeviceCreateInfo.calloc(stack);
             createInfo.sType(VK10.VK_STRUCTURE_TYPE_DEVICE_CREATE_INFO);
             createInfo.pQueueCreateInfos(queueCreateInfos);
 
             createInfo.pEnabledFeatures(deviceFeatures);
 
-            createInfo.ppEnabledExtensionNames(LwjglAdapter.asPointBuffer(REQUIRED_DEVICE_EXTENSIONS));
+            if (rayTracingApi != null) {
+                createInfo.pNext(rayTracingApi.enableFeatures(vkPhysicalDevice, stack));
+            }
+
+            createInfo.ppEnabledExtensionNames(LwjglAdapter.asPointBuffer(deviceExtensions));
 
             if (ValidationLayers.ENABLE_VALIDATION_LAYERS) {
                 createInfo.ppEnabledLayerNames(LwjglAdapter.asPointBuffer(ValidationLayers.VALIDATION_LAYERS));
@@ -431,38 +584,10 @@ class VulkanApp {
         }
     }
 
-    private static void createAllocateBindBuffer(long size, int usage, int properties, LongBuffer pBuffer, LongBuffer pBufferMemory, VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice) {
+    private static long createRenderPass(int swapChainImageFormat, int msaaSamples, int finalLayout, VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkBufferCreateInfo bufferCreateInfo = VkBufferCreateInfo.callocStack(stack);
-            bufferCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_BUFFER_CREATE_INFO);
-            bufferCreateInfo.size(size);
-            bufferCreateInfo.usage(usage);
-            bufferCreateInfo.sharingMode(VK10.VK_SHARING_MODE_EXCLUSIVE);
-
-            if (VK10.vkCreateBuffer(vkDevice, bufferCreateInfo, null, pBuffer) != VK10.VK_SUCCESS) {
-                throw new RuntimeException("Failed to create buffer");
-            }
-
-            VkMemoryRequirements memoryRequirements = VkMemoryRequirements.mallocStack(stack);
-            VK10.vkGetBufferMemoryRequirements(vkDevice, pBuffer.get(0), memoryRequirements);
-
-            VkMemoryAllocateInfo allocateInfo = VkMemoryAllocateInfo.callocStack(stack);
-            allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_ALLOCATE_INFO);
-            allocateInfo.allocationSize(memoryRequirements.size());
-            allocateInfo.memoryTypeIndex(VulkanUtils.extractTheCorrectMemoryTypeFromPhysicalDevice(memoryRequirements.memoryTypeBits(), properties, vkPhysicalDevice));
-
-            if (VK10.vkAllocateMemory(vkDevice, allocateInfo, null, pBufferMemory) != VK10.VK_SUCCESS) {
-                throw new RuntimeException("Failed to allocate vertex buffer memory");
-            }
-
-            VK10.vkBindBufferMemory(vkDevice, pBuffer.get(0), pBufferMemory.get(0), 0);
-        }
-    }
-
-    private static long createRenderPass(int swapChainImageFormat, int msaaSamples, VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkAttachmentDescription.Buffer attachments = VkAttachmentDescription.callocStack(3, stack);
-            VkAttachmentReference.Buffer attachmentRefs = VkAttachmentReference.callocStack(3, stack);
+            VkAttachmentDescription.Buffer attachments = VkAttachmentDescription.calloc(3, stack);
+            VkAttachmentReference.Buffer attachmentRefs = VkAttachmentReference.calloc(3, stack);
 
             //Color attachments start
 
@@ -490,7 +615,7 @@ class VulkanApp {
             colorAttachmentResolve.stencilLoadOp(VK10.VK_ATTACHMENT_LOAD_OP_DONT_CARE);
             colorAttachmentResolve.stencilStoreOp(VK10.VK_ATTACHMENT_STORE_OP_DONT_CARE);
             colorAttachmentResolve.initialLayout(VK10.VK_IMAGE_LAYOUT_UNDEFINED);
-            colorAttachmentResolve.finalLayout(KHRSwapchain.VK_IMAGE_LAYOUT_PRESENT_SRC_KHR);
+            colorAttachmentResolve.finalLayout(finalLayout);
 
             VkAttachmentReference colorAttachmentResolveRef = attachmentRefs.get(2);
             colorAttachmentResolveRef.attachment(2);
@@ -514,14 +639,14 @@ class VulkanApp {
 
             //Attachments end
 
-            VkSubpassDescription.Buffer subpass = VkSubpassDescription.callocStack(1, stack);
+            VkSubpassDescription.Buffer subpass = VkSubpassDescription.calloc(1, stack);
             subpass.pipelineBindPoint(VK10.VK_PIPELINE_BIND_POINT_GRAPHICS);
             subpass.colorAttachmentCount(1);
-            subpass.pColorAttachments(VkAttachmentReference.callocStack(1, stack).put(0, colorAttachmentRef));
+            subpass.pColorAttachments(VkAttachmentReference.calloc(1, stack).put(0, colorAttachmentRef));
             subpass.pDepthStencilAttachment(depthAttachmentRef);
-            subpass.pResolveAttachments(VkAttachmentReference.callocStack(1, stack).put(0, colorAttachmentResolveRef));
+            subpass.pResolveAttachments(VkAttachmentReference.calloc(1, stack).put(0, colorAttachmentResolveRef));
 
-            VkSubpassDependency.Buffer dependency = VkSubpassDependency.callocStack(1, stack);
+            VkSubpassDependency.Buffer dependency = VkSubpassDependency.calloc(1, stack);
             dependency.srcSubpass(VK10.VK_SUBPASS_EXTERNAL);
             dependency.dstSubpass(0);
             dependency.srcStageMask(VK10.VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT);
@@ -529,7 +654,7 @@ class VulkanApp {
             dependency.dstStageMask(VK10.VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT);
             dependency.dstAccessMask(VK10.VK_ACCESS_COLOR_ATTACHMENT_READ_BIT | VK10.VK_ACCESS_COLOR_ATTACHMENT_WRITE_BIT);
 
-            VkRenderPassCreateInfo renderPassInfo = VkRenderPassCreateInfo.callocStack(stack);
+            VkRenderPassCreateInfo renderPassInfo = VkRenderPassCreateInfo.calloc(stack);
             renderPassInfo.sType(VK10.VK_STRUCTURE_TYPE_RENDER_PASS_CREATE_INFO);
             renderPassInfo.pAttachments(attachments);
             renderPassInfo.pSubpasses(subpass);
@@ -545,17 +670,15 @@ class VulkanApp {
         }
     }
 
-    private static VkExtent2D createSwapExtent(VkSurfaceCapabilitiesKHR capabilities, long windowHandle) {
+    /*
+     * framebufferWidth, framebufferHeight: the last size the window reported
+     */
+    private static VkExtent2D createSwapExtent(VkSurfaceCapabilitiesKHR capabilities, int framebufferWidth, int framebufferHeight) {
         if (capabilities.currentExtent().width() != UINT32_MAX) {
             return capabilities.currentExtent();
         }
 
-        IntBuffer width = MemoryStack.stackGet().ints(0);
-        IntBuffer height = MemoryStack.stackGet().ints(0);
-
-        GLFW.glfwGetFramebufferSize(windowHandle, width, height);
-
-        VkExtent2D actualExtent = VkExtent2D.mallocStack().set(width.get(0), height.get(0));
+        VkExtent2D actualExtent = VkExtent2D.malloc(MemoryStack.stackGet()).set(framebufferWidth, framebufferHeight);
 
         VkExtent2D minExtent = capabilities.minImageExtent();
         VkExtent2D maxExtent = capabilities.maxImageExtent();
@@ -567,482 +690,637 @@ class VulkanApp {
     }
 
     public void run() {
+        if (isHeadless()) {
+            initVulkan();
+            headlessLoop();
+            cleanup();
+            return;
+        }
+
         this.window = new Window(800, 600);
         this.window.initWindow();
-        initVulkan();
-        mainLoop();
-        cleanup();
+        final long framebufferSize = this.window.getFramebufferSize();
+        this.framebufferWidth = Window.widthOf(framebufferSize);
+        this.framebufferHeight = Window.heightOf(framebufferSize);
+
+        //the render thread owns the device and the queues, the main thread stays in the GLFW event loop
+        Thread renderThread = new Thread(this::renderThreadMain, "render");
+        renderThread.start();
+        this.window.pumpEvents(renderThread);
+
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.window.destroy();
+
+        if (this.renderFailure != null) {
+            throw new RuntimeException("Failed to render", this.renderFailure);
+        }
     }
 
+    private void renderThreadMain() {
+        try {
+            initVulkan();
+            mainLoop();
+            cleanup();
+        } catch (Throwable t) {
+            this.renderFailure = t;
+        } finally {
+            this.window.wakeUp();
+        }
+    }
+
+    /*
+     * Render thread
+     */
     private void mainLoop() {
-        int fps = 0;
-        double lastTime = System.currentTimeMillis();
-        while (!GLFW.glfwWindowShouldClose(this.window.getWindowHandle())) {
-            if (System.currentTimeMillis() - lastTime >= 1000) {
-                GLFW.glfwSetWindowTitle(this.window.getWindowHandle(), String.valueOf(fps));
-                lastTime = System.currentTimeMillis();
-                fps = 0;
-            }
-            GLFW.glfwPollEvents();
+        this.frameGraph = createFrameGraph();
 
-            drawFrame();
-            fps++;
+        while (!this.window.shouldClose()) {
+            this.frameMetrics.beginFrame();
+            this.frameGraph.run();
+
+            if (this.frameMetrics.endFrame()) {
+                MetricsSnapshot snapshot = this.frameMetrics.getLastSnapshot();
+                this.window.setTitle(String.valueOf(Math.round(snapshot.getFramesPerSecond())));
+            }
         }
 
         VK10.vkDeviceWaitIdle(this.vkDevice);
+        printJobTimings();
+
+        if (this.window.getEvents().getDroppedCount() > 0) {
+            System.out.println("Dropped " + this.window.getEvents().getDroppedCount() + " window events");
+        }
     }
 
-    private void initVulkan() {
-        this.vkInstance = createInstance("Hello Triangle",
-                VK10.VK_MAKE_VERSION(1, 0, 0),
-                "No Engine",
-                VK10.VK_MAKE_VERSION(1, 0, 0),
-                VK11.VK_API_VERSION_1_1);
+    /*
+     * Frame job on the render thread, takes over what the main thread received since the last frame
+     */
+    private void processWindowEvents() {
+        this.inputSampleNanos = System.nanoTime();
+
+        //only the latest size counts, every size in between is skipped
+        final long framebufferSize = this.window.getFramebufferSize();
+        final int width = Window.widthOf(framebufferSize);
+        final int height = Window.heightOf(framebufferSize);
+
+        if (width != this.framebufferWidth || height != this.framebufferHeight) {
+            this.framebufferWidth = width;
+            this.framebufferHeight = height;
+            this.windowResized = true;
+        }
+
+        this.window.getEvents().drain(this.windowEventHandler);
+    }
 
+    private void handleWindowEvent(WindowEventQueue.Type type, int first, int second, long nanos) {
+        //nothing is controlled by keys or buttons yet, only their latency is measured
+        if (this.oldestEventNanos < 0) {
+            this.oldestEventNanos = nanos;
+        }
+    }
 
-        this.validationLayers = new ValidationLayers();
-        this.validationLayers.setupDebugMessenger(this.vkInstance);
+    private void headlessLoop() {
+        final long frameCount = this.headlessConfig.getFrameCount();
+        final long startTime = System.nanoTime();
 
-        this.surface = createSurface(this.vkInstance, this.window.getWindowHandle());
-        this.vkPhysicalDevice = pickPhysicalDevice(this.vkInstance, this.surface);
+        this.frameGraph = createHeadlessFrameGraph();
 
-        //TODO :: test how multisampling is efecting the fps :: ibikov
-        this.msaaSamples = VulkanUtils.findMaxUsableSampleCount(this.vkPhysicalDevice);
+        for (this.frameNumber = 0; this.frameNumber < frameCount; this.frameNumber++) {
+            this.frameMetrics.beginFrame();
+            this.frameGraph.run();
+            this.frameMetrics.endFrame();
+        }
 
-        QueueFamilyIndices queueFamilyIndices = VulkanUtils.findQueueFamiliesFromPhysicalDevice(this.vkPhysicalDevice, this.surface);
+        //hand out the frames that are still in flight, oldest first
+        for (int i = 0; i < MAX_FRAMES_IN_FLIGHT; i++) {
+            final int imageIndex = (this.currentFrame + i) % MAX_FRAMES_IN_FLIGHT;
+            VK10.vkWaitForFences(this.vkDevice, this.inFlightFrames.get(imageIndex).getFence(), true, NO_TIMEOUT);
+            deliverReadback(imageIndex);
+        }
 
-        this.vkDevice = createLogicalDevice(this.vkPhysicalDevice, queueFamilyIndices);
-        this.vkGraphicsQueue = createGraphicsQueue(this.vkDevice, queueFamilyIndices);
-        this.vkPresentQueue = createPresentationQueue(this.vkDevice, queueFamilyIndices);
-        this.commandPool = createCommandPool(this.vkDevice, queueFamilyIndices);
+        VK10.vkDeviceWaitIdle(this.vkDevice);
 
-        this.sceneObject = GameObjectLoader.loadModel("models/chalet.obj");
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.println("Rendered " + frameCount + " headless frames in " + seconds + "s (" + frameCount / seconds + " fps)");
+        printJobTimings();
+    }
 
-        createTextureImage();
-        createTextureImageView();
+    /*
+     * Input and the scene update of a frame run while the CPU waits for the fence of the frame
+     * before, the uniforms, instances and command buffer of the acquired image are written in
+     * parallel and submit waits for all of them. Culling runs in cull.comp, recorded into the
+     * command buffers, so it has no CPU job. The queues stay on the render thread calling run(),
+     * input only takes over the events the main thread pushed. Pace holds the frame back for the
+     * present policy before anything else starts.
+     */
+    private FrameGraph createFrameGraph() {
+        FrameGraph graph = new FrameGraph(this.jobSystem);
+
+        final int pace = graph.add("pace", FrameGraph.Affinity.CALLER, this::paceFrame);
+        final int input = graph.add("input", FrameGraph.Affinity.CALLER, this::processWindowEvents, pace);
+        final int sceneUpdate = graph.add("sceneUpdate", FrameGraph.Affinity.ANY, this::updateScene, input);
+        final int acquire = graph.add("acquire", FrameGraph.Affinity.CALLER, this::acquireImage, pace);
+        final int uniforms = graph.add("uniforms", FrameGraph.Affinity.ANY, this::writeUniforms, acquire);
+        final int instances = graph.add("instances", FrameGraph.Affinity.ANY, this::uploadInstances, acquire, sceneUpdate);
+        final int record = graph.add("record", FrameGraph.Affinity.ANY, this::recordFrame, acquire);
+        graph.add("submit", FrameGraph.Affinity.CALLER, this::submitFrame, uniforms, instances, record);
+
+        return graph;
+    }
 
-        this.textureSampler = createTextureSampler(this.vkDevice, this.mipLevels);
+    /*
+     * Like createFrameGraph(), the fence wait takes the place of acquire and the finished frame of
+     * the image is handed to the frame sink in parallel to the rest.
+     */
+    private FrameGraph createHeadlessFrameGraph() {
+        FrameGraph graph = new FrameGraph(this.jobSystem);
+
+        final int sceneUpdate = graph.add("sceneUpdate", FrameGraph.Affinity.ANY, this::updateScene);
+        final int fenceWait = graph.add("fenceWait", FrameGraph.Affinity.CALLER, this::waitForHeadlessFrame);
+        final int readback = graph.add("readback", FrameGraph.Affinity.ANY, this::deliverHeadlessReadback, fenceWait);
+        final int uniforms = graph.add("uniforms", FrameGraph.Affinity.ANY, this::writeUniforms, fenceWait);
+        final int instances = graph.add("instances", FrameGraph.Affinity.ANY, this::uploadInstances, fenceWait, sceneUpdate);
+        final int record = graph.add("record", FrameGraph.Affinity.ANY, this::recordFrame, fenceWait);
+        graph.add("submit", FrameGraph.Affinity.CALLER, this::submitHeadlessFrame, readback, uniforms, instances, record);
+
+        return graph;
+    }
 
-        createVertexBuffer();
-        createIndexBuffer();
+    private void printJobTimings() {
+        System.out.println("Frame jobs (" + this.jobSystem + "), average ms: " + this.frameGraph.formatTimings());
+    }
 
-        createRtVertexBuffer();
-        createRtIndexBuffer();
+    /*
+     * Offscreen image i always belongs to in-flight frame i, so waiting for the frame fence is enough
+     * to know that the previous content of the readback buffer is complete.
+     */
+    private void waitForHeadlessFrame() {
+        final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
+        final int imageIndex = this.currentFrame;
 
-        initRayTracing();
-        createBlas();
-        createTlas();
+        phaseTimer.begin(FramePhase.FENCE_WAIT);
+        VK10.vkWaitForFences(this.vkDevice, this.inFlightFrames.get(imageIndex).pFence(), true, NO_TIMEOUT);
+        phaseTimer.end(FramePhase.FENCE_WAIT);
 
-//        createDescriptorSetLayout();
+        if (this.readbackFrameNumbers[imageIndex] >= 0) {
+            readGpuTimes(imageIndex);
+        }
 
-        createRtDescriptorSetLayout();
+        this.frameImageIndex = imageIndex;
+        this.frameSkipped = false;
+    }
 
+    private void deliverHeadlessReadback() {
+        final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
 
-        createSwapChainObjects();
-        createSyncObjects();
+        phaseTimer.begin(FramePhase.READBACK);
+        deliverReadback(this.frameImageIndex);
+        phaseTimer.end(FramePhase.READBACK);
     }
 
-    private void initRayTracing() {
+    private void submitHeadlessFrame() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkPhysicalDeviceRayTracingPropertiesNV physicalDeviceRayTracingPropertiesNV = VkPhysicalDeviceRayTracingPropertiesNV.callocStack(stack);
-            physicalDeviceRayTracingPropertiesNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_RAY_TRACING_PROPERTIES_NV);
-            VkPhysicalDeviceProperties2 props2 = VkPhysicalDeviceProperties2.mallocStack(stack);
-            props2.sType(VK11.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_PROPERTIES_2);
-            props2.pNext(physicalDeviceRayTracingPropertiesNV.address());
+            final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
+            final int imageIndex = this.frameImageIndex;
+            Frame thisFrame = this.inFlightFrames.get(imageIndex);
+
+            VkSubmitInfo submitInfo = VkSubmitInfo.calloc(stack);
+            submitInfo.sType(VK10.VK_STRUCTURE_TYPE_SUBMIT_INFO);
+            submitInfo.pCommandBuffers(stack.pointers(this.commandBuffers.get(imageIndex)));
 
-            VK11.vkGetPhysicalDeviceProperties2(this.vkPhysicalDevice, props2);
+            VK10.vkResetFences(this.vkDevice, thisFrame.pFence());
 
-            int maxRecursionDepth = physicalDeviceRayTracingPropertiesNV.maxRecursionDepth();
-            //raygen, miss, chit
-            this.groupCount = 3;
-            this.groupHandleSize = physicalDeviceRayTracingPropertiesNV.shaderGroupHandleSize();
-            this.groupAlignment = physicalDeviceRayTracingPropertiesNV.shaderGroupBaseAlignment();
-            this.sbtSize = this.groupCount * this.groupAlignment;
+            phaseTimer.begin(FramePhase.SUBMIT);
+            if (VK10.vkQueueSubmit(this.vkGraphicsQueue, submitInfo, thisFrame.getFence()) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to submit draw command buffer");
+            }
+            phaseTimer.end(FramePhase.SUBMIT);
 
-            System.out.println("maxPushConstantSize: " + props2.properties().limits().maxPushConstantsSize());
-            System.out.println("maxRecursion: " + maxRecursionDepth);
-            System.out.println("groupCount: " + this.groupCount);
-            System.out.println("sbtSize: " + this.sbtSize);
-            System.out.println("shaderGroupHandleSize: " + this.groupHandleSize);
-            System.out.println("shaderGroupBaseAlignment: " + this.groupAlignment);
+            this.readbackFrameNumbers[imageIndex] = this.frameNumber;
+            this.currentFrame = (this.currentFrame + 1) % MAX_FRAMES_IN_FLIGHT;
+        }
+    }
 
+    private void deliverReadback(int imageIndex) {
+        if (this.readbackFrameNumbers[imageIndex] < 0) {
+            return;
         }
+
+        this.headlessConfig.getFrameSink().accept(this.readbackFrameNumbers[imageIndex], this.readbackData.get(imageIndex),
+                this.swapChainExtent.width(), this.swapChainExtent.height());
+        this.readbackFrameNumbers[imageIndex] = -1;
     }
 
-    private void createRtIndexBuffer() {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            long bufferSize = Integer.BYTES * this.sceneObject.getIndices().length;
+    /*
+     * Only call this once the last submission of the image's command buffer has finished.
+     */
+    private void readGpuTimes(int imageIndex) {
+        if (this.gpuTimer != null && this.gpuTimer.read(imageIndex, this.frameMetrics.getGpuDurations())) {
+            this.frameMetrics.recordGpuDurations();
+            this.accumulation.recordTraceTime(this.frameMetrics.getGpuDurations()[GpuPhase.TRACE_RAYS.ordinal()], this.tracedSamples[imageIndex]);
 
-            LongBuffer pBuffer = stack.mallocLong(1);
-            LongBuffer pBufferMemory = stack.mallocLong(1);
+            //a frame recorded before the last scale change would be judged against the new scale
+            if (this.resolutionController != null && isRecordedAtRenderSize(imageIndex)) {
+                long gpuNanos = 0L;
 
-            createAllocateBindBuffer(bufferSize,
-                    VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | VK10.VK_BUFFER_USAGE_INDEX_BUFFER_BIT | VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT,
-                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
-                    pBuffer,
-                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+                for (long duration : this.frameMetrics.getGpuDurations()) {
+                    gpuNanos += duration;
+                }
 
-            this.rtIndexBuffer = pBuffer.get(0);
-            this.rtIndexBufferMemory = pBufferMemory.get(0);
+                if (this.resolutionController.update(gpuNanos)) {
+                    updateRenderExtent();
+                    //the accumulated samples belong to the old pixel grid
+                    this.accumulation.reset();
+                }
+            }
         }
     }
 
-    private void createRtVertexBuffer() {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            long bufferSize = Vertex.SIZEOF * this.sceneObject.getVertices().length;
-
-            LongBuffer pBuffer = stack.mallocLong(1);
-            LongBuffer pBufferMemory = stack.mallocLong(1);
-
-            createAllocateBindBuffer(bufferSize,
-                    VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT | VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT,
-                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
-                    pBuffer,
-                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+    private boolean isRecordedAtRenderSize(int imageIndex) {
+        return this.recordedRenderWidths != null
+                && this.recordedRenderWidths[imageIndex] == this.renderWidth
+                && this.recordedRenderHeights[imageIndex] == this.renderHeight;
+    }
 
-            this.rtVertexBuffer = pBuffer.get(0);
-            this.rtVertexBufferMemory = pBufferMemory.get(0);
+    private void updateRenderExtent() {
+        if (this.resolutionController == null) {
+            this.renderWidth = this.swapChainExtent.width();
+            this.renderHeight = this.swapChainExtent.height();
+        } else {
+            this.renderWidth = this.resolutionController.getRenderSize(this.swapChainExtent.width());
+            this.renderHeight = this.resolutionController.getRenderSize(this.swapChainExtent.height());
         }
     }
 
-    public void createBlas() {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkGeometryTrianglesNV vkGeometryTrianglesNV = VkGeometryTrianglesNV.callocStack(stack);
-            vkGeometryTrianglesNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_GEOMETRY_TRIANGLES_NV);
-            vkGeometryTrianglesNV.vertexData(this.rtVertexBuffer);
-            vkGeometryTrianglesNV.vertexOffset(0); //Vertex.SIZEOF * this.gameObject.getVertices().length);
-            vkGeometryTrianglesNV.vertexCount(this.sceneObject.getVertices().length / 3);
-            vkGeometryTrianglesNV.vertexFormat(VK10.VK_FORMAT_R32G32B32_SFLOAT); //TODO idk
-            vkGeometryTrianglesNV.vertexStride(Vertex.SIZEOF * this.sceneObject.getIndices().length);
-            vkGeometryTrianglesNV.indexData(this.rtIndexBuffer);
-            vkGeometryTrianglesNV.indexType(VK10.VK_INDEX_TYPE_UINT32);
-            vkGeometryTrianglesNV.indexOffset(0); //Integer.BYTES * this.gameObject.getIndices().length);
-            vkGeometryTrianglesNV.indexCount(this.sceneObject.getIndices().length);
-
-            vkGeometryTrianglesNV.transformData(VK10.VK_NULL_HANDLE);//Model transformation matrix data
-//            vkGeometryTrianglesNV.transformOffset(0);
+    /*
+     * Frame job, the command buffer of the acquired image
+     */
+    private void recordFrame() {
+        if (this.frameSkipped) {
+            return;
+        }
 
-            VkGeometryAABBNV aabbnv = VkGeometryAABBNV.callocStack(stack);
-            aabbnv.sType(NVRayTracing.VK_STRUCTURE_TYPE_GEOMETRY_AABB_NV);
-            aabbnv.aabbData(VK10.VK_NULL_HANDLE);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            updateRtCommandBuffer(this.frameImageIndex, stack);
+        }
+    }
 
-            VkGeometryDataNV vkGeometryDataNV = VkGeometryDataNV.callocStack(stack);
-            vkGeometryDataNV.triangles(vkGeometryTrianglesNV);
-            vkGeometryDataNV.aabbs(aabbnv);
+    /*
+     * The command buffer of the image is free once its last submission finished
+     */
+    private void updateRtCommandBuffer(int imageIndex, MemoryStack stack) {
+        if (this.rtxOn && (this.recordedRenderWidths[imageIndex] != this.renderWidth || this.recordedRenderHeights[imageIndex] != this.renderHeight)) {
+            recordRtCommandBuffer(imageIndex, stack);
+        }
+    }
 
-            VkGeometryNV.Buffer vkGeometryNV = VkGeometryNV.callocStack(1, stack);
-            vkGeometryNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_GEOMETRY_NV);
-            vkGeometryNV.geometry(vkGeometryDataNV);
-            vkGeometryNV.geometryType(NVRayTracing.VK_GEOMETRY_TYPE_TRIANGLES_NV);
-            vkGeometryNV.flags(NVRayTracing.VK_GEOMETRY_OPAQUE_BIT_NV);
+    private boolean isHeadless() {
+        return this.headlessConfig != null;
+    }
 
-            VkAccelerationStructureInfoNV accelerationStructureInfoNV = VkAccelerationStructureInfoNV.callocStack(stack);
-            accelerationStructureInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_INFO_NV);
-            accelerationStructureInfoNV.flags(NVRayTracing.VK_BUILD_ACCELERATION_STRUCTURE_ALLOW_COMPACTION_BIT_NV);
-            accelerationStructureInfoNV.pGeometries(vkGeometryNV);
-            accelerationStructureInfoNV.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_TYPE_BOTTOM_LEVEL_NV);
+    private void initVulkan() {
+        this.vkInstance = createInstance("Hello Triangle",
+                VK10.VK_MAKE_VERSION(1, 0, 0),
+                "No Engine",
+                VK10.VK_MAKE_VERSION(1, 0, 0),
+                VK12.VK_API_VERSION_1_2,
+                isHeadless());
 
 
-            VkAccelerationStructureCreateInfoNV accelerationStructureCreateInfoNV = VkAccelerationStructureCreateInfoNV.callocStack(stack);
-            accelerationStructureCreateInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_CREATE_INFO_NV);
-            accelerationStructureCreateInfoNV.info(accelerationStructureInfoNV);
+        this.validationLayers = new ValidationLayers();
+        this.validationLayers.setupDebugMessenger(this.vkInstance);
 
-            LongBuffer pBlas = stack.mallocLong(1);
+        QueueFamilyIndices queueFamilyIndices;
+
+        if (isHeadless()) {
+            this.vkPhysicalDevice = pickHeadlessPhysicalDevice(this.vkInstance);
+            this.deviceExtensions = new HashSet<>();
+            queueFamilyIndices = VulkanUtils.findGraphicsQueueFamilyFromPhysicalDevice(this.vkPhysicalDevice);
+        } else {
+            this.surface = createSurface(this.vkInstance, this.window.getWindowHandle());
+            this.vkPhysicalDevice = pickPhysicalDevice(this.vkInstance, this.surface);
+            this.deviceExtensions = new HashSet<>(REQUIRED_DEVICE_EXTENSIONS);
+            queueFamilyIndices = VulkanUtils.findQueueFamiliesFromPhysicalDevice(this.vkPhysicalDevice, this.surface);
+        }
 
-            NVRayTracing.vkCreateAccelerationStructureNV(this.vkDevice, accelerationStructureCreateInfoNV, null, pBlas);
+        this.rayTracingApi = RayTracingApi.select(this.vkPhysicalDevice);
+        this.rtxOn = this.rayTracingApi != null;
 
-            this.blas = pBlas.get(0);
+        if (this.rtxOn) {
+            this.deviceExtensions.addAll(this.rayTracingApi.getDeviceExtensions());
+        }
 
-            VkAccelerationStructureMemoryRequirementsInfoNV memoryRequirementsInfoNV = VkAccelerationStructureMemoryRequirementsInfoNV.callocStack(stack);
-            memoryRequirementsInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_INFO_NV);
-            memoryRequirementsInfoNV.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_OBJECT_NV);
-            memoryRequirementsInfoNV.accelerationStructure(this.blas);
+        this.graphicsQueueFamily = queueFamilyIndices.getGraphicsFamily();
 
-            VkMemoryRequirements2KHR memoryRequirements = VkMemoryRequirements2KHR.mallocStack(stack);
-            NVRayTracing.vkGetAccelerationStructureMemoryRequirementsNV(this.vkDevice, memoryRequirementsInfoNV, memoryRequirements);
+        //TODO :: test how multisampling is efecting the fps :: ibikov
+        this.msaaSamples = VulkanUtils.findMaxUsableSampleCount(this.vkPhysicalDevice);
 
-            System.out.println("FirstMemorySize: " + memoryRequirements.memoryRequirements().size());
+        this.multiDrawIndirect = VulkanUtils.isMultiDrawIndirectSupported(this.vkPhysicalDevice);
 
-            VkMemoryAllocateInfo memoryAllocateInfo = VkMemoryAllocateInfo.callocStack(stack);
-            memoryAllocateInfo.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_ALLOCATE_INFO);
-            memoryAllocateInfo.allocationSize(memoryRequirements.memoryRequirements().size());
-            memoryAllocateInfo.memoryTypeIndex(VulkanUtils.extractTheCorrectMemoryTypeFromPhysicalDevice(memoryRequirements.memoryRequirements().memoryTypeBits(), VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT, this.vkPhysicalDevice));
+        if (!this.rtxOn) {
+            //the draws of cull.comp start at their instance, direct draws can do that without the feature
+            this.gpuCulling = VulkanUtils.isDrawIndirectFirstInstanceSupported(this.vkPhysicalDevice);
 
-            LongBuffer pBlasMemory = stack.mallocLong(1);
-            if (VK10.vkAllocateMemory(this.vkDevice, memoryAllocateInfo, null, pBlasMemory) != VK10.VK_SUCCESS) {
-                throw new RuntimeException("Could not allocate memory for acceleration structure");
+            if (!this.gpuCulling) {
+                System.out.println("drawIndirectFirstInstance is not supported, drawing every instance without GPU culling");
             }
 
-            this.blasMemory = pBlasMemory.get(0);
-
-            VkBindAccelerationStructureMemoryInfoNV.Buffer bind = VkBindAccelerationStructureMemoryInfoNV.callocStack(1, stack);
-            bind.sType(NVRayTracing.VK_STRUCTURE_TYPE_BIND_ACCELERATION_STRUCTURE_MEMORY_INFO_NV);
-            bind.accelerationStructure(this.blas);
-            bind.memory(this.blasMemory);
+            this.drawIndirectCount = this.gpuCulling
+                    && VulkanUtils.isExtensionsSupported(this.vkPhysicalDevice, Set.of(KHRDrawIndirectCount.VK_KHR_DRAW_INDIRECT_COUNT_EXTENSION_NAME));
 
-            NVRayTracing.vkBindAccelerationStructureMemoryNV(this.vkDevice, bind);
+            if (this.drawIndirectCount) {
+                this.deviceExtensions.add(KHRDrawIndirectCount.VK_KHR_DRAW_INDIRECT_COUNT_EXTENSION_NAME);
+            }
+        }
 
-            //Estimate scratch memory size
-            VkAccelerationStructureMemoryRequirementsInfoNV scratchMemoReq = VkAccelerationStructureMemoryRequirementsInfoNV.callocStack(stack);
-            scratchMemoReq.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_INFO_NV);
-            scratchMemoReq.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_BUILD_SCRATCH_NV);
-            scratchMemoReq.accelerationStructure(this.blas);
+        this.vkDevice = createLogicalDevice(this.vkPhysicalDevice, queueFamilyIndices, this.deviceExtensions, this.rayTracingApi,
+                this.multiDrawIndirect, this.gpuCulling);
+        this.vkGraphicsQueue = createGraphicsQueue(this.vkDevice, queueFamilyIndices);
+        this.vkPresentQueue = createPresentationQueue(this.vkDevice, queueFamilyIndices);
+        this.commandPool = createCommandPool(this.vkDevice, queueFamilyIndices);
 
-            VkMemoryRequirements2KHR memoryRequirementsForScratch = VkMemoryRequirements2KHR.mallocStack(stack);
-            NVRayTracing.vkGetAccelerationStructureMemoryRequirementsNV(this.vkDevice, scratchMemoReq, memoryRequirementsForScratch);
+        if (this.rtxOn) {
+            this.rayTracing = this.rayTracingApi.createBackend(this.vkDevice, this.vkPhysicalDevice, this.commandPool, this.vkGraphicsQueue);
+        }
 
-            long scratchMemorySize = memoryRequirementsForScratch.memoryRequirements().size();
+        this.sceneObject = GameObjectLoader.loadModel("models/chalet.obj");
+        this.meshPool = new MeshPool();
+        this.meshPool.add(this.sceneObject);
+        System.out.println("Meshlets: " + this.sceneObject.getClusters().getStatistics());
+        System.out.println("LODs: " + this.sceneObject.getLods());
 
-            System.out.println("ScratchMemorySize: " + scratchMemorySize);
+        createTextureImage();
+        createTextureImageView();
 
-            //These two LongBuffers represent the nvvk::Buffer from the tutorial
-            LongBuffer pScratchBuffer = stack.mallocLong(1);
-            LongBuffer pScratchBufferMemory = stack.mallocLong(1);
+        this.textureSampler = createTextureSampler(this.vkDevice, this.mipLevels);
 
-            createAllocateBindBuffer(scratchMemorySize,
-                    NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV,
-                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
-                    pScratchBuffer,
-                    pScratchBufferMemory,
-                    this.vkDevice,
-                    this.vkPhysicalDevice);
+        createVertexBuffer();
+        createIndexBuffer();
 
-            long scratchHandle = pScratchBuffer.get(0);
+        if (this.rtxOn) {
+            createRtVertexBuffer();
+            createRtIndexBuffer();
 
-            VkCommandBuffer commandBuffer = beginSingleTimeCommands(this.vkDevice, this.commandPool);
+            initRayTracing();
+            registerBlasHandles(this.rayTracing.buildBlases(createBlasGeometries()));
+            this.rayTracing.buildTlas(this.scene, this.scene.isDynamic());
 
-            NVRayTracing.vkCmdBuildAccelerationStructureNV(commandBuffer,
-                    accelerationStructureCreateInfoNV.info(),
-                    VK10.VK_NULL_HANDLE,
-                    0,
-                    false,
-                    this.blas,
-                    VK10.VK_NULL_HANDLE,
-                    scratchHandle,
-                    0);
+            createRtDescriptorSetLayout();
+        } else {
+            if (this.scene.getBlasCount() > this.meshPool.getMeshCount()) {
+                throw new RuntimeException("Scene references " + this.scene.getBlasCount() + " meshes but only " + this.meshPool.getMeshCount() + " are loaded");
+            }
 
-            VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.callocStack(1, stack);
-            barrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
-            barrier.srcAccessMask(NVRayTracing.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_NV);
-            barrier.dstAccessMask(NVRayTracing.VK_ACCESS_ACCELERATION_STRUCTURE_READ_BIT_NV);
+            if (this.gpuCulling) {
+                createMeshTables();
+            }
 
-            VK10.vkCmdPipelineBarrier(commandBuffer,
-                    NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
-                    NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
-                    0,
-                    barrier,
-                    null,
-                    null);
+            createDescriptorSetLayout();
+        }
 
-            endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
 
+        createSwapChainObjects();
+        createSyncObjects();
+    }
 
-            VK10.vkDestroyBuffer(this.vkDevice, pScratchBuffer.get(0), null);
-            VK10.vkFreeMemory(this.vkDevice, pScratchBufferMemory.get(0), null);
+    private void initRayTracing() {
+        //raygen, miss, chit
+        this.groupCount = 3;
 
-            System.out.println("finished BLAS");
-        }
+        System.out.println("groupCount: " + this.groupCount);
+        System.out.println("shaderGroupHandleSize: " + this.rayTracing.getShaderGroupHandleSize());
+        System.out.println("shaderGroupHandleAlignment: " + this.rayTracing.getShaderGroupHandleAlignment());
+        System.out.println("shaderGroupBaseAlignment: " + this.rayTracing.getShaderGroupBaseAlignment());
     }
 
-    private VkGeometryInstanceNV blasInstanceToGeometry() {
+    private void createRtIndexBuffer() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
+            long bufferSize = Integer.BYTES * this.sceneObject.getIndices().length;
 
-            LongBuffer blasHandle = stack.mallocLong(1);
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
 
-            NVRayTracing.vkGetAccelerationStructureHandleNV(this.vkDevice, this.blas, blasHandle);
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
+                    VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | VK10.VK_BUFFER_USAGE_INDEX_BUFFER_BIT | VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT | this.rayTracing.getBuildInputBufferUsage(),
+                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                    pBuffer,
+                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
 
-            float[] identity = new float[12];
-            identity[0] = 1.0f;
-            identity[1] = 0;
-            identity[2] = 0;
-            identity[3] = 0;
+            this.rtIndexBuffer = pBuffer.get(0);
+            this.rtIndexBufferMemory = pBufferMemory.get(0);
 
-            identity[4] = 0;
-            identity[5] = 1.0f;
-            identity[6] = 0;
-            identity[7] = 0;
+            //Stays mapped, a BLAS built on the host reads the geometry from the mapping
+            PointerBuffer data = stack.mallocPointer(1);
+            VK10.vkMapMemory(this.vkDevice, this.rtIndexBufferMemory, 0, bufferSize, 0, data);
 
-            identity[8] = 0;
-            identity[9] = 0;
-            identity[10] = 1.0f;
-            identity[11] = 0;
-            return new VkGeometryInstanceNV(identity, 1, 0xFF, 1, NVRayTracing.VK_GEOMETRY_INSTANCE_TRIANGLE_CULL_DISABLE_BIT_NV, blasHandle.get(0));
+            this.rtIndexData = data.getByteBuffer(0, (int) bufferSize);
+            ByteBufferUtils.copyIntoBuffer(this.rtIndexData, this.sceneObject.getIndices());
         }
     }
 
-    private void createTlas() {
+    private void createRtVertexBuffer() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkAccelerationStructureInfoNV accelerationStructureInfoNV = VkAccelerationStructureInfoNV.callocStack(stack);
-            accelerationStructureInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_INFO_NV);
-            accelerationStructureInfoNV.flags(NVRayTracing.VK_BUILD_ACCELERATION_STRUCTURE_PREFER_FAST_TRACE_BIT_NV);
-            accelerationStructureInfoNV.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_TYPE_TOP_LEVEL_NV);
-            accelerationStructureInfoNV.instanceCount(1);
-
-            VkAccelerationStructureCreateInfoNV accelerationStructureCreateInfoNV = VkAccelerationStructureCreateInfoNV.callocStack(stack);
-            accelerationStructureCreateInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_CREATE_INFO_NV);
-            accelerationStructureCreateInfoNV.info(accelerationStructureInfoNV);
-
-            LongBuffer pTlas = stack.mallocLong(1);
-
-            NVRayTracing.vkCreateAccelerationStructureNV(this.vkDevice, accelerationStructureCreateInfoNV, null, pTlas);
-
-            this.tlas = pTlas.get(0);
-
-            VkAccelerationStructureMemoryRequirementsInfoNV memoryRequirementsInfoNV = VkAccelerationStructureMemoryRequirementsInfoNV.callocStack(stack);
-            memoryRequirementsInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_INFO_NV);
-            memoryRequirementsInfoNV.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_OBJECT_NV);
-            memoryRequirementsInfoNV.accelerationStructure(this.tlas);
-
-            VkMemoryRequirements2KHR memoryRequirements = VkMemoryRequirements2KHR.mallocStack(stack);
-            NVRayTracing.vkGetAccelerationStructureMemoryRequirementsNV(this.vkDevice, memoryRequirementsInfoNV, memoryRequirements);
-
-            System.out.println("FirstMemorySize Tlas: " + memoryRequirements.memoryRequirements().size());
-
-            VkMemoryAllocateInfo memoryAllocateInfo = VkMemoryAllocateInfo.callocStack(stack);
-            memoryAllocateInfo.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_ALLOCATE_INFO);
-            memoryAllocateInfo.allocationSize(memoryRequirements.memoryRequirements().size());
-            memoryAllocateInfo.memoryTypeIndex(VulkanUtils.extractTheCorrectMemoryTypeFromPhysicalDevice(memoryRequirements.memoryRequirements().memoryTypeBits(), VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT, this.vkPhysicalDevice));
-
-            LongBuffer pTlasMemory = stack.mallocLong(1);
-            if (VK10.vkAllocateMemory(this.vkDevice, memoryAllocateInfo, null, pTlasMemory) != VK10.VK_SUCCESS) {
-                throw new RuntimeException("Could not allocate memory for acceleration structure");
-            }
-
-            this.tlasMemory = pTlasMemory.get(0);
-
-            VkBindAccelerationStructureMemoryInfoNV.Buffer bind = VkBindAccelerationStructureMemoryInfoNV.callocStack(1, stack);
-            bind.sType(NVRayTracing.VK_STRUCTURE_TYPE_BIND_ACCELERATION_STRUCTURE_MEMORY_INFO_NV);
-            bind.accelerationStructure(this.tlas);
-            bind.memory(this.tlasMemory);
-
-            NVRayTracing.vkBindAccelerationStructureMemoryNV(this.vkDevice, bind);
-
-            //compute scratch mem
-            VkAccelerationStructureMemoryRequirementsInfoNV memoryRequirementsInfoNV1 = VkAccelerationStructureMemoryRequirementsInfoNV.callocStack(stack);
-            memoryRequirementsInfoNV1.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_INFO_NV);
-            memoryRequirementsInfoNV1.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_BUILD_SCRATCH_NV);
-            memoryRequirementsInfoNV1.accelerationStructure(this.tlas);
-
-            VkMemoryRequirements2KHR memoryRequirementsForScratch = VkMemoryRequirements2KHR.mallocStack(stack);
-            NVRayTracing.vkGetAccelerationStructureMemoryRequirementsNV(this.vkDevice, memoryRequirementsInfoNV1, memoryRequirementsForScratch);
-
-            long scratchMemorySize = memoryRequirementsForScratch.memoryRequirements().size();
-
-            System.out.println("ScratchMemorySize: " + scratchMemorySize);
-
-            //These two LongBuffers represent the nvvk::Buffer from the tutorial
-            LongBuffer pScratchBuffer = stack.mallocLong(1);
-            LongBuffer pScratchBufferMemory = stack.mallocLong(1);
-
-            createAllocateBindBuffer(scratchMemorySize,
-                    NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV,
-                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
-                    pScratchBuffer,
-                    pScratchBufferMemory,
-                    this.vkDevice,
-                    this.vkPhysicalDevice);
-
-            long scratchHandle = pScratchBuffer.get(0);
-
-            //NEW BUFFER
-            long bufferSize = VkGeometryInstanceNV.SIZE_OF;
+            long bufferSize = Vertex.SIZEOF * this.sceneObject.getVertices().length;
 
             LongBuffer pBuffer = stack.mallocLong(1);
             LongBuffer pBufferMemory = stack.mallocLong(1);
 
-            createAllocateBindBuffer(bufferSize, VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT,
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
+                    VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT | VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT | this.rayTracing.getBuildInputBufferUsage(),
                     VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
                     pBuffer,
                     pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
 
-            long stagingBuffer = pBuffer.get(0);
-            long stagingBufferMemory = pBufferMemory.get(0);
+            this.rtVertexBuffer = pBuffer.get(0);
+            this.rtVertexBufferMemory = pBufferMemory.get(0);
 
+            //Stays mapped, a BLAS built on the host reads the geometry from the mapping
             PointerBuffer data = stack.mallocPointer(1);
+            VK10.vkMapMemory(this.vkDevice, this.rtVertexBufferMemory, 0, bufferSize, 0, data);
 
-            VkGeometryInstanceNV geometryInstance = blasInstanceToGeometry();
-
-            VK10.vkMapMemory(this.vkDevice, stagingBufferMemory, 0, bufferSize, 0, data);
-            {
-                ByteBufferUtils.copyIntoBuffer(data.getByteBuffer(0, (int) bufferSize), geometryInstance);
-            }
-            VK10.vkUnmapMemory(this.vkDevice, stagingBufferMemory);
+            this.rtVertexData = data.getByteBuffer(0, (int) bufferSize);
+            ByteBufferUtils.copyIntoBuffer(this.rtVertexData, this.sceneObject.getVertices());
+        }
+    }
 
-            LongBuffer pResultBuffer = stack.mallocLong(1);
-            LongBuffer pResultBufferMemory = stack.mallocLong(1);
+    private List<BlasGeometry> createBlasGeometries() {
+        return List.of(new BlasGeometry(this.rtVertexBuffer, 0, this.sceneObject.getVertices().length, Vertex.SIZEOF,
+                this.rtIndexBuffer, 0, this.sceneObject.getIndices().length, this.rtVertexData, this.rtIndexData));
+    }
 
-            createAllocateBindBuffer(bufferSize,
-                    NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV | VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT,
-                    VK10.VK_MEMORY_HEAP_DEVICE_LOCAL_BIT,
-                    pResultBuffer,
-                    pResultBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+    private void registerBlasHandles(long[] blasReferences) {
+        if (this.scene.getBlasCount() > blasReferences.length) {
+            throw new RuntimeException("Scene references " + this.scene.getBlasCount() + " meshes but only " + blasReferences.length + " are loaded");
+        }
 
+        for (int blasId = 0; blasId < blasReferences.length; blasId++) {
+            this.scene.setBlasHandle(blasId, blasReferences[blasId]);
+        }
+    }
 
-//            copyBuffer(stagingBuffer, this.vertexBuffer, bufferSize);
-            VkCommandBuffer commandBuffer = beginSingleTimeCommands(this.vkDevice, this.commandPool);
+    /*
+     * One slice of instances per swapchain image, written in place by the CPU and read directly by the
+     * TLAS update recorded into that image's command buffer.
+     */
+    private void createInstanceBuffers() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final int sliceCount = this.swapChainImages.size();
+            final long bufferSize = InstanceUploader.getSliceSize(this.scene) * sliceCount;
 
-            VkBufferCopy.Buffer copyRegion = VkBufferCopy.callocStack(1, stack);
-            copyRegion.size(bufferSize);
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
 
-            VK10.vkCmdCopyBuffer(commandBuffer, stagingBuffer, pResultBuffer.get(0), copyRegion);
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
+                    this.rayTracing.getBuildInputBufferUsage(),
+                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                    pBuffer,
+                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
 
-            VkMemoryBarrier.Buffer vkMemoryBarrier = VkMemoryBarrier.callocStack(1, stack);
-            vkMemoryBarrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
-            vkMemoryBarrier.srcAccessMask(VK10.VK_ACCESS_TRANSFER_WRITE_BIT);
-            vkMemoryBarrier.dstAccessMask(NVRayTracing.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_NV);
+            this.instanceBuffer = pBuffer.get(0);
+            this.instanceBufferMemory = pBufferMemory.get(0);
 
-            VK10.vkCmdPipelineBarrier(commandBuffer,
-                    VK10.VK_PIPELINE_STAGE_TRANSFER_BIT,
-                    NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
-                    0,
-                    vkMemoryBarrier,
-                    null,
-                    null);
+            PointerBuffer data = stack.mallocPointer(1);
+            VK10.vkMapMemory(this.vkDevice, this.instanceBufferMemory, 0, bufferSize, 0, data);
 
-            NVRayTracing.vkCmdBuildAccelerationStructureNV(commandBuffer, accelerationStructureInfoNV, pResultBuffer.get(0),
-                    0,
-                    false,
-                    this.tlas,
-                    VK10.VK_NULL_HANDLE,
-                    scratchHandle,
-                    0);
+            this.instanceUploader = new InstanceUploader(this.scene, data.getByteBuffer(0, (int) bufferSize), sliceCount);
+        }
+    }
 
-            endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
+    /*
+     * Frame job, animates the scene and updates the world transforms. Touches no GPU memory, so it
+     * runs while the previous frame is still in flight.
+     */
+    private void updateScene() {
+        if (this.instanceUploader != null) {
+            final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
+
+            phaseTimer.begin(FramePhase.SCENE_UPDATE);
+            this.scene.animate((System.nanoTime() - this.startTime) / 1e9);
+            this.scene.updateTransforms();
+            phaseTimer.end(FramePhase.SCENE_UPDATE);
+        }
+    }
 
-            VK10.vkDestroyBuffer(this.vkDevice, pScratchBuffer.get(0), null);
-            VK10.vkFreeMemory(this.vkDevice, pScratchBufferMemory.get(0), null);
-            VK10.vkDestroyBuffer(this.vkDevice, stagingBuffer, null);
-            VK10.vkFreeMemory(this.vkDevice, stagingBufferMemory, null);
-            VK10.vkDestroyBuffer(this.vkDevice, pResultBuffer.get(0), null);
-            VK10.vkFreeMemory(this.vkDevice, pResultBufferMemory.get(0), null);
+    /*
+     * Frame job, writes the changed instances into the slice of the acquired image. Only runs once
+     * the previous submission of the image's command buffer has finished.
+     */
+    private void uploadInstances() {
+        if (this.instanceUploader != null && !this.frameSkipped) {
+            this.instanceUploader.upload(this.frameImageIndex);
         }
     }
 
+    private void recordTlasUpdate(int i, MemoryStack stack) {
+        //The previous frame may still trace against the TLAS
+        VkMemoryBarrier.Buffer beforeUpdate = VkMemoryBarrier.calloc(1, stack);
+        beforeUpdate.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+        beforeUpdate.srcAccessMask(KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_READ_BIT_KHR | KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_KHR);
+        beforeUpdate.dstAccessMask(KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_READ_BIT_KHR | KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_KHR);
+
+        VK10.vkCmdPipelineBarrier(this.commandBuffers.get(i),
+                KHRRayTracingPipeline.VK_PIPELINE_STAGE_RAY_TRACING_SHADER_BIT_KHR | KHRAccelerationStructure.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_KHR,
+                KHRAccelerationStructure.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_KHR,
+                0,
+                beforeUpdate,
+                null,
+                null);
+
+        this.rayTracing.cmdUpdateTlas(this.commandBuffers.get(i), this.instanceBuffer, this.instanceUploader.getSliceOffset(i),
+                this.scene.getInstanceCount(), stack);
+
+        VkMemoryBarrier.Buffer afterUpdate = VkMemoryBarrier.calloc(1, stack);
+        afterUpdate.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+        afterUpdate.srcAccessMask(KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_KHR);
+        afterUpdate.dstAccessMask(KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_READ_BIT_KHR);
+
+        VK10.vkCmdPipelineBarrier(this.commandBuffers.get(i),
+                KHRAccelerationStructure.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_KHR,
+                KHRRayTracingPipeline.VK_PIPELINE_STAGE_RAY_TRACING_SHADER_BIT_KHR,
+                0,
+                afterUpdate,
+                null,
+                null);
+    }
+
     private void createRtStorageResources() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             LongBuffer pStorageImage = stack.mallocLong(1);
             LongBuffer pStorageImageMemory = stack.mallocLong(1);
 
-            createImage(this.vkDevice, this.vkPhysicalDevice, this.swapChainExtent.width(),
-                    this.swapChainExtent.height(),
-                    this.swapChainImageFormat,
-                    VK10.VK_IMAGE_TILING_OPTIMAL,
-                    VK10.VK_IMAGE_USAGE_TRANSFER_SRC_BIT | VK10.VK_IMAGE_USAGE_STORAGE_BIT | VK10.VK_IMAGE_USAGE_TRANSFER_DST_BIT,
-                    VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
-                    pStorageImage,
-                    pStorageImageMemory,
-                    1,
-                    VK10.VK_SAMPLE_COUNT_1_BIT);
-
+            this.rtStorageImageView = createRtStorageImage(VK10.VK_FORMAT_R32G32B32A32_SFLOAT, 0, pStorageImage, pStorageImageMemory);
             this.rtStorageImage = pStorageImage.get(0);
             this.rtStorageImageMemory = pStorageImageMemory.get(0);
 
-            this.rtStorageImageView = createImageView(this.rtStorageImage, this.swapChainImageFormat, VK10.VK_IMAGE_ASPECT_COLOR_BIT, 1);
+            this.rtAccumulationImageView = createRtStorageImage(VK10.VK_FORMAT_R32G32B32A32_SFLOAT, 0, pStorageImage, pStorageImageMemory);
+            this.rtAccumulationImage = pStorageImage.get(0);
+            this.rtAccumulationImageMemory = pStorageImageMemory.get(0);
+
+            this.rtMomentsImageView = createRtStorageImage(VK10.VK_FORMAT_R32_SFLOAT, 0, pStorageImage, pStorageImageMemory);
+            this.rtMomentsImage = pStorageImage.get(0);
+            this.rtMomentsImageMemory = pStorageImageMemory.get(0);
+
+            this.rtNormalDepthImageView = createRtStorageImage(VK10.VK_FORMAT_R32G32B32A32_SFLOAT, 0, pStorageImage, pStorageImageMemory);
+            this.rtNormalDepthImage = pStorageImage.get(0);
+            this.rtNormalDepthImageMemory = pStorageImageMemory.get(0);
+
+            this.rtAlbedoImageView = createRtStorageImage(VK10.VK_FORMAT_R32G32B32A32_SFLOAT, 0, pStorageImage, pStorageImageMemory);
+            this.rtAlbedoImage = pStorageImage.get(0);
+            this.rtAlbedoImageMemory = pStorageImageMemory.get(0);
+
+            if (this.denoiseFilter != null) {
+                for (int i = 0; i < this.denoiseImages.length; i++) {
+                    this.denoiseImageViews[i] = createRtStorageImage(VK10.VK_FORMAT_R32G32B32A32_SFLOAT, 0, pStorageImage, pStorageImageMemory);
+                    this.denoiseImages[i] = pStorageImage.get(0);
+                    this.denoiseImagesMemory[i] = pStorageImageMemory.get(0);
+                }
+            }
+
+            if (!this.tonemapDirect) {
+                final int imageCount = this.swapChainImages.size();
+                this.displayImages = new long[imageCount];
+                this.displayImagesMemory = new long[imageCount];
+                this.displayImageViews = new long[imageCount];
+
+                for (int i = 0; i < imageCount; i++) {
+                    this.displayImageViews[i] = createRtStorageImage(DISPLAY_IMAGE_FORMAT, VK10.VK_IMAGE_USAGE_TRANSFER_SRC_BIT, pStorageImage, pStorageImageMemory);
+                    this.displayImages[i] = pStorageImage.get(0);
+                    this.displayImagesMemory[i] = pStorageImageMemory.get(0);
+                }
+            }
 
-            transitionImageLayout(this.vkDevice, this.commandPool, this.vkGraphicsQueue, this.rtStorageImage, this.swapChainImageFormat, VK10.VK_IMAGE_LAYOUT_UNDEFINED, VK10.VK_IMAGE_LAYOUT_GENERAL, 1);
+            //the new accumulation images hold nothing yet
+            this.accumulation.reset();
         }
     }
 
+    /*
+     * Storage image with the size of the swapchain in GENERAL layout, returns the view
+     */
+    private long createRtStorageImage(int format, int usage, LongBuffer pImage, LongBuffer pImageMemory) {
+        createImage(this.vkDevice, this.vkPhysicalDevice, this.swapChainExtent.width(),
+                this.swapChainExtent.height(),
+                format,
+                VK10.VK_IMAGE_TILING_OPTIMAL,
+                VK10.VK_IMAGE_USAGE_STORAGE_BIT | usage,
+                VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                pImage,
+                pImageMemory,
+                1,
+                VK10.VK_SAMPLE_COUNT_1_BIT);
+
+        final long imageView = createImageView(pImage.get(0), format, VK10.VK_IMAGE_ASPECT_COLOR_BIT, 1);
+
+        transitionImageLayout(this.vkDevice, this.commandPool, this.vkGraphicsQueue, pImage.get(0), format, VK10.VK_IMAGE_LAYOUT_UNDEFINED, VK10.VK_IMAGE_LAYOUT_GENERAL, 1);
+
+        return imageView;
+    }
+
     private void createRtDescriptorSets() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             LongBuffer layouts = stack.mallocLong(this.swapChainImages.size());
@@ -1050,7 +1328,7 @@ class VulkanApp {
                 layouts.put(i, this.rtDescriptorSetLayout);
             }
 
-            VkDescriptorSetAllocateInfo allocateInfo = VkDescriptorSetAllocateInfo.callocStack(stack);
+            VkDescriptorSetAllocateInfo allocateInfo = VkDescriptorSetAllocateInfo.calloc(stack);
             allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_ALLOCATE_INFO);
             allocateInfo.descriptorPool(this.rtDescriptorPool);
             allocateInfo.pSetLayouts(layouts);
@@ -1063,28 +1341,67 @@ class VulkanApp {
 
             this.rtDescriptorSets = new ArrayList<>(pDescriptorSets.capacity());
 
-            VkWriteDescriptorSetAccelerationStructureNV.Buffer accStructureDesc
-                    = VkWriteDescriptorSetAccelerationStructureNV.callocStack(1, stack);
-            accStructureDesc.sType(NVRayTracing.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET_ACCELERATION_STRUCTURE_NV);
-            accStructureDesc.pAccelerationStructures(stack.longs(this.tlas));
+            for (int i = 0; i < pDescriptorSets.capacity(); i++) {
+                this.rtDescriptorSets.add(pDescriptorSets.get(i));
+            }
+        }
+
+        writeRtDescriptorSets();
+    }
 
-            VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.callocStack(1, stack);
+    /*
+     * Again after a resize, the storage images are new then. The sets must not be in use by a
+     * pending command buffer.
+     */
+    private void writeRtDescriptorSets() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.calloc(1, stack);
             imageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
             imageInfo.imageView(this.rtStorageImageView);
 
-            VkDescriptorBufferInfo.Buffer bufferInfos = VkDescriptorBufferInfo.callocStack(1, stack);
+            VkDescriptorImageInfo.Buffer accumulationImageInfo = VkDescriptorImageInfo.calloc(1, stack);
+            accumulationImageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+            accumulationImageInfo.imageView(this.rtAccumulationImageView);
+
+            VkDescriptorImageInfo.Buffer momentsImageInfo = VkDescriptorImageInfo.calloc(1, stack);
+            momentsImageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+            momentsImageInfo.imageView(this.rtMomentsImageView);
+
+            VkDescriptorBufferInfo.Buffer bufferInfos = VkDescriptorBufferInfo.calloc(1, stack);
             bufferInfos.offset(0);
             bufferInfos.range(UniformBufferObject.SIZEOF);
 
-            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.callocStack(2, stack);
+            VkDescriptorBufferInfo.Buffer accumulationBufferInfos = VkDescriptorBufferInfo.calloc(1, stack);
+            accumulationBufferInfos.offset(0);
+            accumulationBufferInfos.range(AccumulationState.SIZEOF);
+
+            VkDescriptorBufferInfo.Buffer vertexBufferInfos = VkDescriptorBufferInfo.calloc(1, stack);
+            vertexBufferInfos.buffer(this.rtVertexBuffer);
+            vertexBufferInfos.offset(0);
+            vertexBufferInfos.range(VK10.VK_WHOLE_SIZE);
+
+            VkDescriptorBufferInfo.Buffer indexBufferInfos = VkDescriptorBufferInfo.calloc(1, stack);
+            indexBufferInfos.buffer(this.rtIndexBuffer);
+            indexBufferInfos.offset(0);
+            indexBufferInfos.range(VK10.VK_WHOLE_SIZE);
+
+            VkDescriptorImageInfo.Buffer normalDepthImageInfo = VkDescriptorImageInfo.calloc(1, stack);
+            normalDepthImageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+            normalDepthImageInfo.imageView(this.rtNormalDepthImageView);
+
+            VkDescriptorImageInfo.Buffer albedoImageInfo = VkDescriptorImageInfo.calloc(1, stack);
+            albedoImageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+            albedoImageInfo.imageView(this.rtAlbedoImageView);
+
+            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.calloc(10, stack);
 
             VkWriteDescriptorSet accelStructDescriptorWrite = descriptorWrites.get(0);
             accelStructDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
             accelStructDescriptorWrite.dstBinding(2);
             accelStructDescriptorWrite.dstArrayElement(0);
-            accelStructDescriptorWrite.descriptorType(NVRayTracing.VK_DESCRIPTOR_TYPE_ACCELERATION_STRUCTURE_NV);
+            accelStructDescriptorWrite.descriptorType(this.rayTracing.getAccelerationStructureDescriptorType());
             accelStructDescriptorWrite.descriptorCount(1);
-            accelStructDescriptorWrite.pNext(accStructureDesc.address());
+            accelStructDescriptorWrite.pNext(this.rayTracing.createTlasDescriptorWrite(stack));
 
             VkWriteDescriptorSet imageStorageDescriptorWrite = descriptorWrites.get(1);
             imageStorageDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
@@ -1094,7 +1411,7 @@ class VulkanApp {
             imageStorageDescriptorWrite.descriptorCount(1);
             imageStorageDescriptorWrite.pImageInfo(imageInfo);
 
-            VkWriteDescriptorSet uboDescriptorWrite = descriptorWrites.get(0);
+            VkWriteDescriptorSet uboDescriptorWrite = descriptorWrites.get(2);
             uboDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
             uboDescriptorWrite.dstBinding(4);
             uboDescriptorWrite.dstArrayElement(0);
@@ -1102,16 +1419,80 @@ class VulkanApp {
             uboDescriptorWrite.descriptorCount(1);
             uboDescriptorWrite.pBufferInfo(bufferInfos);
 
-            for (int i = 0; i < pDescriptorSets.capacity(); i++) {
-                long descriptorSet = pDescriptorSets.get(i);
+            VkWriteDescriptorSet accumulationImageDescriptorWrite = descriptorWrites.get(3);
+            accumulationImageDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            accumulationImageDescriptorWrite.dstBinding(5);
+            accumulationImageDescriptorWrite.dstArrayElement(0);
+            accumulationImageDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            accumulationImageDescriptorWrite.descriptorCount(1);
+            accumulationImageDescriptorWrite.pImageInfo(accumulationImageInfo);
+
+            VkWriteDescriptorSet momentsImageDescriptorWrite = descriptorWrites.get(4);
+            momentsImageDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            momentsImageDescriptorWrite.dstBinding(6);
+            momentsImageDescriptorWrite.dstArrayElement(0);
+            momentsImageDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            momentsImageDescriptorWrite.descriptorCount(1);
+            momentsImageDescriptorWrite.pImageInfo(momentsImageInfo);
+
+            VkWriteDescriptorSet accumulationDescriptorWrite = descriptorWrites.get(5);
+            accumulationDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            accumulationDescriptorWrite.dstBinding(7);
+            accumulationDescriptorWrite.dstArrayElement(0);
+            accumulationDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER);
+            accumulationDescriptorWrite.descriptorCount(1);
+            accumulationDescriptorWrite.pBufferInfo(accumulationBufferInfos);
+
+            VkWriteDescriptorSet vertexDescriptorWrite = descriptorWrites.get(6);
+            vertexDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            vertexDescriptorWrite.dstBinding(8);
+            vertexDescriptorWrite.dstArrayElement(0);
+            vertexDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            vertexDescriptorWrite.descriptorCount(1);
+            vertexDescriptorWrite.pBufferInfo(vertexBufferInfos);
+
+            VkWriteDescriptorSet indexDescriptorWrite = descriptorWrites.get(7);
+            indexDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            indexDescriptorWrite.dstBinding(9);
+            indexDescriptorWrite.dstArrayElement(0);
+            indexDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            indexDescriptorWrite.descriptorCount(1);
+            indexDescriptorWrite.pBufferInfo(indexBufferInfos);
+
+            VkWriteDescriptorSet normalDepthDescriptorWrite = descriptorWrites.get(8);
+            normalDepthDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            normalDepthDescriptorWrite.dstBinding(10);
+            normalDepthDescriptorWrite.dstArrayElement(0);
+            normalDepthDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            normalDepthDescriptorWrite.descriptorCount(1);
+            normalDepthDescriptorWrite.pImageInfo(normalDepthImageInfo);
+
+            VkWriteDescriptorSet albedoDescriptorWrite = descriptorWrites.get(9);
+            albedoDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            albedoDescriptorWrite.dstBinding(11);
+            albedoDescriptorWrite.dstArrayElement(0);
+            albedoDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            albedoDescriptorWrite.descriptorCount(1);
+            albedoDescriptorWrite.pImageInfo(albedoImageInfo);
+
+            for (int i = 0; i < this.rtDescriptorSets.size(); i++) {
+                long descriptorSet = this.rtDescriptorSets.get(i);
                 accelStructDescriptorWrite.dstSet(descriptorSet);
                 imageStorageDescriptorWrite.dstSet(descriptorSet);
+                accumulationImageDescriptorWrite.dstSet(descriptorSet);
+                momentsImageDescriptorWrite.dstSet(descriptorSet);
+                vertexDescriptorWrite.dstSet(descriptorSet);
+                indexDescriptorWrite.dstSet(descriptorSet);
+                normalDepthDescriptorWrite.dstSet(descriptorSet);
+                albedoDescriptorWrite.dstSet(descriptorSet);
 
                 bufferInfos.buffer(this.uniformBuffers.get(i));
                 uboDescriptorWrite.dstSet(descriptorSet);
 
+                accumulationBufferInfos.buffer(this.accumulationBuffers.get(i));
+                accumulationDescriptorWrite.dstSet(descriptorSet);
+
                 VK10.vkUpdateDescriptorSets(this.vkDevice, descriptorWrites, null);
-                this.rtDescriptorSets.add(descriptorSet);
             }
         }
     }
@@ -1119,22 +1500,29 @@ class VulkanApp {
     private void createRtDescriptorPool() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
 
-            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.callocStack(3, stack);
+            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(4, stack);
 
             VkDescriptorPoolSize accelStructurePoolSize = poolSizes.get(0);
-            accelStructurePoolSize.type(NVRayTracing.VK_DESCRIPTOR_TYPE_ACCELERATION_STRUCTURE_NV);
+            accelStructurePoolSize.type(this.rayTracing.getAccelerationStructureDescriptorType());
             accelStructurePoolSize.descriptorCount(this.swapChainImages.size());
 
             VkDescriptorPoolSize imageStoragePoolSize = poolSizes.get(1);
             imageStoragePoolSize.type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
-            imageStoragePoolSize.descriptorCount(this.swapChainImages.size());
+            //output, accumulation, moments, normal + depth and albedo image
+            imageStoragePoolSize.descriptorCount(5 * this.swapChainImages.size());
 
 
             VkDescriptorPoolSize uniformBufferPoolSize = poolSizes.get(2);
             uniformBufferPoolSize.type(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER);
-            uniformBufferPoolSize.descriptorCount(this.swapChainImages.size());
+            //camera and accumulation uniform
+            uniformBufferPoolSize.descriptorCount(2 * this.swapChainImages.size());
 
-            VkDescriptorPoolCreateInfo poolCreateInfo = VkDescriptorPoolCreateInfo.callocStack(stack);
+            VkDescriptorPoolSize storageBufferPoolSize = poolSizes.get(3);
+            storageBufferPoolSize.type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            //vertices and indices
+            storageBufferPoolSize.descriptorCount(2 * this.swapChainImages.size());
+
+            VkDescriptorPoolCreateInfo poolCreateInfo = VkDescriptorPoolCreateInfo.calloc(stack);
             poolCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_POOL_CREATE_INFO);
             poolCreateInfo.pPoolSizes(poolSizes);
             poolCreateInfo.maxSets(this.swapChainImages.size());
@@ -1151,20 +1539,20 @@ class VulkanApp {
 
     private void createRtDescriptorSetLayout() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkDescriptorSetLayoutBinding.Buffer pBindings = VkDescriptorSetLayoutBinding.callocStack(3, stack);
+            VkDescriptorSetLayoutBinding.Buffer pBindings = VkDescriptorSetLayoutBinding.calloc(10, stack);
             //Tlas
             VkDescriptorSetLayoutBinding vkDescriptorSetLayoutBinding = pBindings.get(0);
             vkDescriptorSetLayoutBinding.binding(2);
             vkDescriptorSetLayoutBinding.descriptorCount(1);
-            vkDescriptorSetLayoutBinding.descriptorType(NVRayTracing.VK_DESCRIPTOR_TYPE_ACCELERATION_STRUCTURE_NV);
-            vkDescriptorSetLayoutBinding.stageFlags(NVRayTracing.VK_SHADER_STAGE_RAYGEN_BIT_NV | NVRayTracing.VK_SHADER_STAGE_CLOSEST_HIT_BIT_NV);
+            vkDescriptorSetLayoutBinding.descriptorType(this.rayTracing.getAccelerationStructureDescriptorType());
+            vkDescriptorSetLayoutBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR | KHRRayTracingPipeline.VK_SHADER_STAGE_CLOSEST_HIT_BIT_KHR);
 
             //Output Image
             VkDescriptorSetLayoutBinding vkDescriptorSetLayoutBinding2 = pBindings.get(1);
             vkDescriptorSetLayoutBinding2.binding(3);
             vkDescriptorSetLayoutBinding2.descriptorCount(1);
             vkDescriptorSetLayoutBinding2.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
-            vkDescriptorSetLayoutBinding2.stageFlags(NVRayTracing.VK_SHADER_STAGE_RAYGEN_BIT_NV);
+            vkDescriptorSetLayoutBinding2.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR);
 
 //UBO
             VkDescriptorSetLayoutBinding uboLayoutBinding = pBindings.get(2);
@@ -1172,9 +1560,58 @@ class VulkanApp {
             uboLayoutBinding.descriptorCount(1);
             uboLayoutBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER);
             uboLayoutBinding.pImmutableSamplers(null);
-            uboLayoutBinding.stageFlags(VK10.VK_SHADER_STAGE_VERTEX_BIT | NVRayTracing.VK_SHADER_STAGE_RAYGEN_BIT_NV);
-
-            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.callocStack(stack);
+            uboLayoutBinding.stageFlags(VK10.VK_SHADER_STAGE_VERTEX_BIT | KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR);
+
+            //Accumulation Image
+            VkDescriptorSetLayoutBinding accumulationImageBinding = pBindings.get(3);
+            accumulationImageBinding.binding(5);
+            accumulationImageBinding.descriptorCount(1);
+            accumulationImageBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            accumulationImageBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR);
+
+            //Moments Image
+            VkDescriptorSetLayoutBinding momentsImageBinding = pBindings.get(4);
+            momentsImageBinding.binding(6);
+            momentsImageBinding.descriptorCount(1);
+            momentsImageBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            momentsImageBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR);
+
+            //Accumulation UBO
+            VkDescriptorSetLayoutBinding accumulationBinding = pBindings.get(5);
+            accumulationBinding.binding(7);
+            accumulationBinding.descriptorCount(1);
+            accumulationBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER);
+            accumulationBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR);
+
+            //Vertices
+            VkDescriptorSetLayoutBinding vertexBinding = pBindings.get(6);
+            vertexBinding.binding(8);
+            vertexBinding.descriptorCount(1);
+            vertexBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            vertexBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_CLOSEST_HIT_BIT_KHR);
+
+            //Indices
+            VkDescriptorSetLayoutBinding indexBinding = pBindings.get(7);
+            indexBinding.binding(9);
+            indexBinding.descriptorCount(1);
+            indexBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            indexBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_CLOSEST_HIT_BIT_KHR);
+
+            //Normal + Depth Image
+            VkDescriptorSetLayoutBinding normalDepthBinding = pBindings.get(8);
+            normalDepthBinding.binding(10);
+            normalDepthBinding.descriptorCount(1);
+            normalDepthBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            normalDepthBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR);
+
+            //Albedo Image
+            VkDescriptorSetLayoutBinding albedoBinding = pBindings.get(9);
+            albedoBinding.binding(11);
+            albedoBinding.descriptorCount(1);
+            albedoBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            albedoBinding.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR);
+
+            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.calloc(stack);
             layoutInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_LAYOUT_CREATE_INFO);
             layoutInfo.pBindings(pBindings);
 
@@ -1188,18 +1625,43 @@ class VulkanApp {
         }
     }
 
-    private void drawFrame() {
+    /*
+     * Frame job, waits for the frame limiter and in the low latency mode for the frame slot as well,
+     * so the input is sampled after the wait instead of going stale during it
+     */
+    private void paceFrame() {
+        final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
+
+        phaseTimer.begin(FramePhase.PACE);
+        this.frameLimiter.waitForNextFrame();
+
+        if (this.presentPolicy.isLowLatency()) {
+            VK10.vkWaitForFences(this.vkDevice, this.inFlightFrames.get(this.currentFrame).getFence(), true, NO_TIMEOUT);
+        }
+        phaseTimer.end(FramePhase.PACE);
+    }
+
+    /*
+     * Frame job, waits for the frame slot and acquires the next swapchain image
+     */
+    private void acquireImage() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
+            final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
             Frame thisFrame = this.inFlightFrames.get(this.currentFrame);
 
+            phaseTimer.begin(FramePhase.FENCE_WAIT);
             VK10.vkWaitForFences(this.vkDevice, thisFrame.pFence(), true, NO_TIMEOUT);
+            phaseTimer.end(FramePhase.FENCE_WAIT);
 
             IntBuffer pImageIndex = stack.mallocInt(1);
 
+            phaseTimer.begin(FramePhase.ACQUIRE);
             int vkResult = KHRSwapchain.vkAcquireNextImageKHR(this.vkDevice, this.swapChain, NO_TIMEOUT, thisFrame.getImageAvailableSemaphore(), VK10.VK_NULL_HANDLE, pImageIndex);
+            phaseTimer.end(FramePhase.ACQUIRE);
 
             if (vkResult == KHRSwapchain.VK_ERROR_OUT_OF_DATE_KHR) {
                 recreateSwapChain();
+                this.frameSkipped = true;
                 return;
             } else if (vkResult != VK10.VK_SUCCESS) {
                 throw new RuntimeException("Cannot get image");
@@ -1207,50 +1669,102 @@ class VulkanApp {
 
             final int imageIndex = pImageIndex.get(0);
 
-            updateUniformBuffer(imageIndex);
-
             if (this.imagesInFlight.containsKey(imageIndex)) {
+                phaseTimer.begin(FramePhase.FENCE_WAIT);
                 VK10.vkWaitForFences(this.vkDevice, this.imagesInFlight.get(imageIndex).getFence(), true, NO_TIMEOUT);
+                phaseTimer.end(FramePhase.FENCE_WAIT);
+
+                readGpuTimes(imageIndex);
             }
 
             this.imagesInFlight.put(imageIndex, thisFrame);
+            this.frameImageIndex = imageIndex;
+            this.frameSkipped = false;
+        }
+    }
+
+    /*
+     * Frame job, the uniforms of the image are free once its last submission finished
+     */
+    private void writeUniforms() {
+        if (this.frameSkipped) {
+            return;
+        }
 
-            VkSubmitInfo submitInfo = VkSubmitInfo.callocStack(stack);
+        final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
+
+        phaseTimer.begin(FramePhase.UBO_UPDATE);
+        updateUniformBuffer(this.frameImageIndex);
+        phaseTimer.end(FramePhase.UBO_UPDATE);
+    }
+
+    private void submitFrame() {
+        if (this.frameSkipped) {
+            return;
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final PhaseTimer phaseTimer = this.frameMetrics.getPhaseTimer();
+            Frame thisFrame = this.inFlightFrames.get(this.currentFrame);
+
+            VkSubmitInfo submitInfo = VkSubmitInfo.calloc(stack);
             submitInfo.sType(VK10.VK_STRUCTURE_TYPE_SUBMIT_INFO);
             submitInfo.waitSemaphoreCount(1);
             submitInfo.pWaitSemaphores(thisFrame.pImageAvailableSemaphore());
             submitInfo.pWaitDstStageMask(stack.ints(VK10.VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT));
             submitInfo.pSignalSemaphores(thisFrame.pRenderFinishedSemaphore());
-            submitInfo.pCommandBuffers(stack.pointers(this.commandBuffers.get(imageIndex)));
+            submitInfo.pCommandBuffers(stack.pointers(this.commandBuffers.get(this.frameImageIndex)));
 
             VK10.vkResetFences(this.vkDevice, thisFrame.pFence());
-            System.out.println("pre submit");
+
+            phaseTimer.begin(FramePhase.SUBMIT);
             if (VK10.vkQueueSubmit(this.vkGraphicsQueue, submitInfo, thisFrame.getFence()) != VK10.VK_SUCCESS) {
                 VK10.vkResetFences(this.vkDevice, thisFrame.pFence());
                 throw new RuntimeException("Failed to submit draw command buffer");
             }
-            System.out.println("post submit");
-            VkPresentInfoKHR presentInfoKHR = VkPresentInfoKHR.callocStack(stack);
+            phaseTimer.end(FramePhase.SUBMIT);
+
+            VkPresentInfoKHR presentInfoKHR = VkPresentInfoKHR.calloc(stack);
             presentInfoKHR.sType(KHRSwapchain.VK_STRUCTURE_TYPE_PRESENT_INFO_KHR);
             presentInfoKHR.pWaitSemaphores(thisFrame.pRenderFinishedSemaphore());
             presentInfoKHR.swapchainCount(1);
             presentInfoKHR.pSwapchains(stack.longs(this.swapChain));
-            presentInfoKHR.pImageIndices(pImageIndex);
+            presentInfoKHR.pImageIndices(stack.ints(this.frameImageIndex));
 
-            System.out.println("pre present");
-            vkResult = KHRSwapchain.vkQueuePresentKHR(this.vkPresentQueue, presentInfoKHR);
-            if (vkResult == KHRSwapchain.VK_ERROR_OUT_OF_DATE_KHR || vkResult == KHRSwapchain.VK_SUBOPTIMAL_KHR || this.window.isWindowResized()) {
-                this.window.setWindowResized(false);
+            phaseTimer.begin(FramePhase.PRESENT);
+            int vkResult = KHRSwapchain.vkQueuePresentKHR(this.vkPresentQueue, presentInfoKHR);
+            phaseTimer.end(FramePhase.PRESENT);
+
+            recordPresentLatency();
+
+            if (vkResult == KHRSwapchain.VK_ERROR_OUT_OF_DATE_KHR || vkResult == KHRSwapchain.VK_SUBOPTIMAL_KHR || this.windowResized) {
+                this.windowResized = false;
                 recreateSwapChain();
             } else if (vkResult != VK10.VK_SUCCESS) {
                 throw new RuntimeException("Failed to present swap chain image");
+            } else if (this.retiredSwapChain != VK10.VK_NULL_HANDLE && ++this.retiredSwapChainPresents > MAX_FRAMES_IN_FLIGHT) {
+                //newer images replaced the last ones of the old swapchain on screen
+                destroyRetiredSwapChain();
             }
-
-            System.out.println("post present");
             this.currentFrame = (this.currentFrame + 1) % MAX_FRAMES_IN_FLIGHT;
         }
     }
 
+    /*
+     * Up to the return of vkQueuePresentKHR, the scan out comes later by an amount the present mode
+     * decides
+     */
+    private void recordPresentLatency() {
+        final long now = System.nanoTime();
+
+        this.frameMetrics.recordInputToPresent(now - this.inputSampleNanos);
+
+        if (this.oldestEventNanos >= 0) {
+            this.frameMetrics.recordEventToPresent(now - this.oldestEventNanos);
+            this.oldestEventNanos = -1L;
+        }
+    }
+
     private void createTextureImageView() {
         this.textureImageView = createImageView(this.textureImage, VK10.VK_FORMAT_R8G8B8A8_SRGB, VK10.VK_IMAGE_ASPECT_COLOR_BIT, this.mipLevels);
     }
@@ -1277,7 +1791,7 @@ class VulkanApp {
 
             LongBuffer pStagingBuffer = stack.mallocLong(1);
             LongBuffer pStagingBufferMemory = stack.mallocLong(1);
-            createAllocateBindBuffer(imageSize,
+            VulkanUtils.createAllocateBindBuffer(imageSize,
                     VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT,
                     VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
                     pStagingBuffer,
@@ -1325,16 +1839,16 @@ class VulkanApp {
     private void generateMipmaps(long image, int imageFormat, int width, int height, int mipMapLevels) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             //Check if image format supports linear blitting
-            VkFormatProperties formatProperties = VkFormatProperties.mallocStack(stack);
+            VkFormatProperties formatProperties = VkFormatProperties.malloc(stack);
             VK10.vkGetPhysicalDeviceFormatProperties(this.vkPhysicalDevice, imageFormat, formatProperties);
 
             if ((formatProperties.optimalTilingFeatures() & VK10.VK_FORMAT_FEATURE_SAMPLED_IMAGE_FILTER_LINEAR_BIT) == 0) {
                 throw new RuntimeException("Texture image format does not support linear blitting");
             }
 
-            VkCommandBuffer commandBuffer = beginSingleTimeCommands(this.vkDevice, this.commandPool);
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
 
-            VkImageMemoryBarrier.Buffer barrier = VkImageMemoryBarrier.callocStack(1, stack);
+            VkImageMemoryBarrier.Buffer barrier = VkImageMemoryBarrier.calloc(1, stack);
             barrier.sType(VK10.VK_STRUCTURE_TYPE_IMAGE_MEMORY_BARRIER);
             barrier.image(image);
             barrier.srcQueueFamilyIndex(VK10.VK_QUEUE_FAMILY_IGNORED);
@@ -1363,7 +1877,7 @@ class VulkanApp {
                         null,
                         barrier);
 
-                VkImageBlit.Buffer blit = VkImageBlit.callocStack(1, stack);
+                VkImageBlit.Buffer blit = VkImageBlit.calloc(1, stack);
                 blit.srcOffsets(0).set(0, 0, 0);
                 blit.srcOffsets(1).set(mipWidth, mipHeight, 1);
                 blit.srcSubresource().aspectMask(VK10.VK_IMAGE_ASPECT_COLOR_BIT);
@@ -1421,15 +1935,15 @@ class VulkanApp {
                     null,
                     barrier);
 
-            endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
         }
     }
 
     private void copyBufferToImage(long buffer, long image, int width, int height) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkCommandBuffer commandBuffer = beginSingleTimeCommands(this.vkDevice, this.commandPool);
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
 
-            VkBufferImageCopy.Buffer region = VkBufferImageCopy.callocStack(1, stack);
+            VkBufferImageCopy.Buffer region = VkBufferImageCopy.calloc(1, stack);
             region.bufferOffset(0);
             region.bufferRowLength(0); //Tightly packed
             region.bufferImageHeight(0); //Tightly packed
@@ -1438,11 +1952,11 @@ class VulkanApp {
             region.imageSubresource().baseArrayLayer(0);
             region.imageSubresource().layerCount(1);
             region.imageOffset().set(0, 0, 0);
-            region.imageExtent(VkExtent3D.callocStack(stack).set(width, height, 1));
+            region.imageExtent(VkExtent3D.calloc(stack).set(width, height, 1));
 
             VK10.vkCmdCopyBufferToImage(commandBuffer, buffer, image, VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL, region);
 
-            endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
         }
     }
 
@@ -1455,7 +1969,7 @@ class VulkanApp {
             LongBuffer pBufferMemory = stack.mallocLong(1);
 
             for (int i = 0; i < this.swapChainImages.size(); i++) {
-                createAllocateBindBuffer(UniformBufferObject.SIZEOF,
+                VulkanUtils.createAllocateBindBuffer(UniformBufferObject.SIZEOF,
                         VK10.VK_BUFFER_USAGE_UNIFORM_BUFFER_BIT,
                         VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
                         pBuffer,
@@ -1466,14 +1980,102 @@ class VulkanApp {
         }
     }
 
+    /*
+     * The raster version of createInstanceBuffers(): one slice of DrawInstanceWriter instances per
+     * swapchain image, read by cull.comp and shader.vert
+     */
+    private void createDrawInstanceBuffers() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final int sliceCount = this.swapChainImages.size();
+            final int sliceAlignment = (int) VulkanUtils.getMinStorageBufferOffsetAlignment(this.vkPhysicalDevice);
+            final long bufferSize = InstanceUploader.getSliceSize(this.scene, DrawInstanceWriter.INSTANCE_SIZE, sliceAlignment) * sliceCount;
+
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
+                    VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT,
+                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                    pBuffer,
+                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+
+            this.instanceBuffer = pBuffer.get(0);
+            this.instanceBufferMemory = pBufferMemory.get(0);
+
+            PointerBuffer data = stack.mallocPointer(1);
+            VK10.vkMapMemory(this.vkDevice, this.instanceBufferMemory, 0, bufferSize, 0, data);
+
+            this.instanceUploader = new InstanceUploader(this.scene, data.getByteBuffer(0, (int) bufferSize), sliceCount,
+                    DrawInstanceWriter.INSTANCE_SIZE, sliceAlignment, DrawInstanceWriter::write);
+        }
+    }
+
+    /*
+     * Per swapchain image the draws cull.comp writes and their count, only ever touched by the GPU
+     */
+    private void createDrawBuffers() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final int imageCount = this.swapChainImages.size();
+
+            this.maxDrawCount = this.meshPool.getMaxDrawCount(this.scene);
+            this.drawBuffers = new long[imageCount];
+            this.drawBuffersMemory = new long[imageCount];
+            this.drawCountBuffers = new long[imageCount];
+            this.drawCountBuffersMemory = new long[imageCount];
+
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            for (int i = 0; i < imageCount; i++) {
+                VulkanUtils.createAllocateBindBuffer((long) this.maxDrawCount * DrawCompactor.COMMAND_SIZE,
+                        VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT | VK10.VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT | VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT,
+                        VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                        pBuffer,
+                        pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+                this.drawBuffers[i] = pBuffer.get(0);
+                this.drawBuffersMemory[i] = pBufferMemory.get(0);
+
+                VulkanUtils.createAllocateBindBuffer(Integer.BYTES,
+                        VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT | VK10.VK_BUFFER_USAGE_INDIRECT_BUFFER_BIT | VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT,
+                        VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                        pBuffer,
+                        pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+                this.drawCountBuffers[i] = pBuffer.get(0);
+                this.drawCountBuffersMemory[i] = pBufferMemory.get(0);
+            }
+        }
+    }
+
+    private void createAccumulationBuffers() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            this.accumulationBuffers = new ArrayList<>(this.swapChainImages.size());
+            this.accumulationBuffersMemory = new ArrayList<>(this.swapChainImages.size());
+            this.tracedSamples = new int[this.swapChainImages.size()];
+
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            for (int i = 0; i < this.swapChainImages.size(); i++) {
+                VulkanUtils.createAllocateBindBuffer(AccumulationState.SIZEOF,
+                        VK10.VK_BUFFER_USAGE_UNIFORM_BUFFER_BIT,
+                        VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                        pBuffer,
+                        pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+                this.accumulationBuffers.add(pBuffer.get(0));
+                this.accumulationBuffersMemory.add(pBufferMemory.get(0));
+            }
+        }
+    }
+
     private void createIndexBuffer() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            long bufferSize = Integer.BYTES * this.sceneObject.getIndices().length;
+            final int[] indices = this.meshPool.getIndices();
+            long bufferSize = Integer.BYTES * indices.length;
 
             LongBuffer pBuffer = stack.mallocLong(1);
             LongBuffer pBufferMemory = stack.mallocLong(1);
 
-            createAllocateBindBuffer(bufferSize,
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
                     VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | VK10.VK_BUFFER_USAGE_INDEX_BUFFER_BIT,
                     VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
                     pBuffer,
@@ -1486,11 +2088,11 @@ class VulkanApp {
 
             VK10.vkMapMemory(this.vkDevice, stagingBufferMemory, 0, bufferSize, 0, data);
             {
-                ByteBufferUtils.copyIntoBuffer(data.getByteBuffer(0, (int) bufferSize), this.sceneObject.getIndices());
+                ByteBufferUtils.copyIntoBuffer(data.getByteBuffer(0, (int) bufferSize), indices);
             }
             VK10.vkUnmapMemory(this.vkDevice, stagingBufferMemory);
 
-            createAllocateBindBuffer(bufferSize,
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
                     VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT | VK10.VK_BUFFER_USAGE_INDEX_BUFFER_BIT,
                     VK10.VK_MEMORY_HEAP_DEVICE_LOCAL_BIT,
                     pBuffer,
@@ -1508,12 +2110,80 @@ class VulkanApp {
 
     private void createVertexBuffer() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            long bufferSize = Vertex.SIZEOF * this.sceneObject.getVertices().length;
+            final Vertex[] vertices = this.meshPool.getVertices();
+
+            this.vertexFormat = VertexFormat.of(this.vertexLayout, vertices);
+
+            if (!VulkanUtils.isVertexFormatSupported(this.vkPhysicalDevice, this.vertexFormat.getPositionFormat())
+                    || !VulkanUtils.isVertexFormatSupported(this.vkPhysicalDevice, this.vertexFormat.getTexCoordFormat())) {
+                this.vertexFormat = VertexFormat.full();
+            }
+
+            System.out.println("Vertex format: " + this.vertexFormat);
+
+            long bufferSize = (long) this.vertexFormat.getStride() * vertices.length;
+
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(bufferSize, VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT,
+                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                    pBuffer,
+                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+
+            long stagingBuffer = pBuffer.get(0);
+            long stagingBufferMemory = pBufferMemory.get(0);
+
+            PointerBuffer data = stack.mallocPointer(1);
+
+            VK10.vkMapMemory(this.vkDevice, stagingBufferMemory, 0, bufferSize, 0, data);
+            {
+                VertexPacker.pack(this.vertexFormat, vertices, data.getByteBuffer(0, (int) bufferSize));
+            }
+            VK10.vkUnmapMemory(this.vkDevice, stagingBufferMemory);
+
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
+                    VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT | VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT,
+                    VK10.VK_MEMORY_HEAP_DEVICE_LOCAL_BIT,
+                    pBuffer,
+                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+
+            this.vertexBuffer = pBuffer.get(0);
+            this.vertexBufferMemory = pBufferMemory.get(0);
+
+            copyBuffer(stagingBuffer, this.vertexBuffer, bufferSize);
+
+            VK10.vkDestroyBuffer(this.vkDevice, stagingBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, stagingBufferMemory, null);
+        }
+    }
 
+    /*
+     * The mesh and cluster tables of the pool for cull.comp, they never change
+     */
+    private void createMeshTables() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
             LongBuffer pBuffer = stack.mallocLong(1);
             LongBuffer pBufferMemory = stack.mallocLong(1);
 
-            createAllocateBindBuffer(bufferSize, VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT,
+            createDeviceLocalBuffer((long) this.meshPool.getEntryCount() * MeshPool.MESH_SIZE, VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT,
+                    this.meshPool::writeMeshes, pBuffer, pBufferMemory);
+            this.meshBuffer = pBuffer.get(0);
+            this.meshBufferMemory = pBufferMemory.get(0);
+
+            createDeviceLocalBuffer((long) this.meshPool.getClusterCount() * MeshPool.CLUSTER_SIZE, VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT,
+                    this.meshPool::writeClusters, pBuffer, pBufferMemory);
+            this.clusterBuffer = pBuffer.get(0);
+            this.clusterBufferMemory = pBufferMemory.get(0);
+        }
+    }
+
+    /*
+     * Fills a staging buffer with contents and copies it into a new device local buffer
+     */
+    private void createDeviceLocalBuffer(long bufferSize, int usage, Consumer<ByteBuffer> contents, LongBuffer pBuffer, LongBuffer pBufferMemory) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VulkanUtils.createAllocateBindBuffer(bufferSize, VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT,
                     VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
                     pBuffer,
                     pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
@@ -1521,68 +2191,253 @@ class VulkanApp {
             long stagingBuffer = pBuffer.get(0);
             long stagingBufferMemory = pBufferMemory.get(0);
 
-            PointerBuffer data = stack.mallocPointer(1);
+            PointerBuffer data = stack.mallocPointer(1);
+
+            VK10.vkMapMemory(this.vkDevice, stagingBufferMemory, 0, bufferSize, 0, data);
+            {
+                contents.accept(data.getByteBuffer(0, (int) bufferSize));
+            }
+            VK10.vkUnmapMemory(this.vkDevice, stagingBufferMemory);
+
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
+                    VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT | usage,
+                    VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                    pBuffer,
+                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+
+            copyBuffer(stagingBuffer, pBuffer.get(0), bufferSize);
+
+            VK10.vkDestroyBuffer(this.vkDevice, stagingBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, stagingBufferMemory, null);
+        }
+    }
+
+    private void copyBuffer(long srcBuffer, long dstBuffer, long size) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
+
+            VkBufferCopy.Buffer copyRegion = VkBufferCopy.calloc(1, stack);
+            copyRegion.size(size);
+
+            VK10.vkCmdCopyBuffer(commandBuffer, srcBuffer, dstBuffer, copyRegion);
+
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
+        }
+    }
+
+    private void createSwapChainObjects() {
+        if (isHeadless()) {
+            createOffscreenImages();
+        } else {
+            createSwapChain();
+        }
+        createRenderObjects();
+    }
+
+    /*
+     * Everything rendered with the swapchain images. Only createSizeDependentObjects() depends on
+     * the extent, the rest on the number and format of the images, see recreateSwapChain().
+     */
+    private void createRenderObjects() {
+        this.renderPass = createRenderPass(this.swapChainImageFormat, this.msaaSamples,
+                isHeadless() ? VK10.VK_IMAGE_LAYOUT_COLOR_ATTACHMENT_OPTIMAL : KHRSwapchain.VK_IMAGE_LAYOUT_PRESENT_SRC_KHR,
+                this.vkDevice, this.vkPhysicalDevice);
+
+        if (!this.rtxOn) {
+            createGraphicsPipeline();
+        }
+
+        createSizeDependentObjects();
+        createUniformBuffers();
+
+        if (!this.rtxOn) {
+            createDrawInstanceBuffers();
+
+            if (this.gpuCulling) {
+                createDrawBuffers();
+            }
+        }
+
+        if (this.rtxOn) {
+            createAccumulationBuffers();
+            createRtDescriptorPool();
+            createRtDescriptorSets();
+            createRtGraphicsPipeline();
+            createRtShaderBindingTable();
+
+            if (this.denoiseFilter != null) {
+                this.denoisePass = new DenoisePass(this.vkDevice, this.denoiseFilter, this.rtStorageImageView, this.denoiseImageViews,
+                        this.rtNormalDepthImageView, this.rtAlbedoImageView);
+            }
+
+            this.tonemapPass = new TonemapPass(this.vkDevice, this.tonemapper, getTonemapFlags(), this.rtStorageImageView,
+                    getTonemapTargetViews(), this.swapChainExtent.width(), this.swapChainExtent.height());
+
+            this.gpuTimer = new GpuTimer(this.vkDevice, this.vkPhysicalDevice, this.graphicsQueueFamily, this.swapChainImages.size());
+
+            if (this.scene.isDynamic()) {
+                createInstanceBuffers();
+            }
+        } else {
+            createDescriptorPool();
+            createDescriptorSets();
+
+            if (this.gpuCulling) {
+                this.cullPass = new CullPass(this.vkDevice, this.uniformBuffers.stream().mapToLong(Long::longValue).toArray(),
+                        this.instanceBuffer, this.instanceUploader.getSliceSize(), this.meshBuffer, this.clusterBuffer,
+                        this.drawBuffers, this.drawCountBuffers, this.scene.getInstanceCount(), this.maxDrawCount,
+                        this.lodSelector.getScale(this.swapChainExtent.height()), !this.drawIndirectCount);
+            }
+        }
+
+        if (isHeadless()) {
+            createReadbackBuffers();
+        }
+
+        createCommandBuffers();
+    }
+
+    /*
+     * The swapchain image views and everything with the size of the swapchain
+     */
+    private void createSizeDependentObjects() {
+        createImageViews();
+        createColorResources();
+        createDepthResources();
 
-            VK10.vkMapMemory(this.vkDevice, stagingBufferMemory, 0, bufferSize, 0, data);
-            {
-                ByteBufferUtils.copyIntoBuffer(data.getByteBuffer(0, (int) bufferSize), this.sceneObject.getVertices());
-            }
-            VK10.vkUnmapMemory(this.vkDevice, stagingBufferMemory);
+        if (this.rtxOn) {
+            createRtStorageResources();
+        }
 
-            createAllocateBindBuffer(bufferSize,
-                    VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT | VK10.VK_BUFFER_USAGE_VERTEX_BUFFER_BIT,
-                    VK10.VK_MEMORY_HEAP_DEVICE_LOCAL_BIT,
-                    pBuffer,
-                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+        createFrameBuffers();
+    }
 
-            this.vertexBuffer = pBuffer.get(0);
-            this.vertexBufferMemory = pBufferMemory.get(0);
+    /*
+     * Points the descriptors of the render objects at the images of createSizeDependentObjects()
+     */
+    private void updateSizeDependentDescriptors() {
+        if (this.rtxOn) {
+            writeRtDescriptorSets();
 
-            copyBuffer(stagingBuffer, this.vertexBuffer, bufferSize);
+            if (this.denoisePass != null) {
+                this.denoisePass.setImages(this.rtStorageImageView, this.denoiseImageViews, this.rtNormalDepthImageView, this.rtAlbedoImageView);
+            }
 
-            VK10.vkDestroyBuffer(this.vkDevice, stagingBuffer, null);
-            VK10.vkFreeMemory(this.vkDevice, stagingBufferMemory, null);
+            this.tonemapPass.setImages(this.rtStorageImageView, getTonemapTargetViews(), this.swapChainExtent.width(), this.swapChainExtent.height());
+        } else if (this.gpuCulling) {
+            this.cullPass.setLodScale(this.lodSelector.getScale(this.swapChainExtent.height()));
         }
     }
 
-    private void copyBuffer(long srcBuffer, long dstBuffer, long size) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkCommandBuffer commandBuffer = beginSingleTimeCommands(this.vkDevice, this.commandPool);
+    private long[] getTonemapTargetViews() {
+        return this.tonemapDirect ? this.swapChainImageViews.stream().mapToLong(Long::longValue).toArray() : this.displayImageViews;
+    }
 
-            VkBufferCopy.Buffer copyRegion = VkBufferCopy.callocStack(1, stack);
-            copyRegion.size(size);
+    private void createOffscreenImages() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            this.swapChainImageFormat = this.rtxOn ? HEADLESS_RT_IMAGE_FORMAT : HEADLESS_RASTER_IMAGE_FORMAT;
+            this.tonemapDirect = this.rtxOn && this.swapChainImageFormat == DISPLAY_IMAGE_FORMAT;
+            this.swapChainExtent = VkExtent2D.create().set(this.headlessConfig.getWidth(), this.headlessConfig.getHeight());
+            this.swapChainImages = new ArrayList<>(MAX_FRAMES_IN_FLIGHT);
+            this.offscreenImagesMemory = new ArrayList<>(MAX_FRAMES_IN_FLIGHT);
 
-            VK10.vkCmdCopyBuffer(commandBuffer, srcBuffer, dstBuffer, copyRegion);
+            LongBuffer pImage = stack.mallocLong(1);
+            LongBuffer pImageMemory = stack.mallocLong(1);
 
-            endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkGraphicsQueue);
+            for (int i = 0; i < MAX_FRAMES_IN_FLIGHT; i++) {
+                createImage(this.vkDevice, this.vkPhysicalDevice, this.swapChainExtent.width(),
+                        this.swapChainExtent.height(),
+                        this.swapChainImageFormat,
+                        VK10.VK_IMAGE_TILING_OPTIMAL,
+                        VK10.VK_IMAGE_USAGE_COLOR_ATTACHMENT_BIT | VK10.VK_IMAGE_USAGE_TRANSFER_SRC_BIT | VK10.VK_IMAGE_USAGE_TRANSFER_DST_BIT
+                                | (this.tonemapDirect ? VK10.VK_IMAGE_USAGE_STORAGE_BIT : 0),
+                        VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                        pImage,
+                        pImageMemory,
+                        1,
+                        VK10.VK_SAMPLE_COUNT_1_BIT);
+
+                this.swapChainImages.add(pImage.get(0));
+                this.offscreenImagesMemory.add(pImageMemory.get(0));
+            }
         }
     }
 
-    private void createSwapChainObjects() {
-        createSwapChain();
-        createImageViews();
-        this.renderPass = createRenderPass(this.swapChainImageFormat, this.msaaSamples, this.vkDevice, this.vkPhysicalDevice);
-//        createGraphicsPipeline();
-
-        createColorResources();
-        createDepthResources();
+    /*
+     * One persistently mapped buffer per offscreen image, so reading a frame back is a plain memory
+     * access instead of a map/unmap per frame. Host cached memory makes those reads fast, devices
+     * without coherent cached memory get plain host visible and coherent memory.
+     */
+    private void createReadbackBuffers() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final int imageCount = this.swapChainImages.size();
+            final int bufferSize = this.swapChainExtent.width() * this.swapChainExtent.height() * READBACK_PIXEL_SIZE;
 
-        createRtStorageResources();
+            this.readbackBuffers = new ArrayList<>(imageCount);
+            this.readbackBuffersMemory = new ArrayList<>(imageCount);
+            this.readbackData = new ArrayList<>(imageCount);
+            this.readbackFrameNumbers = new long[imageCount];
+            Arrays.fill(this.readbackFrameNumbers, -1);
 
-        createFrameBuffers();
-        createUniformBuffers();
-//        createDescriptorPool();
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+            PointerBuffer data = stack.mallocPointer(1);
 
-        createRtDescriptorPool();
+            for (int i = 0; i < imageCount; i++) {
+                VulkanUtils.createAllocateBindBuffer(bufferSize,
+                        VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT,
+                        VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT | VK10.VK_MEMORY_PROPERTY_HOST_CACHED_BIT,
+                        VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                        pBuffer,
+                        pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
 
-//        createDescriptorSets();
+                if (VK10.vkMapMemory(this.vkDevice, pBufferMemory.get(0), 0, bufferSize, 0, data) != VK10.VK_SUCCESS) {
+                    throw new RuntimeException("Failed to map readback buffer");
+                }
 
-        createRtDescriptorSets();
+                this.readbackBuffers.add(pBuffer.get(0));
+                this.readbackBuffersMemory.add(pBufferMemory.get(0));
+                this.readbackData.add(data.getByteBuffer(0, bufferSize));
+            }
+        }
+    }
 
-        createRtGraphicsPipeline();
-        createRtShaderBindingTable();
+    private void recordReadback(int i, MemoryStack stack) {
+        VkCommandBuffer commandBuffer = this.commandBuffers.get(i);
 
-        createCommandBuffers();
+        transitionImageLayout(this.vkDevice,
+                this.commandPool,
+                this.vkGraphicsQueue,
+                this.swapChainImages.get(i),
+                this.swapChainImageFormat,
+                this.rtxOn ? getRtOutputLayout() : VK10.VK_IMAGE_LAYOUT_COLOR_ATTACHMENT_OPTIMAL,
+                VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
+                1, commandBuffer);
+
+        VkBufferImageCopy.Buffer region = VkBufferImageCopy.calloc(1, stack);
+        region.bufferOffset(0);
+        region.bufferRowLength(0);
+        region.bufferImageHeight(0);
+        region.imageSubresource().set(VK10.VK_IMAGE_ASPECT_COLOR_BIT, 0, 0, 1);
+        region.imageOffset().set(0, 0, 0);
+        region.imageExtent().set(this.swapChainExtent.width(), this.swapChainExtent.height(), 1);
+
+        VK10.vkCmdCopyImageToBuffer(commandBuffer, this.swapChainImages.get(i), VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
+                this.readbackBuffers.get(i), region);
+
+        //make the copy visible to the host once the fence of the frame is signaled
+        VkBufferMemoryBarrier.Buffer barrier = VkBufferMemoryBarrier.calloc(1, stack);
+        barrier.sType(VK10.VK_STRUCTURE_TYPE_BUFFER_MEMORY_BARRIER);
+        barrier.srcAccessMask(VK10.VK_ACCESS_TRANSFER_WRITE_BIT);
+        barrier.dstAccessMask(VK10.VK_ACCESS_HOST_READ_BIT);
+        barrier.srcQueueFamilyIndex(VK10.VK_QUEUE_FAMILY_IGNORED);
+        barrier.dstQueueFamilyIndex(VK10.VK_QUEUE_FAMILY_IGNORED);
+        barrier.buffer(this.readbackBuffers.get(i));
+        barrier.offset(0);
+        barrier.size(VK10.VK_WHOLE_SIZE);
+
+        VK10.vkCmdPipelineBarrier(commandBuffer, VK10.VK_PIPELINE_STAGE_TRANSFER_BIT, VK10.VK_PIPELINE_STAGE_HOST_BIT,
+                0, null, barrier, null);
     }
 
     private void createColorResources() {
@@ -1594,7 +2449,7 @@ class VulkanApp {
                     this.swapChainExtent.height(),
                     this.swapChainImageFormat,
                     VK10.VK_IMAGE_TILING_OPTIMAL,
-                    VK10.VK_IMAGE_USAGE_COLOR_ATTACHMENT_BIT | VK10.VK_IMAGE_USAGE_STORAGE_BIT,
+                    VK10.VK_IMAGE_USAGE_COLOR_ATTACHMENT_BIT,
                     VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
                     pColorImage,
                     pColorImageMemory,
@@ -1648,7 +2503,7 @@ class VulkanApp {
                 layouts.put(i, this.descriptorSetLayout);
             }
 
-            VkDescriptorSetAllocateInfo allocateInfo = VkDescriptorSetAllocateInfo.callocStack(stack);
+            VkDescriptorSetAllocateInfo allocateInfo = VkDescriptorSetAllocateInfo.calloc(stack);
             allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_ALLOCATE_INFO);
             allocateInfo.descriptorPool(this.descriptorPool);
             allocateInfo.pSetLayouts(layouts);
@@ -1661,16 +2516,20 @@ class VulkanApp {
 
             this.descriptorSets = new ArrayList<>(pDescriptorSets.capacity());
 
-            VkDescriptorBufferInfo.Buffer bufferInfos = VkDescriptorBufferInfo.callocStack(1, stack);
+            VkDescriptorBufferInfo.Buffer bufferInfos = VkDescriptorBufferInfo.calloc(1, stack);
             bufferInfos.offset(0);
             bufferInfos.range(UniformBufferObject.SIZEOF);
 
-            VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.callocStack(1, stack);
+            VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.calloc(1, stack);
             imageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL);
             imageInfo.imageView(this.textureImageView);
             imageInfo.sampler(this.textureSampler);
 
-            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.callocStack(2, stack);
+            VkDescriptorBufferInfo.Buffer instanceInfos = VkDescriptorBufferInfo.calloc(1, stack);
+            instanceInfos.buffer(this.instanceBuffer);
+            instanceInfos.range(this.instanceUploader.getSliceSize());
+
+            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.calloc(3, stack);
 
             VkWriteDescriptorSet uboDescriptorWrite = descriptorWrites.get(0);
             uboDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
@@ -1688,11 +2547,21 @@ class VulkanApp {
             samplerDescriptorWrite.descriptorCount(1);
             samplerDescriptorWrite.pImageInfo(imageInfo);
 
+            VkWriteDescriptorSet instanceDescriptorWrite = descriptorWrites.get(2);
+            instanceDescriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+            instanceDescriptorWrite.dstBinding(2);
+            instanceDescriptorWrite.dstArrayElement(0);
+            instanceDescriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            instanceDescriptorWrite.descriptorCount(1);
+            instanceDescriptorWrite.pBufferInfo(instanceInfos);
+
             for (int i = 0; i < pDescriptorSets.capacity(); i++) {
                 long descriptorSet = pDescriptorSets.get(i);
                 bufferInfos.buffer(this.uniformBuffers.get(i));
+                instanceInfos.offset(this.instanceUploader.getSliceOffset(i));
                 uboDescriptorWrite.dstSet(descriptorSet);
                 samplerDescriptorWrite.dstSet(descriptorSet);
+                instanceDescriptorWrite.dstSet(descriptorSet);
                 VK10.vkUpdateDescriptorSets(this.vkDevice, descriptorWrites, null);
                 this.descriptorSets.add(descriptorSet);
             }
@@ -1702,7 +2571,7 @@ class VulkanApp {
     private void createDescriptorPool() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
 
-            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.callocStack(2, stack);
+            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(3, stack);
 
             VkDescriptorPoolSize uniformBufferPoolSize = poolSizes.get(0);
             uniformBufferPoolSize.type(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER);
@@ -1712,7 +2581,11 @@ class VulkanApp {
             textureSamplerPoolSize.type(VK10.VK_DESCRIPTOR_TYPE_COMBINED_IMAGE_SAMPLER);
             textureSamplerPoolSize.descriptorCount(this.swapChainImages.size());
 
-            VkDescriptorPoolCreateInfo poolCreateInfo = VkDescriptorPoolCreateInfo.callocStack(stack);
+            VkDescriptorPoolSize instancePoolSize = poolSizes.get(2);
+            instancePoolSize.type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            instancePoolSize.descriptorCount(this.swapChainImages.size());
+
+            VkDescriptorPoolCreateInfo poolCreateInfo = VkDescriptorPoolCreateInfo.calloc(stack);
             poolCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_POOL_CREATE_INFO);
             poolCreateInfo.pPoolSizes(poolSizes);
             poolCreateInfo.maxSets(this.swapChainImages.size());
@@ -1729,14 +2602,14 @@ class VulkanApp {
 
     private void createDescriptorSetLayout() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkDescriptorSetLayoutBinding.Buffer bindings = VkDescriptorSetLayoutBinding.callocStack(2, stack);
+            VkDescriptorSetLayoutBinding.Buffer bindings = VkDescriptorSetLayoutBinding.calloc(3, stack);
 
             VkDescriptorSetLayoutBinding uboLayoutBinding = bindings.get(0);
             uboLayoutBinding.binding(0);
             uboLayoutBinding.descriptorCount(1);
             uboLayoutBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER);
             uboLayoutBinding.pImmutableSamplers(null);
-            uboLayoutBinding.stageFlags(VK10.VK_SHADER_STAGE_VERTEX_BIT | NVRayTracing.VK_SHADER_STAGE_RAYGEN_BIT_NV);
+            uboLayoutBinding.stageFlags(VK10.VK_SHADER_STAGE_VERTEX_BIT);
 
 
             VkDescriptorSetLayoutBinding samplerLayoutBinding = bindings.get(1);
@@ -1744,9 +2617,16 @@ class VulkanApp {
             samplerLayoutBinding.descriptorCount(1);
             samplerLayoutBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_COMBINED_IMAGE_SAMPLER);
             samplerLayoutBinding.pImmutableSamplers(null);
-            samplerLayoutBinding.stageFlags(VK10.VK_SHADER_STAGE_FRAGMENT_BIT | NVRayTracing.VK_SHADER_STAGE_CLOSEST_HIT_BIT_NV);
+            samplerLayoutBinding.stageFlags(VK10.VK_SHADER_STAGE_FRAGMENT_BIT);
 
-            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.callocStack(stack);
+            VkDescriptorSetLayoutBinding instanceLayoutBinding = bindings.get(2);
+            instanceLayoutBinding.binding(2);
+            instanceLayoutBinding.descriptorCount(1);
+            instanceLayoutBinding.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER);
+            instanceLayoutBinding.pImmutableSamplers(null);
+            instanceLayoutBinding.stageFlags(VK10.VK_SHADER_STAGE_VERTEX_BIT);
+
+            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.calloc(stack);
             layoutInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_LAYOUT_CREATE_INFO);
             layoutInfo.pBindings(bindings);
 
@@ -1765,10 +2645,10 @@ class VulkanApp {
         this.imagesInFlight = new HashMap<>(this.swapChainImages.size());
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkSemaphoreCreateInfo semaphoreCreateInfo = VkSemaphoreCreateInfo.callocStack(stack);
+            VkSemaphoreCreateInfo semaphoreCreateInfo = VkSemaphoreCreateInfo.calloc(stack);
             semaphoreCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_SEMAPHORE_CREATE_INFO);
 
-            VkFenceCreateInfo fenceCreateInfo = VkFenceCreateInfo.callocStack(stack);
+            VkFenceCreateInfo fenceCreateInfo = VkFenceCreateInfo.calloc(stack);
             fenceCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_FENCE_CREATE_INFO);
             fenceCreateInfo.flags(VK10.VK_FENCE_CREATE_SIGNALED_BIT);
 
@@ -1792,7 +2672,7 @@ class VulkanApp {
         this.commandBuffers = new ArrayList<>(commandBuffersCount);
 
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkCommandBufferAllocateInfo allocInfo = VkCommandBufferAllocateInfo.callocStack(stack);
+            VkCommandBufferAllocateInfo allocInfo = VkCommandBufferAllocateInfo.calloc(stack);
             allocInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_ALLOCATE_INFO);
             allocInfo.commandPool(this.commandPool);
             allocInfo.level(VK10.VK_COMMAND_BUFFER_LEVEL_PRIMARY);
@@ -1807,43 +2687,60 @@ class VulkanApp {
             for (int i = 0; i < commandBuffersCount; i++) {
                 this.commandBuffers.add(new VkCommandBuffer(pCommandBuffers.get(i), this.vkDevice));
             }
+        }
 
-            VkCommandBufferBeginInfo beginInfo = VkCommandBufferBeginInfo.callocStack(stack);
-            beginInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_BEGIN_INFO);
+        recordCommandBuffers();
+    }
 
-            if (this.rtxOn) {
-                for (int i = 0; i < commandBuffersCount; i++) {
-                    VkCommandBuffer commandBuffer = this.commandBuffers.get(i);
+    /*
+     * Again after a resize, none of the command buffers may be pending
+     */
+    private void recordCommandBuffers() {
+        final int commandBuffersCount = this.commandBuffers.size();
 
-                    if (VK10.vkBeginCommandBuffer(commandBuffer, beginInfo) != VK10.VK_SUCCESS) {
-                        throw new RuntimeException("Failed to begin recording command buffer");
-                    }
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkCommandBufferBeginInfo beginInfo = VkCommandBufferBeginInfo.calloc(stack);
+            beginInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_BEGIN_INFO);
 
-                    rayTrace(i, stack);
+            if (this.rtxOn) {
+                updateRenderExtent();
+                this.recordedRenderWidths = new int[commandBuffersCount];
+                this.recordedRenderHeights = new int[commandBuffersCount];
 
-                    if (VK10.vkEndCommandBuffer(commandBuffer) != VK10.VK_SUCCESS) {
-                        throw new RuntimeException("Failed to record command buffer");
-                    }
+                for (int i = 0; i < commandBuffersCount; i++) {
+                    recordRtCommandBuffer(i, stack);
                 }
                 return;
             }
 
-            VkRenderPassBeginInfo renderPassInfo = VkRenderPassBeginInfo.callocStack(stack);
+            VkRenderPassBeginInfo renderPassInfo = VkRenderPassBeginInfo.calloc(stack);
             renderPassInfo.sType(VK10.VK_STRUCTURE_TYPE_RENDER_PASS_BEGIN_INFO);
             renderPassInfo.renderPass(this.renderPass);
 
-            VkRect2D renderArea = VkRect2D.callocStack(stack);
-            renderArea.offset(VkOffset2D.callocStack(stack).set(0, 0));
+            VkRect2D renderArea = VkRect2D.calloc(stack);
+            renderArea.offset(VkOffset2D.calloc(stack).set(0, 0));
             renderArea.extent(this.swapChainExtent);
 
             renderPassInfo.renderArea(renderArea);
 
-            VkClearValue.Buffer clearValues = VkClearValue.callocStack(2, stack);
+            VkClearValue.Buffer clearValues = VkClearValue.calloc(2, stack);
             clearValues.get(0).color().float32(stack.floats(0.0f, 0.0f, 0.0f, 1.0f));
             clearValues.get(1).depthStencil().set(1.0f, 0);
 
             renderPassInfo.pClearValues(clearValues);
 
+            VkViewport.Buffer viewport = VkViewport.calloc(1, stack);
+            viewport.x(0.0f);
+            viewport.y(0.0f);
+            viewport.width(this.swapChainExtent.width());
+            viewport.height(this.swapChainExtent.height());
+            viewport.minDepth(0.0f);
+            viewport.maxDepth(1.0f);
+
+            VkRect2D.Buffer scissor = VkRect2D.calloc(1, stack);
+            scissor.offset(VkOffset2D.calloc(stack).set(0, 0));
+            scissor.extent(this.swapChainExtent);
+
             for (int i = 0; i < commandBuffersCount; i++) {
                 VkCommandBuffer commandBuffer = this.commandBuffers.get(i);
 
@@ -1853,9 +2750,15 @@ class VulkanApp {
 
                 renderPassInfo.framebuffer(this.swapChainFrameBuffers.get(i));
 
+                if (this.gpuCulling) {
+                    this.cullPass.cmdCull(commandBuffer, i, stack);
+                }
+
                 VK10.vkCmdBeginRenderPass(commandBuffer, renderPassInfo, VK10.VK_SUBPASS_CONTENTS_INLINE);
                 {
                     VK10.vkCmdBindPipeline(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_GRAPHICS, this.graphicsPipeline);
+                    VK10.vkCmdSetViewport(commandBuffer, 0, viewport);
+                    VK10.vkCmdSetScissor(commandBuffer, 0, scissor);
 
                     LongBuffer vertexBuffers = stack.longs(this.vertexBuffer);
                     LongBuffer vertexOffsets = stack.longs(0);
@@ -1865,10 +2768,27 @@ class VulkanApp {
                     VK10.vkCmdBindDescriptorSets(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_GRAPHICS,
                             this.pipelineLayout, 0, stack.longs(this.descriptorSets.get(i)), null);
 
-                    VK10.vkCmdDrawIndexed(commandBuffer, this.sceneObject.getIndices().length, 1, 0, 0, 0);
+                    if (!this.gpuCulling) {
+                        recordInstanceDraws(commandBuffer);
+                    } else if (this.drawIndirectCount) {
+                        KHRDrawIndirectCount.vkCmdDrawIndexedIndirectCountKHR(commandBuffer, this.drawBuffers[i], 0,
+                                this.drawCountBuffers[i], 0, this.maxDrawCount, DrawCompactor.COMMAND_SIZE);
+                    } else if (this.multiDrawIndirect) {
+                        //the draws cull.comp left out are zero
+                        VK10.vkCmdDrawIndexedIndirect(commandBuffer, this.drawBuffers[i], 0, this.maxDrawCount, DrawCompactor.COMMAND_SIZE);
+                    } else {
+                        for (int draw = 0; draw < this.maxDrawCount; draw++) {
+                            VK10.vkCmdDrawIndexedIndirect(commandBuffer, this.drawBuffers[i],
+                                    (long) draw * DrawCompactor.COMMAND_SIZE, 1, DrawCompactor.COMMAND_SIZE);
+                        }
+                    }
                 }
                 VK10.vkCmdEndRenderPass(commandBuffer);
 
+                if (isHeadless()) {
+                    recordReadback(i, stack);
+                }
+
                 if (VK10.vkEndCommandBuffer(commandBuffer) != VK10.VK_SUCCESS) {
                     throw new RuntimeException("Failed to record command buffer");
                 }
@@ -1876,6 +2796,18 @@ class VulkanApp {
         }
     }
 
+    /*
+     * Without cull.comp: every instance whole at LOD 0, firstInstance picks its model matrix
+     */
+    private void recordInstanceDraws(VkCommandBuffer commandBuffer) {
+        for (int i = 0; i < this.scene.getInstanceCount(); i++) {
+            final int mesh = this.scene.getInstance(i).getBlasId();
+
+            VK10.vkCmdDrawIndexed(commandBuffer, this.meshPool.getMesh(mesh).getIndices().length, 1,
+                    this.meshPool.getFirstIndex(mesh), this.meshPool.getVertexOffset(mesh), i);
+        }
+    }
+
     private void createFrameBuffers() {
         this.swapChainFrameBuffers = new ArrayList<>(this.swapChainImageViews.size());
         try (MemoryStack stack = MemoryStack.stackPush()) {
@@ -1883,7 +2815,7 @@ class VulkanApp {
             LongBuffer pFrameBuffer = stack.mallocLong(1);
 
             //Lets allocate the create info struct once and just update the pAttachments field each iteration
-            VkFramebufferCreateInfo framebufferCreateInfo = VkFramebufferCreateInfo.callocStack(stack);
+            VkFramebufferCreateInfo framebufferCreateInfo = VkFramebufferCreateInfo.calloc(stack);
             framebufferCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_FRAMEBUFFER_CREATE_INFO);
             framebufferCreateInfo.renderPass(this.renderPass);
             framebufferCreateInfo.width(this.swapChainExtent.width());
@@ -1908,7 +2840,7 @@ class VulkanApp {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             //Let's compile the GLSL shaders into SPIR-V at runtime using the shaderc library
             //Check ShaderSPIRVUtils class to see how it can be done
-            SPIRV vertShaderSpirv = ShaderSPIRVUtils.compileShaderFile("shaders/shader.vert", ShaderKind.VERTEX_SHADER);
+            SPIRV vertShaderSpirv = ShaderSPIRVUtils.compileShaderFile("shaders/shader.vert", ShaderKind.VERTEX_SHADER, this.vertexFormat.getShaderDefines());
             SPIRV fragShaderSpirv = ShaderSPIRVUtils.compileShaderFile("shaders/shader.frag", ShaderKind.FRAGMENT_SHADER);
 
             long vertShaderModule = createShaderModule(vertShaderSpirv.byteCode());
@@ -1916,7 +2848,7 @@ class VulkanApp {
 
             ByteBuffer entryPoint = stack.UTF8("main");
 
-            VkPipelineShaderStageCreateInfo.Buffer shaderStages = VkPipelineShaderStageCreateInfo.callocStack(2, stack);
+            VkPipelineShaderStageCreateInfo.Buffer shaderStages = VkPipelineShaderStageCreateInfo.calloc(2, stack);
 
             VkPipelineShaderStageCreateInfo vertShaderStageInfo = shaderStages.get(0);
             vertShaderStageInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO);
@@ -1931,37 +2863,30 @@ class VulkanApp {
             fragShaderStageInfo.pName(entryPoint);
 
             // ===> VERTEX STAGE <===
-            VkPipelineVertexInputStateCreateInfo vertexInputInfo = VkPipelineVertexInputStateCreateInfo.callocStack(stack);
+            VkPipelineVertexInputStateCreateInfo vertexInputInfo = VkPipelineVertexInputStateCreateInfo.calloc(stack);
             vertexInputInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_VERTEX_INPUT_STATE_CREATE_INFO);
-            vertexInputInfo.pVertexBindingDescriptions(Vertex.getBindingDescription());
-            vertexInputInfo.pVertexAttributeDescriptions(Vertex.getAttributeDescriptions());
+            vertexInputInfo.pVertexBindingDescriptions(this.vertexFormat.getBindingDescription());
+            vertexInputInfo.pVertexAttributeDescriptions(this.vertexFormat.getAttributeDescriptions());
 
             // ===> ASSEMBLY STAGE <===
-            VkPipelineInputAssemblyStateCreateInfo inputAssembly = VkPipelineInputAssemblyStateCreateInfo.callocStack(stack);
+            VkPipelineInputAssemblyStateCreateInfo inputAssembly = VkPipelineInputAssemblyStateCreateInfo.calloc(stack);
             inputAssembly.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_INPUT_ASSEMBLY_STATE_CREATE_INFO);
             inputAssembly.topology(VK10.VK_PRIMITIVE_TOPOLOGY_TRIANGLE_LIST);
             inputAssembly.primitiveRestartEnable(false);
 
             // ===> VIEWPORT & SCISSOR
-            VkViewport.Buffer viewport = VkViewport.callocStack(1, stack);
-            viewport.x(0.0f);
-            viewport.y(0.0f);
-            viewport.width(this.swapChainExtent.width());
-            viewport.height(this.swapChainExtent.height());
-            viewport.minDepth(0.0f);
-            viewport.maxDepth(1.0f);
-
-            VkRect2D.Buffer scissor = VkRect2D.callocStack(1, stack);
-            scissor.offset(VkOffset2D.callocStack(stack).set(0, 0));
-            scissor.extent(this.swapChainExtent);
-
-            VkPipelineViewportStateCreateInfo viewportState = VkPipelineViewportStateCreateInfo.callocStack(stack);
+            //dynamic, set by the command buffers so the pipeline does not depend on the swapchain extent
+            VkPipelineViewportStateCreateInfo viewportState = VkPipelineViewportStateCreateInfo.calloc(stack);
             viewportState.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_VIEWPORT_STATE_CREATE_INFO);
-            viewportState.pViewports(viewport);
-            viewportState.pScissors(scissor);
+            viewportState.viewportCount(1);
+            viewportState.scissorCount(1);
+
+            VkPipelineDynamicStateCreateInfo dynamicState = VkPipelineDynamicStateCreateInfo.calloc(stack);
+            dynamicState.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_DYNAMIC_STATE_CREATE_INFO);
+            dynamicState.pDynamicStates(stack.ints(VK10.VK_DYNAMIC_STATE_VIEWPORT, VK10.VK_DYNAMIC_STATE_SCISSOR));
 
             // ===> RASTERIZATION STAGE <===
-            VkPipelineRasterizationStateCreateInfo rasterizer = VkPipelineRasterizationStateCreateInfo.callocStack(stack);
+            VkPipelineRasterizationStateCreateInfo rasterizer = VkPipelineRasterizationStateCreateInfo.calloc(stack);
             rasterizer.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_RASTERIZATION_STATE_CREATE_INFO);
             rasterizer.depthClampEnable(false);
             rasterizer.rasterizerDiscardEnable(false);
@@ -1972,14 +2897,14 @@ class VulkanApp {
             rasterizer.depthBiasEnable(false);
 
             // ===> MULTISAMPLING <===
-            VkPipelineMultisampleStateCreateInfo multisampling = VkPipelineMultisampleStateCreateInfo.callocStack(stack);
+            VkPipelineMultisampleStateCreateInfo multisampling = VkPipelineMultisampleStateCreateInfo.calloc(stack);
             multisampling.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_MULTISAMPLE_STATE_CREATE_INFO);
             multisampling.sampleShadingEnable(true);
             multisampling.minSampleShading(0.2f); //Enable sample shading in the pipeline
             multisampling.rasterizationSamples(this.msaaSamples); //Min fraction for sample shading; closer to one is smoother
 
             // ===> DEPTH-STENCIL TESTING <===
-            VkPipelineDepthStencilStateCreateInfo depthStencil = VkPipelineDepthStencilStateCreateInfo.callocStack(stack);
+            VkPipelineDepthStencilStateCreateInfo depthStencil = VkPipelineDepthStencilStateCreateInfo.calloc(stack);
             depthStencil.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_DEPTH_STENCIL_STATE_CREATE_INFO);
             depthStencil.depthTestEnable(true);
             depthStencil.depthWriteEnable(true);
@@ -1990,11 +2915,11 @@ class VulkanApp {
             depthStencil.stencilTestEnable(false);
 
             // ===> COLOR BLENDING <===
-            VkPipelineColorBlendAttachmentState.Buffer colorBlendAttachmentStates = VkPipelineColorBlendAttachmentState.callocStack(1, stack);
+            VkPipelineColorBlendAttachmentState.Buffer colorBlendAttachmentStates = VkPipelineColorBlendAttachmentState.calloc(1, stack);
             colorBlendAttachmentStates.colorWriteMask(VK10.VK_COLOR_COMPONENT_R_BIT | VK10.VK_COLOR_COMPONENT_G_BIT | VK10.VK_COLOR_COMPONENT_B_BIT | VK10.VK_COLOR_COMPONENT_A_BIT);
             colorBlendAttachmentStates.blendEnable(false);
 
-            VkPipelineColorBlendStateCreateInfo colorBlendStateCreateInfo = VkPipelineColorBlendStateCreateInfo.callocStack(stack);
+            VkPipelineColorBlendStateCreateInfo colorBlendStateCreateInfo = VkPipelineColorBlendStateCreateInfo.calloc(stack);
             colorBlendStateCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_COLOR_BLEND_STATE_CREATE_INFO);
             colorBlendStateCreateInfo.logicOpEnable(false);
             colorBlendStateCreateInfo.logicOp(VK10.VK_LOGIC_OP_COPY);
@@ -2002,7 +2927,7 @@ class VulkanApp {
             colorBlendStateCreateInfo.blendConstants(stack.floats(0.0f, 0.0f, 0.0f, 0.0f));
 
             // ===> PIPELINE LAYOUT CREATION <===
-            VkPipelineLayoutCreateInfo pipelineLayoutCreateInfo = VkPipelineLayoutCreateInfo.callocStack(stack);
+            VkPipelineLayoutCreateInfo pipelineLayoutCreateInfo = VkPipelineLayoutCreateInfo.calloc(stack);
             pipelineLayoutCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_LAYOUT_CREATE_INFO);
             pipelineLayoutCreateInfo.pSetLayouts(stack.longs(this.descriptorSetLayout));
 
@@ -2014,7 +2939,7 @@ class VulkanApp {
 
             this.pipelineLayout = pPipelineLayout.get(0);
 
-            VkGraphicsPipelineCreateInfo.Buffer pipelineCreateInfos = VkGraphicsPipelineCreateInfo.callocStack(1, stack);
+            VkGraphicsPipelineCreateInfo.Buffer pipelineCreateInfos = VkGraphicsPipelineCreateInfo.calloc(1, stack);
             pipelineCreateInfos.sType(VK10.VK_STRUCTURE_TYPE_GRAPHICS_PIPELINE_CREATE_INFO);
             pipelineCreateInfos.pStages(shaderStages);
             pipelineCreateInfos.pVertexInputState(vertexInputInfo);
@@ -2024,6 +2949,7 @@ class VulkanApp {
             pipelineCreateInfos.pMultisampleState(multisampling);
             pipelineCreateInfos.pDepthStencilState(depthStencil);
             pipelineCreateInfos.pColorBlendState(colorBlendStateCreateInfo);
+            pipelineCreateInfos.pDynamicState(dynamicState);
             pipelineCreateInfos.layout(this.pipelineLayout);
             pipelineCreateInfos.renderPass(this.renderPass);
             pipelineCreateInfos.subpass(0);
@@ -2050,75 +2976,16 @@ class VulkanApp {
 
     private void createRtGraphicsPipeline() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            SPIRV rayGenShader = ShaderSPIRVUtils.compileShaderFile("shaders/raytrace.rgen", ShaderKind.RAYGEN_SHADER);
-            SPIRV missShader = ShaderSPIRVUtils.compileShaderFile("shaders/raytrace.rmiss", ShaderKind.MISS_SHADER);
+            SPIRV rayGenShader = ShaderSPIRVUtils.compileShaderFile(this.rayTracingApi.getShaderFile("raytrace.rgen"), ShaderKind.RAYGEN_SHADER, this.rayTracingApi.getShaderTargetEnv());
+            SPIRV missShader = ShaderSPIRVUtils.compileShaderFile(this.rayTracingApi.getShaderFile("raytrace.rmiss"), ShaderKind.MISS_SHADER, this.rayTracingApi.getShaderTargetEnv());
+            SPIRV closestHitShader = ShaderSPIRVUtils.compileShaderFile(this.rayTracingApi.getShaderFile("raytrace.rchit"), ShaderKind.CLOSEST_HIT_SHADER, this.rayTracingApi.getShaderTargetEnv());
 
             long rayGenShaderModule = createShaderModule(rayGenShader.byteCode());
             long missShaderModule = createShaderModule(missShader.byteCode());
-
-            ByteBuffer entryPoint = stack.UTF8("main");
-
-            VkPipelineShaderStageCreateInfo.Buffer shaderStages = VkPipelineShaderStageCreateInfo.callocStack(3, stack);
-            VkRayTracingShaderGroupCreateInfoNV.Buffer shaderGroup = VkRayTracingShaderGroupCreateInfoNV.callocStack(3, stack);
-
-
-            VkRayTracingShaderGroupCreateInfoNV rayGenGroup = shaderGroup.get(0);
-            rayGenGroup.sType(NVRayTracing.VK_STRUCTURE_TYPE_RAY_TRACING_SHADER_GROUP_CREATE_INFO_NV);
-            rayGenGroup.type(NVRayTracing.VK_RAY_TRACING_SHADER_GROUP_TYPE_GENERAL_NV);
-            rayGenGroup.anyHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-            rayGenGroup.closestHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-            rayGenGroup.intersectionShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-
-            //Index binding 0
-            VkPipelineShaderStageCreateInfo rayGenShaderStageInfo = shaderStages.get(0);
-            rayGenShaderStageInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO);
-            rayGenShaderStageInfo.stage(NVRayTracing.VK_SHADER_STAGE_RAYGEN_BIT_NV);
-            rayGenShaderStageInfo.module(rayGenShaderModule);
-            rayGenShaderStageInfo.pName(entryPoint);
-
-            //Index binding 0
-            rayGenGroup.generalShader(0);
-
-            VkRayTracingShaderGroupCreateInfoNV missGroup = shaderGroup.get(1);
-            missGroup.sType(NVRayTracing.VK_STRUCTURE_TYPE_RAY_TRACING_SHADER_GROUP_CREATE_INFO_NV);
-            missGroup.type(NVRayTracing.VK_RAY_TRACING_SHADER_GROUP_TYPE_GENERAL_NV);
-            missGroup.anyHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-            missGroup.closestHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-            missGroup.intersectionShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-
-            //Index binding 1
-            VkPipelineShaderStageCreateInfo missShaderStageInfo = shaderStages.get(1);
-            missShaderStageInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO);
-            missShaderStageInfo.stage(NVRayTracing.VK_SHADER_STAGE_MISS_BIT_NV);
-            missShaderStageInfo.module(missShaderModule);
-            missShaderStageInfo.pName(entryPoint);
-
-            //Index binding 1
-            missGroup.generalShader(1);
-
-            SPIRV closestHitShader = ShaderSPIRVUtils.compileShaderFile("shaders/raytrace.rchit", ShaderKind.CLOSEST_HIT_SHADER);
-
             long closestHitModule = createShaderModule(closestHitShader.byteCode());
 
-            VkRayTracingShaderGroupCreateInfoNV hitGroup = shaderGroup.get(2);
-            hitGroup.sType(NVRayTracing.VK_STRUCTURE_TYPE_RAY_TRACING_SHADER_GROUP_CREATE_INFO_NV);
-            hitGroup.type(NVRayTracing.VK_RAY_TRACING_SHADER_GROUP_TYPE_TRIANGLES_HIT_GROUP_NV);
-            hitGroup.anyHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-            hitGroup.generalShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-            hitGroup.intersectionShader(NVRayTracing.VK_SHADER_UNUSED_NV);
-
-            //Index binding 2
-            VkPipelineShaderStageCreateInfo closestHitInfo = shaderStages.get(2);
-            closestHitInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO);
-            closestHitInfo.stage(NVRayTracing.VK_SHADER_STAGE_CLOSEST_HIT_BIT_NV);
-            closestHitInfo.module(closestHitModule);
-            closestHitInfo.pName(entryPoint);
-
-            //Index binding 2
-            hitGroup.closestHitShader(2);
-
-            VkPushConstantRange.Buffer pushConstant = VkPushConstantRange.callocStack(1, stack);
-            pushConstant.stageFlags(NVRayTracing.VK_SHADER_STAGE_RAYGEN_BIT_NV | NVRayTracing.VK_SHADER_STAGE_CLOSEST_HIT_BIT_NV | NVRayTracing.VK_SHADER_STAGE_MISS_BIT_NV);
+            VkPushConstantRange.Buffer pushConstant = VkPushConstantRange.calloc(1, stack);
+            pushConstant.stageFlags(KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR | KHRRayTracingPipeline.VK_SHADER_STAGE_CLOSEST_HIT_BIT_KHR | KHRRayTracingPipeline.VK_SHADER_STAGE_MISS_BIT_KHR);
             pushConstant.offset(0);
             pushConstant.size(RtPushConstant.SIZE_OF);
 
@@ -2131,9 +2998,9 @@ class VulkanApp {
 //                layouts.put(i, this.descriptorSetLayout);
 //            }
 
-            VkPipelineLayoutCreateInfo pipelineLayoutCreateInfo = VkPipelineLayoutCreateInfo.callocStack(stack);
+            VkPipelineLayoutCreateInfo pipelineLayoutCreateInfo = VkPipelineLayoutCreateInfo.calloc(stack);
             pipelineLayoutCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_LAYOUT_CREATE_INFO);
-//            pipelineLayoutCreateInfo.pPushConstantRanges(pushConstant);
+            pipelineLayoutCreateInfo.pPushConstantRanges(pushConstant);
             pipelineLayoutCreateInfo.pSetLayouts(layouts);
 
             LongBuffer pPipelineLayout = stack.longs(VK10.VK_NULL_HANDLE);
@@ -2144,20 +3011,7 @@ class VulkanApp {
 
             this.rtPipelineLayout = pPipelineLayout.get(0);
 
-            VkRayTracingPipelineCreateInfoNV.Buffer rayTracingPipeline = VkRayTracingPipelineCreateInfoNV.callocStack(1, stack);
-            rayTracingPipeline.sType(NVRayTracing.VK_STRUCTURE_TYPE_RAY_TRACING_PIPELINE_CREATE_INFO_NV);
-            rayTracingPipeline.pStages(shaderStages);
-            rayTracingPipeline.pGroups(shaderGroup);
-            rayTracingPipeline.maxRecursionDepth(1);
-            rayTracingPipeline.layout(this.rtPipelineLayout);
-
-            LongBuffer pRayTracingPipeline = stack.longs(VK10.VK_NULL_HANDLE);
-
-            if (NVRayTracing.vkCreateRayTracingPipelinesNV(this.vkDevice, VK10.VK_NULL_HANDLE, rayTracingPipeline, null, pRayTracingPipeline) != VK10.VK_SUCCESS) {
-                throw new RuntimeException("Failed to create RT pipeline layout");
-            }
-
-            this.rtPipeline = pRayTracingPipeline.get(0);
+            this.rtPipeline = this.rayTracing.createPipeline(this.rtPipelineLayout, rayGenShaderModule, missShaderModule, closestHitModule);
 
             // ===> RELEASE RT RESOURCES <===
 
@@ -2171,179 +3025,205 @@ class VulkanApp {
         }
     }
 
+    /*
+     * One hit group record per hit group id of the scene's instances. They all use the closest hit group
+     * and carry the id as material index.
+     */
     private void createRtShaderBindingTable() {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
+        ShaderBindingTableLayout layout = ShaderBindingTableLayout.create(this.rayTracing.getShaderGroupHandleSize(),
+                this.rayTracing.getShaderGroupHandleAlignment(),
+                this.rayTracing.getShaderGroupBaseAlignment(),
+                1,
+                this.scene.getHitGroupCount(),
+                0,
+                0,
+                HIT_RECORD_DATA_SIZE);
+
+        this.shaderBindingTable = ShaderBindingTable.create(this.rayTracing, this.rtPipeline, this.groupCount, layout, this.vkDevice, this.vkPhysicalDevice);
+
+        this.shaderBindingTable.setGroup(ShaderBindingTableLayout.Region.RAY_GEN, 0, RAY_GEN_GROUP);
+        this.shaderBindingTable.setGroup(ShaderBindingTableLayout.Region.MISS, 0, MISS_GROUP);
+
+        for (int hitGroupId = 0; hitGroupId < layout.getRecordCount(ShaderBindingTableLayout.Region.HIT_GROUP); hitGroupId++) {
+            this.shaderBindingTable.setGroup(ShaderBindingTableLayout.Region.HIT_GROUP, hitGroupId, CLOSEST_HIT_GROUP);
+            this.shaderBindingTable.setData(ShaderBindingTableLayout.Region.HIT_GROUP, hitGroupId, 0, hitGroupId);
+        }
 
-            ByteBuffer shaderHandleStorage = stack.malloc(this.sbtSize);
-            NVRayTracing.vkGetRayTracingShaderGroupHandlesNV(this.vkDevice, this.rtPipeline, 0, this.groupCount, shaderHandleStorage);
+        System.out.println("sbtSize: " + layout.getSize());
+    }
 
-            LongBuffer pBuffer = stack.mallocLong(1);
-            LongBuffer pBufferMemory = stack.mallocLong(1);
+    /*
+     * Records the ray tracing command buffer of an image for the current render extent. The
+     * command buffer must not be pending.
+     */
+    private void recordRtCommandBuffer(int i, MemoryStack stack) {
+        VkCommandBuffer commandBuffer = this.commandBuffers.get(i);
 
-            createAllocateBindBuffer(this.sbtSize,
-                    VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT,
-                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
-                    pBuffer,
-                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+        VkCommandBufferBeginInfo beginInfo = VkCommandBufferBeginInfo.calloc(stack);
+        beginInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_BEGIN_INFO);
+
+        if (VK10.vkBeginCommandBuffer(commandBuffer, beginInfo) != VK10.VK_SUCCESS) {
+            throw new RuntimeException("Failed to begin recording command buffer");
+        }
 
-            this.sbtBuffer = pBuffer.get(0);
-            this.sbtBufferMemory = pBufferMemory.get(0);
+        rayTrace(i, stack);
 
-            PointerBuffer data = stack.mallocPointer(this.sbtSize);
-            VK10.vkMapMemory(this.vkDevice, this.sbtBufferMemory, 0, this.sbtSize, 0, data);
-            {
-                //TODO maybe this needs to be changed, it will be shown if the traceRaysNV doesnt work :: ibikov
-                ByteBufferUtils.copyIntoBufferNew(data.getByteBuffer(0, this.sbtSize), shaderHandleStorage, this.groupHandleSize, this.groupCount);
-            }
-            VK10.vkUnmapMemory(this.vkDevice, this.sbtBufferMemory);
+        if (isHeadless()) {
+            recordReadback(i, stack);
+        }
+
+        if (VK10.vkEndCommandBuffer(commandBuffer) != VK10.VK_SUCCESS) {
+            throw new RuntimeException("Failed to record command buffer");
         }
+
+        this.recordedRenderWidths[i] = this.renderWidth;
+        this.recordedRenderHeights[i] = this.renderHeight;
     }
 
     private void rayTrace(int i, MemoryStack stack) {
-        //clearColor
-        //lightPosition
-        //lightIntensity
-        //lightType
-        RtPushConstant rtPushConstant = new RtPushConstant();
-        rtPushConstant.getClearColor().set(0, 0, 0);
-        rtPushConstant.getLightPosition().set(new Vector3f(10.f, 15.f, 8.f));
-        rtPushConstant.setLightIntensity(100f);
-        rtPushConstant.setLightType(0);  // 0: point, 1: infinite
-
-        VK10.vkCmdBindPipeline(this.commandBuffers.get(i), NVRayTracing.VK_PIPELINE_BIND_POINT_RAY_TRACING_NV, this.rtPipeline);
-
-        VK10.vkCmdBindDescriptorSets(this.commandBuffers.get(i), NVRayTracing.VK_PIPELINE_BIND_POINT_RAY_TRACING_NV,
+        RtPushConstant rtPushConstant = RtPushConstant.createDefault();
+
+        if (this.instanceUploader != null) {
+            recordTlasUpdate(i, stack);
+        }
+
+        VK10.vkCmdBindPipeline(this.commandBuffers.get(i), KHRRayTracingPipeline.VK_PIPELINE_BIND_POINT_RAY_TRACING_KHR, this.rtPipeline);
+
+        VK10.vkCmdBindDescriptorSets(this.commandBuffers.get(i), KHRRayTracingPipeline.VK_PIPELINE_BIND_POINT_RAY_TRACING_KHR,
                 this.rtPipelineLayout, 0, stack.longs(this.rtDescriptorSets.get(i)), null);
 
-        int progSize = this.groupAlignment;
-        int rayGenOffset = 0;
-        int missOffset = progSize;
-        int hitGroupOffset = 3 * progSize;
-
-
-        System.out.println("pre traceRays");
-        NVRayTracing.vkCmdTraceRaysNV(this.commandBuffers.get(i),
-                this.sbtBuffer,
-                rayGenOffset,
-
-                this.sbtBuffer,
-                missOffset,
-                progSize,
-
-                this.sbtBuffer,
-                hitGroupOffset,
-                progSize,
-
-                VK10.VK_NULL_HANDLE,
-                VK10.VK_NULL_HANDLE,
-                VK10.VK_NULL_HANDLE,
-                this.window.getWidth(),
-                this.window.getHeight(),
-                1);
-        System.out.println("post traceRays");
-        //copy RT image output to swapchain image
-                    /*
-				Copy raytracing output to swap chain image
-			*/
-
-        // Prepare current swapchain image as transfer destination
-//                    vks::tools::setImageLayout(
-//                            drawCmdBuffers[i],
-//                            swapChain.images[i],
-//                            VK_IMAGE_LAYOUT_UNDEFINED,
-//                            VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL,
-//                            subresourceRange);
+        //the light of raytrace.rchit, the same one SoftwareRayTracer gets
+        ByteBuffer pushConstant = stack.malloc(RtPushConstant.SIZE_OF);
+        rtPushConstant.write(pushConstant);
+        VK10.vkCmdPushConstants(this.commandBuffers.get(i), this.rtPipelineLayout,
+                KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR | KHRRayTracingPipeline.VK_SHADER_STAGE_CLOSEST_HIT_BIT_KHR | KHRRayTracingPipeline.VK_SHADER_STAGE_MISS_BIT_KHR,
+                0, pushConstant);
+
+        //the accumulation images carry over from the previous frame, the denoiser of the previous frame may still read the G-buffer
+        VkMemoryBarrier.Buffer accumulationBarrier = VkMemoryBarrier.calloc(1, stack);
+        accumulationBarrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+        accumulationBarrier.srcAccessMask(VK10.VK_ACCESS_SHADER_WRITE_BIT);
+        accumulationBarrier.dstAccessMask(VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT);
+
+        VK10.vkCmdPipelineBarrier(this.commandBuffers.get(i),
+                KHRRayTracingPipeline.VK_PIPELINE_STAGE_RAY_TRACING_SHADER_BIT_KHR | VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
+                KHRRayTracingPipeline.VK_PIPELINE_STAGE_RAY_TRACING_SHADER_BIT_KHR,
+                0,
+                accumulationBarrier,
+                null,
+                null);
+
+        this.gpuTimer.cmdReset(this.commandBuffers.get(i), i);
+        this.gpuTimer.cmdTimestamp(this.commandBuffers.get(i), i, GpuPhase.TRACE_RAYS.ordinal());
+
+        this.rayTracing.cmdTraceRays(this.commandBuffers.get(i),
+                this.shaderBindingTable,
+                this.renderWidth,
+                this.renderHeight,
+                stack);
+
+        this.gpuTimer.cmdTimestamp(this.commandBuffers.get(i), i, GpuPhase.DENOISE.ordinal());
+
+        if (this.denoisePass != null) {
+            this.denoisePass.cmdDenoise(this.commandBuffers.get(i), this.renderWidth, this.renderHeight, stack);
+        }
+
+        this.gpuTimer.cmdTimestamp(this.commandBuffers.get(i), i, GpuPhase.TONEMAP.ordinal());
+
+        final long tonemapTarget = this.tonemapDirect ? this.swapChainImages.get(i) : this.displayImages[i];
+
+        //the previous frame in the target is not needed
         transitionImageLayout(this.vkDevice,
                 this.commandPool,
                 this.vkGraphicsQueue,
-                this.swapChainImages.get(i),
-                this.swapChainImageFormat,
+                tonemapTarget,
+                DISPLAY_IMAGE_FORMAT,
                 VK10.VK_IMAGE_LAYOUT_UNDEFINED,
-                VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL,
-                1, this.commandBuffers.get(i));
-//
-//                    // Prepare ray tracing output image as transfer source
-//                    vks::tools::setImageLayout(
-//                            drawCmdBuffers[i],
-//                            storageImage.image,
-//                            VK_IMAGE_LAYOUT_GENERAL,
-//                            VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
-//                            subresourceRange);
-        transitionImageLayout(this.vkDevice,
-                this.commandPool,
-                this.vkGraphicsQueue,
-                this.rtStorageImage,
-                this.swapChainImageFormat,
-                VK10.VK_IMAGE_LAYOUT_GENERAL,
-                VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
-                1, this.commandBuffers.get(i));
-//
-//                    VkImageCopy copyRegion{};
-//                    copyRegion.srcSubresource = { VK_IMAGE_ASPECT_COLOR_BIT, 0, 0, 1 };
-//                    copyRegion.srcOffset = { 0, 0, 0 };
-//                    copyRegion.dstSubresource = { VK_IMAGE_ASPECT_COLOR_BIT, 0, 0, 1 };
-//                    copyRegion.dstOffset = { 0, 0, 0 };
-//                    copyRegion.extent = { width, height, 1 };
-//                    vkCmdCopyImage(drawCmdBuffers[i], storageImage.image, VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL, swapChain.images[i], VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL, 1, &copyRegion);
-
-        VkImageSubresourceLayers srcSubresource = VkImageSubresourceLayers.callocStack(stack);
-        srcSubresource.set(VK10.VK_IMAGE_ASPECT_COLOR_BIT, 0, 0, 1);
-
-        VkImageSubresourceLayers dstSubresource = VkImageSubresourceLayers.callocStack(stack);
-        dstSubresource.set(VK10.VK_IMAGE_ASPECT_COLOR_BIT, 0, 0, 1);
-
-        VkOffset3D srcOffset = VkOffset3D.callocStack(stack);
-        srcOffset.set(0, 0, 0);
-        VkOffset3D dstOffset = VkOffset3D.callocStack(stack);
-        dstOffset.set(0, 0, 0);
-
-        VkExtent3D extent3d = VkExtent3D.callocStack(stack);
-        extent3d.set(this.window.getWidth(), this.window.getHeight(), 1);
-
-        VkImageCopy.Buffer copyRegion = VkImageCopy.callocStack(1, stack);
-        copyRegion.srcSubresource(srcSubresource);
-        copyRegion.srcOffset(srcOffset);
-        copyRegion.dstSubresource(dstSubresource);
-        copyRegion.dstOffset(dstOffset);
-        copyRegion.extent(extent3d);
-        VK10.vkCmdCopyImage(this.commandBuffers.get(i), this.rtStorageImage, VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL, this.swapChainImages.get(i), VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL, copyRegion);
-//
-//                    // Transition swap chain image back for presentation
-//                    vks::tools::setImageLayout(
-//                            drawCmdBuffers[i],
-//                            swapChain.images[i],
-//                            VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL,
-//                            VK_IMAGE_LAYOUT_PRESENT_SRC_KHR,
-//                            subresourceRange);
-        transitionImageLayout(this.vkDevice,
-                this.commandPool,
-                this.vkGraphicsQueue,
-                this.swapChainImages.get(i),
-                this.swapChainImageFormat,
-                VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL,
-                KHRSwapchain.VK_IMAGE_LAYOUT_PRESENT_SRC_KHR,
-                1, this.commandBuffers.get(i));
-//
-//                    // Transition ray tracing output image back to general layout
-//                    vks::tools::setImageLayout(
-//                            drawCmdBuffers[i],
-//                            storageImage.image,
-//                            VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
-//                            VK_IMAGE_LAYOUT_GENERAL,
-//                            subresourceRange);
-        transitionImageLayout(this.vkDevice,
-                this.commandPool,
-                this.vkGraphicsQueue,
-                this.rtStorageImage,
-                this.swapChainImageFormat,
-                VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
                 VK10.VK_IMAGE_LAYOUT_GENERAL,
                 1, this.commandBuffers.get(i));
+
+        this.tonemapPass.cmdTonemap(this.commandBuffers.get(i), i, this.renderWidth, this.renderHeight, stack);
+
+        this.gpuTimer.cmdTimestamp(this.commandBuffers.get(i), i, GpuPhase.PRE_COPY_BARRIERS.ordinal());
+
+        if (!this.tonemapDirect) {
+            transitionImageLayout(this.vkDevice,
+                    this.commandPool,
+                    this.vkGraphicsQueue,
+                    this.swapChainImages.get(i),
+                    this.swapChainImageFormat,
+                    VK10.VK_IMAGE_LAYOUT_UNDEFINED,
+                    VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL,
+                    1, this.commandBuffers.get(i));
+
+            transitionImageLayout(this.vkDevice,
+                    this.commandPool,
+                    this.vkGraphicsQueue,
+                    tonemapTarget,
+                    DISPLAY_IMAGE_FORMAT,
+                    VK10.VK_IMAGE_LAYOUT_GENERAL,
+                    VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
+                    1, this.commandBuffers.get(i));
+        }
+
+        this.gpuTimer.cmdTimestamp(this.commandBuffers.get(i), i, GpuPhase.COPY.ordinal());
+
+        if (!this.tonemapDirect) {
+            //same texel size, the bytes are copied as they are
+            VkImageCopy.Buffer copyRegion = VkImageCopy.calloc(1, stack);
+            copyRegion.srcSubresource().set(VK10.VK_IMAGE_ASPECT_COLOR_BIT, 0, 0, 1);
+            copyRegion.srcOffset().set(0, 0, 0);
+            copyRegion.dstSubresource().set(VK10.VK_IMAGE_ASPECT_COLOR_BIT, 0, 0, 1);
+            copyRegion.dstOffset().set(0, 0, 0);
+            copyRegion.extent().set(this.swapChainExtent.width(), this.swapChainExtent.height(), 1);
+
+            VK10.vkCmdCopyImage(this.commandBuffers.get(i), tonemapTarget, VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL,
+                    this.swapChainImages.get(i), VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL, copyRegion);
+        }
+
+        this.gpuTimer.cmdTimestamp(this.commandBuffers.get(i), i, GpuPhase.POST_COPY_BARRIERS.ordinal());
+
+        if (!isHeadless()) {
+            transitionImageLayout(this.vkDevice,
+                    this.commandPool,
+                    this.vkGraphicsQueue,
+                    this.swapChainImages.get(i),
+                    this.swapChainImageFormat,
+                    getRtOutputLayout(),
+                    KHRSwapchain.VK_IMAGE_LAYOUT_PRESENT_SRC_KHR,
+                    1, this.commandBuffers.get(i));
+        }
+
+        this.gpuTimer.cmdTimestamp(this.commandBuffers.get(i), i, GpuPhase.TIMESTAMP_COUNT - 1);
+    }
+
+    /*
+     * Layout the swapchain image is left in by rayTrace() before presenting or reading it back
+     */
+    private int getRtOutputLayout() {
+        return this.tonemapDirect ? VK10.VK_IMAGE_LAYOUT_GENERAL : VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL;
+    }
+
+    private int getTonemapFlags() {
+        if (this.tonemapDirect) {
+            return 0;
+        }
+
+        switch (this.swapChainImageFormat) {
+            case VK10.VK_FORMAT_R8G8B8A8_UNORM:
+            case VK10.VK_FORMAT_R8G8B8A8_SRGB:
+                return 0;
+            case VK10.VK_FORMAT_B8G8R8A8_UNORM:
+            case VK10.VK_FORMAT_B8G8R8A8_SRGB:
+                return Tonemapper.FLAG_SWAP_RED_BLUE;
+            default:
+                throw new RuntimeException("Failed to find a display image format matching the swapchain format " + this.swapChainImageFormat);
+        }
     }
 
     private long createShaderModule(ByteBuffer spirvCode) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkShaderModuleCreateInfo createInfo = VkShaderModuleCreateInfo.callocStack(stack);
+            VkShaderModuleCreateInfo createInfo = VkShaderModuleCreateInfo.calloc(stack);
             createInfo.sType(VK10.VK_STRUCTURE_TYPE_SHADER_MODULE_CREATE_INFO);
             createInfo.pCode(spirvCode);
 
@@ -2366,7 +3246,7 @@ class VulkanApp {
 
     private Long createImageView(long image, int format, int aspactFlags, int mipMapLevels) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkImageViewCreateInfo createInfo = VkImageViewCreateInfo.callocStack(stack);
+            VkImageViewCreateInfo createInfo = VkImageViewCreateInfo.calloc(stack);
 
             createInfo.sType(VK10.VK_STRUCTURE_TYPE_IMAGE_VIEW_CREATE_INFO);
             createInfo.image(image);
@@ -2389,20 +3269,64 @@ class VulkanApp {
         }
     }
 
+    /*
+     * As long as the new swapchain has as many images in the same format, only the objects with its
+     * size are replaced, the descriptors pointing at them written again and the command buffers
+     * recorded again. Anything else rebuilds all render objects, shaders included.
+     */
     private void recreateSwapChain() {
+        //minimized, wait for the main thread to report a size again
+        while (this.framebufferWidth == 0 && this.framebufferHeight == 0) {
+            if (this.window.shouldClose()) {
+                return;
+            }
+
+            this.window.getEvents().await(MINIMIZED_WAIT_NANOS);
+            processWindowEvents();
+        }
+
+        waitForFramesInFlight();
+        destroyRetiredSwapChain();
+
+        final int imageCount = this.swapChainImages.size();
+        final int imageFormat = this.swapChainImageFormat;
+        final boolean tonemapDirect = this.tonemapDirect;
+
+        createSwapChain();
+
+        if (this.swapChainImages.size() == imageCount && this.swapChainImageFormat == imageFormat && this.tonemapDirect == tonemapDirect) {
+            //a plain resize: pipelines, descriptor pools, uniform buffers and command buffers stay
+            cleanupSizeDependentObjects();
+            createSizeDependentObjects();
+            updateSizeDependentDescriptors();
+            recordCommandBuffers();
+        } else {
+            cleanupRenderObjects();
+            createRenderObjects();
+        }
+    }
+
+    /*
+     * Every submission of the frames has finished. Unlike vkDeviceWaitIdle() this does not wait for
+     * the presentation engine, the old swapchain is retired instead of destroyed right away.
+     */
+    private void waitForFramesInFlight() {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            IntBuffer width = stack.ints(0);
-            IntBuffer height = stack.ints(0);
+            LongBuffer pFences = stack.mallocLong(this.inFlightFrames.size());
 
-            while (width.get(0) == 0 && height.get(0) == 0) {
-                GLFW.glfwGetFramebufferSize(this.window.getWindowHandle(), width, height);
-                GLFW.glfwWaitEvents();
+            for (int i = 0; i < this.inFlightFrames.size(); i++) {
+                pFences.put(i, this.inFlightFrames.get(i).getFence());
             }
+
+            VK10.vkWaitForFences(this.vkDevice, pFences, true, NO_TIMEOUT);
         }
+    }
 
-        VK10.vkDeviceWaitIdle(this.vkDevice);
-        cleanupSwapChain();
-        createSwapChainObjects();
+    private void destroyRetiredSwapChain() {
+        if (this.retiredSwapChain != VK10.VK_NULL_HANDLE) {
+            KHRSwapchain.vkDestroySwapchainKHR(this.vkDevice, this.retiredSwapChain, null);
+            this.retiredSwapChain = VK10.VK_NULL_HANDLE;
+        }
     }
 
     private void createSwapChain() {
@@ -2410,8 +3334,14 @@ class VulkanApp {
             SwapChainSupportDetails swapChainSupport = VulkanUtils.querySwapChainSupport(this.vkPhysicalDevice, stack, this.surface);
 
             VkSurfaceFormatKHR surfaceFormat = VulkanUtils.findBestSwapSurfaceFormat(swapChainSupport.getFormats());
-            int presentMode = VulkanUtils.chooseSwapPresentMode(swapChainSupport.getPresentMode());
-            VkExtent2D vkExtent2D = createSwapExtent(swapChainSupport.getCapabilities(), this.window.getWindowHandle());
+            final PresentMode presentMode = this.presentPolicy.choosePresentMode(swapChainSupport.getPresentMode());
+
+            if (presentMode != this.presentMode) {
+                System.out.println("Present mode " + presentMode.getName() + " (" + this.presentPolicy + ")");
+                this.presentMode = presentMode;
+            }
+
+            VkExtent2D vkExtent2D = createSwapExtent(swapChainSupport.getCapabilities(), this.framebufferWidth, this.framebufferHeight);
 
             IntBuffer imageCount = stack.ints(swapChainSupport.getCapabilities().minImageCount() + 1);
 
@@ -2419,7 +3349,7 @@ class VulkanApp {
                 imageCount.put(0, swapChainSupport.getCapabilities().maxImageCount());
             }
 
-            VkSwapchainCreateInfoKHR createInfoKHR = VkSwapchainCreateInfoKHR.callocStack(stack);
+            VkSwapchainCreateInfoKHR createInfoKHR = VkSwapchainCreateInfoKHR.calloc(stack);
 
             createInfoKHR.sType(KHRSwapchain.VK_STRUCTURE_TYPE_SWAPCHAIN_CREATE_INFO_KHR);
             createInfoKHR.surface(this.surface);
@@ -2430,7 +3360,10 @@ class VulkanApp {
             createInfoKHR.imageColorSpace(surfaceFormat.colorSpace());
             createInfoKHR.imageExtent(vkExtent2D);
             createInfoKHR.imageArrayLayers(1);
-            createInfoKHR.imageUsage(VK10.VK_IMAGE_USAGE_COLOR_ATTACHMENT_BIT | VK10.VK_IMAGE_USAGE_TRANSFER_DST_BIT);
+            this.tonemapDirect = this.rtxOn && surfaceFormat.format() == DISPLAY_IMAGE_FORMAT
+                    && (swapChainSupport.getCapabilities().supportedUsageFlags() & VK10.VK_IMAGE_USAGE_STORAGE_BIT) != 0;
+            createInfoKHR.imageUsage(VK10.VK_IMAGE_USAGE_COLOR_ATTACHMENT_BIT | VK10.VK_IMAGE_USAGE_TRANSFER_DST_BIT
+                    | (this.tonemapDirect ? VK10.VK_IMAGE_USAGE_STORAGE_BIT : 0));
 
             QueueFamilyIndices queueFamilyIndices = VulkanUtils.findQueueFamiliesFromPhysicalDevice(this.vkPhysicalDevice, this.surface);
 
@@ -2443,9 +3376,10 @@ class VulkanApp {
 
             createInfoKHR.preTransform(swapChainSupport.getCapabilities().currentTransform());
             createInfoKHR.compositeAlpha(KHRSurface.VK_COMPOSITE_ALPHA_OPAQUE_BIT_KHR);
-            createInfoKHR.presentMode(presentMode);
+            createInfoKHR.presentMode(presentMode.getVkPresentMode());
             createInfoKHR.clipped(true);
-            createInfoKHR.oldSwapchain(VK10.VK_NULL_HANDLE);
+            //the old swapchain can finish its queued presents, its images are released to the new one
+            createInfoKHR.oldSwapchain(this.swapChain);
 
             LongBuffer pSwapChain = stack.longs(VK10.VK_NULL_HANDLE);
 
@@ -2453,6 +3387,11 @@ class VulkanApp {
                 throw new RuntimeException("Failed to create swap chain");
             }
 
+            if (this.swapChain != VK10.VK_NULL_HANDLE) {
+                this.retiredSwapChain = this.swapChain;
+                this.retiredSwapChainPresents = 0;
+            }
+
             this.swapChain = pSwapChain.get(0);
 
             KHRSwapchain.vkGetSwapchainImagesKHR(this.vkDevice, this.swapChain, imageCount, null);
@@ -2476,15 +3415,7 @@ class VulkanApp {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             UniformBufferObject ubo = new UniformBufferObject();
 
-            /*(GLFW.glfwGetTime() * Math.toRadians(90))*/
-            ubo.getModel().rotate(0.0f, 0.0f, 0.0f, 1.0f);
-            ubo.getView().lookAt(2.0f, 2.0f, 2.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f);
-            ubo.getProjection().perspective((float) Math.toRadians(45),
-                    (float) this.swapChainExtent.width() / (float) this.swapChainExtent.height(), 1.0f, 10.0f);
-            ubo.getProjection().m11(ubo.getProjection().m11() * -1);
-
-            ubo.getView().invert(ubo.getViewInverse());
-            ubo.getProjection().invert(ubo.getProjectionInverse());
+            ubo.updateCamera((float) this.swapChainExtent.width() / (float) this.swapChainExtent.height());
 
             PointerBuffer data = stack.mallocPointer(1);
             VK10.vkMapMemory(this.vkDevice, this.uniformBuffersMemory.get(currentImage), 0, UniformBufferObject.SIZEOF, 0, data);
@@ -2492,10 +3423,33 @@ class VulkanApp {
                 ByteBufferUtils.copyIntoBuffer(data.getByteBuffer(0, UniformBufferObject.SIZEOF), ubo);
             }
             VK10.vkUnmapMemory(this.vkDevice, this.uniformBuffersMemory.get(currentImage));
+
+            if (this.rtxOn) {
+                this.accumulation.beginFrame(ubo, this.scene.isDynamic());
+                this.tracedSamples[currentImage] = this.accumulation.getSamplesPerFrame();
+
+                VK10.vkMapMemory(this.vkDevice, this.accumulationBuffersMemory.get(currentImage), 0, AccumulationState.SIZEOF, 0, data);
+                {
+                    this.accumulation.write(data.getByteBuffer(0, AccumulationState.SIZEOF));
+                }
+                VK10.vkUnmapMemory(this.vkDevice, this.accumulationBuffersMemory.get(currentImage));
+            }
         }
     }
 
     private void cleanupSwapChain() {
+        cleanupRenderObjects();
+
+        if (isHeadless()) {
+            this.swapChainImages.forEach(image -> VK10.vkDestroyImage(this.vkDevice, image, null));
+            this.offscreenImagesMemory.forEach(memory -> VK10.vkFreeMemory(this.vkDevice, memory, null));
+        } else {
+            KHRSwapchain.vkDestroySwapchainKHR(this.vkDevice, this.swapChain, null);
+            destroyRetiredSwapChain();
+        }
+    }
+
+    private void cleanupSizeDependentObjects() {
         VK10.vkDestroyImageView(this.vkDevice, this.colorImageView, null);
         VK10.vkDestroyImage(this.vkDevice, this.colorImage, null);
         VK10.vkFreeMemory(this.vkDevice, this.colorImageMemory, null);
@@ -2508,15 +3462,73 @@ class VulkanApp {
         VK10.vkDestroyImage(this.vkDevice, this.rtStorageImage, null);
         VK10.vkFreeMemory(this.vkDevice, this.rtStorageImageMemory, null);
 
+        if (this.rtxOn) {
+            VK10.vkDestroyImageView(this.vkDevice, this.rtAccumulationImageView, null);
+            VK10.vkDestroyImage(this.vkDevice, this.rtAccumulationImage, null);
+            VK10.vkFreeMemory(this.vkDevice, this.rtAccumulationImageMemory, null);
+
+            VK10.vkDestroyImageView(this.vkDevice, this.rtMomentsImageView, null);
+            VK10.vkDestroyImage(this.vkDevice, this.rtMomentsImage, null);
+            VK10.vkFreeMemory(this.vkDevice, this.rtMomentsImageMemory, null);
+
+            VK10.vkDestroyImageView(this.vkDevice, this.rtNormalDepthImageView, null);
+            VK10.vkDestroyImage(this.vkDevice, this.rtNormalDepthImage, null);
+            VK10.vkFreeMemory(this.vkDevice, this.rtNormalDepthImageMemory, null);
+
+            VK10.vkDestroyImageView(this.vkDevice, this.rtAlbedoImageView, null);
+            VK10.vkDestroyImage(this.vkDevice, this.rtAlbedoImage, null);
+            VK10.vkFreeMemory(this.vkDevice, this.rtAlbedoImageMemory, null);
+
+            if (this.denoiseFilter != null) {
+                for (int i = 0; i < this.denoiseImages.length; i++) {
+                    VK10.vkDestroyImageView(this.vkDevice, this.denoiseImageViews[i], null);
+                    VK10.vkDestroyImage(this.vkDevice, this.denoiseImages[i], null);
+                    VK10.vkFreeMemory(this.vkDevice, this.denoiseImagesMemory[i], null);
+                }
+            }
+
+            if (this.displayImages != null) {
+                for (int i = 0; i < this.displayImages.length; i++) {
+                    VK10.vkDestroyImageView(this.vkDevice, this.displayImageViews[i], null);
+                    VK10.vkDestroyImage(this.vkDevice, this.displayImages[i], null);
+                    VK10.vkFreeMemory(this.vkDevice, this.displayImagesMemory[i], null);
+                }
+
+                this.displayImages = null;
+            }
+        }
+
+        this.swapChainFrameBuffers.forEach(frameBuffer -> VK10.vkDestroyFramebuffer(this.vkDevice, frameBuffer, null));
+        this.swapChainImageViews.forEach(imageView -> VK10.vkDestroyImageView(this.vkDevice, imageView, null));
+    }
+
+    private void cleanupRenderObjects() {
+        cleanupSizeDependentObjects();
+
+        if (this.rtxOn) {
+            this.accumulationBuffers.forEach(buffer -> VK10.vkDestroyBuffer(this.vkDevice, buffer, null));
+            this.accumulationBuffersMemory.forEach(memory -> VK10.vkFreeMemory(this.vkDevice, memory, null));
+        }
+
         this.uniformBuffers.forEach(uniformBuffer -> VK10.vkDestroyBuffer(this.vkDevice, uniformBuffer, null));
         this.uniformBuffersMemory.forEach(uniformBufferMemory -> VK10.vkFreeMemory(this.vkDevice, uniformBufferMemory, null));
 
+        if (!this.rtxOn && this.gpuCulling) {
+            this.cullPass.destroy();
+
+            for (int i = 0; i < this.drawBuffers.length; i++) {
+                VK10.vkDestroyBuffer(this.vkDevice, this.drawBuffers[i], null);
+                VK10.vkFreeMemory(this.vkDevice, this.drawBuffersMemory[i], null);
+                VK10.vkDestroyBuffer(this.vkDevice, this.drawCountBuffers[i], null);
+                VK10.vkFreeMemory(this.vkDevice, this.drawCountBuffersMemory[i], null);
+            }
+        }
+
         VK10.vkDestroyDescriptorPool(this.vkDevice, this.descriptorPool, null);
 
         //RT cleanup
         VK10.vkDestroyDescriptorPool(this.vkDevice, this.rtDescriptorPool, null);
 
-        this.swapChainFrameBuffers.forEach(frameBuffer -> VK10.vkDestroyFramebuffer(this.vkDevice, frameBuffer, null));
         VK10.vkFreeCommandBuffers(this.vkDevice, this.commandPool, LwjglAdapter.asPointBuffer(this.commandBuffers));
         VK10.vkDestroyPipeline(this.vkDevice, this.graphicsPipeline, null);
         VK10.vkDestroyPipelineLayout(this.vkDevice, this.pipelineLayout, null);
@@ -2524,12 +3536,40 @@ class VulkanApp {
         VK10.vkDestroyPipeline(this.vkDevice, this.rtPipeline, null);
         VK10.vkDestroyPipelineLayout(this.vkDevice, this.rtPipelineLayout, null);
 
-        VK10.vkDestroyBuffer(this.vkDevice, this.sbtBuffer, null);
-        VK10.vkFreeMemory(this.vkDevice, this.sbtBufferMemory, null);
+        if (this.shaderBindingTable != null) {
+            this.shaderBindingTable.destroy();
+            this.shaderBindingTable = null;
+        }
+
+        if (this.denoisePass != null) {
+            this.denoisePass.destroy();
+            this.denoisePass = null;
+        }
+
+        if (this.tonemapPass != null) {
+            this.tonemapPass.destroy();
+            this.tonemapPass = null;
+        }
+
+        if (this.gpuTimer != null) {
+            this.gpuTimer.destroy();
+            this.gpuTimer = null;
+        }
+
+        if (this.instanceUploader != null) {
+            VK10.vkUnmapMemory(this.vkDevice, this.instanceBufferMemory);
+            VK10.vkDestroyBuffer(this.vkDevice, this.instanceBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, this.instanceBufferMemory, null);
+            this.instanceUploader = null;
+        }
 
         VK10.vkDestroyRenderPass(this.vkDevice, this.renderPass, null);
-        this.swapChainImageViews.forEach(imageView -> VK10.vkDestroyImageView(this.vkDevice, imageView, null));
-        KHRSwapchain.vkDestroySwapchainKHR(this.vkDevice, this.swapChain, null);
+
+        if (isHeadless()) {
+            this.readbackBuffersMemory.forEach(memory -> VK10.vkUnmapMemory(this.vkDevice, memory));
+            this.readbackBuffers.forEach(buffer -> VK10.vkDestroyBuffer(this.vkDevice, buffer, null));
+            this.readbackBuffersMemory.forEach(memory -> VK10.vkFreeMemory(this.vkDevice, memory, null));
+        }
     }
 
     private void cleanup() {
@@ -2547,18 +3587,26 @@ class VulkanApp {
         VK10.vkDestroyBuffer(this.vkDevice, this.vertexBuffer, null);
         VK10.vkFreeMemory(this.vkDevice, this.vertexBufferMemory, null);
 
+        if (!this.rtxOn && this.gpuCulling) {
+            VK10.vkDestroyBuffer(this.vkDevice, this.meshBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, this.meshBufferMemory, null);
+            VK10.vkDestroyBuffer(this.vkDevice, this.clusterBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, this.clusterBufferMemory, null);
+        }
+
         //Ray-tracing cleanup
-        VK10.vkDestroyDescriptorSetLayout(this.vkDevice, this.rtDescriptorSetLayout, null);
-        VK10.vkDestroyBuffer(this.vkDevice, this.rtIndexBuffer, null);
-        VK10.vkFreeMemory(this.vkDevice, this.rtIndexBufferMemory, null);
+        if (this.rtxOn) {
+            this.rayTracing.destroy();
 
-        VK10.vkDestroyBuffer(this.vkDevice, this.rtVertexBuffer, null);
-        VK10.vkFreeMemory(this.vkDevice, this.rtVertexBufferMemory, null);
+            VK10.vkDestroyDescriptorSetLayout(this.vkDevice, this.rtDescriptorSetLayout, null);
+            VK10.vkUnmapMemory(this.vkDevice, this.rtIndexBufferMemory);
+            VK10.vkDestroyBuffer(this.vkDevice, this.rtIndexBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, this.rtIndexBufferMemory, null);
 
-        NVRayTracing.vkDestroyAccelerationStructureNV(this.vkDevice, this.blas, null);
-        VK10.vkFreeMemory(this.vkDevice, this.blasMemory, null);
-        NVRayTracing.vkDestroyAccelerationStructureNV(this.vkDevice, this.tlas, null);
-        VK10.vkFreeMemory(this.vkDevice, this.tlasMemory, null);
+            VK10.vkUnmapMemory(this.vkDevice, this.rtVertexBufferMemory);
+            VK10.vkDestroyBuffer(this.vkDevice, this.rtVertexBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, this.rtVertexBufferMemory, null);
+        }
 
         this.inFlightFrames.forEach(frame -> {
             VK10.vkDestroySemaphore(this.vkDevice, frame.getRenderFinishedSemaphore(), null);
@@ -2574,11 +3622,14 @@ class VulkanApp {
             this.validationLayers.destroyDebugUtilsMessengerEXT(this.vkInstance, null);
         }
 
+        if (isHeadless()) {
+            VK10.vkDestroyInstance(this.vkInstance, null);
+            return;
+        }
+
         //must be destroyed before the instance
         KHRSurface.vkDestroySurfaceKHR(this.vkInstance, this.surface, null);
 
         VK10.vkDestroyInstance(this.vkInstance, null);
-        GLFW.glfwDestroyWindow(this.window.getWindowHandle());
-        GLFW.glfwTerminate();
     }
 }
@@ -1,12 +1,203 @@
 package vulkan.tutorial;
 
 
+import vulkan.tutorial.accumulation.AccumulationConfig;
+import vulkan.tutorial.denoise.AtrousFilter;
+import vulkan.tutorial.headless.FrameSink;
+import vulkan.tutorial.headless.FrameSinks;
+import vulkan.tutorial.headless.HeadlessConfig;
+import vulkan.tutorial.jobs.JobSystem;
+import vulkan.tutorial.math.VertexLayout;
+import vulkan.tutorial.metrics.MetricsExporter;
+import vulkan.tutorial.metrics.MetricsExporters;
+import vulkan.tutorial.present.PresentMode;
+import vulkan.tutorial.present.PresentPolicy;
+import vulkan.tutorial.resolution.ResolutionController;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.scene.SceneAnimation;
+import vulkan.tutorial.software.SoftwareApp;
+import vulkan.tutorial.tonemap.Tonemapper;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 public class VulkanAppEntryPoint {
 
+    private static final String SOFTWARE = "--software";
+    private static final String HEADLESS = "--headless";
+    private static final String SINK = "--sink=";
+    private static final String OUTPUT = "--output=";
+    private static final String MODEL = "--model=";
+    private static final String WIDTH = "--width=";
+    private static final String HEIGHT = "--height=";
+    private static final String FRAMES = "--frames=";
+    private static final String METRICS = "--metrics=";
+    private static final String INSTANCES = "--instances=";
+    private static final String ANIMATE = "--animate";
+    private static final String ACCUMULATE = "--accumulate";
+    private static final String FRAME_BUDGET = "--frame-budget=";
+    private static final String CONVERGENCE = "--convergence=";
+    private static final String DENOISE = "--denoise";
+    private static final String EXPOSURE = "--exposure=";
+    private static final String TONEMAP = "--tonemap=";
+    private static final String DYNAMIC_RESOLUTION = "--dynamic-resolution=";
+    private static final String MIN_RESOLUTION_SCALE = "--min-resolution-scale=";
+    private static final String VERTEX_FORMAT = "--vertex-format=";
+    private static final String JOB_THREADS = "--job-threads=";
+    private static final String PRESENT = "--present=";
+    private static final String PRESENT_MODE = "--present-mode=";
+    private static final String FPS_LIMIT = "--fps-limit=";
+    private static final String LOW_LATENCY = "--low-latency";
+    private static final float INSTANCE_SPACING = 2.0f;
+
     //first checkin
     public static void main(String[] args) {
-        VulkanApp app = new VulkanApp();
-        app.run();
+        boolean software = false;
+        boolean headless = false;
+        String sink = "png:frames";
+        String output = "render.png";
+        String model = "models/chalet.obj";
+        int width = 800;
+        int height = 600;
+        int frames = 1;
+        String metrics = null;
+        int instances = 1;
+        boolean animate = false;
+        boolean accumulate = false;
+        long frameBudgetNanos = AccumulationConfig.DEFAULT_FRAME_BUDGET_NANOS;
+        float convergenceThreshold = AccumulationConfig.DEFAULT_CONVERGENCE_THRESHOLD;
+        boolean denoise = false;
+        float exposure = Tonemapper.DEFAULT_EXPOSURE;
+        Tonemapper.Curve tonemapCurve = Tonemapper.Curve.ACES;
+        long targetFrameNanos = 0L;
+        float minResolutionScale = ResolutionController.DEFAULT_MIN_SCALE;
+        VertexLayout vertexLayout = VertexLayout.COMPACT;
+        int jobThreads = JobSystem.getDefaultThreadCount();
+        String present = "default";
+        List<PresentMode> presentModes = null;
+        double fpsLimit = 0.0;
+        boolean lowLatency = false;
+
+        for (String arg : args) {
+            if (arg.equals(SOFTWARE)) {
+                software = true;
+            } else if (arg.equals(HEADLESS)) {
+                headless = true;
+            } else if (arg.startsWith(SINK)) {
+                sink = arg.substring(SINK.length());
+            } else if (arg.startsWith(OUTPUT)) {
+                output = arg.substring(OUTPUT.length());
+            } else if (arg.startsWith(MODEL)) {
+                model = arg.substring(MODEL.length());
+            } else if (arg.startsWith(WIDTH)) {
+                width = Integer.parseInt(arg.substring(WIDTH.length()));
+            } else if (arg.startsWith(HEIGHT)) {
+                height = Integer.parseInt(arg.substring(HEIGHT.length()));
+            } else if (arg.startsWith(FRAMES)) {
+                frames = Integer.parseInt(arg.substring(FRAMES.length()));
+            } else if (arg.startsWith(METRICS)) {
+                metrics = arg.substring(METRICS.length());
+            } else if (arg.equals(ANIMATE)) {
+                animate = true;
+            } else if (arg.equals(ACCUMULATE)) {
+                accumulate = true;
+            } else if (arg.startsWith(FRAME_BUDGET)) {
+                //milliseconds of GPU time for the ray trace of a frame
+                frameBudgetNanos = (long) (Double.parseDouble(arg.substring(FRAME_BUDGET.length())) * 1e6);
+            } else if (arg.startsWith(CONVERGENCE)) {
+                convergenceThreshold = Float.parseFloat(arg.substring(CONVERGENCE.length()));
+            } else if (arg.equals(DENOISE)) {
+                denoise = true;
+            } else if (arg.startsWith(EXPOSURE)) {
+                //stops, applied before the tonemap curve
+                exposure = Float.parseFloat(arg.substring(EXPOSURE.length()));
+            } else if (arg.startsWith(TONEMAP)) {
+                tonemapCurve = Tonemapper.Curve.fromName(arg.substring(TONEMAP.length()));
+            } else if (arg.startsWith(DYNAMIC_RESOLUTION)) {
+                //milliseconds of GPU time per frame the traced resolution is adjusted to
+                targetFrameNanos = (long) (Double.parseDouble(arg.substring(DYNAMIC_RESOLUTION.length())) * 1e6);
+            } else if (arg.startsWith(MIN_RESOLUTION_SCALE)) {
+                minResolutionScale = Float.parseFloat(arg.substring(MIN_RESOLUTION_SCALE.length()));
+            } else if (arg.startsWith(VERTEX_FORMAT)) {
+                //full or compact, the layout of the raster vertex buffer
+                vertexLayout = VertexLayout.fromName(arg.substring(VERTEX_FORMAT.length()));
+            } else if (arg.startsWith(JOB_THREADS)) {
+                //workers for the jobs of a frame, 0 runs them in a fixed order on the main thread
+                jobThreads = Integer.parseInt(arg.substring(JOB_THREADS.length()));
+            } else if (arg.startsWith(PRESENT)) {
+                //default, throughput, low-latency or vsync
+                present = arg.substring(PRESENT.length());
+            } else if (arg.startsWith(PRESENT_MODE)) {
+                //comma separated order of fifo, fifo-relaxed, mailbox and immediate, fifo is always the last fallback
+                presentModes = new ArrayList<>();
+
+                for (String name : arg.substring(PRESENT_MODE.length()).split(",")) {
+                    presentModes.add(PresentMode.fromName(name));
+                }
+            } else if (arg.startsWith(FPS_LIMIT)) {
+                fpsLimit = Double.parseDouble(arg.substring(FPS_LIMIT.length()));
+            } else if (arg.equals(LOW_LATENCY)) {
+                lowLatency = true;
+            } else if (arg.startsWith(INSTANCES)) {
+                instances = Integer.parseInt(arg.substring(INSTANCES.length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        AccumulationConfig accumulation = accumulate
+                ? new AccumulationConfig(frameBudgetNanos, AccumulationConfig.DEFAULT_MAX_SAMPLES_PER_FRAME, convergenceThreshold, AccumulationConfig.DEFAULT_MIN_SAMPLES)
+                : AccumulationConfig.disabled();
+        AtrousFilter denoiseFilter = denoise ? AtrousFilter.createDefault() : null;
+        Tonemapper tonemapper = new Tonemapper(exposure, tonemapCurve);
+        ResolutionController resolutionController = targetFrameNanos > 0
+                ? new ResolutionController(targetFrameNanos, minResolutionScale, ResolutionController.DEFAULT_MAX_SCALE)
+                : null;
+        PresentPolicy presentPolicy = PresentPolicy.fromName(present).withFrameRateLimit(fpsLimit);
+
+        if (presentModes != null) {
+            presentPolicy = presentPolicy.withModes(presentModes);
+        }
+
+        if (lowLatency) {
+            presentPolicy = presentPolicy.withLowLatency(true);
+        }
+
+        if (software) {
+            new SoftwareApp(model, width, height, frames, Paths.get(output), accumulation, denoiseFilter).run();
+            return;
+        }
+
+        Scene scene = instances == 1 ? Scene.createSingle(0) : Scene.createGrid(0, instances, INSTANCE_SPACING);
+
+        if (animate) {
+            scene.setAnimation(SceneAnimation.spin(scene, 1.0f));
+        }
+
+        try (MetricsExporter metricsExporter = metrics != null ? MetricsExporters.fromSpec(metrics) : null;
+             JobSystem jobSystem = JobSystem.create(jobThreads)) {
+            VulkanAppOptions options = VulkanAppOptions.createDefault()
+                    .withMetricsExporter(metricsExporter)
+                    .withScene(scene)
+                    .withAccumulationConfig(accumulation)
+                    .withDenoiseFilter(denoiseFilter)
+                    .withTonemapper(tonemapper)
+                    .withResolutionController(resolutionController)
+                    .withVertexLayout(vertexLayout)
+                    .withJobSystem(jobSystem)
+                    .withPresentPolicy(presentPolicy);
+
+            if (headless) {
+                try (FrameSink frameSink = FrameSinks.fromSpec(sink)) {
+                    new VulkanApp(options.withHeadlessConfig(new HeadlessConfig(width, height, frames, frameSink))).run();
+                }
+                return;
+            }
+
+            VulkanApp app = new VulkanApp(options);
+            app.run();
+        }
     }
 
 }
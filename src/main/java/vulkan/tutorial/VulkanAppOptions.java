@@ -0,0 +1,149 @@
+package vulkan.tutorial;
+
+import vulkan.tutorial.accumulation.AccumulationConfig;
+import vulkan.tutorial.denoise.AtrousFilter;
+import vulkan.tutorial.headless.HeadlessConfig;
+import vulkan.tutorial.jobs.JobSystem;
+import vulkan.tutorial.math.VertexLayout;
+import vulkan.tutorial.metrics.MetricsExporter;
+import vulkan.tutorial.present.PresentPolicy;
+import vulkan.tutorial.resolution.ResolutionController;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.tonemap.Tonemapper;
+
+/*
+ * Everything a VulkanApp is configured with. createDefault() renders the loaded model once into a
+ * window like the original tutorial, every with method returns a copy with one option changed.
+ *
+ * headlessConfig == null renders into a window, otherwise everything is rendered offscreen and read
+ * back. metricsExporter may be null, frame metrics are collected either way. Every instance of the
+ * scene is traced through one TLAS, blasId 0 is the loaded model. With accumulation enabled the ray
+ * traced frames add up while camera and scene stay the same. denoiseFilter may be null, otherwise it
+ * runs on every ray traced frame. The tonemapper maps the ray traced HDR color to the swapchain.
+ * resolutionController may be null, otherwise it picks the traced resolution from the GPU frame
+ * times. vertexLayout is the one of the raster vertex buffer, the ray tracing vertex buffer stays
+ * float. The jobs of every frame run on jobSystem, the caller keeps ownership of it. presentPolicy
+ * picks the present mode and paces the windowed frames, headless frames ignore it.
+ */
+public class VulkanAppOptions {
+    private final HeadlessConfig headlessConfig;
+    private final MetricsExporter metricsExporter;
+    private final Scene scene;
+    private final AccumulationConfig accumulationConfig;
+    private final AtrousFilter denoiseFilter;
+    private final Tonemapper tonemapper;
+    private final ResolutionController resolutionController;
+    private final VertexLayout vertexLayout;
+    private final JobSystem jobSystem;
+    private final PresentPolicy presentPolicy;
+
+    private VulkanAppOptions(HeadlessConfig headlessConfig, MetricsExporter metricsExporter, Scene scene, AccumulationConfig accumulationConfig,
+                             AtrousFilter denoiseFilter, Tonemapper tonemapper, ResolutionController resolutionController, VertexLayout vertexLayout,
+                             JobSystem jobSystem, PresentPolicy presentPolicy) {
+        this.headlessConfig = headlessConfig;
+        this.metricsExporter = metricsExporter;
+        this.scene = scene;
+        this.accumulationConfig = accumulationConfig;
+        this.denoiseFilter = denoiseFilter;
+        this.tonemapper = tonemapper;
+        this.resolutionController = resolutionController;
+        this.vertexLayout = vertexLayout;
+        this.jobSystem = jobSystem;
+        this.presentPolicy = presentPolicy;
+    }
+
+    public static VulkanAppOptions createDefault() {
+        return new VulkanAppOptions(null, null, Scene.createSingle(0), AccumulationConfig.disabled(), null, Tonemapper.createDefault(),
+                null, VertexLayout.COMPACT, JobSystem.singleThreaded(), PresentPolicy.createDefault());
+    }
+
+    public VulkanAppOptions withHeadlessConfig(HeadlessConfig headlessConfig) {
+        return new VulkanAppOptions(headlessConfig, this.metricsExporter, this.scene, this.accumulationConfig, this.denoiseFilter,
+                this.tonemapper, this.resolutionController, this.vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withMetricsExporter(MetricsExporter metricsExporter) {
+        return new VulkanAppOptions(this.headlessConfig, metricsExporter, this.scene, this.accumulationConfig, this.denoiseFilter,
+                this.tonemapper, this.resolutionController, this.vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withScene(Scene scene) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, scene, this.accumulationConfig, this.denoiseFilter,
+                this.tonemapper, this.resolutionController, this.vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withAccumulationConfig(AccumulationConfig accumulationConfig) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, this.scene, accumulationConfig, this.denoiseFilter,
+                this.tonemapper, this.resolutionController, this.vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withDenoiseFilter(AtrousFilter denoiseFilter) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, this.scene, this.accumulationConfig, denoiseFilter,
+                this.tonemapper, this.resolutionController, this.vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withTonemapper(Tonemapper tonemapper) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, this.scene, this.accumulationConfig, this.denoiseFilter,
+                tonemapper, this.resolutionController, this.vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withResolutionController(ResolutionController resolutionController) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, this.scene, this.accumulationConfig, this.denoiseFilter,
+                this.tonemapper, resolutionController, this.vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withVertexLayout(VertexLayout vertexLayout) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, this.scene, this.accumulationConfig, this.denoiseFilter,
+                this.tonemapper, this.resolutionController, vertexLayout, this.jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withJobSystem(JobSystem jobSystem) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, this.scene, this.accumulationConfig, this.denoiseFilter,
+                this.tonemapper, this.resolutionController, this.vertexLayout, jobSystem, this.presentPolicy);
+    }
+
+    public VulkanAppOptions withPresentPolicy(PresentPolicy presentPolicy) {
+        return new VulkanAppOptions(this.headlessConfig, this.metricsExporter, this.scene, this.accumulationConfig, this.denoiseFilter,
+                this.tonemapper, this.resolutionController, this.vertexLayout, this.jobSystem, presentPolicy);
+    }
+
+    public HeadlessConfig getHeadlessConfig() {
+        return this.headlessConfig;
+    }
+
+    public MetricsExporter getMetricsExporter() {
+        return this.metricsExporter;
+    }
+
+    public Scene getScene() {
+        return this.scene;
+    }
+
+    public AccumulationConfig getAccumulationConfig() {
+        return this.accumulationConfig;
+    }
+
+    public AtrousFilter getDenoiseFilter() {
+        return this.denoiseFilter;
+    }
+
+    public Tonemapper getTonemapper() {
+        return this.tonemapper;
+    }
+
+    public ResolutionController getResolutionController() {
+        return this.resolutionController;
+    }
+
+    public VertexLayout getVertexLayout() {
+        return this.vertexLayout;
+    }
+
+    public JobSystem getJobSystem() {
+        return this.jobSystem;
+    }
+
+    public PresentPolicy getPresentPolicy() {
+        return this.presentPolicy;
+    }
+}
@@ -1,14 +1,33 @@
 package vulkan.tutorial;
 
 import org.lwjgl.glfw.GLFW;
+import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.MemoryUtil;
-
+import vulkan.tutorial.input.WindowEventQueue;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * The GLFW window, everything but the getters and setTitle() belongs to the main thread. The
+ * callbacks only push their events into getEvents() for the render thread, pumpEvents() keeps the
+ * main thread in the OS event loop until the render thread is done.
+ *
+ * The framebuffer size doesn't go through the event ring, a full ring would drop it. The callback
+ * only replaces the latest size, the render thread picks it up with getFramebufferSize().
+ */
 public class Window {
+    //pumpEvents() wakes up this often even without events
+    private static final double EVENT_TIMEOUT_SECONDS = 0.1;
 
     private int width = 800;
     private int height = 600;
     private long windowHandle;
-    private boolean windowResized;
+    //width in the high, height in the low 32 bits
+    private final AtomicLong framebufferSize = new AtomicLong();
+    private final WindowEventQueue events = new WindowEventQueue();
+    private final AtomicReference<String> pendingTitle = new AtomicReference<>();
 
     public Window(int width, int height) {
         this.width = width;
@@ -31,11 +50,68 @@ public class Window {
             throw new RuntimeException("Cannot create window");
         }
 
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer pWidth = stack.mallocInt(1);
+            IntBuffer pHeight = stack.mallocInt(1);
+
+            GLFW.glfwGetFramebufferSize(this.windowHandle, pWidth, pHeight);
+            this.framebufferSize.set(packSize(pWidth.get(0), pHeight.get(0)));
+        }
+
         GLFW.glfwSetFramebufferSizeCallback(this.windowHandle, this::frameBufferSizeCallback);
+        GLFW.glfwSetKeyCallback(this.windowHandle, (window, key, scancode, action, mods) -> this.events.offer(WindowEventQueue.Type.KEY, key, action));
+        GLFW.glfwSetMouseButtonCallback(this.windowHandle, (window, button, action, mods) -> this.events.offer(WindowEventQueue.Type.MOUSE_BUTTON, button, action));
     }
 
     private void frameBufferSizeCallback(long window, int width, int height) {
-        this.windowResized = true;
+        this.framebufferSize.set(packSize(width, height));
+        this.events.wakeUp();
+    }
+
+    private static long packSize(int width, int height) {
+        return (long) width << 32 | (height & 0xffffffffL);
+    }
+
+    /*
+     * Main thread: processes OS events until renderThread has finished
+     */
+    public void pumpEvents(Thread renderThread) {
+        while (renderThread.isAlive()) {
+            GLFW.glfwWaitEventsTimeout(EVENT_TIMEOUT_SECONDS);
+
+            final String title = this.pendingTitle.getAndSet(null);
+
+            if (title != null) {
+                GLFW.glfwSetWindowTitle(this.windowHandle, title);
+            }
+        }
+    }
+
+    /*
+     * Any thread, the main thread applies it
+     */
+    public void setTitle(String title) {
+        this.pendingTitle.set(title);
+        GLFW.glfwPostEmptyEvent();
+    }
+
+    /*
+     * Any thread, wakes up pumpEvents() to look at the render thread again
+     */
+    public void wakeUp() {
+        GLFW.glfwPostEmptyEvent();
+    }
+
+    /*
+     * Any thread
+     */
+    public boolean shouldClose() {
+        return GLFW.glfwWindowShouldClose(this.windowHandle);
+    }
+
+    public void destroy() {
+        GLFW.glfwDestroyWindow(this.windowHandle);
+        GLFW.glfwTerminate();
     }
 
     public int getWidth() {
@@ -50,11 +126,25 @@ public class Window {
         return this.windowHandle;
     }
 
-    public boolean isWindowResized() {
-        return this.windowResized;
+    /*
+     * Any thread, the latest size the window reported, read it with widthOf() and heightOf()
+     */
+    public long getFramebufferSize() {
+        return this.framebufferSize.get();
+    }
+
+    public static int widthOf(long framebufferSize) {
+        return (int) (framebufferSize >>> 32);
+    }
+
+    public static int heightOf(long framebufferSize) {
+        return (int) framebufferSize;
     }
 
-    public void setWindowResized(boolean windowResized) {
-        this.windowResized = windowResized;
+    /*
+     * The producer is the main thread, the consumer the render thread
+     */
+    public WindowEventQueue getEvents() {
+        return this.events;
     }
 }
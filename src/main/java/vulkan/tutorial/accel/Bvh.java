@@ -0,0 +1,330 @@
+package vulkan.tutorial.accel;
+
+/*
+ * A bounding volume hierarchy over an indexed triangle list, stored as flat primitive arrays.
+ *
+ * Node n owns nodeBounds[n * 6 .. n * 6 + 5] (minX, minY, minZ, maxX, maxY, maxZ) and
+ * nodeData[n * 2 .. n * 2 + 1]:
+ *  - a leaf stores (first index into primIndices, triangle count > 0)
+ *  - an inner node stores (index of its left child, 0); the right child always follows the left one
+ *
+ * Children are always allocated after their parent, so walking the nodes backwards visits every
+ * child before its parent. refit() relies on that.
+ */
+public class Bvh {
+
+    public static final int BOUNDS_STRIDE = 6;
+    public static final int DATA_STRIDE = 2;
+
+    private final float[] positions;
+    private final int[] indices;
+    private final float[] nodeBounds;
+    private final int[] nodeData;
+    private final int[] primIndices;
+    private final int nodeCount;
+    private final int depth;
+
+    Bvh(float[] positions, int[] indices, float[] nodeBounds, int[] nodeData, int[] primIndices, int nodeCount, int depth) {
+        this.positions = positions;
+        this.indices = indices;
+        this.nodeBounds = nodeBounds;
+        this.nodeData = nodeData;
+        this.primIndices = primIndices;
+        this.nodeCount = nodeCount;
+        this.depth = depth;
+    }
+
+    public int[] createTraversalStack() {
+        return new int[this.depth + 2];
+    }
+
+    public boolean intersect(float ox, float oy, float oz, float dx, float dy, float dz, float tMin, float tMax, RayHit hit) {
+        return intersect(ox, oy, oz, dx, dy, dz, tMin, tMax, hit, createTraversalStack());
+    }
+
+    /*
+     * Closest-hit query. The stack must come from createTraversalStack() and can be reused by the
+     * calling thread for every ray.
+     */
+    public boolean intersect(float ox, float oy, float oz, float dx, float dy, float dz, float tMin, float tMax, RayHit hit, int[] stack) {
+        hit.reset(tMax);
+
+        if (this.nodeCount == 0) {
+            return false;
+        }
+
+        final float invX = 1.0f / dx;
+        final float invY = 1.0f / dy;
+        final float invZ = 1.0f / dz;
+
+        if (boxEntry(0, ox, oy, oz, invX, invY, invZ, tMin, tMax) == Float.POSITIVE_INFINITY) {
+            return false;
+        }
+
+        int stackPointer = 0;
+        int node = 0;
+
+        while (true) {
+            final int count = this.nodeData[node * DATA_STRIDE + 1];
+
+            if (count > 0) {
+                final int first = this.nodeData[node * DATA_STRIDE];
+
+                for (int i = first; i < first + count; i++) {
+                    triangleDistance(this.primIndices[i], ox, oy, oz, dx, dy, dz, tMin, hit.getDistance(), hit);
+                }
+
+                if (stackPointer == 0) {
+                    break;
+                }
+                node = stack[--stackPointer];
+                continue;
+            }
+
+            final int left = this.nodeData[node * DATA_STRIDE];
+            final int right = left + 1;
+            final float best = hit.getDistance();
+
+            float tLeft = boxEntry(left, ox, oy, oz, invX, invY, invZ, tMin, best);
+            float tRight = boxEntry(right, ox, oy, oz, invX, invY, invZ, tMin, best);
+
+            if (tLeft == Float.POSITIVE_INFINITY && tRight == Float.POSITIVE_INFINITY) {
+                if (stackPointer == 0) {
+                    break;
+                }
+                node = stack[--stackPointer];
+            } else if (tLeft == Float.POSITIVE_INFINITY) {
+                node = right;
+            } else if (tRight == Float.POSITIVE_INFINITY) {
+                node = left;
+            } else if (tLeft <= tRight) {
+                stack[stackPointer++] = right;
+                node = left;
+            } else {
+                stack[stackPointer++] = left;
+                node = right;
+            }
+        }
+
+        return hit.isHit();
+    }
+
+    public boolean occluded(float ox, float oy, float oz, float dx, float dy, float dz, float tMin, float tMax) {
+        return occluded(ox, oy, oz, dx, dy, dz, tMin, tMax, createTraversalStack());
+    }
+
+    /*
+     * Any-hit query, used for shadow rays. Stops at the first triangle found inside (tMin, tMax).
+     */
+    public boolean occluded(float ox, float oy, float oz, float dx, float dy, float dz, float tMin, float tMax, int[] stack) {
+        if (this.nodeCount == 0) {
+            return false;
+        }
+
+        final float invX = 1.0f / dx;
+        final float invY = 1.0f / dy;
+        final float invZ = 1.0f / dz;
+
+        int stackPointer = 0;
+        stack[stackPointer++] = 0;
+
+        while (stackPointer > 0) {
+            final int node = stack[--stackPointer];
+
+            if (boxEntry(node, ox, oy, oz, invX, invY, invZ, tMin, tMax) == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+
+            final int count = this.nodeData[node * DATA_STRIDE + 1];
+
+            if (count > 0) {
+                final int first = this.nodeData[node * DATA_STRIDE];
+
+                for (int i = first; i < first + count; i++) {
+                    if (triangleDistance(this.primIndices[i], ox, oy, oz, dx, dy, dz, tMin, tMax, null) < tMax) {
+                        return true;
+                    }
+                }
+            } else {
+                final int left = this.nodeData[node * DATA_STRIDE];
+                stack[stackPointer++] = left + 1;
+                stack[stackPointer++] = left;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+     * Recomputes all node bounds from the current content of getPositions() without changing the
+     * topology. Call it after the vertices were moved in place (skinning, morphing, small animations).
+     */
+    public void refit() {
+        for (int node = this.nodeCount - 1; node >= 0; node--) {
+            final int boundsOffset = node * BOUNDS_STRIDE;
+            final int count = this.nodeData[node * DATA_STRIDE + 1];
+
+            if (count > 0) {
+                resetBounds(this.nodeBounds, boundsOffset);
+
+                final int first = this.nodeData[node * DATA_STRIDE];
+
+                for (int i = first; i < first + count; i++) {
+                    final int triangle = this.primIndices[i] * 3;
+                    growBounds(this.nodeBounds, boundsOffset, this.positions, this.indices[triangle] * 3);
+                    growBounds(this.nodeBounds, boundsOffset, this.positions, this.indices[triangle + 1] * 3);
+                    growBounds(this.nodeBounds, boundsOffset, this.positions, this.indices[triangle + 2] * 3);
+                }
+            } else {
+                final int left = this.nodeData[node * DATA_STRIDE] * BOUNDS_STRIDE;
+                final int right = left + BOUNDS_STRIDE;
+
+                for (int axis = 0; axis < 3; axis++) {
+                    this.nodeBounds[boundsOffset + axis] = Math.min(this.nodeBounds[left + axis], this.nodeBounds[right + axis]);
+                    this.nodeBounds[boundsOffset + 3 + axis] = Math.max(this.nodeBounds[left + 3 + axis], this.nodeBounds[right + 3 + axis]);
+                }
+            }
+        }
+    }
+
+    /*
+     * Moeller-Trumbore. Returns the hit distance or +infinity when the ray misses (tMin, tMax).
+     * A hit is also recorded into the given RayHit, if any.
+     */
+    private float triangleDistance(int triangle, float ox, float oy, float oz, float dx, float dy, float dz, float tMin, float tMax, RayHit hit) {
+        final int i0 = this.indices[triangle * 3] * 3;
+        final int i1 = this.indices[triangle * 3 + 1] * 3;
+        final int i2 = this.indices[triangle * 3 + 2] * 3;
+
+        final float v0x = this.positions[i0];
+        final float v0y = this.positions[i0 + 1];
+        final float v0z = this.positions[i0 + 2];
+
+        final float e1x = this.positions[i1] - v0x;
+        final float e1y = this.positions[i1 + 1] - v0y;
+        final float e1z = this.positions[i1 + 2] - v0z;
+
+        final float e2x = this.positions[i2] - v0x;
+        final float e2y = this.positions[i2 + 1] - v0y;
+        final float e2z = this.positions[i2 + 2] - v0z;
+
+        final float px = dy * e2z - dz * e2y;
+        final float py = dz * e2x - dx * e2z;
+        final float pz = dx * e2y - dy * e2x;
+
+        final float determinant = e1x * px + e1y * py + e1z * pz;
+
+        if (Math.abs(determinant) < 1e-12f) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        final float invDeterminant = 1.0f / determinant;
+
+        final float sx = ox - v0x;
+        final float sy = oy - v0y;
+        final float sz = oz - v0z;
+
+        final float u = (sx * px + sy * py + sz * pz) * invDeterminant;
+
+        if (u < 0.0f || u > 1.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        final float qx = sy * e1z - sz * e1y;
+        final float qy = sz * e1x - sx * e1z;
+        final float qz = sx * e1y - sy * e1x;
+
+        final float v = (dx * qx + dy * qy + dz * qz) * invDeterminant;
+
+        if (v < 0.0f || u + v > 1.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        final float t = (e2x * qx + e2y * qy + e2z * qz) * invDeterminant;
+
+        if (t <= tMin || t >= tMax) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        if (hit != null) {
+            hit.set(t, triangle, u, v);
+        }
+
+        return t;
+    }
+
+    /*
+     * Slab test. Returns the entry distance or +infinity when the box is missed inside (tMin, tMax).
+     */
+    private float boxEntry(int node, float ox, float oy, float oz, float invX, float invY, float invZ, float tMin, float tMax) {
+        final int offset = node * BOUNDS_STRIDE;
+
+        float t0 = (this.nodeBounds[offset] - ox) * invX;
+        float t1 = (this.nodeBounds[offset + 3] - ox) * invX;
+        float near = Math.min(t0, t1);
+        float far = Math.max(t0, t1);
+
+        t0 = (this.nodeBounds[offset + 1] - oy) * invY;
+        t1 = (this.nodeBounds[offset + 4] - oy) * invY;
+        near = Math.max(near, Math.min(t0, t1));
+        far = Math.min(far, Math.max(t0, t1));
+
+        t0 = (this.nodeBounds[offset + 2] - oz) * invZ;
+        t1 = (this.nodeBounds[offset + 5] - oz) * invZ;
+        near = Math.max(near, Math.min(t0, t1));
+        far = Math.min(far, Math.max(t0, t1));
+
+        near = Math.max(near, tMin);
+        far = Math.min(far, tMax);
+
+        return near <= far ? near : Float.POSITIVE_INFINITY;
+    }
+
+    static void resetBounds(float[] bounds, int offset) {
+        bounds[offset] = Float.POSITIVE_INFINITY;
+        bounds[offset + 1] = Float.POSITIVE_INFINITY;
+        bounds[offset + 2] = Float.POSITIVE_INFINITY;
+        bounds[offset + 3] = Float.NEGATIVE_INFINITY;
+        bounds[offset + 4] = Float.NEGATIVE_INFINITY;
+        bounds[offset + 5] = Float.NEGATIVE_INFINITY;
+    }
+
+    static void growBounds(float[] bounds, int offset, float[] points, int pointOffset) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[offset + axis] = Math.min(bounds[offset + axis], points[pointOffset + axis]);
+            bounds[offset + 3 + axis] = Math.max(bounds[offset + 3 + axis], points[pointOffset + axis]);
+        }
+    }
+
+    public float[] getPositions() {
+        return this.positions;
+    }
+
+    public int[] getIndices() {
+        return this.indices;
+    }
+
+    public float[] getNodeBounds() {
+        return this.nodeBounds;
+    }
+
+    public int[] getNodeData() {
+        return this.nodeData;
+    }
+
+    public int[] getPrimIndices() {
+        return this.primIndices;
+    }
+
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    public int getTriangleCount() {
+        return this.indices.length / 3;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+}
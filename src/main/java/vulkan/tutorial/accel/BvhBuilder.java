@@ -0,0 +1,368 @@
+package vulkan.tutorial.accel;
+
+import vulkan.tutorial.gameobject.GameObject;
+import vulkan.tutorial.math.Vertex;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Top-down BVH builder using the binned surface area heuristic.
+ *
+ * Every node bins the centroids of its triangles into a fixed number of buckets per axis and picks
+ * the bucket boundary with the lowest SAH cost. Ranges of at most leafSize triangles always become
+ * leaves, bigger ones only when that is cheaper than splitting. Subtrees bigger than
+ * PARALLEL_THRESHOLD triangles are built as separate fork/join tasks.
+ */
+public class BvhBuilder {
+
+    public static final int DEFAULT_BIN_COUNT = 16;
+    public static final int DEFAULT_LEAF_SIZE = 4;
+
+    private static final int MAX_LEAF_SIZE_LIMIT = 16;
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final float TRAVERSAL_COST = 1.0f;
+    private static final float INTERSECTION_COST = 1.0f;
+
+    private final int binCount;
+    private final int leafSize;
+    private final ForkJoinPool pool;
+
+    public BvhBuilder() {
+        this(DEFAULT_BIN_COUNT, DEFAULT_LEAF_SIZE, ForkJoinPool.commonPool());
+    }
+
+    public BvhBuilder(int binCount, int leafSize, ForkJoinPool pool) {
+        if (binCount < 2) {
+            throw new IllegalArgumentException("At least two bins are needed, got " + binCount);
+        }
+
+        if (leafSize < 1 || leafSize > MAX_LEAF_SIZE_LIMIT) {
+            throw new IllegalArgumentException("Leaf size must be between 1 and " + MAX_LEAF_SIZE_LIMIT + ", got " + leafSize);
+        }
+
+        this.binCount = binCount;
+        this.leafSize = leafSize;
+        this.pool = pool;
+    }
+
+    public static float[] positionsOf(GameObject gameObject) {
+        Vertex[] vertices = gameObject.getVertices();
+        float[] positions = new float[vertices.length * 3];
+
+        for (int i = 0; i < vertices.length; i++) {
+            positions[i * 3] = vertices[i].getPos().x();
+            positions[i * 3 + 1] = vertices[i].getPos().y();
+            positions[i * 3 + 2] = vertices[i].getPos().z();
+        }
+
+        return positions;
+    }
+
+    public Bvh build(GameObject gameObject) {
+        return build(positionsOf(gameObject), gameObject.getIndices());
+    }
+
+    /*
+     * positions holds xyz per vertex, indices three vertex indices per triangle. Both arrays are
+     * referenced, not copied, by the resulting Bvh so that it can be refitted in place.
+     */
+    public Bvh build(float[] positions, int[] indices) {
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count must be a multiple of 3, got " + indices.length);
+        }
+
+        final int triangleCount = indices.length / 3;
+
+        if (triangleCount == 0) {
+            return new Bvh(positions, indices, new float[0], new int[0], new int[0], 0, 0);
+        }
+
+        BuildContext context = new BuildContext(positions, indices, triangleCount);
+
+        this.pool.invoke(new PrimitiveBoundsTask(context, 0, triangleCount));
+
+        context.nodeAllocator.set(1);
+        this.pool.invoke(new NodeTask(context, 0, 0, triangleCount, 0));
+
+        final int nodeCount = context.nodeAllocator.get();
+
+        return new Bvh(positions,
+                indices,
+                Arrays.copyOf(context.nodeBounds, nodeCount * Bvh.BOUNDS_STRIDE),
+                Arrays.copyOf(context.nodeData, nodeCount * Bvh.DATA_STRIDE),
+                context.primIndices,
+                nodeCount,
+                context.maxDepth.get());
+    }
+
+    private static float halfArea(float[] bounds, int offset) {
+        float dx = bounds[offset + 3] - bounds[offset];
+        float dy = bounds[offset + 4] - bounds[offset + 1];
+        float dz = bounds[offset + 5] - bounds[offset + 2];
+
+        if (dx < 0 || dy < 0 || dz < 0) {
+            return 0.0f;
+        }
+
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private static final class BuildContext {
+        private final float[] positions;
+        private final int[] indices;
+        private final float[] primBounds;
+        private final float[] centroids;
+        private final int[] primIndices;
+        private final float[] nodeBounds;
+        private final int[] nodeData;
+        private final AtomicInteger nodeAllocator = new AtomicInteger();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+
+        private BuildContext(float[] positions, int[] indices, int triangleCount) {
+            this.positions = positions;
+            this.indices = indices;
+            this.primBounds = new float[triangleCount * Bvh.BOUNDS_STRIDE];
+            this.centroids = new float[triangleCount * 3];
+            this.primIndices = new int[triangleCount];
+
+            final int maxNodes = 2 * triangleCount - 1;
+            this.nodeBounds = new float[maxNodes * Bvh.BOUNDS_STRIDE];
+            this.nodeData = new int[maxNodes * Bvh.DATA_STRIDE];
+        }
+    }
+
+    private static final class PrimitiveBoundsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BuildContext context;
+        private final int start;
+        private final int end;
+
+        private PrimitiveBoundsTask(BuildContext context, int start, int end) {
+            this.context = context;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start > PARALLEL_THRESHOLD) {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new PrimitiveBoundsTask(this.context, this.start, middle),
+                        new PrimitiveBoundsTask(this.context, middle, this.end));
+                return;
+            }
+
+            for (int triangle = this.start; triangle < this.end; triangle++) {
+                final int offset = triangle * Bvh.BOUNDS_STRIDE;
+
+                Bvh.resetBounds(this.context.primBounds, offset);
+                Bvh.growBounds(this.context.primBounds, offset, this.context.positions, this.context.indices[triangle * 3] * 3);
+                Bvh.growBounds(this.context.primBounds, offset, this.context.positions, this.context.indices[triangle * 3 + 1] * 3);
+                Bvh.growBounds(this.context.primBounds, offset, this.context.positions, this.context.indices[triangle * 3 + 2] * 3);
+
+                for (int axis = 0; axis < 3; axis++) {
+                    this.context.centroids[triangle * 3 + axis] = 0.5f * (this.context.primBounds[offset + axis] + this.context.primBounds[offset + 3 + axis]);
+                }
+
+                this.context.primIndices[triangle] = triangle;
+            }
+        }
+    }
+
+    private final class NodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BuildContext context;
+        private final int node;
+        private final int start;
+        private final int end;
+        private final int depth;
+
+        private NodeTask(BuildContext context, int node, int start, int end, int depth) {
+            this.context = context;
+            this.node = node;
+            this.start = start;
+            this.end = end;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            buildNode(this.node, this.start, this.end, this.depth);
+        }
+
+        private void buildNode(int node, int start, int end, int depth) {
+            final BuildContext ctx = this.context;
+            final int count = end - start;
+            final int boundsOffset = node * Bvh.BOUNDS_STRIDE;
+
+            float[] centroidBounds = new float[Bvh.BOUNDS_STRIDE];
+            Bvh.resetBounds(ctx.nodeBounds, boundsOffset);
+            Bvh.resetBounds(centroidBounds, 0);
+
+            for (int i = start; i < end; i++) {
+                final int prim = ctx.primIndices[i];
+                final int primOffset = prim * Bvh.BOUNDS_STRIDE;
+
+                for (int axis = 0; axis < 3; axis++) {
+                    ctx.nodeBounds[boundsOffset + axis] = Math.min(ctx.nodeBounds[boundsOffset + axis], ctx.primBounds[primOffset + axis]);
+                    ctx.nodeBounds[boundsOffset + 3 + axis] = Math.max(ctx.nodeBounds[boundsOffset + 3 + axis], ctx.primBounds[primOffset + 3 + axis]);
+                }
+
+                Bvh.growBounds(centroidBounds, 0, ctx.centroids, prim * 3);
+            }
+
+            if (count <= BvhBuilder.this.leafSize) {
+                makeLeaf(node, start, count, depth);
+                return;
+            }
+
+            int middle = findSplitAndPartition(start, end, centroidBounds, halfArea(ctx.nodeBounds, boundsOffset));
+
+            if (middle < 0) {
+                makeLeaf(node, start, count, depth);
+                return;
+            }
+
+            final int left = ctx.nodeAllocator.getAndAdd(2);
+            ctx.nodeData[node * Bvh.DATA_STRIDE] = left;
+            ctx.nodeData[node * Bvh.DATA_STRIDE + 1] = 0;
+
+            if (count > PARALLEL_THRESHOLD) {
+                invokeAll(new NodeTask(ctx, left, start, middle, depth + 1),
+                        new NodeTask(ctx, left + 1, middle, end, depth + 1));
+            } else {
+                buildNode(left, start, middle, depth + 1);
+                buildNode(left + 1, middle, end, depth + 1);
+            }
+        }
+
+        private void makeLeaf(int node, int start, int count, int depth) {
+            this.context.nodeData[node * Bvh.DATA_STRIDE] = start;
+            this.context.nodeData[node * Bvh.DATA_STRIDE + 1] = count;
+            this.context.maxDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        /*
+         * Returns the partition point, or -1 when keeping the range as a single leaf is cheaper.
+         */
+        private int findSplitAndPartition(int start, int end, float[] centroidBounds, float nodeArea) {
+            final BuildContext ctx = this.context;
+            final int bins = BvhBuilder.this.binCount;
+            final int count = end - start;
+
+            int[] binCounts = new int[bins];
+            float[] binBounds = new float[bins * Bvh.BOUNDS_STRIDE];
+            float[] rightAreas = new float[bins];
+            int[] rightCounts = new int[bins];
+            float[] sweepBounds = new float[Bvh.BOUNDS_STRIDE];
+
+            float bestCost = Float.POSITIVE_INFINITY;
+            int bestAxis = -1;
+            int bestSplit = -1;
+
+            for (int axis = 0; axis < 3; axis++) {
+                final float min = centroidBounds[axis];
+                final float extent = centroidBounds[3 + axis] - min;
+
+                if (extent <= 0.0f) {
+                    continue;
+                }
+
+                final float scale = bins * (1.0f - 1e-5f) / extent;
+
+                Arrays.fill(binCounts, 0);
+                for (int bin = 0; bin < bins; bin++) {
+                    Bvh.resetBounds(binBounds, bin * Bvh.BOUNDS_STRIDE);
+                }
+
+                for (int i = start; i < end; i++) {
+                    final int prim = ctx.primIndices[i];
+                    final int bin = binOf(ctx.centroids[prim * 3 + axis], min, scale, bins);
+                    final int binOffset = bin * Bvh.BOUNDS_STRIDE;
+                    final int primOffset = prim * Bvh.BOUNDS_STRIDE;
+
+                    binCounts[bin]++;
+                    for (int a = 0; a < 3; a++) {
+                        binBounds[binOffset + a] = Math.min(binBounds[binOffset + a], ctx.primBounds[primOffset + a]);
+                        binBounds[binOffset + 3 + a] = Math.max(binBounds[binOffset + 3 + a], ctx.primBounds[primOffset + 3 + a]);
+                    }
+                }
+
+                //Sweep from the right to get the cost of every right-hand side
+                Bvh.resetBounds(sweepBounds, 0);
+                int rightCount = 0;
+                for (int bin = bins - 1; bin > 0; bin--) {
+                    merge(sweepBounds, binBounds, bin * Bvh.BOUNDS_STRIDE);
+                    rightCount += binCounts[bin];
+                    rightCounts[bin] = rightCount;
+                    rightAreas[bin] = halfArea(sweepBounds, 0);
+                }
+
+                //Sweep from the left and evaluate the split after every bin
+                Bvh.resetBounds(sweepBounds, 0);
+                int leftCount = 0;
+                for (int bin = 0; bin < bins - 1; bin++) {
+                    merge(sweepBounds, binBounds, bin * Bvh.BOUNDS_STRIDE);
+                    leftCount += binCounts[bin];
+
+                    if (leftCount == 0 || rightCounts[bin + 1] == 0) {
+                        continue;
+                    }
+
+                    final float cost = leftCount * halfArea(sweepBounds, 0) + rightCounts[bin + 1] * rightAreas[bin + 1];
+
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestAxis = axis;
+                        bestSplit = bin + 1;
+                    }
+                }
+            }
+
+            if (bestAxis < 0) {
+                //All centroids coincide, only an object median split can make progress
+                return count <= MAX_LEAF_SIZE_LIMIT ? -1 : start + count / 2;
+            }
+
+            final float splitCost = TRAVERSAL_COST + INTERSECTION_COST * bestCost / Math.max(nodeArea, Float.MIN_NORMAL);
+            final float leafCost = INTERSECTION_COST * count;
+
+            if (leafCost <= splitCost && count <= MAX_LEAF_SIZE_LIMIT) {
+                return -1;
+            }
+
+            final float min = centroidBounds[bestAxis];
+            final float scale = bins * (1.0f - 1e-5f) / (centroidBounds[3 + bestAxis] - min);
+
+            int i = start;
+            int j = end - 1;
+            while (i <= j) {
+                if (binOf(ctx.centroids[ctx.primIndices[i] * 3 + bestAxis], min, scale, bins) < bestSplit) {
+                    i++;
+                } else {
+                    int swap = ctx.primIndices[i];
+                    ctx.primIndices[i] = ctx.primIndices[j];
+                    ctx.primIndices[j--] = swap;
+                }
+            }
+
+            return i == start || i == end ? start + count / 2 : i;
+        }
+    }
+
+    private static int binOf(float centroid, float min, float scale, int bins) {
+        return Math.min(bins - 1, Math.max(0, (int) ((centroid - min) * scale)));
+    }
+
+    private static void merge(float[] target, float[] source, int sourceOffset) {
+        for (int axis = 0; axis < 3; axis++) {
+            target[axis] = Math.min(target[axis], source[sourceOffset + axis]);
+            target[3 + axis] = Math.max(target[3 + axis], source[sourceOffset + 3 + axis]);
+        }
+    }
+}
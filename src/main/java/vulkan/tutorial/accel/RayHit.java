@@ -0,0 +1,47 @@
+package vulkan.tutorial.accel;
+
+/*
+ * Mutable result of a BVH traversal, reused between rays so the hot loop does not allocate.
+ */
+public class RayHit {
+    public static final int NO_HIT = -1;
+
+    private float distance;
+    private int triangle = NO_HIT;
+    private float u;
+    private float v;
+
+    public void reset(float tMax) {
+        this.distance = tMax;
+        this.triangle = NO_HIT;
+        this.u = 0.0f;
+        this.v = 0.0f;
+    }
+
+    void set(float distance, int triangle, float u, float v) {
+        this.distance = distance;
+        this.triangle = triangle;
+        this.u = u;
+        this.v = v;
+    }
+
+    public boolean isHit() {
+        return this.triangle != NO_HIT;
+    }
+
+    public float getDistance() {
+        return this.distance;
+    }
+
+    public int getTriangle() {
+        return this.triangle;
+    }
+
+    public float getU() {
+        return this.u;
+    }
+
+    public float getV() {
+        return this.v;
+    }
+}
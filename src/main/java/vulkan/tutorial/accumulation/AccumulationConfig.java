@@ -0,0 +1,100 @@
+package vulkan.tutorial.accumulation;
+
+/*
+ * Settings of the progressive accumulation mode.
+ *
+ * frameBudgetNanos is the GPU time the ray trace of one frame may take, the samples per frame are
+ * adjusted to it (0 always traces maxSamplesPerFrame). A pixel counts as converged, and is no longer
+ * traced, once it has minSamples and the standard error of its mean luminance is below
+ * convergenceThreshold times that mean (0 never stops a pixel).
+ */
+public class AccumulationConfig {
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 8_000_000L;
+    public static final int DEFAULT_MAX_SAMPLES_PER_FRAME = 16;
+    public static final float DEFAULT_CONVERGENCE_THRESHOLD = 0.01f;
+    public static final int DEFAULT_MIN_SAMPLES = 64;
+
+    //keeps the relative error of almost black pixels from never converging
+    private static final float MIN_LUMINANCE = 1.0f / 256.0f;
+
+    private static final AccumulationConfig DISABLED = new AccumulationConfig(false, 0L, 1, 0.0f, 0);
+
+    private final boolean enabled;
+    private final long frameBudgetNanos;
+    private final int maxSamplesPerFrame;
+    private final float convergenceThreshold;
+    private final int minSamples;
+
+    private AccumulationConfig(boolean enabled, long frameBudgetNanos, int maxSamplesPerFrame, float convergenceThreshold, int minSamples) {
+        this.enabled = enabled;
+        this.frameBudgetNanos = frameBudgetNanos;
+        this.maxSamplesPerFrame = maxSamplesPerFrame;
+        this.convergenceThreshold = convergenceThreshold;
+        this.minSamples = minSamples;
+    }
+
+    public AccumulationConfig(long frameBudgetNanos, int maxSamplesPerFrame, float convergenceThreshold, int minSamples) {
+        this(true, frameBudgetNanos, maxSamplesPerFrame, convergenceThreshold, minSamples);
+
+        if (frameBudgetNanos < 0) {
+            throw new IllegalArgumentException("Frame budget can't be negative, got " + frameBudgetNanos + "ns");
+        }
+
+        if (maxSamplesPerFrame < 1) {
+            throw new IllegalArgumentException("At least one sample per frame is needed, got " + maxSamplesPerFrame);
+        }
+
+        if (convergenceThreshold < 0.0f || minSamples < 1) {
+            throw new IllegalArgumentException("Invalid convergence threshold " + convergenceThreshold + " after " + minSamples + " samples");
+        }
+    }
+
+    public static AccumulationConfig createDefault() {
+        return new AccumulationConfig(DEFAULT_FRAME_BUDGET_NANOS, DEFAULT_MAX_SAMPLES_PER_FRAME, DEFAULT_CONVERGENCE_THRESHOLD, DEFAULT_MIN_SAMPLES);
+    }
+
+    /*
+     * One centered sample per pixel and frame, nothing is kept between frames
+     */
+    public static AccumulationConfig disabled() {
+        return DISABLED;
+    }
+
+    /*
+     * Same test as isConverged() in raytrace.rgen
+     */
+    public boolean isConverged(float meanLuminance, float meanSquaredLuminance, float samples) {
+        if (this.convergenceThreshold <= 0.0f || samples < this.minSamples) {
+            return false;
+        }
+
+        final float variance = Math.max(meanSquaredLuminance - meanLuminance * meanLuminance, 0.0f);
+        final float tolerance = this.convergenceThreshold * Math.max(meanLuminance, MIN_LUMINANCE);
+
+        return variance <= tolerance * tolerance * samples;
+    }
+
+    public static float luminance(float r, float g, float b) {
+        return 0.2126f * r + 0.7152f * g + 0.0722f * b;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    public long getFrameBudgetNanos() {
+        return this.frameBudgetNanos;
+    }
+
+    public int getMaxSamplesPerFrame() {
+        return this.maxSamplesPerFrame;
+    }
+
+    public float getConvergenceThreshold() {
+        return this.convergenceThreshold;
+    }
+
+    public int getMinSamples() {
+        return this.minSamples;
+    }
+}
@@ -0,0 +1,132 @@
+package vulkan.tutorial.accumulation;
+
+import org.joml.Matrix4f;
+import vulkan.tutorial.shader.UniformBufferObject;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Decides per frame how the raygen shader treats the accumulation images, written into the
+ * Accumulation uniform of raytrace.rgen:
+ *
+ * uint frameIndex, uint samplesPerFrame, uint flags, uint minSamples, float convergenceThreshold
+ *
+ * The history is dropped when the camera matrices change, when the scene changed or after reset()
+ * (new accumulation images). The samples per frame follow the measured trace time, so a frame
+ * stays within the GPU budget of the config.
+ */
+public class AccumulationState {
+    public static final int SIZEOF = 5 * Integer.BYTES;
+
+    //add the samples of this frame to the accumulation images instead of starting over
+    public static final int FLAG_ACCUMULATE = 1;
+    //random sample positions inside the pixel instead of the center
+    public static final int FLAG_JITTER = 2;
+
+    //weight of the newest measurement in the cost per sample
+    private static final double SMOOTHING = 0.25;
+
+    private final AccumulationConfig config;
+    private final Matrix4f view = new Matrix4f();
+    private final Matrix4f projection = new Matrix4f();
+    private boolean resetPending = true;
+    private int frameIndex = -1;
+    private int flags;
+    private int samplesPerFrame = 1;
+    private long accumulatedSamples;
+    private double nanosPerSample;
+
+    public AccumulationState(AccumulationConfig config) {
+        this.config = config;
+    }
+
+    public void reset() {
+        this.resetPending = true;
+    }
+
+    public void beginFrame(UniformBufferObject camera, boolean sceneChanged) {
+        this.frameIndex++;
+
+        if (!this.config.isEnabled()) {
+            this.flags = 0;
+            this.samplesPerFrame = 1;
+            return;
+        }
+
+        if (sceneChanged || !this.view.equals(camera.getView()) || !this.projection.equals(camera.getProjection())) {
+            this.view.set(camera.getView());
+            this.projection.set(camera.getProjection());
+            this.resetPending = true;
+        }
+
+        if (this.resetPending) {
+            this.resetPending = false;
+            this.accumulatedSamples = 0;
+            this.flags = FLAG_JITTER;
+        } else {
+            this.accumulatedSamples += this.samplesPerFrame;
+            this.flags = FLAG_JITTER | FLAG_ACCUMULATE;
+        }
+
+        this.samplesPerFrame = chooseSamplesPerFrame();
+    }
+
+    private int chooseSamplesPerFrame() {
+        if (this.config.getFrameBudgetNanos() == 0) {
+            return this.config.getMaxSamplesPerFrame();
+        }
+
+        //nothing measured yet
+        if (this.nanosPerSample <= 0.0) {
+            return 1;
+        }
+
+        final long samples = (long) (this.config.getFrameBudgetNanos() / this.nanosPerSample);
+
+        return (int) Math.max(1, Math.min(samples, this.config.getMaxSamplesPerFrame()));
+    }
+
+    /*
+     * GPU time of a finished trace that used the given samples per frame. Converged pixels make a
+     * sample cheaper, so the remaining pixels get more samples.
+     */
+    public void recordTraceTime(long nanos, int samples) {
+        if (samples < 1 || nanos <= 0) {
+            return;
+        }
+
+        final double measured = (double) nanos / samples;
+        this.nanosPerSample = this.nanosPerSample <= 0.0 ? measured : this.nanosPerSample + (measured - this.nanosPerSample) * SMOOTHING;
+    }
+
+    public void write(ByteBuffer buffer) {
+        buffer.putInt(0, this.frameIndex);
+        buffer.putInt(Integer.BYTES, this.samplesPerFrame);
+        buffer.putInt(2 * Integer.BYTES, this.flags);
+        buffer.putInt(3 * Integer.BYTES, this.config.getMinSamples());
+        buffer.putFloat(4 * Integer.BYTES, this.config.getConvergenceThreshold());
+    }
+
+    public AccumulationConfig getConfig() {
+        return this.config;
+    }
+
+    public int getFrameIndex() {
+        return this.frameIndex;
+    }
+
+    public int getFlags() {
+        return this.flags;
+    }
+
+    public int getSamplesPerFrame() {
+        return this.samplesPerFrame;
+    }
+
+    /*
+     * Samples per pixel before this frame, converged pixels stopped earlier
+     */
+    public long getAccumulatedSamples() {
+        return this.accumulatedSamples;
+    }
+}
@@ -0,0 +1,31 @@
+package vulkan.tutorial.accumulation;
+
+/*
+ * The random sequence of the raygen shaders: a PCG hash seeded by pixel and frame index, so the
+ * software renderer jitters its samples exactly like the GPU and every frame gets new positions.
+ *
+ * Java ints wrap like GLSL uints, >>> stands for the unsigned shift.
+ */
+public class PcgRandom {
+    private static final float UNIT = 1.0f / (1 << 24);
+
+    private int state;
+
+    public void seed(int pixelIndex, int frameIndex) {
+        this.state = hash(pixelIndex + hash(frameIndex));
+    }
+
+    /*
+     * Uniform in [0, 1), the top 24 bits of the next hash
+     */
+    public float nextFloat() {
+        this.state = hash(this.state);
+        return (this.state >>> 8) * UNIT;
+    }
+
+    public static int hash(int value) {
+        final int state = value * 747796405 + (int) 2891336453L;
+        final int word = ((state >>> ((state >>> 28) + 4)) ^ state) * 277803737;
+        return (word >>> 22) ^ word;
+    }
+}
@@ -0,0 +1,224 @@
+package vulkan.tutorial.culling;
+
+import java.util.Arrays;
+
+/*
+ * A bounding volume hierarchy over a list of axis aligned boxes (objects, clusters), for culling.
+ *
+ * The boxes are a flat array with BOUNDS_STRIDE floats per box (minX, minY, minZ, maxX, maxY, maxZ).
+ * Nodes use the layout of accel.Bvh: node n owns nodeBounds[n * 6 .. n * 6 + 5] and
+ * nodeData[n * 2 .. n * 2 + 1], a leaf stores (first index into leafItems, item count > 0), an
+ * inner node (index of its left child, 0) and the right child follows the left one.
+ *
+ * Built top down by splitting at the median centroid of the longest axis. Box lists are small
+ * compared to triangle lists, so the SAH of the BvhBuilder isn't worth it here.
+ */
+public class BoundsHierarchy {
+
+    public static final int BOUNDS_STRIDE = 6;
+    public static final int DATA_STRIDE = 2;
+    public static final int DEFAULT_LEAF_SIZE = 4;
+
+    private final float[] nodeBounds;
+    private final int[] nodeData;
+    private final int[] leafItems;
+    private final int[] itemFirsts;
+    private final int[] itemCounts;
+    private final int nodeCount;
+    private final int depth;
+
+    private BoundsHierarchy(float[] nodeBounds, int[] nodeData, int[] leafItems, int[] itemFirsts, int[] itemCounts, int nodeCount, int depth) {
+        this.nodeBounds = nodeBounds;
+        this.nodeData = nodeData;
+        this.leafItems = leafItems;
+        this.itemFirsts = itemFirsts;
+        this.itemCounts = itemCounts;
+        this.nodeCount = nodeCount;
+        this.depth = depth;
+    }
+
+    public static BoundsHierarchy build(float[] bounds, int count) {
+        return build(bounds, count, DEFAULT_LEAF_SIZE);
+    }
+
+    public static BoundsHierarchy build(float[] bounds, int count, int leafSize) {
+        if (leafSize < 1) {
+            throw new IllegalArgumentException("Leaf size must be at least 1, got " + leafSize);
+        }
+
+        if (bounds.length < count * BOUNDS_STRIDE) {
+            throw new IllegalArgumentException(count + " boxes need " + count * BOUNDS_STRIDE + " floats, got " + bounds.length);
+        }
+
+        if (count == 0) {
+            return new BoundsHierarchy(new float[0], new int[0], new int[0], new int[0], new int[0], 0, 0);
+        }
+
+        final int maxNodes = 2 * count - 1;
+        Builder builder = new Builder(bounds, count, leafSize, maxNodes);
+        builder.nodeCount = 1;
+        builder.build(0, 0, count, 0);
+
+        return new BoundsHierarchy(
+                Arrays.copyOf(builder.nodeBounds, builder.nodeCount * BOUNDS_STRIDE),
+                Arrays.copyOf(builder.nodeData, builder.nodeCount * DATA_STRIDE),
+                builder.items,
+                Arrays.copyOf(builder.itemFirsts, builder.nodeCount),
+                Arrays.copyOf(builder.itemCounts, builder.nodeCount),
+                builder.nodeCount,
+                builder.depth);
+    }
+
+    private static final class Builder {
+        private final float[] bounds;
+        private final int leafSize;
+        private final int[] items;
+        private final float[] centroids;
+        private final float[] nodeBounds;
+        private final int[] nodeData;
+        private final int[] itemFirsts;
+        private final int[] itemCounts;
+        private int nodeCount;
+        private int depth;
+
+        private Builder(float[] bounds, int count, int leafSize, int maxNodes) {
+            this.bounds = bounds;
+            this.leafSize = leafSize;
+            this.items = new int[count];
+            this.centroids = new float[count * 3];
+            this.nodeBounds = new float[maxNodes * BOUNDS_STRIDE];
+            this.nodeData = new int[maxNodes * DATA_STRIDE];
+            this.itemFirsts = new int[maxNodes];
+            this.itemCounts = new int[maxNodes];
+
+            for (int i = 0; i < count; i++) {
+                this.items[i] = i;
+
+                for (int axis = 0; axis < 3; axis++) {
+                    this.centroids[i * 3 + axis] = (bounds[i * BOUNDS_STRIDE + axis] + bounds[i * BOUNDS_STRIDE + 3 + axis]) * 0.5f;
+                }
+            }
+        }
+
+        private void build(int node, int first, int end, int level) {
+            this.depth = Math.max(this.depth, level + 1);
+
+            final int offset = node * BOUNDS_STRIDE;
+            Arrays.fill(this.nodeBounds, offset, offset + 3, Float.POSITIVE_INFINITY);
+            Arrays.fill(this.nodeBounds, offset + 3, offset + 6, Float.NEGATIVE_INFINITY);
+
+            float[] centroidMin = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+            float[] centroidMax = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+            for (int i = first; i < end; i++) {
+                final int item = this.items[i];
+
+                for (int axis = 0; axis < 3; axis++) {
+                    this.nodeBounds[offset + axis] = Math.min(this.nodeBounds[offset + axis], this.bounds[item * BOUNDS_STRIDE + axis]);
+                    this.nodeBounds[offset + 3 + axis] = Math.max(this.nodeBounds[offset + 3 + axis], this.bounds[item * BOUNDS_STRIDE + 3 + axis]);
+                    centroidMin[axis] = Math.min(centroidMin[axis], this.centroids[item * 3 + axis]);
+                    centroidMax[axis] = Math.max(centroidMax[axis], this.centroids[item * 3 + axis]);
+                }
+            }
+
+            this.itemFirsts[node] = first;
+            this.itemCounts[node] = end - first;
+
+            if (end - first <= this.leafSize) {
+                this.nodeData[node * DATA_STRIDE] = first;
+                this.nodeData[node * DATA_STRIDE + 1] = end - first;
+                return;
+            }
+
+            int axis = 0;
+            for (int i = 1; i < 3; i++) {
+                if (centroidMax[i] - centroidMin[i] > centroidMax[axis] - centroidMin[axis]) {
+                    axis = i;
+                }
+            }
+
+            final int middle = (first + end) >>> 1;
+            select(first, end - 1, middle, axis);
+
+            final int left = this.nodeCount;
+            this.nodeCount += 2;
+
+            this.nodeData[node * DATA_STRIDE] = left;
+            this.nodeData[node * DATA_STRIDE + 1] = 0;
+
+            build(left, first, middle, level + 1);
+            build(left + 1, middle, end, level + 1);
+        }
+
+        /*
+         * Quickselect: afterwards items[k] has the centroid it would have in sorted order, smaller
+         * ones before it and bigger ones after it
+         */
+        private void select(int low, int high, int k, int axis) {
+            while (low < high) {
+                final float pivot = this.centroids[this.items[(low + high) >>> 1] * 3 + axis];
+                int i = low;
+                int j = high;
+
+                while (i <= j) {
+                    while (this.centroids[this.items[i] * 3 + axis] < pivot) {
+                        i++;
+                    }
+                    while (this.centroids[this.items[j] * 3 + axis] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        final int swap = this.items[i];
+                        this.items[i] = this.items[j];
+                        this.items[j] = swap;
+                        i++;
+                        j--;
+                    }
+                }
+
+                if (k <= j) {
+                    high = j;
+                } else if (k >= i) {
+                    low = i;
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+
+    public float[] getNodeBounds() {
+        return this.nodeBounds;
+    }
+
+    public int[] getNodeData() {
+        return this.nodeData;
+    }
+
+    /*
+     * Box indices, the leaves reference ranges of it
+     */
+    public int[] getLeafItems() {
+        return this.leafItems;
+    }
+
+    /*
+     * The boxes below a node are getLeafItems()[getItemFirst(node) .. + getItemCount(node)], so a
+     * subtree can be taken as a whole without walking it
+     */
+    public int getItemFirst(int node) {
+        return this.itemFirsts[node];
+    }
+
+    public int getItemCount(int node) {
+        return this.itemCounts[node];
+    }
+
+    public int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+}
@@ -0,0 +1,296 @@
+package vulkan.tutorial.culling;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.*;
+import vulkan.tutorial.shader.SPIRV;
+import vulkan.tutorial.shader.ShaderKind;
+import vulkan.tutorial.shader.ShaderSPIRVUtils;
+import vulkan.tutorial.shader.UniformBufferObject;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/*
+ * Runs cull.comp before the render pass of the raster path: every command buffer gets its own draw
+ * buffer and draw count buffer, filled from the instance slice and the uniform buffer of its image.
+ * The draws are then issued with vkCmdDrawIndexedIndirectCount, or without a count all maxDrawCount
+ * of them, in which case the unused ones have to be zero.
+ *
+ * Belongs to the swapchain like the uniform buffers it reads and is recreated with it.
+ */
+public class CullPass {
+    public static final int PUSH_CONSTANT_SIZE = 3 * Integer.BYTES;
+
+    private static final int WORKGROUP_SIZE = 64;
+    private static final int BINDING_COUNT = 6;
+    private static final int UNIFORM_BINDING = 0;
+
+    private final VkDevice vkDevice;
+    private final long[] drawBuffers;
+    private final long[] drawCountBuffers;
+    private final int instanceCount;
+    private final int maxDrawCount;
+    private float lodScale;
+    private final boolean clearDraws;
+    private final long descriptorSetLayout;
+    private final long descriptorPool;
+    private final long[] descriptorSets;
+    private final long pipelineLayout;
+    private final long pipeline;
+
+    /*
+     * The instances of command buffer i are at instanceSliceSize * i in the instance buffer.
+     * lodScale: LodSelector.getScale() for the height of the swapchain. clearDraws zeroes the whole
+     * draw buffer every frame, for drawing without a count.
+     */
+    public CullPass(VkDevice vkDevice, long[] uniformBuffers, long instanceBuffer, long instanceSliceSize, long meshBuffer, long clusterBuffer,
+                    long[] drawBuffers, long[] drawCountBuffers, int instanceCount, int maxDrawCount, float lodScale, boolean clearDraws) {
+        this.vkDevice = vkDevice;
+        this.drawBuffers = drawBuffers;
+        this.drawCountBuffers = drawCountBuffers;
+        this.instanceCount = instanceCount;
+        this.maxDrawCount = maxDrawCount;
+        this.lodScale = lodScale;
+        this.clearDraws = clearDraws;
+
+        this.descriptorSetLayout = createDescriptorSetLayout();
+        this.descriptorPool = createDescriptorPool(drawBuffers.length);
+        this.descriptorSets = allocateDescriptorSets(drawBuffers.length);
+        this.pipelineLayout = createPipelineLayout();
+        this.pipeline = createPipeline();
+
+        for (int i = 0; i < drawBuffers.length; i++) {
+            writeDescriptorSet(this.descriptorSets[i],
+                    new long[]{uniformBuffers[i], instanceBuffer, meshBuffer, clusterBuffer, drawBuffers[i], drawCountBuffers[i]},
+                    instanceSliceSize * i, instanceSliceSize);
+        }
+    }
+
+    private long createDescriptorSetLayout() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkDescriptorSetLayoutBinding.Buffer bindings = VkDescriptorSetLayoutBinding.calloc(BINDING_COUNT, stack);
+
+            //camera, instances, meshes, clusters, draws, draw count
+            for (int binding = 0; binding < BINDING_COUNT; binding++) {
+                bindings.get(binding)
+                        .binding(binding)
+                        .descriptorCount(1)
+                        .descriptorType(getDescriptorType(binding))
+                        .stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+            }
+
+            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.calloc(stack);
+            layoutInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_LAYOUT_CREATE_INFO);
+            layoutInfo.pBindings(bindings);
+
+            LongBuffer pDescriptorSetLayout = stack.mallocLong(1);
+
+            if (VK10.vkCreateDescriptorSetLayout(this.vkDevice, layoutInfo, null, pDescriptorSetLayout) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create cull descriptor set layout");
+            }
+
+            return pDescriptorSetLayout.get(0);
+        }
+    }
+
+    private static int getDescriptorType(int binding) {
+        return binding == UNIFORM_BINDING ? VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER : VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER;
+    }
+
+    private long createDescriptorPool(int setCount) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(2, stack);
+            poolSizes.get(0)
+                    .type(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER)
+                    .descriptorCount(setCount);
+            poolSizes.get(1)
+                    .type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER)
+                    .descriptorCount((BINDING_COUNT - 1) * setCount);
+
+            VkDescriptorPoolCreateInfo poolCreateInfo = VkDescriptorPoolCreateInfo.calloc(stack);
+            poolCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_POOL_CREATE_INFO);
+            poolCreateInfo.pPoolSizes(poolSizes);
+            poolCreateInfo.maxSets(setCount);
+
+            LongBuffer pDescriptorPool = stack.mallocLong(1);
+
+            if (VK10.vkCreateDescriptorPool(this.vkDevice, poolCreateInfo, null, pDescriptorPool) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create cull descriptor pool");
+            }
+
+            return pDescriptorPool.get(0);
+        }
+    }
+
+    private long[] allocateDescriptorSets(int setCount) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            LongBuffer layouts = stack.mallocLong(setCount);
+            for (int i = 0; i < layouts.capacity(); i++) {
+                layouts.put(i, this.descriptorSetLayout);
+            }
+
+            VkDescriptorSetAllocateInfo allocateInfo = VkDescriptorSetAllocateInfo.calloc(stack);
+            allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_ALLOCATE_INFO);
+            allocateInfo.descriptorPool(this.descriptorPool);
+            allocateInfo.pSetLayouts(layouts);
+
+            long[] descriptorSets = new long[setCount];
+
+            if (VK10.vkAllocateDescriptorSets(this.vkDevice, allocateInfo, descriptorSets) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to allocate cull descriptor sets");
+            }
+
+            return descriptorSets;
+        }
+    }
+
+    private void writeDescriptorSet(long descriptorSet, long[] buffers, long instanceOffset, long instanceRange) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.calloc(BINDING_COUNT, stack);
+
+            for (int binding = 0; binding < BINDING_COUNT; binding++) {
+                VkDescriptorBufferInfo.Buffer bufferInfo = VkDescriptorBufferInfo.calloc(1, stack);
+                bufferInfo.buffer(buffers[binding]);
+
+                if (binding == UNIFORM_BINDING) {
+                    bufferInfo.offset(0);
+                    bufferInfo.range(UniformBufferObject.SIZEOF);
+                } else if (binding == 1) {
+                    bufferInfo.offset(instanceOffset);
+                    bufferInfo.range(instanceRange);
+                } else {
+                    bufferInfo.offset(0);
+                    bufferInfo.range(VK10.VK_WHOLE_SIZE);
+                }
+
+                VkWriteDescriptorSet descriptorWrite = descriptorWrites.get(binding);
+                descriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+                descriptorWrite.dstSet(descriptorSet);
+                descriptorWrite.dstBinding(binding);
+                descriptorWrite.dstArrayElement(0);
+                descriptorWrite.descriptorType(getDescriptorType(binding));
+                descriptorWrite.descriptorCount(1);
+                descriptorWrite.pBufferInfo(bufferInfo);
+            }
+
+            VK10.vkUpdateDescriptorSets(this.vkDevice, descriptorWrites, null);
+        }
+    }
+
+    private long createPipelineLayout() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPushConstantRange.Buffer pushConstant = VkPushConstantRange.calloc(1, stack);
+            pushConstant.stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+            pushConstant.offset(0);
+            pushConstant.size(PUSH_CONSTANT_SIZE);
+
+            VkPipelineLayoutCreateInfo pipelineLayoutCreateInfo = VkPipelineLayoutCreateInfo.calloc(stack);
+            pipelineLayoutCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_LAYOUT_CREATE_INFO);
+            pipelineLayoutCreateInfo.pSetLayouts(stack.longs(this.descriptorSetLayout));
+            pipelineLayoutCreateInfo.pPushConstantRanges(pushConstant);
+
+            LongBuffer pPipelineLayout = stack.mallocLong(1);
+
+            if (VK10.vkCreatePipelineLayout(this.vkDevice, pipelineLayoutCreateInfo, null, pPipelineLayout) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create cull pipeline layout");
+            }
+
+            return pPipelineLayout.get(0);
+        }
+    }
+
+    private long createPipeline() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            SPIRV shader = ShaderSPIRVUtils.compileShaderFile("shaders/cull.comp", ShaderKind.COMPUTE_SHADER);
+
+            VkShaderModuleCreateInfo moduleCreateInfo = VkShaderModuleCreateInfo.calloc(stack);
+            moduleCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_SHADER_MODULE_CREATE_INFO);
+            moduleCreateInfo.pCode(shader.byteCode());
+
+            LongBuffer pShaderModule = stack.mallocLong(1);
+
+            if (VK10.vkCreateShaderModule(this.vkDevice, moduleCreateInfo, null, pShaderModule) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create cull shader module");
+            }
+
+            VkComputePipelineCreateInfo.Buffer pipelineInfo = VkComputePipelineCreateInfo.calloc(1, stack);
+            pipelineInfo.sType(VK10.VK_STRUCTURE_TYPE_COMPUTE_PIPELINE_CREATE_INFO);
+            pipelineInfo.stage()
+                    .sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO)
+                    .stage(VK10.VK_SHADER_STAGE_COMPUTE_BIT)
+                    .module(pShaderModule.get(0))
+                    .pName(stack.UTF8("main"));
+            pipelineInfo.layout(this.pipelineLayout);
+
+            LongBuffer pPipeline = stack.mallocLong(1);
+            final int result = VK10.vkCreateComputePipelines(this.vkDevice, VK10.VK_NULL_HANDLE, pipelineInfo, null, pPipeline);
+
+            VK10.vkDestroyShaderModule(this.vkDevice, pShaderModule.get(0), null);
+            shader.free();
+
+            if (result != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create cull pipeline");
+            }
+
+            return pPipeline.get(0);
+        }
+    }
+
+    /*
+     * Has to be recorded outside of a render pass. The draws are ready for the indirect draw calls
+     * and the vertex shader afterwards.
+     */
+    public void cmdCull(VkCommandBuffer commandBuffer, int index, MemoryStack stack) {
+        VK10.vkCmdFillBuffer(commandBuffer, this.drawCountBuffers[index], 0, Integer.BYTES, 0);
+
+        if (this.clearDraws) {
+            VK10.vkCmdFillBuffer(commandBuffer, this.drawBuffers[index], 0, VK10.VK_WHOLE_SIZE, 0);
+        }
+
+        VkMemoryBarrier.Buffer clearBarrier = VkMemoryBarrier.calloc(1, stack);
+        clearBarrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+        clearBarrier.srcAccessMask(VK10.VK_ACCESS_TRANSFER_WRITE_BIT);
+        clearBarrier.dstAccessMask(VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT);
+
+        VK10.vkCmdPipelineBarrier(commandBuffer, VK10.VK_PIPELINE_STAGE_TRANSFER_BIT, VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
+                0, clearBarrier, null, null);
+
+        VK10.vkCmdBindPipeline(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, this.pipeline);
+        VK10.vkCmdBindDescriptorSets(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, this.pipelineLayout, 0,
+                stack.longs(this.descriptorSets[index]), null);
+
+        ByteBuffer pushConstant = stack.malloc(PUSH_CONSTANT_SIZE);
+        pushConstant.putInt(0, this.instanceCount);
+        pushConstant.putInt(Integer.BYTES, this.maxDrawCount);
+        pushConstant.putFloat(2 * Integer.BYTES, this.lodScale);
+        VK10.vkCmdPushConstants(commandBuffer, this.pipelineLayout, VK10.VK_SHADER_STAGE_COMPUTE_BIT, 0, pushConstant);
+
+        VK10.vkCmdDispatch(commandBuffer, (this.instanceCount + WORKGROUP_SIZE - 1) / WORKGROUP_SIZE, 1, 1);
+
+        VkMemoryBarrier.Buffer drawBarrier = VkMemoryBarrier.calloc(1, stack);
+        drawBarrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+        drawBarrier.srcAccessMask(VK10.VK_ACCESS_SHADER_WRITE_BIT);
+        drawBarrier.dstAccessMask(VK10.VK_ACCESS_INDIRECT_COMMAND_READ_BIT);
+
+        VK10.vkCmdPipelineBarrier(commandBuffer, VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT, VK10.VK_PIPELINE_STAGE_DRAW_INDIRECT_BIT,
+                0, drawBarrier, null, null);
+    }
+
+    /*
+     * For a new swapchain height, takes effect in the command buffers recorded afterwards
+     */
+    public void setLodScale(float lodScale) {
+        this.lodScale = lodScale;
+    }
+
+    public int getMaxDrawCount() {
+        return this.maxDrawCount;
+    }
+
+    public void destroy() {
+        VK10.vkDestroyPipeline(this.vkDevice, this.pipeline, null);
+        VK10.vkDestroyPipelineLayout(this.vkDevice, this.pipelineLayout, null);
+        VK10.vkDestroyDescriptorPool(this.vkDevice, this.descriptorPool, null);
+        VK10.vkDestroyDescriptorSetLayout(this.vkDevice, this.descriptorSetLayout, null);
+    }
+}
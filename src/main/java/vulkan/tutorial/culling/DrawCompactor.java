@@ -0,0 +1,90 @@
+package vulkan.tutorial.culling;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import vulkan.tutorial.gameobject.GameObject;
+import vulkan.tutorial.gameobject.MeshPool;
+import vulkan.tutorial.lod.LodSelector;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.shader.UniformBufferObject;
+import vulkan.tutorial.vulkan.BlasInstance;
+
+/*
+ * Reference of cull.comp: picks the LOD level of every instance of the scene with LodSelector,
+ * culls the instance and then the clusters of that level against the frustum and the normal cones of the meshlets, and appends a
+ * VkDrawIndexedIndirectCommand for every cluster that is left (indexCount, instanceCount 1,
+ * firstIndex, vertexOffset, firstInstance = instance index).
+ *
+ * Clusters of an instance that is completely inside skip the frustum test. The shader appends
+ * the draws of an instance in cluster order, but the instances in any order: compare the two
+ * sorted by firstInstance and firstIndex. Draws past the capacity of the command array are
+ * dropped like on the GPU.
+ */
+public class DrawCompactor {
+    public static final int COMMAND_INTS = 5;
+    public static final int COMMAND_SIZE = COMMAND_INTS * Integer.BYTES;
+
+    private final FrustumCuller culler = new FrustumCuller();
+    private final Matrix4f model = new Matrix4f();
+    private final Matrix4f transform = new Matrix4f();
+    private final Matrix4f clip = new Matrix4f();
+    private final Vector3f camera = new Vector3f();
+
+    /*
+     * Culls with the camera and model matrix of the uniform buffer, like the shader. lodScale is
+     * LodSelector.getScale(viewportHeight), the push constant of the shader. Returns the number of
+     * draws in commands.
+     */
+    public int compact(MeshPool pool, Scene scene, UniformBufferObject ubo, float lodScale, int[] commands) {
+        final int capacity = commands.length / COMMAND_INTS;
+        int drawCount = 0;
+
+        for (int i = 0; i < scene.getInstanceCount() && drawCount < capacity; i++) {
+            final BlasInstance instance = scene.getInstance(i);
+            final int mesh = instance.getBlasId();
+            final GameObject gameObject = pool.getMesh(mesh);
+
+            this.model.set(ubo.getModel()).mul(scene.getTransform(i, this.transform));
+            this.culler.setMatrix(this.clip.set(ubo.getProjection()).mul(ubo.getView()).mul(this.model));
+
+            //the camera in the space of the mesh, where the cones and LOD errors are
+            ubo.getViewInverse().getTranslation(this.camera);
+            this.model.invert().transformPosition(this.camera);
+
+            final float distance = LodSelector.getDistance(gameObject.getClusters().getObjectBounds(), 0, this.camera.x, this.camera.y, this.camera.z);
+            final int level = LodSelector.select(gameObject.getLods().getErrors(), gameObject.getLods().getLevelCount(), distance,
+                    Math.abs(ubo.getProjection().m11()) * lodScale);
+            final MeshClusters clusters = gameObject.getClusters(level);
+
+            final int meshResult = this.culler.classify(clusters.getObjectBounds(), 0);
+
+            if (meshResult == FrustumCuller.OUTSIDE) {
+                continue;
+            }
+
+            for (int cluster = 0; cluster < clusters.getCount() && drawCount < capacity; cluster++) {
+                if (isVisible(clusters, cluster, meshResult)) {
+                    final int offset = drawCount * COMMAND_INTS;
+
+                    commands[offset] = clusters.getIndexCount(cluster);
+                    commands[offset + 1] = 1;
+                    commands[offset + 2] = pool.getFirstIndex(mesh, level) + clusters.getFirstIndex(cluster);
+                    commands[offset + 3] = pool.getVertexOffset(mesh);
+                    commands[offset + 4] = i;
+                    drawCount++;
+                }
+            }
+        }
+
+        return drawCount;
+    }
+
+    private boolean isVisible(MeshClusters clusters, int cluster, int meshResult) {
+        if (meshResult != FrustumCuller.INSIDE
+                && this.culler.classify(clusters.getBounds(), cluster * BoundsHierarchy.BOUNDS_STRIDE) == FrustumCuller.OUTSIDE) {
+            return false;
+        }
+
+        return !clusters.getMeshlets().isBackfacing(cluster, this.camera.x, this.camera.y, this.camera.z);
+    }
+}
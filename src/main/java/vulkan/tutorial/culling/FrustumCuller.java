@@ -0,0 +1,363 @@
+package vulkan.tutorial.culling;
+
+import org.joml.Matrix4fc;
+import org.joml.Vector4f;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Culls axis aligned boxes (minX, minY, minZ, maxX, maxY, maxZ, the layout of BoundsHierarchy)
+ * against the frustum of a clip matrix (projection * view * model for boxes in model space) and
+ * optionally against a HiZBuffer. classifySphere() does the plane test for bounding spheres like
+ * the ones of Meshlets.
+ *
+ * The plane test only checks the corner farthest along each plane normal, so a box that is
+ * outside but spans the corner of the frustum counts as visible, it is never the other way round.
+ * Flat arrays are split into fork/join tasks of PARALLEL_THRESHOLD boxes, a hierarchy is walked
+ * top down and subtrees of more than PARALLEL_THRESHOLD items are forked.
+ *
+ * setMatrix() and setOcclusion() must not be called while a cull is running.
+ */
+public class FrustumCuller {
+    public static final int OUTSIDE = 0;
+    public static final int INTERSECTING = 1;
+    public static final int INSIDE = 2;
+
+    private static final int PLANE_COUNT = 6;
+    private static final int PARALLEL_THRESHOLD = 1024;
+    //boxes that reach this close to the camera plane are never occlusion culled
+    private static final float MIN_W = 1.0e-5f;
+
+    private final ForkJoinPool pool;
+    private final float[] planes = new float[PLANE_COUNT * 4];
+    private final float[] clip = new float[16];
+    private final Vector4f plane = new Vector4f();
+    private HiZBuffer occlusion;
+
+    public FrustumCuller() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public FrustumCuller(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public void setMatrix(Matrix4fc matrix) {
+        matrix.get(this.clip);
+
+        for (int i = 0; i < PLANE_COUNT; i++) {
+            //normalized, pointing into the frustum
+            matrix.frustumPlane(i, this.plane);
+            this.planes[i * 4] = this.plane.x;
+            this.planes[i * 4 + 1] = this.plane.y;
+            this.planes[i * 4 + 2] = this.plane.z;
+            this.planes[i * 4 + 3] = this.plane.w;
+        }
+    }
+
+    /*
+     * Depths of the buffer have to come from the matrix of setMatrix(), null turns occlusion culling off
+     */
+    public void setOcclusion(HiZBuffer occlusion) {
+        this.occlusion = occlusion;
+    }
+
+    /*
+     * a, b, c, d of every plane in the order of Matrix4fc.frustumPlane()
+     */
+    float[] getPlanes() {
+        return this.planes;
+    }
+
+    public int classify(float[] bounds, int offset) {
+        final float minX = bounds[offset];
+        final float minY = bounds[offset + 1];
+        final float minZ = bounds[offset + 2];
+        final float maxX = bounds[offset + 3];
+        final float maxY = bounds[offset + 4];
+        final float maxZ = bounds[offset + 5];
+
+        int result = INSIDE;
+
+        for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+            final float a = this.planes[i];
+            final float b = this.planes[i + 1];
+            final float c = this.planes[i + 2];
+            final float d = this.planes[i + 3];
+
+            //the corner farthest along the normal decides if the box is outside ...
+            final float farthest = a * (a < 0.0f ? minX : maxX) + b * (b < 0.0f ? minY : maxY) + c * (c < 0.0f ? minZ : maxZ) + d;
+
+            if (farthest < 0.0f) {
+                return OUTSIDE;
+            }
+
+            //... the nearest one if it is crossing the plane
+            final float nearest = a * (a < 0.0f ? maxX : minX) + b * (b < 0.0f ? maxY : minY) + c * (c < 0.0f ? maxZ : minZ) + d;
+
+            if (nearest < 0.0f) {
+                result = INTERSECTING;
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * spheres[offset .. offset + 3] is center xyz and radius, the layout of Meshlets.getSpheres()
+     */
+    public int classifySphere(float[] spheres, int offset) {
+        final float x = spheres[offset];
+        final float y = spheres[offset + 1];
+        final float z = spheres[offset + 2];
+        final float radius = spheres[offset + 3];
+
+        int result = INSIDE;
+
+        for (int i = 0; i < PLANE_COUNT * 4; i += 4) {
+            //the planes are normalized, so this is the distance of the center
+            final float distance = this.planes[i] * x + this.planes[i + 1] * y + this.planes[i + 2] * z + this.planes[i + 3];
+
+            if (distance < -radius) {
+                return OUTSIDE;
+            }
+
+            if (distance < radius) {
+                result = INTERSECTING;
+            }
+        }
+
+        return result;
+    }
+
+    public boolean isVisible(float[] bounds, int offset) {
+        return classify(bounds, offset) != OUTSIDE && !isOccluded(bounds, offset);
+    }
+
+    /*
+     * Projects the corners of the box and tests the screen rectangle against the HiZBuffer
+     */
+    public boolean isOccluded(float[] bounds, int offset) {
+        final HiZBuffer hiZ = this.occlusion;
+
+        if (hiZ == null) {
+            return false;
+        }
+
+        final float[] m = this.clip;
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float nearestDepth = Float.POSITIVE_INFINITY;
+
+        for (int corner = 0; corner < 8; corner++) {
+            final float x = bounds[offset + ((corner & 1) == 0 ? 0 : 3)];
+            final float y = bounds[offset + ((corner & 2) == 0 ? 1 : 4)];
+            final float z = bounds[offset + ((corner & 4) == 0 ? 2 : 5)];
+
+            //column major like JOML
+            final float w = m[3] * x + m[7] * y + m[11] * z + m[15];
+
+            if (w < MIN_W) {
+                return false;
+            }
+
+            final float ndcX = (m[0] * x + m[4] * y + m[8] * z + m[12]) / w;
+            final float ndcY = (m[1] * x + m[5] * y + m[9] * z + m[13]) / w;
+            final float ndcZ = (m[2] * x + m[6] * y + m[10] * z + m[14]) / w;
+
+            minX = Math.min(minX, ndcX);
+            minY = Math.min(minY, ndcY);
+            maxX = Math.max(maxX, ndcX);
+            maxY = Math.max(maxY, ndcY);
+            nearestDepth = Math.min(nearestDepth, ndcZ);
+        }
+
+        return hiZ.isOccluded(
+                (minX * 0.5f + 0.5f) * hiZ.getWidth(),
+                (minY * 0.5f + 0.5f) * hiZ.getHeight(),
+                (maxX * 0.5f + 0.5f) * hiZ.getWidth(),
+                (maxY * 0.5f + 0.5f) * hiZ.getHeight(),
+                nearestDepth);
+    }
+
+    /*
+     * Culls count boxes, visible[i] tells if box i is visible. Returns the number of visible boxes.
+     */
+    public int cull(float[] bounds, int count, boolean[] visible) {
+        if (count <= PARALLEL_THRESHOLD) {
+            return cullRange(bounds, 0, count, visible);
+        }
+
+        final FlatTask task = new FlatTask(bounds, 0, count, visible);
+        this.pool.invoke(task);
+
+        return task.visibleCount;
+    }
+
+    private int cullRange(float[] bounds, int first, int end, boolean[] visible) {
+        int visibleCount = 0;
+
+        for (int i = first; i < end; i++) {
+            visible[i] = isVisible(bounds, i * BoundsHierarchy.BOUNDS_STRIDE);
+
+            if (visible[i]) {
+                visibleCount++;
+            }
+        }
+
+        return visibleCount;
+    }
+
+    /*
+     * Same result as the flat cull() over the boxes the hierarchy was built from, whole subtrees
+     * are accepted or rejected by their node bounds
+     */
+    public int cull(BoundsHierarchy hierarchy, float[] bounds, boolean[] visible) {
+        final NodeTask task = new NodeTask(hierarchy, bounds, visible, 0, false);
+
+        if (hierarchy.getItemCount(0) <= PARALLEL_THRESHOLD) {
+            task.compute();
+        } else {
+            this.pool.invoke(task);
+        }
+
+        return task.visibleCount;
+    }
+
+    private final class FlatTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final float[] bounds;
+        private final int first;
+        private final int end;
+        private final boolean[] visible;
+        private int visibleCount;
+
+        private FlatTask(float[] bounds, int first, int end, boolean[] visible) {
+            this.bounds = bounds;
+            this.first = first;
+            this.end = end;
+            this.visible = visible;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.first <= PARALLEL_THRESHOLD) {
+                this.visibleCount = cullRange(this.bounds, this.first, this.end, this.visible);
+                return;
+            }
+
+            final int middle = (this.first + this.end) >>> 1;
+            final FlatTask left = new FlatTask(this.bounds, this.first, middle, this.visible);
+            final FlatTask right = new FlatTask(this.bounds, middle, this.end, this.visible);
+            invokeAll(left, right);
+
+            this.visibleCount = left.visibleCount + right.visibleCount;
+        }
+    }
+
+    private final class NodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BoundsHierarchy hierarchy;
+        private final float[] bounds;
+        private final boolean[] visible;
+        private final int node;
+        private final boolean inside;
+        private int visibleCount;
+
+        private NodeTask(BoundsHierarchy hierarchy, float[] bounds, boolean[] visible, int node, boolean inside) {
+            this.hierarchy = hierarchy;
+            this.bounds = bounds;
+            this.visible = visible;
+            this.node = node;
+            this.inside = inside;
+        }
+
+        @Override
+        protected void compute() {
+            this.visibleCount = cullNode(this.node, this.inside);
+        }
+
+        private int cullNode(int node, boolean inside) {
+            final float[] nodeBounds = this.hierarchy.getNodeBounds();
+            final int offset = node * BoundsHierarchy.BOUNDS_STRIDE;
+
+            if (!inside) {
+                final int result = classify(nodeBounds, offset);
+
+                if (result == OUTSIDE) {
+                    setAll(node, false);
+                    return 0;
+                }
+
+                inside = result == INSIDE;
+            }
+
+            if (isOccluded(nodeBounds, offset)) {
+                setAll(node, false);
+                return 0;
+            }
+
+            //fully inside and nothing to occlude, every item is visible
+            if (inside && FrustumCuller.this.occlusion == null) {
+                setAll(node, true);
+                return this.hierarchy.getItemCount(node);
+            }
+
+            final int[] nodeData = this.hierarchy.getNodeData();
+
+            if (nodeData[node * BoundsHierarchy.DATA_STRIDE + 1] > 0) {
+                return cullLeaf(node, inside);
+            }
+
+            final int left = nodeData[node * BoundsHierarchy.DATA_STRIDE];
+            final int right = left + 1;
+
+            if (this.hierarchy.getItemCount(node) > PARALLEL_THRESHOLD) {
+                final NodeTask leftTask = new NodeTask(this.hierarchy, this.bounds, this.visible, left, inside);
+                final NodeTask rightTask = new NodeTask(this.hierarchy, this.bounds, this.visible, right, inside);
+                invokeAll(leftTask, rightTask);
+
+                return leftTask.visibleCount + rightTask.visibleCount;
+            }
+
+            return cullNode(left, inside) + cullNode(right, inside);
+        }
+
+        private int cullLeaf(int node, boolean inside) {
+            final int[] items = this.hierarchy.getLeafItems();
+            final int first = this.hierarchy.getItemFirst(node);
+            final int end = first + this.hierarchy.getItemCount(node);
+
+            int visibleCount = 0;
+
+            for (int i = first; i < end; i++) {
+                final int item = items[i];
+                final int offset = item * BoundsHierarchy.BOUNDS_STRIDE;
+
+                this.visible[item] = (inside || classify(this.bounds, offset) != OUTSIDE) && !isOccluded(this.bounds, offset);
+
+                if (this.visible[item]) {
+                    visibleCount++;
+                }
+            }
+
+            return visibleCount;
+        }
+
+        private void setAll(int node, boolean value) {
+            final int[] items = this.hierarchy.getLeafItems();
+            final int first = this.hierarchy.getItemFirst(node);
+            final int end = first + this.hierarchy.getItemCount(node);
+
+            for (int i = first; i < end; i++) {
+                this.visible[items[i]] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package vulkan.tutorial.culling;
+
+/*
+ * Hierarchical depth buffer for occlusion culling: level 0 is a depth image, every further level
+ * halves the size and keeps the farthest depth of the texels it covers. A box whose nearest depth
+ * lies behind the farthest depth of the few texels covering its screen rectangle is hidden.
+ *
+ * Depths are the z / w of the matrix the culler uses, smaller is nearer. Rows follow the Vulkan
+ * framebuffer, row 0 is at NDC y = -1.
+ */
+public class HiZBuffer {
+
+    private final int width;
+    private final int height;
+    private final float[][] levels;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+
+    public HiZBuffer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid depth buffer size " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+
+        int levelCount = 1;
+        for (int size = Math.max(width, height); size > 1; size = (size + 1) / 2) {
+            levelCount++;
+        }
+
+        this.levels = new float[levelCount][];
+        this.levelWidths = new int[levelCount];
+        this.levelHeights = new int[levelCount];
+
+        int levelWidth = width;
+        int levelHeight = height;
+
+        for (int level = 0; level < levelCount; level++) {
+            this.levels[level] = new float[levelWidth * levelHeight];
+            this.levelWidths[level] = levelWidth;
+            this.levelHeights[level] = levelHeight;
+            levelWidth = Math.max(1, (levelWidth + 1) / 2);
+            levelHeight = Math.max(1, (levelHeight + 1) / 2);
+        }
+    }
+
+    /*
+     * Takes a new depth image of width * height depths, row by row, and rebuilds the pyramid
+     */
+    public void update(float[] depth) {
+        if (depth.length < this.width * this.height) {
+            throw new IllegalArgumentException("Expected " + this.width * this.height + " depths, got " + depth.length);
+        }
+
+        System.arraycopy(depth, 0, this.levels[0], 0, this.width * this.height);
+
+        for (int level = 1; level < this.levels.length; level++) {
+            final float[] source = this.levels[level - 1];
+            final float[] target = this.levels[level];
+            final int sourceWidth = this.levelWidths[level - 1];
+            final int sourceHeight = this.levelHeights[level - 1];
+            final int targetWidth = this.levelWidths[level];
+
+            for (int y = 0; y < this.levelHeights[level]; y++) {
+                final int y0 = y * 2;
+                final int y1 = Math.min(y0 + 1, sourceHeight - 1);
+
+                for (int x = 0; x < targetWidth; x++) {
+                    final int x0 = x * 2;
+                    final int x1 = Math.min(x0 + 1, sourceWidth - 1);
+
+                    target[y * targetWidth + x] = Math.max(
+                            Math.max(source[y0 * sourceWidth + x0], source[y0 * sourceWidth + x1]),
+                            Math.max(source[y1 * sourceWidth + x0], source[y1 * sourceWidth + x1]));
+                }
+            }
+        }
+    }
+
+    /*
+     * Pixel rectangle (inclusive) of a box and the nearest depth of the box
+     */
+    public boolean isOccluded(float minX, float minY, float maxX, float maxY, float nearestDepth) {
+        final int x0 = Math.max((int) Math.floor(minX), 0);
+        final int y0 = Math.max((int) Math.floor(minY), 0);
+        final int x1 = Math.min((int) Math.floor(maxX), this.width - 1);
+        final int y1 = Math.min((int) Math.floor(maxY), this.height - 1);
+
+        //off screen, that is for the frustum test to decide
+        if (x0 > x1 || y0 > y1) {
+            return false;
+        }
+
+        //the level where the rectangle covers at most 2x2 texels (3x3 when it straddles a texel edge)
+        final int size = Math.max(x1 - x0, y1 - y0) + 1;
+        final int level = Math.min(32 - Integer.numberOfLeadingZeros(size - 1), this.levels.length - 1);
+        final float[] depths = this.levels[level];
+        final int levelWidth = this.levelWidths[level];
+
+        float farthest = Float.NEGATIVE_INFINITY;
+
+        for (int y = y0 >> level; y <= y1 >> level; y++) {
+            for (int x = x0 >> level; x <= x1 >> level; x++) {
+                farthest = Math.max(farthest, depths[y * levelWidth + x]);
+            }
+        }
+
+        return nearestDepth > farthest;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public int getLevelCount() {
+        return this.levels.length;
+    }
+}
@@ -0,0 +1,112 @@
+package vulkan.tutorial.culling;
+
+import vulkan.tutorial.math.Vertex;
+
+import java.util.Arrays;
+
+/*
+ * The meshlets of an indexed triangle list as draw ranges of the index list, each with its own
+ * object space bounding box and the normal cone of the meshlet.
+ *
+ * The bounds of cluster i are bounds[i * 6 .. i * 6 + 5] (see BoundsHierarchy), its cone is
+ * getMeshlets().getCones()[i * Meshlets.CONE_STRIDE ..], the box of the whole mesh is
+ * getObjectBounds().
+ */
+public class MeshClusters {
+
+    private final Meshlets meshlets;
+    private final MeshletStatistics statistics;
+    private final float[] bounds;
+    private final float[] objectBounds;
+    private final BoundsHierarchy hierarchy;
+
+    private MeshClusters(Meshlets meshlets, MeshletStatistics statistics, float[] bounds, float[] objectBounds) {
+        this.meshlets = meshlets;
+        this.statistics = statistics;
+        this.bounds = bounds;
+        this.objectBounds = objectBounds;
+        this.hierarchy = BoundsHierarchy.build(bounds, meshlets.getCount());
+    }
+
+    public static MeshClusters build(Vertex[] vertices, int[] indices) {
+        return build(vertices, indices, new MeshletBuilder());
+    }
+
+    public static MeshClusters build(Vertex[] vertices, int[] indices, MeshletBuilder builder) {
+        final Meshlets meshlets = builder.build(vertices, indices);
+        final int count = meshlets.getCount();
+
+        float[] bounds = new float[count * BoundsHierarchy.BOUNDS_STRIDE];
+        float[] objectBounds = new float[BoundsHierarchy.BOUNDS_STRIDE];
+        resetBounds(objectBounds, 0);
+
+        for (int cluster = 0; cluster < count; cluster++) {
+            final int first = meshlets.getVertexOffset(cluster);
+            final int end = first + meshlets.getVertexCount(cluster);
+            final int offset = cluster * BoundsHierarchy.BOUNDS_STRIDE;
+
+            resetBounds(bounds, offset);
+
+            for (int i = first; i < end; i++) {
+                final Vertex vertex = vertices[meshlets.getVertices()[i]];
+                extend(bounds, offset, vertex.getPos().x(), vertex.getPos().y(), vertex.getPos().z());
+            }
+
+            for (int axis = 0; axis < 3; axis++) {
+                objectBounds[axis] = Math.min(objectBounds[axis], bounds[offset + axis]);
+                objectBounds[axis + 3] = Math.max(objectBounds[axis + 3], bounds[offset + axis + 3]);
+            }
+        }
+
+        return new MeshClusters(meshlets,
+                MeshletStatistics.of(meshlets, builder.getMaxVertices(), builder.getMaxTriangles(), vertices.length),
+                bounds,
+                objectBounds);
+    }
+
+    private static void resetBounds(float[] bounds, int offset) {
+        Arrays.fill(bounds, offset, offset + 3, Float.POSITIVE_INFINITY);
+        Arrays.fill(bounds, offset + 3, offset + 6, Float.NEGATIVE_INFINITY);
+    }
+
+    private static void extend(float[] bounds, int offset, float x, float y, float z) {
+        bounds[offset] = Math.min(bounds[offset], x);
+        bounds[offset + 1] = Math.min(bounds[offset + 1], y);
+        bounds[offset + 2] = Math.min(bounds[offset + 2], z);
+        bounds[offset + 3] = Math.max(bounds[offset + 3], x);
+        bounds[offset + 4] = Math.max(bounds[offset + 4], y);
+        bounds[offset + 5] = Math.max(bounds[offset + 5], z);
+    }
+
+    public int getCount() {
+        return this.meshlets.getCount();
+    }
+
+    public int getFirstIndex(int cluster) {
+        return this.meshlets.getTriangleOffset(cluster) * 3;
+    }
+
+    public int getIndexCount(int cluster) {
+        return this.meshlets.getTriangleCount(cluster) * 3;
+    }
+
+    public float[] getBounds() {
+        return this.bounds;
+    }
+
+    public float[] getObjectBounds() {
+        return this.objectBounds;
+    }
+
+    public BoundsHierarchy getHierarchy() {
+        return this.hierarchy;
+    }
+
+    public Meshlets getMeshlets() {
+        return this.meshlets;
+    }
+
+    public MeshletStatistics getStatistics() {
+        return this.statistics;
+    }
+}
@@ -0,0 +1,276 @@
+package vulkan.tutorial.culling;
+
+import vulkan.tutorial.math.Vertex;
+
+import java.util.Arrays;
+
+/*
+ * Splits an indexed triangle list into meshlets of at most maxVertices distinct vertices and
+ * maxTriangles triangles. The triangles are taken in index order and a meshlet is closed as soon
+ * as the next triangle doesn't fit, so every meshlet is a contiguous range of the index list and
+ * the quality depends on the vertex locality of that order.
+ *
+ * The bounding sphere is centered on the bounding box of the meshlet. The normal cone follows
+ * meshoptimizer: the axis is the mean of the unit face normals, the apex is moved back along the
+ * axis until every triangle plane is in front of it. Normals are taken as counter clockwise front
+ * faces, like the raster pipeline.
+ *
+ * A builder has no state, one can be shared by threads building different meshes.
+ */
+public class MeshletBuilder {
+    public static final int DEFAULT_MAX_VERTICES = 64;
+    public static final int DEFAULT_MAX_TRIANGLES = 124;
+
+    //local vertex indices are stored as unsigned bytes
+    private static final int MAX_LOCAL_VERTICES = 256;
+    //a cone wider than acos(MIN_CONE_DOT) can't cull anything from most directions
+    private static final float MIN_CONE_DOT = 0.1f;
+    private static final float NO_CONE_CUTOFF = 2.0f;
+
+    private final int maxVertices;
+    private final int maxTriangles;
+
+    public MeshletBuilder() {
+        this(DEFAULT_MAX_VERTICES, DEFAULT_MAX_TRIANGLES);
+    }
+
+    public MeshletBuilder(int maxVertices, int maxTriangles) {
+        if (maxVertices < 3 || maxVertices > MAX_LOCAL_VERTICES) {
+            throw new IllegalArgumentException("A meshlet needs 3 to " + MAX_LOCAL_VERTICES + " vertices, got " + maxVertices);
+        }
+
+        if (maxTriangles < 1) {
+            throw new IllegalArgumentException("A meshlet needs at least 1 triangle, got " + maxTriangles);
+        }
+
+        this.maxVertices = maxVertices;
+        this.maxTriangles = maxTriangles;
+    }
+
+    public int getMaxVertices() {
+        return this.maxVertices;
+    }
+
+    public int getMaxTriangles() {
+        return this.maxTriangles;
+    }
+
+    public Meshlets build(Vertex[] vertices, int[] indices) {
+        float[] positions = new float[vertices.length * 3];
+
+        for (int i = 0; i < vertices.length; i++) {
+            positions[i * 3] = vertices[i].getPos().x();
+            positions[i * 3 + 1] = vertices[i].getPos().y();
+            positions[i * 3 + 2] = vertices[i].getPos().z();
+        }
+
+        return build(positions, indices);
+    }
+
+    /*
+     * positions: x, y, z per vertex
+     */
+    public Meshlets build(float[] positions, int[] indices) {
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count must be a multiple of 3, got " + indices.length);
+        }
+
+        final int triangleCount = indices.length / 3;
+
+        //meshlet of the vertex and its local index there, -1 for none yet
+        int[] owners = new int[positions.length / 3];
+        int[] localIndices = new int[positions.length / 3];
+        Arrays.fill(owners, -1);
+
+        int[] meshletVertices = new int[indices.length];
+        byte[] meshletTriangles = new byte[indices.length];
+        int[] vertexOffsets = new int[triangleCount];
+        int[] vertexCounts = new int[triangleCount];
+        int[] triangleOffsets = new int[triangleCount];
+        int[] triangleCounts = new int[triangleCount];
+
+        int count = 0;
+        int vertexTotal = 0;
+
+        for (int triangle = 0; triangle < triangleCount; triangle++) {
+            final int a = indices[triangle * 3];
+            final int b = indices[triangle * 3 + 1];
+            final int c = indices[triangle * 3 + 2];
+
+            if (count > 0) {
+                final int current = count - 1;
+                final int newVertices = (owners[a] != current ? 1 : 0)
+                        + (owners[b] != current && b != a ? 1 : 0)
+                        + (owners[c] != current && c != a && c != b ? 1 : 0);
+
+                if (vertexCounts[current] + newVertices > this.maxVertices || triangleCounts[current] == this.maxTriangles) {
+                    count++;
+                }
+            } else {
+                count++;
+            }
+
+            final int meshlet = count - 1;
+
+            if (vertexCounts[meshlet] == 0 && triangleCounts[meshlet] == 0) {
+                vertexOffsets[meshlet] = vertexTotal;
+                triangleOffsets[meshlet] = triangle;
+            }
+
+            for (int corner = 0; corner < 3; corner++) {
+                final int vertex = indices[triangle * 3 + corner];
+
+                if (owners[vertex] != meshlet) {
+                    owners[vertex] = meshlet;
+                    localIndices[vertex] = vertexCounts[meshlet]++;
+                    meshletVertices[vertexTotal++] = vertex;
+                }
+
+                meshletTriangles[triangle * 3 + corner] = (byte) localIndices[vertex];
+            }
+
+            triangleCounts[meshlet]++;
+        }
+
+        float[] spheres = new float[count * Meshlets.SPHERE_STRIDE];
+        float[] cones = new float[count * Meshlets.CONE_STRIDE];
+
+        for (int meshlet = 0; meshlet < count; meshlet++) {
+            computeSphere(positions, meshletVertices, vertexOffsets[meshlet], vertexCounts[meshlet], spheres, meshlet * Meshlets.SPHERE_STRIDE);
+            computeCone(positions, indices, triangleOffsets[meshlet], triangleCounts[meshlet], spheres, meshlet * Meshlets.SPHERE_STRIDE,
+                    cones, meshlet * Meshlets.CONE_STRIDE);
+        }
+
+        return new Meshlets(count,
+                Arrays.copyOf(meshletVertices, vertexTotal),
+                meshletTriangles,
+                Arrays.copyOf(vertexOffsets, count),
+                Arrays.copyOf(vertexCounts, count),
+                Arrays.copyOf(triangleOffsets, count),
+                Arrays.copyOf(triangleCounts, count),
+                spheres,
+                cones);
+    }
+
+    private static void computeSphere(float[] positions, int[] meshletVertices, int first, int vertexCount, float[] spheres, int offset) {
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+        for (int i = first; i < first + vertexCount; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], positions[meshletVertices[i] * 3 + axis]);
+                max[axis] = Math.max(max[axis], positions[meshletVertices[i] * 3 + axis]);
+            }
+        }
+
+        float radiusSquared = 0.0f;
+
+        for (int axis = 0; axis < 3; axis++) {
+            spheres[offset + axis] = (min[axis] + max[axis]) * 0.5f;
+        }
+
+        for (int i = first; i < first + vertexCount; i++) {
+            final float dx = positions[meshletVertices[i] * 3] - spheres[offset];
+            final float dy = positions[meshletVertices[i] * 3 + 1] - spheres[offset + 1];
+            final float dz = positions[meshletVertices[i] * 3 + 2] - spheres[offset + 2];
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+
+        spheres[offset + 3] = (float) Math.sqrt(radiusSquared);
+    }
+
+    private static void computeCone(float[] positions, int[] indices, int firstTriangle, int triangleCount, float[] spheres, int sphereOffset,
+                                    float[] cones, int offset) {
+        float[] normals = new float[triangleCount * 3];
+        float axisX = 0.0f;
+        float axisY = 0.0f;
+        float axisZ = 0.0f;
+
+        for (int i = 0; i < triangleCount; i++) {
+            faceNormal(positions, indices, firstTriangle + i, normals, i * 3);
+            axisX += normals[i * 3];
+            axisY += normals[i * 3 + 1];
+            axisZ += normals[i * 3 + 2];
+        }
+
+        final float centerX = spheres[sphereOffset];
+        final float centerY = spheres[sphereOffset + 1];
+        final float centerZ = spheres[sphereOffset + 2];
+        final float axisLength = (float) Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+
+        cones[offset] = centerX;
+        cones[offset + 1] = centerY;
+        cones[offset + 2] = centerZ;
+        cones[offset + 3] = NO_CONE_CUTOFF;
+
+        if (axisLength == 0.0f) {
+            return;
+        }
+
+        axisX /= axisLength;
+        axisY /= axisLength;
+        axisZ /= axisLength;
+
+        cones[offset + 4] = axisX;
+        cones[offset + 5] = axisY;
+        cones[offset + 6] = axisZ;
+
+        float minDot = 1.0f;
+
+        for (int i = 0; i < triangleCount; i++) {
+            //degenerate triangles have no normal and face nowhere
+            if (normals[i * 3] != 0.0f || normals[i * 3 + 1] != 0.0f || normals[i * 3 + 2] != 0.0f) {
+                minDot = Math.min(minDot, axisX * normals[i * 3] + axisY * normals[i * 3 + 1] + axisZ * normals[i * 3 + 2]);
+            }
+        }
+
+        if (minDot <= MIN_CONE_DOT) {
+            return;
+        }
+
+        //the apex goes back along the axis until it is behind every triangle plane
+        float maxT = 0.0f;
+
+        for (int i = 0; i < triangleCount; i++) {
+            final int p0 = indices[(firstTriangle + i) * 3] * 3;
+            final float nx = normals[i * 3];
+            final float ny = normals[i * 3 + 1];
+            final float nz = normals[i * 3 + 2];
+            final float distance = (centerX - positions[p0]) * nx + (centerY - positions[p0 + 1]) * ny + (centerZ - positions[p0 + 2]) * nz;
+            final float alignment = axisX * nx + axisY * ny + axisZ * nz;
+
+            if (alignment > 0.0f) {
+                maxT = Math.max(maxT, distance / alignment);
+            }
+        }
+
+        cones[offset] = centerX - axisX * maxT;
+        cones[offset + 1] = centerY - axisY * maxT;
+        cones[offset + 2] = centerZ - axisZ * maxT;
+        cones[offset + 3] = (float) Math.sqrt(1.0f - minDot * minDot);
+    }
+
+    private static void faceNormal(float[] positions, int[] indices, int triangle, float[] normals, int offset) {
+        final int p0 = indices[triangle * 3] * 3;
+        final int p1 = indices[triangle * 3 + 1] * 3;
+        final int p2 = indices[triangle * 3 + 2] * 3;
+
+        final float e1x = positions[p1] - positions[p0];
+        final float e1y = positions[p1 + 1] - positions[p0 + 1];
+        final float e1z = positions[p1 + 2] - positions[p0 + 2];
+        final float e2x = positions[p2] - positions[p0];
+        final float e2y = positions[p2 + 1] - positions[p0 + 1];
+        final float e2z = positions[p2 + 2] - positions[p0 + 2];
+
+        final float nx = e1y * e2z - e1z * e2y;
+        final float ny = e1z * e2x - e1x * e2z;
+        final float nz = e1x * e2y - e1y * e2x;
+        final float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+        if (length > 0.0f) {
+            normals[offset] = nx / length;
+            normals[offset + 1] = ny / length;
+            normals[offset + 2] = nz / length;
+        }
+    }
+}
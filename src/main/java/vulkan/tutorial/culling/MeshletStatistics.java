@@ -0,0 +1,110 @@
+package vulkan.tutorial.culling;
+
+/*
+ * How well the meshlets of a mesh use their limits. Vertex duplication is the number of meshlet
+ * vertices per distinct mesh vertex, every vertex shared across a meshlet border is transformed once
+ * per meshlet. Meshlets with a cutoff above 1 have no usable normal cone.
+ */
+public class MeshletStatistics {
+    private final int meshletCount;
+    private final double averageVertices;
+    private final double averageTriangles;
+    private final double vertexFill;
+    private final double triangleFill;
+    private final double vertexDuplication;
+    private final double coneFraction;
+    private final double averageConeAngle;
+
+    private MeshletStatistics(int meshletCount, double averageVertices, double averageTriangles, double vertexFill, double triangleFill,
+                              double vertexDuplication, double coneFraction, double averageConeAngle) {
+        this.meshletCount = meshletCount;
+        this.averageVertices = averageVertices;
+        this.averageTriangles = averageTriangles;
+        this.vertexFill = vertexFill;
+        this.triangleFill = triangleFill;
+        this.vertexDuplication = vertexDuplication;
+        this.coneFraction = coneFraction;
+        this.averageConeAngle = averageConeAngle;
+    }
+
+    /*
+     * maxVertices / maxTriangles: the limits the meshlets were built with, vertexCount: distinct vertices of the mesh
+     */
+    public static MeshletStatistics of(Meshlets meshlets, int maxVertices, int maxTriangles, int vertexCount) {
+        final int count = meshlets.getCount();
+
+        if (count == 0) {
+            return new MeshletStatistics(0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0, 0.0);
+        }
+
+        long vertices = 0;
+        long triangles = 0;
+        int cones = 0;
+        double coneAngles = 0.0;
+
+        for (int meshlet = 0; meshlet < count; meshlet++) {
+            vertices += meshlets.getVertexCount(meshlet);
+            triangles += meshlets.getTriangleCount(meshlet);
+
+            final float cutoff = meshlets.getCones()[meshlet * Meshlets.CONE_STRIDE + 3];
+
+            if (cutoff <= 1.0f) {
+                cones++;
+                //cutoff is the sine of the half angle of the normals
+                coneAngles += Math.toDegrees(Math.asin(cutoff));
+            }
+        }
+
+        final double averageVertices = (double) vertices / count;
+        final double averageTriangles = (double) triangles / count;
+
+        return new MeshletStatistics(count,
+                averageVertices,
+                averageTriangles,
+                averageVertices / maxVertices,
+                averageTriangles / maxTriangles,
+                vertexCount == 0 ? 0.0 : (double) vertices / vertexCount,
+                (double) cones / count,
+                cones == 0 ? 0.0 : coneAngles / cones);
+    }
+
+    public int getMeshletCount() {
+        return this.meshletCount;
+    }
+
+    public double getAverageVertices() {
+        return this.averageVertices;
+    }
+
+    public double getAverageTriangles() {
+        return this.averageTriangles;
+    }
+
+    public double getVertexFill() {
+        return this.vertexFill;
+    }
+
+    public double getTriangleFill() {
+        return this.triangleFill;
+    }
+
+    public double getVertexDuplication() {
+        return this.vertexDuplication;
+    }
+
+    public double getConeFraction() {
+        return this.coneFraction;
+    }
+
+    public double getAverageConeAngle() {
+        return this.averageConeAngle;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d meshlets, %.1f vertices (%.0f%%) and %.1f triangles (%.0f%%) on average, %.2fx vertex duplication, "
+                        + "%.0f%% with a normal cone of %.1f degrees on average",
+                this.meshletCount, this.averageVertices, this.vertexFill * 100.0, this.averageTriangles, this.triangleFill * 100.0,
+                this.vertexDuplication, this.coneFraction * 100.0, this.averageConeAngle);
+    }
+}
@@ -0,0 +1,96 @@
+package vulkan.tutorial.culling;
+
+/*
+ * Flat meshlet layout of one mesh, the way a mesh shader or a culling pass reads it:
+ *
+ *  vertices[vertexOffset .. + vertexCount]           mesh vertex of every meshlet local vertex
+ *  triangles[triangleOffset * 3 .. + triangleCount * 3]  local vertex indices, 3 per triangle
+ *  spheres[m * 4 ..]                                 center xyz, radius
+ *  cones[m * 8 ..]                                   apex xyz, cutoff, axis xyz, unused
+ *
+ * A meshlet covers the triangles [firstTriangle, firstTriangle + triangleCount) of the index list
+ * it was built from, so it can also be drawn as a range of the original index buffer.
+ *
+ * All triangles of a meshlet face away from a camera at c if
+ * dot(normalize(apex - c), axis) >= cutoff, see isBackfacing(). Meshlets whose normals spread too
+ * far get a cutoff above 1 and are never culled that way.
+ */
+public class Meshlets {
+    public static final int SPHERE_STRIDE = 4;
+    public static final int CONE_STRIDE = 8;
+
+    private final int count;
+    private final int[] vertices;
+    private final byte[] triangles;
+    private final int[] vertexOffsets;
+    private final int[] vertexCounts;
+    private final int[] triangleOffsets;
+    private final int[] triangleCounts;
+    private final float[] spheres;
+    private final float[] cones;
+
+    Meshlets(int count, int[] vertices, byte[] triangles, int[] vertexOffsets, int[] vertexCounts, int[] triangleOffsets,
+             int[] triangleCounts, float[] spheres, float[] cones) {
+        this.count = count;
+        this.vertices = vertices;
+        this.triangles = triangles;
+        this.vertexOffsets = vertexOffsets;
+        this.vertexCounts = vertexCounts;
+        this.triangleOffsets = triangleOffsets;
+        this.triangleCounts = triangleCounts;
+        this.spheres = spheres;
+        this.cones = cones;
+    }
+
+    public static boolean isBackfacing(float[] cones, int offset, float cameraX, float cameraY, float cameraZ) {
+        final float dx = cones[offset] - cameraX;
+        final float dy = cones[offset + 1] - cameraY;
+        final float dz = cones[offset + 2] - cameraZ;
+        final float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+        return dx * cones[offset + 4] + dy * cones[offset + 5] + dz * cones[offset + 6] >= cones[offset + 3] * length;
+    }
+
+    public boolean isBackfacing(int meshlet, float cameraX, float cameraY, float cameraZ) {
+        return isBackfacing(this.cones, meshlet * CONE_STRIDE, cameraX, cameraY, cameraZ);
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public int[] getVertices() {
+        return this.vertices;
+    }
+
+    public byte[] getTriangles() {
+        return this.triangles;
+    }
+
+    public int getVertexOffset(int meshlet) {
+        return this.vertexOffsets[meshlet];
+    }
+
+    public int getVertexCount(int meshlet) {
+        return this.vertexCounts[meshlet];
+    }
+
+    /*
+     * In triangles, for both the triangles array and the original index list
+     */
+    public int getTriangleOffset(int meshlet) {
+        return this.triangleOffsets[meshlet];
+    }
+
+    public int getTriangleCount(int meshlet) {
+        return this.triangleCounts[meshlet];
+    }
+
+    public float[] getSpheres() {
+        return this.spheres;
+    }
+
+    public float[] getCones() {
+        return this.cones;
+    }
+}
@@ -0,0 +1,211 @@
+package vulkan.tutorial.denoise;
+
+import vulkan.tutorial.software.GBuffer;
+import vulkan.tutorial.software.HdrImage;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Edge-avoiding a-trous wavelet filter (Dammertz et al. 2010) over the ray traced color, guided by
+ * the G-buffer of the first sample.
+ *
+ * Every pass applies the 5x5 B3 spline kernel with holes of 2^pass pixels. A tap is weighted down by
+ * the angle between the normals (dot^128), the difference of the hit distances and the difference
+ * of the luminances, with linear falloffs. The luminance falloff gets twice as strict every pass, the
+ * depth falloff twice as loose as the taps move apart. The first pass divides the color by the albedo
+ * so texture detail is not blurred, the last one multiplies it back.
+ *
+ * filter() is the reference of denoise.comp. Both do the same float operations in the same order
+ * (the shader marks them precise), so they only differ where the GPU rounds a division less
+ * accurately than IEEE 754.
+ */
+public class AtrousFilter {
+    public static final int PUSH_CONSTANT_SIZE = 6 * Integer.BYTES;
+
+    public static final int FLAG_DEMODULATE = 1;
+    public static final int FLAG_REMODULATE = 2;
+
+    public static final int DEFAULT_ITERATIONS = 5;
+    public static final float DEFAULT_COLOR_SIGMA = 1.0f;
+    public static final float DEFAULT_DEPTH_SIGMA = 1.0f;
+
+    private static final float MIN_ALBEDO = 1.0f / 256.0f;
+    private static final float[] KERNEL = {1.0f / 16.0f, 1.0f / 4.0f, 3.0f / 8.0f, 1.0f / 4.0f, 1.0f / 16.0f};
+    private static final int NORMAL_POWER_SQUARINGS = 7;
+
+    private final int iterations;
+    private final float colorScale;
+    private final float depthScale;
+
+    /*
+     * colorSigma / depthSigma: luminance and hit distance difference at which a tap of the first
+     * pass no longer counts
+     */
+    public AtrousFilter(int iterations, float colorSigma, float depthSigma) {
+        //pass 0 reads the color image and the last pass writes it, the passes between ping-pong
+        if (iterations < 2 || iterations > 16) {
+            throw new IllegalArgumentException("The filter needs 2 to 16 iterations, got " + iterations);
+        }
+
+        if (colorSigma <= 0.0f || depthSigma <= 0.0f) {
+            throw new IllegalArgumentException("Invalid filter sigmas " + colorSigma + " / " + depthSigma);
+        }
+
+        this.iterations = iterations;
+        this.colorScale = 1.0f / colorSigma;
+        this.depthScale = 1.0f / depthSigma;
+    }
+
+    public static AtrousFilter createDefault() {
+        return new AtrousFilter(DEFAULT_ITERATIONS, DEFAULT_COLOR_SIGMA, DEFAULT_DEPTH_SIGMA);
+    }
+
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    public int getStepWidth(int pass) {
+        return 1 << pass;
+    }
+
+    public float getColorScale(int pass) {
+        return this.colorScale * getStepWidth(pass);
+    }
+
+    public float getDepthScale(int pass) {
+        return this.depthScale / getStepWidth(pass);
+    }
+
+    public int getFlags(int pass) {
+        int flags = 0;
+
+        if (pass == 0) {
+            flags |= FLAG_DEMODULATE;
+        }
+
+        if (pass == this.iterations - 1) {
+            flags |= FLAG_REMODULATE;
+        }
+
+        return flags;
+    }
+
+    /*
+     * The Pass push constant of denoise.comp, width x height is the traced part of the images
+     */
+    public void writePass(int pass, int width, int height, ByteBuffer buffer) {
+        buffer.putInt(0, getStepWidth(pass));
+        buffer.putFloat(Integer.BYTES, getColorScale(pass));
+        buffer.putFloat(2 * Integer.BYTES, getDepthScale(pass));
+        buffer.putInt(3 * Integer.BYTES, getFlags(pass));
+        buffer.putInt(4 * Integer.BYTES, width);
+        buffer.putInt(5 * Integer.BYTES, height);
+    }
+
+    public HdrImage filter(HdrImage color, GBuffer gBuffer) {
+        if (gBuffer.getWidth() != color.getWidth() || gBuffer.getHeight() != color.getHeight()) {
+            throw new IllegalArgumentException("G-buffer " + gBuffer.getWidth() + "x" + gBuffer.getHeight()
+                    + " doesn't match the image " + color.getWidth() + "x" + color.getHeight());
+        }
+
+        HdrImage input = color;
+
+        for (int pass = 0; pass < this.iterations; pass++) {
+            HdrImage output = new HdrImage(color.getWidth(), color.getHeight());
+            filterPass(pass, input, output, gBuffer);
+            input = output;
+        }
+
+        return input;
+    }
+
+    private void filterPass(int pass, HdrImage input, HdrImage output, GBuffer gBuffer) {
+        final int width = input.getWidth();
+        final int height = input.getHeight();
+        final int stepWidth = getStepWidth(pass);
+        final float colorScale = getColorScale(pass);
+        final float depthScale = getDepthScale(pass);
+        final boolean demodulate = (getFlags(pass) & FLAG_DEMODULATE) != 0;
+        final boolean remodulate = (getFlags(pass) & FLAG_REMODULATE) != 0;
+        final HdrImage normalDepth = gBuffer.getNormalDepth();
+        final HdrImage albedo = gBuffer.getAlbedo();
+        final float[] center = new float[3];
+        final float[] tap = new float[3];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                loadColor(input, albedo, x, y, demodulate, center);
+
+                final float centerLuminance = luminance(center);
+                final float nx = normalDepth.get(x, y, 0);
+                final float ny = normalDepth.get(x, y, 1);
+                final float nz = normalDepth.get(x, y, 2);
+                final float depth = normalDepth.get(x, y, 3);
+
+                float sumR = 0.0f;
+                float sumG = 0.0f;
+                float sumB = 0.0f;
+                float weightSum = 0.0f;
+
+                for (int dy = -2; dy <= 2; dy++) {
+                    for (int dx = -2; dx <= 2; dx++) {
+                        final int tx = x + dx * stepWidth;
+                        final int ty = y + dy * stepWidth;
+
+                        if (tx < 0 || ty < 0 || tx >= width || ty >= height) {
+                            continue;
+                        }
+
+                        loadColor(input, albedo, tx, ty, demodulate, tap);
+
+                        float normalWeight = Math.max(nx * normalDepth.get(tx, ty, 0) + ny * normalDepth.get(tx, ty, 1) + nz * normalDepth.get(tx, ty, 2), 0.0f);
+                        for (int i = 0; i < NORMAL_POWER_SQUARINGS; i++) {
+                            normalWeight = normalWeight * normalWeight;
+                        }
+
+                        final float depthWeight = Math.max(1.0f - Math.abs(depth - normalDepth.get(tx, ty, 3)) * depthScale, 0.0f);
+                        final float colorWeight = Math.max(1.0f - Math.abs(centerLuminance - luminance(tap)) * colorScale, 0.0f);
+                        final float weight = KERNEL[dx + 2] * KERNEL[dy + 2] * normalWeight * depthWeight * colorWeight;
+
+                        sumR = sumR + tap[0] * weight;
+                        sumG = sumG + tap[1] * weight;
+                        sumB = sumB + tap[2] * weight;
+                        weightSum = weightSum + weight;
+                    }
+                }
+
+                float r = center[0];
+                float g = center[1];
+                float b = center[2];
+
+                if (weightSum > 0.0f) {
+                    r = sumR / weightSum;
+                    g = sumG / weightSum;
+                    b = sumB / weightSum;
+                }
+
+                if (remodulate) {
+                    r = r * Math.max(albedo.get(x, y, 0), MIN_ALBEDO);
+                    g = g * Math.max(albedo.get(x, y, 1), MIN_ALBEDO);
+                    b = b * Math.max(albedo.get(x, y, 2), MIN_ALBEDO);
+                }
+
+                output.setPixel(x, y, r, g, b, 1.0f);
+            }
+        }
+    }
+
+    private static void loadColor(HdrImage image, HdrImage albedo, int x, int y, boolean demodulate, float[] color) {
+        for (int channel = 0; channel < 3; channel++) {
+            color[channel] = image.get(x, y, channel);
+
+            if (demodulate) {
+                color[channel] = color[channel] / Math.max(albedo.get(x, y, channel), MIN_ALBEDO);
+            }
+        }
+    }
+
+    private static float luminance(float[] color) {
+        return 0.2126f * color[0] + 0.7152f * color[1] + 0.0722f * color[2];
+    }
+}
@@ -0,0 +1,265 @@
+package vulkan.tutorial.denoise;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.*;
+import vulkan.tutorial.shader.SPIRV;
+import vulkan.tutorial.shader.ShaderKind;
+import vulkan.tutorial.shader.ShaderSPIRVUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/*
+ * The AtrousFilter as one compute dispatch per iteration. Pass 0 reads the ray traced color image,
+ * the passes between ping-pong through two rgba32f images and the last pass writes the color image
+ * again, so the rest of the frame does not change. Every pass has its own descriptor set, so the
+ * dispatches are recorded once like the rest of the command buffer.
+ *
+ * Belongs to the swapchain: the images have its extent, after a resize setImages() points the
+ * descriptor sets at the new ones. With dynamic resolution only the traced top left part of them is
+ * filtered.
+ */
+public class DenoisePass {
+    private static final int WORKGROUP_SIZE = 16;
+    private static final int BINDING_COUNT = 4;
+
+    private final VkDevice vkDevice;
+    private final AtrousFilter filter;
+    private final long descriptorSetLayout;
+    private final long descriptorPool;
+    private final long[] descriptorSets;
+    private final long pipelineLayout;
+    private final long pipeline;
+
+    /*
+     * pingPongViews are two storage images with the size of colorView
+     */
+    public DenoisePass(VkDevice vkDevice, AtrousFilter filter, long colorView, long[] pingPongViews,
+                       long normalDepthView, long albedoView) {
+        this.vkDevice = vkDevice;
+        this.filter = filter;
+
+        this.descriptorSetLayout = createDescriptorSetLayout();
+        this.descriptorPool = createDescriptorPool();
+        this.descriptorSets = allocateDescriptorSets();
+        this.pipelineLayout = createPipelineLayout();
+        this.pipeline = createPipeline();
+
+        setImages(colorView, pingPongViews, normalDepthView, albedoView);
+    }
+
+    /*
+     * The descriptor sets must not be in use by a pending command buffer
+     */
+    public void setImages(long colorView, long[] pingPongViews, long normalDepthView, long albedoView) {
+        final int iterations = this.filter.getIterations();
+
+        for (int pass = 0; pass < iterations; pass++) {
+            final long input = pass == 0 ? colorView : pingPongViews[(pass - 1) % 2];
+            final long output = pass == iterations - 1 ? colorView : pingPongViews[pass % 2];
+
+            writeDescriptorSet(this.descriptorSets[pass], input, output, normalDepthView, albedoView);
+        }
+    }
+
+    private long createDescriptorSetLayout() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkDescriptorSetLayoutBinding.Buffer bindings = VkDescriptorSetLayoutBinding.calloc(BINDING_COUNT, stack);
+
+            //input, output, normal + depth, albedo
+            for (int binding = 0; binding < BINDING_COUNT; binding++) {
+                bindings.get(binding)
+                        .binding(binding)
+                        .descriptorCount(1)
+                        .descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE)
+                        .stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+            }
+
+            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.calloc(stack);
+            layoutInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_LAYOUT_CREATE_INFO);
+            layoutInfo.pBindings(bindings);
+
+            LongBuffer pDescriptorSetLayout = stack.mallocLong(1);
+
+            if (VK10.vkCreateDescriptorSetLayout(this.vkDevice, layoutInfo, null, pDescriptorSetLayout) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create denoise descriptor set layout");
+            }
+
+            return pDescriptorSetLayout.get(0);
+        }
+    }
+
+    private long createDescriptorPool() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(1, stack);
+            poolSizes.type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            poolSizes.descriptorCount(BINDING_COUNT * this.filter.getIterations());
+
+            VkDescriptorPoolCreateInfo poolCreateInfo = VkDescriptorPoolCreateInfo.calloc(stack);
+            poolCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_POOL_CREATE_INFO);
+            poolCreateInfo.pPoolSizes(poolSizes);
+            poolCreateInfo.maxSets(this.filter.getIterations());
+
+            LongBuffer pDescriptorPool = stack.mallocLong(1);
+
+            if (VK10.vkCreateDescriptorPool(this.vkDevice, poolCreateInfo, null, pDescriptorPool) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create denoise descriptor pool");
+            }
+
+            return pDescriptorPool.get(0);
+        }
+    }
+
+    private long[] allocateDescriptorSets() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            LongBuffer layouts = stack.mallocLong(this.filter.getIterations());
+            for (int i = 0; i < layouts.capacity(); i++) {
+                layouts.put(i, this.descriptorSetLayout);
+            }
+
+            VkDescriptorSetAllocateInfo allocateInfo = VkDescriptorSetAllocateInfo.calloc(stack);
+            allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_ALLOCATE_INFO);
+            allocateInfo.descriptorPool(this.descriptorPool);
+            allocateInfo.pSetLayouts(layouts);
+
+            long[] descriptorSets = new long[this.filter.getIterations()];
+
+            if (VK10.vkAllocateDescriptorSets(this.vkDevice, allocateInfo, descriptorSets) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to allocate denoise descriptor sets");
+            }
+
+            return descriptorSets;
+        }
+    }
+
+    private void writeDescriptorSet(long descriptorSet, long input, long output, long normalDepth, long albedo) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            long[] views = {input, output, normalDepth, albedo};
+
+            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.calloc(BINDING_COUNT, stack);
+
+            for (int binding = 0; binding < BINDING_COUNT; binding++) {
+                VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.calloc(1, stack);
+                imageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+                imageInfo.imageView(views[binding]);
+
+                VkWriteDescriptorSet descriptorWrite = descriptorWrites.get(binding);
+                descriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+                descriptorWrite.dstSet(descriptorSet);
+                descriptorWrite.dstBinding(binding);
+                descriptorWrite.dstArrayElement(0);
+                descriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+                descriptorWrite.descriptorCount(1);
+                descriptorWrite.pImageInfo(imageInfo);
+            }
+
+            VK10.vkUpdateDescriptorSets(this.vkDevice, descriptorWrites, null);
+        }
+    }
+
+    private long createPipelineLayout() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPushConstantRange.Buffer pushConstant = VkPushConstantRange.calloc(1, stack);
+            pushConstant.stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+            pushConstant.offset(0);
+            pushConstant.size(AtrousFilter.PUSH_CONSTANT_SIZE);
+
+            VkPipelineLayoutCreateInfo pipelineLayoutCreateInfo = VkPipelineLayoutCreateInfo.calloc(stack);
+            pipelineLayoutCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_LAYOUT_CREATE_INFO);
+            pipelineLayoutCreateInfo.pSetLayouts(stack.longs(this.descriptorSetLayout));
+            pipelineLayoutCreateInfo.pPushConstantRanges(pushConstant);
+
+            LongBuffer pPipelineLayout = stack.mallocLong(1);
+
+            if (VK10.vkCreatePipelineLayout(this.vkDevice, pipelineLayoutCreateInfo, null, pPipelineLayout) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create denoise pipeline layout");
+            }
+
+            return pPipelineLayout.get(0);
+        }
+    }
+
+    private long createPipeline() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            SPIRV shader = ShaderSPIRVUtils.compileShaderFile("shaders/denoise.comp", ShaderKind.COMPUTE_SHADER);
+
+            VkShaderModuleCreateInfo moduleCreateInfo = VkShaderModuleCreateInfo.calloc(stack);
+            moduleCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_SHADER_MODULE_CREATE_INFO);
+            moduleCreateInfo.pCode(shader.byteCode());
+
+            LongBuffer pShaderModule = stack.mallocLong(1);
+
+            if (VK10.vkCreateShaderModule(this.vkDevice, moduleCreateInfo, null, pShaderModule) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create denoise shader module");
+            }
+
+            VkComputePipelineCreateInfo.Buffer pipelineInfo = VkComputePipelineCreateInfo.calloc(1, stack);
+            pipelineInfo.sType(VK10.VK_STRUCTURE_TYPE_COMPUTE_PIPELINE_CREATE_INFO);
+            pipelineInfo.stage()
+                    .sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO)
+                    .stage(VK10.VK_SHADER_STAGE_COMPUTE_BIT)
+                    .module(pShaderModule.get(0))
+                    .pName(stack.UTF8("main"));
+            pipelineInfo.layout(this.pipelineLayout);
+
+            LongBuffer pPipeline = stack.mallocLong(1);
+            final int result = VK10.vkCreateComputePipelines(this.vkDevice, VK10.VK_NULL_HANDLE, pipelineInfo, null, pPipeline);
+
+            VK10.vkDestroyShaderModule(this.vkDevice, pShaderModule.get(0), null);
+            shader.free();
+
+            if (result != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create denoise pipeline");
+            }
+
+            return pPipeline.get(0);
+        }
+    }
+
+    /*
+     * Records all passes. Waits for the ray tracing shaders that wrote the color image and the
+     * G-buffer, the TonemapPass waits for the last pass. width x height is the traced size.
+     */
+    public void cmdDenoise(VkCommandBuffer commandBuffer, int width, int height, MemoryStack stack) {
+        cmdBarrier(commandBuffer, KHRRayTracingPipeline.VK_PIPELINE_STAGE_RAY_TRACING_SHADER_BIT_KHR, VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
+                VK10.VK_ACCESS_SHADER_READ_BIT, stack);
+
+        VK10.vkCmdBindPipeline(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, this.pipeline);
+
+        ByteBuffer pushConstant = stack.malloc(AtrousFilter.PUSH_CONSTANT_SIZE);
+        final int groupsX = (width + WORKGROUP_SIZE - 1) / WORKGROUP_SIZE;
+        final int groupsY = (height + WORKGROUP_SIZE - 1) / WORKGROUP_SIZE;
+
+        for (int pass = 0; pass < this.filter.getIterations(); pass++) {
+            if (pass > 0) {
+                //the previous pass wrote this pass's input and read the image this pass writes
+                cmdBarrier(commandBuffer, VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT, VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
+                        VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT, stack);
+            }
+
+            VK10.vkCmdBindDescriptorSets(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, this.pipelineLayout, 0,
+                    stack.longs(this.descriptorSets[pass]), null);
+
+            this.filter.writePass(pass, width, height, pushConstant);
+            VK10.vkCmdPushConstants(commandBuffer, this.pipelineLayout, VK10.VK_SHADER_STAGE_COMPUTE_BIT, 0, pushConstant);
+
+            VK10.vkCmdDispatch(commandBuffer, groupsX, groupsY, 1);
+        }
+    }
+
+    private static void cmdBarrier(VkCommandBuffer commandBuffer, int srcStage, int dstStage, int dstAccess, MemoryStack stack) {
+        VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
+        barrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+        barrier.srcAccessMask(VK10.VK_ACCESS_SHADER_WRITE_BIT);
+        barrier.dstAccessMask(dstAccess);
+
+        VK10.vkCmdPipelineBarrier(commandBuffer, srcStage, dstStage, 0, barrier, null, null);
+    }
+
+    public void destroy() {
+        VK10.vkDestroyPipeline(this.vkDevice, this.pipeline, null);
+        VK10.vkDestroyPipelineLayout(this.vkDevice, this.pipelineLayout, null);
+        VK10.vkDestroyDescriptorPool(this.vkDevice, this.descriptorPool, null);
+        VK10.vkDestroyDescriptorSetLayout(this.vkDevice, this.descriptorSetLayout, null);
+    }
+}
@@ -1,17 +1,32 @@
 package vulkan.tutorial.gameobject;
 
+import vulkan.tutorial.culling.MeshClusters;
+import vulkan.tutorial.lod.LodChain;
 import vulkan.tutorial.math.Vertex;
 import vulkan.tutorial.mesh.Model;
 
 public class GameObject {
     private final Model model;
     private final Vertex[] vertices;
-    private final int[] indices;
+    private final LodChain lods;
+    private final MeshClusters[] clusters;
+
+    public GameObject(Model model, Vertex[] vertices, int[] indices, MeshClusters clusters) {
+        this(model, vertices, LodChain.of(indices), new MeshClusters[]{clusters});
+    }
+
+    /*
+     * clusters: the ones of every level of lods
+     */
+    public GameObject(Model model, Vertex[] vertices, LodChain lods, MeshClusters[] clusters) {
+        if (clusters.length != lods.getLevelCount()) {
+            throw new IllegalArgumentException(lods.getLevelCount() + " LOD levels need as many clusters, got " + clusters.length);
+        }
 
-    public GameObject(Model model, Vertex[] vertices, int[] indices) {
         this.model = model;
         this.vertices = vertices;
-        this.indices = indices;
+        this.lods = lods;
+        this.clusters = clusters;
     }
 
     public Model getModel() {
@@ -22,7 +37,28 @@ public class GameObject {
         return this.vertices;
     }
 
+    /*
+     * The full detail level
+     */
     public int[] getIndices() {
-        return this.indices;
+        return this.lods.getIndices(0);
+    }
+
+    /*
+     * Draw ranges and bounds for culling, built once at load time
+     */
+    public MeshClusters getClusters() {
+        return this.clusters[0];
+    }
+
+    public MeshClusters getClusters(int level) {
+        return this.clusters[level];
+    }
+
+    /*
+     * All levels share the vertices, level 0 are getIndices()
+     */
+    public LodChain getLods() {
+        return this.lods;
     }
 }
@@ -4,12 +4,17 @@ import org.joml.Vector3f;
 import org.joml.Vector3fc;
 import org.lwjgl.assimp.Assimp;
 import vulkan.tutorial.VulkanAppEntryPoint;
+import vulkan.tutorial.culling.MeshClusters;
+import vulkan.tutorial.lod.LodChain;
+import vulkan.tutorial.lod.LodChainBuilder;
 import vulkan.tutorial.math.Vertex;
 import vulkan.tutorial.mesh.Model;
 import vulkan.tutorial.mesh.ModelLoader;
 
 import java.io.File;
 import java.net.URL;
+import java.util.List;
+import java.util.stream.Collectors;
 
 public class GameObjectLoader {
 
@@ -28,6 +33,19 @@ public class GameObjectLoader {
         File modelFile = new File(url.getFile());
         Model model = ModelLoader.loadModel(modelFile, Assimp.aiProcess_FlipUVs | Assimp.aiProcess_DropNormals);
 
+        return toGameObject(model);
+    }
+
+    /*
+     * Converts the models in parallel, the LOD chains and meshlets of big meshes take a while to build
+     */
+    public static List<GameObject> toGameObjects(List<Model> models) {
+        return models.parallelStream()
+                .map(GameObjectLoader::toGameObject)
+                .collect(Collectors.toList());
+    }
+
+    public static GameObject toGameObject(Model model) {
         final int vertexCount = model.getPositions().size();
 
         Vertex[] vertices = new Vertex[vertexCount];
@@ -48,6 +66,13 @@ public class GameObjectLoader {
             indices[i] = model.getIndices().get(i);
         }
 
-        return new GameObject(null, vertices, indices);
+        final LodChain lods = new LodChainBuilder().build(vertices, indices);
+
+        MeshClusters[] clusters = new MeshClusters[lods.getLevelCount()];
+        for (int level = 0; level < clusters.length; level++) {
+            clusters[level] = MeshClusters.build(vertices, lods.getIndices(level));
+        }
+
+        return new GameObject(null, vertices, lods, clusters);
     }
 }
@@ -0,0 +1,234 @@
+package vulkan.tutorial.gameobject;
+
+import vulkan.tutorial.culling.BoundsHierarchy;
+import vulkan.tutorial.culling.MeshClusters;
+import vulkan.tutorial.culling.Meshlets;
+import vulkan.tutorial.math.Vertex;
+import vulkan.tutorial.scene.Scene;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * All meshes of the raster path in one vertex and one index buffer. Indices stay relative to their
+ * mesh, a draw adds the vertexOffset of the mesh. Mesh ids are the blasIds of the scene instances.
+ * The LOD levels of a mesh share its vertices and append their own indices and clusters.
+ *
+ * Besides the geometry it writes the tables cull.comp reads (std430):
+ *
+ *  Mesh     vec3 boundsMin, uint firstCluster, vec3 boundsMax, uint clusterCount, int vertexOffset,
+ *           float lodError, uint coarserLod, uint pad
+ *  Cluster  vec3 boundsMin, uint firstIndex, vec3 boundsMax, uint indexCount,
+ *           vec3 coneApex, float coneCutoff, vec3 coneAxis, uint pad
+ *
+ * The mesh table has one entry per LOD level: entry id is level 0 of mesh id, the coarser levels
+ * of all meshes follow after the last mesh (see getEntry()). coarserLod is the entry of the next
+ * level, the entry itself for the last one. firstIndex of a cluster counts from the start of the
+ * shared index buffer, the cone is the one of its meshlet (see Meshlets).
+ */
+public class MeshPool {
+    public static final int MESH_SIZE = 12 * Integer.BYTES;
+    public static final int CLUSTER_SIZE = 16 * Integer.BYTES;
+
+    private final List<GameObject> meshes = new ArrayList<>();
+    private int[] vertexOffsets = new int[0];
+    private int[][] firstIndices = new int[0][];
+    private int[][] firstClusters = new int[0][];
+    private int[] firstCoarserEntries = new int[0];
+    private int vertexCount;
+    private int indexCount;
+    private int clusterCount;
+    private int coarserEntryCount;
+
+    /*
+     * Returns the mesh id
+     */
+    public int add(GameObject mesh) {
+        final int id = this.meshes.size();
+
+        this.vertexOffsets = Arrays.copyOf(this.vertexOffsets, id + 1);
+        this.firstIndices = Arrays.copyOf(this.firstIndices, id + 1);
+        this.firstClusters = Arrays.copyOf(this.firstClusters, id + 1);
+
+        this.firstCoarserEntries = Arrays.copyOf(this.firstCoarserEntries, id + 1);
+
+        final int levelCount = mesh.getLods().getLevelCount();
+
+        this.vertexOffsets[id] = this.vertexCount;
+        this.firstIndices[id] = new int[levelCount];
+        this.firstClusters[id] = new int[levelCount];
+        this.firstCoarserEntries[id] = this.coarserEntryCount;
+
+        for (int level = 0; level < levelCount; level++) {
+            this.firstIndices[id][level] = this.indexCount;
+            this.firstClusters[id][level] = this.clusterCount;
+            this.indexCount += mesh.getLods().getIndices(level).length;
+            this.clusterCount += mesh.getClusters(level).getCount();
+        }
+
+        this.vertexCount += mesh.getVertices().length;
+        this.coarserEntryCount += levelCount - 1;
+        this.meshes.add(mesh);
+
+        return id;
+    }
+
+    public Vertex[] getVertices() {
+        Vertex[] vertices = new Vertex[this.vertexCount];
+
+        for (int id = 0; id < this.meshes.size(); id++) {
+            final Vertex[] meshVertices = this.meshes.get(id).getVertices();
+            System.arraycopy(meshVertices, 0, vertices, this.vertexOffsets[id], meshVertices.length);
+        }
+
+        return vertices;
+    }
+
+    public int[] getIndices() {
+        int[] indices = new int[this.indexCount];
+
+        for (int id = 0; id < this.meshes.size(); id++) {
+            final GameObject mesh = this.meshes.get(id);
+
+            for (int level = 0; level < mesh.getLods().getLevelCount(); level++) {
+                final int[] levelIndices = mesh.getLods().getIndices(level);
+                System.arraycopy(levelIndices, 0, indices, this.firstIndices[id][level], levelIndices.length);
+            }
+        }
+
+        return indices;
+    }
+
+    public void writeMeshes(ByteBuffer buffer) {
+        for (int id = 0; id < this.meshes.size(); id++) {
+            final GameObject mesh = this.meshes.get(id);
+            final int levelCount = mesh.getLods().getLevelCount();
+
+            for (int level = 0; level < levelCount; level++) {
+                final int offset = getEntry(id, level) * MESH_SIZE;
+                final MeshClusters clusters = mesh.getClusters(level);
+
+                writeBounds(buffer, offset, clusters.getObjectBounds(), 0);
+                buffer.putInt(offset + 3 * Integer.BYTES, this.firstClusters[id][level]);
+                buffer.putInt(offset + 7 * Integer.BYTES, clusters.getCount());
+                buffer.putInt(offset + 8 * Integer.BYTES, this.vertexOffsets[id]);
+                buffer.putFloat(offset + 9 * Integer.BYTES, mesh.getLods().getError(level));
+                buffer.putInt(offset + 10 * Integer.BYTES, getEntry(id, Math.min(level + 1, levelCount - 1)));
+            }
+        }
+    }
+
+    public void writeClusters(ByteBuffer buffer) {
+        for (int id = 0; id < this.meshes.size(); id++) {
+            final GameObject mesh = this.meshes.get(id);
+
+            for (int level = 0; level < mesh.getLods().getLevelCount(); level++) {
+                final MeshClusters clusters = mesh.getClusters(level);
+
+                for (int cluster = 0; cluster < clusters.getCount(); cluster++) {
+                    final int offset = (this.firstClusters[id][level] + cluster) * CLUSTER_SIZE;
+
+                    writeBounds(buffer, offset, clusters.getBounds(), cluster * BoundsHierarchy.BOUNDS_STRIDE);
+                    buffer.putInt(offset + 3 * Integer.BYTES, this.firstIndices[id][level] + clusters.getFirstIndex(cluster));
+                    buffer.putInt(offset + 7 * Integer.BYTES, clusters.getIndexCount(cluster));
+
+                    final float[] cones = clusters.getMeshlets().getCones();
+                    for (int i = 0; i < Meshlets.CONE_STRIDE; i++) {
+                        buffer.putFloat(offset + (8 + i) * Float.BYTES, cones[cluster * Meshlets.CONE_STRIDE + i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Index of a LOD level in the mesh table
+     */
+    public int getEntry(int id, int level) {
+        if (level < 0 || level >= this.meshes.get(id).getLods().getLevelCount()) {
+            throw new IndexOutOfBoundsException("Mesh " + id + " has no LOD level " + level);
+        }
+
+        return level == 0 ? id : this.meshes.size() + this.firstCoarserEntries[id] + level - 1;
+    }
+
+    /*
+     * Entries of the mesh table, one per LOD level of every mesh
+     */
+    public int getEntryCount() {
+        return this.meshes.size() + this.coarserEntryCount;
+    }
+
+    private static void writeBounds(ByteBuffer buffer, int offset, float[] bounds, int boundsOffset) {
+        for (int axis = 0; axis < 3; axis++) {
+            buffer.putFloat(offset + axis * Float.BYTES, bounds[boundsOffset + axis]);
+            buffer.putFloat(offset + (4 + axis) * Float.BYTES, bounds[boundsOffset + 3 + axis]);
+        }
+    }
+
+    /*
+     * Draws if nothing of the scene is culled, whatever level is selected, the size of the indirect buffers
+     */
+    public int getMaxDrawCount(Scene scene) {
+        long drawCount = 0;
+
+        for (int i = 0; i < scene.getInstanceCount(); i++) {
+            final GameObject mesh = getMesh(scene.getInstance(i).getBlasId());
+            int clusters = 0;
+
+            for (int level = 0; level < mesh.getLods().getLevelCount(); level++) {
+                clusters = Math.max(clusters, mesh.getClusters(level).getCount());
+            }
+
+            drawCount += clusters;
+        }
+
+        if (drawCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Scene needs " + drawCount + " draws");
+        }
+
+        return (int) drawCount;
+    }
+
+    public GameObject getMesh(int id) {
+        return this.meshes.get(id);
+    }
+
+    public int getMeshCount() {
+        return this.meshes.size();
+    }
+
+    public int getVertexOffset(int id) {
+        return this.vertexOffsets[id];
+    }
+
+    public int getFirstIndex(int id) {
+        return getFirstIndex(id, 0);
+    }
+
+    public int getFirstIndex(int id, int level) {
+        return this.firstIndices[id][level];
+    }
+
+    public int getFirstCluster(int id) {
+        return getFirstCluster(id, 0);
+    }
+
+    public int getFirstCluster(int id, int level) {
+        return this.firstClusters[id][level];
+    }
+
+    public int getVertexCount() {
+        return this.vertexCount;
+    }
+
+    public int getIndexCount() {
+        return this.indexCount;
+    }
+
+    public int getClusterCount() {
+        return this.clusterCount;
+    }
+}
@@ -0,0 +1,19 @@
+package vulkan.tutorial.headless;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Receives the frames read back in headless mode.
+ *
+ * The pixels are tightly packed RGBA8 rows, top row first, and point straight into the persistently
+ * mapped readback buffer: they are only valid during the call and are overwritten by a later frame.
+ */
+public interface FrameSink extends AutoCloseable {
+
+    void accept(long frameNumber, ByteBuffer pixels, int width, int height);
+
+    @Override
+    default void close() {
+        //Nothing to release by default
+    }
+}
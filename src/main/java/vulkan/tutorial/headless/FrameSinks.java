@@ -0,0 +1,60 @@
+package vulkan.tutorial.headless;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class FrameSinks {
+
+    private FrameSinks() {
+        //Util class
+    }
+
+    /*
+     * png:<directory>, raw:<directory> or pipe:<path>
+     */
+    public static FrameSink fromSpec(String spec) {
+        final int separator = spec.indexOf(':');
+
+        if (separator < 0) {
+            throw new IllegalArgumentException("Frame sink must look like <png|raw|pipe>:<path>, got " + spec);
+        }
+
+        final Path path = Paths.get(spec.substring(separator + 1));
+
+        switch (spec.substring(0, separator)) {
+            case "png":
+                return new PngFrameSink(path);
+            case "raw":
+                return new RawFrameSink(path);
+            case "pipe":
+                return new PipeFrameSink(path);
+            default:
+                throw new IllegalArgumentException("Unknown frame sink: " + spec);
+        }
+    }
+
+    static String fileName(long frameNumber, String extension) {
+        return String.format("frame_%06d.%s", frameNumber, extension);
+    }
+
+    static Path createDirectory(Path directory) {
+        try {
+            return Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create directory " + directory, e);
+        }
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer pixels) throws IOException {
+        ByteBuffer data = pixels.duplicate();
+
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+}
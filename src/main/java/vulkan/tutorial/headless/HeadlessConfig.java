@@ -0,0 +1,35 @@
+package vulkan.tutorial.headless;
+
+public class HeadlessConfig {
+    private final int width;
+    private final int height;
+    private final long frameCount;
+    private final FrameSink frameSink;
+
+    public HeadlessConfig(int width, int height, long frameCount, FrameSink frameSink) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid frame size " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.frameCount = frameCount;
+        this.frameSink = frameSink;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public long getFrameCount() {
+        return this.frameCount;
+    }
+
+    public FrameSink getFrameSink() {
+        return this.frameSink;
+    }
+}
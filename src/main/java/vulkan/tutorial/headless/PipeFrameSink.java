@@ -0,0 +1,45 @@
+package vulkan.tutorial.headless;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/*
+ * Streams all frames back to back into a named pipe (or any other file), e.g. for
+ * ffmpeg -f rawvideo -pixel_format rgba -video_size <width>x<height> -i <pipe> out.mp4
+ */
+public class PipeFrameSink implements FrameSink {
+    private final Path path;
+    private final FileChannel channel;
+
+    public PipeFrameSink(Path path) {
+        this.path = path;
+
+        try {
+            this.channel = new FileOutputStream(path.toFile()).getChannel();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open pipe " + path, e);
+        }
+    }
+
+    @Override
+    public void accept(long frameNumber, ByteBuffer pixels, int width, int height) {
+        try {
+            FrameSinks.writeFully(this.channel, pixels);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write frame " + frameNumber + " into " + this.path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close pipe " + this.path, e);
+        }
+    }
+}
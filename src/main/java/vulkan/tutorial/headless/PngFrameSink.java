@@ -0,0 +1,23 @@
+package vulkan.tutorial.headless;
+
+import org.lwjgl.stb.STBImageWrite;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+public class PngFrameSink implements FrameSink {
+    private final Path directory;
+
+    public PngFrameSink(Path directory) {
+        this.directory = FrameSinks.createDirectory(directory);
+    }
+
+    @Override
+    public void accept(long frameNumber, ByteBuffer pixels, int width, int height) {
+        Path file = this.directory.resolve(FrameSinks.fileName(frameNumber, "png"));
+
+        if (!STBImageWrite.stbi_write_png(file.toString(), width, height, 4, pixels, width * 4)) {
+            throw new RuntimeException("Failed to write frame " + file);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package vulkan.tutorial.headless;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Writes every frame unmodified as <frame>.rgba, without any header.
+ */
+public class RawFrameSink implements FrameSink {
+    private final Path directory;
+
+    public RawFrameSink(Path directory) {
+        this.directory = FrameSinks.createDirectory(directory);
+    }
+
+    @Override
+    public void accept(long frameNumber, ByteBuffer pixels, int width, int height) {
+        Path file = this.directory.resolve(FrameSinks.fileName(frameNumber, "rgba"));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            FrameSinks.writeFully(channel, pixels);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write frame " + file, e);
+        }
+    }
+}
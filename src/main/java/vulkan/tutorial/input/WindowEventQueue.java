@@ -0,0 +1,154 @@
+package vulkan.tutorial.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Hands the window events of the GLFW callbacks on the main thread to the render thread: a lock free
+ * bounded ring for exactly one producer and one consumer.
+ *
+ * The events are stored in primitive arrays, nothing is allocated per event. The producer writes a
+ * slot and then publishes it by moving the tail, the consumer reads up to the tail and then frees
+ * the slots by moving the head. Neither side ever waits for the other: when the ring is full the
+ * event is dropped and counted. Only events that can be lost go through the ring, the framebuffer
+ * size is kept by Window.
+ */
+public class WindowEventQueue {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public enum Type {
+        //first, second: GLFW key and action
+        KEY,
+        //first, second: GLFW mouse button and action
+        MOUSE_BUTTON
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        //nanos: System.nanoTime() when the event was offered
+        void handle(Type type, int first, int second, long nanos);
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private final int mask;
+    private final int[] types;
+    private final int[] firsts;
+    private final int[] seconds;
+    private final long[] nanos;
+    //next slot to read, written by the consumer only
+    private final AtomicLong head = new AtomicLong();
+    //next slot to write, written by the producer only
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    //the producer's last look at head, saves a read of the consumer's cache line per event
+    private long cachedHead;
+    private volatile Thread waiter;
+
+    public WindowEventQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /*
+     * capacity is rounded up to a power of two
+     */
+    public WindowEventQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + capacity);
+        }
+
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.types = new int[size];
+        this.firsts = new int[size];
+        this.seconds = new int[size];
+        this.nanos = new long[size];
+    }
+
+    /*
+     * Producer only. Returns false if the ring is full and the event was dropped.
+     */
+    public boolean offer(Type type, int first, int second) {
+        final long position = this.tail.get();
+
+        if (position - this.cachedHead > this.mask) {
+            this.cachedHead = this.head.get();
+
+            if (position - this.cachedHead > this.mask) {
+                this.dropped.incrementAndGet();
+                return false;
+            }
+        }
+
+        final int slot = (int) (position & this.mask);
+        this.types[slot] = type.ordinal();
+        this.firsts[slot] = first;
+        this.seconds[slot] = second;
+        this.nanos[slot] = System.nanoTime();
+
+        //a full barrier, so a consumer that is about to park either sees the event or is unparked
+        this.tail.set(position + 1);
+
+        final Thread parked = this.waiter;
+
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+
+        return true;
+    }
+
+    /*
+     * Consumer only. Hands every published event to handler in order, returns their number.
+     */
+    public int drain(Handler handler) {
+        final long start = this.head.get();
+        final long end = this.tail.get();
+
+        for (long position = start; position < end; position++) {
+            final int slot = (int) (position & this.mask);
+            handler.handle(TYPES[this.types[slot]], this.firsts[slot], this.seconds[slot], this.nanos[slot]);
+        }
+
+        //the slots are free for the producer from here on
+        this.head.lazySet(end);
+
+        return (int) (end - start);
+    }
+
+    /*
+     * Any thread. Wakes up a consumer in await() for a change that didn't go through the ring.
+     */
+    public void wakeUp() {
+        final Thread parked = this.waiter;
+
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    /*
+     * Consumer only. Blocks until an event is published, wakeUp() is called or timeoutNanos passed.
+     */
+    public void await(long timeoutNanos) {
+        this.waiter = Thread.currentThread();
+
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+
+        this.waiter = null;
+    }
+
+    public boolean isEmpty() {
+        return this.head.get() == this.tail.get();
+    }
+
+    public int getCapacity() {
+        return this.mask + 1;
+    }
+
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+}
@@ -0,0 +1,314 @@
+package vulkan.tutorial.jobs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * The jobs of one frame and what they wait for, run() executes all of them once.
+ *
+ * A job starts as soon as its dependencies have finished, jobs that don't depend on each other run
+ * at the same time on the workers of the JobSystem. CALLER jobs always run on the thread calling
+ * run(), that is where GLFW and the queue submissions have to stay. Dependencies have to be added
+ * before the job, so the order of add() is a valid order to run the graph in: the single threaded
+ * JobSystem runs exactly that order.
+ *
+ * If a job throws, the jobs not started yet are skipped and run() rethrows once the frame is over.
+ * Every job is timed, start relative to the start of run() and duration, for the last frame and
+ * summed up since resetTimings(). Nothing is allocated per frame.
+ */
+public class FrameGraph {
+    public static final long NOT_RUN = -1L;
+
+    public enum Affinity {
+        //the thread calling run()
+        CALLER,
+        ANY
+    }
+
+    private static final int FRAME_DONE = -1;
+
+    private final JobSystem jobSystem;
+    private final List<String> names = new ArrayList<>();
+    private final List<Affinity> affinities = new ArrayList<>();
+    private final List<Runnable> works = new ArrayList<>();
+    private final List<int[]> dependencies = new ArrayList<>();
+
+    //built on the first run()
+    private int[][] dependents;
+    private JobTask[] tasks;
+    private AtomicIntegerArray remainingDependencies;
+    private BlockingQueue<Integer> callerQueue;
+
+    private final AtomicInteger remainingJobs = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile int failedJob = -1;
+    private long frameStart;
+    private long[] startNanos = new long[0];
+    private long[] durationNanos = new long[0];
+    private long[] totalNanos = new long[0];
+    private long frameNanos = NOT_RUN;
+    private long frameCount;
+
+    public FrameGraph(JobSystem jobSystem) {
+        this.jobSystem = jobSystem;
+    }
+
+    /*
+     * Returns the id of the job, dependencies are ids returned before
+     */
+    public int add(String name, Affinity affinity, Runnable work, int... dependencies) {
+        final int job = this.names.size();
+
+        for (int dependency : dependencies) {
+            if (dependency < 0 || dependency >= job) {
+                throw new IllegalArgumentException("Job " + name + " depends on unknown job " + dependency);
+            }
+        }
+
+        this.names.add(name);
+        this.affinities.add(affinity);
+        this.works.add(work);
+        this.dependencies.add(dependencies.clone());
+        this.dependents = null;
+
+        return job;
+    }
+
+    public int getJobCount() {
+        return this.names.size();
+    }
+
+    public String getName(int job) {
+        return this.names.get(job);
+    }
+
+    public void run() {
+        if (this.dependents == null) {
+            build();
+        }
+
+        final int jobCount = this.names.size();
+
+        Arrays.fill(this.startNanos, NOT_RUN);
+        Arrays.fill(this.durationNanos, NOT_RUN);
+        this.failure.set(null);
+        this.failedJob = -1;
+        this.frameStart = System.nanoTime();
+
+        if (this.jobSystem.isSingleThreaded()) {
+            for (int job = 0; job < jobCount; job++) {
+                execute(job);
+            }
+        } else {
+            runParallel(jobCount);
+        }
+
+        this.frameNanos = System.nanoTime() - this.frameStart;
+        this.frameCount++;
+
+        for (int job = 0; job < jobCount; job++) {
+            if (this.durationNanos[job] != NOT_RUN) {
+                this.totalNanos[job] += this.durationNanos[job];
+            }
+        }
+
+        final Throwable cause = this.failure.get();
+
+        if (cause != null) {
+            throw new RuntimeException("Failed to run frame job " + this.names.get(this.failedJob), cause);
+        }
+    }
+
+    private void runParallel(int jobCount) {
+        this.remainingJobs.set(jobCount);
+
+        for (int job = 0; job < jobCount; job++) {
+            this.remainingDependencies.set(job, this.dependencies.get(job).length);
+            this.tasks[job].reinitialize();
+        }
+
+        for (int job = 0; job < jobCount; job++) {
+            if (this.dependencies.get(job).length == 0) {
+                schedule(job);
+            }
+        }
+
+        try {
+            for (int job = this.callerQueue.take(); job != FRAME_DONE; job = this.callerQueue.take()) {
+                execute(job);
+                finish(job);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the frame jobs", e);
+        }
+
+        //the last worker may still be leaving its task, it can only be reinitialized once it's done
+        for (int job = 0; job < jobCount; job++) {
+            if (this.affinities.get(job) == Affinity.ANY) {
+                this.tasks[job].quietlyJoin();
+            }
+        }
+    }
+
+    private void build() {
+        final int jobCount = this.names.size();
+        final int[] dependentCounts = new int[jobCount];
+
+        for (int[] jobDependencies : this.dependencies) {
+            for (int dependency : jobDependencies) {
+                dependentCounts[dependency]++;
+            }
+        }
+
+        this.dependents = new int[jobCount][];
+
+        for (int job = 0; job < jobCount; job++) {
+            this.dependents[job] = new int[dependentCounts[job]];
+        }
+
+        Arrays.fill(dependentCounts, 0);
+
+        for (int job = 0; job < jobCount; job++) {
+            for (int dependency : this.dependencies.get(job)) {
+                this.dependents[dependency][dependentCounts[dependency]++] = job;
+            }
+        }
+
+        this.tasks = new JobTask[jobCount];
+
+        for (int job = 0; job < jobCount; job++) {
+            this.tasks[job] = new JobTask(job);
+        }
+
+        this.remainingDependencies = new AtomicIntegerArray(jobCount);
+        //every job and FRAME_DONE fit, offer() never fails
+        this.callerQueue = new ArrayBlockingQueue<>(jobCount + 1);
+        this.startNanos = Arrays.copyOf(this.startNanos, jobCount);
+        this.durationNanos = Arrays.copyOf(this.durationNanos, jobCount);
+        this.totalNanos = Arrays.copyOf(this.totalNanos, jobCount);
+    }
+
+    private void schedule(int job) {
+        if (this.affinities.get(job) == Affinity.CALLER) {
+            this.callerQueue.offer(job);
+        } else if (ForkJoinTask.getPool() == this.jobSystem.getPool()) {
+            //onto the deque of this worker, the others steal it if they are idle
+            this.tasks[job].fork();
+        } else {
+            this.jobSystem.getPool().execute(this.tasks[job]);
+        }
+    }
+
+    private void execute(int job) {
+        //skipped after a failure, its timings stay NOT_RUN
+        if (this.failure.get() != null) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+
+        try {
+            this.works.get(job).run();
+        } catch (Throwable t) {
+            if (this.failure.compareAndSet(null, t)) {
+                this.failedJob = job;
+            }
+        }
+
+        final long end = System.nanoTime();
+        this.startNanos[job] = start - this.frameStart;
+        this.durationNanos[job] = end - start;
+    }
+
+    private void finish(int job) {
+        for (int dependent : this.dependents[job]) {
+            if (this.remainingDependencies.decrementAndGet(dependent) == 0) {
+                schedule(dependent);
+            }
+        }
+
+        if (this.remainingJobs.decrementAndGet() == 0) {
+            this.callerQueue.offer(FRAME_DONE);
+        }
+    }
+
+    /*
+     * Of the last frame, relative to the start of run(), NOT_RUN if the job didn't run
+     */
+    public long getStartNanos(int job) {
+        return this.startNanos[job];
+    }
+
+    /*
+     * Of the last frame, NOT_RUN if the job didn't run
+     */
+    public long getDurationNanos(int job) {
+        return this.durationNanos[job];
+    }
+
+    /*
+     * Since resetTimings()
+     */
+    public long getAverageNanos(int job) {
+        return this.frameCount == 0 ? NOT_RUN : this.totalNanos[job] / this.frameCount;
+    }
+
+    /*
+     * Wall clock time of the last run()
+     */
+    public long getFrameNanos() {
+        return this.frameNanos;
+    }
+
+    public long getFrameCount() {
+        return this.frameCount;
+    }
+
+    public void resetTimings() {
+        Arrays.fill(this.totalNanos, 0L);
+        this.frameCount = 0;
+    }
+
+    /*
+     * Average milliseconds per job since resetTimings(), e.g. "input 0.01, sceneUpdate 0.52"
+     */
+    public String formatTimings() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int job = 0; job < this.names.size(); job++) {
+            if (job > 0) {
+                builder.append(", ");
+            }
+
+            final long nanos = job < this.totalNanos.length ? getAverageNanos(job) : NOT_RUN;
+            builder.append(this.names.get(job)).append(' ').append(nanos == NOT_RUN ? "-" : String.format("%.3f", nanos / 1e6));
+        }
+
+        return builder.toString();
+    }
+
+    private final class JobTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int job;
+
+        private JobTask(int job) {
+            this.job = job;
+        }
+
+        @Override
+        protected void compute() {
+            execute(this.job);
+            finish(this.job);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package vulkan.tutorial.jobs;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The worker threads the jobs of a FrameGraph run on: a work stealing ForkJoinPool, jobs a worker
+ * makes ready are pushed onto its own deque and idle workers steal from the others.
+ *
+ * singleThreaded() has no workers at all, every job then runs on the thread calling
+ * FrameGraph.run() in the order the jobs were added, so frames are reproducible.
+ */
+public class JobSystem implements AutoCloseable {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5L;
+
+    private final ForkJoinPool pool;
+
+    private JobSystem(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public static JobSystem singleThreaded() {
+        return new JobSystem(null);
+    }
+
+    /*
+     * threadCount 0 is singleThreaded()
+     */
+    public static JobSystem create(int threadCount) {
+        if (threadCount < 0) {
+            throw new IllegalArgumentException("Job thread count must not be negative, got " + threadCount);
+        }
+
+        if (threadCount == 0) {
+            return singleThreaded();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threadCount, JobSystem::newWorker, null, false);
+        return new JobSystem(pool);
+    }
+
+    /*
+     * One worker less than there are cores, the thread running the frame is busy as well
+     */
+    public static int getDefaultThreadCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("frame-job-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    public boolean isSingleThreaded() {
+        return this.pool == null;
+    }
+
+    /*
+     * null if single threaded
+     */
+    ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    public int getThreadCount() {
+        return this.pool == null ? 0 : this.pool.getParallelism();
+    }
+
+    @Override
+    public void close() {
+        if (this.pool == null) {
+            return;
+        }
+
+        this.pool.shutdown();
+
+        try {
+            this.pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return isSingleThreaded() ? "single threaded" : getThreadCount() + " threads";
+    }
+}
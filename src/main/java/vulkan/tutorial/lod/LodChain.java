@@ -0,0 +1,63 @@
+package vulkan.tutorial.lod;
+
+/*
+ * The levels of detail of one mesh, finest first. Every level is an index list into the same
+ * vertex array, its error is the largest distance (object space units) the surface moved to get
+ * there, 0 for the original level 0. Errors don't decrease along the chain.
+ */
+public class LodChain {
+
+    private final int[][] indices;
+    private final float[] errors;
+
+    public LodChain(int[][] indices, float[] errors) {
+        if (indices.length == 0 || indices.length != errors.length) {
+            throw new IllegalArgumentException("A LOD chain needs one error per level, got " + indices.length + " levels and " + errors.length + " errors");
+        }
+
+        this.indices = indices;
+        this.errors = errors;
+    }
+
+    /*
+     * Just the original mesh
+     */
+    public static LodChain of(int[] indices) {
+        return new LodChain(new int[][]{indices}, new float[]{0.0f});
+    }
+
+    public int getLevelCount() {
+        return this.indices.length;
+    }
+
+    public int[] getIndices(int level) {
+        return this.indices[level];
+    }
+
+    public int getTriangleCount(int level) {
+        return this.indices[level].length / 3;
+    }
+
+    public float getError(int level) {
+        return this.errors[level];
+    }
+
+    public float[] getErrors() {
+        return this.errors;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int level = 0; level < getLevelCount(); level++) {
+            if (level > 0) {
+                builder.append(", ");
+            }
+
+            builder.append(String.format("LOD%d %d triangles (error %.5f)", level, getTriangleCount(level), getError(level)));
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package vulkan.tutorial.lod;
+
+import vulkan.tutorial.math.Vertex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Builds a LOD chain with one QuadricSimplifier per mesh. Level i + 1 aims for triangleRatios[i]
+ * of the original triangles but stops early once a collapse would move the surface by more than
+ * maxErrors[i] times the radius of the mesh bounds, so flat meshes lose a lot and detailed ones
+ * keep what they need.
+ *
+ * A level that removes less than MIN_REDUCTION of the triangles of the level before isn't worth
+ * its memory and ends the chain, which happens when the locked seams and borders are all that is
+ * left.
+ *
+ * A builder has no state, one can be shared by threads building different meshes.
+ */
+public class LodChainBuilder {
+    public static final float[] DEFAULT_TRIANGLE_RATIOS = {0.5f, 0.25f, 0.125f, 0.0625f};
+    public static final float[] DEFAULT_MAX_ERRORS = {0.002f, 0.005f, 0.01f, 0.02f};
+
+    private static final float MIN_REDUCTION = 0.1f;
+
+    private final float[] triangleRatios;
+    private final float[] maxErrors;
+
+    public LodChainBuilder() {
+        this(DEFAULT_TRIANGLE_RATIOS, DEFAULT_MAX_ERRORS);
+    }
+
+    /*
+     * One ratio and relative error per level after the original, both increasing
+     */
+    public LodChainBuilder(float[] triangleRatios, float[] maxErrors) {
+        if (triangleRatios.length != maxErrors.length) {
+            throw new IllegalArgumentException("Every level needs a triangle ratio and an error, got " + triangleRatios.length + " ratios and " + maxErrors.length + " errors");
+        }
+
+        for (int i = 0; i < triangleRatios.length; i++) {
+            if (triangleRatios[i] <= 0.0f || triangleRatios[i] >= 1.0f || (i > 0 && triangleRatios[i] >= triangleRatios[i - 1])) {
+                throw new IllegalArgumentException("Triangle ratios must decrease within (0, 1), got " + triangleRatios[i] + " for level " + (i + 1));
+            }
+
+            if (maxErrors[i] <= 0.0f || (i > 0 && maxErrors[i] < maxErrors[i - 1])) {
+                throw new IllegalArgumentException("Errors must be positive and not decrease, got " + maxErrors[i] + " for level " + (i + 1));
+            }
+        }
+
+        this.triangleRatios = triangleRatios.clone();
+        this.maxErrors = maxErrors.clone();
+    }
+
+    /*
+     * Vertices at the same position with different texture coordinates are seams
+     */
+    public LodChain build(Vertex[] vertices, int[] indices) {
+        float[] positions = new float[vertices.length * 3];
+        float[] texCoords = new float[vertices.length * 2];
+
+        for (int i = 0; i < vertices.length; i++) {
+            positions[i * 3] = vertices[i].getPos().x();
+            positions[i * 3 + 1] = vertices[i].getPos().y();
+            positions[i * 3 + 2] = vertices[i].getPos().z();
+            texCoords[i * 2] = vertices[i].getTexCoords().x();
+            texCoords[i * 2 + 1] = vertices[i].getTexCoords().y();
+        }
+
+        return build(positions, texCoords, 2, indices);
+    }
+
+    /*
+     * positions: x, y, z per vertex, attributes: see QuadricSimplifier
+     */
+    public LodChain build(float[] positions, float[] attributes, int attributeStride, int[] indices) {
+        final QuadricSimplifier simplifier = new QuadricSimplifier(positions, attributes, attributeStride, indices);
+        final float radius = getRadius(positions, indices);
+
+        List<int[]> levels = new ArrayList<>();
+        List<Float> errors = new ArrayList<>();
+        levels.add(indices);
+        errors.add(0.0f);
+
+        int previousIndexCount = indices.length;
+
+        for (int level = 0; level < this.triangleRatios.length; level++) {
+            final int targetIndexCount = (int) (indices.length / 3 * this.triangleRatios[level]) * 3;
+            final int indexCount = simplifier.simplify(targetIndexCount, this.maxErrors[level] * radius);
+
+            if (indexCount == 0 || indexCount > previousIndexCount * (1.0f - MIN_REDUCTION)) {
+                break;
+            }
+
+            levels.add(simplifier.getIndices());
+            errors.add(simplifier.getError());
+            previousIndexCount = indexCount;
+        }
+
+        float[] errorArray = new float[errors.size()];
+        for (int i = 0; i < errorArray.length; i++) {
+            errorArray[i] = errors.get(i);
+        }
+
+        return new LodChain(levels.toArray(new int[0][]), errorArray);
+    }
+
+    /*
+     * Half the diagonal of the bounding box of the referenced vertices
+     */
+    private static float getRadius(float[] positions, int[] indices) {
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+        for (int index : indices) {
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], positions[index * 3 + axis]);
+                max[axis] = Math.max(max[axis], positions[index * 3 + axis]);
+            }
+        }
+
+        if (indices.length == 0) {
+            return 0.0f;
+        }
+
+        final float dx = max[0] - min[0];
+        final float dy = max[1] - min[1];
+        final float dz = max[2] - min[2];
+
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz) * 0.5f;
+    }
+
+    public int getMaxLevelCount() {
+        return this.triangleRatios.length + 1;
+    }
+}
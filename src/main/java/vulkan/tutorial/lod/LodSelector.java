@@ -0,0 +1,127 @@
+package vulkan.tutorial.lod;
+
+import org.joml.Matrix4fc;
+
+/*
+ * Picks the coarsest level of a LOD chain whose error stays below threshold pixels on screen.
+ *
+ * An error e at distance d covers e / d * |proj.m11| * viewportHeight / 2 pixels, proj.m11 being
+ * 1 / tan(fovy / 2). The distance is the one from the camera to the bounding sphere of the mesh, so
+ * every point of the mesh is at least that far away, and 0 inside of it, which keeps the finest
+ * level. Errors and distance are taken in the space of the mesh, so a uniformly scaled instance
+ * needs no extra factor.
+ *
+ * A caller that keeps the level of every object from the last frame can pass it back with a
+ * hysteresis, then an object resting at a switching distance keeps its level instead of flickering
+ * between two. cull.comp keeps no level per instance and selects without it.
+ *
+ * select() is the reference of the LOD selection in cull.comp, getScale() its lodScale push constant.
+ */
+public class LodSelector {
+    public static final float DEFAULT_THRESHOLD = 1.0f;
+    public static final float DEFAULT_HYSTERESIS = 0.1f;
+
+    private final float threshold;
+    private final float hysteresis;
+
+    public LodSelector() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public LodSelector(float threshold) {
+        this(threshold, DEFAULT_HYSTERESIS);
+    }
+
+    /*
+     * hysteresis: how far past the threshold an error has to be before the level of the last frame
+     * changes, 0.1 for 10 %
+     */
+    public LodSelector(float threshold, float hysteresis) {
+        if (threshold <= 0.0f) {
+            throw new IllegalArgumentException("The LOD threshold must be positive, got " + threshold);
+        }
+
+        if (hysteresis < 0.0f || hysteresis >= 1.0f) {
+            throw new IllegalArgumentException("The LOD hysteresis must be within [0, 1), got " + hysteresis);
+        }
+
+        this.threshold = threshold;
+        this.hysteresis = hysteresis;
+    }
+
+    public float getThreshold() {
+        return this.threshold;
+    }
+
+    public float getHysteresis() {
+        return this.hysteresis;
+    }
+
+    /*
+     * Pixels per unit of error at distance 1 for threshold 1, without the projection
+     */
+    public float getScale(int viewportHeight) {
+        return viewportHeight * 0.5f / this.threshold;
+    }
+
+    public float getScale(Matrix4fc projection, int viewportHeight) {
+        return Math.abs(projection.m11()) * getScale(viewportHeight);
+    }
+
+    /*
+     * scale: see getScale(Matrix4fc, int)
+     */
+    public static int select(float[] errors, int levelCount, float distance, float scale) {
+        int level = 0;
+
+        //error * scale / distance <= 1 without the division
+        while (level + 1 < levelCount && errors[level + 1] * scale <= distance) {
+            level++;
+        }
+
+        return level;
+    }
+
+    /*
+     * Like select(), but starting at previousLevel: a coarser level is only taken once its error is
+     * below the threshold by hysteresis, a finer one only once the error of the current level is above
+     * it by as much. hysteresis 0 selects like select().
+     */
+    public static int select(float[] errors, int levelCount, float distance, float scale, int previousLevel, float hysteresis) {
+        int level = Math.min(Math.max(previousLevel, 0), levelCount - 1);
+
+        while (level > 0 && errors[level] * scale > distance * (1.0f + hysteresis)) {
+            level--;
+        }
+
+        while (level + 1 < levelCount && errors[level + 1] * scale * (1.0f + hysteresis) <= distance) {
+            level++;
+        }
+
+        return level;
+    }
+
+    public int select(LodChain chain, float distance, Matrix4fc projection, int viewportHeight) {
+        return select(chain.getErrors(), chain.getLevelCount(), distance, getScale(projection, viewportHeight));
+    }
+
+    public int select(LodChain chain, float distance, Matrix4fc projection, int viewportHeight, int previousLevel) {
+        return select(chain.getErrors(), chain.getLevelCount(), distance, getScale(projection, viewportHeight), previousLevel, this.hysteresis);
+    }
+
+    /*
+     * Distance from the camera to the sphere around the box bounds[offset .. offset + 5], 0 inside
+     */
+    public static float getDistance(float[] bounds, int offset, float cameraX, float cameraY, float cameraZ) {
+        final float extentX = bounds[offset + 3] - bounds[offset];
+        final float extentY = bounds[offset + 4] - bounds[offset + 1];
+        final float extentZ = bounds[offset + 5] - bounds[offset + 2];
+        final float radius = (float) Math.sqrt(extentX * extentX + extentY * extentY + extentZ * extentZ) * 0.5f;
+
+        final float dx = cameraX - (bounds[offset] + bounds[offset + 3]) * 0.5f;
+        final float dy = cameraY - (bounds[offset + 1] + bounds[offset + 4]) * 0.5f;
+        final float dz = cameraZ - (bounds[offset + 2] + bounds[offset + 5]) * 0.5f;
+
+        return Math.max((float) Math.sqrt(dx * dx + dy * dy + dz * dz) - radius, 0.0f);
+    }
+}
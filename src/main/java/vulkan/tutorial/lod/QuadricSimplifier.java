@@ -0,0 +1,480 @@
+package vulkan.tutorial.lod;
+
+import java.util.Arrays;
+
+/*
+ * Edge collapse simplification of an indexed triangle list with quadric error metrics (Garland and
+ * Heckbert 1997), over the flat position (xyz) and index arrays.
+ *
+ * Every vertex carries the area weighted sum of the plane quadrics of its triangles. Collapsing
+ * a vertex onto a neighbour costs the summed quadric at the position of the neighbour, divided by
+ * the summed area, so the error is a mean squared distance in object space units. Vertices only
+ * move onto existing vertices, the simplified indices still reference the input vertex array.
+ *
+ * Vertices that are equal in position and attributes are merged first, OBJ files come with one
+ * vertex per face corner. Vertices that share a position but not their attributes (texture seams)
+ * and vertices on open or non manifold edges are locked, collapsing them would tear the mesh.
+ *
+ * Collapses run in passes like meshoptimizer: all edges are sorted by cost, then taken in order
+ * as long as none of their vertices changed in the same pass, and a collapse that turns a triangle
+ * by more than about 75 degrees is skipped. The simplifier keeps its state, simplify() can be
+ * called with smaller and smaller targets to get a LOD chain whose errors are measured against the
+ * original mesh.
+ *
+ * Not thread safe, use one simplifier per mesh.
+ */
+public class QuadricSimplifier {
+    private static final int QUADRIC_STRIDE = 10;
+    private static final int EMPTY = -1;
+    private static final double MIN_NORMAL_DOT = 0.25;
+
+    private final float[] positions;
+    private final boolean[] locked;
+    private final double[] quadrics;
+    private final double[] weights;
+    private int[] indices;
+    private int indexCount;
+    private double maxSquaredError;
+
+    public QuadricSimplifier(float[] positions, int[] indices) {
+        this(positions, null, 0, indices);
+    }
+
+    /*
+     * attributes: attributeStride floats per vertex that have to match for two vertices at the same
+     * position to be one (texture coordinates), or null
+     */
+    public QuadricSimplifier(float[] positions, float[] attributes, int attributeStride, int[] indices) {
+        final int vertexCount = positions.length / 3;
+
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Index count " + indices.length + " is not a multiple of 3");
+        }
+
+        if (attributes != null && attributes.length < vertexCount * attributeStride) {
+            throw new IllegalArgumentException(vertexCount + " vertices need " + vertexCount * attributeStride + " attributes, got " + attributes.length);
+        }
+
+        for (int index : indices) {
+            if (index < 0 || index >= vertexCount) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range for " + vertexCount + " vertices");
+            }
+        }
+
+        this.positions = positions;
+        this.locked = new boolean[vertexCount];
+        this.quadrics = new double[vertexCount * QUADRIC_STRIDE];
+        this.weights = new double[vertexCount];
+
+        final int[] vertexRemap = weld(positions, attributes, attributes == null ? 0 : attributeStride, vertexCount);
+        final int[] positionRemap = weld(positions, null, 0, vertexCount);
+
+        this.indices = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            this.indices[i] = vertexRemap[indices[i]];
+        }
+        this.indexCount = removeDegenerates(this.indices, indices.length);
+
+        lockSeams(vertexRemap, positionRemap);
+        lockBorders(positionRemap);
+        computeQuadrics();
+    }
+
+    /*
+     * Collapses edges until the mesh has at most targetIndexCount indices or the next collapse would
+     * cost more than maxError (object space units). Returns the index count reached.
+     */
+    public int simplify(int targetIndexCount, float maxError) {
+        final double maxSquaredError = (double) maxError * maxError;
+        final int vertexCount = this.locked.length;
+        final int[] remap = new int[vertexCount];
+        final boolean[] touched = new boolean[vertexCount];
+        final int[] adjacencyOffsets = new int[vertexCount + 1];
+        int[] adjacency = new int[0];
+
+        while (this.indexCount > targetIndexCount) {
+            final int triangleCount = this.indexCount / 3;
+
+            //triangles of every vertex
+            Arrays.fill(adjacencyOffsets, 0);
+            for (int i = 0; i < this.indexCount; i++) {
+                adjacencyOffsets[this.indices[i] + 1]++;
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                adjacencyOffsets[v + 1] += adjacencyOffsets[v];
+            }
+            if (adjacency.length < this.indexCount) {
+                adjacency = new int[this.indexCount];
+            }
+            final int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+            for (int i = 0; i < this.indexCount; i++) {
+                adjacency[fill[this.indices[i]]++] = i / 3;
+            }
+
+            //every edge once, in its cheaper direction
+            final int[] from = new int[this.indexCount];
+            final int[] to = new int[this.indexCount];
+            final long[] keys = new long[this.indexCount];
+            int candidateCount = 0;
+
+            for (int i = 0; i < this.indexCount; i++) {
+                final int a = this.indices[i];
+                final int b = this.indices[i - i % 3 + (i + 1) % 3];
+
+                if (a > b || (this.locked[a] && this.locked[b])) {
+                    continue;
+                }
+
+                final double costAB = this.locked[a] ? Double.POSITIVE_INFINITY : getCollapseError(a, b);
+                final double costBA = this.locked[b] ? Double.POSITIVE_INFINITY : getCollapseError(b, a);
+                final double cost = Math.min(costAB, costBA);
+
+                from[candidateCount] = costAB <= costBA ? a : b;
+                to[candidateCount] = costAB <= costBA ? b : a;
+                //non negative floats sort like their bits
+                keys[candidateCount] = ((long) Float.floatToIntBits((float) Math.max(cost, 0.0)) << 32) | candidateCount;
+                candidateCount++;
+            }
+
+            Arrays.sort(keys, 0, candidateCount);
+            Arrays.fill(touched, false);
+            for (int v = 0; v < vertexCount; v++) {
+                remap[v] = v;
+            }
+
+            final int excessTriangles = triangleCount - targetIndexCount / 3;
+            int removedTriangles = 0;
+            int collapseCount = 0;
+            boolean errorReached = false;
+
+            for (int k = 0; k < candidateCount && removedTriangles < excessTriangles; k++) {
+                final int candidate = (int) keys[k];
+                final int u = from[candidate];
+                final int v = to[candidate];
+
+                if (touched[u] || touched[v]) {
+                    continue;
+                }
+
+                final double error = getCollapseError(u, v);
+
+                if (error > maxSquaredError) {
+                    errorReached = true;
+                    break;
+                }
+
+                final int collapsedTriangles = getCollapsedTriangles(u, v, adjacency, adjacencyOffsets);
+
+                if (collapsedTriangles < 0) {
+                    continue;
+                }
+
+                remap[u] = v;
+                removedTriangles += collapsedTriangles;
+                collapseCount++;
+                this.maxSquaredError = Math.max(this.maxSquaredError, error);
+
+                for (int q = 0; q < QUADRIC_STRIDE; q++) {
+                    this.quadrics[v * QUADRIC_STRIDE + q] += this.quadrics[u * QUADRIC_STRIDE + q];
+                }
+                this.weights[v] += this.weights[u];
+
+                //the triangles around u change, their corners can't collapse again in this pass
+                for (int j = adjacencyOffsets[u]; j < adjacencyOffsets[u + 1]; j++) {
+                    final int triangle = adjacency[j];
+                    touched[this.indices[triangle * 3]] = true;
+                    touched[this.indices[triangle * 3 + 1]] = true;
+                    touched[this.indices[triangle * 3 + 2]] = true;
+                }
+            }
+
+            if (collapseCount == 0) {
+                break;
+            }
+
+            for (int i = 0; i < this.indexCount; i++) {
+                this.indices[i] = remap[this.indices[i]];
+            }
+            this.indexCount = removeDegenerates(this.indices, this.indexCount);
+
+            if (errorReached) {
+                break;
+            }
+        }
+
+        return this.indexCount;
+    }
+
+    /*
+     * The number of triangles that vanish when u moves onto v, or -1 if one of the triangles that
+     * keep their area would turn too far, the small turns add up over the passes
+     */
+    private int getCollapsedTriangles(int u, int v, int[] adjacency, int[] adjacencyOffsets) {
+        int collapsed = 0;
+
+        for (int j = adjacencyOffsets[u]; j < adjacencyOffsets[u + 1]; j++) {
+            final int triangle = adjacency[j];
+            final int a = this.indices[triangle * 3];
+            final int b = this.indices[triangle * 3 + 1];
+            final int c = this.indices[triangle * 3 + 2];
+
+            if (a == v || b == v || c == v) {
+                collapsed++;
+                continue;
+            }
+
+            //rotate u into the first corner, the winding stays the same
+            final int second = a == u ? b : b == u ? c : a;
+            final int third = a == u ? c : b == u ? a : b;
+
+            final double e1x = this.positions[second * 3] - this.positions[u * 3];
+            final double e1y = this.positions[second * 3 + 1] - this.positions[u * 3 + 1];
+            final double e1z = this.positions[second * 3 + 2] - this.positions[u * 3 + 2];
+            final double e2x = this.positions[third * 3] - this.positions[u * 3];
+            final double e2y = this.positions[third * 3 + 1] - this.positions[u * 3 + 1];
+            final double e2z = this.positions[third * 3 + 2] - this.positions[u * 3 + 2];
+
+            final double f1x = this.positions[second * 3] - this.positions[v * 3];
+            final double f1y = this.positions[second * 3 + 1] - this.positions[v * 3 + 1];
+            final double f1z = this.positions[second * 3 + 2] - this.positions[v * 3 + 2];
+            final double f2x = this.positions[third * 3] - this.positions[v * 3];
+            final double f2y = this.positions[third * 3 + 1] - this.positions[v * 3 + 1];
+            final double f2z = this.positions[third * 3 + 2] - this.positions[v * 3 + 2];
+
+            final double nx = e1y * e2z - e1z * e2y;
+            final double ny = e1z * e2x - e1x * e2z;
+            final double nz = e1x * e2y - e1y * e2x;
+            final double mx = f1y * f2z - f1z * f2y;
+            final double my = f1z * f2x - f1x * f2z;
+            final double mz = f1x * f2y - f1y * f2x;
+
+            final double dot = nx * mx + ny * my + nz * mz;
+
+            //turned by more than acos(MIN_NORMAL_DOT)
+            if (dot <= MIN_NORMAL_DOT * Math.sqrt((nx * nx + ny * ny + nz * nz) * (mx * mx + my * my + mz * mz))) {
+                return -1;
+            }
+        }
+
+        return collapsed;
+    }
+
+    /*
+     * Mean squared distance of the position of v to the planes of u and v
+     */
+    private double getCollapseError(int u, int v) {
+        final double weight = this.weights[u] + this.weights[v];
+
+        if (weight <= 0.0) {
+            return 0.0;
+        }
+
+        final double x = this.positions[v * 3];
+        final double y = this.positions[v * 3 + 1];
+        final double z = this.positions[v * 3 + 2];
+        final int qu = u * QUADRIC_STRIDE;
+        final int qv = v * QUADRIC_STRIDE;
+        final double[] q = this.quadrics;
+
+        //symmetric 4x4: xx, xy, xz, xw, yy, yz, yw, zz, zw, ww
+        final double error = (q[qu] + q[qv]) * x * x
+                + 2.0 * (q[qu + 1] + q[qv + 1]) * x * y
+                + 2.0 * (q[qu + 2] + q[qv + 2]) * x * z
+                + 2.0 * (q[qu + 3] + q[qv + 3]) * x
+                + (q[qu + 4] + q[qv + 4]) * y * y
+                + 2.0 * (q[qu + 5] + q[qv + 5]) * y * z
+                + 2.0 * (q[qu + 6] + q[qv + 6]) * y
+                + (q[qu + 7] + q[qv + 7]) * z * z
+                + 2.0 * (q[qu + 8] + q[qv + 8]) * z
+                + (q[qu + 9] + q[qv + 9]);
+
+        return Math.max(error, 0.0) / weight;
+    }
+
+    private void computeQuadrics() {
+        for (int i = 0; i < this.indexCount; i += 3) {
+            final int a = this.indices[i];
+            final int b = this.indices[i + 1];
+            final int c = this.indices[i + 2];
+
+            final double e1x = this.positions[b * 3] - this.positions[a * 3];
+            final double e1y = this.positions[b * 3 + 1] - this.positions[a * 3 + 1];
+            final double e1z = this.positions[b * 3 + 2] - this.positions[a * 3 + 2];
+            final double e2x = this.positions[c * 3] - this.positions[a * 3];
+            final double e2y = this.positions[c * 3 + 1] - this.positions[a * 3 + 1];
+            final double e2z = this.positions[c * 3 + 2] - this.positions[a * 3 + 2];
+
+            double nx = e1y * e2z - e1z * e2y;
+            double ny = e1z * e2x - e1x * e2z;
+            double nz = e1x * e2y - e1y * e2x;
+            final double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+            if (length == 0.0) {
+                continue;
+            }
+
+            nx /= length;
+            ny /= length;
+            nz /= length;
+
+            final double d = -(nx * this.positions[a * 3] + ny * this.positions[a * 3 + 1] + nz * this.positions[a * 3 + 2]);
+            final double area = length * 0.5;
+
+            for (int corner = 0; corner < 3; corner++) {
+                final int offset = this.indices[i + corner] * QUADRIC_STRIDE;
+
+                this.quadrics[offset] += area * nx * nx;
+                this.quadrics[offset + 1] += area * nx * ny;
+                this.quadrics[offset + 2] += area * nx * nz;
+                this.quadrics[offset + 3] += area * nx * d;
+                this.quadrics[offset + 4] += area * ny * ny;
+                this.quadrics[offset + 5] += area * ny * nz;
+                this.quadrics[offset + 6] += area * ny * d;
+                this.quadrics[offset + 7] += area * nz * nz;
+                this.quadrics[offset + 8] += area * nz * d;
+                this.quadrics[offset + 9] += area * d * d;
+                this.weights[this.indices[i + corner]] += area;
+            }
+        }
+    }
+
+    private void lockSeams(int[] vertexRemap, int[] positionRemap) {
+        final int vertexCount = this.locked.length;
+        final int[] distinctVertices = new int[vertexCount];
+
+        for (int v = 0; v < vertexCount; v++) {
+            if (vertexRemap[v] == v) {
+                distinctVertices[positionRemap[v]]++;
+            }
+        }
+
+        for (int v = 0; v < vertexCount; v++) {
+            if (distinctVertices[positionRemap[v]] > 1) {
+                this.locked[v] = true;
+            }
+        }
+    }
+
+    /*
+     * Edges are compared by position, so the two sides of a seam count as one edge
+     */
+    private void lockBorders(int[] positionRemap) {
+        final long[] edges = new long[this.indexCount];
+
+        for (int i = 0; i < this.indexCount; i++) {
+            final int a = positionRemap[this.indices[i]];
+            final int b = positionRemap[this.indices[i - i % 3 + (i + 1) % 3]];
+            edges[i] = ((long) Math.min(a, b) << 32) | Math.max(a, b);
+        }
+
+        Arrays.sort(edges);
+
+        final boolean[] lockedPositions = new boolean[this.locked.length];
+
+        for (int first = 0; first < edges.length; ) {
+            int end = first + 1;
+            while (end < edges.length && edges[end] == edges[first]) {
+                end++;
+            }
+
+            if (end - first != 2) {
+                lockedPositions[(int) (edges[first] >>> 32)] = true;
+                lockedPositions[(int) edges[first]] = true;
+            }
+
+            first = end;
+        }
+
+        for (int v = 0; v < this.locked.length; v++) {
+            if (lockedPositions[positionRemap[v]]) {
+                this.locked[v] = true;
+            }
+        }
+    }
+
+    /*
+     * Maps every vertex to the first one with the same position (and attributes), open addressing
+     * over the bits of the floats
+     */
+    private static int[] weld(float[] positions, float[] attributes, int attributeStride, int vertexCount) {
+        final int[] remap = new int[vertexCount];
+        final int[] table = new int[Math.max(Integer.highestOneBit(Math.max(vertexCount, 1)) << 2, 4)];
+        final int mask = table.length - 1;
+        Arrays.fill(table, EMPTY);
+
+        for (int v = 0; v < vertexCount; v++) {
+            int hash = 17;
+            for (int i = 0; i < 3; i++) {
+                hash = hash * 31 + Float.floatToIntBits(positions[v * 3 + i]);
+            }
+            for (int i = 0; i < attributeStride; i++) {
+                hash = hash * 31 + Float.floatToIntBits(attributes[v * attributeStride + i]);
+            }
+            hash ^= hash >>> 16;
+
+            int slot = hash & mask;
+
+            while (table[slot] != EMPTY && !isEqual(positions, attributes, attributeStride, table[slot], v)) {
+                slot = (slot + 1) & mask;
+            }
+
+            if (table[slot] == EMPTY) {
+                table[slot] = v;
+            }
+
+            remap[v] = table[slot];
+        }
+
+        return remap;
+    }
+
+    private static boolean isEqual(float[] positions, float[] attributes, int attributeStride, int a, int b) {
+        for (int i = 0; i < 3; i++) {
+            if (Float.floatToIntBits(positions[a * 3 + i]) != Float.floatToIntBits(positions[b * 3 + i])) {
+                return false;
+            }
+        }
+
+        for (int i = 0; i < attributeStride; i++) {
+            if (Float.floatToIntBits(attributes[a * attributeStride + i]) != Float.floatToIntBits(attributes[b * attributeStride + i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int removeDegenerates(int[] indices, int indexCount) {
+        int count = 0;
+
+        for (int i = 0; i < indexCount; i += 3) {
+            final int a = indices[i];
+            final int b = indices[i + 1];
+            final int c = indices[i + 2];
+
+            if (a != b && b != c && c != a) {
+                indices[count] = a;
+                indices[count + 1] = b;
+                indices[count + 2] = c;
+                count += 3;
+            }
+        }
+
+        return count;
+    }
+
+    public int[] getIndices() {
+        return Arrays.copyOf(this.indices, this.indexCount);
+    }
+
+    public int getIndexCount() {
+        return this.indexCount;
+    }
+
+    /*
+     * Largest collapse error so far, in object space units
+     */
+    public float getError() {
+        return (float) Math.sqrt(this.maxSquaredError);
+    }
+}
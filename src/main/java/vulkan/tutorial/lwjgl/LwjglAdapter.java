@@ -4,6 +4,7 @@ import org.lwjgl.PointerBuffer;
 import org.lwjgl.system.MemoryStack;
 import org.lwjgl.system.Pointer;
 
+import java.nio.LongBuffer;
 import java.util.Collection;
 import java.util.List;
 
@@ -30,4 +31,13 @@ public class LwjglAdapter {
 
         return buffer.rewind();
     }
+
+    public static LongBuffer asLongBuffer(List<Long> handles) {
+        MemoryStack stack = MemoryStack.stackGet();
+        LongBuffer buffer = stack.mallocLong(handles.size());
+
+        handles.forEach(buffer::put);
+
+        return buffer.rewind();
+    }
 }
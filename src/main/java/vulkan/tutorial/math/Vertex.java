@@ -2,7 +2,6 @@ package vulkan.tutorial.math;
 
 import org.joml.Vector2fc;
 import org.joml.Vector3fc;
-import org.lwjgl.vulkan.VK10;
 import org.lwjgl.vulkan.VkVertexInputAttributeDescription;
 import org.lwjgl.vulkan.VkVertexInputBindingDescription;
 
@@ -23,40 +22,15 @@ public class Vertex {
         this.texCoords = texCoords;
     }
 
+    /*
+     * The float layout of the OFFSETOF constants, see VertexFormat for the compact ones
+     */
     public static VkVertexInputBindingDescription.Buffer getBindingDescription() {
-        VkVertexInputBindingDescription.Buffer bindingDescriptions = VkVertexInputBindingDescription.callocStack(1);
-        bindingDescriptions.binding(0);
-        bindingDescriptions.stride(SIZEOF);
-        bindingDescriptions.inputRate(VK10.VK_VERTEX_INPUT_RATE_VERTEX);
-
-        return bindingDescriptions;
+        return VertexFormat.full().getBindingDescription();
     }
 
     public static VkVertexInputAttributeDescription.Buffer getAttributeDescriptions() {
-        VkVertexInputAttributeDescription.Buffer attributeDescriptions = VkVertexInputAttributeDescription.callocStack(3);
-
-        //Position
-        VkVertexInputAttributeDescription posDescription = attributeDescriptions.get(0);
-        posDescription.binding(0);
-        posDescription.location(0);
-        posDescription.format(VK10.VK_FORMAT_R32G32B32_SFLOAT);
-        posDescription.offset(OFFSETOF_POS);
-
-        //Color
-        VkVertexInputAttributeDescription colorDescription = attributeDescriptions.get(1);
-        colorDescription.binding(0);
-        colorDescription.location(1);
-        colorDescription.format(VK10.VK_FORMAT_R32G32B32_SFLOAT);
-        colorDescription.offset(OFFSETOF_COLOR);
-
-        //Texture coordinates
-        VkVertexInputAttributeDescription texCoordsDescription = attributeDescriptions.get(2);
-        texCoordsDescription.binding(0);
-        texCoordsDescription.location(2);
-        texCoordsDescription.format(VK10.VK_FORMAT_R32G32_SFLOAT);
-        texCoordsDescription.offset(OFFSETOF_TEXTCOORDS);
-
-        return attributeDescriptions.rewind();
+        return VertexFormat.full().getAttributeDescriptions();
     }
 
     public Vector3fc getPos() {
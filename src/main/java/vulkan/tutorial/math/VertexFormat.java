@@ -0,0 +1,263 @@
+package vulkan.tutorial.math;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkVertexInputAttributeDescription;
+import org.lwjgl.vulkan.VkVertexInputBindingDescription;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * A VertexLayout applied to a set of vertices: the quantization box of the positions, whether the
+ * color is dropped, the interleaved offsets and the vertex input state of the pipeline. VertexPacker
+ * writes the vertex buffer in this format.
+ *
+ * getShaderDefines() are the macros shader.vert is compiled with:
+ *
+ *  POSITION_UNORM16   the position is a vec4 in [0, 1], POSITION_MIN + xyz * POSITION_EXTENT
+ *  VERTEX_COLOR       the color of every vertex, there is no color attribute
+ *
+ * Attribute locations stay the ones of Vertex (position 0, color 1, texture coordinates 2).
+ */
+public class VertexFormat {
+    public static final int POSITION_LOCATION = 0;
+    public static final int COLOR_LOCATION = 1;
+    public static final int TEX_COORD_LOCATION = 2;
+
+    private static final VertexFormat FULL = new VertexFormat(VertexLayout.FULL, new float[3], new float[3], null);
+
+    private final VertexLayout layout;
+    private final float[] positionMin;
+    private final float[] positionExtent;
+    private final float[] constantColor;
+    private final int positionOffset;
+    private final int colorOffset;
+    private final int texCoordOffset;
+    private final int stride;
+
+    private VertexFormat(VertexLayout layout, float[] positionMin, float[] positionExtent, float[] constantColor) {
+        this.layout = layout;
+        this.positionMin = positionMin;
+        this.positionExtent = positionExtent;
+        this.constantColor = constantColor;
+
+        int offset = 0;
+
+        this.positionOffset = offset;
+        offset += layout.getPositionEncoding() == VertexLayout.PositionEncoding.UNORM16 ? 4 * Short.BYTES : 3 * Float.BYTES;
+
+        this.colorOffset = constantColor != null ? -1 : offset;
+        offset += constantColor != null ? 0 : 3 * Float.BYTES;
+
+        this.texCoordOffset = offset;
+        offset += layout.getTexCoordEncoding() == VertexLayout.TexCoordEncoding.FLOAT16 ? 2 * Short.BYTES : 2 * Float.BYTES;
+
+        this.stride = offset;
+    }
+
+    /*
+     * The float layout of Vertex, it needs no vertex data
+     */
+    public static VertexFormat full() {
+        return FULL;
+    }
+
+    public static VertexFormat of(VertexLayout layout, Vertex[] vertices) {
+        float[] positions = new float[vertices.length * 3];
+        float[] colors = new float[vertices.length * 3];
+
+        for (int i = 0; i < vertices.length; i++) {
+            positions[i * 3] = vertices[i].getPos().x();
+            positions[i * 3 + 1] = vertices[i].getPos().y();
+            positions[i * 3 + 2] = vertices[i].getPos().z();
+            colors[i * 3] = vertices[i].getColor().x();
+            colors[i * 3 + 1] = vertices[i].getColor().y();
+            colors[i * 3 + 2] = vertices[i].getColor().z();
+        }
+
+        return of(layout, positions, colors, vertices.length);
+    }
+
+    /*
+     * positions and colors: x, y, z / r, g, b per vertex
+     */
+    public static VertexFormat of(VertexLayout layout, float[] positions, float[] colors, int vertexCount) {
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+        for (int i = 0; i < vertexCount; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                min[axis] = Math.min(min[axis], positions[i * 3 + axis]);
+                max[axis] = Math.max(max[axis], positions[i * 3 + axis]);
+            }
+        }
+
+        float[] extent = new float[3];
+        for (int axis = 0; axis < 3; axis++) {
+            if (vertexCount == 0) {
+                min[axis] = 0.0f;
+            } else {
+                extent[axis] = max[axis] - min[axis];
+            }
+        }
+
+        float[] constantColor = null;
+
+        if (layout.getColorEncoding() == VertexLayout.ColorEncoding.DROP_CONSTANT && isConstant(colors, vertexCount)) {
+            constantColor = vertexCount == 0 ? new float[]{1.0f, 1.0f, 1.0f} : new float[]{colors[0], colors[1], colors[2]};
+        }
+
+        return new VertexFormat(layout, min, extent, constantColor);
+    }
+
+    private static boolean isConstant(float[] colors, int vertexCount) {
+        for (int i = 1; i < vertexCount; i++) {
+            for (int channel = 0; channel < 3; channel++) {
+                if (Float.compare(colors[i * 3 + channel], colors[channel]) != 0) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    public VkVertexInputBindingDescription.Buffer getBindingDescription() {
+        VkVertexInputBindingDescription.Buffer bindingDescriptions = VkVertexInputBindingDescription.calloc(1, MemoryStack.stackGet());
+        bindingDescriptions.binding(0);
+        bindingDescriptions.stride(this.stride);
+        bindingDescriptions.inputRate(VK10.VK_VERTEX_INPUT_RATE_VERTEX);
+
+        return bindingDescriptions;
+    }
+
+    public VkVertexInputAttributeDescription.Buffer getAttributeDescriptions() {
+        VkVertexInputAttributeDescription.Buffer attributeDescriptions = VkVertexInputAttributeDescription.calloc(hasColor() ? 3 : 2, MemoryStack.stackGet());
+
+        //Position
+        attributeDescriptions.get()
+                .binding(0)
+                .location(POSITION_LOCATION)
+                .format(getPositionFormat())
+                .offset(this.positionOffset);
+
+        //Color
+        if (hasColor()) {
+            attributeDescriptions.get()
+                    .binding(0)
+                    .location(COLOR_LOCATION)
+                    .format(VK10.VK_FORMAT_R32G32B32_SFLOAT)
+                    .offset(this.colorOffset);
+        }
+
+        //Texture coordinates
+        attributeDescriptions.get()
+                .binding(0)
+                .location(TEX_COORD_LOCATION)
+                .format(getTexCoordFormat())
+                .offset(this.texCoordOffset);
+
+        return attributeDescriptions.rewind();
+    }
+
+    /*
+     * Macro name -> value, see the class comment
+     */
+    public Map<String, String> getShaderDefines() {
+        Map<String, String> defines = new LinkedHashMap<>();
+
+        if (isQuantized()) {
+            defines.put("POSITION_UNORM16", "1");
+            defines.put("POSITION_MIN", toVec3(this.positionMin));
+            defines.put("POSITION_EXTENT", toVec3(this.positionExtent));
+        }
+
+        if (!hasColor()) {
+            defines.put("VERTEX_COLOR", toVec3(this.constantColor));
+        }
+
+        return defines;
+    }
+
+    private static String toVec3(float[] value) {
+        //Float.toString is exact and a valid GLSL literal
+        return "vec3(" + value[0] + ", " + value[1] + ", " + value[2] + ")";
+    }
+
+    public int getPositionFormat() {
+        return isQuantized() ? VK10.VK_FORMAT_R16G16B16A16_UNORM : VK10.VK_FORMAT_R32G32B32_SFLOAT;
+    }
+
+    public int getTexCoordFormat() {
+        return isHalfTexCoords() ? VK10.VK_FORMAT_R16G16_SFLOAT : VK10.VK_FORMAT_R32G32_SFLOAT;
+    }
+
+    public VertexLayout getLayout() {
+        return this.layout;
+    }
+
+    public boolean isQuantized() {
+        return this.layout.getPositionEncoding() == VertexLayout.PositionEncoding.UNORM16;
+    }
+
+    public boolean isHalfTexCoords() {
+        return this.layout.getTexCoordEncoding() == VertexLayout.TexCoordEncoding.FLOAT16;
+    }
+
+    public boolean hasColor() {
+        return this.constantColor == null;
+    }
+
+    public float getPositionMin(int axis) {
+        return this.positionMin[axis];
+    }
+
+    public float getPositionExtent(int axis) {
+        return this.positionExtent[axis];
+    }
+
+    /*
+     * The color of every vertex if it isn't stored
+     */
+    public float getConstantColor(int channel) {
+        return this.constantColor[channel];
+    }
+
+    /*
+     * Largest distance of an unpacked position from the original on one axis, half a quantization step
+     */
+    public float getMaxPositionError() {
+        if (!isQuantized()) {
+            return 0.0f;
+        }
+
+        return Math.max(this.positionExtent[0], Math.max(this.positionExtent[1], this.positionExtent[2])) / VertexPacker.UNORM16_MAX * 0.5f;
+    }
+
+    public int getPositionOffset() {
+        return this.positionOffset;
+    }
+
+    /*
+     * -1 without color
+     */
+    public int getColorOffset() {
+        return this.colorOffset;
+    }
+
+    public int getTexCoordOffset() {
+        return this.texCoordOffset;
+    }
+
+    public int getStride() {
+        return this.stride;
+    }
+
+    @Override
+    public String toString() {
+        return this.stride + " bytes (position " + (isQuantized() ? "unorm16" : "float32")
+                + ", texture coordinates " + (isHalfTexCoords() ? "float16" : "float32")
+                + (hasColor() ? ", color float32" : ", constant color") + ")";
+    }
+}
@@ -0,0 +1,64 @@
+package vulkan.tutorial.math;
+
+/*
+ * How the attributes of a Vertex are stored in the vertex buffer of the raster path. A VertexFormat
+ * applies a layout to the vertices of a mesh pool.
+ *
+ * FULL is the 32 bytes float layout of Vertex. COMPACT quantizes the positions to 16 bit unorm
+ * within the bounding box of the vertices, stores the texture coordinates as half floats and drops
+ * the color if it is the same for every vertex: 12 bytes for the models we load.
+ */
+public class VertexLayout {
+
+    public enum PositionEncoding {
+        FLOAT32,
+        UNORM16
+    }
+
+    public enum TexCoordEncoding {
+        FLOAT32,
+        FLOAT16
+    }
+
+    public enum ColorEncoding {
+        FLOAT32,
+        //a constant color becomes a shader define, otherwise FLOAT32
+        DROP_CONSTANT
+    }
+
+    public static final VertexLayout FULL = new VertexLayout(PositionEncoding.FLOAT32, TexCoordEncoding.FLOAT32, ColorEncoding.FLOAT32);
+    public static final VertexLayout COMPACT = new VertexLayout(PositionEncoding.UNORM16, TexCoordEncoding.FLOAT16, ColorEncoding.DROP_CONSTANT);
+
+    private final PositionEncoding positionEncoding;
+    private final TexCoordEncoding texCoordEncoding;
+    private final ColorEncoding colorEncoding;
+
+    public VertexLayout(PositionEncoding positionEncoding, TexCoordEncoding texCoordEncoding, ColorEncoding colorEncoding) {
+        this.positionEncoding = positionEncoding;
+        this.texCoordEncoding = texCoordEncoding;
+        this.colorEncoding = colorEncoding;
+    }
+
+    public static VertexLayout fromName(String name) {
+        switch (name) {
+            case "full":
+                return FULL;
+            case "compact":
+                return COMPACT;
+            default:
+                throw new IllegalArgumentException("Unknown vertex format: " + name + ", expected full or compact");
+        }
+    }
+
+    public PositionEncoding getPositionEncoding() {
+        return this.positionEncoding;
+    }
+
+    public TexCoordEncoding getTexCoordEncoding() {
+        return this.texCoordEncoding;
+    }
+
+    public ColorEncoding getColorEncoding() {
+        return this.colorEncoding;
+    }
+}
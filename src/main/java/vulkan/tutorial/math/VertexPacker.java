@@ -0,0 +1,195 @@
+package vulkan.tutorial.math;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Writes vertices into an interleaved vertex buffer of a VertexFormat and reads them back.
+ *
+ * Every attribute is first encoded over flat primitive arrays in its own loop without branches in
+ * the loop body, which the JIT can unroll and vectorize, and only the interleaving goes through the
+ * ByteBuffer. Positions are rounded to the nearest of the 65536 steps of their quantization box,
+ * half floats are rounded to nearest even like the GPU does (Giesen's float_to_half_fast3_rtne).
+ */
+public class VertexPacker {
+    public static final int UNORM16_MAX = 0xffff;
+
+    private static final int FLOAT_INFINITY = 0xff << 23;
+    private static final int HALF_OVERFLOW = (127 + 16) << 23;
+    private static final int HALF_MIN_NORMAL = 113 << 23;
+    private static final float DENORMAL_MAGIC = Float.intBitsToFloat(((127 - 15) + (23 - 10) + 1) << 23);
+    private static final int DENORMAL_MAGIC_BITS = ((127 - 15) + (23 - 10) + 1) << 23;
+    private static final int HALF_REBIAS = (15 - 127) << 23;
+
+    private VertexPacker() {
+        //Util class
+    }
+
+    public static void pack(VertexFormat format, Vertex[] vertices, ByteBuffer buffer) {
+        float[] positions = new float[vertices.length * 3];
+        float[] colors = new float[vertices.length * 3];
+        float[] texCoords = new float[vertices.length * 2];
+
+        for (int i = 0; i < vertices.length; i++) {
+            positions[i * 3] = vertices[i].getPos().x();
+            positions[i * 3 + 1] = vertices[i].getPos().y();
+            positions[i * 3 + 2] = vertices[i].getPos().z();
+            colors[i * 3] = vertices[i].getColor().x();
+            colors[i * 3 + 1] = vertices[i].getColor().y();
+            colors[i * 3 + 2] = vertices[i].getColor().z();
+            texCoords[i * 2] = vertices[i].getTexCoords().x();
+            texCoords[i * 2 + 1] = vertices[i].getTexCoords().y();
+        }
+
+        pack(format, positions, colors, texCoords, vertices.length, buffer);
+    }
+
+    /*
+     * Writes vertexCount * format.getStride() bytes from the position of the buffer on, the position
+     * doesn't change. colors is ignored if the format has none.
+     */
+    public static void pack(VertexFormat format, float[] positions, float[] colors, float[] texCoords, int vertexCount, ByteBuffer buffer) {
+        final int base = buffer.position();
+        final int stride = format.getStride();
+
+        if (format.isQuantized()) {
+            final short[] quantized = quantizePositions(format, positions, vertexCount);
+
+            for (int i = 0; i < vertexCount; i++) {
+                final int offset = base + i * stride + format.getPositionOffset();
+                buffer.putShort(offset, quantized[i * 3]);
+                buffer.putShort(offset + Short.BYTES, quantized[i * 3 + 1]);
+                buffer.putShort(offset + 2 * Short.BYTES, quantized[i * 3 + 2]);
+                buffer.putShort(offset + 3 * Short.BYTES, (short) 0);
+            }
+        } else {
+            putFloats(positions, 3, vertexCount, buffer, base + format.getPositionOffset(), stride);
+        }
+
+        if (format.hasColor()) {
+            putFloats(colors, 3, vertexCount, buffer, base + format.getColorOffset(), stride);
+        }
+
+        if (format.isHalfTexCoords()) {
+            final short[] halves = new short[vertexCount * 2];
+
+            for (int i = 0; i < halves.length; i++) {
+                halves[i] = toHalf(texCoords[i]);
+            }
+
+            for (int i = 0; i < vertexCount; i++) {
+                final int offset = base + i * stride + format.getTexCoordOffset();
+                buffer.putShort(offset, halves[i * 2]);
+                buffer.putShort(offset + Short.BYTES, halves[i * 2 + 1]);
+            }
+        } else {
+            putFloats(texCoords, 2, vertexCount, buffer, base + format.getTexCoordOffset(), stride);
+        }
+    }
+
+    private static short[] quantizePositions(VertexFormat format, float[] positions, int vertexCount) {
+        final short[] quantized = new short[vertexCount * 3];
+
+        for (int axis = 0; axis < 3; axis++) {
+            final float min = format.getPositionMin(axis);
+            final float extent = format.getPositionExtent(axis);
+            final float scale = extent > 0.0f ? UNORM16_MAX / extent : 0.0f;
+
+            for (int i = 0; i < vertexCount; i++) {
+                final float step = (positions[i * 3 + axis] - min) * scale + 0.5f;
+                quantized[i * 3 + axis] = (short) Math.min(Math.max((int) step, 0), UNORM16_MAX);
+            }
+        }
+
+        return quantized;
+    }
+
+    private static void putFloats(float[] values, int components, int vertexCount, ByteBuffer buffer, int offset, int stride) {
+        for (int i = 0; i < vertexCount; i++) {
+            for (int component = 0; component < components; component++) {
+                buffer.putFloat(offset + i * stride + component * Float.BYTES, values[i * components + component]);
+            }
+        }
+    }
+
+    /*
+     * Reads vertexCount vertices from the position of the buffer on, the inverse of pack()
+     */
+    public static Vertex[] unpack(VertexFormat format, ByteBuffer buffer, int vertexCount) {
+        final int base = buffer.position();
+        final int stride = format.getStride();
+        Vertex[] vertices = new Vertex[vertexCount];
+
+        for (int i = 0; i < vertexCount; i++) {
+            final int vertex = base + i * stride;
+            Vector3f position = new Vector3f();
+            Vector3f color = new Vector3f();
+            Vector2f texCoords = new Vector2f();
+
+            for (int axis = 0; axis < 3; axis++) {
+                if (format.isQuantized()) {
+                    final int step = buffer.getShort(vertex + format.getPositionOffset() + axis * Short.BYTES) & UNORM16_MAX;
+                    position.setComponent(axis, format.getPositionMin(axis) + (float) step / UNORM16_MAX * format.getPositionExtent(axis));
+                } else {
+                    position.setComponent(axis, buffer.getFloat(vertex + format.getPositionOffset() + axis * Float.BYTES));
+                }
+
+                color.setComponent(axis, format.hasColor()
+                        ? buffer.getFloat(vertex + format.getColorOffset() + axis * Float.BYTES)
+                        : format.getConstantColor(axis));
+            }
+
+            for (int component = 0; component < 2; component++) {
+                texCoords.setComponent(component, format.isHalfTexCoords()
+                        ? toFloat(buffer.getShort(vertex + format.getTexCoordOffset() + component * Short.BYTES))
+                        : buffer.getFloat(vertex + format.getTexCoordOffset() + component * Float.BYTES));
+            }
+
+            vertices[i] = new Vertex(position, color, texCoords);
+        }
+
+        return vertices;
+    }
+
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        final int sign = bits & 0x80000000;
+        bits ^= sign;
+
+        int half;
+
+        if (bits >= HALF_OVERFLOW) {
+            //infinity stays infinity, NaN becomes a quiet NaN
+            half = bits > FLOAT_INFINITY ? 0x7e00 : 0x7c00;
+        } else if (bits < HALF_MIN_NORMAL) {
+            //the float addition rounds the denormal mantissa into the low bits
+            half = Float.floatToRawIntBits(Float.intBitsToFloat(bits) + DENORMAL_MAGIC) - DENORMAL_MAGIC_BITS;
+        } else {
+            final int mantissaOdd = (bits >>> 13) & 1;
+            bits += HALF_REBIAS + 0xfff + mantissaOdd;
+            half = bits >>> 13;
+        }
+
+        return (short) (half | (sign >>> 16));
+    }
+
+    public static float toFloat(short half) {
+        final int bits = half & 0xffff;
+        final int sign = (bits & 0x8000) << 16;
+        final int exponent = (bits >>> 10) & 0x1f;
+        final int mantissa = bits & 0x3ff;
+
+        if (exponent == 0) {
+            final float denormal = mantissa * 0x1p-24f;
+            return sign == 0 ? denormal : -denormal;
+        }
+
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | FLOAT_INFINITY | mantissa << 13);
+        }
+
+        return Float.intBitsToFloat(sign | (exponent + 112) << 23 | mantissa << 13);
+    }
+}
@@ -0,0 +1,170 @@
+package vulkan.tutorial.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Collects frame times, CPU phases and GPU timestamps into histograms and hands a snapshot to the
+ * exporter once per report interval. Everything between two reports is allocation free.
+ */
+public class FrameMetrics {
+    public static final String FRAME_TIME = "frameTime";
+    //input sampled by the frame until its present returned
+    public static final String INPUT_TO_PRESENT = "inputToPresent";
+    //oldest key or button event of the frame until its present returned
+    public static final String EVENT_TO_PRESENT = "eventToPresent";
+    public static final long DEFAULT_REPORT_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final PhaseTimer phaseTimer = new PhaseTimer();
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private final LatencyHistogram inputToPresent = new LatencyHistogram();
+    private final LatencyHistogram eventToPresent = new LatencyHistogram();
+    private final LatencyHistogram[] phaseTimes = new LatencyHistogram[FramePhase.values().length];
+    private final LatencyHistogram[] gpuTimes = new LatencyHistogram[GpuPhase.values().length];
+    private final long[] gpuDurations = new long[GpuPhase.values().length];
+    private final long reportIntervalNanos;
+    private final MetricsExporter exporter;
+
+    private long lastFrameStart = -1L;
+    private long intervalStart = -1L;
+    private long framesInInterval;
+    private MetricsSnapshot lastSnapshot;
+
+    public FrameMetrics(MetricsExporter exporter) {
+        this(DEFAULT_REPORT_INTERVAL_NANOS, exporter);
+    }
+
+    /*
+     * exporter may be null, the snapshots are still available through getLastSnapshot()
+     */
+    public FrameMetrics(long reportIntervalNanos, MetricsExporter exporter) {
+        this.reportIntervalNanos = reportIntervalNanos;
+        this.exporter = exporter;
+
+        for (int i = 0; i < this.phaseTimes.length; i++) {
+            this.phaseTimes[i] = new LatencyHistogram();
+        }
+
+        for (int i = 0; i < this.gpuTimes.length; i++) {
+            this.gpuTimes[i] = new LatencyHistogram();
+        }
+    }
+
+    public void beginFrame() {
+        final long now = System.nanoTime();
+
+        if (this.lastFrameStart >= 0) {
+            this.frameTimes.record(now - this.lastFrameStart);
+        }
+
+        if (this.intervalStart < 0) {
+            this.intervalStart = now;
+        }
+
+        this.lastFrameStart = now;
+    }
+
+    /*
+     * Target array for GpuTimer.read(); call recordGpuDurations() when the read succeeded.
+     */
+    public long[] getGpuDurations() {
+        return this.gpuDurations;
+    }
+
+    public void recordGpuDurations() {
+        for (int i = 0; i < this.gpuTimes.length; i++) {
+            this.gpuTimes[i].record(this.gpuDurations[i]);
+        }
+    }
+
+    public void recordInputToPresent(long nanos) {
+        this.inputToPresent.record(nanos);
+    }
+
+    public void recordEventToPresent(long nanos) {
+        this.eventToPresent.record(nanos);
+    }
+
+    /*
+     * Returns true when a new snapshot was produced.
+     */
+    public boolean endFrame() {
+        for (FramePhase phase : FramePhase.values()) {
+            final long nanos = this.phaseTimer.getNanos(phase);
+
+            if (nanos != PhaseTimer.NOT_MEASURED) {
+                this.phaseTimes[phase.ordinal()].record(nanos);
+            }
+        }
+
+        this.phaseTimer.reset();
+        this.framesInInterval++;
+
+        final long now = System.nanoTime();
+
+        if (now - this.intervalStart < this.reportIntervalNanos) {
+            return false;
+        }
+
+        this.lastSnapshot = createSnapshot(now - this.intervalStart);
+
+        if (this.exporter != null) {
+            this.exporter.export(this.lastSnapshot);
+        }
+
+        resetInterval(now);
+        return true;
+    }
+
+    public PhaseTimer getPhaseTimer() {
+        return this.phaseTimer;
+    }
+
+    public MetricsSnapshot getLastSnapshot() {
+        return this.lastSnapshot;
+    }
+
+    private MetricsSnapshot createSnapshot(long intervalNanos) {
+        List<SeriesSummary> series = new ArrayList<>(3 + this.phaseTimes.length + this.gpuTimes.length);
+        series.add(SeriesSummary.of(FRAME_TIME, this.frameTimes));
+
+        if (this.inputToPresent.getTotalCount() > 0) {
+            series.add(SeriesSummary.of(INPUT_TO_PRESENT, this.inputToPresent));
+        }
+
+        if (this.eventToPresent.getTotalCount() > 0) {
+            series.add(SeriesSummary.of(EVENT_TO_PRESENT, this.eventToPresent));
+        }
+
+        for (FramePhase phase : FramePhase.values()) {
+            if (this.phaseTimes[phase.ordinal()].getTotalCount() > 0) {
+                series.add(SeriesSummary.of(phase.getMetricName(), this.phaseTimes[phase.ordinal()]));
+            }
+        }
+
+        for (GpuPhase phase : GpuPhase.values()) {
+            if (this.gpuTimes[phase.ordinal()].getTotalCount() > 0) {
+                series.add(SeriesSummary.of(phase.getMetricName(), this.gpuTimes[phase.ordinal()]));
+            }
+        }
+
+        return new MetricsSnapshot(System.currentTimeMillis(), this.framesInInterval, intervalNanos, series);
+    }
+
+    private void resetInterval(long now) {
+        this.frameTimes.reset();
+        this.inputToPresent.reset();
+        this.eventToPresent.reset();
+
+        for (LatencyHistogram histogram : this.phaseTimes) {
+            histogram.reset();
+        }
+
+        for (LatencyHistogram histogram : this.gpuTimes) {
+            histogram.reset();
+        }
+
+        this.intervalStart = now;
+        this.framesInInterval = 0;
+    }
+}
@@ -0,0 +1,16 @@
+package vulkan.tutorial.metrics;
+
+public interface FrameMetricsMXBean {
+
+    double getFramesPerSecond();
+
+    double getFrameTimeP50Millis();
+
+    double getFrameTimeP99Millis();
+
+    double getFrameTimeMaxMillis();
+
+    long getFrameCount();
+
+    String getLastSnapshotJson();
+}
@@ -0,0 +1,26 @@
+package vulkan.tutorial.metrics;
+
+/*
+ * CPU side parts of a frame, measured by the PhaseTimer.
+ */
+public enum FramePhase {
+    //frame limiter, and the early fence wait of the low latency mode
+    PACE("pace"),
+    SCENE_UPDATE("sceneUpdate"),
+    FENCE_WAIT("fenceWait"),
+    ACQUIRE("acquire"),
+    UBO_UPDATE("uboUpdate"),
+    SUBMIT("submit"),
+    PRESENT("present"),
+    READBACK("readback");
+
+    private final String metricName;
+
+    FramePhase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return this.metricName;
+    }
+}
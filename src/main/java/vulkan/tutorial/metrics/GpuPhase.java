@@ -0,0 +1,26 @@
+package vulkan.tutorial.metrics;
+
+/*
+ * GPU side parts of the ray tracing command buffer. Each phase lies between two timestamps, so a
+ * command buffer writes GpuPhase.values().length + 1 timestamps.
+ */
+public enum GpuPhase {
+    TRACE_RAYS("gpuTraceRays"),
+    DENOISE("gpuDenoise"),
+    TONEMAP("gpuTonemap"),
+    PRE_COPY_BARRIERS("gpuPreCopyBarriers"),
+    COPY("gpuCopy"),
+    POST_COPY_BARRIERS("gpuPostCopyBarriers");
+
+    public static final int TIMESTAMP_COUNT = values().length + 1;
+
+    private final String metricName;
+
+    GpuPhase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return this.metricName;
+    }
+}
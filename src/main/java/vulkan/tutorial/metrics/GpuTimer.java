@@ -0,0 +1,126 @@
+package vulkan.tutorial.metrics;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.*;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/*
+ * A timestamp VkQueryPool with one range of GpuPhase.TIMESTAMP_COUNT queries per command buffer.
+ *
+ * The command buffers are recorded once, so every one of them resets its own range before writing
+ * new timestamps. Results are read without waiting: a range that is not available yet (or was never
+ * written) is simply skipped.
+ */
+public class GpuTimer {
+    private final VkDevice vkDevice;
+    private final int slotCount;
+    private final boolean supported;
+    private final double timestampPeriod;
+    private final long timestampMask;
+    private final long queryPool;
+    private final LongBuffer results;
+
+    public GpuTimer(VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice, int queueFamilyIndex, int slotCount) {
+        this.vkDevice = vkDevice;
+        this.slotCount = slotCount;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceProperties properties = VkPhysicalDeviceProperties.malloc(stack);
+            VK10.vkGetPhysicalDeviceProperties(vkPhysicalDevice, properties);
+
+            this.timestampPeriod = properties.limits().timestampPeriod();
+
+            final int validBits = fetchTimestampValidBits(vkPhysicalDevice, queueFamilyIndex, stack);
+            this.timestampMask = validBits >= 64 ? -1L : (1L << validBits) - 1;
+            this.supported = validBits > 0 && this.timestampPeriod > 0;
+
+            if (!this.supported) {
+                this.queryPool = VK10.VK_NULL_HANDLE;
+                this.results = null;
+                return;
+            }
+
+            VkQueryPoolCreateInfo createInfo = VkQueryPoolCreateInfo.calloc(stack);
+            createInfo.sType(VK10.VK_STRUCTURE_TYPE_QUERY_POOL_CREATE_INFO);
+            createInfo.queryType(VK10.VK_QUERY_TYPE_TIMESTAMP);
+            createInfo.queryCount(slotCount * GpuPhase.TIMESTAMP_COUNT);
+
+            LongBuffer pQueryPool = stack.mallocLong(1);
+
+            if (VK10.vkCreateQueryPool(vkDevice, createInfo, null, pQueryPool) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create timestamp query pool");
+            }
+
+            this.queryPool = pQueryPool.get(0);
+            this.results = MemoryUtil.memAllocLong(GpuPhase.TIMESTAMP_COUNT);
+        }
+    }
+
+    private static int fetchTimestampValidBits(VkPhysicalDevice vkPhysicalDevice, int queueFamilyIndex, MemoryStack stack) {
+        IntBuffer queueFamilyCount = stack.ints(0);
+        VK10.vkGetPhysicalDeviceQueueFamilyProperties(vkPhysicalDevice, queueFamilyCount, null);
+
+        VkQueueFamilyProperties.Buffer queueFamilies = VkQueueFamilyProperties.malloc(queueFamilyCount.get(0), stack);
+        VK10.vkGetPhysicalDeviceQueueFamilyProperties(vkPhysicalDevice, queueFamilyCount, queueFamilies);
+
+        return queueFamilies.get(queueFamilyIndex).timestampValidBits();
+    }
+
+    public boolean isSupported() {
+        return this.supported;
+    }
+
+    public void cmdReset(VkCommandBuffer commandBuffer, int slot) {
+        if (this.supported) {
+            VK10.vkCmdResetQueryPool(commandBuffer, this.queryPool, slot * GpuPhase.TIMESTAMP_COUNT, GpuPhase.TIMESTAMP_COUNT);
+        }
+    }
+
+    /*
+     * index 0 is written before the first phase, index i + 1 after GpuPhase.values()[i]
+     */
+    public void cmdTimestamp(VkCommandBuffer commandBuffer, int slot, int index) {
+        if (this.supported) {
+            VK10.vkCmdWriteTimestamp(commandBuffer, VK10.VK_PIPELINE_STAGE_BOTTOM_OF_PIPE_BIT, this.queryPool,
+                    slot * GpuPhase.TIMESTAMP_COUNT + index);
+        }
+    }
+
+    /*
+     * Writes the duration of every GpuPhase in nanoseconds into durations and returns true, or
+     * returns false when the results of the slot are not available.
+     */
+    public boolean read(int slot, long[] durations) {
+        if (!this.supported) {
+            return false;
+        }
+
+        final int result = VK10.vkGetQueryPoolResults(this.vkDevice, this.queryPool, slot * GpuPhase.TIMESTAMP_COUNT,
+                GpuPhase.TIMESTAMP_COUNT, this.results, Long.BYTES, VK10.VK_QUERY_RESULT_64_BIT);
+
+        if (result != VK10.VK_SUCCESS) {
+            return false;
+        }
+
+        for (int i = 0; i < durations.length; i++) {
+            final long ticks = (this.results.get(i + 1) - this.results.get(i)) & this.timestampMask;
+            durations[i] = (long) (ticks * this.timestampPeriod);
+        }
+
+        return true;
+    }
+
+    public int getSlotCount() {
+        return this.slotCount;
+    }
+
+    public void destroy() {
+        if (this.supported) {
+            VK10.vkDestroyQueryPool(this.vkDevice, this.queryPool, null);
+            MemoryUtil.memFree(this.results);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package vulkan.tutorial.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/*
+ * Publishes the latest snapshot as vulkan.tutorial:type=FrameMetrics, e.g. for JConsole or VisualVM.
+ */
+public class JmxExporter implements MetricsExporter, FrameMetricsMXBean {
+    public static final String OBJECT_NAME = "vulkan.tutorial:type=FrameMetrics";
+
+    private final ObjectName objectName;
+    private volatile MetricsSnapshot lastSnapshot;
+
+    public JmxExporter() {
+        try {
+            this.objectName = new ObjectName(OBJECT_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to register " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public void export(MetricsSnapshot snapshot) {
+        this.lastSnapshot = snapshot;
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        MetricsSnapshot snapshot = this.lastSnapshot;
+        return snapshot == null ? 0.0 : snapshot.getFramesPerSecond();
+    }
+
+    @Override
+    public double getFrameTimeP50Millis() {
+        SeriesSummary frame = frameSeries();
+        return frame == null ? 0.0 : frame.getP50Nanos() / 1e6;
+    }
+
+    @Override
+    public double getFrameTimeP99Millis() {
+        SeriesSummary frame = frameSeries();
+        return frame == null ? 0.0 : frame.getP99Nanos() / 1e6;
+    }
+
+    @Override
+    public double getFrameTimeMaxMillis() {
+        SeriesSummary frame = frameSeries();
+        return frame == null ? 0.0 : frame.getMaxNanos() / 1e6;
+    }
+
+    @Override
+    public long getFrameCount() {
+        MetricsSnapshot snapshot = this.lastSnapshot;
+        return snapshot == null ? 0L : snapshot.getFrameCount();
+    }
+
+    @Override
+    public String getLastSnapshotJson() {
+        MetricsSnapshot snapshot = this.lastSnapshot;
+        return snapshot == null ? "{}" : snapshot.toJson();
+    }
+
+    @Override
+    public void close() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            if (server.isRegistered(this.objectName)) {
+                server.unregisterMBean(this.objectName);
+            }
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to unregister " + OBJECT_NAME, e);
+        }
+    }
+
+    private SeriesSummary frameSeries() {
+        MetricsSnapshot snapshot = this.lastSnapshot;
+        return snapshot == null ? null : snapshot.getSeries(FrameMetrics.FRAME_TIME);
+    }
+}
@@ -0,0 +1,47 @@
+package vulkan.tutorial.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ * Appends one JSON object per report interval to a file.
+ */
+public class JsonLinesExporter implements MetricsExporter {
+    private final Path path;
+    private final BufferedWriter writer;
+
+    public JsonLinesExporter(Path path) {
+        this.path = path;
+
+        try {
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open metrics file " + path, e);
+        }
+    }
+
+    @Override
+    public void export(MetricsSnapshot snapshot) {
+        try {
+            this.writer.write(snapshot.toJson());
+            this.writer.newLine();
+            this.writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write metrics into " + this.path, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close metrics file " + this.path, e);
+        }
+    }
+}
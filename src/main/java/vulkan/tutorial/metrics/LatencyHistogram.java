@@ -0,0 +1,100 @@
+package vulkan.tutorial.metrics;
+
+import java.util.Arrays;
+
+/*
+ * A fixed size log-linear histogram in the spirit of HdrHistogram.
+ *
+ * Values below 128 get their own bucket, above that every power of two is split into 64 linear
+ * sub buckets, which keeps the relative error of a reported percentile below 1.6%. Values are
+ * clamped to 2^40 (about 18 minutes in nanoseconds). Recording never allocates.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * HALF_SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private long sum;
+
+    public void record(long value) {
+        final long clamped = Math.max(0L, Math.min(value, MAX_TRACKABLE_VALUE));
+
+        this.counts[indexOf(clamped)]++;
+        this.totalCount++;
+        this.sum += clamped;
+        this.min = Math.min(this.min, clamped);
+        this.max = Math.max(this.max, clamped);
+    }
+
+    public long getValueAtPercentile(double percentile) {
+        if (this.totalCount == 0) {
+            return 0L;
+        }
+
+        final long target = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * this.totalCount));
+        long cumulative = 0;
+
+        for (int i = 0; i < this.counts.length; i++) {
+            cumulative += this.counts[i];
+
+            if (cumulative >= target) {
+                return Math.min(highestEquivalentValue(i), this.max);
+            }
+        }
+
+        return this.max;
+    }
+
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    public long getMin() {
+        return this.totalCount == 0 ? 0L : this.min;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    public double getMean() {
+        return this.totalCount == 0 ? 0.0 : (double) this.sum / this.totalCount;
+    }
+
+    public void reset() {
+        Arrays.fill(this.counts, 0L);
+        this.totalCount = 0;
+        this.min = Long.MAX_VALUE;
+        this.max = 0;
+        this.sum = 0;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        final int mantissa = (int) (value >>> shift);
+
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (mantissa - HALF_SUB_BUCKET_COUNT);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        final int shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+        final long mantissa = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,11 @@
+package vulkan.tutorial.metrics;
+
+public interface MetricsExporter extends AutoCloseable {
+
+    void export(MetricsSnapshot snapshot);
+
+    @Override
+    default void close() {
+        //Nothing to release by default
+    }
+}
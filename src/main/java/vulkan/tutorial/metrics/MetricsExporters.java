@@ -0,0 +1,25 @@
+package vulkan.tutorial.metrics;
+
+import java.nio.file.Paths;
+
+public class MetricsExporters {
+
+    private MetricsExporters() {
+        //Util class
+    }
+
+    /*
+     * jsonl:<file> or jmx
+     */
+    public static MetricsExporter fromSpec(String spec) {
+        if (spec.equals("jmx")) {
+            return new JmxExporter();
+        }
+
+        if (spec.startsWith("jsonl:")) {
+            return new JsonLinesExporter(Paths.get(spec.substring("jsonl:".length())));
+        }
+
+        throw new IllegalArgumentException("Metrics exporter must be jsonl:<file> or jmx, got " + spec);
+    }
+}
@@ -0,0 +1,66 @@
+package vulkan.tutorial.metrics;
+
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Summary of one report interval. Created once per interval, never per frame.
+ */
+public class MetricsSnapshot {
+    private final long timestampMillis;
+    private final long frameCount;
+    private final long intervalNanos;
+    private final List<SeriesSummary> series;
+
+    public MetricsSnapshot(long timestampMillis, long frameCount, long intervalNanos, List<SeriesSummary> series) {
+        this.timestampMillis = timestampMillis;
+        this.frameCount = frameCount;
+        this.intervalNanos = intervalNanos;
+        this.series = List.copyOf(series);
+    }
+
+    public double getFramesPerSecond() {
+        return this.intervalNanos == 0 ? 0.0 : this.frameCount * 1e9 / this.intervalNanos;
+    }
+
+    public SeriesSummary getSeries(String name) {
+        return this.series.stream()
+                .filter(summary -> summary.getName().equals(name))
+                .findAny()
+                .orElse(null);
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"timestamp\":").append(this.timestampMillis)
+                .append(",\"frames\":").append(this.frameCount)
+                .append(",\"fps\":").append(String.format(Locale.ROOT, "%.2f", getFramesPerSecond()));
+
+        for (SeriesSummary summary : this.series) {
+            json.append(",\"").append(summary.getName()).append("\":{")
+                    .append("\"count\":").append(summary.getCount())
+                    .append(",\"p50Ns\":").append(summary.getP50Nanos())
+                    .append(",\"p99Ns\":").append(summary.getP99Nanos())
+                    .append(",\"maxNs\":").append(summary.getMaxNanos())
+                    .append('}');
+        }
+
+        return json.append('}').toString();
+    }
+
+    public long getTimestampMillis() {
+        return this.timestampMillis;
+    }
+
+    public long getFrameCount() {
+        return this.frameCount;
+    }
+
+    public long getIntervalNanos() {
+        return this.intervalNanos;
+    }
+
+    public List<SeriesSummary> getSeries() {
+        return this.series;
+    }
+}
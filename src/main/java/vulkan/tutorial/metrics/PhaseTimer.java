@@ -0,0 +1,40 @@
+package vulkan.tutorial.metrics;
+
+import java.util.Arrays;
+
+/*
+ * Measures the CPU phases of one frame with System.nanoTime(). Only primitive arrays are touched,
+ * so it can run every frame without producing garbage.
+ */
+public class PhaseTimer {
+    public static final long NOT_MEASURED = -1L;
+
+    private final long[] startNanos = new long[FramePhase.values().length];
+    private final long[] durationNanos = new long[FramePhase.values().length];
+
+    public PhaseTimer() {
+        reset();
+    }
+
+    public void begin(FramePhase phase) {
+        this.startNanos[phase.ordinal()] = System.nanoTime();
+    }
+
+    /*
+     * A phase can be entered several times per frame (e.g. two fence waits); the durations add up.
+     */
+    public void end(FramePhase phase) {
+        final int index = phase.ordinal();
+        final long elapsed = System.nanoTime() - this.startNanos[index];
+
+        this.durationNanos[index] = this.durationNanos[index] == NOT_MEASURED ? elapsed : this.durationNanos[index] + elapsed;
+    }
+
+    public long getNanos(FramePhase phase) {
+        return this.durationNanos[phase.ordinal()];
+    }
+
+    public void reset() {
+        Arrays.fill(this.durationNanos, NOT_MEASURED);
+    }
+}
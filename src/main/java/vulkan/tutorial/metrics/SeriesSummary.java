@@ -0,0 +1,42 @@
+package vulkan.tutorial.metrics;
+
+public class SeriesSummary {
+    private final String name;
+    private final long count;
+    private final long p50Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    public SeriesSummary(String name, long count, long p50Nanos, long p99Nanos, long maxNanos) {
+        this.name = name;
+        this.count = count;
+        this.p50Nanos = p50Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    static SeriesSummary of(String name, LatencyHistogram histogram) {
+        return new SeriesSummary(name, histogram.getTotalCount(), histogram.getValueAtPercentile(50.0),
+                histogram.getValueAtPercentile(99.0), histogram.getMax());
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getP50Nanos() {
+        return this.p50Nanos;
+    }
+
+    public long getP99Nanos() {
+        return this.p99Nanos;
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+}
@@ -0,0 +1,89 @@
+package vulkan.tutorial.present;
+
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Starts a frame at most every frameNanos: waitForNextFrame() sleeps until shortly before the
+ * deadline and spins the rest of the way, a sleep alone oversleeps by up to a scheduler tick.
+ *
+ * How long before the deadline the sleeping stops follows the oversleep that was observed, a
+ * maximum that slowly decays, plus MIN_SPIN_NANOS. The estimate is capped at a quarter of a frame
+ * and MAX_OVERSLEEP_NANOS, so a single stall (a GC pause, a suspend, a debugger) can't turn the
+ * limiter into a busy loop, and it decays once per frame whether the frame slept or not. A frame
+ * that starts late moves the deadlines instead of rushing the next frames to catch up.
+ */
+public class FrameLimiter {
+    public static final long MIN_SPIN_NANOS = 50_000L;
+    public static final long MAX_OVERSLEEP_NANOS = 2_000_000L;
+
+    private static final long INITIAL_OVERSLEEP_NANOS = 1_000_000L;
+    //per frame, the oversleep estimate halves in about 70 frames without a larger one
+    private static final double OVERSLEEP_DECAY = 0.99;
+
+    private final long frameNanos;
+    private final long maxOversleepNanos;
+    private long nextFrameStart = -1L;
+    private long oversleepNanos;
+
+    public FrameLimiter(long frameNanos) {
+        if (frameNanos < 0) {
+            throw new IllegalArgumentException("Frame time can't be negative, got " + frameNanos + "ns");
+        }
+
+        this.frameNanos = frameNanos;
+        this.maxOversleepNanos = Math.min(MAX_OVERSLEEP_NANOS, frameNanos / 4);
+        this.oversleepNanos = Math.min(INITIAL_OVERSLEEP_NANOS, this.maxOversleepNanos);
+    }
+
+    /*
+     * Returns the nanoseconds waited, always 0 without a limit
+     */
+    public long waitForNextFrame() {
+        if (this.frameNanos == 0) {
+            return 0L;
+        }
+
+        final long start = System.nanoTime();
+
+        if (this.nextFrameStart < 0 || start - this.nextFrameStart > this.frameNanos) {
+            //first frame, or more than a frame late: start over from now
+            this.nextFrameStart = start + this.frameNanos;
+            return 0L;
+        }
+
+        final long deadline = this.nextFrameStart;
+        this.oversleepNanos = (long) (this.oversleepNanos * OVERSLEEP_DECAY);
+
+        for (long remaining = deadline - start; remaining > getSpinNanos(); remaining = deadline - System.nanoTime()) {
+            final long sleep = remaining - getSpinNanos();
+            final long sleepStart = System.nanoTime();
+
+            LockSupport.parkNanos(sleep);
+
+            observeOversleep(System.nanoTime() - sleepStart - sleep);
+        }
+
+        while (System.nanoTime() - deadline < 0) {
+            Thread.onSpinWait();
+        }
+
+        this.nextFrameStart = deadline + this.frameNanos;
+
+        return System.nanoTime() - start;
+    }
+
+    void observeOversleep(long oversleepNanos) {
+        this.oversleepNanos = Math.min(this.maxOversleepNanos, Math.max(oversleepNanos, this.oversleepNanos));
+    }
+
+    /*
+     * How long before a deadline the limiter stops sleeping
+     */
+    public long getSpinNanos() {
+        return this.oversleepNanos + MIN_SPIN_NANOS;
+    }
+
+    public long getFrameNanos() {
+        return this.frameNanos;
+    }
+}
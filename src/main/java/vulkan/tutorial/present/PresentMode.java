@@ -0,0 +1,50 @@
+package vulkan.tutorial.present;
+
+import org.lwjgl.vulkan.KHRSurface;
+
+public enum PresentMode {
+    //waits for vblank, always supported
+    FIFO("fifo", KHRSurface.VK_PRESENT_MODE_FIFO_KHR),
+    //waits for vblank unless the frame is late, then it tears
+    FIFO_RELAXED("fifo-relaxed", KHRSurface.VK_PRESENT_MODE_FIFO_RELAXED_KHR),
+    //no tearing, a newer frame replaces the queued one
+    MAILBOX("mailbox", KHRSurface.VK_PRESENT_MODE_MAILBOX_KHR),
+    //no waiting at all, tears
+    IMMEDIATE("immediate", KHRSurface.VK_PRESENT_MODE_IMMEDIATE_KHR);
+
+    private final String name;
+    private final int vkPresentMode;
+
+    PresentMode(String name, int vkPresentMode) {
+        this.name = name;
+        this.vkPresentMode = vkPresentMode;
+    }
+
+    public static PresentMode fromName(String name) {
+        for (PresentMode mode : values()) {
+            if (mode.name.equals(name)) {
+                return mode;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown present mode: " + name + ", expected fifo, fifo-relaxed, mailbox or immediate");
+    }
+
+    public static PresentMode fromVkPresentMode(int vkPresentMode) {
+        for (PresentMode mode : values()) {
+            if (mode.vkPresentMode == vkPresentMode) {
+                return mode;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown VkPresentModeKHR " + vkPresentMode);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public int getVkPresentMode() {
+        return this.vkPresentMode;
+    }
+}
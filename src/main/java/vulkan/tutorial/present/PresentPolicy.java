@@ -0,0 +1,147 @@
+package vulkan.tutorial.present;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * How frames are presented: the present modes to try in order, a frame rate limit and the low
+ * latency mode.
+ *
+ * FIFO is always supported and is the last fallback of every order. frameNanos 0 doesn't limit the
+ * frame rate, otherwise a FrameLimiter starts a frame at most every frameNanos. In the low latency
+ * mode the render thread waits for the previous use of the frame slot before it samples the input,
+ * instead of sampling it first and waiting afterwards, so the input is as fresh as possible once the
+ * frame goes to the GPU.
+ *
+ * The default is the behavior of the original tutorial: mailbox if supported, FIFO otherwise.
+ * throughput() never waits for vblank, lowLatency() adds the early wait to mailbox.
+ */
+public class PresentPolicy {
+    private static final PresentPolicy DEFAULT = new PresentPolicy(List.of(PresentMode.MAILBOX), 0L, false);
+
+    private final List<PresentMode> modes;
+    private final long frameNanos;
+    private final boolean lowLatency;
+
+    public PresentPolicy(List<PresentMode> modes, long frameNanos, boolean lowLatency) {
+        if (frameNanos < 0) {
+            throw new IllegalArgumentException("Frame time limit can't be negative, got " + frameNanos + "ns");
+        }
+
+        List<PresentMode> order = new ArrayList<>(modes);
+        order.remove(PresentMode.FIFO);
+        order.add(PresentMode.FIFO);
+
+        this.modes = List.copyOf(order);
+        this.frameNanos = frameNanos;
+        this.lowLatency = lowLatency;
+    }
+
+    public static PresentPolicy createDefault() {
+        return DEFAULT;
+    }
+
+    public static PresentPolicy throughput() {
+        return new PresentPolicy(List.of(PresentMode.IMMEDIATE, PresentMode.MAILBOX, PresentMode.FIFO_RELAXED), 0L, false);
+    }
+
+    public static PresentPolicy lowLatency() {
+        return new PresentPolicy(List.of(PresentMode.MAILBOX, PresentMode.FIFO_RELAXED), 0L, true);
+    }
+
+    public static PresentPolicy vsync() {
+        return new PresentPolicy(List.of(PresentMode.FIFO), 0L, false);
+    }
+
+    /*
+     * default, throughput, low-latency or vsync
+     */
+    public static PresentPolicy fromName(String name) {
+        switch (name) {
+            case "default":
+                return createDefault();
+            case "throughput":
+                return throughput();
+            case "low-latency":
+                return lowLatency();
+            case "vsync":
+                return vsync();
+            default:
+                throw new IllegalArgumentException("Unknown present policy: " + name + ", expected default, throughput, low-latency or vsync");
+        }
+    }
+
+    /*
+     * maxFramesPerSecond 0 removes the limit
+     */
+    public PresentPolicy withFrameRateLimit(double maxFramesPerSecond) {
+        if (maxFramesPerSecond < 0.0) {
+            throw new IllegalArgumentException("Frame rate limit can't be negative, got " + maxFramesPerSecond);
+        }
+
+        return new PresentPolicy(this.modes, maxFramesPerSecond == 0.0 ? 0L : Math.round(1e9 / maxFramesPerSecond), this.lowLatency);
+    }
+
+    public PresentPolicy withModes(List<PresentMode> modes) {
+        return new PresentPolicy(modes, this.frameNanos, this.lowLatency);
+    }
+
+    public PresentPolicy withLowLatency(boolean lowLatency) {
+        return new PresentPolicy(this.modes, this.frameNanos, lowLatency);
+    }
+
+    /*
+     * The first mode of the order the surface supports, supportedModes as reported by
+     * vkGetPhysicalDeviceSurfacePresentModesKHR
+     */
+    public PresentMode choosePresentMode(IntBuffer supportedModes) {
+        for (PresentMode mode : this.modes) {
+            for (int i = 0; i < supportedModes.capacity(); i++) {
+                if (supportedModes.get(i) == mode.getVkPresentMode()) {
+                    return mode;
+                }
+            }
+        }
+
+        return PresentMode.FIFO;
+    }
+
+    /*
+     * Ends with FIFO
+     */
+    public List<PresentMode> getModes() {
+        return this.modes;
+    }
+
+    public long getFrameNanos() {
+        return this.frameNanos;
+    }
+
+    public boolean isFrameRateLimited() {
+        return this.frameNanos > 0;
+    }
+
+    public boolean isLowLatency() {
+        return this.lowLatency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+
+        for (PresentMode mode : this.modes) {
+            builder.append(builder.length() == 0 ? "" : " > ").append(mode.getName());
+        }
+
+        if (isFrameRateLimited()) {
+            builder.append(String.format(", limited to %.1f fps", 1e9 / this.frameNanos));
+        }
+
+        if (this.lowLatency) {
+            builder.append(", low latency");
+        }
+
+        return builder.toString();
+    }
+}
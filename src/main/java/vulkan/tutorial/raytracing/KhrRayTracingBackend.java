@@ -0,0 +1,848 @@
+package vulkan.tutorial.raytracing;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.*;
+import vulkan.tutorial.lwjgl.LwjglAdapter;
+import vulkan.tutorial.scene.InstanceBufferWriter;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.vulkan.BlasGeometry;
+import vulkan.tutorial.vulkan.ScratchPlan;
+import vulkan.tutorial.vulkan.VulkanUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongToIntFunction;
+
+/*
+ * VK_KHR_acceleration_structure and VK_KHR_ray_tracing_pipeline. Acceleration structures live in
+ * buffers and everything the GPU reads (geometry, instances, scratch, shader binding table) is passed
+ * by device address.
+ *
+ * BLAS are built with one vkCmdBuildAccelerationStructuresKHR per scratch wave. When the driver
+ * supports accelerationStructureHostCommands and the geometries are host visible, they are built on
+ * the CPU instead, each wave is a deferred operation joined by as many threads as the driver can use.
+ * The ray tracing pipeline is always compiled through a deferred operation.
+ */
+public class KhrRayTracingBackend implements RayTracingBackend {
+
+    //BLAS builds that may run at the same time, each one gets its own slice of the scratch buffer
+    private static final int BLAS_SCRATCH_POOLS = 4;
+    private static final long SCRATCH_ALIGNMENT = 256;
+
+    private final VkDevice vkDevice;
+    private final VkPhysicalDevice vkPhysicalDevice;
+    private final long commandPool;
+    private final VkQueue vkQueue;
+    private final int shaderGroupHandleSize;
+    private final int shaderGroupBaseAlignment;
+    private final int shaderGroupHandleAlignment;
+    private final long scratchAlignment;
+    private final boolean hostCommands;
+    private List<Long> blases = new ArrayList<>();
+    private List<Long> blasBuffers = new ArrayList<>();
+    private List<Long> blasBuffersMemory = new ArrayList<>();
+    private long tlas;
+    private long tlasBuffer;
+    private long tlasBufferMemory;
+    private int tlasBuildFlags;
+    private long tlasScratchBuffer;
+    private long tlasScratchBufferMemory;
+    private long tlasScratchAddress;
+
+    KhrRayTracingBackend(VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice, long commandPool, VkQueue vkQueue) {
+        this.vkDevice = vkDevice;
+        this.vkPhysicalDevice = vkPhysicalDevice;
+        this.commandPool = commandPool;
+        this.vkQueue = vkQueue;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceAccelerationStructurePropertiesKHR accelerationStructureProperties = VkPhysicalDeviceAccelerationStructurePropertiesKHR.calloc(stack);
+            accelerationStructureProperties.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_ACCELERATION_STRUCTURE_PROPERTIES_KHR);
+
+            VkPhysicalDeviceRayTracingPipelinePropertiesKHR rayTracingPipelineProperties = VkPhysicalDeviceRayTracingPipelinePropertiesKHR.calloc(stack);
+            rayTracingPipelineProperties.sType(KHRRayTracingPipeline.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_RAY_TRACING_PIPELINE_PROPERTIES_KHR);
+            rayTracingPipelineProperties.pNext(accelerationStructureProperties.address());
+
+            VkPhysicalDeviceProperties2 props2 = VkPhysicalDeviceProperties2.calloc(stack);
+            props2.sType(VK11.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_PROPERTIES_2);
+            props2.pNext(rayTracingPipelineProperties.address());
+
+            VK11.vkGetPhysicalDeviceProperties2(vkPhysicalDevice, props2);
+
+            this.shaderGroupHandleSize = rayTracingPipelineProperties.shaderGroupHandleSize();
+            this.shaderGroupBaseAlignment = rayTracingPipelineProperties.shaderGroupBaseAlignment();
+            this.shaderGroupHandleAlignment = rayTracingPipelineProperties.shaderGroupHandleAlignment();
+            this.scratchAlignment = Math.max(SCRATCH_ALIGNMENT, accelerationStructureProperties.minAccelerationStructureScratchOffsetAlignment());
+            this.hostCommands = fetchAccelerationStructureFeatures(vkPhysicalDevice, stack).accelerationStructureHostCommands();
+
+            System.out.println("Ray tracing: VK_KHR_ray_tracing_pipeline");
+            System.out.println("maxRecursion: " + rayTracingPipelineProperties.maxRayRecursionDepth());
+            System.out.println("accelerationStructureHostCommands: " + this.hostCommands);
+        }
+    }
+
+    /*
+     * KHR ray tracing reads everything by device address, the device needs Vulkan 1.2 for bufferDeviceAddress
+     */
+    static boolean isFeatureSupported(VkPhysicalDevice vkPhysicalDevice) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceProperties properties = VkPhysicalDeviceProperties.malloc(stack);
+            VK10.vkGetPhysicalDeviceProperties(vkPhysicalDevice, properties);
+
+            if (Integer.compareUnsigned(properties.apiVersion(), VK12.VK_API_VERSION_1_2) < 0) {
+                return false;
+            }
+
+            VkPhysicalDeviceRayTracingPipelineFeaturesKHR rayTracingPipelineFeatures = VkPhysicalDeviceRayTracingPipelineFeaturesKHR.calloc(stack);
+            rayTracingPipelineFeatures.sType(KHRRayTracingPipeline.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_RAY_TRACING_PIPELINE_FEATURES_KHR);
+
+            VkPhysicalDeviceAccelerationStructureFeaturesKHR accelerationStructureFeatures = VkPhysicalDeviceAccelerationStructureFeaturesKHR.calloc(stack);
+            accelerationStructureFeatures.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_ACCELERATION_STRUCTURE_FEATURES_KHR);
+            accelerationStructureFeatures.pNext(rayTracingPipelineFeatures.address());
+
+            VkPhysicalDeviceVulkan12Features vulkan12Features = VkPhysicalDeviceVulkan12Features.calloc(stack);
+            vulkan12Features.sType(VK12.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_VULKAN_1_2_FEATURES);
+            vulkan12Features.pNext(accelerationStructureFeatures.address());
+
+            VkPhysicalDeviceFeatures2 features2 = VkPhysicalDeviceFeatures2.calloc(stack);
+            features2.sType(VK11.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_FEATURES_2);
+            features2.pNext(vulkan12Features.address());
+
+            VK11.vkGetPhysicalDeviceFeatures2(vkPhysicalDevice, features2);
+
+            return vulkan12Features.bufferDeviceAddress()
+                    && accelerationStructureFeatures.accelerationStructure()
+                    && rayTracingPipelineFeatures.rayTracingPipeline();
+        }
+    }
+
+    /*
+     * Feature chain for VkDeviceCreateInfo.pNext, allocated on the stack of the device creation
+     */
+    static long createFeatureChain(VkPhysicalDevice vkPhysicalDevice, MemoryStack stack) {
+        VkPhysicalDeviceVulkan12Features vulkan12Features = VkPhysicalDeviceVulkan12Features.calloc(stack);
+        vulkan12Features.sType(VK12.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_VULKAN_1_2_FEATURES);
+        vulkan12Features.bufferDeviceAddress(true);
+
+        VkPhysicalDeviceAccelerationStructureFeaturesKHR accelerationStructureFeatures = VkPhysicalDeviceAccelerationStructureFeaturesKHR.calloc(stack);
+        accelerationStructureFeatures.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_ACCELERATION_STRUCTURE_FEATURES_KHR);
+        accelerationStructureFeatures.pNext(vulkan12Features.address());
+        accelerationStructureFeatures.accelerationStructure(true);
+        accelerationStructureFeatures.accelerationStructureHostCommands(fetchAccelerationStructureFeatures(vkPhysicalDevice, stack).accelerationStructureHostCommands());
+
+        VkPhysicalDeviceRayTracingPipelineFeaturesKHR rayTracingPipelineFeatures = VkPhysicalDeviceRayTracingPipelineFeaturesKHR.calloc(stack);
+        rayTracingPipelineFeatures.sType(KHRRayTracingPipeline.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_RAY_TRACING_PIPELINE_FEATURES_KHR);
+        rayTracingPipelineFeatures.pNext(accelerationStructureFeatures.address());
+        rayTracingPipelineFeatures.rayTracingPipeline(true);
+
+        return rayTracingPipelineFeatures.address();
+    }
+
+    private static VkPhysicalDeviceAccelerationStructureFeaturesKHR fetchAccelerationStructureFeatures(VkPhysicalDevice vkPhysicalDevice, MemoryStack stack) {
+        VkPhysicalDeviceAccelerationStructureFeaturesKHR accelerationStructureFeatures = VkPhysicalDeviceAccelerationStructureFeaturesKHR.calloc(stack);
+        accelerationStructureFeatures.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_ACCELERATION_STRUCTURE_FEATURES_KHR);
+
+        VkPhysicalDeviceFeatures2 features2 = VkPhysicalDeviceFeatures2.calloc(stack);
+        features2.sType(VK11.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_FEATURES_2);
+        features2.pNext(accelerationStructureFeatures.address());
+
+        VK11.vkGetPhysicalDeviceFeatures2(vkPhysicalDevice, features2);
+
+        return accelerationStructureFeatures;
+    }
+
+    @Override
+    public RayTracingApi getApi() {
+        return RayTracingApi.KHR;
+    }
+
+    @Override
+    public int getShaderGroupHandleSize() {
+        return this.shaderGroupHandleSize;
+    }
+
+    @Override
+    public int getShaderGroupBaseAlignment() {
+        return this.shaderGroupBaseAlignment;
+    }
+
+    @Override
+    public int getShaderGroupHandleAlignment() {
+        return this.shaderGroupHandleAlignment;
+    }
+
+    @Override
+    public int getBuildInputBufferUsage() {
+        return KHRAccelerationStructure.VK_BUFFER_USAGE_ACCELERATION_STRUCTURE_BUILD_INPUT_READ_ONLY_BIT_KHR | VK12.VK_BUFFER_USAGE_SHADER_DEVICE_ADDRESS_BIT;
+    }
+
+    @Override
+    public int getShaderBindingTableUsage() {
+        return KHRRayTracingPipeline.VK_BUFFER_USAGE_SHADER_BINDING_TABLE_BIT_KHR | VK12.VK_BUFFER_USAGE_SHADER_DEVICE_ADDRESS_BIT;
+    }
+
+    @Override
+    public int getAccelerationStructureDescriptorType() {
+        return KHRAccelerationStructure.VK_DESCRIPTOR_TYPE_ACCELERATION_STRUCTURE_KHR;
+    }
+
+    /*
+     * Builds one BLAS per geometry. All builds share one scratch allocation split into pools by a
+     * ScratchPlan, the builds of one wave go into a single build call. The structures are compacted afterwards.
+     */
+    @Override
+    public long[] buildBlases(List<BlasGeometry> geometries) {
+        final int count = geometries.size();
+        final int buildFlags = KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_ALLOW_COMPACTION_BIT_KHR | KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_PREFER_FAST_TRACE_BIT_KHR;
+        final boolean onHost = this.hostCommands && geometries.stream().allMatch(BlasGeometry::hasHostData);
+
+        //Heap allocated, a scene can have more geometries than fit on the stack. Geometries are indexed by build, the rest by position
+        VkAccelerationStructureGeometryKHR.Buffer asGeometries = VkAccelerationStructureGeometryKHR.calloc(count);
+        VkAccelerationStructureBuildGeometryInfoKHR.Buffer infos = VkAccelerationStructureBuildGeometryInfoKHR.calloc(count);
+        VkAccelerationStructureBuildRangeInfoKHR.Buffer ranges = VkAccelerationStructureBuildRangeInfoKHR.calloc(count);
+        PointerBuffer pRanges = MemoryUtil.memAllocPointer(count);
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            this.blases = new ArrayList<>(count);
+            this.blasBuffers = new ArrayList<>(count);
+            this.blasBuffersMemory = new ArrayList<>(count);
+
+            long[] originalSizes = new long[count];
+            long[] scratchSizes = new long[count];
+
+            VkAccelerationStructureBuildGeometryInfoKHR sizeInfo = VkAccelerationStructureBuildGeometryInfoKHR.calloc(stack);
+            sizeInfo.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_BUILD_GEOMETRY_INFO_KHR);
+            sizeInfo.type(KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_TYPE_BOTTOM_LEVEL_KHR);
+            sizeInfo.flags(buildFlags);
+            sizeInfo.mode(KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_MODE_BUILD_KHR);
+            sizeInfo.geometryCount(1);
+
+            VkAccelerationStructureBuildSizesInfoKHR buildSizes = VkAccelerationStructureBuildSizesInfoKHR.calloc(stack);
+            buildSizes.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_BUILD_SIZES_INFO_KHR);
+
+            IntBuffer pPrimitiveCount = stack.mallocInt(1);
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            for (int i = 0; i < count; i++) {
+                BlasGeometry geometry = geometries.get(i);
+
+                VkAccelerationStructureGeometryKHR asGeometry = asGeometries.get(i);
+                asGeometry.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_GEOMETRY_KHR);
+                asGeometry.geometryType(KHRAccelerationStructure.VK_GEOMETRY_TYPE_TRIANGLES_KHR);
+                asGeometry.flags(KHRAccelerationStructure.VK_GEOMETRY_OPAQUE_BIT_KHR);
+
+                VkAccelerationStructureGeometryTrianglesDataKHR triangles = asGeometry.geometry().triangles();
+                triangles.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_GEOMETRY_TRIANGLES_DATA_KHR);
+                triangles.vertexFormat(VK10.VK_FORMAT_R32G32B32_SFLOAT);
+                triangles.vertexStride(geometry.getVertexStride());
+                triangles.maxVertex(geometry.getVertexCount() - 1);
+                triangles.indexType(VK10.VK_INDEX_TYPE_UINT32);
+
+                if (onHost) {
+                    triangles.vertexData().hostAddress(MemoryUtil.memAddress(geometry.getHostVertexData()) + geometry.getVertexOffset());
+                    triangles.indexData().hostAddress(MemoryUtil.memAddress(geometry.getHostIndexData()) + geometry.getIndexOffset());
+                } else {
+                    triangles.vertexData().deviceAddress(getBufferDeviceAddress(geometry.getVertexBuffer()) + geometry.getVertexOffset());
+                    triangles.indexData().deviceAddress(getBufferDeviceAddress(geometry.getIndexBuffer()) + geometry.getIndexOffset());
+                }
+
+                sizeInfo.pGeometries(VkAccelerationStructureGeometryKHR.create(asGeometry.address(), 1));
+                pPrimitiveCount.put(0, geometry.getIndexCount() / 3);
+
+                KHRAccelerationStructure.vkGetAccelerationStructureBuildSizesKHR(this.vkDevice,
+                        onHost ? KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_BUILD_TYPE_HOST_KHR : KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_BUILD_TYPE_DEVICE_KHR,
+                        sizeInfo, pPrimitiveCount, buildSizes);
+
+                originalSizes[i] = buildSizes.accelerationStructureSize();
+                scratchSizes[i] = buildSizes.buildScratchSize();
+
+                this.blases.add(createAccelerationStructure(KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_TYPE_BOTTOM_LEVEL_KHR, originalSizes[i], onHost, pBuffer, pBufferMemory));
+                this.blasBuffers.add(pBuffer.get(0));
+                this.blasBuffersMemory.add(pBufferMemory.get(0));
+            }
+
+            ScratchPlan scratchPlan = ScratchPlan.create(scratchSizes, BLAS_SCRATCH_POOLS, this.scratchAlignment);
+
+            System.out.println("BLAS scratch: " + scratchPlan.getTotalSize() + " bytes in " + scratchPlan.getPoolCount()
+                    + " pools for " + count + " builds instead of " + ScratchPlan.getUnpooledSize(scratchSizes) + " bytes"
+                    + (onHost ? " on the host" : ""));
+
+            for (int position = 0; position < count; position++) {
+                final int build = scratchPlan.getBuild(position);
+
+                VkAccelerationStructureBuildGeometryInfoKHR info = infos.get(position);
+                info.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_BUILD_GEOMETRY_INFO_KHR);
+                info.type(KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_TYPE_BOTTOM_LEVEL_KHR);
+                info.flags(buildFlags);
+                info.mode(KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_MODE_BUILD_KHR);
+                info.dstAccelerationStructure(this.blases.get(build));
+                info.geometryCount(1);
+                info.pGeometries(VkAccelerationStructureGeometryKHR.create(asGeometries.get(build).address(), 1));
+
+                VkAccelerationStructureBuildRangeInfoKHR range = ranges.get(position);
+                range.primitiveCount(geometries.get(build).getIndexCount() / 3);
+
+                pRanges.put(position, range.address());
+            }
+
+            long[] compactedSizes = onHost ? buildBlasesOnHost(scratchPlan, infos, pRanges) : buildBlasesOnDevice(scratchPlan, infos, pRanges);
+
+            compactBlases(compactedSizes, onHost);
+
+            RayTracingUtils.printCompaction(originalSizes, compactedSizes);
+            System.out.println("finished " + count + " BLAS");
+
+            long[] references = new long[count];
+
+            VkAccelerationStructureDeviceAddressInfoKHR addressInfo = VkAccelerationStructureDeviceAddressInfoKHR.calloc(stack);
+            addressInfo.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_DEVICE_ADDRESS_INFO_KHR);
+
+            for (int i = 0; i < count; i++) {
+                addressInfo.accelerationStructure(this.blases.get(i));
+                references[i] = KHRAccelerationStructure.vkGetAccelerationStructureDeviceAddressKHR(this.vkDevice, addressInfo);
+            }
+
+            return references;
+        } finally {
+            asGeometries.free();
+            infos.free();
+            ranges.free();
+            MemoryUtil.memFree(pRanges);
+        }
+    }
+
+    /*
+     * Records every wave as one build call into a single submission and returns the compacted sizes
+     */
+    private long[] buildBlasesOnDevice(ScratchPlan scratchPlan, VkAccelerationStructureBuildGeometryInfoKHR.Buffer infos, PointerBuffer pRanges) {
+        final int count = scratchPlan.getBuildCount();
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            LongBuffer pScratchBuffer = stack.mallocLong(1);
+            LongBuffer pScratchBufferMemory = stack.mallocLong(1);
+
+            //Only the GPU touches the scratch memory, the extra alignment lets the base address be rounded up
+            VulkanUtils.createAllocateBindBuffer(scratchPlan.getTotalSize() + this.scratchAlignment,
+                    VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT | VK12.VK_BUFFER_USAGE_SHADER_DEVICE_ADDRESS_BIT,
+                    VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                    pScratchBuffer,
+                    pScratchBufferMemory,
+                    this.vkDevice,
+                    this.vkPhysicalDevice);
+
+            long scratchAddress = alignUp(getBufferDeviceAddress(pScratchBuffer.get(0)));
+
+            for (int position = 0; position < count; position++) {
+                infos.get(position).scratchData().deviceAddress(scratchAddress + scratchPlan.getScratchOffset(position));
+            }
+
+            long queryPool = createCompactedSizeQueryPool(count);
+
+            VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
+            barrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+            barrier.srcAccessMask(KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_KHR);
+            barrier.dstAccessMask(KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_READ_BIT_KHR | KHRAccelerationStructure.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_KHR);
+
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
+
+            VK10.vkCmdResetQueryPool(commandBuffer, queryPool, 0, count);
+
+            int waveStart = 0;
+
+            for (int position = 1; position <= count; position++) {
+                if (position < count && !scratchPlan.needsBarrierBefore(position)) {
+                    continue;
+                }
+
+                //The builds of one wave use distinct pools and may overlap, the next wave reuses the pools
+                KHRAccelerationStructure.vkCmdBuildAccelerationStructuresKHR(commandBuffer,
+                        VkAccelerationStructureBuildGeometryInfoKHR.create(infos.get(waveStart).address(), position - waveStart),
+                        PointerBuffer.create(pRanges.address(waveStart), position - waveStart));
+
+                VK10.vkCmdPipelineBarrier(commandBuffer,
+                        KHRAccelerationStructure.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_KHR,
+                        KHRAccelerationStructure.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_KHR,
+                        0,
+                        barrier,
+                        null,
+                        null);
+
+                waveStart = position;
+            }
+
+            KHRAccelerationStructure.vkCmdWriteAccelerationStructuresPropertiesKHR(commandBuffer, LwjglAdapter.asLongBuffer(this.blases),
+                    KHRAccelerationStructure.VK_QUERY_TYPE_ACCELERATION_STRUCTURE_COMPACTED_SIZE_KHR, queryPool, 0);
+
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkQueue);
+
+            VK10.vkDestroyBuffer(this.vkDevice, pScratchBuffer.get(0), null);
+            VK10.vkFreeMemory(this.vkDevice, pScratchBufferMemory.get(0), null);
+
+            LongBuffer pCompactedSizes = stack.mallocLong(count);
+            if (VK10.vkGetQueryPoolResults(this.vkDevice, queryPool, 0, count, pCompactedSizes, Long.BYTES,
+                    VK10.VK_QUERY_RESULT_64_BIT | VK10.VK_QUERY_RESULT_WAIT_BIT) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to read the compacted size of the BLAS");
+            }
+
+            VK10.vkDestroyQueryPool(this.vkDevice, queryPool, null);
+
+            long[] compactedSizes = new long[count];
+            pCompactedSizes.get(compactedSizes);
+            return compactedSizes;
+        }
+    }
+
+    /*
+     * Builds every wave on the CPU through a deferred operation and returns the compacted sizes
+     */
+    private long[] buildBlasesOnHost(ScratchPlan scratchPlan, VkAccelerationStructureBuildGeometryInfoKHR.Buffer infos, PointerBuffer pRanges) {
+        final int count = scratchPlan.getBuildCount();
+
+        ByteBuffer scratch = MemoryUtil.memAlignedAlloc((int) this.scratchAlignment, (int) scratchPlan.getTotalSize());
+
+        try {
+            for (int position = 0; position < count; position++) {
+                infos.get(position).scratchData().hostAddress(MemoryUtil.memAddress(scratch) + scratchPlan.getScratchOffset(position));
+            }
+
+            int waveStart = 0;
+
+            for (int position = 1; position <= count; position++) {
+                if (position < count && !scratchPlan.needsBarrierBefore(position)) {
+                    continue;
+                }
+
+                VkAccelerationStructureBuildGeometryInfoKHR.Buffer wave = VkAccelerationStructureBuildGeometryInfoKHR.create(infos.get(waveStart).address(), position - waveStart);
+                PointerBuffer waveRanges = PointerBuffer.create(pRanges.address(waveStart), position - waveStart);
+
+                runDeferred(operation -> KHRAccelerationStructure.vkBuildAccelerationStructuresKHR(this.vkDevice, operation, wave, waveRanges),
+                        "build acceleration structures on the host");
+
+                waveStart = position;
+            }
+        } finally {
+            MemoryUtil.memAlignedFree(scratch);
+        }
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            ByteBuffer pCompactedSizes = stack.malloc(count * Long.BYTES);
+
+            if (KHRAccelerationStructure.vkWriteAccelerationStructuresPropertiesKHR(this.vkDevice, LwjglAdapter.asLongBuffer(this.blases),
+                    KHRAccelerationStructure.VK_QUERY_TYPE_ACCELERATION_STRUCTURE_COMPACTED_SIZE_KHR, pCompactedSizes, Long.BYTES) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to read the compacted size of the BLAS");
+            }
+
+            long[] compactedSizes = new long[count];
+            pCompactedSizes.asLongBuffer().get(compactedSizes);
+            return compactedSizes;
+        }
+    }
+
+    private long createCompactedSizeQueryPool(int queryCount) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkQueryPoolCreateInfo queryPoolCreateInfo = VkQueryPoolCreateInfo.calloc(stack);
+            queryPoolCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_QUERY_POOL_CREATE_INFO);
+            queryPoolCreateInfo.queryType(KHRAccelerationStructure.VK_QUERY_TYPE_ACCELERATION_STRUCTURE_COMPACTED_SIZE_KHR);
+            queryPoolCreateInfo.queryCount(queryCount);
+
+            LongBuffer pQueryPool = stack.mallocLong(1);
+            if (VK10.vkCreateQueryPool(this.vkDevice, queryPoolCreateInfo, null, pQueryPool) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create compacted size query pool");
+            }
+
+            return pQueryPool.get(0);
+        }
+    }
+
+    /*
+     * Copies every BLAS into a structure of its compacted size and frees the originals. Host built
+     * structures are copied on the host as well.
+     */
+    private void compactBlases(long[] compactedSizes, boolean onHost) {
+        final int count = this.blases.size();
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            List<Long> compactedBlases = new ArrayList<>(count);
+            List<Long> compactedBuffers = new ArrayList<>(count);
+            List<Long> compactedBuffersMemory = new ArrayList<>(count);
+
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            for (int i = 0; i < count; i++) {
+                compactedBlases.add(createAccelerationStructure(KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_TYPE_BOTTOM_LEVEL_KHR, compactedSizes[i], onHost, pBuffer, pBufferMemory));
+                compactedBuffers.add(pBuffer.get(0));
+                compactedBuffersMemory.add(pBufferMemory.get(0));
+            }
+
+            VkCopyAccelerationStructureInfoKHR copyInfo = VkCopyAccelerationStructureInfoKHR.calloc(stack);
+            copyInfo.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_COPY_ACCELERATION_STRUCTURE_INFO_KHR);
+            copyInfo.mode(KHRAccelerationStructure.VK_COPY_ACCELERATION_STRUCTURE_MODE_COMPACT_KHR);
+
+            if (onHost) {
+                for (int i = 0; i < count; i++) {
+                    copyInfo.src(this.blases.get(i));
+                    copyInfo.dst(compactedBlases.get(i));
+
+                    if (KHRAccelerationStructure.vkCopyAccelerationStructureKHR(this.vkDevice, VK10.VK_NULL_HANDLE, copyInfo) != VK10.VK_SUCCESS) {
+                        throw new RuntimeException("Failed to compact acceleration structure");
+                    }
+                }
+            } else {
+                VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
+
+                for (int i = 0; i < count; i++) {
+                    copyInfo.src(this.blases.get(i));
+                    copyInfo.dst(compactedBlases.get(i));
+
+                    KHRAccelerationStructure.vkCmdCopyAccelerationStructureKHR(commandBuffer, copyInfo);
+                }
+
+                VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkQueue);
+            }
+
+            destroyBlases();
+
+            this.blases = compactedBlases;
+            this.blasBuffers = compactedBuffers;
+            this.blasBuffersMemory = compactedBuffersMemory;
+        }
+    }
+
+    @Override
+    public void buildTlas(Scene scene, boolean allowUpdate) {
+        this.tlasBuildFlags = allowUpdate
+                ? KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_PREFER_FAST_TRACE_BIT_KHR | KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_ALLOW_UPDATE_BIT_KHR
+                : KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_PREFER_FAST_TRACE_BIT_KHR;
+
+        final int instanceCount = scene.getInstanceCount();
+        final long bufferSize = (long) instanceCount * InstanceBufferWriter.INSTANCE_SIZE;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            //The build reads the instances straight from host visible memory, no staging copy
+            LongBuffer pInstanceBuffer = stack.mallocLong(1);
+            LongBuffer pInstanceBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(bufferSize, getBuildInputBufferUsage(),
+                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                    pInstanceBuffer,
+                    pInstanceBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+
+            PointerBuffer data = stack.mallocPointer(1);
+
+            VK10.vkMapMemory(this.vkDevice, pInstanceBufferMemory.get(0), 0, bufferSize, 0, data);
+            {
+                InstanceBufferWriter.write(scene, data.getByteBuffer(0, (int) bufferSize));
+            }
+            VK10.vkUnmapMemory(this.vkDevice, pInstanceBufferMemory.get(0));
+
+            VkAccelerationStructureBuildGeometryInfoKHR.Buffer info = createTlasBuildInfo(getBufferDeviceAddress(pInstanceBuffer.get(0)),
+                    KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_MODE_BUILD_KHR, stack);
+
+            VkAccelerationStructureBuildSizesInfoKHR buildSizes = VkAccelerationStructureBuildSizesInfoKHR.calloc(stack);
+            buildSizes.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_BUILD_SIZES_INFO_KHR);
+
+            KHRAccelerationStructure.vkGetAccelerationStructureBuildSizesKHR(this.vkDevice, KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_BUILD_TYPE_DEVICE_KHR,
+                    info.get(0), stack.ints(instanceCount), buildSizes);
+
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            this.tlas = createAccelerationStructure(KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_TYPE_TOP_LEVEL_KHR, buildSizes.accelerationStructureSize(), false, pBuffer, pBufferMemory);
+            this.tlasBuffer = pBuffer.get(0);
+            this.tlasBufferMemory = pBufferMemory.get(0);
+
+            System.out.println("FirstMemorySize Tlas: " + buildSizes.accelerationStructureSize());
+
+            //The scratch buffer is kept for the per frame updates of a dynamic scene
+            long scratchMemorySize = allowUpdate ? Math.max(buildSizes.buildScratchSize(), buildSizes.updateScratchSize()) : buildSizes.buildScratchSize();
+
+            System.out.println("ScratchMemorySize: " + scratchMemorySize);
+
+            LongBuffer pScratchBuffer = stack.mallocLong(1);
+            LongBuffer pScratchBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(scratchMemorySize + this.scratchAlignment,
+                    VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT | VK12.VK_BUFFER_USAGE_SHADER_DEVICE_ADDRESS_BIT,
+                    VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                    pScratchBuffer,
+                    pScratchBufferMemory,
+                    this.vkDevice,
+                    this.vkPhysicalDevice);
+
+            long scratchAddress = alignUp(getBufferDeviceAddress(pScratchBuffer.get(0)));
+
+            info.dstAccelerationStructure(this.tlas);
+            info.scratchData().deviceAddress(scratchAddress);
+
+            VkAccelerationStructureBuildRangeInfoKHR range = VkAccelerationStructureBuildRangeInfoKHR.calloc(stack);
+            range.primitiveCount(instanceCount);
+
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
+
+            KHRAccelerationStructure.vkCmdBuildAccelerationStructuresKHR(commandBuffer, info, stack.pointers(range.address()));
+
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkQueue);
+
+            if (allowUpdate) {
+                this.tlasScratchBuffer = pScratchBuffer.get(0);
+                this.tlasScratchBufferMemory = pScratchBufferMemory.get(0);
+                this.tlasScratchAddress = scratchAddress;
+            } else {
+                VK10.vkDestroyBuffer(this.vkDevice, pScratchBuffer.get(0), null);
+                VK10.vkFreeMemory(this.vkDevice, pScratchBufferMemory.get(0), null);
+            }
+            VK10.vkDestroyBuffer(this.vkDevice, pInstanceBuffer.get(0), null);
+            VK10.vkFreeMemory(this.vkDevice, pInstanceBufferMemory.get(0), null);
+        }
+    }
+
+    private VkAccelerationStructureBuildGeometryInfoKHR.Buffer createTlasBuildInfo(long instanceAddress, int mode, MemoryStack stack) {
+        VkAccelerationStructureGeometryKHR.Buffer geometry = VkAccelerationStructureGeometryKHR.calloc(1, stack);
+        geometry.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_GEOMETRY_KHR);
+        geometry.geometryType(KHRAccelerationStructure.VK_GEOMETRY_TYPE_INSTANCES_KHR);
+        geometry.flags(KHRAccelerationStructure.VK_GEOMETRY_OPAQUE_BIT_KHR);
+
+        VkAccelerationStructureGeometryInstancesDataKHR instances = geometry.geometry().instances();
+        instances.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_GEOMETRY_INSTANCES_DATA_KHR);
+        instances.arrayOfPointers(false);
+        instances.data().deviceAddress(instanceAddress);
+
+        VkAccelerationStructureBuildGeometryInfoKHR.Buffer info = VkAccelerationStructureBuildGeometryInfoKHR.calloc(1, stack);
+        info.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_BUILD_GEOMETRY_INFO_KHR);
+        info.type(KHRAccelerationStructure.VK_ACCELERATION_STRUCTURE_TYPE_TOP_LEVEL_KHR);
+        info.flags(this.tlasBuildFlags);
+        info.mode(mode);
+        info.geometryCount(1);
+        info.pGeometries(geometry);
+        return info;
+    }
+
+    @Override
+    public void cmdUpdateTlas(VkCommandBuffer commandBuffer, long instanceBuffer, long instanceOffset, int instanceCount, MemoryStack stack) {
+        VkAccelerationStructureBuildGeometryInfoKHR.Buffer info = createTlasBuildInfo(getBufferDeviceAddress(instanceBuffer) + instanceOffset,
+                KHRAccelerationStructure.VK_BUILD_ACCELERATION_STRUCTURE_MODE_UPDATE_KHR, stack);
+        info.srcAccelerationStructure(this.tlas);
+        info.dstAccelerationStructure(this.tlas);
+        info.scratchData().deviceAddress(this.tlasScratchAddress);
+
+        VkAccelerationStructureBuildRangeInfoKHR range = VkAccelerationStructureBuildRangeInfoKHR.calloc(stack);
+        range.primitiveCount(instanceCount);
+
+        KHRAccelerationStructure.vkCmdBuildAccelerationStructuresKHR(commandBuffer, info, stack.pointers(range.address()));
+    }
+
+    @Override
+    public long createTlasDescriptorWrite(MemoryStack stack) {
+        VkWriteDescriptorSetAccelerationStructureKHR accStructureDesc = VkWriteDescriptorSetAccelerationStructureKHR.calloc(stack);
+        accStructureDesc.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET_ACCELERATION_STRUCTURE_KHR);
+        accStructureDesc.accelerationStructureCount(1);
+        accStructureDesc.pAccelerationStructures(stack.longs(this.tlas));
+        return accStructureDesc.address();
+    }
+
+    @Override
+    public long createPipeline(long pipelineLayout, long rayGenModule, long missModule, long closestHitModule) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPipelineShaderStageCreateInfo.Buffer shaderStages = RayTracingUtils.createShaderStages(rayGenModule, missModule, closestHitModule, stack);
+            VkRayTracingShaderGroupCreateInfoKHR.Buffer shaderGroups = VkRayTracingShaderGroupCreateInfoKHR.calloc(3, stack);
+
+            //Index binding 0 and 1
+            for (int i = 0; i < 2; i++) {
+                VkRayTracingShaderGroupCreateInfoKHR generalGroup = shaderGroups.get(i);
+                generalGroup.sType(KHRRayTracingPipeline.VK_STRUCTURE_TYPE_RAY_TRACING_SHADER_GROUP_CREATE_INFO_KHR);
+                generalGroup.type(KHRRayTracingPipeline.VK_RAY_TRACING_SHADER_GROUP_TYPE_GENERAL_KHR);
+                generalGroup.generalShader(i);
+                generalGroup.closestHitShader(KHRRayTracingPipeline.VK_SHADER_UNUSED_KHR);
+                generalGroup.anyHitShader(KHRRayTracingPipeline.VK_SHADER_UNUSED_KHR);
+                generalGroup.intersectionShader(KHRRayTracingPipeline.VK_SHADER_UNUSED_KHR);
+            }
+
+            //Index binding 2
+            VkRayTracingShaderGroupCreateInfoKHR hitGroup = shaderGroups.get(2);
+            hitGroup.sType(KHRRayTracingPipeline.VK_STRUCTURE_TYPE_RAY_TRACING_SHADER_GROUP_CREATE_INFO_KHR);
+            hitGroup.type(KHRRayTracingPipeline.VK_RAY_TRACING_SHADER_GROUP_TYPE_TRIANGLES_HIT_GROUP_KHR);
+            hitGroup.generalShader(KHRRayTracingPipeline.VK_SHADER_UNUSED_KHR);
+            hitGroup.closestHitShader(2);
+            hitGroup.anyHitShader(KHRRayTracingPipeline.VK_SHADER_UNUSED_KHR);
+            hitGroup.intersectionShader(KHRRayTracingPipeline.VK_SHADER_UNUSED_KHR);
+
+            VkRayTracingPipelineCreateInfoKHR.Buffer rayTracingPipeline = VkRayTracingPipelineCreateInfoKHR.calloc(1, stack);
+            rayTracingPipeline.sType(KHRRayTracingPipeline.VK_STRUCTURE_TYPE_RAY_TRACING_PIPELINE_CREATE_INFO_KHR);
+            rayTracingPipeline.pStages(shaderStages);
+            rayTracingPipeline.pGroups(shaderGroups);
+            rayTracingPipeline.maxPipelineRayRecursionDepth(MAX_RECURSION_DEPTH);
+            rayTracingPipeline.layout(pipelineLayout);
+
+            LongBuffer pRayTracingPipeline = stack.longs(VK10.VK_NULL_HANDLE);
+
+            //Drivers that defer pipeline compilation spread it over the joining threads
+            runDeferred(operation -> KHRRayTracingPipeline.vkCreateRayTracingPipelinesKHR(this.vkDevice, operation, VK10.VK_NULL_HANDLE, rayTracingPipeline, null, pRayTracingPipeline),
+                    "create RT pipeline");
+
+            return pRayTracingPipeline.get(0);
+        }
+    }
+
+    @Override
+    public void getShaderGroupHandles(long pipeline, int groupCount, ByteBuffer handles) {
+        if (KHRRayTracingPipeline.vkGetRayTracingShaderGroupHandlesKHR(this.vkDevice, pipeline, 0, groupCount, handles) != VK10.VK_SUCCESS) {
+            throw new RuntimeException("Failed to get the shader group handles");
+        }
+    }
+
+    @Override
+    public void cmdTraceRays(VkCommandBuffer commandBuffer, ShaderBindingTable shaderBindingTable, int width, int height, MemoryStack stack) {
+        final long sbtAddress = getBufferDeviceAddress(shaderBindingTable.getBuffer());
+        final ShaderBindingTableLayout layout = shaderBindingTable.getLayout();
+
+        VkStridedDeviceAddressRegionKHR rayGenRegion = createRegion(sbtAddress, layout, ShaderBindingTableLayout.Region.RAY_GEN, stack);
+        VkStridedDeviceAddressRegionKHR missRegion = createRegion(sbtAddress, layout, ShaderBindingTableLayout.Region.MISS, stack);
+        VkStridedDeviceAddressRegionKHR hitRegion = createRegion(sbtAddress, layout, ShaderBindingTableLayout.Region.HIT_GROUP, stack);
+        VkStridedDeviceAddressRegionKHR callableRegion = VkStridedDeviceAddressRegionKHR.calloc(stack);
+
+        KHRRayTracingPipeline.vkCmdTraceRaysKHR(commandBuffer, rayGenRegion, missRegion, hitRegion, callableRegion, width, height, 1);
+    }
+
+    private static VkStridedDeviceAddressRegionKHR createRegion(long sbtAddress, ShaderBindingTableLayout layout, ShaderBindingTableLayout.Region region, MemoryStack stack) {
+        VkStridedDeviceAddressRegionKHR stridedRegion = VkStridedDeviceAddressRegionKHR.calloc(stack);
+
+        if (layout.getRecordCount(region) > 0) {
+            stridedRegion.set(sbtAddress + layout.getOffset(region), layout.getStride(region), layout.getRegionSize(region));
+        }
+
+        return stridedRegion;
+    }
+
+    /*
+     * Runs a host command on a deferred operation. If the driver defers it, the calling thread and up to
+     * the operation's max concurrency minus one workers join it until it is done.
+     */
+    private void runDeferred(LongToIntFunction command, String description) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            LongBuffer pOperation = stack.mallocLong(1);
+
+            if (KHRDeferredHostOperations.vkCreateDeferredOperationKHR(this.vkDevice, null, pOperation) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create deferred operation");
+            }
+
+            final long operation = pOperation.get(0);
+
+            try {
+                int result = command.applyAsInt(operation);
+
+                if (result == KHRDeferredHostOperations.VK_OPERATION_DEFERRED_KHR) {
+                    joinDeferredOperation(operation);
+                    result = KHRDeferredHostOperations.vkGetDeferredOperationResultKHR(this.vkDevice, operation);
+                } else if (result == KHRDeferredHostOperations.VK_OPERATION_NOT_DEFERRED_KHR) {
+                    result = VK10.VK_SUCCESS;
+                }
+
+                if (result != VK10.VK_SUCCESS) {
+                    throw new RuntimeException("Failed to " + description + ", result " + result);
+                }
+            } finally {
+                KHRDeferredHostOperations.vkDestroyDeferredOperationKHR(this.vkDevice, operation, null);
+            }
+        }
+    }
+
+    private void joinDeferredOperation(long operation) {
+        final long maxConcurrency = Integer.toUnsignedLong(KHRDeferredHostOperations.vkGetDeferredOperationMaxConcurrencyKHR(this.vkDevice, operation));
+        final int threadCount = (int) Math.max(1, Math.min(maxConcurrency, Runtime.getRuntime().availableProcessors()));
+
+        Thread[] workers = new Thread[threadCount - 1];
+
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(() -> join(operation), "deferred-operation-" + i);
+            workers[i].start();
+        }
+
+        join(operation);
+
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while joining a deferred operation", e);
+            }
+        }
+    }
+
+    /*
+     * VK_THREAD_IDLE_KHR means there is no work for this thread right now but the operation isn't done
+     */
+    private void join(long operation) {
+        while (KHRDeferredHostOperations.vkDeferredOperationJoinKHR(this.vkDevice, operation) == KHRDeferredHostOperations.VK_THREAD_IDLE_KHR) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private long createAccelerationStructure(int type, long size, boolean onHost, LongBuffer pBuffer, LongBuffer pBufferMemory) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            //Host builds write the structure through a mapping of its memory
+            VulkanUtils.createAllocateBindBuffer(size,
+                    KHRAccelerationStructure.VK_BUFFER_USAGE_ACCELERATION_STRUCTURE_STORAGE_BIT_KHR | VK12.VK_BUFFER_USAGE_SHADER_DEVICE_ADDRESS_BIT,
+                    onHost ? VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT : VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                    pBuffer,
+                    pBufferMemory,
+                    this.vkDevice,
+                    this.vkPhysicalDevice);
+
+            VkAccelerationStructureCreateInfoKHR createInfo = VkAccelerationStructureCreateInfoKHR.calloc(stack);
+            createInfo.sType(KHRAccelerationStructure.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_CREATE_INFO_KHR);
+            createInfo.buffer(pBuffer.get(0));
+            createInfo.size(size);
+            createInfo.type(type);
+
+            LongBuffer pAccelerationStructure = stack.mallocLong(1);
+
+            if (KHRAccelerationStructure.vkCreateAccelerationStructureKHR(this.vkDevice, createInfo, null, pAccelerationStructure) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create acceleration structure");
+            }
+
+            return pAccelerationStructure.get(0);
+        }
+    }
+
+    private long getBufferDeviceAddress(long buffer) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkBufferDeviceAddressInfo addressInfo = VkBufferDeviceAddressInfo.calloc(stack);
+            addressInfo.sType(VK12.VK_STRUCTURE_TYPE_BUFFER_DEVICE_ADDRESS_INFO);
+            addressInfo.buffer(buffer);
+
+            return VK12.vkGetBufferDeviceAddress(this.vkDevice, addressInfo);
+        }
+    }
+
+    private long alignUp(long address) {
+        return (address + this.scratchAlignment - 1) / this.scratchAlignment * this.scratchAlignment;
+    }
+
+    private void destroyBlases() {
+        this.blases.forEach(blas -> KHRAccelerationStructure.vkDestroyAccelerationStructureKHR(this.vkDevice, blas, null));
+        this.blasBuffers.forEach(buffer -> VK10.vkDestroyBuffer(this.vkDevice, buffer, null));
+        this.blasBuffersMemory.forEach(memory -> VK10.vkFreeMemory(this.vkDevice, memory, null));
+    }
+
+    @Override
+    public void destroy() {
+        destroyBlases();
+
+        KHRAccelerationStructure.vkDestroyAccelerationStructureKHR(this.vkDevice, this.tlas, null);
+        VK10.vkDestroyBuffer(this.vkDevice, this.tlasBuffer, null);
+        VK10.vkFreeMemory(this.vkDevice, this.tlasBufferMemory, null);
+
+        if (this.tlasScratchBuffer != VK10.VK_NULL_HANDLE) {
+            VK10.vkDestroyBuffer(this.vkDevice, this.tlasScratchBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, this.tlasScratchBufferMemory, null);
+        }
+    }
+}
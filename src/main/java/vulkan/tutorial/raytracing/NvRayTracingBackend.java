@@ -0,0 +1,629 @@
+package vulkan.tutorial.raytracing;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.*;
+import vulkan.tutorial.lwjgl.LwjglAdapter;
+import vulkan.tutorial.scene.InstanceBufferWriter;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.vulkan.BlasGeometry;
+import vulkan.tutorial.vulkan.ScratchPlan;
+import vulkan.tutorial.vulkan.VulkanUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * VK_NV_ray_tracing, acceleration structures own their memory and are referenced by opaque handles.
+ */
+public class NvRayTracingBackend implements RayTracingBackend {
+
+    //BLAS builds that may run at the same time, each one gets its own slice of the scratch buffer
+    private static final int BLAS_SCRATCH_POOLS = 4;
+    private static final long SCRATCH_ALIGNMENT = 256;
+
+    private final VkDevice vkDevice;
+    private final VkPhysicalDevice vkPhysicalDevice;
+    private final long commandPool;
+    private final VkQueue vkQueue;
+    private final int shaderGroupHandleSize;
+    private final int shaderGroupBaseAlignment;
+    private List<Long> blases = new ArrayList<>();
+    private List<Long> blasesMemory = new ArrayList<>();
+    private long tlas;
+    private long tlasMemory;
+    private int tlasBuildFlags;
+    private long tlasScratchBuffer;
+    private long tlasScratchBufferMemory;
+
+    NvRayTracingBackend(VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice, long commandPool, VkQueue vkQueue) {
+        this.vkDevice = vkDevice;
+        this.vkPhysicalDevice = vkPhysicalDevice;
+        this.commandPool = commandPool;
+        this.vkQueue = vkQueue;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceRayTracingPropertiesNV physicalDeviceRayTracingPropertiesNV = VkPhysicalDeviceRayTracingPropertiesNV.calloc(stack);
+            physicalDeviceRayTracingPropertiesNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_RAY_TRACING_PROPERTIES_NV);
+            VkPhysicalDeviceProperties2 props2 = VkPhysicalDeviceProperties2.calloc(stack);
+            props2.sType(VK11.VK_STRUCTURE_TYPE_PHYSICAL_DEVICE_PROPERTIES_2);
+            props2.pNext(physicalDeviceRayTracingPropertiesNV.address());
+
+            VK11.vkGetPhysicalDeviceProperties2(vkPhysicalDevice, props2);
+
+            this.shaderGroupHandleSize = physicalDeviceRayTracingPropertiesNV.shaderGroupHandleSize();
+            this.shaderGroupBaseAlignment = physicalDeviceRayTracingPropertiesNV.shaderGroupBaseAlignment();
+
+            System.out.println("Ray tracing: VK_NV_ray_tracing");
+            System.out.println("maxRecursion: " + physicalDeviceRayTracingPropertiesNV.maxRecursionDepth());
+        }
+    }
+
+    @Override
+    public RayTracingApi getApi() {
+        return RayTracingApi.NV;
+    }
+
+    @Override
+    public int getShaderGroupHandleSize() {
+        return this.shaderGroupHandleSize;
+    }
+
+    @Override
+    public int getShaderGroupBaseAlignment() {
+        return this.shaderGroupBaseAlignment;
+    }
+
+    /*
+     * NV only asks for strides that are a multiple of the handle size
+     */
+    @Override
+    public int getShaderGroupHandleAlignment() {
+        return this.shaderGroupHandleSize;
+    }
+
+    @Override
+    public int getBuildInputBufferUsage() {
+        return NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV;
+    }
+
+    @Override
+    public int getShaderBindingTableUsage() {
+        return NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV;
+    }
+
+    @Override
+    public int getAccelerationStructureDescriptorType() {
+        return NVRayTracing.VK_DESCRIPTOR_TYPE_ACCELERATION_STRUCTURE_NV;
+    }
+
+    /*
+     * Builds one BLAS per geometry in a single submission. All builds share one scratch buffer split
+     * into pools by a ScratchPlan, the structures are compacted afterwards.
+     */
+    @Override
+    public long[] buildBlases(List<BlasGeometry> geometries) {
+        final int count = geometries.size();
+        final int buildFlags = NVRayTracing.VK_BUILD_ACCELERATION_STRUCTURE_ALLOW_COMPACTION_BIT_NV | NVRayTracing.VK_BUILD_ACCELERATION_STRUCTURE_PREFER_FAST_TRACE_BIT_NV;
+
+        //Heap allocated, a scene can have more geometries than fit on the stack
+        VkGeometryNV.Buffer vkGeometries = VkGeometryNV.calloc(count);
+        VkAccelerationStructureInfoNV.Buffer infos = VkAccelerationStructureInfoNV.calloc(count);
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            this.blases = new ArrayList<>(count);
+            this.blasesMemory = new ArrayList<>(count);
+
+            long[] originalSizes = new long[count];
+            long[] scratchSizes = new long[count];
+
+            for (int i = 0; i < count; i++) {
+                BlasGeometry geometry = geometries.get(i);
+
+                VkGeometryNV vkGeometryNV = vkGeometries.get(i);
+                vkGeometryNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_GEOMETRY_NV);
+                vkGeometryNV.geometryType(NVRayTracing.VK_GEOMETRY_TYPE_TRIANGLES_NV);
+                vkGeometryNV.flags(NVRayTracing.VK_GEOMETRY_OPAQUE_BIT_NV);
+
+                VkGeometryTrianglesNV vkGeometryTrianglesNV = vkGeometryNV.geometry().triangles();
+                vkGeometryTrianglesNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_GEOMETRY_TRIANGLES_NV);
+                vkGeometryTrianglesNV.vertexData(geometry.getVertexBuffer());
+                vkGeometryTrianglesNV.vertexOffset(geometry.getVertexOffset());
+                vkGeometryTrianglesNV.vertexCount(geometry.getVertexCount());
+                vkGeometryTrianglesNV.vertexStride(geometry.getVertexStride());
+                vkGeometryTrianglesNV.vertexFormat(VK10.VK_FORMAT_R32G32B32_SFLOAT);
+                vkGeometryTrianglesNV.indexData(geometry.getIndexBuffer());
+                vkGeometryTrianglesNV.indexOffset(geometry.getIndexOffset());
+                vkGeometryTrianglesNV.indexCount(geometry.getIndexCount());
+                vkGeometryTrianglesNV.indexType(VK10.VK_INDEX_TYPE_UINT32);
+                vkGeometryTrianglesNV.transformData(VK10.VK_NULL_HANDLE);
+
+                vkGeometryNV.geometry().aabbs().sType(NVRayTracing.VK_STRUCTURE_TYPE_GEOMETRY_AABB_NV);
+
+                VkAccelerationStructureInfoNV accelerationStructureInfoNV = infos.get(i);
+                accelerationStructureInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_INFO_NV);
+                accelerationStructureInfoNV.flags(buildFlags);
+                accelerationStructureInfoNV.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_TYPE_BOTTOM_LEVEL_NV);
+                accelerationStructureInfoNV.pGeometries(VkGeometryNV.create(vkGeometryNV.address(), 1));
+
+                VkAccelerationStructureCreateInfoNV accelerationStructureCreateInfoNV = VkAccelerationStructureCreateInfoNV.calloc(stack);
+                accelerationStructureCreateInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_CREATE_INFO_NV);
+                accelerationStructureCreateInfoNV.info(accelerationStructureInfoNV);
+
+                LongBuffer pBlas = stack.mallocLong(1);
+                if (NVRayTracing.vkCreateAccelerationStructureNV(this.vkDevice, accelerationStructureCreateInfoNV, null, pBlas) != VK10.VK_SUCCESS) {
+                    throw new RuntimeException("Failed to create acceleration structure");
+                }
+
+                LongBuffer pBlasMemory = stack.mallocLong(1);
+                originalSizes[i] = bindAccelerationStructureMemory(pBlas.get(0), pBlasMemory);
+
+                this.blases.add(pBlas.get(0));
+                this.blasesMemory.add(pBlasMemory.get(0));
+
+                scratchSizes[i] = getScratchSize(pBlas.get(0), NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_BUILD_SCRATCH_NV);
+            }
+
+            ScratchPlan scratchPlan = ScratchPlan.create(scratchSizes, BLAS_SCRATCH_POOLS, SCRATCH_ALIGNMENT);
+
+            System.out.println("BLAS scratch: " + scratchPlan.getTotalSize() + " bytes in " + scratchPlan.getPoolCount()
+                    + " pools for " + count + " builds instead of " + ScratchPlan.getUnpooledSize(scratchSizes) + " bytes");
+
+            //These two LongBuffers represent the nvvk::Buffer from the tutorial
+            LongBuffer pScratchBuffer = stack.mallocLong(1);
+            LongBuffer pScratchBufferMemory = stack.mallocLong(1);
+
+            //Only the GPU touches the scratch memory
+            VulkanUtils.createAllocateBindBuffer(scratchPlan.getTotalSize(),
+                    NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV,
+                    VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                    pScratchBuffer,
+                    pScratchBufferMemory,
+                    this.vkDevice,
+                    this.vkPhysicalDevice);
+
+            long scratchHandle = pScratchBuffer.get(0);
+
+            long queryPool = createCompactedSizeQueryPool(count);
+
+            VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
+            barrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+            barrier.srcAccessMask(NVRayTracing.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_NV);
+            barrier.dstAccessMask(NVRayTracing.VK_ACCESS_ACCELERATION_STRUCTURE_READ_BIT_NV | NVRayTracing.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_NV);
+
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
+
+            VK10.vkCmdResetQueryPool(commandBuffer, queryPool, 0, count);
+
+            for (int position = 0; position < scratchPlan.getBuildCount(); position++) {
+                //The previous wave has to be done with the scratch pools before they are reused
+                if (scratchPlan.needsBarrierBefore(position)) {
+                    VK10.vkCmdPipelineBarrier(commandBuffer,
+                            NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
+                            NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
+                            0,
+                            barrier,
+                            null,
+                            null);
+                }
+
+                final int build = scratchPlan.getBuild(position);
+
+                NVRayTracing.vkCmdBuildAccelerationStructureNV(commandBuffer,
+                        infos.get(build),
+                        VK10.VK_NULL_HANDLE,
+                        0,
+                        false,
+                        this.blases.get(build),
+                        VK10.VK_NULL_HANDLE,
+                        scratchHandle,
+                        scratchPlan.getScratchOffset(position));
+            }
+
+            VK10.vkCmdPipelineBarrier(commandBuffer,
+                    NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
+                    NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
+                    0,
+                    barrier,
+                    null,
+                    null);
+
+            NVRayTracing.vkCmdWriteAccelerationStructuresPropertiesNV(commandBuffer, LwjglAdapter.asLongBuffer(this.blases),
+                    NVRayTracing.VK_QUERY_TYPE_ACCELERATION_STRUCTURE_COMPACTED_SIZE_NV, queryPool, 0);
+
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkQueue);
+
+            VK10.vkDestroyBuffer(this.vkDevice, pScratchBuffer.get(0), null);
+            VK10.vkFreeMemory(this.vkDevice, pScratchBufferMemory.get(0), null);
+
+            compactBlases(queryPool, buildFlags, originalSizes);
+
+            VK10.vkDestroyQueryPool(this.vkDevice, queryPool, null);
+
+            System.out.println("finished " + count + " BLAS");
+
+            long[] references = new long[count];
+            LongBuffer blasHandle = stack.mallocLong(1);
+
+            for (int i = 0; i < count; i++) {
+                NVRayTracing.vkGetAccelerationStructureHandleNV(this.vkDevice, this.blases.get(i), blasHandle);
+                references[i] = blasHandle.get(0);
+            }
+
+            return references;
+        } finally {
+            vkGeometries.free();
+            infos.free();
+        }
+    }
+
+    private long getScratchSize(long accelerationStructure, int requirementsType) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkAccelerationStructureMemoryRequirementsInfoNV scratchMemoReq = VkAccelerationStructureMemoryRequirementsInfoNV.calloc(stack);
+            scratchMemoReq.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_INFO_NV);
+            scratchMemoReq.type(requirementsType);
+            scratchMemoReq.accelerationStructure(accelerationStructure);
+
+            VkMemoryRequirements2KHR memoryRequirementsForScratch = VkMemoryRequirements2KHR.calloc(stack);
+            memoryRequirementsForScratch.sType(VK11.VK_STRUCTURE_TYPE_MEMORY_REQUIREMENTS_2);
+            NVRayTracing.vkGetAccelerationStructureMemoryRequirementsNV(this.vkDevice, scratchMemoReq, memoryRequirementsForScratch);
+
+            return memoryRequirementsForScratch.memoryRequirements().size();
+        }
+    }
+
+    /*
+     * Allocates device local memory for the acceleration structure, binds it and returns the size of
+     * the allocation.
+     */
+    private long bindAccelerationStructureMemory(long accelerationStructure, LongBuffer pMemory) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkAccelerationStructureMemoryRequirementsInfoNV memoryRequirementsInfoNV = VkAccelerationStructureMemoryRequirementsInfoNV.calloc(stack);
+            memoryRequirementsInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_INFO_NV);
+            memoryRequirementsInfoNV.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_OBJECT_NV);
+            memoryRequirementsInfoNV.accelerationStructure(accelerationStructure);
+
+            VkMemoryRequirements2KHR memoryRequirements = VkMemoryRequirements2KHR.calloc(stack);
+            memoryRequirements.sType(VK11.VK_STRUCTURE_TYPE_MEMORY_REQUIREMENTS_2);
+            NVRayTracing.vkGetAccelerationStructureMemoryRequirementsNV(this.vkDevice, memoryRequirementsInfoNV, memoryRequirements);
+
+            VkMemoryAllocateInfo memoryAllocateInfo = VkMemoryAllocateInfo.calloc(stack);
+            memoryAllocateInfo.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_ALLOCATE_INFO);
+            memoryAllocateInfo.allocationSize(memoryRequirements.memoryRequirements().size());
+            memoryAllocateInfo.memoryTypeIndex(VulkanUtils.extractTheCorrectMemoryTypeFromPhysicalDevice(memoryRequirements.memoryRequirements().memoryTypeBits(), VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT, this.vkPhysicalDevice));
+
+            if (VK10.vkAllocateMemory(this.vkDevice, memoryAllocateInfo, null, pMemory) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Could not allocate memory for acceleration structure");
+            }
+
+            VkBindAccelerationStructureMemoryInfoNV.Buffer bind = VkBindAccelerationStructureMemoryInfoNV.calloc(1, stack);
+            bind.sType(NVRayTracing.VK_STRUCTURE_TYPE_BIND_ACCELERATION_STRUCTURE_MEMORY_INFO_NV);
+            bind.accelerationStructure(accelerationStructure);
+            bind.memory(pMemory.get(0));
+
+            NVRayTracing.vkBindAccelerationStructureMemoryNV(this.vkDevice, bind);
+
+            return memoryRequirements.memoryRequirements().size();
+        }
+    }
+
+    private long createCompactedSizeQueryPool(int queryCount) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkQueryPoolCreateInfo queryPoolCreateInfo = VkQueryPoolCreateInfo.calloc(stack);
+            queryPoolCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_QUERY_POOL_CREATE_INFO);
+            queryPoolCreateInfo.queryType(NVRayTracing.VK_QUERY_TYPE_ACCELERATION_STRUCTURE_COMPACTED_SIZE_NV);
+            queryPoolCreateInfo.queryCount(queryCount);
+
+            LongBuffer pQueryPool = stack.mallocLong(1);
+            if (VK10.vkCreateQueryPool(this.vkDevice, queryPoolCreateInfo, null, pQueryPool) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create compacted size query pool");
+            }
+
+            return pQueryPool.get(0);
+        }
+    }
+
+    /*
+     * Copies every freshly built BLAS into a structure of its compacted size and frees the originals.
+     * The builds have to be finished, the compacted size of BLAS i is read from query i of queryPool.
+     */
+    private void compactBlases(long queryPool, int buildFlags, long[] originalSizes) {
+        final int count = this.blases.size();
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            LongBuffer pCompactedSizes = stack.mallocLong(count);
+            if (VK10.vkGetQueryPoolResults(this.vkDevice, queryPool, 0, count, pCompactedSizes, Long.BYTES,
+                    VK10.VK_QUERY_RESULT_64_BIT | VK10.VK_QUERY_RESULT_WAIT_BIT) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to read the compacted size of the BLAS");
+            }
+
+            //A compacted structure is created without geometries, only its size matters
+            VkAccelerationStructureInfoNV compactedInfo = VkAccelerationStructureInfoNV.calloc(stack);
+            compactedInfo.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_INFO_NV);
+            compactedInfo.flags(buildFlags);
+            compactedInfo.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_TYPE_BOTTOM_LEVEL_NV);
+
+            VkAccelerationStructureCreateInfoNV createInfo = VkAccelerationStructureCreateInfoNV.calloc(stack);
+            createInfo.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_CREATE_INFO_NV);
+            createInfo.info(compactedInfo);
+
+            List<Long> compactedBlases = new ArrayList<>(count);
+            List<Long> compactedBlasesMemory = new ArrayList<>(count);
+            long[] compactedSizes = new long[count];
+
+            LongBuffer pCompactedBlas = stack.mallocLong(1);
+            LongBuffer pCompactedMemory = stack.mallocLong(1);
+
+            for (int i = 0; i < count; i++) {
+                createInfo.compactedSize(pCompactedSizes.get(i));
+
+                if (NVRayTracing.vkCreateAccelerationStructureNV(this.vkDevice, createInfo, null, pCompactedBlas) != VK10.VK_SUCCESS) {
+                    throw new RuntimeException("Failed to create compacted acceleration structure");
+                }
+
+                compactedSizes[i] = bindAccelerationStructureMemory(pCompactedBlas.get(0), pCompactedMemory);
+
+                compactedBlases.add(pCompactedBlas.get(0));
+                compactedBlasesMemory.add(pCompactedMemory.get(0));
+            }
+
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
+
+            for (int i = 0; i < count; i++) {
+                NVRayTracing.vkCmdCopyAccelerationStructureNV(commandBuffer, compactedBlases.get(i), this.blases.get(i), NVRayTracing.VK_COPY_ACCELERATION_STRUCTURE_MODE_COMPACT_NV);
+            }
+
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkQueue);
+
+            for (int i = 0; i < count; i++) {
+                NVRayTracing.vkDestroyAccelerationStructureNV(this.vkDevice, this.blases.get(i), null);
+                VK10.vkFreeMemory(this.vkDevice, this.blasesMemory.get(i), null);
+            }
+
+            RayTracingUtils.printCompaction(originalSizes, compactedSizes);
+
+            this.blases = compactedBlases;
+            this.blasesMemory = compactedBlasesMemory;
+        }
+    }
+
+    @Override
+    public void buildTlas(Scene scene, boolean allowUpdate) {
+        this.tlasBuildFlags = allowUpdate
+                ? NVRayTracing.VK_BUILD_ACCELERATION_STRUCTURE_PREFER_FAST_TRACE_BIT_NV | NVRayTracing.VK_BUILD_ACCELERATION_STRUCTURE_ALLOW_UPDATE_BIT_NV
+                : NVRayTracing.VK_BUILD_ACCELERATION_STRUCTURE_PREFER_FAST_TRACE_BIT_NV;
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkAccelerationStructureInfoNV accelerationStructureInfoNV = createTlasInfo(scene.getInstanceCount(), stack);
+
+            VkAccelerationStructureCreateInfoNV accelerationStructureCreateInfoNV = VkAccelerationStructureCreateInfoNV.calloc(stack);
+            accelerationStructureCreateInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_CREATE_INFO_NV);
+            accelerationStructureCreateInfoNV.info(accelerationStructureInfoNV);
+
+            LongBuffer pTlas = stack.mallocLong(1);
+
+            if (NVRayTracing.vkCreateAccelerationStructureNV(this.vkDevice, accelerationStructureCreateInfoNV, null, pTlas) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create acceleration structure");
+            }
+
+            this.tlas = pTlas.get(0);
+
+            LongBuffer pTlasMemory = stack.mallocLong(1);
+            System.out.println("FirstMemorySize Tlas: " + bindAccelerationStructureMemory(this.tlas, pTlasMemory));
+            this.tlasMemory = pTlasMemory.get(0);
+
+            long scratchMemorySize = getScratchSize(this.tlas, NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_BUILD_SCRATCH_NV);
+
+            //The scratch buffer is kept for the per frame updates of a dynamic scene
+            if (allowUpdate) {
+                scratchMemorySize = Math.max(scratchMemorySize, getScratchSize(this.tlas, NVRayTracing.VK_ACCELERATION_STRUCTURE_MEMORY_REQUIREMENTS_TYPE_UPDATE_SCRATCH_NV));
+            }
+
+            System.out.println("ScratchMemorySize: " + scratchMemorySize);
+
+            //These two LongBuffers represent the nvvk::Buffer from the tutorial
+            LongBuffer pScratchBuffer = stack.mallocLong(1);
+            LongBuffer pScratchBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(scratchMemorySize,
+                    NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV,
+                    VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                    pScratchBuffer,
+                    pScratchBufferMemory,
+                    this.vkDevice,
+                    this.vkPhysicalDevice);
+
+            long bufferSize = (long) scene.getInstanceCount() * InstanceBufferWriter.INSTANCE_SIZE;
+
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(bufferSize, VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT,
+                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                    pBuffer,
+                    pBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+
+            long stagingBuffer = pBuffer.get(0);
+            long stagingBufferMemory = pBufferMemory.get(0);
+
+            PointerBuffer data = stack.mallocPointer(1);
+
+            VK10.vkMapMemory(this.vkDevice, stagingBufferMemory, 0, bufferSize, 0, data);
+            {
+                InstanceBufferWriter.write(scene, data.getByteBuffer(0, (int) bufferSize));
+            }
+            VK10.vkUnmapMemory(this.vkDevice, stagingBufferMemory);
+
+            LongBuffer pResultBuffer = stack.mallocLong(1);
+            LongBuffer pResultBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(bufferSize,
+                    NVRayTracing.VK_BUFFER_USAGE_RAY_TRACING_BIT_NV | VK10.VK_BUFFER_USAGE_TRANSFER_DST_BIT,
+                    VK10.VK_MEMORY_PROPERTY_DEVICE_LOCAL_BIT,
+                    pResultBuffer,
+                    pResultBufferMemory, this.vkDevice, this.vkPhysicalDevice);
+
+            VkCommandBuffer commandBuffer = VulkanUtils.beginSingleTimeCommands(this.vkDevice, this.commandPool);
+
+            VkBufferCopy.Buffer copyRegion = VkBufferCopy.calloc(1, stack);
+            copyRegion.size(bufferSize);
+
+            VK10.vkCmdCopyBuffer(commandBuffer, stagingBuffer, pResultBuffer.get(0), copyRegion);
+
+            VkMemoryBarrier.Buffer vkMemoryBarrier = VkMemoryBarrier.calloc(1, stack);
+            vkMemoryBarrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+            vkMemoryBarrier.srcAccessMask(VK10.VK_ACCESS_TRANSFER_WRITE_BIT);
+            vkMemoryBarrier.dstAccessMask(NVRayTracing.VK_ACCESS_ACCELERATION_STRUCTURE_WRITE_BIT_NV);
+
+            VK10.vkCmdPipelineBarrier(commandBuffer,
+                    VK10.VK_PIPELINE_STAGE_TRANSFER_BIT,
+                    NVRayTracing.VK_PIPELINE_STAGE_ACCELERATION_STRUCTURE_BUILD_BIT_NV,
+                    0,
+                    vkMemoryBarrier,
+                    null,
+                    null);
+
+            NVRayTracing.vkCmdBuildAccelerationStructureNV(commandBuffer, accelerationStructureInfoNV, pResultBuffer.get(0),
+                    0,
+                    false,
+                    this.tlas,
+                    VK10.VK_NULL_HANDLE,
+                    pScratchBuffer.get(0),
+                    0);
+
+            VulkanUtils.endSingleTimeCommands(commandBuffer, this.vkDevice, this.commandPool, this.vkQueue);
+
+            if (allowUpdate) {
+                this.tlasScratchBuffer = pScratchBuffer.get(0);
+                this.tlasScratchBufferMemory = pScratchBufferMemory.get(0);
+            } else {
+                VK10.vkDestroyBuffer(this.vkDevice, pScratchBuffer.get(0), null);
+                VK10.vkFreeMemory(this.vkDevice, pScratchBufferMemory.get(0), null);
+            }
+            VK10.vkDestroyBuffer(this.vkDevice, stagingBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, stagingBufferMemory, null);
+            VK10.vkDestroyBuffer(this.vkDevice, pResultBuffer.get(0), null);
+            VK10.vkFreeMemory(this.vkDevice, pResultBufferMemory.get(0), null);
+        }
+    }
+
+    private VkAccelerationStructureInfoNV createTlasInfo(int instanceCount, MemoryStack stack) {
+        VkAccelerationStructureInfoNV accelerationStructureInfoNV = VkAccelerationStructureInfoNV.calloc(stack);
+        accelerationStructureInfoNV.sType(NVRayTracing.VK_STRUCTURE_TYPE_ACCELERATION_STRUCTURE_INFO_NV);
+        accelerationStructureInfoNV.flags(this.tlasBuildFlags);
+        accelerationStructureInfoNV.type(NVRayTracing.VK_ACCELERATION_STRUCTURE_TYPE_TOP_LEVEL_NV);
+        accelerationStructureInfoNV.instanceCount(instanceCount);
+        return accelerationStructureInfoNV;
+    }
+
+    @Override
+    public void cmdUpdateTlas(VkCommandBuffer commandBuffer, long instanceBuffer, long instanceOffset, int instanceCount, MemoryStack stack) {
+        NVRayTracing.vkCmdBuildAccelerationStructureNV(commandBuffer, createTlasInfo(instanceCount, stack),
+                instanceBuffer,
+                instanceOffset,
+                true,
+                this.tlas,
+                this.tlas,
+                this.tlasScratchBuffer,
+                0);
+    }
+
+    @Override
+    public long createTlasDescriptorWrite(MemoryStack stack) {
+        VkWriteDescriptorSetAccelerationStructureNV accStructureDesc = VkWriteDescriptorSetAccelerationStructureNV.calloc(stack);
+        accStructureDesc.sType(NVRayTracing.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET_ACCELERATION_STRUCTURE_NV);
+        accStructureDesc.accelerationStructureCount(1);
+        accStructureDesc.pAccelerationStructures(stack.longs(this.tlas));
+        return accStructureDesc.address();
+    }
+
+    @Override
+    public long createPipeline(long pipelineLayout, long rayGenModule, long missModule, long closestHitModule) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPipelineShaderStageCreateInfo.Buffer shaderStages = RayTracingUtils.createShaderStages(rayGenModule, missModule, closestHitModule, stack);
+            VkRayTracingShaderGroupCreateInfoNV.Buffer shaderGroups = VkRayTracingShaderGroupCreateInfoNV.calloc(3, stack);
+
+            //Index binding 0 and 1
+            for (int i = 0; i < 2; i++) {
+                VkRayTracingShaderGroupCreateInfoNV generalGroup = shaderGroups.get(i);
+                generalGroup.sType(NVRayTracing.VK_STRUCTURE_TYPE_RAY_TRACING_SHADER_GROUP_CREATE_INFO_NV);
+                generalGroup.type(NVRayTracing.VK_RAY_TRACING_SHADER_GROUP_TYPE_GENERAL_NV);
+                generalGroup.generalShader(i);
+                generalGroup.closestHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
+                generalGroup.anyHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
+                generalGroup.intersectionShader(NVRayTracing.VK_SHADER_UNUSED_NV);
+            }
+
+            //Index binding 2
+            VkRayTracingShaderGroupCreateInfoNV hitGroup = shaderGroups.get(2);
+            hitGroup.sType(NVRayTracing.VK_STRUCTURE_TYPE_RAY_TRACING_SHADER_GROUP_CREATE_INFO_NV);
+            hitGroup.type(NVRayTracing.VK_RAY_TRACING_SHADER_GROUP_TYPE_TRIANGLES_HIT_GROUP_NV);
+            hitGroup.generalShader(NVRayTracing.VK_SHADER_UNUSED_NV);
+            hitGroup.closestHitShader(2);
+            hitGroup.anyHitShader(NVRayTracing.VK_SHADER_UNUSED_NV);
+            hitGroup.intersectionShader(NVRayTracing.VK_SHADER_UNUSED_NV);
+
+            VkRayTracingPipelineCreateInfoNV.Buffer rayTracingPipeline = VkRayTracingPipelineCreateInfoNV.calloc(1, stack);
+            rayTracingPipeline.sType(NVRayTracing.VK_STRUCTURE_TYPE_RAY_TRACING_PIPELINE_CREATE_INFO_NV);
+            rayTracingPipeline.pStages(shaderStages);
+            rayTracingPipeline.pGroups(shaderGroups);
+            rayTracingPipeline.maxRecursionDepth(MAX_RECURSION_DEPTH);
+            rayTracingPipeline.layout(pipelineLayout);
+
+            LongBuffer pRayTracingPipeline = stack.longs(VK10.VK_NULL_HANDLE);
+
+            if (NVRayTracing.vkCreateRayTracingPipelinesNV(this.vkDevice, VK10.VK_NULL_HANDLE, rayTracingPipeline, null, pRayTracingPipeline) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create RT pipeline");
+            }
+
+            return pRayTracingPipeline.get(0);
+        }
+    }
+
+    @Override
+    public void getShaderGroupHandles(long pipeline, int groupCount, ByteBuffer handles) {
+        if (NVRayTracing.vkGetRayTracingShaderGroupHandlesNV(this.vkDevice, pipeline, 0, groupCount, handles) != VK10.VK_SUCCESS) {
+            throw new RuntimeException("Failed to get the shader group handles");
+        }
+    }
+
+    @Override
+    public void cmdTraceRays(VkCommandBuffer commandBuffer, ShaderBindingTable shaderBindingTable, int width, int height, MemoryStack stack) {
+        final long sbtBuffer = shaderBindingTable.getBuffer();
+        final ShaderBindingTableLayout layout = shaderBindingTable.getLayout();
+
+        NVRayTracing.vkCmdTraceRaysNV(commandBuffer,
+                sbtBuffer,
+                layout.getOffset(ShaderBindingTableLayout.Region.RAY_GEN),
+
+                sbtBuffer,
+                layout.getOffset(ShaderBindingTableLayout.Region.MISS),
+                layout.getStride(ShaderBindingTableLayout.Region.MISS),
+
+                sbtBuffer,
+                layout.getOffset(ShaderBindingTableLayout.Region.HIT_GROUP),
+                layout.getStride(ShaderBindingTableLayout.Region.HIT_GROUP),
+
+                VK10.VK_NULL_HANDLE,
+                0,
+                0,
+                width,
+                height,
+                1);
+    }
+
+    @Override
+    public void destroy() {
+        this.blases.forEach(blas -> NVRayTracing.vkDestroyAccelerationStructureNV(this.vkDevice, blas, null));
+        this.blasesMemory.forEach(memory -> VK10.vkFreeMemory(this.vkDevice, memory, null));
+        NVRayTracing.vkDestroyAccelerationStructureNV(this.vkDevice, this.tlas, null);
+        VK10.vkFreeMemory(this.vkDevice, this.tlasMemory, null);
+
+        if (this.tlasScratchBuffer != VK10.VK_NULL_HANDLE) {
+            VK10.vkDestroyBuffer(this.vkDevice, this.tlasScratchBuffer, null);
+            VK10.vkFreeMemory(this.vkDevice, this.tlasScratchBufferMemory, null);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package vulkan.tutorial.raytracing;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.util.shaderc.Shaderc;
+import org.lwjgl.vulkan.*;
+import vulkan.tutorial.vulkan.VulkanUtils;
+
+import java.util.Set;
+
+/*
+ * The ray tracing extensions in order of preference. KHR is the cross vendor extension drivers keep
+ * optimizing, NV stays as the fallback for drivers that predate it.
+ */
+public enum RayTracingApi {
+    KHR(Set.of(KHRAccelerationStructure.VK_KHR_ACCELERATION_STRUCTURE_EXTENSION_NAME,
+            KHRRayTracingPipeline.VK_KHR_RAY_TRACING_PIPELINE_EXTENSION_NAME,
+            KHRDeferredHostOperations.VK_KHR_DEFERRED_HOST_OPERATIONS_EXTENSION_NAME),
+            "shaders/khr/",
+            Shaderc.shaderc_env_version_vulkan_1_2),
+    NV(Set.of(NVRayTracing.VK_NV_RAY_TRACING_EXTENSION_NAME),
+            "shaders/",
+            Shaderc.shaderc_env_version_vulkan_1_0);
+
+    private final Set<String> deviceExtensions;
+    private final String shaderDirectory;
+    private final int shaderTargetEnv;
+
+    RayTracingApi(Set<String> deviceExtensions, String shaderDirectory, int shaderTargetEnv) {
+        this.deviceExtensions = deviceExtensions;
+        this.shaderDirectory = shaderDirectory;
+        this.shaderTargetEnv = shaderTargetEnv;
+    }
+
+    /*
+     * The first API the device supports, null if it can't ray trace
+     */
+    public static RayTracingApi select(VkPhysicalDevice vkPhysicalDevice) {
+        for (RayTracingApi api : values()) {
+            if (api.isSupported(vkPhysicalDevice)) {
+                return api;
+            }
+        }
+        return null;
+    }
+
+    public boolean isSupported(VkPhysicalDevice vkPhysicalDevice) {
+        if (!VulkanUtils.isExtensionsSupported(vkPhysicalDevice, this.deviceExtensions)) {
+            return false;
+        }
+        return this != KHR || KhrRayTracingBackend.isFeatureSupported(vkPhysicalDevice);
+    }
+
+    public Set<String> getDeviceExtensions() {
+        return this.deviceExtensions;
+    }
+
+    /*
+     * pNext chain of VkDeviceCreateInfo that enables the features this API needs, NULL if there are none
+     */
+    public long enableFeatures(VkPhysicalDevice vkPhysicalDevice, MemoryStack stack) {
+        if (this == KHR) {
+            return KhrRayTracingBackend.createFeatureChain(vkPhysicalDevice, stack);
+        }
+        return MemoryUtil.NULL;
+    }
+
+    public String getShaderFile(String name) {
+        return this.shaderDirectory + name;
+    }
+
+    /*
+     * shaderc_env_version_vulkan_* the shaders of this API are compiled for
+     */
+    public int getShaderTargetEnv() {
+        return this.shaderTargetEnv;
+    }
+
+    public RayTracingBackend createBackend(VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice, long commandPool, VkQueue vkQueue) {
+        if (this == KHR) {
+            return new KhrRayTracingBackend(vkDevice, vkPhysicalDevice, commandPool, vkQueue);
+        }
+        return new NvRayTracingBackend(vkDevice, vkPhysicalDevice, commandPool, vkQueue);
+    }
+}
@@ -0,0 +1,76 @@
+package vulkan.tutorial.raytracing;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VkCommandBuffer;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.vulkan.BlasGeometry;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+ * The parts of ray tracing that differ between VK_KHR_ray_tracing_pipeline and VK_NV_ray_tracing:
+ * acceleration structures, the pipeline, shader group handles and the trace call.
+ *
+ * Access flags, pipeline stages, shader stages, build flags and the bind point have the same values
+ * in both extensions, the caller records barriers and descriptor layouts with the KHR names.
+ */
+public interface RayTracingBackend {
+    //primary rays plus the shadow rays the closest hit shader traces
+    int MAX_RECURSION_DEPTH = 2;
+
+    RayTracingApi getApi();
+
+    int getShaderGroupHandleSize();
+
+    int getShaderGroupBaseAlignment();
+
+    /*
+     * Shader binding table record strides are a multiple of this
+     */
+    int getShaderGroupHandleAlignment();
+
+    /*
+     * Usage a buffer needs to be read by an acceleration structure build (vertices, indices, instances)
+     */
+    int getBuildInputBufferUsage();
+
+    int getShaderBindingTableUsage();
+
+    int getAccelerationStructureDescriptorType();
+
+    /*
+     * Builds and compacts one BLAS per geometry. Returns for every BLAS the value a TLAS instance
+     * references it by, the NV handle or the KHR device address.
+     */
+    long[] buildBlases(List<BlasGeometry> geometries);
+
+    /*
+     * Builds the TLAS over every instance of the scene. allowUpdate keeps the scratch memory for cmdUpdateTlas.
+     */
+    void buildTlas(Scene scene, boolean allowUpdate);
+
+    /*
+     * Records an in place update of the TLAS from instanceCount instances at instanceOffset in instanceBuffer
+     */
+    void cmdUpdateTlas(VkCommandBuffer commandBuffer, long instanceBuffer, long instanceOffset, int instanceCount, MemoryStack stack);
+
+    /*
+     * pNext of the VkWriteDescriptorSet that binds the TLAS
+     */
+    long createTlasDescriptorWrite(MemoryStack stack);
+
+    /*
+     * Group 0 is raygen, group 1 miss and group 2 the triangle hit group with the closest hit shader
+     */
+    long createPipeline(long pipelineLayout, long rayGenModule, long missModule, long closestHitModule);
+
+    void getShaderGroupHandles(long pipeline, int groupCount, ByteBuffer handles);
+
+    void cmdTraceRays(VkCommandBuffer commandBuffer, ShaderBindingTable shaderBindingTable, int width, int height, MemoryStack stack);
+
+    /*
+     * Frees the acceleration structures, the pipeline is owned by the caller
+     */
+    void destroy();
+}
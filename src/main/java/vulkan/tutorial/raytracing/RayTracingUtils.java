@@ -0,0 +1,54 @@
+package vulkan.tutorial.raytracing;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.KHRRayTracingPipeline;
+import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkPipelineShaderStageCreateInfo;
+
+import java.nio.ByteBuffer;
+
+class RayTracingUtils {
+
+    private RayTracingUtils() {
+        //Util class
+    }
+
+    /*
+     * Stage 0 raygen, stage 1 miss, stage 2 closest hit. The stage bits are the same for NV and KHR.
+     */
+    static VkPipelineShaderStageCreateInfo.Buffer createShaderStages(long rayGenModule, long missModule, long closestHitModule, MemoryStack stack) {
+        ByteBuffer entryPoint = stack.UTF8("main");
+
+        VkPipelineShaderStageCreateInfo.Buffer shaderStages = VkPipelineShaderStageCreateInfo.calloc(3, stack);
+
+        long[] modules = {rayGenModule, missModule, closestHitModule};
+        int[] stages = {KHRRayTracingPipeline.VK_SHADER_STAGE_RAYGEN_BIT_KHR, KHRRayTracingPipeline.VK_SHADER_STAGE_MISS_BIT_KHR, KHRRayTracingPipeline.VK_SHADER_STAGE_CLOSEST_HIT_BIT_KHR};
+
+        for (int i = 0; i < modules.length; i++) {
+            VkPipelineShaderStageCreateInfo shaderStageInfo = shaderStages.get(i);
+            shaderStageInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO);
+            shaderStageInfo.stage(stages[i]);
+            shaderStageInfo.module(modules[i]);
+            shaderStageInfo.pName(entryPoint);
+        }
+
+        return shaderStages;
+    }
+
+    static void printCompaction(long[] originalSizes, long[] compactedSizes) {
+        long totalOriginalSize = 0;
+        long totalCompactedSize = 0;
+
+        for (int i = 0; i < originalSizes.length; i++) {
+            System.out.println("BLAS " + i + " compacted from " + originalSizes[i] + " to " + compactedSizes[i] + " bytes, saved "
+                    + (originalSizes[i] - compactedSizes[i]) + " bytes (" + (100 * (originalSizes[i] - compactedSizes[i]) / Math.max(originalSizes[i], 1)) + "%)");
+
+            totalOriginalSize += originalSizes[i];
+            totalCompactedSize += compactedSizes[i];
+        }
+
+        if (originalSizes.length > 1) {
+            System.out.println("All BLAS compacted from " + totalOriginalSize + " to " + totalCompactedSize + " bytes");
+        }
+    }
+}
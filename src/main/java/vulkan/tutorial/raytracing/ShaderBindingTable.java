@@ -0,0 +1,115 @@
+package vulkan.tutorial.raytracing;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkDevice;
+import org.lwjgl.vulkan.VkPhysicalDevice;
+import vulkan.tutorial.raytracing.ShaderBindingTableLayout.Region;
+import vulkan.tutorial.vulkan.VulkanUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/*
+ * A shader binding table in host visible memory that stays mapped. The group handles of the pipeline
+ * are kept, so records can be pointed at another group or get new inline data at any time without
+ * rebuilding the pipeline or the table. Only rewrite records no submitted trace still reads.
+ */
+public class ShaderBindingTable {
+
+    private final VkDevice vkDevice;
+    private final ShaderBindingTableLayout layout;
+    private final ByteBuffer groupHandles;
+    private final long buffer;
+    private final long bufferMemory;
+    private final ByteBuffer data;
+
+    private ShaderBindingTable(VkDevice vkDevice, ShaderBindingTableLayout layout, ByteBuffer groupHandles, long buffer, long bufferMemory, ByteBuffer data) {
+        this.vkDevice = vkDevice;
+        this.layout = layout;
+        this.groupHandles = groupHandles;
+        this.buffer = buffer;
+        this.bufferMemory = bufferMemory;
+        this.data = data;
+    }
+
+    public static ShaderBindingTable create(RayTracingBackend rayTracing, long pipeline, int groupCount, ShaderBindingTableLayout layout,
+                                            VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice) {
+        ByteBuffer groupHandles = MemoryUtil.memAlloc(groupCount * layout.getHandleSize());
+        rayTracing.getShaderGroupHandles(pipeline, groupCount, groupHandles);
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            LongBuffer pBuffer = stack.mallocLong(1);
+            LongBuffer pBufferMemory = stack.mallocLong(1);
+
+            VulkanUtils.createAllocateBindBuffer(layout.getSize(),
+                    VK10.VK_BUFFER_USAGE_TRANSFER_SRC_BIT | rayTracing.getShaderBindingTableUsage(),
+                    VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT,
+                    pBuffer,
+                    pBufferMemory, vkDevice, vkPhysicalDevice);
+
+            PointerBuffer pData = stack.mallocPointer(1);
+            VK10.vkMapMemory(vkDevice, pBufferMemory.get(0), 0, layout.getSize(), 0, pData);
+
+            ByteBuffer data = pData.getByteBuffer(0, (int) layout.getSize());
+            MemoryUtil.memSet(data, 0);
+
+            return new ShaderBindingTable(vkDevice, layout, groupHandles, pBuffer.get(0), pBufferMemory.get(0), data);
+        }
+    }
+
+    /*
+     * Points a record at one of the pipeline's shader groups
+     */
+    public void setGroup(Region region, int record, int group) {
+        final int handleSize = this.layout.getHandleSize();
+
+        MemoryUtil.memCopy(MemoryUtil.memAddress(this.groupHandles) + (long) group * handleSize,
+                MemoryUtil.memAddress(this.data) + this.layout.getRecordOffset(region, record),
+                handleSize);
+    }
+
+    /*
+     * Copies the remaining bytes of inlineData into the record, they must fit the region's data size
+     */
+    public void setData(Region region, int record, ByteBuffer inlineData) {
+        if (inlineData.remaining() > this.layout.getDataSize(region)) {
+            throw new IllegalArgumentException(inlineData.remaining() + " bytes don't fit the " + this.layout.getDataSize(region) + " bytes of inline data of " + region);
+        }
+
+        MemoryUtil.memCopy(MemoryUtil.memAddress(inlineData), MemoryUtil.memAddress(this.data) + this.layout.getDataOffset(region, record), inlineData.remaining());
+    }
+
+    public void setData(Region region, int record, int dataOffset, int value) {
+        checkDataRange(region, dataOffset, Integer.BYTES);
+        MemoryUtil.memPutInt(MemoryUtil.memAddress(this.data) + this.layout.getDataOffset(region, record) + dataOffset, value);
+    }
+
+    public void setData(Region region, int record, int dataOffset, long value) {
+        checkDataRange(region, dataOffset, Long.BYTES);
+        MemoryUtil.memPutLong(MemoryUtil.memAddress(this.data) + this.layout.getDataOffset(region, record) + dataOffset, value);
+    }
+
+    private void checkDataRange(Region region, int dataOffset, int size) {
+        if (dataOffset < 0 || dataOffset + size > this.layout.getDataSize(region)) {
+            throw new IndexOutOfBoundsException("Inline data of " + region + " is " + this.layout.getDataSize(region) + " bytes, can't write " + size + " at " + dataOffset);
+        }
+    }
+
+    public ShaderBindingTableLayout getLayout() {
+        return this.layout;
+    }
+
+    public long getBuffer() {
+        return this.buffer;
+    }
+
+    public void destroy() {
+        VK10.vkUnmapMemory(this.vkDevice, this.bufferMemory);
+        VK10.vkDestroyBuffer(this.vkDevice, this.buffer, null);
+        VK10.vkFreeMemory(this.vkDevice, this.bufferMemory, null);
+        MemoryUtil.memFree(this.groupHandles);
+    }
+}
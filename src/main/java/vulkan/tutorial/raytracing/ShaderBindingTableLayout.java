@@ -0,0 +1,116 @@
+package vulkan.tutorial.raytracing;
+
+/*
+ * Where the records of a shader binding table live in its buffer.
+ *
+ * The table has a raygen region with one record, then the miss and hit group regions. Every region
+ * starts at a multiple of shaderGroupBaseAlignment. A record is the shader group handle followed by
+ * the region's inline data (material index, buffer addresses, ...), its stride is rounded up to
+ * shaderGroupHandleAlignment. The raygen record is its own region, so its size equals its stride.
+ *
+ * Hit group records are indexed by the instanceOffset of a TLAS instance, see BlasInstance.getHitGroupId().
+ */
+public class ShaderBindingTableLayout {
+
+    public enum Region {
+        RAY_GEN,
+        MISS,
+        HIT_GROUP
+    }
+
+    private final int handleSize;
+    private final int[] recordCounts;
+    private final int[] dataSizes;
+    private final long[] offsets;
+    private final long[] strides;
+    private final long size;
+
+    private ShaderBindingTableLayout(int handleSize, int[] recordCounts, int[] dataSizes, long[] offsets, long[] strides, long size) {
+        this.handleSize = handleSize;
+        this.recordCounts = recordCounts;
+        this.dataSizes = dataSizes;
+        this.offsets = offsets;
+        this.strides = strides;
+        this.size = size;
+    }
+
+    public static ShaderBindingTableLayout create(int handleSize, int handleAlignment, int baseAlignment,
+                                                  int missCount, int hitGroupCount,
+                                                  int rayGenDataSize, int missDataSize, int hitGroupDataSize) {
+        if (handleSize < 1 || handleAlignment < 1 || baseAlignment < 1) {
+            throw new IllegalArgumentException("Handle size and alignments must be positive");
+        }
+
+        if (missCount < 0 || hitGroupCount < 0) {
+            throw new IllegalArgumentException("Record counts can't be negative");
+        }
+
+        if (rayGenDataSize < 0 || missDataSize < 0 || hitGroupDataSize < 0) {
+            throw new IllegalArgumentException("Inline data sizes can't be negative");
+        }
+
+        final int[] recordCounts = {1, missCount, hitGroupCount};
+        final int[] dataSizes = {rayGenDataSize, missDataSize, hitGroupDataSize};
+        final long[] offsets = new long[recordCounts.length];
+        final long[] strides = new long[recordCounts.length];
+
+        long offset = 0;
+        for (int region = 0; region < recordCounts.length; region++) {
+            offsets[region] = alignUp(offset, baseAlignment);
+            strides[region] = alignUp(handleSize + dataSizes[region], handleAlignment);
+            offset = offsets[region] + recordCounts[region] * strides[region];
+        }
+
+        return new ShaderBindingTableLayout(handleSize, recordCounts, dataSizes, offsets, strides, offset);
+    }
+
+    private static long alignUp(long value, long alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    public long getOffset(Region region) {
+        return this.offsets[region.ordinal()];
+    }
+
+    public long getStride(Region region) {
+        return this.strides[region.ordinal()];
+    }
+
+    public int getRecordCount(Region region) {
+        return this.recordCounts[region.ordinal()];
+    }
+
+    public long getRegionSize(Region region) {
+        return this.recordCounts[region.ordinal()] * this.strides[region.ordinal()];
+    }
+
+    /*
+     * Bytes of inline data after the handle of every record in the region
+     */
+    public int getDataSize(Region region) {
+        return this.dataSizes[region.ordinal()];
+    }
+
+    public long getRecordOffset(Region region, int record) {
+        if (record < 0 || record >= this.recordCounts[region.ordinal()]) {
+            throw new IndexOutOfBoundsException(region + " has " + this.recordCounts[region.ordinal()] + " records, no record " + record);
+        }
+
+        return this.offsets[region.ordinal()] + record * this.strides[region.ordinal()];
+    }
+
+    /*
+     * Offset of the inline data of a record
+     */
+    public long getDataOffset(Region region, int record) {
+        return getRecordOffset(region, record) + this.handleSize;
+    }
+
+    public int getHandleSize() {
+        return this.handleSize;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+}
@@ -0,0 +1,126 @@
+package vulkan.tutorial.resolution;
+
+/*
+ * Picks the scale of the ray traced resolution from the measured GPU frame times, so a frame stays
+ * close to a target time. The scale applies to both axes and the result is upscaled to the
+ * swapchain extent.
+ *
+ * The relative error of the smoothed frame time drives a PID controller on the pixel count, which
+ * the cost of a frame roughly follows. Errors within DEADBAND change nothing, the scale moves in
+ * steps of SCALE_STEP and only grows when the frame time at the larger size is expected to stay
+ * within the target, so noise doesn't resize the images (and drop the accumulated samples) every
+ * frame. Plain Java, so it can be driven by recorded or synthetic frame times.
+ */
+public class ResolutionController {
+    public static final float DEFAULT_MIN_SCALE = 0.5f;
+    public static final float DEFAULT_MAX_SCALE = 1.0f;
+    public static final float SCALE_STEP = 1.0f / 32.0f;
+
+    private static final double PROPORTIONAL_GAIN = 0.6;
+    private static final double INTEGRAL_GAIN = 0.05;
+    private static final double DERIVATIVE_GAIN = 0.2;
+    //relative frame time error that is accepted as on target
+    private static final double DEADBAND = 0.05;
+    private static final double INTEGRAL_LIMIT = 2.0;
+    //at most a quarter of the pixels are dropped at once
+    private static final double MIN_AREA_FACTOR = 0.25;
+    //weight of the newest frame time
+    private static final double SMOOTHING = 0.25;
+
+    private final long targetFrameNanos;
+    private final float minScale;
+    private final float maxScale;
+    private float scale;
+    private double frameNanos;
+    private double integral;
+    private double previousError;
+
+    public ResolutionController(long targetFrameNanos, float minScale, float maxScale) {
+        if (targetFrameNanos <= 0) {
+            throw new IllegalArgumentException("Invalid target frame time " + targetFrameNanos + "ns");
+        }
+
+        if (minScale <= 0.0f || maxScale > 1.0f || minScale > maxScale) {
+            throw new IllegalArgumentException("Invalid resolution scale range " + minScale + " - " + maxScale);
+        }
+
+        this.targetFrameNanos = targetFrameNanos;
+        this.minScale = minScale;
+        this.maxScale = maxScale;
+        this.scale = maxScale;
+    }
+
+    public static ResolutionController createDefault(long targetFrameNanos) {
+        return new ResolutionController(targetFrameNanos, DEFAULT_MIN_SCALE, DEFAULT_MAX_SCALE);
+    }
+
+    /*
+     * GPU time of a finished frame that was rendered at getScale(). Returns true when the scale
+     * changed.
+     */
+    public boolean update(long nanos) {
+        if (nanos <= 0) {
+            return false;
+        }
+
+        this.frameNanos = this.frameNanos <= 0.0 ? nanos : this.frameNanos + (nanos - this.frameNanos) * SMOOTHING;
+
+        //positive with time to spare, negative over the target
+        final double error = 1.0 - this.frameNanos / this.targetFrameNanos;
+        final double derivative = error - this.previousError;
+        this.previousError = error;
+
+        if (Math.abs(error) < DEADBAND) {
+            return false;
+        }
+
+        //no windup while the scale sits at a bound
+        if ((error > 0.0 && this.scale >= this.maxScale) || (error < 0.0 && this.scale <= this.minScale)) {
+            return false;
+        }
+
+        this.integral = Math.max(-INTEGRAL_LIMIT, Math.min(this.integral + error, INTEGRAL_LIMIT));
+
+        final double area = Math.max(1.0 + PROPORTIONAL_GAIN * error + INTEGRAL_GAIN * this.integral + DERIVATIVE_GAIN * derivative,
+                MIN_AREA_FACTOR);
+        final float newScale = quantize(this.scale * (float) Math.sqrt(area));
+
+        if (newScale == this.scale) {
+            return false;
+        }
+
+        final double ratio = (double) newScale / this.scale;
+
+        //only grow when the larger size is expected to fit, otherwise it would flip between two steps around the target
+        if (ratio > 1.0 && this.frameNanos * ratio * ratio > this.targetFrameNanos) {
+            return false;
+        }
+
+        //the smoothed time belongs to the old pixel count
+        this.frameNanos *= ratio * ratio;
+        this.scale = newScale;
+
+        return true;
+    }
+
+    private float quantize(float value) {
+        final float stepped = Math.round(value / SCALE_STEP) * SCALE_STEP;
+
+        return Math.max(this.minScale, Math.min(stepped, this.maxScale));
+    }
+
+    public float getScale() {
+        return this.scale;
+    }
+
+    /*
+     * Render size of a swapchain axis at the current scale
+     */
+    public int getRenderSize(int size) {
+        return Math.max(1, Math.round(size * this.scale));
+    }
+
+    public long getTargetFrameNanos() {
+        return this.targetFrameNanos;
+    }
+}
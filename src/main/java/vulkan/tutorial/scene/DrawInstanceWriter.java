@@ -0,0 +1,64 @@
+package vulkan.tutorial.scene;
+
+import org.lwjgl.system.MemoryUtil;
+import vulkan.tutorial.vulkan.BlasInstance;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Packs BlasInstances into the Instance struct of cull.comp and shader.vert (std430):
+ *
+ *  mat4 model          column major
+ *  uint mesh           the blasId, an index into the MeshPool
+ *  uint pad[3]
+ *
+ * The raster path draws instance i with firstInstance i, so gl_InstanceIndex finds its transform.
+ * The model matrix is the world matrix of the TransformStore, copied from its flat array.
+ */
+public class DrawInstanceWriter {
+
+    public static final int INSTANCE_SIZE = 80;
+
+    private static final int OFFSETOF_MESH = 16 * Float.BYTES;
+
+    private DrawInstanceWriter() {
+        //Util class
+    }
+
+    public static void write(Scene scene, ByteBuffer dst) {
+        write(scene, 0, scene.getInstanceCount(), dst);
+    }
+
+    /*
+     * Writes instances [first, first + count) at their own slots, dst must hold the whole scene.
+     */
+    public static void write(Scene scene, int first, int count, ByteBuffer dst) {
+        if (first < 0 || count < 0 || first + count > scene.getInstanceCount()) {
+            throw new IndexOutOfBoundsException("Instances " + first + ".." + (first + count) + " out of " + scene.getInstanceCount());
+        }
+
+        if ((long) (first + count) * INSTANCE_SIZE > dst.capacity()) {
+            throw new IllegalArgumentException("Instance buffer too small for " + (first + count) + " instances");
+        }
+
+        final long address = MemoryUtil.memAddress0(dst);
+        final float[] worlds = scene.getTransforms().getWorlds();
+
+        for (int i = first; i < first + count; i++) {
+            final BlasInstance instance = scene.getInstance(i);
+            final long instanceAddress = address + (long) i * INSTANCE_SIZE;
+            final int world = i * TransformStore.MATRIX_STRIDE;
+
+            for (int column = 0; column < 4; column++) {
+                final long columnAddress = instanceAddress + column * 4L * Float.BYTES;
+
+                MemoryUtil.memPutFloat(columnAddress, worlds[world + column * 3]);
+                MemoryUtil.memPutFloat(columnAddress + Float.BYTES, worlds[world + column * 3 + 1]);
+                MemoryUtil.memPutFloat(columnAddress + 2 * Float.BYTES, worlds[world + column * 3 + 2]);
+                MemoryUtil.memPutFloat(columnAddress + 3 * Float.BYTES, column == 3 ? 1.0f : 0.0f);
+            }
+
+            MemoryUtil.memPutInt(instanceAddress + OFFSETOF_MESH, instance.getBlasId());
+        }
+    }
+}
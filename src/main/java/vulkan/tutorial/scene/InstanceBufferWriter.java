@@ -0,0 +1,71 @@
+package vulkan.tutorial.scene;
+
+import org.lwjgl.system.MemoryUtil;
+import vulkan.tutorial.vulkan.BlasInstance;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Packs BlasInstances into the VkGeometryInstanceNV / VkAccelerationStructureInstanceKHR layout the
+ * TLAS build reads, both extensions share it:
+ *
+ *  float    transform[12]                         row major 3x4
+ *  uint32_t instanceCustomIndex : 24, mask : 8
+ *  uint32_t instanceOffset : 24, flags : 8        instanceOffset is the hit group record
+ *  uint64_t accelerationStructureReference        NV handle or KHR device address of the BLAS
+ *
+ * Everything is written straight to the buffer address, one bounds check per call instead of one
+ * per field.
+ */
+public class InstanceBufferWriter {
+
+    public static final int INSTANCE_SIZE = 64;
+
+    private static final int OFFSETOF_CUSTOM_INDEX_AND_MASK = 12 * Float.BYTES;
+    private static final int OFFSETOF_HIT_GROUP_AND_FLAGS = OFFSETOF_CUSTOM_INDEX_AND_MASK + Integer.BYTES;
+    private static final int OFFSETOF_ACC_STRUCT_HANDLE = OFFSETOF_HIT_GROUP_AND_FLAGS + Integer.BYTES;
+    private static final int LOW_24_BITS = 0xFFFFFF;
+
+    private InstanceBufferWriter() {
+        //Util class
+    }
+
+    public static void write(Scene scene, ByteBuffer dst) {
+        write(scene, 0, scene.getInstanceCount(), dst);
+    }
+
+    /*
+     * Writes instances [first, first + count) at their own slots, dst must hold the whole scene.
+     */
+    public static void write(Scene scene, int first, int count, ByteBuffer dst) {
+        if (first < 0 || count < 0 || first + count > scene.getInstanceCount()) {
+            throw new IndexOutOfBoundsException("Instances " + first + ".." + (first + count) + " out of " + scene.getInstanceCount());
+        }
+
+        if ((long) (first + count) * INSTANCE_SIZE > dst.capacity()) {
+            throw new IllegalArgumentException("Instance buffer too small for " + (first + count) + " instances");
+        }
+
+        final long address = MemoryUtil.memAddress0(dst);
+        final float[] worlds = scene.getTransforms().getWorlds();
+
+        for (int i = first; i < first + count; i++) {
+            writeInstance(scene, scene.getInstance(i), worlds, i * TransformStore.MATRIX_STRIDE, address, i * INSTANCE_SIZE);
+        }
+    }
+
+    private static void writeInstance(Scene scene, BlasInstance instance, float[] worlds, int world, long address, int offset) {
+        //the store keeps columns, the instance wants rows
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 4; column++) {
+                MemoryUtil.memPutFloat(address + offset + (row * 4 + column) * Float.BYTES, worlds[world + column * 3 + row]);
+            }
+        }
+
+        MemoryUtil.memPutInt(address + offset + OFFSETOF_CUSTOM_INDEX_AND_MASK,
+                (instance.getInstanceId() & LOW_24_BITS) | (instance.getMask() << 24));
+        MemoryUtil.memPutInt(address + offset + OFFSETOF_HIT_GROUP_AND_FLAGS,
+                (instance.getHitGroupId() & LOW_24_BITS) | (instance.getFlags() << 24));
+        MemoryUtil.memPutLong(address + offset + OFFSETOF_ACC_STRUCT_HANDLE, scene.getBlasHandle(instance.getBlasId()));
+    }
+}
@@ -0,0 +1,105 @@
+package vulkan.tutorial.scene;
+
+import org.lwjgl.system.MemoryUtil;
+import vulkan.tutorial.shader.AlignmentUtils;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/*
+ * Keeps one copy of the instance buffer per frame slot inside a persistently mapped buffer, so the
+ * CPU never writes instances a TLAS update still in flight reads from.
+ *
+ * Every slot has its own pending set: a change is copied into each slot the next time that slot is
+ * uploaded, and only changed instances are ever rewritten.
+ *
+ * The layout of the instances is up to the Writer, by default the TLAS instances of
+ * InstanceBufferWriter.
+ */
+public class InstanceUploader {
+
+    /*
+     * Writes instances [first, first + count) of the scene at their own slots of dst
+     */
+    public interface Writer {
+        void write(Scene scene, int first, int count, ByteBuffer dst);
+    }
+
+    private final Scene scene;
+    private final Writer writer;
+    private final ByteBuffer[] slices;
+    private final BitSet[] pending;
+    private final BitSet changed = new BitSet();
+    private final long sliceSize;
+
+    public InstanceUploader(Scene scene, ByteBuffer mapped, int sliceCount) {
+        this(scene, mapped, sliceCount, InstanceBufferWriter.INSTANCE_SIZE, 1, InstanceBufferWriter::write);
+    }
+
+    /*
+     * Slices start at multiples of sliceAlignment, so every one can be bound on its own
+     */
+    public InstanceUploader(Scene scene, ByteBuffer mapped, int sliceCount, int instanceSize, int sliceAlignment, Writer writer) {
+        this.scene = scene;
+        this.writer = writer;
+        this.sliceSize = getSliceSize(scene, instanceSize, sliceAlignment);
+        this.slices = new ByteBuffer[sliceCount];
+        this.pending = new BitSet[sliceCount];
+
+        if (mapped.capacity() < this.sliceSize * sliceCount) {
+            throw new IllegalArgumentException("Instance buffer too small for " + sliceCount + " slices");
+        }
+
+        for (int slot = 0; slot < sliceCount; slot++) {
+            this.slices[slot] = MemoryUtil.memSlice(mapped, (int) (slot * this.sliceSize), (int) this.sliceSize);
+            this.pending[slot] = new BitSet(scene.getInstanceCount());
+
+            writer.write(scene, 0, scene.getInstanceCount(), this.slices[slot]);
+        }
+    }
+
+    /*
+     * Writes every instance changed since the slot was last uploaded and returns how many were written.
+     */
+    public int upload(int slot) {
+        this.scene.drainDirty(this.changed);
+        for (BitSet slotPending : this.pending) {
+            slotPending.or(this.changed);
+        }
+        this.changed.clear();
+
+        final BitSet slotPending = this.pending[slot];
+        int written = 0;
+
+        for (int first = slotPending.nextSetBit(0); first >= 0; first = slotPending.nextSetBit(first)) {
+            final int end = slotPending.nextClearBit(first);
+            this.writer.write(this.scene, first, end - first, this.slices[slot]);
+            written += end - first;
+            first = end;
+        }
+
+        slotPending.clear();
+
+        return written;
+    }
+
+    public long getSliceOffset(int slot) {
+        return slot * this.sliceSize;
+    }
+
+    public int getSliceCount() {
+        return this.slices.length;
+    }
+
+    public long getSliceSize() {
+        return this.sliceSize;
+    }
+
+    public static long getSliceSize(Scene scene) {
+        return getSliceSize(scene, InstanceBufferWriter.INSTANCE_SIZE, 1);
+    }
+
+    public static long getSliceSize(Scene scene, int instanceSize, int sliceAlignment) {
+        return AlignmentUtils.alignAs(scene.getInstanceCount() * instanceSize, sliceAlignment);
+    }
+}
@@ -0,0 +1,171 @@
+package vulkan.tutorial.scene;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import vulkan.tutorial.vulkan.BlasInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * The ray traced scene: a list of BlasInstances, each one referencing a shared BLAS by its blasId.
+ * Many instances of a few meshes cost one BLAS build per mesh and a single TLAS build.
+ *
+ * The BLAS handles are only known once the acceleration structures exist on the device, so they are
+ * registered afterwards with setBlasHandle().
+ *
+ * A scene with an animation is dynamic: its TLAS is built with ALLOW_UPDATE and refitted every frame.
+ * Instances changed through setTransform() or markDirty() are the only ones rewritten into the
+ * instance buffer.
+ *
+ * The transforms live in a TransformStore, instance i is its entity i. An instance can have a parent
+ * instance added before it, setTransform() then sets the transform relative to the parent. World
+ * transforms follow at the next updateTransforms(), drainDirty() runs it.
+ */
+public class Scene {
+
+    private final List<BlasInstance> instances = new ArrayList<>();
+    private long[] blasHandles = new long[0];
+    private int blasCount;
+    private final BitSet dirty = new BitSet();
+    private final TransformStore transforms = new TransformStore();
+    private SceneAnimation animation;
+
+    public BlasInstance addInstance(int blasId, Matrix4fc transform) {
+        return addInstance(blasId, TransformStore.NO_PARENT, transform);
+    }
+
+    /*
+     * parent: index of an instance or TransformStore.NO_PARENT, transform is relative to it
+     */
+    public BlasInstance addInstance(int blasId, int parent, Matrix4fc transform) {
+        BlasInstance instance = new BlasInstance();
+        instance.setBlasId(blasId);
+        instance.setInstanceId(this.instances.size());
+
+        this.transforms.add(parent, transform);
+        this.instances.add(instance);
+        this.blasCount = Math.max(this.blasCount, blasId + 1);
+
+        return instance;
+    }
+
+    public void setBlasHandle(int blasId, long handle) {
+        if (blasId >= this.blasHandles.length) {
+            this.blasHandles = Arrays.copyOf(this.blasHandles, Math.max(blasId + 1, this.blasHandles.length * 2));
+        }
+
+        this.blasHandles[blasId] = handle;
+        this.blasCount = Math.max(this.blasCount, blasId + 1);
+    }
+
+    public long getBlasHandle(int blasId) {
+        return blasId < this.blasHandles.length ? this.blasHandles[blasId] : 0L;
+    }
+
+    /*
+     * Number of distinct BLASes the scene needs, i.e. highest blasId + 1
+     */
+    public int getBlasCount() {
+        return this.blasCount;
+    }
+
+    /*
+     * Relative to the parent, if any
+     */
+    public void setTransform(int index, Matrix4fc transform) {
+        this.transforms.setLocal(index, transform);
+    }
+
+    /*
+     * The world transform as of the last updateTransforms()
+     */
+    public Matrix4f getTransform(int index, Matrix4f dest) {
+        return this.transforms.getWorld(index, dest);
+    }
+
+    public TransformStore getTransforms() {
+        return this.transforms;
+    }
+
+    /*
+     * Recomputes the world transforms changed since the last call and marks their instances dirty
+     */
+    public void updateTransforms() {
+        this.transforms.update(this.dirty);
+    }
+
+    public void markDirty(int index) {
+        this.dirty.set(index);
+    }
+
+    /*
+     * Moves the dirty instances since the last call into pending and forgets them.
+     */
+    public void drainDirty(BitSet pending) {
+        updateTransforms();
+        pending.or(this.dirty);
+        this.dirty.clear();
+    }
+
+    public void animate(double seconds) {
+        if (this.animation != null) {
+            this.animation.animate(this, seconds);
+        }
+    }
+
+    public boolean isDynamic() {
+        return this.animation != null;
+    }
+
+    public void setAnimation(SceneAnimation animation) {
+        this.animation = animation;
+    }
+
+    public BlasInstance getInstance(int index) {
+        return this.instances.get(index);
+    }
+
+    public List<BlasInstance> getInstances() {
+        return Collections.unmodifiableList(this.instances);
+    }
+
+    public int getInstanceCount() {
+        return this.instances.size();
+    }
+
+    /*
+     * Hit group records the shader binding table needs, i.e. highest hitGroupId + 1
+     */
+    public int getHitGroupCount() {
+        return this.instances.stream().mapToInt(BlasInstance::getHitGroupId).max().orElse(0) + 1;
+    }
+
+    public static Scene createSingle(int blasId) {
+        Scene scene = new Scene();
+        scene.addInstance(blasId, new Matrix4f());
+        return scene;
+    }
+
+    /*
+     * instanceCount copies of one mesh on a square grid in the xy plane, centered on the origin
+     */
+    public static Scene createGrid(int blasId, int instanceCount, float spacing) {
+        Scene scene = new Scene();
+        final int columns = (int) Math.ceil(Math.sqrt(instanceCount));
+        final float offset = (columns - 1) * spacing * 0.5f;
+        final Matrix4f transform = new Matrix4f();
+
+        for (int i = 0; i < instanceCount; i++) {
+            final float x = (i % columns) * spacing - offset;
+            final float y = (i / columns) * spacing - offset;
+
+            scene.addInstance(blasId, transform.translation(x, y, 0.0f));
+        }
+
+        return scene;
+    }
+}
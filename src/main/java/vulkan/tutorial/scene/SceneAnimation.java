@@ -0,0 +1,41 @@
+package vulkan.tutorial.scene;
+
+import org.joml.Matrix4f;
+
+@FunctionalInterface
+public interface SceneAnimation {
+
+    /*
+     * Called once per frame before the instances are uploaded, seconds since the first frame.
+     */
+    void animate(Scene scene, double seconds);
+
+    /*
+     * Spins every instance around its own z axis, keeping the position it had relative to its parent
+     * when the animation was created. The local transforms are written into the TransformStore
+     * directly.
+     */
+    static SceneAnimation spin(Scene scene, float radiansPerSecond) {
+        final int instanceCount = scene.getInstanceCount();
+        final float[] positions = new float[instanceCount * 3];
+        final Matrix4f local = new Matrix4f();
+
+        for (int i = 0; i < instanceCount; i++) {
+            scene.getTransforms().getLocal(i, local);
+            positions[i * 3] = local.m30();
+            positions[i * 3 + 1] = local.m31();
+            positions[i * 3 + 2] = local.m32();
+        }
+
+        return (animatedScene, seconds) -> {
+            final TransformStore transforms = animatedScene.getTransforms();
+
+            for (int i = 0; i < instanceCount; i++) {
+                final double halfAngle = ((float) (seconds * radiansPerSecond) + i) * 0.5;
+
+                transforms.setLocal(i, positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2],
+                        0.0f, 0.0f, (float) Math.sin(halfAngle), (float) Math.cos(halfAngle), 1.0f);
+            }
+        };
+    }
+}
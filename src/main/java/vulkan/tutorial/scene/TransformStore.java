@@ -0,0 +1,354 @@
+package vulkan.tutorial.scene;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * The transforms of a scene as structure of arrays: entity i has its local and its world matrix at
+ * i * MATRIX_STRIDE of two flat float arrays and the index of its parent at parents[i], -1 for a
+ * root. Parents are added before their children, so parents[i] < i.
+ *
+ * The matrices are affine, 4 columns of x, y, z like the 4x3 part of a JOML Matrix4f:
+ *
+ *  m00 m01 m02  m10 m11 m12  m20 m21 m22  m30 m31 m32
+ *
+ * Setting a local matrix or a parent only marks the entity dirty. update() recomputes world =
+ * parent world * local for the dirty entities and everything below them, one depth level after the
+ * other and every level in PARALLEL_THRESHOLD sized fork/join tasks. The writers of the instance
+ * buffers read the world matrices straight from getWorlds().
+ *
+ * update() sweeps every entity of every level and skips the clean ones, so a frame with a single
+ * dirty entity still costs a pass over all of them. That keeps the levels flat arrays that split
+ * evenly across the pool, which wins when a good part of the scene moves every frame; walking only
+ * the dirty subtrees would need child lists and uneven tasks.
+ */
+public class TransformStore {
+    public static final int MATRIX_STRIDE = 12;
+    public static final int NO_PARENT = -1;
+
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    private final ForkJoinPool pool;
+    private float[] locals;
+    private float[] worlds;
+    private int[] parents;
+    private int[] depths;
+    private boolean[] changed;
+    private final BitSet dirty = new BitSet();
+    private int count;
+
+    //entities sorted by depth, level d is levelOrder[levelStarts[d]..levelStarts[d + 1])
+    private int[] levelOrder = new int[0];
+    private int[] levelStarts = new int[1];
+    private boolean levelsValid = true;
+
+    public TransformStore() {
+        this(16, ForkJoinPool.commonPool());
+    }
+
+    public TransformStore(int capacity, ForkJoinPool pool) {
+        this.pool = pool;
+        this.locals = new float[capacity * MATRIX_STRIDE];
+        this.worlds = new float[capacity * MATRIX_STRIDE];
+        this.parents = new int[capacity];
+        this.depths = new int[capacity];
+        this.changed = new boolean[capacity];
+    }
+
+    /*
+     * Adds an entity and returns its index. Its world matrix is valid right away, the parent has to
+     * be up to date.
+     */
+    public int add(int parent, Matrix4fc local) {
+        if (parent < NO_PARENT || parent >= this.count) {
+            throw new IndexOutOfBoundsException("Parent " + parent + " out of " + this.count);
+        }
+
+        if (this.count == this.parents.length) {
+            grow(Math.max(16, this.count * 2));
+        }
+
+        final int entity = this.count++;
+
+        this.parents[entity] = parent;
+        this.depths[entity] = parent == NO_PARENT ? 0 : this.depths[parent] + 1;
+        this.levelsValid = false;
+
+        setLocal(entity, local);
+        computeWorld(entity);
+        this.dirty.clear(entity);
+
+        return entity;
+    }
+
+    private void grow(int capacity) {
+        this.locals = Arrays.copyOf(this.locals, capacity * MATRIX_STRIDE);
+        this.worlds = Arrays.copyOf(this.worlds, capacity * MATRIX_STRIDE);
+        this.parents = Arrays.copyOf(this.parents, capacity);
+        this.depths = Arrays.copyOf(this.depths, capacity);
+        this.changed = Arrays.copyOf(this.changed, capacity);
+    }
+
+    public void setLocal(int entity, Matrix4fc local) {
+        final int offset = checkEntity(entity) * MATRIX_STRIDE;
+        final float[] dst = this.locals;
+
+        dst[offset] = local.m00();
+        dst[offset + 1] = local.m01();
+        dst[offset + 2] = local.m02();
+        dst[offset + 3] = local.m10();
+        dst[offset + 4] = local.m11();
+        dst[offset + 5] = local.m12();
+        dst[offset + 6] = local.m20();
+        dst[offset + 7] = local.m21();
+        dst[offset + 8] = local.m22();
+        dst[offset + 9] = local.m30();
+        dst[offset + 10] = local.m31();
+        dst[offset + 11] = local.m32();
+
+        this.dirty.set(entity);
+    }
+
+    /*
+     * Translation, then rotation by the unit quaternion (qx, qy, qz, qw), then uniform scale, without
+     * a Matrix4f in between
+     */
+    public void setLocal(int entity, float x, float y, float z, float qx, float qy, float qz, float qw, float scale) {
+        final int offset = checkEntity(entity) * MATRIX_STRIDE;
+        final float[] dst = this.locals;
+
+        final float xx = qx * qx, yy = qy * qy, zz = qz * qz;
+        final float xy = qx * qy, xz = qx * qz, yz = qy * qz;
+        final float wx = qw * qx, wy = qw * qy, wz = qw * qz;
+
+        dst[offset] = (1.0f - 2.0f * (yy + zz)) * scale;
+        dst[offset + 1] = 2.0f * (xy + wz) * scale;
+        dst[offset + 2] = 2.0f * (xz - wy) * scale;
+        dst[offset + 3] = 2.0f * (xy - wz) * scale;
+        dst[offset + 4] = (1.0f - 2.0f * (xx + zz)) * scale;
+        dst[offset + 5] = 2.0f * (yz + wx) * scale;
+        dst[offset + 6] = 2.0f * (xz + wy) * scale;
+        dst[offset + 7] = 2.0f * (yz - wx) * scale;
+        dst[offset + 8] = (1.0f - 2.0f * (xx + yy)) * scale;
+        dst[offset + 9] = x;
+        dst[offset + 10] = y;
+        dst[offset + 11] = z;
+
+        this.dirty.set(entity);
+    }
+
+    /*
+     * Moves entity below parent, its local matrix stays and is now relative to the new parent. The
+     * parent has to come before the entity, so there are no cycles.
+     */
+    public void setParent(int entity, int parent) {
+        checkEntity(entity);
+
+        if (parent < NO_PARENT || parent >= entity) {
+            throw new IllegalArgumentException("Parent of entity " + entity + " must be a lower index or " + NO_PARENT + ", got " + parent);
+        }
+
+        this.parents[entity] = parent;
+
+        //descendants have higher indices than their ancestors, so one pass in index order is enough
+        for (int i = entity; i < this.count; i++) {
+            this.depths[i] = this.parents[i] == NO_PARENT ? 0 : this.depths[this.parents[i]] + 1;
+        }
+
+        this.levelsValid = false;
+        this.dirty.set(entity);
+    }
+
+    public Matrix4f getLocal(int entity, Matrix4f dest) {
+        return get(this.locals, checkEntity(entity) * MATRIX_STRIDE, dest);
+    }
+
+    /*
+     * As of the last update()
+     */
+    public Matrix4f getWorld(int entity, Matrix4f dest) {
+        return get(this.worlds, checkEntity(entity) * MATRIX_STRIDE, dest);
+    }
+
+    private static Matrix4f get(float[] src, int offset, Matrix4f dest) {
+        return dest.set(
+                src[offset], src[offset + 1], src[offset + 2], 0.0f,
+                src[offset + 3], src[offset + 4], src[offset + 5], 0.0f,
+                src[offset + 6], src[offset + 7], src[offset + 8], 0.0f,
+                src[offset + 9], src[offset + 10], src[offset + 11], 1.0f);
+    }
+
+    /*
+     * The world matrices of all entities, MATRIX_STRIDE floats each. The array is replaced when the
+     * store grows, don't keep it across add().
+     */
+    public float[] getWorlds() {
+        return this.worlds;
+    }
+
+    public int getParent(int entity) {
+        return this.parents[checkEntity(entity)];
+    }
+
+    public int getDepth(int entity) {
+        return this.depths[checkEntity(entity)];
+    }
+
+    public int getCount() {
+        return this.count;
+    }
+
+    public boolean isDirty() {
+        return !this.dirty.isEmpty();
+    }
+
+    private int checkEntity(int entity) {
+        if (entity < 0 || entity >= this.count) {
+            throw new IndexOutOfBoundsException("Entity " + entity + " out of " + this.count);
+        }
+
+        return entity;
+    }
+
+    /*
+     * Recomputes the world matrices of the dirty entities and their descendants, sets their bits in
+     * changed and clears the dirty set.
+     */
+    public void update(BitSet changed) {
+        if (this.dirty.isEmpty()) {
+            return;
+        }
+
+        if (!this.levelsValid) {
+            buildLevels();
+        }
+
+        for (int level = 0; level + 1 < this.levelStarts.length; level++) {
+            final int start = this.levelStarts[level];
+            final int end = this.levelStarts[level + 1];
+
+            if (end - start > PARALLEL_THRESHOLD) {
+                this.pool.invoke(new LevelTask(start, end));
+            } else {
+                updateRange(start, end);
+            }
+        }
+
+        changed.or(this.dirty);
+
+        //below the roots, descendants of dirty entities changed as well
+        if (this.levelStarts.length > 2) {
+            for (int entity = 0; entity < this.count; entity++) {
+                if (this.changed[entity]) {
+                    changed.set(entity);
+                }
+            }
+        }
+
+        Arrays.fill(this.changed, 0, this.count, false);
+        this.dirty.clear();
+    }
+
+    private void buildLevels() {
+        int maxDepth = 0;
+
+        for (int entity = 0; entity < this.count; entity++) {
+            maxDepth = Math.max(maxDepth, this.depths[entity]);
+        }
+
+        //counting sort by depth keeps the entities of a level in index order
+        final int[] starts = new int[maxDepth + 2];
+
+        for (int entity = 0; entity < this.count; entity++) {
+            starts[this.depths[entity] + 1]++;
+        }
+
+        for (int level = 0; level <= maxDepth; level++) {
+            starts[level + 1] += starts[level];
+        }
+
+        final int[] next = Arrays.copyOf(starts, maxDepth + 1);
+        final int[] order = new int[this.count];
+
+        for (int entity = 0; entity < this.count; entity++) {
+            order[next[this.depths[entity]]++] = entity;
+        }
+
+        this.levelOrder = order;
+        this.levelStarts = starts;
+        this.levelsValid = true;
+    }
+
+    /*
+     * The parents of levelOrder[start..end) are up to date, the entities only write their own slots
+     */
+    private void updateRange(int start, int end) {
+        for (int i = start; i < end; i++) {
+            final int entity = this.levelOrder[i];
+            final int parent = this.parents[entity];
+
+            if (this.dirty.get(entity) || (parent != NO_PARENT && this.changed[parent])) {
+                computeWorld(entity);
+                this.changed[entity] = true;
+            }
+        }
+    }
+
+    private void computeWorld(int entity) {
+        final int parent = this.parents[entity];
+        final int offset = entity * MATRIX_STRIDE;
+
+        if (parent == NO_PARENT) {
+            System.arraycopy(this.locals, offset, this.worlds, offset, MATRIX_STRIDE);
+        } else {
+            mul(this.worlds, parent * MATRIX_STRIDE, this.locals, offset, this.worlds, offset);
+        }
+    }
+
+    /*
+     * dst = a * b for affine matrices, dst must not overlap a or b
+     */
+    static void mul(float[] a, int aOffset, float[] b, int bOffset, float[] dst, int dstOffset) {
+        for (int column = 0; column < 4; column++) {
+            final float bx = b[bOffset + column * 3];
+            final float by = b[bOffset + column * 3 + 1];
+            final float bz = b[bOffset + column * 3 + 2];
+            final float translation = column == 3 ? 1.0f : 0.0f;
+
+            for (int row = 0; row < 3; row++) {
+                dst[dstOffset + column * 3 + row] = a[aOffset + row] * bx
+                        + a[aOffset + 3 + row] * by
+                        + a[aOffset + 6 + row] * bz
+                        + a[aOffset + 9 + row] * translation;
+            }
+        }
+    }
+
+    private final class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        private LevelTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start > PARALLEL_THRESHOLD) {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new LevelTask(this.start, middle), new LevelTask(middle, this.end));
+                return;
+            }
+
+            updateRange(this.start, this.end);
+        }
+    }
+}
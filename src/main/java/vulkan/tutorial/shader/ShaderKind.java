@@ -8,7 +8,8 @@ public enum ShaderKind {
     FRAGMENT_SHADER(Shaderc.shaderc_glsl_fragment_shader),
     RAYGEN_SHADER(Shaderc.shaderc_glsl_raygen_shader),
     MISS_SHADER(Shaderc.shaderc_glsl_miss_shader),
-    CLOSEST_HIT_SHADER(Shaderc.shaderc_glsl_closesthit_shader);
+    CLOSEST_HIT_SHADER(Shaderc.shaderc_glsl_closesthit_shader),
+    COMPUTE_SHADER(Shaderc.shaderc_glsl_compute_shader);
 
     private final int kind;
 
@@ -9,6 +9,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
 
 public class ShaderSPIRVUtils {
 
@@ -17,28 +19,63 @@ public class ShaderSPIRVUtils {
     }
 
     public static SPIRV compileShaderFile(String shaderFile, ShaderKind shaderKind) {
+        return compileShaderFile(shaderFile, shaderKind, Shaderc.shaderc_env_version_vulkan_1_0);
+    }
+
+    /*
+     * targetEnv is a shaderc_env_version_vulkan_*, GL_EXT_ray_tracing needs at least Vulkan 1.2
+     */
+    public static SPIRV compileShaderFile(String shaderFile, ShaderKind shaderKind, int targetEnv) {
+        return compileShaderFile(shaderFile, shaderKind, targetEnv, Collections.emptyMap());
+    }
+
+    /*
+     * defines: macro name -> value, as if the shader started with #define name value
+     */
+    public static SPIRV compileShaderFile(String shaderFile, ShaderKind shaderKind, Map<String, String> defines) {
+        return compileShaderFile(shaderFile, shaderKind, Shaderc.shaderc_env_version_vulkan_1_0, defines);
+    }
+
+    public static SPIRV compileShaderFile(String shaderFile, ShaderKind shaderKind, int targetEnv, Map<String, String> defines) {
         //TODO check if classpath:URI can work
-        return compileShaderAbsoluteFile(VulkanAppEntryPoint.class.getClassLoader().getResource(shaderFile).toExternalForm(), shaderKind);
+        return compileShaderAbsoluteFile(VulkanAppEntryPoint.class.getClassLoader().getResource(shaderFile).toExternalForm(), shaderKind, targetEnv, defines);
     }
 
-    private static SPIRV compileShaderAbsoluteFile(String shaderFile, ShaderKind shaderKind) {
+    private static SPIRV compileShaderAbsoluteFile(String shaderFile, ShaderKind shaderKind, int targetEnv, Map<String, String> defines) {
         try {
             String source = new String(Files.readAllBytes(Paths.get(new URI(shaderFile))));
-            return compileShader(shaderFile, source, shaderKind);
+            return compileShader(shaderFile, source, shaderKind, targetEnv, defines);
         } catch (URISyntaxException | IOException e) {
             e.printStackTrace();
         }
         return null;
     }
 
-    private static SPIRV compileShader(String filename, String source, ShaderKind shaderKind) {
+    public static SPIRV compileShader(String filename, String source, ShaderKind shaderKind) {
+        return compileShader(filename, source, shaderKind, Shaderc.shaderc_env_version_vulkan_1_0);
+    }
+
+    public static SPIRV compileShader(String filename, String source, ShaderKind shaderKind, int targetEnv) {
+        return compileShader(filename, source, shaderKind, targetEnv, Collections.emptyMap());
+    }
+
+    public static SPIRV compileShader(String filename, String source, ShaderKind shaderKind, int targetEnv, Map<String, String> defines) {
         long compiler = Shaderc.shaderc_compiler_initialize();
 
         if (compiler == MemoryUtil.NULL) {
             throw new RuntimeException("Failed to create shader compiler");
         }
 
-        long compileResult = Shaderc.shaderc_compile_into_spv(compiler, source, shaderKind.getKind(), filename, "main", MemoryUtil.NULL);
+        long options = Shaderc.shaderc_compile_options_initialize();
+        Shaderc.shaderc_compile_options_set_target_env(options, Shaderc.shaderc_target_env_vulkan, targetEnv);
+
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            Shaderc.shaderc_compile_options_add_macro_definition(options, define.getKey(), define.getValue());
+        }
+
+        long compileResult = Shaderc.shaderc_compile_into_spv(compiler, source, shaderKind.getKind(), filename, "main", options);
+
+        Shaderc.shaderc_compile_options_release(options);
 
         if (compileResult == MemoryUtil.NULL) {
             throw new RuntimeException("Failed to compile shader " + filename + " into SPIR-V");
@@ -19,6 +19,20 @@ public class UniformBufferObject {
         projectionInverse = new Matrix4f();
     }
 
+    /*
+     * The fixed camera of the sample scene, shared by the Vulkan and the software renderer.
+     */
+    public void updateCamera(float aspectRatio) {
+        /*(GLFW.glfwGetTime() * Math.toRadians(90))*/
+        this.model.identity().rotate(0.0f, 0.0f, 0.0f, 1.0f);
+        this.view.identity().lookAt(2.0f, 2.0f, 2.0f, 0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f);
+        this.projection.identity().perspective((float) Math.toRadians(45), aspectRatio, 1.0f, 10.0f);
+        this.projection.m11(this.projection.m11() * -1);
+
+        this.view.invert(this.viewInverse);
+        this.projection.invert(this.projectionInverse);
+    }
+
     public Matrix4f getModel() {
         return this.model;
     }
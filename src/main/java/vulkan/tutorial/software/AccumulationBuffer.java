@@ -0,0 +1,115 @@
+package vulkan.tutorial.software;
+
+import vulkan.tutorial.accumulation.AccumulationConfig;
+
+import java.util.Arrays;
+
+/*
+ * CPU version of the accumulation images of the GPU path: the running mean color and sample count
+ * of every pixel (accumulationImage) and the mean squared luminance (momentsImage).
+ */
+public class AccumulationBuffer {
+    private final int width;
+    private final int height;
+    private final float[] colors;
+    private final float[] samples;
+    private final float[] meanSquaredLuminance;
+
+    public AccumulationBuffer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.colors = new float[width * height * 3];
+        this.samples = new float[width * height];
+        this.meanSquaredLuminance = new float[width * height];
+    }
+
+    public void clear() {
+        Arrays.fill(this.colors, 0.0f);
+        Arrays.fill(this.samples, 0.0f);
+        Arrays.fill(this.meanSquaredLuminance, 0.0f);
+    }
+
+    /*
+     * Merges the sums of count new samples into the mean of the pixel, like raytrace.rgen
+     */
+    public void add(int x, int y, float sumR, float sumG, float sumB, float sumSquaredLuminance, int count) {
+        final int pixel = y * this.width + x;
+        final float history = this.samples[pixel];
+        final float total = history + count;
+
+        this.colors[pixel * 3] = (this.colors[pixel * 3] * history + sumR) / total;
+        this.colors[pixel * 3 + 1] = (this.colors[pixel * 3 + 1] * history + sumG) / total;
+        this.colors[pixel * 3 + 2] = (this.colors[pixel * 3 + 2] * history + sumB) / total;
+        this.meanSquaredLuminance[pixel] = (this.meanSquaredLuminance[pixel] * history + sumSquaredLuminance) / total;
+        this.samples[pixel] = total;
+    }
+
+    public boolean isConverged(int x, int y, AccumulationConfig config) {
+        final int pixel = y * this.width + x;
+
+        return config.isConverged(
+                AccumulationConfig.luminance(this.colors[pixel * 3], this.colors[pixel * 3 + 1], this.colors[pixel * 3 + 2]),
+                this.meanSquaredLuminance[pixel],
+                this.samples[pixel]);
+    }
+
+    /*
+     * A tile is skipped once every pixel in it has converged
+     */
+    public boolean isConverged(int x0, int y0, int x1, int y1, AccumulationConfig config) {
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (!isConverged(x, y, config)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    public int countConverged(AccumulationConfig config) {
+        int converged = 0;
+
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                if (isConverged(x, y, config)) {
+                    converged++;
+                }
+            }
+        }
+
+        return converged;
+    }
+
+    public void resolve(int x, int y, HdrImage target) {
+        final int pixel = y * this.width + x;
+        target.setPixel(x, y, this.colors[pixel * 3], this.colors[pixel * 3 + 1], this.colors[pixel * 3 + 2], 1.0f);
+    }
+
+    /*
+     * Variance of the luminance of the samples, from the running means like in isConverged()
+     */
+    public float getLuminanceVariance(int x, int y) {
+        final int pixel = y * this.width + x;
+        final float meanLuminance = AccumulationConfig.luminance(this.colors[pixel * 3], this.colors[pixel * 3 + 1], this.colors[pixel * 3 + 2]);
+
+        return Math.max(this.meanSquaredLuminance[pixel] - meanLuminance * meanLuminance, 0.0f);
+    }
+
+    public float getSamples(int x, int y) {
+        return this.samples[y * this.width + x];
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+}
@@ -0,0 +1,32 @@
+package vulkan.tutorial.software;
+
+/*
+ * Auxiliary outputs of the first sample of every pixel, like normalDepthImage and albedoImage of
+ * raytrace.rgen: the world space normal facing the camera with the hit distance in alpha, and the
+ * unlit surface color. A miss stores the inverted ray direction, T_MAX and the miss color.
+ */
+public class GBuffer {
+    private final HdrImage normalDepth;
+    private final HdrImage albedo;
+
+    public GBuffer(int width, int height) {
+        this.normalDepth = new HdrImage(width, height);
+        this.albedo = new HdrImage(width, height);
+    }
+
+    public HdrImage getNormalDepth() {
+        return this.normalDepth;
+    }
+
+    public HdrImage getAlbedo() {
+        return this.albedo;
+    }
+
+    public int getWidth() {
+        return this.albedo.getWidth();
+    }
+
+    public int getHeight() {
+        return this.albedo.getHeight();
+    }
+}
@@ -0,0 +1,46 @@
+package vulkan.tutorial.software;
+
+/*
+ * A linear RGBA float image, laid out like the rgba32f rtStorageImage of the GPU path.
+ */
+public class HdrImage {
+    public static final int CHANNELS = 4;
+
+    private final int width;
+    private final int height;
+    private final float[] pixels;
+
+    public HdrImage(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.pixels = new float[width * height * CHANNELS];
+    }
+
+    public void setPixel(int x, int y, float r, float g, float b, float a) {
+        final int offset = (y * this.width + x) * CHANNELS;
+        this.pixels[offset] = r;
+        this.pixels[offset + 1] = g;
+        this.pixels[offset + 2] = b;
+        this.pixels[offset + 3] = a;
+    }
+
+    public float get(int x, int y, int channel) {
+        return this.pixels[(y * this.width + x) * CHANNELS + channel];
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public float[] getPixels() {
+        return this.pixels;
+    }
+}
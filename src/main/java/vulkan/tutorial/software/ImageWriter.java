@@ -0,0 +1,115 @@
+package vulkan.tutorial.software;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.stb.STBImageWrite;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.util.tinyexr.EXRChannelInfo;
+import org.lwjgl.util.tinyexr.EXRHeader;
+import org.lwjgl.util.tinyexr.EXRImage;
+import org.lwjgl.util.tinyexr.TinyEXR;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Locale;
+
+public class ImageWriter {
+
+    private ImageWriter() {
+        //Util class
+    }
+
+    /*
+     * Picks the format from the file extension: .exr keeps the linear float values, everything else
+     * is written as an 8 bit PNG.
+     */
+    public static void write(HdrImage image, Path path) {
+        if (path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".exr")) {
+            writeExr(image, path);
+        } else {
+            writePng(image, path);
+        }
+    }
+
+    public static void writePng(HdrImage image, Path path) {
+        final float[] pixels = image.getPixels();
+        ByteBuffer data = MemoryUtil.memAlloc(pixels.length);
+
+        try {
+            for (float value : pixels) {
+                data.put((byte) Math.round(Math.min(Math.max(value, 0.0f), 1.0f) * 255.0f));
+            }
+            data.flip();
+
+            if (!STBImageWrite.stbi_write_png(path.toString(), image.getWidth(), image.getHeight(),
+                    HdrImage.CHANNELS, data, image.getWidth() * HdrImage.CHANNELS)) {
+                throw new RuntimeException("Failed to write png " + path);
+            }
+        } finally {
+            MemoryUtil.memFree(data);
+        }
+    }
+
+    public static void writeExr(HdrImage image, Path path) {
+        //tinyexr expects the channels in ABGR order and one plane per channel
+        final String[] names = {"A", "B", "G", "R"};
+        final int[] sourceChannels = {3, 2, 1, 0};
+        final int pixelCount = image.getWidth() * image.getHeight();
+        final float[] pixels = image.getPixels();
+
+        FloatBuffer[] planes = new FloatBuffer[names.length];
+
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            PointerBuffer planePointers = stack.mallocPointer(names.length);
+
+            for (int c = 0; c < names.length; c++) {
+                planes[c] = MemoryUtil.memAllocFloat(pixelCount);
+
+                for (int i = 0; i < pixelCount; i++) {
+                    planes[c].put(i, pixels[i * HdrImage.CHANNELS + sourceChannels[c]]);
+                }
+                planePointers.put(c, planes[c]);
+            }
+
+            EXRChannelInfo.Buffer channels = EXRChannelInfo.calloc(names.length, stack);
+            IntBuffer pixelTypes = stack.mallocInt(names.length);
+            IntBuffer requestedPixelTypes = stack.mallocInt(names.length);
+
+            for (int c = 0; c < names.length; c++) {
+                channels.get(c).name(stack.ASCII(names[c]));
+                pixelTypes.put(c, TinyEXR.TINYEXR_PIXELTYPE_FLOAT);
+                requestedPixelTypes.put(c, TinyEXR.TINYEXR_PIXELTYPE_FLOAT);
+            }
+
+            EXRHeader header = EXRHeader.calloc(stack);
+            TinyEXR.InitEXRHeader(header);
+            header.num_channels(names.length)
+                    .channels(channels)
+                    .pixel_types(pixelTypes)
+                    .requested_pixel_types(requestedPixelTypes);
+
+            EXRImage exrImage = EXRImage.calloc(stack);
+            TinyEXR.InitEXRImage(exrImage);
+            exrImage.num_channels(names.length)
+                    .width(image.getWidth())
+                    .height(image.getHeight())
+                    .images(planePointers);
+
+            PointerBuffer error = stack.mallocPointer(1);
+
+            if (TinyEXR.SaveEXRImageToFile(exrImage, header, path.toString(), error) != TinyEXR.TINYEXR_SUCCESS) {
+                String message = MemoryUtil.memASCII(error.get(0));
+                TinyEXR.nFreeEXRErrorMessage(error.get(0));
+                throw new RuntimeException("Failed to write exr " + path + ": " + message);
+            }
+        } finally {
+            for (FloatBuffer plane : planes) {
+                if (plane != null) {
+                    MemoryUtil.memFree(plane);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package vulkan.tutorial.software;
+
+public class RenderStatistics {
+    private final long primaryRays;
+    private final long shadowRays;
+    private final long elapsedNanos;
+
+    public RenderStatistics(long primaryRays, long shadowRays, long elapsedNanos) {
+        this.primaryRays = primaryRays;
+        this.shadowRays = shadowRays;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getPrimaryRays() {
+        return this.primaryRays;
+    }
+
+    public long getShadowRays() {
+        return this.shadowRays;
+    }
+
+    public long getTotalRays() {
+        return this.primaryRays + this.shadowRays;
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    public double getRaysPerSecond() {
+        return this.elapsedNanos == 0 ? 0.0 : getTotalRays() * 1e9 / this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d primary + %d shadow rays in %.2fms (%.2f Mrays/s)",
+                this.primaryRays, this.shadowRays, this.elapsedNanos / 1e6, getRaysPerSecond() / 1e6);
+    }
+}
@@ -0,0 +1,107 @@
+package vulkan.tutorial.software;
+
+import vulkan.tutorial.accel.Bvh;
+import vulkan.tutorial.accel.BvhBuilder;
+import vulkan.tutorial.accumulation.AccumulationConfig;
+import vulkan.tutorial.accumulation.AccumulationState;
+import vulkan.tutorial.denoise.AtrousFilter;
+import vulkan.tutorial.gameobject.GameObject;
+import vulkan.tutorial.gameobject.GameObjectLoader;
+import vulkan.tutorial.shader.UniformBufferObject;
+import vulkan.tutorial.vulkan.RtPushConstant;
+
+import java.nio.file.Path;
+
+/*
+ * Renders the scene of VulkanApp on the CPU, for machines without a ray tracing capable GPU.
+ */
+public class SoftwareApp {
+    private final String modelPath;
+    private final int width;
+    private final int height;
+    private final int frames;
+    private final Path output;
+    private final AccumulationConfig accumulationConfig;
+    private final AtrousFilter denoiseFilter;
+
+    public SoftwareApp(String modelPath, int width, int height, int frames, Path output) {
+        this(modelPath, width, height, frames, output, AccumulationConfig.disabled(), null);
+    }
+
+    /*
+     * With accumulation enabled the frames add up to one progressively refined image. denoiseFilter
+     * may be null, otherwise it filters the last frame before it is written.
+     */
+    public SoftwareApp(String modelPath, int width, int height, int frames, Path output, AccumulationConfig accumulationConfig,
+                       AtrousFilter denoiseFilter) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("At least one frame has to be rendered, got " + frames);
+        }
+
+        this.modelPath = modelPath;
+        this.width = width;
+        this.height = height;
+        this.frames = frames;
+        this.output = output;
+        this.accumulationConfig = accumulationConfig;
+        this.denoiseFilter = denoiseFilter;
+    }
+
+    public void run() {
+        GameObject sceneObject = GameObjectLoader.loadModel(this.modelPath);
+
+        long startTime = System.nanoTime();
+        Bvh bvh = new BvhBuilder().build(sceneObject);
+        System.out.println("BVH with " + bvh.getNodeCount() + " nodes over " + bvh.getTriangleCount()
+                + " triangles built in " + ((System.nanoTime() - startTime) / 1e6) + "ms");
+
+        UniformBufferObject ubo = new UniformBufferObject();
+        ubo.updateCamera((float) this.width / (float) this.height);
+        RtPushConstant rtPushConstant = RtPushConstant.createDefault();
+
+        SoftwareRayTracer rayTracer = new SoftwareRayTracer(bvh);
+        HdrImage image = new HdrImage(this.width, this.height);
+        AccumulationState accumulationState = new AccumulationState(this.accumulationConfig);
+        AccumulationBuffer accumulation = this.accumulationConfig.isEnabled() ? new AccumulationBuffer(this.width, this.height) : null;
+        GBuffer gBuffer = this.denoiseFilter != null ? new GBuffer(this.width, this.height) : null;
+
+        long totalRays = 0;
+        long totalNanos = 0;
+
+        for (int frame = 0; frame < this.frames; frame++) {
+            final RenderStatistics statistics;
+
+            if (accumulation != null) {
+                accumulationState.beginFrame(ubo, false);
+                statistics = rayTracer.render(ubo, rtPushConstant, image, gBuffer, accumulation, accumulationState);
+                accumulationState.recordTraceTime(statistics.getElapsedNanos(), accumulationState.getSamplesPerFrame());
+            } else {
+                statistics = rayTracer.render(ubo, rtPushConstant, image, gBuffer);
+            }
+
+            totalRays += statistics.getTotalRays();
+            totalNanos += statistics.getElapsedNanos();
+
+            System.out.println("Frame " + frame + ": " + statistics);
+        }
+
+        final double raysPerSecond = totalRays * 1e9 / totalNanos;
+        System.out.println(String.format("Average over %d frames: %.2f Mrays/s", this.frames, raysPerSecond / 1e6));
+
+        if (accumulation != null) {
+            final int converged = accumulation.countConverged(this.accumulationConfig);
+            System.out.println(String.format("%d spp accumulated, %.1f%% of the pixels converged",
+                    accumulationState.getAccumulatedSamples() + accumulationState.getSamplesPerFrame(),
+                    100.0 * converged / (this.width * this.height)));
+        }
+
+        if (gBuffer != null) {
+            final long denoiseStart = System.nanoTime();
+            image = this.denoiseFilter.filter(image, gBuffer);
+            System.out.println(this.denoiseFilter.getIterations() + " denoise passes in " + ((System.nanoTime() - denoiseStart) / 1e6) + "ms");
+        }
+
+        ImageWriter.write(image, this.output);
+        System.out.println("Image written to " + this.output.toAbsolutePath());
+    }
+}
@@ -0,0 +1,381 @@
+package vulkan.tutorial.software;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import vulkan.tutorial.accel.Bvh;
+import vulkan.tutorial.accel.RayHit;
+import vulkan.tutorial.accumulation.AccumulationConfig;
+import vulkan.tutorial.accumulation.AccumulationState;
+import vulkan.tutorial.accumulation.PcgRandom;
+import vulkan.tutorial.shader.UniformBufferObject;
+import vulkan.tutorial.vulkan.RtPushConstant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * CPU version of raytrace.rgen / raytrace.rmiss / raytrace.rchit.
+ *
+ * Camera rays are generated exactly like in the raygen shader (viewInverse / projInverse of the UBO).
+ * A miss returns the rmiss color, a hit returns the rchit color lit by the light of the RtPushConstant
+ * (point or infinite) with a shadow ray, like the closest hit shader of the nvpro ray tracing tutorial.
+ *
+ * The image is split into tiles; one worker per pool thread pulls tiles until none are left, so every
+ * worker keeps its own RayHit and traversal stack and the hot loop does not allocate.
+ *
+ * With an AccumulationBuffer the frame is the reference of the progressive mode of raytrace.rgen:
+ * the same jittered samples, running means and convergence test, and tiles whose pixels have all
+ * converged are skipped.
+ *
+ * A GBuffer receives the normal, hit distance and albedo of the first sample of every traced pixel.
+ */
+public class SoftwareRayTracer {
+    public static final int TILE_SIZE = 16;
+
+    public static final float T_MIN = 0.001f;
+    public static final float T_MAX = 10000.0f;
+    public static final float SHADOW_ATTENUATION = 0.3f;
+
+    private static final Vector3f MISS_COLOR = new Vector3f(0.0f, 0.1f, 0.3f);
+    private static final Vector3f HIT_COLOR = new Vector3f(0.2f, 0.5f, 0.5f);
+
+    private final Bvh bvh;
+    private final ForkJoinPool pool;
+
+    public SoftwareRayTracer(Bvh bvh) {
+        this(bvh, ForkJoinPool.commonPool());
+    }
+
+    public SoftwareRayTracer(Bvh bvh, ForkJoinPool pool) {
+        this.bvh = bvh;
+        this.pool = pool;
+    }
+
+    public RenderStatistics render(UniformBufferObject camera, RtPushConstant pushConstant, HdrImage target) {
+        return render(camera, pushConstant, target, (GBuffer) null);
+    }
+
+    public RenderStatistics render(UniformBufferObject camera, RtPushConstant pushConstant, HdrImage target, GBuffer gBuffer) {
+        checkSize(target, gBuffer);
+        return render(new Frame(camera, pushConstant, target, gBuffer, null, null));
+    }
+
+    /*
+     * Adds the samples of the current frame of state to accumulation and writes the means to target.
+     * state.beginFrame() has to be called before.
+     */
+    public RenderStatistics render(UniformBufferObject camera, RtPushConstant pushConstant, HdrImage target,
+                                   AccumulationBuffer accumulation, AccumulationState state) {
+        return render(camera, pushConstant, target, null, accumulation, state);
+    }
+
+    public RenderStatistics render(UniformBufferObject camera, RtPushConstant pushConstant, HdrImage target, GBuffer gBuffer,
+                                   AccumulationBuffer accumulation, AccumulationState state) {
+        checkSize(target, gBuffer);
+
+        if (accumulation.getWidth() != target.getWidth() || accumulation.getHeight() != target.getHeight()) {
+            throw new IllegalArgumentException("Accumulation buffer " + accumulation.getWidth() + "x" + accumulation.getHeight()
+                    + " doesn't match the image " + target.getWidth() + "x" + target.getHeight());
+        }
+
+        if ((state.getFlags() & AccumulationState.FLAG_ACCUMULATE) == 0) {
+            accumulation.clear();
+        }
+
+        return render(new Frame(camera, pushConstant, target, gBuffer, accumulation, state));
+    }
+
+    private static void checkSize(HdrImage target, GBuffer gBuffer) {
+        if (gBuffer != null && (gBuffer.getWidth() != target.getWidth() || gBuffer.getHeight() != target.getHeight())) {
+            throw new IllegalArgumentException("G-buffer " + gBuffer.getWidth() + "x" + gBuffer.getHeight()
+                    + " doesn't match the image " + target.getWidth() + "x" + target.getHeight());
+        }
+    }
+
+    private RenderStatistics render(Frame frame) {
+        final long start = System.nanoTime();
+
+        this.pool.invoke(new RenderTask(frame, Math.max(1, this.pool.getParallelism())));
+
+        return new RenderStatistics(frame.primaryRays.get(), frame.shadowRays.get(), System.nanoTime() - start);
+    }
+
+    /*
+     * Per frame constants, shared read-only by all workers.
+     */
+    private static final class Frame {
+        private final Matrix4f viewInverse;
+        private final Matrix4f projectionInverse;
+        private final Vector3f origin;
+        private final Vector3f light;
+        private final float lightIntensity;
+        private final boolean pointLight;
+        private final HdrImage target;
+        private final GBuffer gBuffer;
+        private final AccumulationBuffer accumulation;
+        private final AccumulationConfig accumulationConfig;
+        private final int frameIndex;
+        private final int samplesPerFrame;
+        private final boolean jitter;
+        private final int tilesX;
+        private final int tileCount;
+        private final AtomicInteger nextTile = new AtomicInteger();
+        private final AtomicLong primaryRays = new AtomicLong();
+        private final AtomicLong shadowRays = new AtomicLong();
+
+        private Frame(UniformBufferObject camera, RtPushConstant pushConstant, HdrImage target, GBuffer gBuffer,
+                      AccumulationBuffer accumulation, AccumulationState state) {
+            this.viewInverse = new Matrix4f(camera.getViewInverse());
+            this.projectionInverse = new Matrix4f(camera.getProjectionInverse());
+
+            Vector4f origin = this.viewInverse.transform(new Vector4f(0.0f, 0.0f, 0.0f, 1.0f));
+            this.origin = new Vector3f(origin.x, origin.y, origin.z);
+
+            this.pointLight = pushConstant.getLightType() == RtPushConstant.LIGHT_TYPE_POINT;
+            this.light = new Vector3f(pushConstant.getLightPosition());
+            if (!this.pointLight) {
+                this.light.normalize();
+            }
+            this.lightIntensity = pushConstant.getLightIntensity();
+
+            this.target = target;
+            this.gBuffer = gBuffer;
+            this.accumulation = accumulation;
+            this.accumulationConfig = state != null ? state.getConfig() : null;
+            this.frameIndex = state != null ? state.getFrameIndex() : 0;
+            this.samplesPerFrame = state != null ? state.getSamplesPerFrame() : 1;
+            this.jitter = state != null && (state.getFlags() & AccumulationState.FLAG_JITTER) != 0;
+            this.tilesX = (target.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+            this.tileCount = this.tilesX * ((target.getHeight() + TILE_SIZE - 1) / TILE_SIZE);
+        }
+    }
+
+    private final class RenderTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Frame frame;
+        private final int workerCount;
+
+        private RenderTask(Frame frame, int workerCount) {
+            this.frame = frame;
+            this.workerCount = workerCount;
+        }
+
+        @Override
+        protected void compute() {
+            List<TileWorker> workers = new ArrayList<>(this.workerCount);
+
+            for (int i = 0; i < this.workerCount; i++) {
+                workers.add(new TileWorker(this.frame));
+            }
+
+            invokeAll(workers);
+        }
+    }
+
+    private final class TileWorker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Frame frame;
+        private final RayHit hit = new RayHit();
+        private final int[] stack;
+        private final Vector4f direction = new Vector4f();
+        private final Vector3f color = new Vector3f();
+        private final Vector3f normal = new Vector3f();
+        private float depth;
+        private Vector3f albedo;
+        private final PcgRandom random = new PcgRandom();
+        private long primaryRays;
+        private long shadowRays;
+
+        private TileWorker(Frame frame) {
+            this.frame = frame;
+            this.stack = SoftwareRayTracer.this.bvh.createTraversalStack();
+        }
+
+        @Override
+        protected void compute() {
+            final HdrImage target = this.frame.target;
+            int tile;
+
+            while ((tile = this.frame.nextTile.getAndIncrement()) < this.frame.tileCount) {
+                final int x0 = (tile % this.frame.tilesX) * TILE_SIZE;
+                final int y0 = (tile / this.frame.tilesX) * TILE_SIZE;
+                final int x1 = Math.min(x0 + TILE_SIZE, target.getWidth());
+                final int y1 = Math.min(y0 + TILE_SIZE, target.getHeight());
+
+                if (this.frame.accumulation != null) {
+                    accumulateTile(x0, y0, x1, y1);
+                    continue;
+                }
+
+                for (int y = y0; y < y1; y++) {
+                    for (int x = x0; x < x1; x++) {
+                        rayGen(x + 0.5f, y + 0.5f, target.getWidth(), target.getHeight());
+                        target.setPixel(x, y, this.color.x, this.color.y, this.color.z, 1.0f);
+                        writeGBuffer(x, y);
+                    }
+                }
+            }
+
+            this.frame.primaryRays.addAndGet(this.primaryRays);
+            this.frame.shadowRays.addAndGet(this.shadowRays);
+        }
+
+        private void accumulateTile(int x0, int y0, int x1, int y1) {
+            final HdrImage target = this.frame.target;
+            final AccumulationBuffer accumulation = this.frame.accumulation;
+            final AccumulationConfig config = this.frame.accumulationConfig;
+            final boolean tileConverged = accumulation.isConverged(x0, y0, x1, y1, config);
+
+            for (int y = y0; y < y1; y++) {
+                for (int x = x0; x < x1; x++) {
+                    if (tileConverged || accumulation.isConverged(x, y, config)) {
+                        accumulation.resolve(x, y, target);
+                        continue;
+                    }
+
+                    this.random.seed(y * target.getWidth() + x, this.frame.frameIndex);
+
+                    float sumR = 0.0f;
+                    float sumG = 0.0f;
+                    float sumB = 0.0f;
+                    float sumSquaredLuminance = 0.0f;
+
+                    for (int sample = 0; sample < this.frame.samplesPerFrame; sample++) {
+                        float jitterX = 0.5f;
+                        float jitterY = 0.5f;
+
+                        if (this.frame.jitter) {
+                            jitterX = this.random.nextFloat();
+                            jitterY = this.random.nextFloat();
+                        }
+
+                        rayGen(x + jitterX, y + jitterY, target.getWidth(), target.getHeight());
+
+                        if (sample == 0) {
+                            writeGBuffer(x, y);
+                        }
+
+                        final float luminance = AccumulationConfig.luminance(this.color.x, this.color.y, this.color.z);
+                        sumR += this.color.x;
+                        sumG += this.color.y;
+                        sumB += this.color.z;
+                        sumSquaredLuminance += luminance * luminance;
+                    }
+
+                    accumulation.add(x, y, sumR, sumG, sumB, sumSquaredLuminance, this.frame.samplesPerFrame);
+                    accumulation.resolve(x, y, target);
+                }
+            }
+        }
+
+        private void writeGBuffer(int x, int y) {
+            final GBuffer gBuffer = this.frame.gBuffer;
+
+            if (gBuffer != null) {
+                gBuffer.getNormalDepth().setPixel(x, y, this.normal.x, this.normal.y, this.normal.z, this.depth);
+                gBuffer.getAlbedo().setPixel(x, y, this.albedo.x, this.albedo.y, this.albedo.z, 1.0f);
+            }
+        }
+
+        /*
+         * sampleX / sampleY is the position inside the image in pixels, x + 0.5 is the pixel center
+         */
+        private void rayGen(float sampleX, float sampleY, int width, int height) {
+            final float dx = sampleX / width * 2.0f - 1.0f;
+            final float dy = sampleY / height * 2.0f - 1.0f;
+
+            this.frame.projectionInverse.transform(this.direction.set(dx, dy, 1.0f, 1.0f));
+            final float length = (float) Math.sqrt(this.direction.x * this.direction.x
+                    + this.direction.y * this.direction.y + this.direction.z * this.direction.z);
+            this.frame.viewInverse.transform(this.direction.set(
+                    this.direction.x / length, this.direction.y / length, this.direction.z / length, 0.0f));
+
+            final Vector3f origin = this.frame.origin;
+            this.primaryRays++;
+
+            if (SoftwareRayTracer.this.bvh.intersect(origin.x, origin.y, origin.z,
+                    this.direction.x, this.direction.y, this.direction.z, T_MIN, T_MAX, this.hit, this.stack)) {
+                closestHit(origin, this.direction);
+            } else {
+                this.color.set(MISS_COLOR);
+                this.normal.set(-this.direction.x, -this.direction.y, -this.direction.z);
+                this.depth = T_MAX;
+                this.albedo = MISS_COLOR;
+            }
+        }
+
+        private void closestHit(Vector3f origin, Vector4f direction) {
+            final float[] positions = SoftwareRayTracer.this.bvh.getPositions();
+            final int[] indices = SoftwareRayTracer.this.bvh.getIndices();
+            final int triangle = this.hit.getTriangle() * 3;
+            final int i0 = indices[triangle] * 3;
+            final int i1 = indices[triangle + 1] * 3;
+            final int i2 = indices[triangle + 2] * 3;
+
+            final float e1x = positions[i1] - positions[i0];
+            final float e1y = positions[i1 + 1] - positions[i0 + 1];
+            final float e1z = positions[i1 + 2] - positions[i0 + 2];
+            final float e2x = positions[i2] - positions[i0];
+            final float e2y = positions[i2 + 1] - positions[i0 + 1];
+            final float e2z = positions[i2 + 2] - positions[i0 + 2];
+
+            float nx = e1y * e2z - e1z * e2y;
+            float ny = e1z * e2x - e1x * e2z;
+            float nz = e1x * e2y - e1y * e2x;
+            float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+            //rays are traced with culling disabled, so shade the side facing the camera
+            if (nx * direction.x + ny * direction.y + nz * direction.z > 0.0f) {
+                length = -length;
+            }
+            nx /= length;
+            ny /= length;
+            nz /= length;
+
+            final float t = this.hit.getDistance();
+            final float px = origin.x + direction.x * t;
+            final float py = origin.y + direction.y * t;
+            final float pz = origin.z + direction.z * t;
+
+            float lx = this.frame.light.x;
+            float ly = this.frame.light.y;
+            float lz = this.frame.light.z;
+            float lightDistance = T_MAX;
+            float intensity = this.frame.lightIntensity;
+
+            if (this.frame.pointLight) {
+                lx -= px;
+                ly -= py;
+                lz -= pz;
+                lightDistance = (float) Math.sqrt(lx * lx + ly * ly + lz * lz);
+                lx /= lightDistance;
+                ly /= lightDistance;
+                lz /= lightDistance;
+                intensity /= lightDistance * lightDistance;
+            }
+
+            final float dotNL = Math.max(nx * lx + ny * ly + nz * lz, 0.0f);
+            float attenuation = 1.0f;
+
+            if (dotNL > 0.0f) {
+                this.shadowRays++;
+
+                if (SoftwareRayTracer.this.bvh.occluded(px, py, pz, lx, ly, lz, T_MIN, lightDistance, this.stack)) {
+                    attenuation = SHADOW_ATTENUATION;
+                }
+            }
+
+            this.color.set(HIT_COLOR).mul(dotNL * intensity * attenuation);
+            this.normal.set(nx, ny, nz);
+            this.depth = t;
+            this.albedo = HIT_COLOR;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package vulkan.tutorial.tonemap;
+
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.*;
+import vulkan.tutorial.shader.SPIRV;
+import vulkan.tutorial.shader.ShaderKind;
+import vulkan.tutorial.shader.ShaderSPIRVUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/*
+ * Runs tonemap.comp from the rgba32f ray tracing output into one rgba8 storage image per swapchain
+ * image. Those are the swapchain images themselves where their format allows storage, otherwise
+ * intermediate images that the caller copies over. Like the DenoisePass it belongs to the
+ * swapchain, width x height is the swapchain extent. A resize only needs setImages(), a new number
+ * of swapchain images a new pass.
+ */
+public class TonemapPass {
+    private static final int WORKGROUP_SIZE = 16;
+    private static final int BINDING_COUNT = 2;
+
+    private final VkDevice vkDevice;
+    private final Tonemapper tonemapper;
+    private final int flags;
+    private int width;
+    private int height;
+    private final long descriptorSetLayout;
+    private final long descriptorPool;
+    private final long[] descriptorSets;
+    private final long pipelineLayout;
+    private final long pipeline;
+
+    /*
+     * targetViews are rgba8 storage views with the size of hdrView, one per command buffer
+     */
+    public TonemapPass(VkDevice vkDevice, Tonemapper tonemapper, int flags, long hdrView, long[] targetViews, int width, int height) {
+        this.vkDevice = vkDevice;
+        this.tonemapper = tonemapper;
+        this.flags = flags;
+
+        this.descriptorSetLayout = createDescriptorSetLayout();
+        this.descriptorPool = createDescriptorPool(targetViews.length);
+        this.descriptorSets = allocateDescriptorSets(targetViews.length);
+        this.pipelineLayout = createPipelineLayout();
+        this.pipeline = createPipeline();
+
+        setImages(hdrView, targetViews, width, height);
+    }
+
+    /*
+     * As many targetViews as the pass was created with. The descriptor sets must not be in use by a
+     * pending command buffer.
+     */
+    public void setImages(long hdrView, long[] targetViews, int width, int height) {
+        if (targetViews.length != this.descriptorSets.length) {
+            throw new IllegalArgumentException("Expected " + this.descriptorSets.length + " target views, got " + targetViews.length);
+        }
+
+        this.width = width;
+        this.height = height;
+
+        for (int i = 0; i < targetViews.length; i++) {
+            writeDescriptorSet(this.descriptorSets[i], hdrView, targetViews[i]);
+        }
+    }
+
+    private long createDescriptorSetLayout() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkDescriptorSetLayoutBinding.Buffer bindings = VkDescriptorSetLayoutBinding.calloc(BINDING_COUNT, stack);
+
+            //hdr input, display output
+            for (int binding = 0; binding < BINDING_COUNT; binding++) {
+                bindings.get(binding)
+                        .binding(binding)
+                        .descriptorCount(1)
+                        .descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE)
+                        .stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+            }
+
+            VkDescriptorSetLayoutCreateInfo layoutInfo = VkDescriptorSetLayoutCreateInfo.calloc(stack);
+            layoutInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_LAYOUT_CREATE_INFO);
+            layoutInfo.pBindings(bindings);
+
+            LongBuffer pDescriptorSetLayout = stack.mallocLong(1);
+
+            if (VK10.vkCreateDescriptorSetLayout(this.vkDevice, layoutInfo, null, pDescriptorSetLayout) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create tonemap descriptor set layout");
+            }
+
+            return pDescriptorSetLayout.get(0);
+        }
+    }
+
+    private long createDescriptorPool(int setCount) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(1, stack);
+            poolSizes.type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+            poolSizes.descriptorCount(BINDING_COUNT * setCount);
+
+            VkDescriptorPoolCreateInfo poolCreateInfo = VkDescriptorPoolCreateInfo.calloc(stack);
+            poolCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_POOL_CREATE_INFO);
+            poolCreateInfo.pPoolSizes(poolSizes);
+            poolCreateInfo.maxSets(setCount);
+
+            LongBuffer pDescriptorPool = stack.mallocLong(1);
+
+            if (VK10.vkCreateDescriptorPool(this.vkDevice, poolCreateInfo, null, pDescriptorPool) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create tonemap descriptor pool");
+            }
+
+            return pDescriptorPool.get(0);
+        }
+    }
+
+    private long[] allocateDescriptorSets(int setCount) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            LongBuffer layouts = stack.mallocLong(setCount);
+            for (int i = 0; i < layouts.capacity(); i++) {
+                layouts.put(i, this.descriptorSetLayout);
+            }
+
+            VkDescriptorSetAllocateInfo allocateInfo = VkDescriptorSetAllocateInfo.calloc(stack);
+            allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_DESCRIPTOR_SET_ALLOCATE_INFO);
+            allocateInfo.descriptorPool(this.descriptorPool);
+            allocateInfo.pSetLayouts(layouts);
+
+            long[] descriptorSets = new long[setCount];
+
+            if (VK10.vkAllocateDescriptorSets(this.vkDevice, allocateInfo, descriptorSets) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to allocate tonemap descriptor sets");
+            }
+
+            return descriptorSets;
+        }
+    }
+
+    private void writeDescriptorSet(long descriptorSet, long input, long output) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            long[] views = {input, output};
+
+            VkWriteDescriptorSet.Buffer descriptorWrites = VkWriteDescriptorSet.calloc(BINDING_COUNT, stack);
+
+            for (int binding = 0; binding < BINDING_COUNT; binding++) {
+                VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.calloc(1, stack);
+                imageInfo.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+                imageInfo.imageView(views[binding]);
+
+                VkWriteDescriptorSet descriptorWrite = descriptorWrites.get(binding);
+                descriptorWrite.sType(VK10.VK_STRUCTURE_TYPE_WRITE_DESCRIPTOR_SET);
+                descriptorWrite.dstSet(descriptorSet);
+                descriptorWrite.dstBinding(binding);
+                descriptorWrite.dstArrayElement(0);
+                descriptorWrite.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE);
+                descriptorWrite.descriptorCount(1);
+                descriptorWrite.pImageInfo(imageInfo);
+            }
+
+            VK10.vkUpdateDescriptorSets(this.vkDevice, descriptorWrites, null);
+        }
+    }
+
+    private long createPipelineLayout() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPushConstantRange.Buffer pushConstant = VkPushConstantRange.calloc(1, stack);
+            pushConstant.stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+            pushConstant.offset(0);
+            pushConstant.size(Tonemapper.PUSH_CONSTANT_SIZE);
+
+            VkPipelineLayoutCreateInfo pipelineLayoutCreateInfo = VkPipelineLayoutCreateInfo.calloc(stack);
+            pipelineLayoutCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_LAYOUT_CREATE_INFO);
+            pipelineLayoutCreateInfo.pSetLayouts(stack.longs(this.descriptorSetLayout));
+            pipelineLayoutCreateInfo.pPushConstantRanges(pushConstant);
+
+            LongBuffer pPipelineLayout = stack.mallocLong(1);
+
+            if (VK10.vkCreatePipelineLayout(this.vkDevice, pipelineLayoutCreateInfo, null, pPipelineLayout) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create tonemap pipeline layout");
+            }
+
+            return pPipelineLayout.get(0);
+        }
+    }
+
+    private long createPipeline() {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            SPIRV shader = ShaderSPIRVUtils.compileShaderFile("shaders/tonemap.comp", ShaderKind.COMPUTE_SHADER);
+
+            VkShaderModuleCreateInfo moduleCreateInfo = VkShaderModuleCreateInfo.calloc(stack);
+            moduleCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_SHADER_MODULE_CREATE_INFO);
+            moduleCreateInfo.pCode(shader.byteCode());
+
+            LongBuffer pShaderModule = stack.mallocLong(1);
+
+            if (VK10.vkCreateShaderModule(this.vkDevice, moduleCreateInfo, null, pShaderModule) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create tonemap shader module");
+            }
+
+            VkComputePipelineCreateInfo.Buffer pipelineInfo = VkComputePipelineCreateInfo.calloc(1, stack);
+            pipelineInfo.sType(VK10.VK_STRUCTURE_TYPE_COMPUTE_PIPELINE_CREATE_INFO);
+            pipelineInfo.stage()
+                    .sType(VK10.VK_STRUCTURE_TYPE_PIPELINE_SHADER_STAGE_CREATE_INFO)
+                    .stage(VK10.VK_SHADER_STAGE_COMPUTE_BIT)
+                    .module(pShaderModule.get(0))
+                    .pName(stack.UTF8("main"));
+            pipelineInfo.layout(this.pipelineLayout);
+
+            LongBuffer pPipeline = stack.mallocLong(1);
+            final int result = VK10.vkCreateComputePipelines(this.vkDevice, VK10.VK_NULL_HANDLE, pipelineInfo, null, pPipeline);
+
+            VK10.vkDestroyShaderModule(this.vkDevice, pShaderModule.get(0), null);
+            shader.free();
+
+            if (result != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create tonemap pipeline");
+            }
+
+            return pPipeline.get(0);
+        }
+    }
+
+    /*
+     * Waits for the ray tracing shaders or the denoiser that wrote the HDR image. The target has to
+     * be in the general layout, making the result visible to its next use is up to the caller.
+     * renderWidth x renderHeight is the traced part of the HDR image, it is scaled to the target.
+     */
+    public void cmdTonemap(VkCommandBuffer commandBuffer, int targetIndex, int renderWidth, int renderHeight, MemoryStack stack) {
+        VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
+        barrier.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_BARRIER);
+        barrier.srcAccessMask(VK10.VK_ACCESS_SHADER_WRITE_BIT);
+        barrier.dstAccessMask(VK10.VK_ACCESS_SHADER_READ_BIT);
+
+        VK10.vkCmdPipelineBarrier(commandBuffer,
+                KHRRayTracingPipeline.VK_PIPELINE_STAGE_RAY_TRACING_SHADER_BIT_KHR | VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
+                VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT, 0, barrier, null, null);
+
+        VK10.vkCmdBindPipeline(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, this.pipeline);
+        VK10.vkCmdBindDescriptorSets(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, this.pipelineLayout, 0,
+                stack.longs(this.descriptorSets[targetIndex]), null);
+
+        ByteBuffer pushConstant = stack.malloc(Tonemapper.PUSH_CONSTANT_SIZE);
+        this.tonemapper.write(this.flags, renderWidth, renderHeight, pushConstant);
+        VK10.vkCmdPushConstants(commandBuffer, this.pipelineLayout, VK10.VK_SHADER_STAGE_COMPUTE_BIT, 0, pushConstant);
+
+        VK10.vkCmdDispatch(commandBuffer, (this.width + WORKGROUP_SIZE - 1) / WORKGROUP_SIZE, (this.height + WORKGROUP_SIZE - 1) / WORKGROUP_SIZE, 1);
+    }
+
+    public void destroy() {
+        VK10.vkDestroyPipeline(this.vkDevice, this.pipeline, null);
+        VK10.vkDestroyPipelineLayout(this.vkDevice, this.pipelineLayout, null);
+        VK10.vkDestroyDescriptorPool(this.vkDevice, this.descriptorPool, null);
+        VK10.vkDestroyDescriptorSetLayout(this.vkDevice, this.descriptorSetLayout, null);
+    }
+}
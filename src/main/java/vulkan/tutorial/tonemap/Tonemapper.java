@@ -0,0 +1,73 @@
+package vulkan.tutorial.tonemap;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/*
+ * Settings of tonemap.comp, which turns the linear HDR output of the ray tracer into the 8 bit
+ * display image: the color is scaled by 2^exposure, compressed by the curve and sRGB encoded.
+ */
+public class Tonemapper {
+    public static final int PUSH_CONSTANT_SIZE = 6 * Integer.BYTES;
+
+    //write blue to the first byte, for a copy into a B8G8R8A8 swapchain
+    public static final int FLAG_SWAP_RED_BLUE = 1;
+
+    public static final float DEFAULT_EXPOSURE = 0.0f;
+
+    public enum Curve {
+        //cuts everything above 1, the look of the plain copy
+        CLAMP,
+        REINHARD,
+        //Narkowicz's fit of the ACES filmic curve
+        ACES;
+
+        public static Curve fromName(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown tonemap curve: " + name);
+            }
+        }
+    }
+
+    private final float exposure;
+    private final Curve curve;
+
+    /*
+     * exposure in stops, 0 keeps the traced values
+     */
+    public Tonemapper(float exposure, Curve curve) {
+        if (!Float.isFinite(exposure)) {
+            throw new IllegalArgumentException("Invalid exposure " + exposure);
+        }
+
+        this.exposure = exposure;
+        this.curve = curve;
+    }
+
+    public static Tonemapper createDefault() {
+        return new Tonemapper(DEFAULT_EXPOSURE, Curve.ACES);
+    }
+
+    public float getExposure() {
+        return this.exposure;
+    }
+
+    public Curve getCurve() {
+        return this.curve;
+    }
+
+    /*
+     * The Settings push constant of tonemap.comp, renderWidth x renderHeight is the traced part of
+     * the HDR image
+     */
+    public void write(int flags, int renderWidth, int renderHeight, ByteBuffer buffer) {
+        buffer.putFloat(0, (float) Math.pow(2.0, this.exposure));
+        buffer.putInt(Integer.BYTES, this.curve.ordinal());
+        buffer.putInt(2 * Integer.BYTES, flags);
+        //ivec2, 8 byte aligned
+        buffer.putInt(4 * Integer.BYTES, renderWidth);
+        buffer.putInt(5 * Integer.BYTES, renderHeight);
+    }
+}
@@ -12,7 +12,7 @@ public class BarrierHelper {
 
     public static BarrierHelper createBarrierHelper(long image, int format, int oldLayout, int newLayout, int mipMapLevels, MemoryStack stack) {
         BarrierHelper result = new BarrierHelper();
-        VkImageMemoryBarrier.Buffer barrier = VkImageMemoryBarrier.callocStack(1, stack);
+        VkImageMemoryBarrier.Buffer barrier = VkImageMemoryBarrier.calloc(1, stack);
         barrier.sType(VK10.VK_STRUCTURE_TYPE_IMAGE_MEMORY_BARRIER);
         barrier.oldLayout(oldLayout);
         barrier.newLayout(newLayout);
@@ -64,10 +64,12 @@ public class BarrierHelper {
             result.setDestinationStage(VK10.VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT);
         } else if (oldLayout == VK10.VK_IMAGE_LAYOUT_UNDEFINED && newLayout == VK10.VK_IMAGE_LAYOUT_GENERAL) { // Storage Image
             barrier.srcAccessMask(0);
+            barrier.dstAccessMask(VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT);
 
             result.setSourceStage(VK10.VK_PIPELINE_STAGE_ALL_COMMANDS_BIT);
             result.setDestinationStage(VK10.VK_PIPELINE_STAGE_ALL_COMMANDS_BIT);
         } else if (oldLayout == VK10.VK_IMAGE_LAYOUT_GENERAL && newLayout == VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL) { // Storage Image
+            barrier.srcAccessMask(VK10.VK_ACCESS_SHADER_WRITE_BIT);
             barrier.dstAccessMask(VK10.VK_ACCESS_TRANSFER_READ_BIT);
 
             result.setSourceStage(VK10.VK_PIPELINE_STAGE_ALL_COMMANDS_BIT);
@@ -77,6 +79,23 @@ public class BarrierHelper {
 
             result.setSourceStage(VK10.VK_PIPELINE_STAGE_ALL_COMMANDS_BIT);
             result.setDestinationStage(VK10.VK_PIPELINE_STAGE_ALL_COMMANDS_BIT);
+        } else if (oldLayout == VK10.VK_IMAGE_LAYOUT_GENERAL && newLayout == KHRSwapchain.VK_IMAGE_LAYOUT_PRESENT_SRC_KHR) { // Tonemapped swapchain image
+            barrier.srcAccessMask(VK10.VK_ACCESS_SHADER_WRITE_BIT);
+
+            result.setSourceStage(VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT);
+            result.setDestinationStage(VK10.VK_PIPELINE_STAGE_BOTTOM_OF_PIPE_BIT);
+        } else if (oldLayout == VK10.VK_IMAGE_LAYOUT_TRANSFER_DST_OPTIMAL && newLayout == VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL) { // Headless readback
+            barrier.srcAccessMask(VK10.VK_ACCESS_TRANSFER_WRITE_BIT);
+            barrier.dstAccessMask(VK10.VK_ACCESS_TRANSFER_READ_BIT);
+
+            result.setSourceStage(VK10.VK_PIPELINE_STAGE_TRANSFER_BIT);
+            result.setDestinationStage(VK10.VK_PIPELINE_STAGE_TRANSFER_BIT);
+        } else if (oldLayout == VK10.VK_IMAGE_LAYOUT_COLOR_ATTACHMENT_OPTIMAL && newLayout == VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL) { // Headless readback
+            barrier.srcAccessMask(VK10.VK_ACCESS_COLOR_ATTACHMENT_WRITE_BIT);
+            barrier.dstAccessMask(VK10.VK_ACCESS_TRANSFER_READ_BIT);
+
+            result.setSourceStage(VK10.VK_PIPELINE_STAGE_COLOR_ATTACHMENT_OUTPUT_BIT);
+            result.setDestinationStage(VK10.VK_PIPELINE_STAGE_TRANSFER_BIT);
         } else if (oldLayout == VK10.VK_IMAGE_LAYOUT_TRANSFER_SRC_OPTIMAL && newLayout == VK10.VK_IMAGE_LAYOUT_GENERAL) { // Storage Image
             barrier.srcAccessMask(VK10.VK_ACCESS_TRANSFER_READ_BIT);
 
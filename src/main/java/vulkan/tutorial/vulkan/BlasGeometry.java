@@ -0,0 +1,82 @@
+package vulkan.tutorial.vulkan;
+
+import java.nio.ByteBuffer;
+
+/*
+ * Indexed triangle geometry of one BLAS. Positions are R32G32B32_SFLOAT at the start of every vertex,
+ * indices are UINT32.
+ *
+ * The host data is optional, a mapping of the same buffers the offsets also apply to. It lets the
+ * BLAS be built on the CPU.
+ */
+public class BlasGeometry {
+    private final long vertexBuffer;
+    private final long vertexOffset;
+    private final int vertexCount;
+    private final int vertexStride;
+    private final long indexBuffer;
+    private final long indexOffset;
+    private final int indexCount;
+    private final ByteBuffer hostVertexData;
+    private final ByteBuffer hostIndexData;
+
+    public BlasGeometry(long vertexBuffer, long vertexOffset, int vertexCount, int vertexStride, long indexBuffer, long indexOffset, int indexCount) {
+        this(vertexBuffer, vertexOffset, vertexCount, vertexStride, indexBuffer, indexOffset, indexCount, null, null);
+    }
+
+    public BlasGeometry(long vertexBuffer, long vertexOffset, int vertexCount, int vertexStride, long indexBuffer, long indexOffset, int indexCount,
+                        ByteBuffer hostVertexData, ByteBuffer hostIndexData) {
+        this.vertexBuffer = vertexBuffer;
+        this.vertexOffset = vertexOffset;
+        this.vertexCount = vertexCount;
+        this.vertexStride = vertexStride;
+        this.indexBuffer = indexBuffer;
+        this.indexOffset = indexOffset;
+        this.indexCount = indexCount;
+        this.hostVertexData = hostVertexData;
+        this.hostIndexData = hostIndexData;
+    }
+
+    public long getVertexBuffer() {
+        return this.vertexBuffer;
+    }
+
+    public long getVertexOffset() {
+        return this.vertexOffset;
+    }
+
+    public int getVertexCount() {
+        return this.vertexCount;
+    }
+
+    public int getVertexStride() {
+        return this.vertexStride;
+    }
+
+    public long getIndexBuffer() {
+        return this.indexBuffer;
+    }
+
+    public long getIndexOffset() {
+        return this.indexOffset;
+    }
+
+    public int getIndexCount() {
+        return this.indexCount;
+    }
+
+    public boolean hasHostData() {
+        return this.hostVertexData != null && this.hostIndexData != null;
+    }
+
+    /*
+     * null without host data
+     */
+    public ByteBuffer getHostVertexData() {
+        return this.hostVertexData;
+    }
+
+    public ByteBuffer getHostIndexData() {
+        return this.hostIndexData;
+    }
+}
@@ -1,6 +1,5 @@
 package vulkan.tutorial.vulkan;
 
-import org.joml.Matrix4f;
 import org.lwjgl.vulkan.NVRayTracing;
 
 public class BlasInstance {
@@ -9,7 +8,6 @@ public class BlasInstance {
     private int hitGroupId;
     private int mask = 0xFF;
     private final int flags = NVRayTracing.VK_GEOMETRY_INSTANCE_TRIANGLE_CULL_DISABLE_BIT_NV;
-    private final Matrix4f transform = new Matrix4f();
 
     public int getBlasId() {
         return this.blasId;
@@ -42,4 +40,8 @@ public class BlasInstance {
     public void setMask(int mask) {
         this.mask = mask;
     }
+
+    public int getFlags() {
+        return this.flags;
+    }
 }
@@ -3,11 +3,17 @@ package vulkan.tutorial.vulkan;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 
+import java.nio.ByteBuffer;
+
+/*
+ * The push constant block of raytrace.rchit, the vec4 comes first so the vec3 and the float after it
+ * pack into one 16 byte slot like in GLSL
+ */
 public class RtPushConstant {
-    public static final int SIZE_OF = 3 * Float.BYTES + 4 * Float.BYTES + Float.BYTES + Integer.BYTES;
+    public static final int SIZE_OF = 4 * Float.BYTES + 3 * Float.BYTES + Float.BYTES + Integer.BYTES;
 
-    public static final int OFFSETOF_POS = 0;
-    public static final int OFFSETOF_COLOR = 3 * Float.BYTES;
+    public static final int OFFSETOF_COLOR = 0;
+    public static final int OFFSETOF_POS = 4 * Float.BYTES;
     public static final int OFFSETOF_LIGHT = 7 * Float.BYTES;
     public static final int OFFSETOF_LIGHT_TYPE = 8 * Float.BYTES;
 
@@ -16,9 +22,33 @@ public class RtPushConstant {
     private float lightIntensity;
     private int lightType;
 
+    public static final int LIGHT_TYPE_POINT = 0;
+    public static final int LIGHT_TYPE_INFINITE = 1;
+
     public RtPushConstant() {
     }
 
+    public static RtPushConstant createDefault() {
+        RtPushConstant rtPushConstant = new RtPushConstant();
+        rtPushConstant.getClearColor().set(0, 0, 0, 0);
+        rtPushConstant.getLightPosition().set(10.f, 15.f, 8.f);
+        rtPushConstant.setLightIntensity(100f);
+        rtPushConstant.setLightType(LIGHT_TYPE_POINT);
+        return rtPushConstant;
+    }
+
+    public void write(ByteBuffer buffer) {
+        buffer.putFloat(OFFSETOF_COLOR, this.clearColor.x);
+        buffer.putFloat(OFFSETOF_COLOR + Float.BYTES, this.clearColor.y);
+        buffer.putFloat(OFFSETOF_COLOR + 2 * Float.BYTES, this.clearColor.z);
+        buffer.putFloat(OFFSETOF_COLOR + 3 * Float.BYTES, this.clearColor.w);
+        buffer.putFloat(OFFSETOF_POS, this.lightPosition.x);
+        buffer.putFloat(OFFSETOF_POS + Float.BYTES, this.lightPosition.y);
+        buffer.putFloat(OFFSETOF_POS + 2 * Float.BYTES, this.lightPosition.z);
+        buffer.putFloat(OFFSETOF_LIGHT, this.lightIntensity);
+        buffer.putInt(OFFSETOF_LIGHT_TYPE, this.lightType);
+    }
+
     public Vector4f getClearColor() {
         return this.clearColor;
     }
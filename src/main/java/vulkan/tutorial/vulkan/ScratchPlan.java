@@ -0,0 +1,103 @@
+package vulkan.tutorial.vulkan;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/*
+ * Shares scratch memory between a batch of acceleration structure builds.
+ *
+ * The builds are ordered by scratch size, largest first, and dealt round-robin onto poolCount pools
+ * that live in one buffer. Every group of poolCount consecutive builds (a wave) uses each pool once,
+ * so builds inside a wave may overlap on the GPU and a barrier is only needed between waves, when a
+ * pool is reused. With a single pool the whole batch runs on the largest requirement.
+ */
+public class ScratchPlan {
+
+    private final int[] buildOrder;
+    private final long[] poolOffsets;
+    private final long[] poolSizes;
+    private final long totalSize;
+
+    private ScratchPlan(int[] buildOrder, long[] poolOffsets, long[] poolSizes, long totalSize) {
+        this.buildOrder = buildOrder;
+        this.poolOffsets = poolOffsets;
+        this.poolSizes = poolSizes;
+        this.totalSize = totalSize;
+    }
+
+    public static ScratchPlan create(long[] scratchSizes, int maxPoolCount, long alignment) {
+        if (maxPoolCount < 1) {
+            throw new IllegalArgumentException("At least one scratch pool is needed");
+        }
+
+        final int[] buildOrder = IntStream.range(0, scratchSizes.length)
+                .boxed()
+                .sorted(Comparator.comparingLong((Integer build) -> scratchSizes[build]).reversed())
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        final int poolCount = Math.max(1, Math.min(maxPoolCount, scratchSizes.length));
+        final long[] poolSizes = new long[poolCount];
+        final long[] poolOffsets = new long[poolCount];
+
+        // Largest first, so the first wave decides every pool size
+        for (int i = 0; i < buildOrder.length; i++) {
+            final int pool = i % poolCount;
+            poolSizes[pool] = Math.max(poolSizes[pool], scratchSizes[buildOrder[i]]);
+        }
+
+        long offset = 0;
+        for (int pool = 0; pool < poolCount; pool++) {
+            poolOffsets[pool] = offset;
+            offset = alignUp(offset + poolSizes[pool], alignment);
+        }
+
+        return new ScratchPlan(buildOrder, poolOffsets, poolSizes, offset);
+    }
+
+    private static long alignUp(long value, long alignment) {
+        return (value + alignment - 1) / alignment * alignment;
+    }
+
+    /*
+     * Index of the build recorded at the given position
+     */
+    public int getBuild(int position) {
+        return this.buildOrder[position];
+    }
+
+    public int getBuildCount() {
+        return this.buildOrder.length;
+    }
+
+    public long getScratchOffset(int position) {
+        return this.poolOffsets[position % this.poolOffsets.length];
+    }
+
+    /*
+     * True when the build at this position reuses a pool of the previous wave
+     */
+    public boolean needsBarrierBefore(int position) {
+        return position > 0 && position % this.poolOffsets.length == 0;
+    }
+
+    public int getPoolCount() {
+        return this.poolOffsets.length;
+    }
+
+    public long getPoolSize(int pool) {
+        return this.poolSizes[pool];
+    }
+
+    public long getTotalSize() {
+        return this.totalSize;
+    }
+
+    /*
+     * Scratch memory one buffer per build would have needed
+     */
+    public static long getUnpooledSize(long[] scratchSizes) {
+        return Arrays.stream(scratchSizes).sum();
+    }
+}
@@ -6,6 +6,7 @@ import org.lwjgl.system.MemoryStack;
 import org.lwjgl.vulkan.*;
 
 import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -18,7 +19,20 @@ public class VulkanUtils {
     }
 
     public static int extractTheCorrectMemoryTypeFromPhysicalDevice(int typeFilter, int properties, VkPhysicalDevice vkPhysicalDevice) {
-        VkPhysicalDeviceMemoryProperties memoryProperties = VkPhysicalDeviceMemoryProperties.mallocStack();
+        final int memoryType = findMemoryType(typeFilter, properties, vkPhysicalDevice);
+
+        if (memoryType < 0) {
+            throw new RuntimeException("Failed to find suitable memory type");
+        }
+
+        return memoryType;
+    }
+
+    /*
+     * The first memory type in typeFilter with all of properties, -1 if there is none
+     */
+    public static int findMemoryType(int typeFilter, int properties, VkPhysicalDevice vkPhysicalDevice) {
+        VkPhysicalDeviceMemoryProperties memoryProperties = VkPhysicalDeviceMemoryProperties.malloc(MemoryStack.stackGet());
         VK10.vkGetPhysicalDeviceMemoryProperties(vkPhysicalDevice, memoryProperties);
 
         for (int i = 0; i < memoryProperties.memoryTypeCount(); i++) {
@@ -27,7 +41,7 @@ public class VulkanUtils {
             }
         }
 
-        throw new RuntimeException("Failed to find suitable memory type");
+        return -1;
     }
 
     public static boolean hasStencilComponent(int format) {
@@ -36,7 +50,7 @@ public class VulkanUtils {
 
     public static int findSupportedFormat(IntBuffer formatCandidates, int tiling, int features, VkPhysicalDevice vkPhysicalDevice) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkFormatProperties properties = VkFormatProperties.callocStack(stack);
+            VkFormatProperties properties = VkFormatProperties.calloc(stack);
             for (int i = 0; i < formatCandidates.capacity(); i++) {
                 int format = formatCandidates.get(i);
                 VK10.vkGetPhysicalDeviceFormatProperties(vkPhysicalDevice, format, properties);
@@ -58,16 +72,6 @@ public class VulkanUtils {
         return tiling == VK10.VK_IMAGE_TILING_LINEAR && (properties.linearTilingFeatures() & features) == features;
     }
 
-    public static int chooseSwapPresentMode(IntBuffer formats) {
-        for (int i = 0; i < formats.capacity(); i++) {
-            if (formats.get(i) == KHRSurface.VK_PRESENT_MODE_MAILBOX_KHR) {
-                return formats.get(i);
-            }
-        }
-        System.out.println("VK_PRESENT_MODE_MAILBOX_KHR not supported! VK_PRESENT_MODE_FIFO_KHR will be used as a fallback instead");
-        return KHRSurface.VK_PRESENT_MODE_FIFO_KHR;
-    }
-
     public static VkSurfaceFormatKHR findBestSwapSurfaceFormat(VkSurfaceFormatKHR.Buffer formats) {
         return formats.stream()
                 .filter(format -> format.format() == VK10.VK_FORMAT_B8G8R8_SRGB)
@@ -86,7 +90,7 @@ public class VulkanUtils {
 
     public static int findMaxUsableSampleCount(VkPhysicalDevice vkPhysicalDevice) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
-            VkPhysicalDeviceProperties physicalDeviceProperties = VkPhysicalDeviceProperties.mallocStack(stack);
+            VkPhysicalDeviceProperties physicalDeviceProperties = VkPhysicalDeviceProperties.malloc(stack);
             VK10.vkGetPhysicalDeviceProperties(vkPhysicalDevice, physicalDeviceProperties);
 
             int vulkanMajorVersion = physicalDeviceProperties.apiVersion() >> 22;
@@ -135,13 +139,18 @@ public class VulkanUtils {
     }
 
     public static boolean isExtensionsSupported(VkPhysicalDevice device, Set<String> requiredDeviceExtensions) {
+        return fetchSupportedExtensions(device).containsAll(requiredDeviceExtensions);
+    }
+
+    public static Set<String> fetchSupportedExtensions(VkPhysicalDevice device) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             IntBuffer extensionCount = stack.ints(0);
             VK10.vkEnumerateDeviceExtensionProperties(device, (String) null, extensionCount, null);
 
-            VkExtensionProperties.Buffer availableExtensions = VkExtensionProperties.mallocStack(extensionCount.get(0), stack);
+            VkExtensionProperties.Buffer availableExtensions = VkExtensionProperties.malloc(extensionCount.get(0), stack);
+            VK10.vkEnumerateDeviceExtensionProperties(device, (String) null, extensionCount, availableExtensions);
 
-            return availableExtensions.stream().collect(Collectors.toSet()).containsAll(requiredDeviceExtensions);
+            return availableExtensions.stream().map(VkExtensionProperties::extensionNameString).collect(Collectors.toSet());
         }
     }
 
@@ -152,7 +161,7 @@ public class VulkanUtils {
 
             VK10.vkGetPhysicalDeviceQueueFamilyProperties(vkPhysicalDevice, queueFamilyCount, null);
 
-            VkQueueFamilyProperties.Buffer queueFamilies = VkQueueFamilyProperties.mallocStack(queueFamilyCount.get(0), stack);
+            VkQueueFamilyProperties.Buffer queueFamilies = VkQueueFamilyProperties.malloc(queueFamilyCount.get(0), stack);
 
             VK10.vkGetPhysicalDeviceQueueFamilyProperties(vkPhysicalDevice, queueFamilyCount, queueFamilies);
 
@@ -174,10 +183,36 @@ public class VulkanUtils {
         }
     }
 
+    /*
+     * Headless rendering has no surface, so the graphics family is used for everything.
+     */
+    public static QueueFamilyIndices findGraphicsQueueFamilyFromPhysicalDevice(VkPhysicalDevice vkPhysicalDevice) {
+        QueueFamilyIndices queueFamilyIndices = new QueueFamilyIndices();
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer queueFamilyCount = stack.ints(0);
+
+            VK10.vkGetPhysicalDeviceQueueFamilyProperties(vkPhysicalDevice, queueFamilyCount, null);
+
+            VkQueueFamilyProperties.Buffer queueFamilies = VkQueueFamilyProperties.malloc(queueFamilyCount.get(0), stack);
+
+            VK10.vkGetPhysicalDeviceQueueFamilyProperties(vkPhysicalDevice, queueFamilyCount, queueFamilies);
+
+            for (int i = 0; i < queueFamilies.capacity(); i++) {
+                if ((queueFamilies.get(i).queueFlags() & VK10.VK_QUEUE_GRAPHICS_BIT) != 0) {
+                    queueFamilyIndices.setGraphicsFamily(i);
+                    queueFamilyIndices.setPresentationFamily(i);
+                    break;
+                }
+            }
+
+            return queueFamilyIndices;
+        }
+    }
+
     public static SwapChainSupportDetails querySwapChainSupport(VkPhysicalDevice physicalDevice, MemoryStack stack, long surface) {
         SwapChainSupportDetails details = new SwapChainSupportDetails();
 
-        details.setCapabilities(VkSurfaceCapabilitiesKHR.mallocStack(stack));
+        details.setCapabilities(VkSurfaceCapabilitiesKHR.malloc(stack));
         KHRSurface.vkGetPhysicalDeviceSurfaceCapabilitiesKHR(physicalDevice, surface, details.getCapabilities());
 
         IntBuffer count = stack.ints(0);
@@ -185,7 +220,7 @@ public class VulkanUtils {
         KHRSurface.vkGetPhysicalDeviceSurfaceFormatsKHR(physicalDevice, surface, count, null);
 
         if (count.get(0) != 0) {
-            details.setFormats(VkSurfaceFormatKHR.mallocStack(count.get(0), stack));
+            details.setFormats(VkSurfaceFormatKHR.malloc(count.get(0), stack));
             KHRSurface.vkGetPhysicalDeviceSurfaceFormatsKHR(physicalDevice, surface, count, details.getFormats());
         }
 
@@ -210,7 +245,7 @@ public class VulkanUtils {
             try (MemoryStack stack = MemoryStack.stackPush()) {
                 SwapChainSupportDetails swapChainSupportDetails = querySwapChainSupport(vkPhysicalDevice, stack, surface);
                 swapChainAdequate = swapChainSupportDetails.getFormats().hasRemaining() && swapChainSupportDetails.getPresentMode().hasRemaining();
-                VkPhysicalDeviceFeatures supportedFeatures = VkPhysicalDeviceFeatures.mallocStack(stack);
+                VkPhysicalDeviceFeatures supportedFeatures = VkPhysicalDeviceFeatures.malloc(stack);
                 VK10.vkGetPhysicalDeviceFeatures(vkPhysicalDevice, supportedFeatures);
                 anisotropySupported = supportedFeatures.samplerAnisotropy();
             }
@@ -219,6 +254,69 @@ public class VulkanUtils {
         return indices.isComplete() && extensionsSupported && swapChainAdequate && anisotropySupported;
     }
 
+    public static boolean isHeadlessDeviceSuitable(VkPhysicalDevice vkPhysicalDevice) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceFeatures supportedFeatures = VkPhysicalDeviceFeatures.malloc(stack);
+            VK10.vkGetPhysicalDeviceFeatures(vkPhysicalDevice, supportedFeatures);
+
+            return findGraphicsQueueFamilyFromPhysicalDevice(vkPhysicalDevice).isComplete() && supportedFeatures.samplerAnisotropy();
+        }
+    }
+
+    /*
+     * Many indirect draws in one call, otherwise every draw is its own vkCmdDrawIndexedIndirect
+     */
+    public static boolean isMultiDrawIndirectSupported(VkPhysicalDevice vkPhysicalDevice) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceFeatures supportedFeatures = VkPhysicalDeviceFeatures.malloc(stack);
+            VK10.vkGetPhysicalDeviceFeatures(vkPhysicalDevice, supportedFeatures);
+
+            return supportedFeatures.multiDrawIndirect();
+        }
+    }
+
+    /*
+     * Indirect draws with a firstInstance other than 0, the raster path finds its instances by it
+     */
+    public static boolean isDrawIndirectFirstInstanceSupported(VkPhysicalDevice vkPhysicalDevice) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceFeatures supportedFeatures = VkPhysicalDeviceFeatures.malloc(stack);
+            VK10.vkGetPhysicalDeviceFeatures(vkPhysicalDevice, supportedFeatures);
+
+            return supportedFeatures.drawIndirectFirstInstance();
+        }
+    }
+
+    public static boolean isVertexFormatSupported(VkPhysicalDevice vkPhysicalDevice, int format) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkFormatProperties formatProperties = VkFormatProperties.malloc(stack);
+            VK10.vkGetPhysicalDeviceFormatProperties(vkPhysicalDevice, format, formatProperties);
+
+            return (formatProperties.bufferFeatures() & VK10.VK_FORMAT_FEATURE_VERTEX_BUFFER_BIT) != 0;
+        }
+    }
+
+    public static long getMinStorageBufferOffsetAlignment(VkPhysicalDevice vkPhysicalDevice) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkPhysicalDeviceProperties physicalDeviceProperties = VkPhysicalDeviceProperties.malloc(stack);
+            VK10.vkGetPhysicalDeviceProperties(vkPhysicalDevice, physicalDeviceProperties);
+
+            return physicalDeviceProperties.limits().minStorageBufferOffsetAlignment();
+        }
+    }
+
+    /*
+     * Without a window GLFW is never initialized, only the debug utils are needed.
+     */
+    public static PointerBuffer fetchHeadlessExtensions() {
+        if (ENABLE_VALIDATION_LAYERS) {
+            MemoryStack stack = MemoryStack.stackGet();
+            return stack.pointers(stack.UTF8(EXTDebugUtils.VK_EXT_DEBUG_UTILS_EXTENSION_NAME));
+        }
+
+        return null;
+    }
+
     public static PointerBuffer fetchMandatoryExtensions() {
         PointerBuffer glfwExtensions = GLFWVulkan.glfwGetRequiredInstanceExtensions();
 
@@ -234,4 +332,98 @@ public class VulkanUtils {
 
         return glfwExtensions;
     }
+
+    public static VkCommandBuffer beginSingleTimeCommands(VkDevice vkDevice, long commandPool) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkCommandBufferAllocateInfo allocateInfo = VkCommandBufferAllocateInfo.calloc(stack);
+            allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_ALLOCATE_INFO);
+            allocateInfo.level(VK10.VK_COMMAND_BUFFER_LEVEL_PRIMARY);
+            allocateInfo.commandPool(commandPool);
+            allocateInfo.commandBufferCount(1);
+
+            PointerBuffer pCommandBuffer = stack.mallocPointer(1);
+            VK10.vkAllocateCommandBuffers(vkDevice, allocateInfo, pCommandBuffer);
+
+            VkCommandBuffer commandBuffer = new VkCommandBuffer(pCommandBuffer.get(0), vkDevice);
+            VkCommandBufferBeginInfo beginInfo = VkCommandBufferBeginInfo.calloc(stack);
+            beginInfo.sType(VK10.VK_STRUCTURE_TYPE_COMMAND_BUFFER_BEGIN_INFO);
+            beginInfo.flags(VK10.VK_COMMAND_BUFFER_USAGE_ONE_TIME_SUBMIT_BIT);
+
+            VK10.vkBeginCommandBuffer(commandBuffer, beginInfo);
+
+            return commandBuffer;
+        }
+    }
+
+    public static void endSingleTimeCommands(VkCommandBuffer commandBuffer, VkDevice vkDevice, long commandPool, VkQueue vkQueue) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VK10.vkEndCommandBuffer(commandBuffer);
+
+            VkSubmitInfo.Buffer submitInfo = VkSubmitInfo.calloc(1, stack);
+            submitInfo.sType(VK10.VK_STRUCTURE_TYPE_SUBMIT_INFO);
+            submitInfo.pCommandBuffers(stack.pointers(commandBuffer));
+
+            int returnCode = VK10.vkQueueSubmit(vkQueue, submitInfo, VK10.VK_NULL_HANDLE);
+
+            if (returnCode != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Queue submit returned the failure code: " + returnCode);
+            }
+
+            returnCode = VK10.vkQueueWaitIdle(vkQueue);
+
+            if (returnCode != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Wait for Queue returned the failure code: " + returnCode);
+            }
+
+            VK10.vkFreeCommandBuffers(vkDevice, commandPool, commandBuffer);
+        }
+    }
+
+    public static void createAllocateBindBuffer(long size, int usage, int properties, LongBuffer pBuffer, LongBuffer pBufferMemory, VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice) {
+        createAllocateBindBuffer(size, usage, properties, properties, pBuffer, pBufferMemory, vkDevice, vkPhysicalDevice);
+    }
+
+    /*
+     * Allocates memory with fallbackProperties when no memory type allowed for the buffer has all of
+     * the preferred properties
+     */
+    public static void createAllocateBindBuffer(long size, int usage, int properties, int fallbackProperties, LongBuffer pBuffer, LongBuffer pBufferMemory,
+                                                VkDevice vkDevice, VkPhysicalDevice vkPhysicalDevice) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            VkBufferCreateInfo bufferCreateInfo = VkBufferCreateInfo.calloc(stack);
+            bufferCreateInfo.sType(VK10.VK_STRUCTURE_TYPE_BUFFER_CREATE_INFO);
+            bufferCreateInfo.size(size);
+            bufferCreateInfo.usage(usage);
+            bufferCreateInfo.sharingMode(VK10.VK_SHARING_MODE_EXCLUSIVE);
+
+            if (VK10.vkCreateBuffer(vkDevice, bufferCreateInfo, null, pBuffer) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to create buffer");
+            }
+
+            VkMemoryRequirements memoryRequirements = VkMemoryRequirements.malloc(stack);
+            VK10.vkGetBufferMemoryRequirements(vkDevice, pBuffer.get(0), memoryRequirements);
+
+            VkMemoryAllocateInfo allocateInfo = VkMemoryAllocateInfo.calloc(stack);
+            allocateInfo.sType(VK10.VK_STRUCTURE_TYPE_MEMORY_ALLOCATE_INFO);
+            allocateInfo.allocationSize(memoryRequirements.size());
+            final int memoryType = findMemoryType(memoryRequirements.memoryTypeBits(), properties, vkPhysicalDevice);
+            allocateInfo.memoryTypeIndex(memoryType >= 0
+                    ? memoryType
+                    : extractTheCorrectMemoryTypeFromPhysicalDevice(memoryRequirements.memoryTypeBits(), fallbackProperties, vkPhysicalDevice));
+
+            //Buffers read through their device address (KHR ray tracing) need memory that can hand one out
+            if ((usage & VK12.VK_BUFFER_USAGE_SHADER_DEVICE_ADDRESS_BIT) != 0) {
+                VkMemoryAllocateFlagsInfo allocateFlagsInfo = VkMemoryAllocateFlagsInfo.calloc(stack);
+                allocateFlagsInfo.sType(VK11.VK_STRUCTURE_TYPE_MEMORY_ALLOCATE_FLAGS_INFO);
+                allocateFlagsInfo.flags(VK12.VK_MEMORY_ALLOCATE_DEVICE_ADDRESS_BIT);
+                allocateInfo.pNext(allocateFlagsInfo.address());
+            }
+
+            if (VK10.vkAllocateMemory(vkDevice, allocateInfo, null, pBufferMemory) != VK10.VK_SUCCESS) {
+                throw new RuntimeException("Failed to allocate vertex buffer memory");
+            }
+
+            VK10.vkBindBufferMemory(vkDevice, pBuffer.get(0), pBufferMemory.get(0), 0);
+        }
+    }
 }
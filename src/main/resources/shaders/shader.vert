@@ -1,6 +1,9 @@
 #version 450
 #extension GL_ARB_separate_shader_objects : enable
 
+// VertexFormat.getShaderDefines() picks the vertex attributes:
+// POSITION_UNORM16 (with POSITION_MIN, POSITION_EXTENT) and VERTEX_COLOR
+
 layout(binding = 0) uniform UniformBufferObject {
     mat4 model;
     mat4 view;
@@ -9,15 +12,39 @@ layout(binding = 0) uniform UniformBufferObject {
     mat4 projInverse;
 } ubo;
 
+// see DrawInstanceWriter, the draws of instance i start at firstInstance i
+struct Instance {
+    mat4 model;
+    uint mesh;
+};
+
+layout(std430, binding = 2) readonly buffer Instances { Instance instances[]; };
+
+#ifdef POSITION_UNORM16
+layout(location = 0) in vec4 inPosition;
+#else
 layout(location = 0) in vec3 inPosition;
+#endif
+#ifndef VERTEX_COLOR
 layout(location = 1) in vec3 inColor;
+#endif
 layout(location = 2) in vec2 inTexCoord;
 
 layout(location = 0) out vec3 fragColor;
 layout(location = 1) out vec2 fragTexCoord;
 
 void main(){
-    gl_Position = ubo.proj * ubo.view * ubo.model * vec4(inPosition, 1.0);
+#ifdef POSITION_UNORM16
+    vec3 position = POSITION_MIN + inPosition.xyz * POSITION_EXTENT;
+#else
+    vec3 position = inPosition;
+#endif
+
+    gl_Position = ubo.proj * ubo.view * ubo.model * instances[gl_InstanceIndex].model * vec4(position, 1.0);
+#ifdef VERTEX_COLOR
+    fragColor = VERTEX_COLOR;
+#else
     fragColor = inColor;
+#endif
     fragTexCoord = inTexCoord;
 }
@@ -0,0 +1,44 @@
+package vulkan.tutorial;
+
+import org.junit.jupiter.api.Test;
+import vulkan.tutorial.math.VertexLayout;
+import vulkan.tutorial.present.PresentPolicy;
+import vulkan.tutorial.scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VulkanAppOptionsTest {
+
+    @Test
+    void defaultsToTheOriginalTutorial() {
+        final VulkanAppOptions options = VulkanAppOptions.createDefault();
+
+        assertNull(options.getHeadlessConfig());
+        assertNull(options.getMetricsExporter());
+        assertNull(options.getDenoiseFilter());
+        assertNull(options.getResolutionController());
+        assertFalse(options.getAccumulationConfig().isEnabled());
+        assertNotNull(options.getTonemapper());
+        assertSame(VertexLayout.COMPACT, options.getVertexLayout());
+        assertTrue(options.getJobSystem().isSingleThreaded());
+        assertSame(PresentPolicy.createDefault(), options.getPresentPolicy());
+        assertNotNull(options.getScene());
+    }
+
+    @Test
+    void withChangesOneOptionOfACopy() {
+        final VulkanAppOptions options = VulkanAppOptions.createDefault();
+        final Scene scene = Scene.createGrid(0, 4, 2.0f);
+        final VulkanAppOptions changed = options.withScene(scene).withVertexLayout(VertexLayout.FULL);
+
+        assertSame(scene, changed.getScene());
+        assertSame(VertexLayout.FULL, changed.getVertexLayout());
+        assertSame(options.getTonemapper(), changed.getTonemapper());
+        assertSame(options.getPresentPolicy(), changed.getPresentPolicy());
+        assertSame(VertexLayout.COMPACT, options.getVertexLayout());
+    }
+}
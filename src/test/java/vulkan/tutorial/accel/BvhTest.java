@@ -0,0 +1,265 @@
+package vulkan.tutorial.accel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BvhTest {
+    //more than the parallel threshold of the builder, so the top of the tree is forked
+    private static final int TRIANGLE_COUNT = 6000;
+    private static final int RAY_COUNT = 2000;
+
+    @Test
+    void closestHitsMatchBruteForce() {
+        final Random random = new Random(21);
+        final float[] positions = createTriangleSoup(random);
+        final int[] indices = createIndices();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            final Bvh bvh = new BvhBuilder(BvhBuilder.DEFAULT_BIN_COUNT, BvhBuilder.DEFAULT_LEAF_SIZE, pool).build(positions, indices);
+
+            assertStructure(bvh);
+            assertBoundsContainContent(bvh);
+            assertTrue(assertRaysMatchBruteForce(bvh, random) > RAY_COUNT / 4, "too few rays hit something");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void refitBoundsContainTheMovedTriangles() {
+        final Random random = new Random(22);
+        final float[] positions = createTriangleSoup(random);
+        final Bvh bvh = new BvhBuilder().build(positions, createIndices());
+
+        //a twist and a random wobble, most triangles leave their old bounds
+        for (int vertex = 0; vertex < positions.length / 3; vertex++) {
+            final float x = positions[vertex * 3];
+            final float y = positions[vertex * 3 + 1];
+            final float angle = positions[vertex * 3 + 2] * 0.1f;
+
+            positions[vertex * 3] = x * (float) Math.cos(angle) - y * (float) Math.sin(angle) + random.nextFloat() - 0.5f;
+            positions[vertex * 3 + 1] = x * (float) Math.sin(angle) + y * (float) Math.cos(angle) + random.nextFloat() - 0.5f;
+            positions[vertex * 3 + 2] += random.nextFloat() * 4.0f;
+        }
+
+        bvh.refit();
+
+        assertStructure(bvh);
+        assertBoundsContainContent(bvh);
+        assertRaysMatchBruteForce(bvh, random);
+    }
+
+    @Test
+    void raysAlongTheAxes() {
+        //a unit square at z = 0, rays with two zero direction components
+        final float[] positions = {0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 0.0f, 0.0f, 1.0f, 0.0f};
+        final Bvh bvh = new BvhBuilder().build(positions, new int[]{0, 1, 2, 0, 2, 3});
+        final RayHit hit = new RayHit();
+
+        assertTrue(bvh.intersect(0.25f, 0.75f, 5.0f, 0.0f, 0.0f, -1.0f, 0.0f, 100.0f, hit));
+        assertEquals(5.0f, hit.getDistance(), 1e-5f);
+        assertEquals(1, hit.getTriangle());
+        assertFalse(bvh.intersect(0.25f, 0.75f, 5.0f, 0.0f, 0.0f, -1.0f, 0.0f, 4.0f, hit));
+        assertFalse(bvh.intersect(1.5f, 0.5f, 5.0f, 0.0f, 0.0f, -1.0f, 0.0f, 100.0f, hit));
+        assertFalse(bvh.intersect(0.5f, 0.5f, 5.0f, 1.0f, 0.0f, 0.0f, 0.0f, 100.0f, hit));
+        assertTrue(bvh.occluded(0.75f, 0.25f, -1.0f, 0.0f, 0.0f, 1.0f, 0.0f, 2.0f));
+        assertFalse(bvh.occluded(0.75f, 0.25f, -1.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.5f));
+    }
+
+    @Test
+    void emptyMeshHasNoHits() {
+        final Bvh bvh = new BvhBuilder().build(new float[0], new int[0]);
+
+        assertEquals(0, bvh.getNodeCount());
+        assertFalse(bvh.intersect(0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 100.0f, new RayHit()));
+        assertFalse(bvh.occluded(0.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 100.0f));
+        assertThrows(IllegalArgumentException.class, () -> new BvhBuilder().build(new float[9], new int[]{0, 1}));
+        assertThrows(IllegalArgumentException.class, () -> new BvhBuilder(1, 4, ForkJoinPool.commonPool()));
+    }
+
+    /*
+     * Random rays from around the soup towards points inside it, some of them starting past tMin.
+     * Returns the number of rays that hit.
+     */
+    private static int assertRaysMatchBruteForce(Bvh bvh, Random random) {
+        final RayHit hit = new RayHit();
+        final RayHit expected = new RayHit();
+        final int[] stack = bvh.createTraversalStack();
+        int hitCount = 0;
+
+        for (int ray = 0; ray < RAY_COUNT; ray++) {
+            final float ox = random.nextFloat() * 40.0f - 20.0f;
+            final float oy = random.nextFloat() * 40.0f - 20.0f;
+            final float oz = random.nextFloat() * 40.0f - 20.0f;
+            float dx = random.nextFloat() * 20.0f - 10.0f - ox;
+            float dy = random.nextFloat() * 20.0f - 10.0f - oy;
+            float dz = random.nextFloat() * 20.0f - 10.0f - oz;
+            final float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            dx /= length;
+            dy /= length;
+            dz /= length;
+
+            final float tMin = ray % 4 == 0 ? random.nextFloat() * 10.0f : 0.0f;
+            final float tMax = ray % 3 == 0 ? tMin + random.nextFloat() * 20.0f : Float.POSITIVE_INFINITY;
+            final boolean isHit = bvh.intersect(ox, oy, oz, dx, dy, dz, tMin, tMax, hit, stack);
+
+            intersectAll(bvh, ox, oy, oz, dx, dy, dz, tMin, tMax, expected);
+
+            assertEquals(expected.isHit(), isHit, "ray " + ray);
+            assertEquals(expected.getTriangle(), hit.getTriangle(), "ray " + ray);
+            assertEquals(expected.getDistance(), hit.getDistance(), "ray " + ray);
+            assertEquals(expected.isHit(), bvh.occluded(ox, oy, oz, dx, dy, dz, tMin, tMax, stack), "ray " + ray);
+
+            hitCount += isHit ? 1 : 0;
+        }
+
+        return hitCount;
+    }
+
+    /*
+     * Every triangle against the ray, in the same float arithmetic as Bvh
+     */
+    private static void intersectAll(Bvh bvh, float ox, float oy, float oz, float dx, float dy, float dz, float tMin, float tMax, RayHit hit) {
+        final float[] positions = bvh.getPositions();
+        final int[] indices = bvh.getIndices();
+        hit.reset(tMax);
+
+        for (int triangle = 0; triangle < bvh.getTriangleCount(); triangle++) {
+            final int i0 = indices[triangle * 3] * 3;
+            final int i1 = indices[triangle * 3 + 1] * 3;
+            final int i2 = indices[triangle * 3 + 2] * 3;
+
+            final float e1x = positions[i1] - positions[i0];
+            final float e1y = positions[i1 + 1] - positions[i0 + 1];
+            final float e1z = positions[i1 + 2] - positions[i0 + 2];
+            final float e2x = positions[i2] - positions[i0];
+            final float e2y = positions[i2 + 1] - positions[i0 + 1];
+            final float e2z = positions[i2 + 2] - positions[i0 + 2];
+
+            final float px = dy * e2z - dz * e2y;
+            final float py = dz * e2x - dx * e2z;
+            final float pz = dx * e2y - dy * e2x;
+            final float determinant = e1x * px + e1y * py + e1z * pz;
+
+            if (Math.abs(determinant) < 1e-12f) {
+                continue;
+            }
+
+            final float invDeterminant = 1.0f / determinant;
+            final float sx = ox - positions[i0];
+            final float sy = oy - positions[i0 + 1];
+            final float sz = oz - positions[i0 + 2];
+            final float u = (sx * px + sy * py + sz * pz) * invDeterminant;
+
+            final float qx = sy * e1z - sz * e1y;
+            final float qy = sz * e1x - sx * e1z;
+            final float qz = sx * e1y - sy * e1x;
+            final float v = (dx * qx + dy * qy + dz * qz) * invDeterminant;
+            final float t = (e2x * qx + e2y * qy + e2z * qz) * invDeterminant;
+
+            if (u >= 0.0f && u <= 1.0f && v >= 0.0f && u + v <= 1.0f && t > tMin && t < hit.getDistance()) {
+                hit.set(t, triangle, u, v);
+            }
+        }
+    }
+
+    /*
+     * Every triangle sits in exactly one leaf, children come after their parent
+     */
+    private static void assertStructure(Bvh bvh) {
+        final int[] nodeData = bvh.getNodeData();
+        final int[] leafCount = new int[bvh.getTriangleCount()];
+
+        for (int node = 0; node < bvh.getNodeCount(); node++) {
+            final int count = nodeData[node * Bvh.DATA_STRIDE + 1];
+            final int first = nodeData[node * Bvh.DATA_STRIDE];
+
+            if (count > 0) {
+                for (int i = first; i < first + count; i++) {
+                    leafCount[bvh.getPrimIndices()[i]]++;
+                }
+            } else {
+                assertTrue(first > node && first + 1 < bvh.getNodeCount(), "children of node " + node);
+            }
+        }
+
+        for (int triangle = 0; triangle < leafCount.length; triangle++) {
+            assertEquals(1, leafCount[triangle], "leaves of triangle " + triangle);
+        }
+    }
+
+    /*
+     * Leaf bounds contain the vertices of their triangles, inner bounds the bounds of both children
+     */
+    private static void assertBoundsContainContent(Bvh bvh) {
+        final float[] bounds = bvh.getNodeBounds();
+        final int[] nodeData = bvh.getNodeData();
+
+        for (int node = 0; node < bvh.getNodeCount(); node++) {
+            final int count = nodeData[node * Bvh.DATA_STRIDE + 1];
+            final int first = nodeData[node * Bvh.DATA_STRIDE];
+
+            if (count > 0) {
+                for (int i = first; i < first + count; i++) {
+                    final int triangle = bvh.getPrimIndices()[i];
+
+                    for (int corner = 0; corner < 3; corner++) {
+                        final int vertex = bvh.getIndices()[triangle * 3 + corner];
+
+                        for (int axis = 0; axis < 3; axis++) {
+                            final float value = bvh.getPositions()[vertex * 3 + axis];
+                            assertTrue(bounds[node * Bvh.BOUNDS_STRIDE + axis] <= value && value <= bounds[node * Bvh.BOUNDS_STRIDE + 3 + axis],
+                                    "node " + node + " triangle " + triangle);
+                        }
+                    }
+                }
+            } else {
+                for (int child = first; child <= first + 1; child++) {
+                    for (int axis = 0; axis < 3; axis++) {
+                        assertTrue(bounds[node * Bvh.BOUNDS_STRIDE + axis] <= bounds[child * Bvh.BOUNDS_STRIDE + axis], "node " + node + " child " + child);
+                        assertTrue(bounds[child * Bvh.BOUNDS_STRIDE + 3 + axis] <= bounds[node * Bvh.BOUNDS_STRIDE + 3 + axis], "node " + node + " child " + child);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * Triangles with edges of up to 2 units in a 20 unit cube around the origin
+     */
+    private static float[] createTriangleSoup(Random random) {
+        final float[] positions = new float[TRIANGLE_COUNT * 9];
+
+        for (int triangle = 0; triangle < TRIANGLE_COUNT; triangle++) {
+            final float x = random.nextFloat() * 20.0f - 10.0f;
+            final float y = random.nextFloat() * 20.0f - 10.0f;
+            final float z = random.nextFloat() * 20.0f - 10.0f;
+
+            for (int corner = 0; corner < 3; corner++) {
+                positions[triangle * 9 + corner * 3] = x + random.nextFloat() * 2.0f - 1.0f;
+                positions[triangle * 9 + corner * 3 + 1] = y + random.nextFloat() * 2.0f - 1.0f;
+                positions[triangle * 9 + corner * 3 + 2] = z + random.nextFloat() * 2.0f - 1.0f;
+            }
+        }
+
+        return positions;
+    }
+
+    private static int[] createIndices() {
+        final int[] indices = new int[TRIANGLE_COUNT * 3];
+
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+
+        return indices;
+    }
+}
@@ -0,0 +1,59 @@
+package vulkan.tutorial.accumulation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccumulationConfigTest {
+    private static final float THRESHOLD = 0.01f;
+    private static final int MIN_SAMPLES = 16;
+
+    private final AccumulationConfig config = new AccumulationConfig(0L, 4, THRESHOLD, MIN_SAMPLES);
+
+    @Test
+    void convergesOnceVarianceIsWithinToleranceSquaredTimesSamples() {
+        final float mean = 2.0f;
+        final float samples = 100.0f;
+        final float tolerance = THRESHOLD * mean;
+        final float limit = tolerance * tolerance * samples;
+
+        assertTrue(this.config.isConverged(mean, mean * mean + limit * 0.99f, samples));
+        assertFalse(this.config.isConverged(mean, mean * mean + limit * 1.01f, samples));
+        //more samples allow more variance, the standard error still shrinks
+        assertTrue(this.config.isConverged(mean, mean * mean + limit * 1.01f, samples * 2.0f));
+    }
+
+    @Test
+    void darkPixelsUseTheMinimumLuminance() {
+        final float tolerance = THRESHOLD / 256.0f;
+        final float samples = 64.0f;
+        final float limit = tolerance * tolerance * samples;
+
+        assertTrue(this.config.isConverged(0.0f, limit * 0.99f, samples));
+        assertFalse(this.config.isConverged(0.0f, limit * 1.01f, samples));
+    }
+
+    @Test
+    void needsMinSamples() {
+        assertFalse(this.config.isConverged(1.0f, 1.0f, MIN_SAMPLES - 1));
+        assertTrue(this.config.isConverged(1.0f, 1.0f, MIN_SAMPLES));
+    }
+
+    @Test
+    void zeroThresholdNeverConverges() {
+        AccumulationConfig neverConverges = new AccumulationConfig(0L, 4, 0.0f, 1);
+
+        assertFalse(neverConverges.isConverged(1.0f, 1.0f, 1_000_000.0f));
+        assertFalse(AccumulationConfig.disabled().isConverged(1.0f, 1.0f, 1_000_000.0f));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AccumulationConfig(-1L, 4, THRESHOLD, MIN_SAMPLES));
+        assertThrows(IllegalArgumentException.class, () -> new AccumulationConfig(0L, 0, THRESHOLD, MIN_SAMPLES));
+        assertThrows(IllegalArgumentException.class, () -> new AccumulationConfig(0L, 4, -THRESHOLD, MIN_SAMPLES));
+        assertThrows(IllegalArgumentException.class, () -> new AccumulationConfig(0L, 4, THRESHOLD, 0));
+    }
+}
@@ -0,0 +1,61 @@
+package vulkan.tutorial.accumulation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * The expected values are what pcgHash() and nextRandom() of raytrace.rgen compute with 32 bit uints.
+ */
+class PcgRandomTest {
+    private static final float UNIT = 1.0f / (1 << 24);
+
+    @Test
+    void hashMatchesTheShader() {
+        assertEquals(0x07bb2fe2, PcgRandom.hash(0));
+        assertEquals(0xa8beea3c, PcgRandom.hash(1));
+        assertEquals(0x48f432ff, PcgRandom.hash(42));
+        //0xffffffff as a uint
+        assertEquals(0xe62a4902, PcgRandom.hash(-1));
+    }
+
+    @Test
+    void sequenceMatchesTheShader() {
+        assertSequence(0, 0, 8379828, 9253448, 3596275, 3131180);
+        assertSequence(1234, 7, 5026062, 398436, 4039666, 4963909);
+        //last pixel of an 800x600 image
+        assertSequence(479999, 1000, 14647302, 5046117, 14996038, 14405636);
+    }
+
+    @Test
+    void floatsAreInUnitInterval() {
+        PcgRandom random = new PcgRandom();
+        random.seed(17, 3);
+
+        for (int i = 0; i < 10_000; i++) {
+            final float value = random.nextFloat();
+            assertTrue(value >= 0.0f && value < 1.0f, "got " + value);
+        }
+    }
+
+    @Test
+    void everyFrameGetsNewSamples() {
+        PcgRandom first = new PcgRandom();
+        PcgRandom second = new PcgRandom();
+        first.seed(100, 0);
+        second.seed(100, 1);
+
+        assertNotEquals(first.nextFloat(), second.nextFloat());
+    }
+
+    private static void assertSequence(int pixelIndex, int frameIndex, int... topBits) {
+        PcgRandom random = new PcgRandom();
+        random.seed(pixelIndex, frameIndex);
+
+        for (int i = 0; i < topBits.length; i++) {
+            assertEquals(topBits[i] * UNIT, random.nextFloat(), "sample " + i + " of pixel " + pixelIndex + " in frame " + frameIndex);
+        }
+    }
+}
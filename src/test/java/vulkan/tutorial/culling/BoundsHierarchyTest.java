@@ -0,0 +1,80 @@
+package vulkan.tutorial.culling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BoundsHierarchyTest {
+
+    @Test
+    void everyBoxIsInOneLeafInsideItsAncestors() {
+        final Random random = new Random(4);
+        final int count = 1000;
+        final float[] bounds = new float[count * BoundsHierarchy.BOUNDS_STRIDE];
+
+        for (int i = 0; i < count; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                final float min = random.nextFloat() * 50.0f;
+                bounds[i * BoundsHierarchy.BOUNDS_STRIDE + axis] = min;
+                bounds[i * BoundsHierarchy.BOUNDS_STRIDE + 3 + axis] = min + random.nextFloat() * 2.0f;
+            }
+        }
+
+        final BoundsHierarchy hierarchy = BoundsHierarchy.build(bounds, count, 4);
+        final int[] owners = new int[count];
+
+        assertEquals(count, hierarchy.getItemCount(0));
+        assertEquals(count, checkNode(hierarchy, bounds, 0, owners));
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, owners[i], "box " + i);
+        }
+
+        //median splits of 1000 boxes into leaves of at most 4
+        assertTrue(hierarchy.getDepth() <= 10, "depth " + hierarchy.getDepth());
+    }
+
+    @Test
+    void emptyAndInvalid() {
+        assertEquals(0, BoundsHierarchy.build(new float[0], 0).getNodeCount());
+        assertThrows(IllegalArgumentException.class, () -> BoundsHierarchy.build(new float[6], 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> BoundsHierarchy.build(new float[6], 2));
+    }
+
+    /*
+     * Returns the number of boxes in the leaves below node, checks that node bounds contain them
+     */
+    private static int checkNode(BoundsHierarchy hierarchy, float[] bounds, int node, int[] owners) {
+        final int[] nodeData = hierarchy.getNodeData();
+        final float[] nodeBounds = hierarchy.getNodeBounds();
+        final int[] items = hierarchy.getLeafItems();
+
+        for (int i = hierarchy.getItemFirst(node); i < hierarchy.getItemFirst(node) + hierarchy.getItemCount(node); i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                assertTrue(nodeBounds[node * BoundsHierarchy.BOUNDS_STRIDE + axis] <= bounds[items[i] * BoundsHierarchy.BOUNDS_STRIDE + axis]);
+                assertTrue(nodeBounds[node * BoundsHierarchy.BOUNDS_STRIDE + 3 + axis] >= bounds[items[i] * BoundsHierarchy.BOUNDS_STRIDE + 3 + axis]);
+            }
+        }
+
+        if (nodeData[node * BoundsHierarchy.DATA_STRIDE + 1] > 0) {
+            assertTrue(hierarchy.getItemCount(node) <= 4);
+
+            for (int i = hierarchy.getItemFirst(node); i < hierarchy.getItemFirst(node) + hierarchy.getItemCount(node); i++) {
+                owners[items[i]]++;
+            }
+
+            return hierarchy.getItemCount(node);
+        }
+
+        final int left = nodeData[node * BoundsHierarchy.DATA_STRIDE];
+        final int leaves = checkNode(hierarchy, bounds, left, owners) + checkNode(hierarchy, bounds, left + 1, owners);
+
+        assertEquals(hierarchy.getItemCount(node), leaves);
+
+        return leaves;
+    }
+}
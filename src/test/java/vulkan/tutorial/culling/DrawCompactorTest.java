@@ -0,0 +1,148 @@
+package vulkan.tutorial.culling;
+
+import org.joml.Matrix4f;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import vulkan.tutorial.gameobject.GameObject;
+import vulkan.tutorial.gameobject.MeshPool;
+import vulkan.tutorial.math.Vertex;
+import vulkan.tutorial.scene.Scene;
+import vulkan.tutorial.shader.UniformBufferObject;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * The camera of UniformBufferObject.updateCamera() looks from (2, 2, 2) at the origin, the meshes
+ * are flat grids in the xy plane facing +z.
+ */
+class DrawCompactorTest {
+    private static final float LOD_SCALE = 300.0f;
+
+    private final DrawCompactor compactor = new DrawCompactor();
+    private final UniformBufferObject ubo = new UniformBufferObject();
+    private MeshPool pool;
+    private int quad;
+    private int grid;
+
+    @BeforeEach
+    void setUp() {
+        this.ubo.updateCamera(1.0f);
+        this.pool = new MeshPool();
+        this.quad = this.pool.add(createGrid(1));
+        this.grid = this.pool.add(createGrid(8));
+    }
+
+    @Test
+    void packsVisibleClustersInInstanceOrder() {
+        final Scene scene = new Scene();
+        scene.addInstance(this.grid, new Matrix4f());
+        //outside of the frustum
+        scene.addInstance(this.quad, new Matrix4f().translation(100.0f, 0.0f, 0.0f));
+        //flipped to face away from the camera, removed by the normal cone
+        scene.addInstance(this.quad, new Matrix4f().rotationX((float) Math.PI));
+        scene.addInstance(this.quad, new Matrix4f().translation(0.2f, 0.2f, 0.1f));
+
+        final MeshClusters clusters = this.pool.getMesh(this.grid).getClusters();
+        final int[] commands = new int[16 * DrawCompactor.COMMAND_INTS];
+        final int drawCount = this.compactor.compact(this.pool, scene, this.ubo, LOD_SCALE, commands);
+
+        assertTrue(clusters.getCount() > 1, "the grid should be split");
+        assertEquals(clusters.getCount() + 1, drawCount);
+
+        int indexCount = 0;
+
+        for (int cluster = 0; cluster < clusters.getCount(); cluster++) {
+            //the quad comes first in the pool: 4 vertices and 6 indices before the grid
+            assertDraw(commands, cluster, clusters.getIndexCount(cluster), 6 + clusters.getFirstIndex(cluster), 4, 0);
+            indexCount += clusters.getIndexCount(cluster);
+        }
+
+        assertEquals(8 * 8 * 6, indexCount);
+        assertDraw(commands, clusters.getCount(), 6, 0, 0, 3);
+    }
+
+    @Test
+    void allCulled() {
+        final Scene scene = new Scene();
+        scene.addInstance(this.quad, new Matrix4f().translation(100.0f, 0.0f, 0.0f));
+        scene.addInstance(this.grid, new Matrix4f().translation(-20.0f, -20.0f, -20.0f));
+        scene.addInstance(this.grid, new Matrix4f().rotationX((float) Math.PI));
+
+        final int[] commands = new int[8 * DrawCompactor.COMMAND_INTS];
+        Arrays.fill(commands, -1);
+
+        assertEquals(0, this.compactor.compact(this.pool, scene, this.ubo, LOD_SCALE, commands));
+
+        //nothing written
+        for (int value : commands) {
+            assertEquals(-1, value);
+        }
+    }
+
+    @Test
+    void allVisible() {
+        final Scene scene = Scene.createGrid(this.quad, 4, 0.25f);
+        final int[] commands = new int[4 * DrawCompactor.COMMAND_INTS];
+
+        assertEquals(4, this.compactor.compact(this.pool, scene, this.ubo, LOD_SCALE, commands));
+
+        for (int instance = 0; instance < 4; instance++) {
+            assertDraw(commands, instance, 6, 0, 0, instance);
+        }
+    }
+
+    @Test
+    void dropsDrawsPastTheCapacity() {
+        final Scene scene = Scene.createGrid(this.quad, 4, 0.25f);
+        final int[] commands = new int[2 * DrawCompactor.COMMAND_INTS + 3];
+
+        assertEquals(2, this.compactor.compact(this.pool, scene, this.ubo, LOD_SCALE, commands));
+        assertDraw(commands, 1, 6, 0, 0, 1);
+    }
+
+    private static void assertDraw(int[] commands, int draw, int indexCount, int firstIndex, int vertexOffset, int firstInstance) {
+        final int offset = draw * DrawCompactor.COMMAND_INTS;
+
+        assertArrayEquals(new int[]{indexCount, 1, firstIndex, vertexOffset, firstInstance},
+                Arrays.copyOfRange(commands, offset, offset + DrawCompactor.COMMAND_INTS), "draw " + draw);
+    }
+
+    /*
+     * size x size quads over [-0.5, 0.5]^2, counter clockwise seen from +z
+     */
+    private static GameObject createGrid(int size) {
+        final int rowLength = size + 1;
+        final Vertex[] vertices = new Vertex[rowLength * rowLength];
+        final int[] indices = new int[size * size * 6];
+
+        for (int y = 0; y <= size; y++) {
+            for (int x = 0; x <= size; x++) {
+                final float u = (float) x / size;
+                final float v = (float) y / size;
+                vertices[y * rowLength + x] = new Vertex(new Vector3f(u - 0.5f, v - 0.5f, 0.0f), new Vector3f(1.0f), new Vector2f(u, v));
+            }
+        }
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                final int i0 = y * rowLength + x;
+                final int offset = (y * size + x) * 6;
+
+                indices[offset] = i0;
+                indices[offset + 1] = i0 + 1;
+                indices[offset + 2] = i0 + rowLength + 1;
+                indices[offset + 3] = i0;
+                indices[offset + 4] = i0 + rowLength + 1;
+                indices[offset + 5] = i0 + rowLength;
+            }
+        }
+
+        return new GameObject(null, vertices, indices, MeshClusters.build(vertices, indices));
+    }
+}
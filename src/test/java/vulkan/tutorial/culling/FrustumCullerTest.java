@@ -0,0 +1,227 @@
+package vulkan.tutorial.culling;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * ORTHO looks down -z at x in [-2, 2], y in [-1, 1] and z in [-10, -1]. Its NDC depth is
+ * -2/9 z - 11/9, -1 at the near and 1 at the far plane.
+ */
+class FrustumCullerTest {
+    private static final Matrix4f ORTHO = new Matrix4f().ortho(-2.0f, 2.0f, -1.0f, 1.0f, 1.0f, 10.0f);
+    private static final float EPSILON = 1e-5f;
+    //more than the parallel threshold, so both culls fork
+    private static final int BOX_COUNT = 5000;
+
+    @Test
+    void planesOfAnOrthographicProjection() {
+        final FrustumCuller culler = new FrustumCuller();
+        culler.setMatrix(ORTHO);
+
+        assertArrayEquals(new float[]{
+                1.0f, 0.0f, 0.0f, 2.0f,
+                -1.0f, 0.0f, 0.0f, 2.0f,
+                0.0f, 1.0f, 0.0f, 1.0f,
+                0.0f, -1.0f, 0.0f, 1.0f,
+                0.0f, 0.0f, -1.0f, -1.0f,
+                0.0f, 0.0f, 1.0f, 10.0f
+        }, culler.getPlanes(), EPSILON);
+    }
+
+    @Test
+    void planesOfAPerspectiveProjection() {
+        final FrustumCuller culler = new FrustumCuller();
+        culler.setMatrix(new Matrix4f().perspective((float) Math.toRadians(90.0), 1.0f, 1.0f, 100.0f));
+
+        final float[] planes = culler.getPlanes();
+        final float side = (float) Math.sqrt(0.5);
+
+        //90 degrees: the side planes are |x| <= -z and |y| <= -z
+        assertArrayEquals(new float[]{side, 0.0f, -side, 0.0f}, copy(planes, 0), EPSILON);
+        assertArrayEquals(new float[]{-side, 0.0f, -side, 0.0f}, copy(planes, 1), EPSILON);
+        assertArrayEquals(new float[]{0.0f, side, -side, 0.0f}, copy(planes, 2), EPSILON);
+        assertArrayEquals(new float[]{0.0f, -side, -side, 0.0f}, copy(planes, 3), EPSILON);
+        assertArrayEquals(new float[]{0.0f, 0.0f, -1.0f, -1.0f}, copy(planes, 4), 1e-4f);
+        assertArrayEquals(new float[]{0.0f, 0.0f, 1.0f, 100.0f}, copy(planes, 5), 1e-3f);
+    }
+
+    @Test
+    void classifiesBoxes() {
+        final FrustumCuller culler = new FrustumCuller();
+        culler.setMatrix(ORTHO);
+
+        assertEquals(FrustumCuller.INSIDE, culler.classify(new float[]{-1.0f, -0.5f, -6.0f, 1.0f, 0.5f, -4.0f}, 0));
+        //through the right and the near plane
+        assertEquals(FrustumCuller.INTERSECTING, culler.classify(new float[]{1.5f, -0.5f, -2.0f, 2.5f, 0.5f, 0.0f}, 0));
+        //around the whole frustum
+        assertEquals(FrustumCuller.INTERSECTING, culler.classify(new float[]{-5.0f, -5.0f, -20.0f, 5.0f, 5.0f, 5.0f}, 0));
+        assertEquals(FrustumCuller.OUTSIDE, culler.classify(new float[]{2.1f, -0.5f, -6.0f, 3.0f, 0.5f, -4.0f}, 0));
+        assertEquals(FrustumCuller.OUTSIDE, culler.classify(new float[]{-1.0f, -0.5f, -12.0f, 1.0f, 0.5f, -10.5f}, 0));
+        //behind the camera
+        assertEquals(FrustumCuller.OUTSIDE, culler.classify(new float[]{-1.0f, -0.5f, 1.0f, 1.0f, 0.5f, 2.0f}, 0));
+
+        //offsets into a flat array
+        final float[] bounds = {9.0f, 9.0f, -1.0f, 1.0f, 0.5f, -4.0f, 0.5f, 0.5f, -5.0f, 0.7f, 0.7f, -3.0f};
+        assertEquals(FrustumCuller.INSIDE, culler.classify(bounds, 6));
+    }
+
+    @Test
+    void boxOutsideAcrossACornerIsConservative() {
+        final FrustumCuller culler = new FrustumCuller();
+        culler.setMatrix(new Matrix4f().perspective((float) Math.toRadians(90.0), 1.0f, 1.0f, 100.0f));
+
+        //right next to the edge of the right and the far plane (x = -z, z = -100), outside of
+        //both together, but every plane has a corner in front of it
+        final float[] bounds = {100.5f, -1.0f, -101.0f, 101.0f, 1.0f, -99.0f};
+
+        assertEquals(FrustumCuller.INTERSECTING, culler.classify(bounds, 0));
+    }
+
+    @Test
+    void classifiesSpheres() {
+        final FrustumCuller culler = new FrustumCuller();
+        culler.setMatrix(ORTHO);
+
+        assertEquals(FrustumCuller.INSIDE, culler.classifySphere(new float[]{0.0f, 0.0f, -5.0f, 0.5f}, 0));
+        assertEquals(FrustumCuller.INTERSECTING, culler.classifySphere(new float[]{1.8f, 0.0f, -5.0f, 0.5f}, 0));
+        assertEquals(FrustumCuller.INTERSECTING, culler.classifySphere(new float[]{0.0f, 0.0f, -5.0f, 20.0f}, 0));
+        assertEquals(FrustumCuller.OUTSIDE, culler.classifySphere(new float[]{2.6f, 0.0f, -5.0f, 0.5f}, 0));
+        assertEquals(FrustumCuller.OUTSIDE, culler.classifySphere(new float[]{0.0f, 0.0f, 1.0f, 1.5f}, 0));
+        //the radius reaches the near plane, the center doesn't
+        assertEquals(FrustumCuller.INTERSECTING, culler.classifySphere(new float[]{0.0f, 0.0f, -0.5f, 0.6f}, 0));
+
+        final float[] spheres = {0.0f, 0.0f, 5.0f, 1.0f, 0.0f, 0.0f, -5.0f, 1.0f};
+        assertEquals(FrustumCuller.OUTSIDE, culler.classifySphere(spheres, 0));
+        assertEquals(FrustumCuller.INSIDE, culler.classifySphere(spheres, Meshlets.SPHERE_STRIDE));
+    }
+
+    @Test
+    void hierarchyCullsLikeTheFlatCull() {
+        final float[] bounds = createRandomBoxes(new Random(11));
+        final BoundsHierarchy hierarchy = BoundsHierarchy.build(bounds, BOX_COUNT);
+        final Matrix4f matrix = new Matrix4f()
+                .perspective((float) Math.toRadians(60.0), 1.5f, 0.1f, 200.0f)
+                .lookAt(0.0f, 5.0f, 30.0f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            final FrustumCuller culler = new FrustumCuller(pool);
+            culler.setMatrix(matrix);
+
+            assertSameVisibleSet(culler, bounds, hierarchy);
+
+            //the same with a wall at half the depth range over the left half of the screen
+            final HiZBuffer hiZ = new HiZBuffer(128, 96);
+            final float[] depth = new float[128 * 96];
+
+            for (int y = 0; y < 96; y++) {
+                for (int x = 0; x < 128; x++) {
+                    depth[y * 128 + x] = x < 64 ? 0.99f : 1.0f;
+                }
+            }
+
+            hiZ.update(depth);
+            culler.setOcclusion(hiZ);
+
+            final int occludedVisible = assertSameVisibleSet(culler, bounds, hierarchy);
+
+            culler.setOcclusion(null);
+
+            assertTrue(occludedVisible < culler.cull(bounds, BOX_COUNT, new boolean[BOX_COUNT]), "the wall should hide something");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void occlusionHidesBoxesBehindTheDepthBuffer() {
+        final FrustumCuller culler = new FrustumCuller();
+        culler.setMatrix(ORTHO);
+
+        //a wall at z = -5 over the left half of the screen, the far plane everywhere else
+        final float wallDepth = -2.0f / 9.0f * -5.0f - 11.0f / 9.0f;
+        final HiZBuffer hiZ = new HiZBuffer(64, 32);
+        final float[] depth = new float[64 * 32];
+
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 64; x++) {
+                depth[y * 64 + x] = x < 32 ? wallDepth : 1.0f;
+            }
+        }
+
+        hiZ.update(depth);
+        culler.setOcclusion(hiZ);
+
+        final float[] behindTheWall = {-1.5f, -0.5f, -8.0f, -0.5f, 0.5f, -7.0f};
+        final float[] inFrontOfTheWall = {-1.5f, -0.5f, -3.0f, -0.5f, 0.5f, -2.0f};
+        final float[] besideTheWall = {0.5f, -0.5f, -8.0f, 1.5f, 0.5f, -7.0f};
+        final float[] partlyBehindTheWall = {-0.5f, -0.5f, -8.0f, 0.5f, 0.5f, -7.0f};
+
+        assertTrue(culler.isOccluded(behindTheWall, 0));
+        assertFalse(culler.isVisible(behindTheWall, 0));
+        assertFalse(culler.isOccluded(inFrontOfTheWall, 0));
+        assertFalse(culler.isOccluded(besideTheWall, 0));
+        assertFalse(culler.isOccluded(partlyBehindTheWall, 0));
+        assertTrue(culler.isVisible(partlyBehindTheWall, 0));
+    }
+
+    private static int assertSameVisibleSet(FrustumCuller culler, float[] bounds, BoundsHierarchy hierarchy) {
+        final boolean[] flat = new boolean[BOX_COUNT];
+        final boolean[] hierarchical = new boolean[BOX_COUNT];
+        final int flatCount = culler.cull(bounds, BOX_COUNT, flat);
+        final int hierarchyCount = culler.cull(hierarchy, bounds, hierarchical);
+
+        assertArrayEquals(flat, hierarchical);
+        assertEquals(flatCount, hierarchyCount);
+
+        int count = 0;
+
+        for (int i = 0; i < BOX_COUNT; i++) {
+            assertEquals(culler.isVisible(bounds, i * BoundsHierarchy.BOUNDS_STRIDE), flat[i], "box " + i);
+            count += flat[i] ? 1 : 0;
+        }
+
+        assertEquals(count, flatCount);
+        assertTrue(count > 0 && count < BOX_COUNT, count + " visible");
+
+        return count;
+    }
+
+    /*
+     * Small boxes in a 100 x 20 x 100 block around the origin, the camera sees part of them
+     */
+    private static float[] createRandomBoxes(Random random) {
+        final float[] bounds = new float[BOX_COUNT * BoundsHierarchy.BOUNDS_STRIDE];
+
+        for (int i = 0; i < BOX_COUNT; i++) {
+            final int offset = i * BoundsHierarchy.BOUNDS_STRIDE;
+            final float x = random.nextFloat() * 100.0f - 50.0f;
+            final float y = random.nextFloat() * 20.0f - 10.0f;
+            final float z = random.nextFloat() * 100.0f - 50.0f;
+            final float size = 0.1f + random.nextFloat();
+
+            bounds[offset] = x;
+            bounds[offset + 1] = y;
+            bounds[offset + 2] = z;
+            bounds[offset + 3] = x + size;
+            bounds[offset + 4] = y + size;
+            bounds[offset + 5] = z + size;
+        }
+
+        return bounds;
+    }
+
+    private static float[] copy(float[] planes, int plane) {
+        final float[] copy = new float[4];
+        System.arraycopy(planes, plane * 4, copy, 0, 4);
+        return copy;
+    }
+}
@@ -0,0 +1,89 @@
+package vulkan.tutorial.culling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HiZBufferTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final float OCCLUDER_DEPTH = 0.5f;
+
+    /*
+     * Far plane everywhere but a square occluder at pixels [16, 47] x [16, 47], on the texel
+     * borders of the levels up to 4
+     */
+    private static HiZBuffer createBuffer() {
+        final HiZBuffer hiZ = new HiZBuffer(WIDTH, HEIGHT);
+        final float[] depth = new float[WIDTH * HEIGHT];
+        Arrays.fill(depth, 1.0f);
+
+        for (int y = 16; y < 48; y++) {
+            for (int x = 16; x < 48; x++) {
+                depth[y * WIDTH + x] = OCCLUDER_DEPTH;
+            }
+        }
+
+        hiZ.update(depth);
+
+        return hiZ;
+    }
+
+    @Test
+    void levelsHalveDownToOneTexel() {
+        //64 -> 32 -> 16 -> 8 -> 4 -> 2 -> 1
+        assertEquals(7, new HiZBuffer(WIDTH, HEIGHT).getLevelCount());
+        assertEquals(1, new HiZBuffer(1, 1).getLevelCount());
+        //odd sizes round up
+        assertEquals(4, new HiZBuffer(5, 3).getLevelCount());
+        assertThrows(IllegalArgumentException.class, () -> new HiZBuffer(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new HiZBuffer(4, 4).update(new float[15]));
+    }
+
+    @Test
+    void boxBehindTheOccluderIsHidden() {
+        final HiZBuffer hiZ = createBuffer();
+
+        assertTrue(hiZ.isOccluded(17.0f, 17.0f, 30.0f, 30.0f, 0.7f));
+        assertTrue(hiZ.isOccluded(32.0f, 32.0f, 47.9f, 47.9f, 0.7f));
+        assertTrue(hiZ.isOccluded(30.5f, 20.5f, 30.5f, 20.5f, 0.6f));
+    }
+
+    @Test
+    void coarseTexelsKeepBoxesVisible() {
+        final HiZBuffer hiZ = createBuffer();
+
+        //21 pixels wide, looked up in the 32 pixel texels of level 5 that reach past the occluder
+        assertFalse(hiZ.isOccluded(20.0f, 20.0f, 40.0f, 40.0f, 0.7f));
+    }
+
+    @Test
+    void boxInFrontOrBesideTheOccluderIsVisible() {
+        final HiZBuffer hiZ = createBuffer();
+
+        //in front
+        assertFalse(hiZ.isOccluded(17.0f, 17.0f, 30.0f, 30.0f, 0.3f));
+        //one pixel column past the occluder
+        assertFalse(hiZ.isOccluded(33.0f, 17.0f, 48.0f, 30.0f, 0.7f));
+        //beside it
+        assertFalse(hiZ.isOccluded(0.0f, 0.0f, 10.0f, 10.0f, 0.7f));
+        //nothing is behind the far plane
+        assertFalse(hiZ.isOccluded(0.0f, 0.0f, 63.0f, 47.0f, 1.0f));
+    }
+
+    @Test
+    void offScreenIsLeftToTheFrustum() {
+        final HiZBuffer hiZ = createBuffer();
+
+        assertFalse(hiZ.isOccluded(-20.0f, 10.0f, -5.0f, 20.0f, 0.9f));
+        assertFalse(hiZ.isOccluded(70.0f, 10.0f, 90.0f, 20.0f, 0.9f));
+        //partly on screen, only the visible part is looked at
+        assertFalse(hiZ.isOccluded(30.0f, -10.0f, 40.0f, 20.0f, 0.9f));
+        assertTrue(hiZ.isOccluded(30.0f, 20.0f, 40.0f, 30.0f, 0.9f));
+    }
+}
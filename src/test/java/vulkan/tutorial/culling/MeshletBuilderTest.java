@@ -0,0 +1,187 @@
+package vulkan.tutorial.culling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeshletBuilderTest {
+    private static final int SEGMENTS = 24;
+
+    private final float[] positions = createSpherePositions(SEGMENTS);
+    private final int[] indices = createSphereIndices(SEGMENTS);
+
+    @Test
+    void staysWithinTheLimits() {
+        final int[][] limits = {{MeshletBuilder.DEFAULT_MAX_VERTICES, MeshletBuilder.DEFAULT_MAX_TRIANGLES}, {16, 100}, {64, 10}, {3, 1}};
+
+        for (int[] limit : limits) {
+            final Meshlets meshlets = new MeshletBuilder(limit[0], limit[1]).build(this.positions, this.indices);
+
+            for (int meshlet = 0; meshlet < meshlets.getCount(); meshlet++) {
+                assertTrue(meshlets.getVertexCount(meshlet) <= limit[0], "vertices of meshlet " + meshlet + " with limit " + limit[0]);
+                assertTrue(meshlets.getTriangleCount(meshlet) <= limit[1], "triangles of meshlet " + meshlet + " with limit " + limit[1]);
+                assertTrue(meshlets.getTriangleCount(meshlet) > 0);
+            }
+        }
+    }
+
+    @Test
+    void everyTriangleIsInOneMeshlet() {
+        final Meshlets meshlets = new MeshletBuilder(32, 48).build(this.positions, this.indices);
+        final int[] owners = new int[this.indices.length / 3];
+
+        for (int meshlet = 0; meshlet < meshlets.getCount(); meshlet++) {
+            final int vertexOffset = meshlets.getVertexOffset(meshlet);
+            final int vertexCount = meshlets.getVertexCount(meshlet);
+
+            for (int triangle = meshlets.getTriangleOffset(meshlet); triangle < meshlets.getTriangleOffset(meshlet) + meshlets.getTriangleCount(meshlet); triangle++) {
+                owners[triangle]++;
+
+                for (int corner = 0; corner < 3; corner++) {
+                    final int local = meshlets.getTriangles()[triangle * 3 + corner] & 0xff;
+
+                    assertTrue(local < vertexCount, "local index " + local + " of meshlet " + meshlet);
+                    //the local index leads back to the original vertex
+                    assertEquals(this.indices[triangle * 3 + corner], meshlets.getVertices()[vertexOffset + local]);
+                }
+            }
+        }
+
+        for (int triangle = 0; triangle < owners.length; triangle++) {
+            assertEquals(1, owners[triangle], "triangle " + triangle);
+        }
+    }
+
+    @Test
+    void sharedVerticesAreStoredOncePerMeshlet() {
+        //two triangles of one quad share two vertices
+        final float[] quad = {0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 1.0f, 1.0f, 0.0f, 0.0f, 1.0f, 0.0f};
+        final Meshlets meshlets = new MeshletBuilder().build(quad, new int[]{0, 1, 2, 0, 2, 3});
+
+        assertEquals(1, meshlets.getCount());
+        assertEquals(4, meshlets.getVertexCount(0));
+        assertEquals(2, meshlets.getTriangleCount(0));
+    }
+
+    @Test
+    void culledMeshletsHaveNoFrontFacingTriangle() {
+        final Meshlets meshlets = new MeshletBuilder(32, 32).build(this.positions, this.indices);
+        final Random random = new Random(3);
+        int culled = 0;
+
+        for (int view = 0; view < 200; view++) {
+            //viewpoints on a shell around the unit sphere and a few inside of it
+            final float distance = view % 10 == 0 ? 0.5f : 1.5f + random.nextFloat() * 8.0f;
+            final float[] camera = randomDirection(random);
+
+            for (int axis = 0; axis < 3; axis++) {
+                camera[axis] *= distance;
+            }
+
+            for (int meshlet = 0; meshlet < meshlets.getCount(); meshlet++) {
+                if (!meshlets.isBackfacing(meshlet, camera[0], camera[1], camera[2])) {
+                    continue;
+                }
+
+                culled++;
+
+                for (int triangle = meshlets.getTriangleOffset(meshlet); triangle < meshlets.getTriangleOffset(meshlet) + meshlets.getTriangleCount(meshlet); triangle++) {
+                    assertTrue(facing(triangle, camera) <= 1e-5f, "triangle " + triangle + " of culled meshlet " + meshlet + " faces the camera");
+                }
+            }
+        }
+
+        //a sphere seen from outside has about half of its meshlets facing away
+        assertTrue(culled > 200 * meshlets.getCount() / 10, "only " + culled + " meshlets culled");
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new MeshletBuilder(2, 10));
+        assertThrows(IllegalArgumentException.class, () -> new MeshletBuilder(257, 10));
+        assertThrows(IllegalArgumentException.class, () -> new MeshletBuilder(64, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MeshletBuilder().build(this.positions, new int[]{0, 1}));
+    }
+
+    /*
+     * Dot of the unnormalized face normal with the direction from the triangle to the camera
+     */
+    private float facing(int triangle, float[] camera) {
+        final int p0 = this.indices[triangle * 3] * 3;
+        final int p1 = this.indices[triangle * 3 + 1] * 3;
+        final int p2 = this.indices[triangle * 3 + 2] * 3;
+        final float[] e1 = new float[3];
+        final float[] e2 = new float[3];
+
+        for (int axis = 0; axis < 3; axis++) {
+            e1[axis] = this.positions[p1 + axis] - this.positions[p0 + axis];
+            e2[axis] = this.positions[p2 + axis] - this.positions[p0 + axis];
+        }
+
+        final float nx = e1[1] * e2[2] - e1[2] * e2[1];
+        final float ny = e1[2] * e2[0] - e1[0] * e2[2];
+        final float nz = e1[0] * e2[1] - e1[1] * e2[0];
+
+        return nx * (camera[0] - this.positions[p0]) + ny * (camera[1] - this.positions[p0 + 1]) + nz * (camera[2] - this.positions[p0 + 2]);
+    }
+
+    private static float[] randomDirection(Random random) {
+        final float z = random.nextFloat() * 2.0f - 1.0f;
+        final float angle = random.nextFloat() * 2.0f * (float) Math.PI;
+        final float radius = (float) Math.sqrt(1.0f - z * z);
+
+        return new float[]{radius * (float) Math.cos(angle), radius * (float) Math.sin(angle), z};
+    }
+
+    /*
+     * Unit sphere with (segments + 1) rings of segments + 1 vertices, the seam and the poles duplicated
+     */
+    private static float[] createSpherePositions(int segments) {
+        final int rowLength = segments + 1;
+        final float[] positions = new float[rowLength * rowLength * 3];
+
+        for (int ring = 0; ring <= segments; ring++) {
+            final double polar = Math.PI * ring / segments;
+
+            for (int i = 0; i <= segments; i++) {
+                final double azimuth = 2.0 * Math.PI * i / segments;
+                final int offset = (ring * rowLength + i) * 3;
+
+                positions[offset] = (float) (Math.sin(polar) * Math.cos(azimuth));
+                positions[offset + 1] = (float) (Math.sin(polar) * Math.sin(azimuth));
+                positions[offset + 2] = (float) Math.cos(polar);
+            }
+        }
+
+        return positions;
+    }
+
+    /*
+     * Counter clockwise seen from outside, the triangles at the poles are degenerate
+     */
+    private static int[] createSphereIndices(int segments) {
+        final int rowLength = segments + 1;
+        final int[] indices = new int[segments * segments * 6];
+        int next = 0;
+
+        for (int ring = 0; ring < segments; ring++) {
+            for (int i = 0; i < segments; i++) {
+                final int i0 = ring * rowLength + i;
+                final int i1 = i0 + rowLength;
+
+                indices[next++] = i0;
+                indices[next++] = i1;
+                indices[next++] = i1 + 1;
+                indices[next++] = i0;
+                indices[next++] = i1 + 1;
+                indices[next++] = i0 + 1;
+            }
+        }
+
+        return indices;
+    }
+}
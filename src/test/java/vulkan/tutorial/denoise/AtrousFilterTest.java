@@ -0,0 +1,206 @@
+package vulkan.tutorial.denoise;
+
+import org.junit.jupiter.api.Test;
+import vulkan.tutorial.software.GBuffer;
+import vulkan.tutorial.software.HdrImage;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AtrousFilterTest {
+    //filter() of createScene() with 3 iterations and sigmas of 1, rgb per pixel, row by row
+    private static final float[][] GOLDEN = {
+            {0.5516716f, 0.20690106f, 0.039903697f, 0.35527995f, 0.32474703f, 0.061571505f, 0.37078702f, 0.33857498f, 0.063657105f, 1.0836594f, 0.20109525f, 0.05023518f, 0.7006997f, 0.33322027f, 0.05468123f, 0.7275587f, 0.35835072f, 0.086458676f},
+            {0.40666673f, 0.43840453f, 0.090816475f, 0.5004644f, 0.47679675f, 0.28392285f, 0.8562932f, 0.34337723f, 0.40090328f, 0.774284f, 0.44285432f, 0.1317229f, 0.83812076f, 0.48895612f, 0.2955972f, 1.3177297f, 0.34324208f, 0.35910767f},
+            {0.39576602f, 0.4472488f, 0.11270518f, 0.64115334f, 0.42219612f, 0.42930958f, 0.49628788f, 0.51574904f, 0.30174425f, 0.77229446f, 0.45607477f, 0.16031232f, 1.1236538f, 0.4092112f, 0.3875138f, 0.8409792f, 0.51102f, 0.29489934f},
+            {0.62033206f, 0.5627265f, 0.14785285f, 0.5796807f, 0.63587207f, 0.2781644f, 0.61656165f, 0.6499041f, 0.51573133f, 1.0523646f, 0.5348416f, 0.18097404f, 0.9165588f, 0.64234793f, 0.27894494f, 0.9286622f, 0.6554243f, 0.5327094f}
+    };
+
+    @Test
+    void matchesGoldenValues() {
+        final GBuffer gBuffer = new GBuffer(6, 4);
+        final HdrImage result = new AtrousFilter(3, 1.0f, 1.0f).filter(createScene(gBuffer), gBuffer);
+
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 6; x++) {
+                for (int channel = 0; channel < 3; channel++) {
+                    //bit-exact, a change in the order of the float operations shows up here
+                    assertEquals(GOLDEN[y][x * 3 + channel], result.get(x, y, channel), "pixel " + x + "," + y + " channel " + channel);
+                }
+            }
+        }
+    }
+
+    @Test
+    void stepWidthDoublesEveryPass() {
+        final AtrousFilter filter = new AtrousFilter(4, 2.0f, 0.5f);
+        final ByteBuffer buffer = ByteBuffer.allocate(AtrousFilter.PUSH_CONSTANT_SIZE);
+
+        for (int pass = 0; pass < 4; pass++) {
+            assertEquals(1 << pass, filter.getStepWidth(pass));
+            assertEquals(0.5f * (1 << pass), filter.getColorScale(pass));
+            assertEquals(2.0f / (1 << pass), filter.getDepthScale(pass));
+        }
+
+        assertEquals(AtrousFilter.FLAG_DEMODULATE, filter.getFlags(0));
+        assertEquals(0, filter.getFlags(1));
+        assertEquals(AtrousFilter.FLAG_REMODULATE, filter.getFlags(3));
+
+        filter.writePass(2, 640, 480, buffer);
+        assertEquals(4, buffer.getInt(0));
+        assertEquals(2.0f, buffer.getFloat(Integer.BYTES));
+        assertEquals(0.5f, buffer.getFloat(2 * Integer.BYTES));
+        assertEquals(0, buffer.getInt(3 * Integer.BYTES));
+        assertEquals(640, buffer.getInt(4 * Integer.BYTES));
+        assertEquals(480, buffer.getInt(5 * Integer.BYTES));
+    }
+
+    @Test
+    void footprintGrowsWithTheStepWidth() {
+        final int size = 17;
+        final int center = size / 2;
+        final GBuffer gBuffer = new GBuffer(size, size);
+        final HdrImage color = new HdrImage(size, size);
+
+        fill(gBuffer, (x, y) -> 0.0f, (x, y) -> 1.0f);
+        color.setPixel(center, center, 1.0f, 1.0f, 1.0f, 1.0f);
+
+        //the color weight stays 1: only the kernel spreads the impulse
+        final HdrImage result = new AtrousFilter(2, 1e6f, 1.0f).filter(color, gBuffer);
+
+        //2 pixels in the first pass, 2 * 2 in the second
+        assertTrue(result.get(center + 6, center, 0) > 0.0f);
+        assertTrue(result.get(center, center - 6, 0) > 0.0f);
+        assertEquals(0.0f, result.get(center + 7, center, 0));
+        assertEquals(0.0f, result.get(center, center - 7, 0));
+    }
+
+    @Test
+    void constantInputPassesThrough() {
+        final GBuffer gBuffer = new GBuffer(8, 8);
+        final HdrImage color = new HdrImage(8, 8);
+
+        fill(gBuffer, (x, y) -> 0.0f, (x, y) -> 3.0f);
+        fill(color, (x, y) -> 0.4f);
+
+        final HdrImage result = AtrousFilter.createDefault().filter(color, gBuffer);
+
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                assertEquals(0.4f, result.get(x, y, 0), 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    void normalEdgeStopsTheFilter() {
+        final GBuffer gBuffer = new GBuffer(8, 8);
+        final HdrImage color = halfWhite();
+
+        //perpendicular normals on both sides weigh the other side 0
+        fill(gBuffer, (x, y) -> x < 4 ? 0.0f : 1.0f, (x, y) -> 3.0f);
+
+        assertSidesKept(new AtrousFilter(3, 1e6f, 1.0f).filter(color, gBuffer));
+    }
+
+    @Test
+    void depthEdgeStopsTheFilter() {
+        final GBuffer gBuffer = new GBuffer(8, 8);
+        final HdrImage color = halfWhite();
+
+        //a jump of 9 is past the depth falloff even with the step width 4 of the last pass
+        fill(gBuffer, (x, y) -> 0.0f, (x, y) -> x < 4 ? 1.0f : 10.0f);
+
+        assertSidesKept(new AtrousFilter(3, 1e6f, 1.0f).filter(color, gBuffer));
+    }
+
+    @Test
+    void withoutEdgesTheSidesBlend() {
+        final GBuffer gBuffer = new GBuffer(8, 8);
+
+        fill(gBuffer, (x, y) -> 0.0f, (x, y) -> 3.0f);
+
+        final HdrImage result = new AtrousFilter(3, 1e6f, 1.0f).filter(halfWhite(), gBuffer);
+
+        assertTrue(result.get(3, 4, 0) < 0.9f);
+        assertTrue(result.get(4, 4, 0) > 0.1f);
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AtrousFilter(1, 1.0f, 1.0f));
+        assertThrows(IllegalArgumentException.class, () -> new AtrousFilter(17, 1.0f, 1.0f));
+        assertThrows(IllegalArgumentException.class, () -> new AtrousFilter(3, 0.0f, 1.0f));
+        assertThrows(IllegalArgumentException.class, () -> AtrousFilter.createDefault().filter(new HdrImage(4, 4), new GBuffer(4, 5)));
+    }
+
+    /*
+     * Two surfaces with different normals and a depth gradient on one, a checker of two albedos
+     */
+    private static HdrImage createScene(GBuffer gBuffer) {
+        final HdrImage color = new HdrImage(6, 4);
+
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 6; x++) {
+                color.setPixel(x, y, (x + 1) * 0.125f + (y % 2) * 0.5f, 0.25f + y * 0.125f, (x * y % 3) * 0.375f, 1.0f);
+
+                if (x < 3) {
+                    gBuffer.getNormalDepth().setPixel(x, y, 0.0f, 0.0f, 1.0f, 2.0f + x * 0.25f);
+                } else {
+                    gBuffer.getNormalDepth().setPixel(x, y, 0.0f, 0.6f, 0.8f, 5.0f);
+                }
+
+                if ((x + y) % 3 == 0) {
+                    gBuffer.getAlbedo().setPixel(x, y, 0.75f, 0.25f, 0.25f, 1.0f);
+                } else {
+                    gBuffer.getAlbedo().setPixel(x, y, 0.5f, 0.5f, 0.5f, 1.0f);
+                }
+            }
+        }
+
+        return color;
+    }
+
+    private static HdrImage halfWhite() {
+        final HdrImage color = new HdrImage(8, 8);
+        fill(color, (x, y) -> x < 4 ? 1.0f : 0.0f);
+        return color;
+    }
+
+    /*
+     * normalX 0 is a +z normal, 1 a +x normal, the albedo is white
+     */
+    private static void fill(GBuffer gBuffer, PixelFunction normalX, PixelFunction depth) {
+        for (int y = 0; y < gBuffer.getHeight(); y++) {
+            for (int x = 0; x < gBuffer.getWidth(); x++) {
+                final float nx = normalX.get(x, y);
+                gBuffer.getNormalDepth().setPixel(x, y, nx, 0.0f, 1.0f - nx, depth.get(x, y));
+                gBuffer.getAlbedo().setPixel(x, y, 1.0f, 1.0f, 1.0f, 1.0f);
+            }
+        }
+    }
+
+    private static void fill(HdrImage image, PixelFunction value) {
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                final float v = value.get(x, y);
+                image.setPixel(x, y, v, v, v, 1.0f);
+            }
+        }
+    }
+
+    private static void assertSidesKept(HdrImage result) {
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                assertEquals(x < 4 ? 1.0f : 0.0f, result.get(x, y, 0), 1e-6f, "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    private interface PixelFunction {
+        float get(int x, int y);
+    }
+}
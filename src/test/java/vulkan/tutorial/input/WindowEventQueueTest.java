@@ -0,0 +1,131 @@
+package vulkan.tutorial.input;
+
+import org.junit.jupiter.api.Test;
+import vulkan.tutorial.input.WindowEventQueue.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowEventQueueTest {
+    private static final int EVENTS = 100_000;
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new WindowEventQueue(1).getCapacity());
+        assertEquals(8, new WindowEventQueue(5).getCapacity());
+        assertEquals(8, new WindowEventQueue(8).getCapacity());
+        assertEquals(WindowEventQueue.DEFAULT_CAPACITY, new WindowEventQueue().getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new WindowEventQueue(0));
+    }
+
+    @Test
+    void wrapsAroundInOrder() {
+        final WindowEventQueue queue = new WindowEventQueue(4);
+        final List<Integer> received = new ArrayList<>();
+        int next = 0;
+
+        //3 events per round don't line up with the 4 slots, so every slot is reused at every offset
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(queue.offer(Type.KEY, next, -next));
+                next++;
+            }
+
+            assertEquals(3, queue.drain((type, first, second, nanos) -> {
+                assertEquals(Type.KEY, type);
+                assertEquals(-first, second);
+                received.add(first);
+            }));
+            assertTrue(queue.isEmpty());
+        }
+
+        for (int i = 0; i < next; i++) {
+            assertEquals(i, received.get(i));
+        }
+
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    void fullRingDropsAndCountsNewEvents() {
+        final WindowEventQueue queue = new WindowEventQueue(4);
+        final List<Integer> received = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(Type.MOUSE_BUTTON, i, 0));
+        }
+
+        //the oldest events stay, the new ones are dropped
+        assertFalse(queue.offer(Type.MOUSE_BUTTON, 4, 0));
+        assertFalse(queue.offer(Type.KEY, 5, 0));
+        assertEquals(2, queue.getDroppedCount());
+
+        assertEquals(4, queue.drain((type, first, second, nanos) -> received.add(first)));
+        assertEquals(List.of(0, 1, 2, 3), received);
+
+        //drained slots are free again
+        assertTrue(queue.offer(Type.KEY, 6, 0));
+        assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    void publishesAcrossThreads() throws InterruptedException {
+        final WindowEventQueue queue = new WindowEventQueue(64);
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < EVENTS; i++) {
+                //retry instead of dropping, so every event arrives
+                while (!queue.offer(Type.KEY, i, i * 31)) {
+                    Thread.onSpinWait();
+                }
+            }
+        }, "producer");
+        final int[] expected = {0};
+
+        producer.start();
+
+        while (expected[0] < EVENTS) {
+            //the slot contents must be visible once the tail is
+            if (queue.drain((type, first, second, nanos) -> {
+                assertEquals(expected[0], first);
+                assertEquals(expected[0] * 31, second);
+                expected[0]++;
+            }) == 0) {
+                queue.await(1_000_000L);
+            }
+        }
+
+        producer.join();
+
+        assertTrue(queue.isEmpty());
+        assertEquals(EVENTS, expected[0]);
+    }
+
+    @Test
+    void wakeUpEndsAwait() throws InterruptedException {
+        final WindowEventQueue queue = new WindowEventQueue(4);
+        final AtomicBoolean done = new AtomicBoolean();
+        //keeps waking up, the first calls may come before await() parks
+        final Thread waker = new Thread(() -> {
+            while (!done.get()) {
+                queue.wakeUp();
+                LockSupport.parkNanos(10_000_000L);
+            }
+        }, "waker");
+        final long start = System.nanoTime();
+
+        waker.start();
+        queue.await(10_000_000_000L);
+        done.set(true);
+        waker.join();
+
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertTrue(queue.isEmpty());
+    }
+}
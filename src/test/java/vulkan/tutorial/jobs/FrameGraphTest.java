@@ -0,0 +1,185 @@
+package vulkan.tutorial.jobs;
+
+import org.junit.jupiter.api.Test;
+import vulkan.tutorial.jobs.FrameGraph.Affinity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameGraphTest {
+    private static final int FRAMES = 100;
+
+    @Test
+    void singleThreadedRunsTheOrderOfAdd() {
+        final List<String> log = new ArrayList<>();
+        final FrameGraph graph = createDiamond(JobSystem.singleThreaded(), log);
+
+        for (int frame = 0; frame < 3; frame++) {
+            log.clear();
+            graph.run();
+
+            assertEquals(List.of("input", "left", "right", "submit"), log);
+        }
+
+        assertEquals(3, graph.getFrameCount());
+
+        for (int job = 0; job < graph.getJobCount(); job++) {
+            assertNotEquals(FrameGraph.NOT_RUN, graph.getStartNanos(job));
+            assertNotEquals(FrameGraph.NOT_RUN, graph.getDurationNanos(job));
+        }
+    }
+
+    @Test
+    void singleThreadedStaysOnTheCaller() {
+        final Thread caller = Thread.currentThread();
+        final List<Thread> threads = new ArrayList<>();
+        final FrameGraph graph = new FrameGraph(JobSystem.singleThreaded());
+
+        graph.add("a", Affinity.ANY, () -> threads.add(Thread.currentThread()));
+        graph.add("b", Affinity.ANY, () -> threads.add(Thread.currentThread()), 0);
+        graph.run();
+
+        assertEquals(List.of(caller, caller), threads);
+    }
+
+    @Test
+    void parallelRunKeepsDependencyOrder() {
+        try (JobSystem jobSystem = JobSystem.create(4)) {
+            final List<String> log = Collections.synchronizedList(new ArrayList<>());
+            final FrameGraph graph = createDiamond(jobSystem, log);
+
+            for (int frame = 0; frame < FRAMES; frame++) {
+                log.clear();
+                graph.run();
+
+                assertEquals(4, log.size(), log.toString());
+                assertEquals("input", log.get(0));
+                assertEquals("submit", log.get(3));
+                assertTrue(log.containsAll(List.of("left", "right")), log.toString());
+            }
+        }
+    }
+
+    @Test
+    void callerJobsRunOnTheCallingThread() {
+        final Thread caller = Thread.currentThread();
+        final Set<Thread> callerThreads = ConcurrentHashMap.newKeySet();
+        final Set<Thread> workerThreads = ConcurrentHashMap.newKeySet();
+
+        try (JobSystem jobSystem = JobSystem.create(3)) {
+            final FrameGraph graph = new FrameGraph(jobSystem);
+            final Runnable onCaller = () -> callerThreads.add(Thread.currentThread());
+            final Runnable onWorker = () -> workerThreads.add(Thread.currentThread());
+
+            final int input = graph.add("input", Affinity.CALLER, onCaller);
+            final int update = graph.add("update", Affinity.ANY, onWorker, input);
+            final int animate = graph.add("animate", Affinity.ANY, onWorker, input);
+            //a CALLER job made ready by a worker
+            final int upload = graph.add("upload", Affinity.CALLER, onCaller, update);
+            final int cull = graph.add("cull", Affinity.ANY, onWorker, upload, animate);
+            graph.add("submit", Affinity.CALLER, onCaller, cull);
+
+            for (int frame = 0; frame < FRAMES; frame++) {
+                graph.run();
+            }
+        }
+
+        assertEquals(Set.of(caller), callerThreads);
+        assertFalse(workerThreads.contains(caller));
+    }
+
+    @Test
+    void singleThreadedFailureSkipsTheRestAndRethrows() {
+        assertFailure(JobSystem.singleThreaded());
+    }
+
+    @Test
+    void parallelFailureSkipsTheRestAndRethrows() {
+        try (JobSystem jobSystem = JobSystem.create(2)) {
+            assertFailure(jobSystem);
+        }
+    }
+
+    @Test
+    void rejectsUnknownDependencies() {
+        final FrameGraph graph = new FrameGraph(JobSystem.singleThreaded());
+        final Runnable nothing = () -> {
+        };
+
+        //a job can't wait for itself or a later job, so there are no cycles
+        assertThrows(IllegalArgumentException.class, () -> graph.add("self", Affinity.ANY, nothing, 0));
+
+        final int first = graph.add("first", Affinity.ANY, nothing);
+
+        assertThrows(IllegalArgumentException.class, () -> graph.add("self", Affinity.ANY, nothing, first + 1));
+        assertThrows(IllegalArgumentException.class, () -> graph.add("later", Affinity.ANY, nothing, first, 5));
+        assertThrows(IllegalArgumentException.class, () -> graph.add("negative", Affinity.ANY, nothing, -1));
+        assertEquals(1, graph.getJobCount());
+    }
+
+    @Test
+    void jobSystemThreadCounts() {
+        assertTrue(JobSystem.create(0).isSingleThreaded());
+        assertThrows(IllegalArgumentException.class, () -> JobSystem.create(-1));
+
+        try (JobSystem jobSystem = JobSystem.create(2)) {
+            assertFalse(jobSystem.isSingleThreaded());
+            assertEquals(2, jobSystem.getThreadCount());
+        }
+    }
+
+    /*
+     * input -> left, right -> submit, every job logs its name
+     */
+    private static FrameGraph createDiamond(JobSystem jobSystem, List<String> log) {
+        final FrameGraph graph = new FrameGraph(jobSystem);
+
+        final int input = graph.add("input", Affinity.ANY, () -> log.add("input"));
+        final int left = graph.add("left", Affinity.ANY, () -> log.add("left"), input);
+        final int right = graph.add("right", Affinity.ANY, () -> log.add("right"), input);
+        graph.add("submit", Affinity.ANY, () -> log.add("submit"), left, right);
+
+        return graph;
+    }
+
+    private static void assertFailure(JobSystem jobSystem) {
+        final IllegalStateException error = new IllegalStateException("broken");
+        final List<String> log = Collections.synchronizedList(new ArrayList<>());
+        final boolean[] failing = {true};
+        final FrameGraph graph = new FrameGraph(jobSystem);
+
+        final int input = graph.add("input", Affinity.CALLER, () -> log.add("input"));
+        final int update = graph.add("update", Affinity.ANY, () -> {
+            if (failing[0]) {
+                throw error;
+            }
+
+            log.add("update");
+        }, input);
+        final int submit = graph.add("submit", Affinity.CALLER, () -> log.add("submit"), update);
+
+        final RuntimeException thrown = assertThrows(RuntimeException.class, graph::run);
+
+        assertSame(error, thrown.getCause());
+        assertTrue(thrown.getMessage().contains("update"), thrown.getMessage());
+        assertEquals(List.of("input"), log);
+        assertEquals(FrameGraph.NOT_RUN, graph.getDurationNanos(submit));
+
+        //the next frame runs normally
+        failing[0] = false;
+        log.clear();
+        graph.run();
+
+        assertEquals(List.of("input", "update", "submit"), log);
+    }
+}
@@ -0,0 +1,118 @@
+package vulkan.tutorial.lod;
+
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*
+ * With ERRORS and SCALE the levels switch at distances 1, 2 and 4
+ */
+class LodSelectorTest {
+    private static final float[] ERRORS = {0.0f, 0.01f, 0.02f, 0.04f};
+    private static final float SCALE = 100.0f;
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    void scaleIsPixelsPerUnitOfError() {
+        //90 degrees: m11 is 1
+        final Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(90.0), 1.5f, 0.1f, 100.0f);
+
+        assertEquals(540.0f, new LodSelector().getScale(1080), EPSILON);
+        assertEquals(270.0f, new LodSelector(2.0f).getScale(1080), EPSILON);
+        assertEquals(540.0f, new LodSelector().getScale(projection, 1080), 1e-3f);
+        assertEquals(LodSelector.DEFAULT_HYSTERESIS, new LodSelector().getHysteresis());
+        assertThrows(IllegalArgumentException.class, () -> new LodSelector(0.0f));
+        assertThrows(IllegalArgumentException.class, () -> new LodSelector(1.0f, -0.1f));
+        assertThrows(IllegalArgumentException.class, () -> new LodSelector(1.0f, 1.0f));
+    }
+
+    @Test
+    void picksTheCoarsestLevelBelowTheThreshold() {
+        assertEquals(0, LodSelector.select(ERRORS, ERRORS.length, 0.0f, SCALE));
+        assertEquals(0, LodSelector.select(ERRORS, ERRORS.length, 0.99f, SCALE));
+        //an error of exactly the threshold is fine
+        assertEquals(1, LodSelector.select(ERRORS, ERRORS.length, 1.0f, SCALE));
+        assertEquals(1, LodSelector.select(ERRORS, ERRORS.length, 1.99f, SCALE));
+        assertEquals(2, LodSelector.select(ERRORS, ERRORS.length, 3.0f, SCALE));
+        assertEquals(3, LodSelector.select(ERRORS, ERRORS.length, 1000.0f, SCALE));
+        //a shorter chain in the same array
+        assertEquals(1, LodSelector.select(ERRORS, 2, 1000.0f, SCALE));
+        //twice the scale (half the threshold) needs twice the distance
+        assertEquals(1, LodSelector.select(ERRORS, ERRORS.length, 3.0f, SCALE * 2.0f));
+    }
+
+    @Test
+    void hysteresisKeepsTheLevelAroundASwitchingDistance() {
+        final float hysteresis = 0.1f;
+
+        //2.2 to get coarser than level 1, 2 / 1.1 to get finer than level 2
+        assertEquals(1, LodSelector.select(ERRORS, ERRORS.length, 2.15f, SCALE, 1, hysteresis));
+        assertEquals(2, LodSelector.select(ERRORS, ERRORS.length, 2.25f, SCALE, 1, hysteresis));
+        assertEquals(2, LodSelector.select(ERRORS, ERRORS.length, 1.85f, SCALE, 2, hysteresis));
+        assertEquals(1, LodSelector.select(ERRORS, ERRORS.length, 1.8f, SCALE, 2, hysteresis));
+
+        //a distance going back and forth over 2 switches every frame without hysteresis
+        int level = 1;
+        int stateless = 1;
+        int statelessSwitches = 0;
+
+        for (int frame = 0; frame < 20; frame++) {
+            final float distance = frame % 2 == 0 ? 2.05f : 1.95f;
+            final int next = LodSelector.select(ERRORS, ERRORS.length, distance, SCALE);
+
+            statelessSwitches += next != stateless ? 1 : 0;
+            stateless = next;
+            level = LodSelector.select(ERRORS, ERRORS.length, distance, SCALE, level, hysteresis);
+
+            assertEquals(1, level);
+        }
+
+        assertEquals(20, statelessSwitches);
+    }
+
+    @Test
+    void hysteresisStillJumpsOverSeveralLevels() {
+        assertEquals(3, LodSelector.select(ERRORS, ERRORS.length, 1000.0f, SCALE, 0, 0.1f));
+        assertEquals(0, LodSelector.select(ERRORS, ERRORS.length, 0.0f, SCALE, 3, 0.1f));
+        //a level of a longer chain is clamped
+        assertEquals(1, LodSelector.select(ERRORS, 2, 1000.0f, SCALE, 3, 0.1f));
+    }
+
+    @Test
+    void noHysteresisSelectsLikeWithoutPreviousLevel() {
+        final Random random = new Random(5);
+
+        for (int i = 0; i < 1000; i++) {
+            final float distance = random.nextFloat() * 6.0f;
+            final int previousLevel = random.nextInt(ERRORS.length);
+
+            assertEquals(LodSelector.select(ERRORS, ERRORS.length, distance, SCALE),
+                    LodSelector.select(ERRORS, ERRORS.length, distance, SCALE, previousLevel, 0.0f), "distance " + distance);
+        }
+    }
+
+    @Test
+    void selectsAChainWithTheProjection() {
+        final LodChain chain = new LodChain(new int[][]{new int[3], new int[3], new int[3], new int[3]}, ERRORS);
+        //90 degrees and a viewport of 200 pixels: SCALE
+        final Matrix4f projection = new Matrix4f().perspective((float) Math.toRadians(90.0), 1.0f, 0.1f, 100.0f);
+        final LodSelector selector = new LodSelector();
+
+        assertEquals(2, selector.select(chain, 3.0f, projection, 200));
+        assertEquals(1, selector.select(chain, 2.1f, projection, 200, 1));
+        assertEquals(2, selector.select(chain, 2.1f, projection, 200, 2));
+    }
+
+    @Test
+    void distanceIsToTheBoundingSphere() {
+        final float[] bounds = {5.0f, 5.0f, 5.0f, -1.0f, -1.0f, -1.0f, 1.0f, 1.0f, 1.0f};
+        final float radius = (float) Math.sqrt(3.0);
+
+        assertEquals(10.0f - radius, LodSelector.getDistance(bounds, 3, 10.0f, 0.0f, 0.0f), EPSILON);
+        assertEquals(0.0f, LodSelector.getDistance(bounds, 3, 1.0f, 1.0f, 0.0f));
+    }
+}
@@ -0,0 +1,372 @@
+package vulkan.tutorial.lod;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ * Grids lie in the xy plane with unit cells and face +z, the sphere has radius 1 and faces outwards
+ */
+class QuadricSimplifierTest {
+    private static final int GRID_SIZE = 16;
+    private static final int RINGS = 16;
+    private static final int SEGMENTS = 32;
+
+    @Test
+    void reachesTheTargetTriangleCounts() {
+        final float[] positions = createSphere();
+        final int[] indices = createSphereIndices();
+        final QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices);
+        float previousError = 0.0f;
+
+        assertEquals(2 * SEGMENTS * (RINGS - 1), indices.length / 3);
+
+        for (int divisor = 2; divisor <= 16; divisor *= 2) {
+            final int target = indices.length / 3 / divisor * 3;
+            final int indexCount = simplifier.simplify(target, 1.0f);
+
+            //a collapse removes two triangles, the last one may go one past the target
+            assertTrue(indexCount <= target && indexCount >= target - 6, indexCount + " indices for a target of " + target);
+            assertEquals(indexCount, simplifier.getIndices().length);
+            assertTrue(simplifier.getError() >= previousError);
+            assertTrue(simplifier.getError() <= 1.0f);
+            //still closed and facing outwards
+            assertTrue(getBorderEdges(positions, simplifier.getIndices()).isEmpty());
+            assertFacing(positions, simplifier.getIndices(), true);
+            previousError = simplifier.getError();
+        }
+    }
+
+    @Test
+    void maxErrorStopsBeforeTheTarget() {
+        final float[] positions = createSphere();
+        final QuadricSimplifier curved = new QuadricSimplifier(positions, createSphereIndices());
+        final int curvedCount = curved.simplify(0, 1e-3f);
+
+        assertTrue(curvedCount > 0, "a sphere can't lose every triangle within 0.001");
+        assertTrue(curved.getError() <= 1e-3f);
+
+        //the inside of a plane collapses for free
+        final QuadricSimplifier flat = new QuadricSimplifier(createGrid(0.0f), createGridIndices());
+
+        assertTrue(flat.simplify(0, 1e-5f) < createGridIndices().length / 4);
+        assertTrue(flat.getError() <= 1e-5f);
+    }
+
+    @Test
+    void openBordersStayLocked() {
+        final float[] positions = createGrid(0.0f);
+        final int[] indices = createGridIndices();
+        final QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices);
+
+        simplifier.simplify(0, 1.0f);
+
+        final int[] simplified = simplifier.getIndices();
+
+        assertTrue(simplified.length < indices.length / 4, simplified.length + " indices left");
+        //the outline and the area of the plane stay the same
+        assertEquals(4 * GRID_SIZE, getBorderEdges(positions, indices).size());
+        assertEquals(getBorderEdges(positions, indices), getBorderEdges(positions, simplified));
+        assertEquals(GRID_SIZE * GRID_SIZE, getArea(positions, simplified), 1e-3f);
+        assertFacing(positions, simplified, false);
+    }
+
+    @Test
+    void textureSeamsStayLocked() {
+        //the column at x = GRID_SIZE / 2 twice, u = 0 for the left half and 1 for the right half
+        final int half = GRID_SIZE / 2;
+        final int rowLength = GRID_SIZE + 2;
+        final float[] positions = new float[(GRID_SIZE + 1) * rowLength * 3];
+        final float[] attributes = new float[(GRID_SIZE + 1) * rowLength];
+        final int[] indices = new int[GRID_SIZE * GRID_SIZE * 6];
+        int indexCount = 0;
+
+        for (int y = 0; y <= GRID_SIZE; y++) {
+            for (int column = 0; column < rowLength; column++) {
+                final int vertex = y * rowLength + column;
+
+                positions[vertex * 3] = column <= half ? column : column - 1;
+                positions[vertex * 3 + 1] = y;
+                attributes[vertex] = column <= half ? 0.0f : 1.0f;
+            }
+        }
+
+        for (int y = 0; y < GRID_SIZE; y++) {
+            for (int x = 0; x < GRID_SIZE; x++) {
+                final int column = x < half ? x : x + 1;
+                indexCount = addQuad(indices, indexCount, y * rowLength + column, rowLength);
+            }
+        }
+
+        final QuadricSimplifier simplifier = new QuadricSimplifier(positions, attributes, 1, indices);
+        simplifier.simplify(0, 1.0f);
+
+        final int[] simplified = simplifier.getIndices();
+        final Set<Integer> referenced = new HashSet<>();
+
+        for (int index : simplified) {
+            referenced.add(index);
+        }
+
+        assertTrue(simplified.length < indices.length / 4, simplified.length + " indices left");
+
+        for (int i = 0; i < simplified.length; i += 3) {
+            //no triangle reaches over to the other side of the seam
+            assertEquals(attributes[simplified[i]], attributes[simplified[i + 1]]);
+            assertEquals(attributes[simplified[i]], attributes[simplified[i + 2]]);
+        }
+
+        for (int y = 0; y <= GRID_SIZE; y++) {
+            assertTrue(referenced.contains(y * rowLength + half), "left seam vertex " + y);
+            assertTrue(referenced.contains(y * rowLength + half + 1), "right seam vertex " + y);
+        }
+
+        //both sides still meet along every segment of the seam, the mesh doesn't crack
+        assertEquals(GRID_SIZE, getSeamSegments(positions, attributes, simplified, half, 0.0f).size());
+        assertEquals(getSeamSegments(positions, attributes, simplified, half, 0.0f), getSeamSegments(positions, attributes, simplified, half, 1.0f));
+        assertEquals(GRID_SIZE * GRID_SIZE, getArea(positions, simplified), 1e-3f);
+    }
+
+    @Test
+    void collapsesDoNotFlipTriangles() {
+        //hills and valleys, every collapse turns the triangles around it
+        final float[] positions = createGrid(0.4f);
+        final int[] indices = createGridIndices();
+        final QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices);
+
+        assertFacing(positions, indices, false);
+
+        for (int divisor = 2; divisor <= 64; divisor *= 2) {
+            simplifier.simplify(indices.length / divisor / 3 * 3, 10.0f);
+            assertFacing(positions, simplifier.getIndices(), false);
+        }
+
+        assertTrue(simplifier.getIndexCount() < indices.length / 4, simplifier.getIndexCount() + " indices left");
+    }
+
+    @Test
+    void weldsOneVertexPerCorner() {
+        //like an OBJ file, without welding every edge would be a locked border
+        final float[] welded = createGrid(0.0f);
+        final int[] weldedIndices = createGridIndices();
+        final float[] positions = new float[weldedIndices.length * 3];
+        final int[] indices = new int[weldedIndices.length];
+
+        for (int i = 0; i < weldedIndices.length; i++) {
+            System.arraycopy(welded, weldedIndices[i] * 3, positions, i * 3, 3);
+            indices[i] = i;
+        }
+
+        final QuadricSimplifier simplifier = new QuadricSimplifier(positions, indices);
+
+        assertTrue(simplifier.simplify(0, 1.0f) < indices.length / 4);
+        assertEquals(GRID_SIZE * GRID_SIZE, getArea(positions, simplifier.getIndices()), 1e-3f);
+    }
+
+    @Test
+    void rejectsBrokenInput() {
+        final float[] positions = createGrid(0.0f);
+        final int vertexCount = positions.length / 3;
+
+        assertThrows(IllegalArgumentException.class, () -> new QuadricSimplifier(positions, new int[]{0, 1}));
+        assertThrows(IndexOutOfBoundsException.class, () -> new QuadricSimplifier(positions, new int[]{0, 1, vertexCount}));
+        assertThrows(IllegalArgumentException.class, () -> new QuadricSimplifier(positions, new float[vertexCount], 2, new int[]{0, 1, 2}));
+    }
+
+    /*
+     * (GRID_SIZE + 1)^2 vertices, z = height * sin(x / 2) * cos(y / 3)
+     */
+    private static float[] createGrid(float height) {
+        final float[] positions = new float[(GRID_SIZE + 1) * (GRID_SIZE + 1) * 3];
+
+        for (int y = 0; y <= GRID_SIZE; y++) {
+            for (int x = 0; x <= GRID_SIZE; x++) {
+                final int vertex = y * (GRID_SIZE + 1) + x;
+
+                positions[vertex * 3] = x;
+                positions[vertex * 3 + 1] = y;
+                positions[vertex * 3 + 2] = height * (float) (Math.sin(x * 0.5) * Math.cos(y / 3.0));
+            }
+        }
+
+        return positions;
+    }
+
+    private static int[] createGridIndices() {
+        final int[] indices = new int[GRID_SIZE * GRID_SIZE * 6];
+        int indexCount = 0;
+
+        for (int y = 0; y < GRID_SIZE; y++) {
+            for (int x = 0; x < GRID_SIZE; x++) {
+                indexCount = addQuad(indices, indexCount, y * (GRID_SIZE + 1) + x, GRID_SIZE + 1);
+            }
+        }
+
+        return indices;
+    }
+
+    /*
+     * The two counter clockwise triangles of the cell with corner first in a grid of rowLength columns
+     */
+    private static int addQuad(int[] indices, int indexCount, int first, int rowLength) {
+        final int[] corners = {first, first + 1, first + rowLength + 1, first, first + rowLength + 1, first + rowLength};
+        System.arraycopy(corners, 0, indices, indexCount, corners.length);
+
+        return indexCount + corners.length;
+    }
+
+    /*
+     * One vertex per pole and SEGMENTS per ring in between
+     */
+    private static float[] createSphere() {
+        final float[] positions = new float[(2 + (RINGS - 1) * SEGMENTS) * 3];
+
+        positions[2] = 1.0f;
+        positions[positions.length - 1] = -1.0f;
+
+        for (int ring = 1; ring < RINGS; ring++) {
+            final double theta = Math.PI * ring / RINGS;
+
+            for (int segment = 0; segment < SEGMENTS; segment++) {
+                final double phi = 2.0 * Math.PI * segment / SEGMENTS;
+                final int vertex = 1 + (ring - 1) * SEGMENTS + segment;
+
+                positions[vertex * 3] = (float) (Math.sin(theta) * Math.cos(phi));
+                positions[vertex * 3 + 1] = (float) (Math.sin(theta) * Math.sin(phi));
+                positions[vertex * 3 + 2] = (float) Math.cos(theta);
+            }
+        }
+
+        return positions;
+    }
+
+    private static int[] createSphereIndices() {
+        final int southPole = 1 + (RINGS - 1) * SEGMENTS;
+        final int[] indices = new int[2 * SEGMENTS * (RINGS - 1) * 3];
+        int indexCount = 0;
+
+        for (int segment = 0; segment < SEGMENTS; segment++) {
+            final int next = (segment + 1) % SEGMENTS;
+
+            indices[indexCount++] = 0;
+            indices[indexCount++] = 1 + segment;
+            indices[indexCount++] = 1 + next;
+
+            for (int ring = 1; ring < RINGS - 1; ring++) {
+                final int top = 1 + (ring - 1) * SEGMENTS;
+                final int bottom = top + SEGMENTS;
+                final int[] corners = {top + segment, bottom + segment, bottom + next, top + segment, bottom + next, top + next};
+
+                System.arraycopy(corners, 0, indices, indexCount, corners.length);
+                indexCount += corners.length;
+            }
+
+            indices[indexCount++] = southPole - SEGMENTS + segment;
+            indices[indexCount++] = southPole;
+            indices[indexCount++] = southPole - SEGMENTS + next;
+        }
+
+        return indices;
+    }
+
+    /*
+     * Every triangle faces away from the center (outwards) or towards +z (up), none turned over
+     */
+    private static void assertFacing(float[] positions, int[] indices, boolean outwards) {
+        for (int i = 0; i < indices.length; i += 3) {
+            final double[] normal = getNormal(positions, indices, i);
+            double dot = normal[2];
+
+            if (outwards) {
+                dot = 0.0;
+
+                for (int corner = 0; corner < 3; corner++) {
+                    for (int axis = 0; axis < 3; axis++) {
+                        dot += normal[axis] * positions[indices[i + corner] * 3 + axis];
+                    }
+                }
+            }
+
+            assertTrue(dot > 0.0, "triangle " + i / 3 + " is turned over");
+        }
+    }
+
+    private static double[] getNormal(float[] positions, int[] indices, int first) {
+        final int a = indices[first] * 3;
+        final int b = indices[first + 1] * 3;
+        final int c = indices[first + 2] * 3;
+        final double e1x = positions[b] - positions[a];
+        final double e1y = positions[b + 1] - positions[a + 1];
+        final double e1z = positions[b + 2] - positions[a + 2];
+        final double e2x = positions[c] - positions[a];
+        final double e2y = positions[c + 1] - positions[a + 1];
+        final double e2z = positions[c + 2] - positions[a + 2];
+
+        return new double[]{e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y - e1y * e2x};
+    }
+
+    /*
+     * Summed area in the xy plane, a turned over triangle subtracts
+     */
+    private static float getArea(float[] positions, int[] indices) {
+        double area = 0.0;
+
+        for (int i = 0; i < indices.length; i += 3) {
+            area += getNormal(positions, indices, i)[2] * 0.5;
+        }
+
+        return (float) area;
+    }
+
+    /*
+     * Edges used by one triangle, as position pairs so welded copies count as one vertex
+     */
+    private static Set<String> getBorderEdges(float[] positions, int[] indices) {
+        final Map<String, Integer> uses = new HashMap<>();
+
+        for (int i = 0; i < indices.length; i++) {
+            uses.merge(getEdge(positions, indices[i], indices[i - i % 3 + (i + 1) % 3]), 1, Integer::sum);
+        }
+
+        final Set<String> borders = new HashSet<>();
+        uses.forEach((edge, count) -> {
+            if (count == 1) {
+                borders.add(edge);
+            }
+        });
+
+        return borders;
+    }
+
+    /*
+     * Edges along the seam column of the triangles with attribute side
+     */
+    private static Set<String> getSeamSegments(float[] positions, float[] attributes, int[] indices, float seamX, float side) {
+        final Set<String> segments = new HashSet<>();
+
+        for (int i = 0; i < indices.length; i++) {
+            final int a = indices[i];
+            final int b = indices[i - i % 3 + (i + 1) % 3];
+
+            if (attributes[a] == side && positions[a * 3] == seamX && positions[b * 3] == seamX) {
+                segments.add(getEdge(positions, a, b));
+            }
+        }
+
+        return segments;
+    }
+
+    private static String getEdge(float[] positions, int a, int b) {
+        final String first = positions[a * 3] + "," + positions[a * 3 + 1] + "," + positions[a * 3 + 2];
+        final String second = positions[b * 3] + "," + positions[b * 3 + 1] + "," + positions[b * 3 + 2];
+
+        return first.compareTo(second) < 0 ? first + "|" + second : second + "|" + first;
+    }
+}
@@ -0,0 +1,171 @@
+package vulkan.tutorial.math;
+
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VertexPackerTest {
+
+    @Test
+    void quantizedPositionsStayWithinHalfAStep() {
+        final Random random = new Random(5);
+        final float[] min = {-3.0f, 0.25f, -1000.0f};
+        final float[] max = {7.5f, 0.5f, 2500.0f};
+        final Vertex[] vertices = new Vertex[1000];
+
+        //the 8 corners of the box first
+        for (int i = 0; i < vertices.length; i++) {
+            final Vector3f position = new Vector3f();
+
+            for (int axis = 0; axis < 3; axis++) {
+                final float t = i < 8 ? (i >> axis) & 1 : random.nextFloat();
+                position.setComponent(axis, i < 8 && t == 1.0f ? max[axis] : min[axis] + t * (max[axis] - min[axis]));
+            }
+
+            vertices[i] = new Vertex(position, new Vector3f(1.0f), new Vector2f(0.5f));
+        }
+
+        final VertexFormat format = VertexFormat.of(VertexLayout.COMPACT, vertices);
+        final Vertex[] unpacked = roundTrip(format, vertices);
+
+        assertTrue(format.isQuantized());
+
+        for (int axis = 0; axis < 3; axis++) {
+            final float extent = max[axis] - min[axis];
+            //half a step, plus the rounding of the float math of unpack()
+            final float bound = extent / VertexPacker.UNORM16_MAX / 2.0f + Math.ulp(Math.max(Math.abs(min[axis]), Math.abs(max[axis]))) * 2.0f;
+
+            assertEquals(extent, format.getPositionExtent(axis));
+
+            for (int i = 0; i < vertices.length; i++) {
+                final float error = Math.abs(unpacked[i].getPos().get(axis) - vertices[i].getPos().get(axis));
+                assertTrue(error <= bound, "vertex " + i + " axis " + axis + " is off by " + error + ", bound " + bound);
+            }
+        }
+
+        //the corners sit on the first and last step
+        for (int i = 0; i < 8; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                assertEquals(vertices[i].getPos().get(axis), unpacked[i].getPos().get(axis), Math.ulp(max[axis] - min[axis]) * 2.0f);
+            }
+        }
+    }
+
+    @Test
+    void fullFormatRoundTripsExactly() {
+        final Random random = new Random(9);
+        final Vertex[] vertices = new Vertex[100];
+
+        for (int i = 0; i < vertices.length; i++) {
+            vertices[i] = new Vertex(
+                    new Vector3f(random.nextFloat() * 1e6f, -random.nextFloat(), Float.MIN_VALUE * i),
+                    new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat()),
+                    new Vector2f(random.nextFloat() * 3.0f, 1.0f / (i + 1)));
+        }
+
+        final Vertex[] unpacked = roundTrip(VertexFormat.full(), vertices);
+
+        for (int i = 0; i < vertices.length; i++) {
+            assertEquals(vertices[i].getPos(), unpacked[i].getPos());
+            assertEquals(vertices[i].getColor(), unpacked[i].getColor());
+            assertEquals(vertices[i].getTexCoords(), unpacked[i].getTexCoords());
+        }
+    }
+
+    @Test
+    void constantColorIsDropped() {
+        final Vertex[] vertices = {
+                new Vertex(new Vector3f(0.0f), new Vector3f(0.2f, 0.4f, 0.6f), new Vector2f(0.0f)),
+                new Vertex(new Vector3f(1.0f), new Vector3f(0.2f, 0.4f, 0.6f), new Vector2f(1.0f))
+        };
+
+        final VertexFormat format = VertexFormat.of(VertexLayout.COMPACT, vertices);
+        final Vertex[] unpacked = roundTrip(format, vertices);
+
+        assertEquals(12, format.getStride());
+        assertEquals(vertices[1].getColor(), unpacked[1].getColor());
+        assertEquals(vertices[1].getTexCoords(), unpacked[1].getTexCoords());
+    }
+
+    @Test
+    void halfFloatKnownValues() {
+        assertHalf(0x3c00, 1.0f);
+        assertHalf(0xc000, -2.0f);
+        assertHalf(0x3555, 1.0f / 3.0f);
+        //largest half, and the first value that rounds past it
+        assertHalf(0x7bff, 65504.0f);
+        assertHalf(0x7bff, 65519.99f);
+        assertHalf(0x7c00, 65520.0f);
+        assertHalf(0x7c00, 1e10f);
+        assertHalf(0x7c00, Float.POSITIVE_INFINITY);
+        assertHalf(0xfc00, Float.NEGATIVE_INFINITY);
+        assertHalf(0x7e00, Float.NaN);
+        assertHalf(0x0000, 0.0f);
+        assertHalf(0x8000, -0.0f);
+    }
+
+    @Test
+    void halfFloatRoundsTiesToEven() {
+        //halfway between 1 and the next half: down to the even 0x3c00
+        assertHalf(0x3c00, 1.0f + 0x1p-11f);
+        //halfway between 0x3c01 and 0x3c02: up to the even one
+        assertHalf(0x3c02, 1.0f + 3 * 0x1p-11f);
+        assertHalf(0x3c01, Math.nextUp(1.0f + 0x1p-11f));
+        assertHalf(0xbc00, -(1.0f + 0x1p-11f));
+    }
+
+    @Test
+    void halfFloatSubnormals() {
+        assertHalf(0x0001, 0x1p-24f);
+        assertHalf(0x03ff, 1023 * 0x1p-24f);
+        assertHalf(0x0400, 0x1p-14f);
+        //ties between subnormals go to even as well
+        assertHalf(0x0000, 0x1p-25f);
+        assertHalf(0x0002, 3 * 0x1p-25f);
+        assertHalf(0x8001, -0x1p-24f);
+        assertHalf(0x0000, Float.MIN_VALUE);
+
+        assertEquals(0x1p-24f, VertexPacker.toFloat((short) 0x0001));
+        assertEquals(1023 * 0x1p-24f, VertexPacker.toFloat((short) 0x03ff));
+    }
+
+    @Test
+    void halfToFloatKnownValues() {
+        assertEquals(65504.0f, VertexPacker.toFloat((short) 0x7bff));
+        assertEquals(Float.POSITIVE_INFINITY, VertexPacker.toFloat((short) 0x7c00));
+        assertEquals(Float.NEGATIVE_INFINITY, VertexPacker.toFloat((short) 0xfc00));
+        assertTrue(Float.isNaN(VertexPacker.toFloat((short) 0x7e00)));
+        assertEquals(Float.floatToRawIntBits(-0.0f), Float.floatToRawIntBits(VertexPacker.toFloat((short) 0x8000)));
+        assertEquals(0.33325195f, VertexPacker.toFloat((short) 0x3555));
+    }
+
+    @Test
+    void everyHalfRoundTrips() {
+        for (int half = 0; half <= 0xffff; half++) {
+            final float value = VertexPacker.toFloat((short) half);
+
+            if (!Float.isNaN(value)) {
+                assertEquals(half, VertexPacker.toHalf(value) & 0xffff, "half 0x" + Integer.toHexString(half));
+            }
+        }
+    }
+
+    private static void assertHalf(int expected, float value) {
+        assertEquals(expected, VertexPacker.toHalf(value) & 0xffff, "half of " + value);
+    }
+
+    private static Vertex[] roundTrip(VertexFormat format, Vertex[] vertices) {
+        final ByteBuffer buffer = ByteBuffer.allocate(vertices.length * format.getStride()).order(ByteOrder.nativeOrder());
+
+        VertexPacker.pack(format, vertices, buffer);
+
+        return VertexPacker.unpack(format, buffer, vertices.length);
+    }
+}
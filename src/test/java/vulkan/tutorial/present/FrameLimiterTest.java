@@ -0,0 +1,82 @@
+package vulkan.tutorial.present;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameLimiterTest {
+    private static final long FRAME_NANOS = 5_000_000L;
+
+    @Test
+    void noLimitNeverWaits() {
+        final FrameLimiter limiter = new FrameLimiter(0L);
+
+        for (int frame = 0; frame < 10; frame++) {
+            assertEquals(0L, limiter.waitForNextFrame());
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new FrameLimiter(-1L));
+    }
+
+    @Test
+    void startsFramesAtMostEveryFrameNanos() {
+        final FrameLimiter limiter = new FrameLimiter(FRAME_NANOS);
+        final int frames = 20;
+
+        limiter.waitForNextFrame();
+        final long start = System.nanoTime();
+
+        for (int frame = 0; frame < frames; frame++) {
+            limiter.waitForNextFrame();
+        }
+
+        //never early, the spin takes care of the last bit. The first deadline was set just before start
+        assertTrue(System.nanoTime() - start >= (frames - 1) * FRAME_NANOS);
+    }
+
+    @Test
+    void lateFrameStartsOver() {
+        final FrameLimiter limiter = new FrameLimiter(FRAME_NANOS);
+
+        limiter.waitForNextFrame();
+        LockSupport.parkNanos(3 * FRAME_NANOS);
+
+        assertEquals(0L, limiter.waitForNextFrame());
+    }
+
+    @Test
+    void oversleepEstimateIsClamped() {
+        final FrameLimiter limiter = new FrameLimiter(FRAME_NANOS);
+
+        //a GC pause or a suspend
+        limiter.observeOversleep(1_000_000_000L);
+
+        assertEquals(FRAME_NANOS / 4 + FrameLimiter.MIN_SPIN_NANOS, limiter.getSpinNanos());
+
+        final FrameLimiter slowLimiter = new FrameLimiter(100_000_000L);
+        slowLimiter.observeOversleep(1_000_000_000L);
+
+        assertEquals(FrameLimiter.MAX_OVERSLEEP_NANOS + FrameLimiter.MIN_SPIN_NANOS, slowLimiter.getSpinNanos());
+    }
+
+    @Test
+    void oversleepEstimateDecaysEveryFrame() {
+        final FrameLimiter limiter = new FrameLimiter(FRAME_NANOS);
+
+        limiter.waitForNextFrame();
+        limiter.observeOversleep(1_000_000_000L);
+
+        final long spin = limiter.getSpinNanos();
+
+        //the frames still sleep, so the estimate comes down to the real oversleep
+        for (int frame = 0; frame < 200; frame++) {
+            limiter.waitForNextFrame();
+        }
+
+        assertTrue(limiter.getSpinNanos() < spin, limiter.getSpinNanos() + "ns");
+    }
+}
@@ -0,0 +1,67 @@
+package vulkan.tutorial.present;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresentPolicyTest {
+
+    @Test
+    void picksTheFirstSupportedMode() {
+        final PresentPolicy throughput = PresentPolicy.throughput();
+
+        assertSame(PresentMode.IMMEDIATE, throughput.choosePresentMode(supported(PresentMode.FIFO, PresentMode.MAILBOX, PresentMode.IMMEDIATE)));
+        assertSame(PresentMode.MAILBOX, throughput.choosePresentMode(supported(PresentMode.FIFO, PresentMode.MAILBOX)));
+        assertSame(PresentMode.FIFO_RELAXED, throughput.choosePresentMode(supported(PresentMode.FIFO_RELAXED, PresentMode.FIFO)));
+    }
+
+    @Test
+    void fallsBackToFifo() {
+        assertSame(PresentMode.FIFO, PresentPolicy.createDefault().choosePresentMode(supported(PresentMode.FIFO)));
+        assertSame(PresentMode.FIFO, PresentPolicy.lowLatency().choosePresentMode(supported(PresentMode.FIFO, PresentMode.IMMEDIATE)));
+        //even if the surface doesn't list it, FIFO is required by the spec
+        assertSame(PresentMode.FIFO, PresentPolicy.vsync().choosePresentMode(supported()));
+    }
+
+    @Test
+    void fifoIsAlwaysLast() {
+        assertEquals(List.of(PresentMode.MAILBOX, PresentMode.FIFO), PresentPolicy.createDefault().getModes());
+        assertEquals(List.of(PresentMode.IMMEDIATE, PresentMode.FIFO),
+                PresentPolicy.createDefault().withModes(List.of(PresentMode.FIFO, PresentMode.IMMEDIATE)).getModes());
+        assertEquals(List.of(PresentMode.FIFO), PresentPolicy.vsync().getModes());
+    }
+
+    @Test
+    void frameRateLimit() {
+        final PresentPolicy limited = PresentPolicy.createDefault().withFrameRateLimit(50.0);
+
+        assertTrue(limited.isFrameRateLimited());
+        assertEquals(20_000_000L, limited.getFrameNanos());
+        assertFalse(limited.withFrameRateLimit(0.0).isFrameRateLimited());
+        assertThrows(IllegalArgumentException.class, () -> limited.withFrameRateLimit(-1.0));
+    }
+
+    @Test
+    void fromName() {
+        assertTrue(PresentPolicy.fromName("low-latency").isLowLatency());
+        assertEquals(PresentPolicy.vsync().getModes(), PresentPolicy.fromName("vsync").getModes());
+        assertThrows(IllegalArgumentException.class, () -> PresentPolicy.fromName("fast"));
+    }
+
+    private static IntBuffer supported(PresentMode... modes) {
+        final int[] vkPresentModes = new int[modes.length];
+
+        for (int i = 0; i < modes.length; i++) {
+            vkPresentModes[i] = modes[i].getVkPresentMode();
+        }
+
+        return IntBuffer.wrap(vkPresentModes);
+    }
+}
@@ -0,0 +1,96 @@
+package vulkan.tutorial.raytracing;
+
+import org.junit.jupiter.api.Test;
+import vulkan.tutorial.raytracing.ShaderBindingTableLayout.Region;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShaderBindingTableLayoutTest {
+    //the values of an RTX 2070 with the KHR extension
+    private static final int HANDLE_SIZE = 32;
+    private static final int HANDLE_ALIGNMENT = 32;
+    private static final int BASE_ALIGNMENT = 64;
+
+    @Test
+    void regionsStartAtBaseAlignment() {
+        ShaderBindingTableLayout layout = ShaderBindingTableLayout.create(HANDLE_SIZE, HANDLE_ALIGNMENT, BASE_ALIGNMENT, 3, 5, 0, 0, 4);
+
+        for (Region region : Region.values()) {
+            assertEquals(0, layout.getOffset(region) % BASE_ALIGNMENT, region.name());
+        }
+
+        assertEquals(0, layout.getOffset(Region.RAY_GEN));
+        //raygen takes 32 bytes, miss starts at the next multiple of 64
+        assertEquals(64, layout.getOffset(Region.MISS));
+        //3 miss records of 32 bytes end at 160
+        assertEquals(192, layout.getOffset(Region.HIT_GROUP));
+        assertEquals(192 + 5 * 64, layout.getSize());
+    }
+
+    @Test
+    void stridesRoundHandlePlusDataUpToHandleAlignment() {
+        ShaderBindingTableLayout layout = ShaderBindingTableLayout.create(HANDLE_SIZE, HANDLE_ALIGNMENT, BASE_ALIGNMENT, 2, 4, 8, 1, 40);
+
+        assertEquals(64, layout.getStride(Region.RAY_GEN));
+        assertEquals(64, layout.getStride(Region.MISS));
+        assertEquals(96, layout.getStride(Region.HIT_GROUP));
+
+        for (Region region : Region.values()) {
+            assertEquals(0, layout.getStride(region) % HANDLE_ALIGNMENT, region.name());
+        }
+
+        assertEquals(40, layout.getDataSize(Region.HIT_GROUP));
+        assertEquals(layout.getRecordOffset(Region.HIT_GROUP, 2) + HANDLE_SIZE, layout.getDataOffset(Region.HIT_GROUP, 2));
+    }
+
+    @Test
+    void strideWithoutDataIsTheAlignedHandle() {
+        //NV: 16 byte handles with 16 byte alignment
+        ShaderBindingTableLayout layout = ShaderBindingTableLayout.create(16, 16, 64, 1, 1, 0, 0, 0);
+
+        for (Region region : Region.values()) {
+            assertEquals(16, layout.getStride(region), region.name());
+        }
+    }
+
+    @Test
+    void rayGenSizeEqualsStride() {
+        ShaderBindingTableLayout layout = ShaderBindingTableLayout.create(HANDLE_SIZE, HANDLE_ALIGNMENT, BASE_ALIGNMENT, 1, 1, 12, 0, 0);
+
+        assertEquals(1, layout.getRecordCount(Region.RAY_GEN));
+        assertEquals(layout.getStride(Region.RAY_GEN), layout.getRegionSize(Region.RAY_GEN));
+    }
+
+    @Test
+    void emptyMissAndHitRegions() {
+        ShaderBindingTableLayout layout = ShaderBindingTableLayout.create(HANDLE_SIZE, HANDLE_ALIGNMENT, BASE_ALIGNMENT, 0, 0, 0, 0, 0);
+
+        assertEquals(0, layout.getRegionSize(Region.MISS));
+        assertEquals(0, layout.getRegionSize(Region.HIT_GROUP));
+        assertEquals(BASE_ALIGNMENT, layout.getOffset(Region.MISS));
+        assertEquals(BASE_ALIGNMENT, layout.getOffset(Region.HIT_GROUP));
+        assertEquals(BASE_ALIGNMENT, layout.getSize());
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.getRecordOffset(Region.MISS, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.getRecordOffset(Region.HIT_GROUP, 0));
+    }
+
+    @Test
+    void recordOffsetBounds() {
+        ShaderBindingTableLayout layout = ShaderBindingTableLayout.create(HANDLE_SIZE, HANDLE_ALIGNMENT, BASE_ALIGNMENT, 2, 3, 0, 0, 4);
+
+        assertEquals(layout.getOffset(Region.HIT_GROUP), layout.getRecordOffset(Region.HIT_GROUP, 0));
+        assertEquals(layout.getOffset(Region.HIT_GROUP) + 2 * layout.getStride(Region.HIT_GROUP), layout.getRecordOffset(Region.HIT_GROUP, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.getRecordOffset(Region.HIT_GROUP, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.getRecordOffset(Region.HIT_GROUP, -1));
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.getRecordOffset(Region.RAY_GEN, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> layout.getRecordOffset(Region.MISS, 2));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> ShaderBindingTableLayout.create(0, HANDLE_ALIGNMENT, BASE_ALIGNMENT, 1, 1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> ShaderBindingTableLayout.create(HANDLE_SIZE, HANDLE_ALIGNMENT, BASE_ALIGNMENT, -1, 1, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> ShaderBindingTableLayout.create(HANDLE_SIZE, HANDLE_ALIGNMENT, BASE_ALIGNMENT, 1, 1, 0, 0, -4));
+    }
+}
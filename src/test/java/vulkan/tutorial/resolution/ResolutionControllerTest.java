@@ -0,0 +1,123 @@
+package vulkan.tutorial.resolution;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResolutionControllerTest {
+    private static final long TARGET_NANOS = 16_000_000L;
+
+    @Test
+    void overBudgetFallsToTheMinimum() {
+        final ResolutionController controller = ResolutionController.createDefault(TARGET_NANOS);
+        float previous = controller.getScale();
+
+        for (int frame = 0; frame < 200; frame++) {
+            controller.update(2 * TARGET_NANOS);
+
+            assertTrue(controller.getScale() <= previous, "frame " + frame);
+            assertTrue(controller.getScale() >= ResolutionController.DEFAULT_MIN_SCALE, "frame " + frame);
+            previous = controller.getScale();
+        }
+
+        assertEquals(ResolutionController.DEFAULT_MIN_SCALE, controller.getScale());
+        //clamped: more over-budget frames change nothing
+        assertFalse(controller.update(2 * TARGET_NANOS));
+    }
+
+    @Test
+    void underBudgetRisesToFullResolution() {
+        final ResolutionController controller = ResolutionController.createDefault(TARGET_NANOS);
+        driveToMinimum(controller);
+
+        float previous = controller.getScale();
+
+        for (int frame = 0; frame < 200; frame++) {
+            //the cost of a frame follows the pixel count, 80% of the target at full resolution
+            controller.update(frameNanos(0.8 * TARGET_NANOS, controller.getScale()));
+
+            assertTrue(controller.getScale() >= previous, "frame " + frame);
+            assertTrue(controller.getScale() <= 1.0f, "frame " + frame);
+            previous = controller.getScale();
+        }
+
+        assertEquals(1.0f, controller.getScale());
+        assertFalse(controller.update(TARGET_NANOS / 2));
+    }
+
+    @Test
+    void risingStopsBelowTheTarget() {
+        final ResolutionController controller = ResolutionController.createDefault(TARGET_NANOS);
+        //full resolution takes 1.6 times the target, scale 0.79 would hit it exactly
+        final double fullNanos = 1.6 * TARGET_NANOS;
+        driveToMinimum(controller);
+
+        for (int frame = 0; frame < 500; frame++) {
+            controller.update(frameNanos(fullNanos, controller.getScale()));
+
+            assertTrue(frameNanos(fullNanos, controller.getScale()) <= TARGET_NANOS, "overshoot to " + controller.getScale() + " in frame " + frame);
+        }
+
+        //within a step of the ideal scale
+        assertTrue(controller.getScale() >= Math.sqrt(1.0 / 1.6) - ResolutionController.SCALE_STEP * 2, "stuck at " + controller.getScale());
+    }
+
+    @Test
+    void noiseAroundTheTargetDoesNotResizeEveryFrame() {
+        final ResolutionController controller = ResolutionController.createDefault(TARGET_NANOS);
+        final Random random = new Random(7);
+        //the target is met at scale 0.75
+        final double fullNanos = TARGET_NANOS / (0.75 * 0.75);
+        int changes = 0;
+
+        for (int frame = 0; frame < 100; frame++) {
+            controller.update(frameNanos(fullNanos, controller.getScale()));
+        }
+
+        for (int frame = 0; frame < 1000; frame++) {
+            //+-15% frame time jitter
+            final double noise = 1.0 + (random.nextDouble() * 2.0 - 1.0) * 0.15;
+
+            if (controller.update(Math.round(frameNanos(fullNanos, controller.getScale()) * noise))) {
+                changes++;
+            }
+        }
+
+        assertTrue(changes < 50, changes + " resizes in 1000 frames");
+        assertTrue(Math.abs(controller.getScale() - 0.75f) <= 4 * ResolutionController.SCALE_STEP, "drifted to " + controller.getScale());
+    }
+
+    @Test
+    void renderSizeFollowsTheScale() {
+        final ResolutionController controller = new ResolutionController(TARGET_NANOS, 0.25f, 0.5f);
+
+        assertEquals(0.5f, controller.getScale());
+        assertEquals(400, controller.getRenderSize(800));
+        assertEquals(1, controller.getRenderSize(1));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> ResolutionController.createDefault(0L));
+        assertThrows(IllegalArgumentException.class, () -> new ResolutionController(TARGET_NANOS, 0.0f, 1.0f));
+        assertThrows(IllegalArgumentException.class, () -> new ResolutionController(TARGET_NANOS, 0.5f, 1.5f));
+        assertThrows(IllegalArgumentException.class, () -> new ResolutionController(TARGET_NANOS, 0.8f, 0.6f));
+    }
+
+    private static void driveToMinimum(ResolutionController controller) {
+        for (int frame = 0; frame < 200 && controller.getScale() > ResolutionController.DEFAULT_MIN_SCALE; frame++) {
+            controller.update(4 * TARGET_NANOS);
+        }
+
+        assertEquals(ResolutionController.DEFAULT_MIN_SCALE, controller.getScale());
+    }
+
+    private static long frameNanos(double fullNanos, float scale) {
+        return Math.round(fullNanos * scale * scale);
+    }
+}
@@ -0,0 +1,225 @@
+package vulkan.tutorial.scene;
+
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransformStoreTest {
+    private static final int CHAIN_LENGTH = 200;
+    //one level is well past the parallel threshold, so update() forks
+    private static final int ROOTS = 60;
+    private static final int CHILDREN = 100;
+    private static final int GRANDCHILDREN = 2;
+
+    /*
+     * One entity per level, below the parallel threshold update() stays on the calling thread
+     */
+    @Test
+    void deepChainMatchesTheRecursiveWorlds() {
+        final Random random = new Random(1);
+        final TransformStore store = new TransformStore();
+        int parent = TransformStore.NO_PARENT;
+
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            parent = store.add(parent, randomLocal(random));
+        }
+
+        assertEquals(CHAIN_LENGTH - 1, store.getDepth(CHAIN_LENGTH - 1));
+        //added entities are up to date right away
+        assertFalse(store.isDirty());
+        assertWorlds(store);
+
+        for (int i = 0; i < CHAIN_LENGTH; i += 7) {
+            store.setLocal(i, randomLocal(random));
+        }
+
+        assertTrue(store.isDirty());
+        store.update(new BitSet());
+        assertFalse(store.isDirty());
+        assertWorlds(store);
+    }
+
+    @Test
+    void wideHierarchyMatchesTheRecursiveWorldsOnOneAndFourThreads() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (ForkJoinPool updatePool : new ForkJoinPool[]{new ForkJoinPool(1), pool}) {
+                final Random random = new Random(2);
+                final TransformStore store = createWide(random, updatePool);
+
+                for (int entity = 0; entity < store.getCount(); entity += 3) {
+                    store.setLocal(entity, randomLocal(random));
+                }
+
+                store.update(new BitSet());
+                assertWorlds(store);
+                updatePool.shutdown();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void changedHoldsTheDirtyEntitiesAndTheirDescendants() {
+        final Random random = new Random(3);
+        final TransformStore store = createWide(random, ForkJoinPool.commonPool());
+        final int child = ROOTS + 5 * CHILDREN + 7;
+        final int root = 12;
+        final BitSet changed = new BitSet();
+
+        store.setLocal(child, randomLocal(random));
+        store.setLocal(root, randomLocal(random));
+        store.update(changed);
+
+        final BitSet expected = new BitSet();
+
+        for (int entity = 0; entity < store.getCount(); entity++) {
+            if (isBelow(store, entity, child) || isBelow(store, entity, root)) {
+                expected.set(entity);
+            }
+        }
+
+        assertEquals(expected, changed);
+        assertEquals(1 + CHILDREN + CHILDREN * GRANDCHILDREN + 1 + GRANDCHILDREN, changed.cardinality());
+        assertWorlds(store);
+
+        //nothing dirty, nothing changed
+        final BitSet unchanged = new BitSet();
+        store.update(unchanged);
+
+        assertTrue(unchanged.isEmpty());
+    }
+
+    @Test
+    void reparentingMovesTheWholeSubtree() {
+        final Random random = new Random(4);
+        final TransformStore store = new TransformStore();
+        final int first = store.add(TransformStore.NO_PARENT, randomLocal(random));
+        final int second = store.add(TransformStore.NO_PARENT, randomLocal(random));
+        final int middle = store.add(first, randomLocal(random));
+        final int leaf = store.add(middle, randomLocal(random));
+        final BitSet changed = new BitSet();
+
+        store.setParent(middle, second);
+        store.update(changed);
+
+        assertEquals(second, store.getParent(middle));
+        assertEquals(2, store.getDepth(leaf));
+        assertEquals(bits(middle, leaf), changed);
+        assertWorlds(store);
+
+        //up to a root, the depths below follow
+        changed.clear();
+        store.setParent(middle, TransformStore.NO_PARENT);
+        store.update(changed);
+
+        assertEquals(0, store.getDepth(middle));
+        assertEquals(1, store.getDepth(leaf));
+        assertEquals(bits(middle, leaf), changed);
+        assertWorlds(store);
+
+        //a parent has to come first, so there can't be a cycle
+        assertThrows(IllegalArgumentException.class, () -> store.setParent(middle, leaf));
+        assertThrows(IllegalArgumentException.class, () -> store.setParent(middle, middle));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.add(leaf + 1, new Matrix4f()));
+    }
+
+    @Test
+    void quaternionLocalMatchesJoml() {
+        final TransformStore store = new TransformStore();
+        final Quaternionf rotation = new Quaternionf().rotateXYZ(0.3f, -1.2f, 2.0f);
+        final int entity = store.add(TransformStore.NO_PARENT, new Matrix4f());
+
+        store.setLocal(entity, 1.0f, -2.0f, 3.0f, rotation.x, rotation.y, rotation.z, rotation.w, 1.5f);
+
+        final Matrix4f expected = new Matrix4f().translationRotateScale(1.0f, -2.0f, 3.0f, rotation.x, rotation.y, rotation.z, rotation.w, 1.5f, 1.5f, 1.5f);
+
+        assertTrue(expected.equals(store.getLocal(entity, new Matrix4f()), 1e-5f));
+    }
+
+    /*
+     * ROOTS roots with CHILDREN children each and GRANDCHILDREN below every child, added level by
+     * level so every level is a contiguous index range
+     */
+    private static TransformStore createWide(Random random, ForkJoinPool pool) {
+        final TransformStore store = new TransformStore(16, pool);
+
+        for (int root = 0; root < ROOTS; root++) {
+            store.add(TransformStore.NO_PARENT, randomLocal(random));
+        }
+
+        for (int child = 0; child < ROOTS * CHILDREN; child++) {
+            store.add(child / CHILDREN, randomLocal(random));
+        }
+
+        for (int grandchild = 0; grandchild < ROOTS * CHILDREN * GRANDCHILDREN; grandchild++) {
+            store.add(ROOTS + grandchild / GRANDCHILDREN, randomLocal(random));
+        }
+
+        return store;
+    }
+
+    /*
+     * Rotation, a translation of up to 1 and a scale close to 1, so long chains stay in range
+     */
+    private static Matrix4f randomLocal(Random random) {
+        return new Matrix4f()
+                .translation(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+                .rotateXYZ(random.nextFloat() * 6.0f, random.nextFloat() * 6.0f, random.nextFloat() * 6.0f)
+                .scale(0.9f + random.nextFloat() * 0.2f);
+    }
+
+    private static void assertWorlds(TransformStore store) {
+        final Matrix4f actual = new Matrix4f();
+
+        for (int entity = 0; entity < store.getCount(); entity++) {
+            final Matrix4f expected = naiveWorld(store, entity);
+            store.getWorld(entity, actual);
+
+            for (int column = 0; column < 4; column++) {
+                for (int row = 0; row < 3; row++) {
+                    final float value = expected.get(column, row);
+                    assertEquals(value, actual.get(column, row), 1e-4f * (1.0f + Math.abs(value)), "entity " + entity + " m" + column + row);
+                }
+            }
+        }
+    }
+
+    private static Matrix4f naiveWorld(TransformStore store, int entity) {
+        final Matrix4f local = store.getLocal(entity, new Matrix4f());
+        final int parent = store.getParent(entity);
+
+        return parent == TransformStore.NO_PARENT ? local : naiveWorld(store, parent).mul(local);
+    }
+
+    private static boolean isBelow(TransformStore store, int entity, int ancestor) {
+        for (int e = entity; e != TransformStore.NO_PARENT; e = store.getParent(e)) {
+            if (e == ancestor) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static BitSet bits(int... indices) {
+        final BitSet bits = new BitSet();
+
+        for (int index : indices) {
+            bits.set(index);
+        }
+
+        return bits;
+    }
+}
@@ -0,0 +1,165 @@
+package vulkan.tutorial.software;
+
+import org.junit.jupiter.api.Test;
+import vulkan.tutorial.accel.BvhBuilder;
+import vulkan.tutorial.accumulation.AccumulationConfig;
+import vulkan.tutorial.accumulation.AccumulationState;
+import vulkan.tutorial.shader.UniformBufferObject;
+import vulkan.tutorial.vulkan.RtPushConstant;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccumulationBufferTest {
+    private static final AccumulationConfig CONFIG = new AccumulationConfig(0L, 1, 0.01f, 4);
+
+    @Test
+    void runningMeanAndVarianceMatchTwoPass() {
+        final Random random = new Random(1);
+        final AccumulationBuffer buffer = new AccumulationBuffer(1, 1);
+        final HdrImage image = new HdrImage(1, 1);
+        final int[] batches = {1, 3, 8, 2, 16, 5};
+        int total = 0;
+
+        for (int batch : batches) {
+            total += batch;
+        }
+
+        final float[][] samples = new float[total][3];
+        int next = 0;
+
+        for (int batch : batches) {
+            float sumR = 0.0f;
+            float sumG = 0.0f;
+            float sumB = 0.0f;
+            float sumSquaredLuminance = 0.0f;
+
+            for (int i = 0; i < batch; i++, next++) {
+                for (int channel = 0; channel < 3; channel++) {
+                    samples[next][channel] = random.nextFloat() * (channel + 1);
+                }
+
+                final float luminance = AccumulationConfig.luminance(samples[next][0], samples[next][1], samples[next][2]);
+                sumR += samples[next][0];
+                sumG += samples[next][1];
+                sumB += samples[next][2];
+                sumSquaredLuminance += luminance * luminance;
+            }
+
+            buffer.add(0, 0, sumR, sumG, sumB, sumSquaredLuminance, batch);
+        }
+
+        //two passes in double: the means first, then the squared deviations
+        final double[] mean = new double[3];
+
+        for (float[] sample : samples) {
+            for (int channel = 0; channel < 3; channel++) {
+                mean[channel] += sample[channel] / total;
+            }
+        }
+
+        final double meanLuminance = AccumulationConfig.luminance((float) mean[0], (float) mean[1], (float) mean[2]);
+        double variance = 0.0;
+
+        for (float[] sample : samples) {
+            final double deviation = AccumulationConfig.luminance(sample[0], sample[1], sample[2]) - meanLuminance;
+            variance += deviation * deviation / total;
+        }
+
+        buffer.resolve(0, 0, image);
+
+        assertEquals(total, buffer.getSamples(0, 0));
+
+        for (int channel = 0; channel < 3; channel++) {
+            assertEquals(mean[channel], image.get(0, 0, channel), 1e-5, "channel " + channel);
+        }
+
+        assertEquals(variance, buffer.getLuminanceVariance(0, 0), 1e-5);
+    }
+
+    @Test
+    void pixelConvergesWithTheConfig() {
+        final AccumulationBuffer buffer = new AccumulationBuffer(2, 1);
+
+        //constant pixel: no variance, converged once it has the minimum samples
+        buffer.add(0, 0, 3.0f, 3.0f, 3.0f, 3.0f, 3);
+        assertFalse(buffer.isConverged(0, 0, CONFIG));
+        buffer.add(0, 0, 1.0f, 1.0f, 1.0f, 1.0f, 1);
+        assertTrue(buffer.isConverged(0, 0, CONFIG));
+
+        //half the samples 0, half 1: variance 0.25 against 0.0001 * 0.25 * 4
+        buffer.add(1, 0, 2.0f, 2.0f, 2.0f, 2.0f, 4);
+        assertEquals(0.25f, buffer.getLuminanceVariance(1, 0), 1e-6f);
+        assertFalse(buffer.isConverged(1, 0, CONFIG));
+
+        assertEquals(1, buffer.countConverged(CONFIG));
+    }
+
+    @Test
+    void tileConvergesWhenEveryPixelHas() {
+        final AccumulationBuffer buffer = new AccumulationBuffer(4, 4);
+        fillConstant(buffer, 0, 0, 4, 4, 0.5f, 4);
+
+        assertTrue(buffer.isConverged(0, 0, 4, 4, CONFIG));
+
+        //one noisy pixel keeps its tile going, the other tiles stay converged
+        buffer.add(3, 3, 2.0f, 2.0f, 2.0f, 2.0f, 4);
+
+        assertFalse(buffer.isConverged(0, 0, 4, 4, CONFIG));
+        assertFalse(buffer.isConverged(2, 2, 4, 4, CONFIG));
+        assertTrue(buffer.isConverged(0, 0, 2, 2, CONFIG));
+        assertTrue(buffer.isConverged(0, 0, 4, 3, CONFIG));
+    }
+
+    @Test
+    void rendererSkipsConvergedTiles() {
+        final int width = SoftwareRayTracer.TILE_SIZE * 2;
+        final int height = SoftwareRayTracer.TILE_SIZE;
+        final float[] positions = {-1.0f, -1.0f, 0.0f, 1.0f, -1.0f, 0.0f, 0.0f, 1.0f, 0.0f};
+        final SoftwareRayTracer tracer = new SoftwareRayTracer(new BvhBuilder().build(positions, new int[]{0, 1, 2}));
+        final UniformBufferObject camera = new UniformBufferObject();
+        final AccumulationState state = new AccumulationState(CONFIG);
+        final AccumulationBuffer buffer = new AccumulationBuffer(width, height);
+        final HdrImage image = new HdrImage(width, height);
+
+        camera.updateCamera((float) width / height);
+
+        //the second frame of an unchanged camera accumulates
+        state.beginFrame(camera, false);
+        state.beginFrame(camera, false);
+        assertTrue((state.getFlags() & AccumulationState.FLAG_ACCUMULATE) != 0);
+
+        //the left tile has converged already
+        fillConstant(buffer, 0, 0, SoftwareRayTracer.TILE_SIZE, height, 0.25f, CONFIG.getMinSamples());
+
+        final RenderStatistics statistics = tracer.render(camera, RtPushConstant.createDefault(), image, buffer, state);
+
+        assertEquals((long) SoftwareRayTracer.TILE_SIZE * height * state.getSamplesPerFrame(), statistics.getPrimaryRays());
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final boolean skipped = x < SoftwareRayTracer.TILE_SIZE;
+
+                assertEquals(skipped ? CONFIG.getMinSamples() : state.getSamplesPerFrame(), buffer.getSamples(x, y), 0.0f);
+
+                if (skipped) {
+                    //the converged mean is still resolved into the image
+                    assertEquals(0.25f, image.get(x, y, 0));
+                }
+            }
+        }
+    }
+
+    private static void fillConstant(AccumulationBuffer buffer, int x0, int y0, int x1, int y1, float value, int samples) {
+        final float luminance = AccumulationConfig.luminance(value, value, value);
+
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                buffer.add(x, y, value * samples, value * samples, value * samples, luminance * luminance * samples, samples);
+            }
+        }
+    }
+}
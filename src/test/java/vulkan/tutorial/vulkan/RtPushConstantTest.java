@@ -0,0 +1,31 @@
+package vulkan.tutorial.vulkan;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RtPushConstantTest {
+
+    @Test
+    void writesTheGlslLayout() {
+        final RtPushConstant pushConstant = RtPushConstant.createDefault();
+        pushConstant.getClearColor().set(0.1f, 0.2f, 0.3f, 0.4f);
+        pushConstant.setLightType(RtPushConstant.LIGHT_TYPE_INFINITE);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(RtPushConstant.SIZE_OF).order(ByteOrder.nativeOrder());
+        pushConstant.write(buffer);
+
+        //vec4 clearColor, vec3 lightPosition, float lightIntensity, int lightType
+        assertEquals(36, RtPushConstant.SIZE_OF);
+        assertEquals(0.1f, buffer.getFloat(0));
+        assertEquals(0.4f, buffer.getFloat(12));
+        assertEquals(10.0f, buffer.getFloat(16));
+        assertEquals(15.0f, buffer.getFloat(20));
+        assertEquals(8.0f, buffer.getFloat(24));
+        assertEquals(100.0f, buffer.getFloat(28));
+        assertEquals(RtPushConstant.LIGHT_TYPE_INFINITE, buffer.getInt(32));
+    }
+}